@@ -92,4 +92,36 @@ public interface ByteBufAllocatorBuilder {
      * <p>Default is {@link LeakDetectionPolicy#Disabled}
      */
     ByteBufAllocatorBuilder leakDetectionPolicy(LeakDetectionPolicy leakDetectionPolicy);
+
+    /**
+     * Allocate the entry buffers of a memory subsystem from dedicated size-classed slabs, using at most the given
+     * memory budget. The entry buffers beyond the budget are allocated from the pooled allocator.
+     *
+     * <p>The slabs are only used with the {@link PoolingPolicy#PooledDirect} policy.
+     *
+     * <p>Default is to not use slabs for any subsystem, which is all the builders not supporting the slabs do.
+     *
+     * @see EntrySlabAllocator
+     */
+    default ByteBufAllocatorBuilder entrySlabMemoryBudget(MemorySubsystem subsystem, long budgetBytes) {
+        return this;
+    }
+
+    /**
+     * Define the size of a slab of entry buffers. A slab holds at least one slot, whatever its size class.
+     *
+     * <p>Default is 1 MB.
+     */
+    default ByteBufAllocatorBuilder entrySlabSize(int slabSize) {
+        return this;
+    }
+
+    /**
+     * Define the capacity of the largest entry buffers allocated from the slabs.
+     *
+     * <p>Default is 64 KB.
+     */
+    default ByteBufAllocatorBuilder entrySlabMaxCapacity(int maxCapacity) {
+        return this;
+    }
 }
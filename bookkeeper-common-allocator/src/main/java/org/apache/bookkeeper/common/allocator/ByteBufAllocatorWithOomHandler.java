@@ -25,4 +25,14 @@ import java.util.function.Consumer;
  */
 public interface ByteBufAllocatorWithOomHandler extends ByteBufAllocator {
     void setOomHandler(Consumer<OutOfMemoryError> handler);
+
+    /**
+     * Get the allocator of the entry buffers of a memory subsystem, from dedicated slabs.
+     *
+     * @param subsystem the memory subsystem
+     * @return the entry slab allocator of the subsystem, or null if the subsystem has no slabs
+     */
+    default EntrySlabAllocator getEntrySlabAllocator(MemorySubsystem subsystem) {
+        return null;
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Allocator of the entry buffers of a memory subsystem, from dedicated size-classed slabs.
+ *
+ * <p>The direct buffers are served from slabs of slots of the same size class, the size classes being spaced
+ * by a quarter of a power of two, so that a buffer wastes at most 20% of its slot. The slabs are allocated on
+ * demand, up to the memory budget of the subsystem, and freed once empty. A buffer larger than the max slabbed
+ * capacity, or which doesn't fit in the budget, is served by the pooled allocator instead.
+ *
+ * <p>A buffer growing beyond the capacity of its slot is moved out of the slabs.
+ */
+public interface EntrySlabAllocator extends ByteBufAllocator {
+
+    /**
+     * Get the allocator of the entry buffers of a memory subsystem.
+     *
+     * @param allocator the allocator of the bookie
+     * @param subsystem the memory subsystem
+     * @return the entry slab allocator of the subsystem, or the given allocator if the subsystem has no slabs
+     */
+    static ByteBufAllocator forSubsystem(ByteBufAllocator allocator, MemorySubsystem subsystem) {
+        if (allocator instanceof ByteBufAllocatorWithOomHandler) {
+            EntrySlabAllocator slabAllocator =
+                    ((ByteBufAllocatorWithOomHandler) allocator).getEntrySlabAllocator(subsystem);
+            if (slabAllocator != null) {
+                return slabAllocator;
+            }
+        }
+        return allocator;
+    }
+
+    /**
+     * @return the memory subsystem of the allocator
+     */
+    MemorySubsystem getSubsystem();
+
+    /**
+     * @return whether a direct buffer with the given capacity is served from the slabs, budget permitting
+     */
+    boolean isSlabbed(int capacity);
+
+    /**
+     * Allocate a direct buffer from the slabs only, for the callers which have a better option than a buffer of the
+     * pooled allocator.
+     *
+     * @param initialCapacity the initial capacity of the buffer
+     * @param maxCapacity the max capacity of the buffer
+     * @return the buffer, or null if the capacity is not slabbed or the slabs are out of budget
+     */
+    ByteBuf slabBuffer(int initialCapacity, int maxCapacity);
+
+    /**
+     * @return the max memory of the slabs, in bytes
+     */
+    long getMemoryBudget();
+
+    /**
+     * @return the memory of the allocated slabs, in bytes
+     */
+    long getUsedMemory();
+
+    /**
+     * @return the memory of the slots of the live buffers, in bytes
+     */
+    long getAllocatedMemory();
+
+    /**
+     * @return the capacity requested for the live buffers, in bytes
+     */
+    long getRequestedMemory();
+
+    /**
+     * @return the fraction of the slots of the live buffers exceeding their requested capacity
+     */
+    default double getInternalFragmentation() {
+        long allocated = getAllocatedMemory();
+        return allocated > 0 ? 1 - (double) getRequestedMemory() / allocated : 0;
+    }
+
+    /**
+     * @return the fraction of the memory of the slabs in free slots
+     */
+    default double getExternalFragmentation() {
+        long used = getUsedMemory();
+        return used > 0 ? 1 - (double) getAllocatedMemory() / used : 0;
+    }
+
+    /**
+     * @return the number of buffers served from the slabs
+     */
+    long getSlabbedAllocations();
+
+    /**
+     * @return the number of direct buffers served by the pooled allocator, for being too large or over budget
+     */
+    long getSpilledAllocations();
+}
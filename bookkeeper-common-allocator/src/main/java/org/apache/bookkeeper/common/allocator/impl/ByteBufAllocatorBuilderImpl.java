@@ -18,10 +18,13 @@
 package org.apache.bookkeeper.common.allocator.impl;
 
 import io.netty.buffer.ByteBufAllocator;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.function.Consumer;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorBuilder;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorWithOomHandler;
 import org.apache.bookkeeper.common.allocator.LeakDetectionPolicy;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
 import org.apache.bookkeeper.common.allocator.OutOfMemoryPolicy;
 import org.apache.bookkeeper.common.allocator.PoolingPolicy;
 
@@ -37,11 +40,15 @@ public class ByteBufAllocatorBuilderImpl implements ByteBufAllocatorBuilder {
     OutOfMemoryPolicy outOfMemoryPolicy = OutOfMemoryPolicy.FallbackToHeap;
     Consumer<OutOfMemoryError> outOfMemoryListener = null;
     LeakDetectionPolicy leakDetectionPolicy = LeakDetectionPolicy.Disabled;
+    Map<MemorySubsystem, Long> entrySlabMemoryBudgets = new EnumMap<>(MemorySubsystem.class);
+    int entrySlabSize = 1024 * 1024;
+    int entrySlabMaxCapacity = 64 * 1024;
 
     @Override
     public ByteBufAllocatorWithOomHandler build() {
         return new ByteBufAllocatorImpl(pooledAllocator, unpooledAllocator, poolingPolicy, poolingConcurrency,
-                outOfMemoryPolicy, outOfMemoryListener, leakDetectionPolicy);
+                outOfMemoryPolicy, outOfMemoryListener, leakDetectionPolicy, entrySlabMemoryBudgets, entrySlabSize,
+                entrySlabMaxCapacity);
     }
 
     @Override
@@ -86,4 +93,22 @@ public class ByteBufAllocatorBuilderImpl implements ByteBufAllocatorBuilder {
         return this;
     }
 
+    @Override
+    public ByteBufAllocatorBuilder entrySlabMemoryBudget(MemorySubsystem subsystem, long budgetBytes) {
+        this.entrySlabMemoryBudgets.put(subsystem, budgetBytes);
+        return this;
+    }
+
+    @Override
+    public ByteBufAllocatorBuilder entrySlabSize(int slabSize) {
+        this.entrySlabSize = slabSize;
+        return this;
+    }
+
+    @Override
+    public ByteBufAllocatorBuilder entrySlabMaxCapacity(int maxCapacity) {
+        this.entrySlabMaxCapacity = maxCapacity;
+        return this;
+    }
+
 }
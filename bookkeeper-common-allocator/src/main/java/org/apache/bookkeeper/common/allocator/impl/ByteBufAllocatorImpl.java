@@ -24,9 +24,14 @@ import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.util.ResourceLeakDetector;
 import io.netty.util.ResourceLeakDetector.Level;
+import io.netty.util.internal.PlatformDependent;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.function.Consumer;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorWithOomHandler;
+import org.apache.bookkeeper.common.allocator.EntrySlabAllocator;
 import org.apache.bookkeeper.common.allocator.LeakDetectionPolicy;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
 import org.apache.bookkeeper.common.allocator.OutOfMemoryPolicy;
 import org.apache.bookkeeper.common.allocator.PoolingPolicy;
 import org.slf4j.Logger;
@@ -48,11 +53,14 @@ public class ByteBufAllocatorImpl extends AbstractByteBufAllocator implements By
     private final PoolingPolicy poolingPolicy;
     private final OutOfMemoryPolicy outOfMemoryPolicy;
     private Consumer<OutOfMemoryError> outOfMemoryListener;
+    private final Map<MemorySubsystem, EntrySlabAllocator> entrySlabAllocators =
+            new EnumMap<>(MemorySubsystem.class);
 
     ByteBufAllocatorImpl(ByteBufAllocator pooledAllocator, ByteBufAllocator unpooledAllocator,
             PoolingPolicy poolingPolicy, int poolingConcurrency, OutOfMemoryPolicy outOfMemoryPolicy,
             Consumer<OutOfMemoryError> outOfMemoryListener,
-            LeakDetectionPolicy leakDetectionPolicy) {
+            LeakDetectionPolicy leakDetectionPolicy, Map<MemorySubsystem, Long> entrySlabMemoryBudgets,
+            int entrySlabSize, int entrySlabMaxCapacity) {
         super(poolingPolicy == PoolingPolicy.PooledDirect /* preferDirect */);
 
         this.poolingPolicy = poolingPolicy;
@@ -91,6 +99,22 @@ public class ByteBufAllocatorImpl extends AbstractByteBufAllocator implements By
 
         this.unpooledAllocator = (unpooledAllocator != null) ? unpooledAllocator : UnpooledByteBufAllocator.DEFAULT;
 
+        // The slabs are direct memory handed out through unsafe direct buffers, so they are only used along with
+        // the pooled direct buffers
+        if (poolingPolicy == PoolingPolicy.PooledDirect && PlatformDependent.hasUnsafe()) {
+            entrySlabMemoryBudgets.forEach((subsystem, budget) -> {
+                if (budget > 0) {
+                    log.info("Allocating the {} entry buffers from slabs of {} bytes, with a budget of {} bytes"
+                            + " and buffers up to {} bytes", subsystem, entrySlabSize, budget, entrySlabMaxCapacity);
+                    entrySlabAllocators.put(subsystem, new EntrySlabAllocatorImpl(this, subsystem, budget,
+                            entrySlabSize, entrySlabMaxCapacity));
+                }
+            });
+        } else if (entrySlabMemoryBudgets.values().stream().anyMatch(budget -> budget > 0)) {
+            log.warn("Entry slabs are only used with the pooled direct buffers and unsafe available,"
+                    + " the entry buffers will not be allocated from slabs");
+        }
+
         // The setting is static in Netty, so it will actually affect all
         // allocators
         switch (leakDetectionPolicy) {
@@ -196,4 +220,9 @@ public class ByteBufAllocatorImpl extends AbstractByteBufAllocator implements By
     public void setOomHandler(Consumer<OutOfMemoryError> handler) {
         this.outOfMemoryListener = handler;
     }
+
+    @Override
+    public EntrySlabAllocator getEntrySlabAllocator(MemorySubsystem subsystem) {
+        return entrySlabAllocators.get(subsystem);
+    }
 }
@@ -0,0 +1,404 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator.impl;
+
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledUnsafeDirectByteBuf;
+import io.netty.util.internal.PlatformDependent;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.bookkeeper.common.allocator.EntrySlabAllocator;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
+
+/**
+ * Implementation of {@link EntrySlabAllocator}.
+ *
+ * <p>Each size class keeps the slabs with free slots in a queue, the slab at the head of the queue serving the
+ * allocations until it's full. A slab which becomes empty is freed, unless it's the only slab of its size class
+ * with free slots, so that a size class going back and forth between empty and one buffer doesn't allocate a slab
+ * each time. The kept empty slabs, which are counted so that the size classes are only scanned when there are some,
+ * are freed when a size class runs out of budget.
+ */
+class EntrySlabAllocatorImpl extends AbstractByteBufAllocator implements EntrySlabAllocator {
+
+    private static final int MIN_SLOT_SIZE = 64;
+    // Number of size classes between two powers of two
+    private static final int SIZE_CLASSES_PER_DOUBLING = 4;
+
+    private final ByteBufAllocator parent;
+    private final MemorySubsystem subsystem;
+    private final long memoryBudget;
+    private final int maxSlabbedCapacity;
+
+    private final int[] slotSizes;
+    private final SizeClass[] sizeClasses;
+
+    private final AtomicLong usedMemory = new AtomicLong();
+    private final AtomicInteger emptySlabs = new AtomicInteger();
+    private final LongAdder allocatedMemory = new LongAdder();
+    private final LongAdder requestedMemory = new LongAdder();
+    private final LongAdder slabbedAllocations = new LongAdder();
+    private final LongAdder spilledAllocations = new LongAdder();
+
+    EntrySlabAllocatorImpl(ByteBufAllocator parent, MemorySubsystem subsystem, long memoryBudget, int slabSize,
+                           int maxSlabbedCapacity) {
+        super(true /* preferDirect */);
+        if (slabSize <= 0 || maxSlabbedCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid entry slab size " + slabSize + " or max capacity "
+                    + maxSlabbedCapacity);
+        }
+        this.parent = parent;
+        this.subsystem = subsystem;
+        this.memoryBudget = memoryBudget;
+        this.maxSlabbedCapacity = maxSlabbedCapacity;
+
+        List<Integer> sizes = new ArrayList<>();
+        for (int base = MIN_SLOT_SIZE; base > 0 && base < maxSlabbedCapacity; base <<= 1) {
+            for (int i = 0; i < SIZE_CLASSES_PER_DOUBLING; i++) {
+                int size = base + i * (base / SIZE_CLASSES_PER_DOUBLING);
+                if (size >= maxSlabbedCapacity) {
+                    break;
+                }
+                sizes.add(size);
+            }
+        }
+        sizes.add(maxSlabbedCapacity);
+
+        this.slotSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+        this.sizeClasses = new SizeClass[slotSizes.length];
+        for (int i = 0; i < slotSizes.length; i++) {
+            sizeClasses[i] = new SizeClass(slotSizes[i], Math.max(1, slabSize / slotSizes[i]));
+        }
+    }
+
+    @Override
+    public MemorySubsystem getSubsystem() {
+        return subsystem;
+    }
+
+    @Override
+    public boolean isSlabbed(int capacity) {
+        return capacity > 0 && capacity <= maxSlabbedCapacity;
+    }
+
+    @Override
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    @Override
+    public long getUsedMemory() {
+        return usedMemory.get();
+    }
+
+    @Override
+    public long getAllocatedMemory() {
+        return allocatedMemory.sum();
+    }
+
+    @Override
+    public long getRequestedMemory() {
+        return requestedMemory.sum();
+    }
+
+    @Override
+    public long getSlabbedAllocations() {
+        return slabbedAllocations.sum();
+    }
+
+    @Override
+    public long getSpilledAllocations() {
+        return spilledAllocations.sum();
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return true;
+    }
+
+    @Override
+    protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+        return parent.heapBuffer(initialCapacity, maxCapacity);
+    }
+
+    @Override
+    public ByteBuf slabBuffer(int initialCapacity, int maxCapacity) {
+        if (initialCapacity > maxCapacity) {
+            throw new IllegalArgumentException("initialCapacity " + initialCapacity + " exceeds maxCapacity "
+                    + maxCapacity);
+        }
+        return newSlabBuffer(initialCapacity, maxCapacity);
+    }
+
+    @Override
+    protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+        ByteBuf buffer = newSlabBuffer(initialCapacity, maxCapacity);
+        if (buffer != null) {
+            return buffer;
+        }
+
+        if (initialCapacity > 0) {
+            spilledAllocations.increment();
+        }
+        return parent.directBuffer(initialCapacity, maxCapacity);
+    }
+
+    private ByteBuf newSlabBuffer(int initialCapacity, int maxCapacity) {
+        if (!isSlabbed(initialCapacity)) {
+            return null;
+        }
+        SizeClass sizeClass = sizeClassOf(initialCapacity);
+        Slot slot = sizeClass.allocateSlot();
+        if (slot == null && emptySlabs.get() > 0 && freeEmptySlabs()) {
+            slot = sizeClass.allocateSlot();
+        }
+        if (slot == null) {
+            return null;
+        }
+        slabbedAllocations.increment();
+        allocatedMemory.add(sizeClass.slotSize);
+        requestedMemory.add(initialCapacity);
+        return toLeakAwareBuffer(new SlabByteBuf(this, slot, initialCapacity, maxCapacity));
+    }
+
+    private SizeClass sizeClassOf(int capacity) {
+        int index = Arrays.binarySearch(slotSizes, capacity);
+        return sizeClasses[index >= 0 ? index : -index - 1];
+    }
+
+    private boolean reserveMemory(long size) {
+        while (true) {
+            long used = usedMemory.get();
+            if (used + size > memoryBudget) {
+                return false;
+            }
+            if (usedMemory.compareAndSet(used, used + size)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Free the empty slabs kept by the size classes, to make room in the budget for the other size classes.
+     *
+     * @return whether any slab has been freed
+     */
+    private boolean freeEmptySlabs() {
+        boolean freed = false;
+        for (SizeClass sizeClass : sizeClasses) {
+            freed |= sizeClass.freeEmptySlab();
+        }
+        return freed;
+    }
+
+    private void releaseSlot(Slot slot, int requestedCapacity) {
+        SizeClass sizeClass = slot.slab.sizeClass;
+        sizeClass.releaseSlot(slot);
+        allocatedMemory.add(-sizeClass.slotSize);
+        requestedMemory.add(-requestedCapacity);
+    }
+
+    /**
+     * Slots of the same size, in slabs of memory.
+     */
+    private final class SizeClass {
+        private final int slotSize;
+        private final int slotsPerSlab;
+        private final ArrayDeque<Slab> partialSlabs = new ArrayDeque<>();
+
+        SizeClass(int slotSize, int slotsPerSlab) {
+            this.slotSize = slotSize;
+            this.slotsPerSlab = slotsPerSlab;
+        }
+
+        /**
+         * @return the slot, or null if no slab can be allocated within the budget
+         */
+        synchronized Slot allocateSlot() {
+            Slab slab = partialSlabs.peekFirst();
+            if (slab == null) {
+                slab = newSlab();
+                if (slab == null) {
+                    return null;
+                }
+                partialSlabs.addFirst(slab);
+            } else if (slab.numFree == slotsPerSlab) {
+                // the kept empty slab is used again
+                emptySlabs.decrementAndGet();
+            }
+
+            Slot slot = slab.takeSlot();
+            if (slab.numFree == 0) {
+                partialSlabs.pollFirst();
+            }
+            return slot;
+        }
+
+        synchronized void releaseSlot(Slot slot) {
+            Slab slab = slot.slab;
+            slab.returnSlot(slot.index);
+            if (slab.numFree == 1) {
+                partialSlabs.addFirst(slab);
+            }
+            if (slab.numFree == slotsPerSlab) {
+                if (partialSlabs.size() > 1) {
+                    partialSlabs.remove(slab);
+                    slab.free();
+                } else {
+                    emptySlabs.incrementAndGet();
+                }
+            }
+        }
+
+        synchronized boolean freeEmptySlab() {
+            // the kept empty slab was the only slab with free slots, the ones which got free slots since then
+            // being added before it
+            Slab slab = partialSlabs.peekLast();
+            if (slab != null && slab.numFree == slotsPerSlab) {
+                partialSlabs.pollLast();
+                slab.free();
+                emptySlabs.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private Slab newSlab() {
+            long slabSize = (long) slotSize * slotsPerSlab;
+            if (!reserveMemory(slabSize)) {
+                return null;
+            }
+            try {
+                return new Slab(this, ByteBuffer.allocateDirect((int) slabSize));
+            } catch (OutOfMemoryError e) {
+                // Leave the allocation to the parent allocator, which applies the out of memory policy
+                usedMemory.addAndGet(-slabSize);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Slab of memory, divided in slots of the size of its size class.
+     */
+    private final class Slab {
+        private final SizeClass sizeClass;
+        private final ByteBuffer memory;
+        private final int[] freeSlots;
+        private int numFree;
+
+        Slab(SizeClass sizeClass, ByteBuffer memory) {
+            this.sizeClass = sizeClass;
+            this.memory = memory;
+            this.freeSlots = new int[sizeClass.slotsPerSlab];
+            // Hand out the slots in address order
+            for (int i = 0; i < freeSlots.length; i++) {
+                freeSlots[i] = freeSlots.length - 1 - i;
+            }
+            this.numFree = freeSlots.length;
+        }
+
+        Slot takeSlot() {
+            return new Slot(this, freeSlots[--numFree]);
+        }
+
+        void returnSlot(int index) {
+            freeSlots[numFree++] = index;
+        }
+
+        void free() {
+            usedMemory.addAndGet(-(long) sizeClass.slotSize * sizeClass.slotsPerSlab);
+            PlatformDependent.freeDirectBuffer(memory);
+        }
+    }
+
+    /**
+     * Slot of a slab.
+     */
+    private static final class Slot {
+        private final Slab slab;
+        private final int index;
+
+        Slot(Slab slab, int index) {
+            this.slab = slab;
+            this.index = index;
+        }
+
+        /**
+         * @return the memory of the first bytes of the slot
+         */
+        ByteBuffer memory(int capacity) {
+            int offset = index * slab.sizeClass.slotSize;
+            ByteBuffer memory = slab.memory.duplicate();
+            memory.limit(offset + capacity).position(offset);
+            return memory;
+        }
+    }
+
+    /**
+     * Direct buffer on the memory of a slot, giving back the slot when released or when its capacity changes.
+     *
+     * <p>The memory of the slot is not freed by the unsafe direct buffer, since it's a slice of the slab. Once its
+     * capacity changes, the buffer moves to its own direct memory, which is freed as usual on release.
+     */
+    private static final class SlabByteBuf extends UnpooledUnsafeDirectByteBuf {
+        private final EntrySlabAllocatorImpl allocator;
+        private final int requestedCapacity;
+        private Slot slot;
+
+        SlabByteBuf(EntrySlabAllocatorImpl allocator, Slot slot, int initialCapacity, int maxCapacity) {
+            super(allocator, slot.memory(initialCapacity), maxCapacity);
+            this.allocator = allocator;
+            this.requestedCapacity = initialCapacity;
+            this.slot = slot;
+            // The buffer wraps the slot as a readable buffer, while a new buffer is empty
+            clear();
+        }
+
+        @Override
+        public ByteBuf capacity(int newCapacity) {
+            int oldCapacity = capacity();
+            super.capacity(newCapacity);
+            if (newCapacity != oldCapacity) {
+                releaseSlot();
+            }
+            return this;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            releaseSlot();
+        }
+
+        private void releaseSlot() {
+            if (slot != null) {
+                allocator.releaseSlot(slot, requestedCapacity);
+                slot = null;
+            }
+        }
+    }
+}
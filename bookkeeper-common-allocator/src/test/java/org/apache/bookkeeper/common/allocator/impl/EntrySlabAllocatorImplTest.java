@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link EntrySlabAllocatorImpl}.
+ */
+public class EntrySlabAllocatorImplTest {
+
+    private static EntrySlabAllocatorImpl newAllocator(long budget, int slabSize, int maxCapacity) {
+        return new EntrySlabAllocatorImpl(new UnpooledByteBufAllocator(true), MemorySubsystem.Journal, budget,
+                slabSize, maxCapacity);
+    }
+
+    // the size of the slot of a buffer with the given capacity
+    private static long slotSize(EntrySlabAllocatorImpl allocator, int capacity) {
+        ByteBuf buf = allocator.directBuffer(capacity, capacity);
+        try {
+            return allocator.getAllocatedMemory();
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static List<ByteBuf> allocate(EntrySlabAllocatorImpl allocator, int count, int capacity) {
+        List<ByteBuf> buffers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            buffers.add(allocator.directBuffer(capacity, capacity));
+        }
+        return buffers;
+    }
+
+    @Test
+    public void testSizeClasses() {
+        EntrySlabAllocatorImpl allocator = newAllocator(64 * 1024 * 1024, 1024 * 1024, 64 * 1024);
+        assertEquals(64, slotSize(allocator, 1));
+        assertEquals(64, slotSize(allocator, 64));
+        assertEquals(80, slotSize(allocator, 65));
+        assertEquals(112, slotSize(allocator, 100));
+        assertEquals(1024, slotSize(allocator, 1000));
+        assertEquals(1280, slotSize(allocator, 1025));
+        assertEquals(64 * 1024, slotSize(allocator, 60 * 1024));
+        assertEquals(64 * 1024, slotSize(allocator, 64 * 1024));
+        assertEquals(0, allocator.getAllocatedMemory());
+        assertEquals(0, allocator.getRequestedMemory());
+        assertEquals(0, allocator.getSpilledAllocations());
+
+        // a buffer wastes at most 20% of its slot
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            int capacity = 64 + random.nextInt(64 * 1024 - 64);
+            long slotSize = slotSize(allocator, capacity);
+            assertTrue(capacity + " in " + slotSize, slotSize >= capacity && slotSize - capacity <= slotSize / 5);
+        }
+    }
+
+    @Test
+    public void testBuffers() {
+        EntrySlabAllocatorImpl allocator = newAllocator(1024 * 1024, 64 * 1024, 4096);
+        List<ByteBuf> buffers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ByteBuf buf = allocator.directBuffer(100, 100);
+            assertTrue(buf.isDirect());
+            assertEquals(0, buf.readableBytes());
+            assertEquals(100, buf.capacity());
+            buf.writeLong(i);
+            buffers.add(buf);
+        }
+        // the slots don't overlap
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, buffers.get(i).getLong(0));
+        }
+        assertEquals(100, allocator.getSlabbedAllocations());
+        assertEquals(100 * 112, allocator.getAllocatedMemory());
+        assertEquals(100 * 100, allocator.getRequestedMemory());
+        assertEquals(1 - 100.0 / 112, allocator.getInternalFragmentation(), 1e-9);
+
+        buffers.forEach(ByteBuf::release);
+        assertEquals(0, allocator.getAllocatedMemory());
+        assertEquals(0, allocator.getRequestedMemory());
+    }
+
+    @Test
+    public void testSpilledAllocations() {
+        // two slabs of 4 slots of 1024 bytes
+        EntrySlabAllocatorImpl allocator = newAllocator(8192, 4096, 1024);
+        List<ByteBuf> buffers = allocate(allocator, 8, 1024);
+        assertEquals(8192, allocator.getUsedMemory());
+        assertEquals(0, allocator.getExternalFragmentation(), 0.0);
+
+        // over budget
+        ByteBuf spilled = allocator.directBuffer(1024, 1024);
+        assertEquals(1, allocator.getSpilledAllocations());
+        assertNull(allocator.slabBuffer(1024, 1024));
+        assertEquals(1, allocator.getSpilledAllocations());
+        // too large
+        ByteBuf large = allocator.directBuffer(1025, 1025);
+        assertNull(allocator.slabBuffer(1025, 1025));
+        assertEquals(2, allocator.getSpilledAllocations());
+        assertEquals(8, allocator.getSlabbedAllocations());
+        assertEquals(8192, allocator.getAllocatedMemory());
+        spilled.release();
+        large.release();
+
+        buffers.remove(0).release();
+        ByteBuf slabbed = allocator.slabBuffer(1000, 1024);
+        assertNotNull(slabbed);
+        assertEquals(9, allocator.getSlabbedAllocations());
+        assertEquals(2, allocator.getSpilledAllocations());
+        slabbed.release();
+        buffers.forEach(ByteBuf::release);
+
+        // the empty buffers are not slabbed
+        assertEquals(0, allocator.directBuffer(0, 0).capacity());
+        assertEquals(2, allocator.getSpilledAllocations());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSlabBufferInvalidCapacity() {
+        newAllocator(8192, 4096, 1024).slabBuffer(100, 10);
+    }
+
+    @Test
+    public void testEmptySlabs() {
+        // three slabs of 4 slots of 1024 bytes
+        EntrySlabAllocatorImpl allocator = newAllocator(3 * 4096, 4096, 1024);
+        List<ByteBuf> first = allocate(allocator, 4, 1024);
+        List<ByteBuf> second = allocate(allocator, 4, 1024);
+        assertEquals(2 * 4096, allocator.getUsedMemory());
+
+        // an empty slab is freed while another slab of its size class has free slots
+        second.remove(0).release();
+        first.forEach(ByteBuf::release);
+        assertEquals(4096, allocator.getUsedMemory());
+
+        // but the only slab with free slots is kept
+        second.forEach(ByteBuf::release);
+        assertEquals(4096, allocator.getUsedMemory());
+        assertEquals(1, allocator.getExternalFragmentation(), 0.0);
+
+        // and used again by the next buffers of its size class
+        List<ByteBuf> third = allocate(allocator, 2, 1024);
+        assertEquals(4096, allocator.getUsedMemory());
+        third.forEach(ByteBuf::release);
+
+        // or freed to make room in the budget for the other size classes
+        List<ByteBuf> small = allocate(allocator, 3 * 64, 64);
+        assertEquals(3 * 4096, allocator.getUsedMemory());
+        assertEquals(0, allocator.getSpilledAllocations());
+        assertEquals(3 * 64 * 64, allocator.getAllocatedMemory());
+        small.forEach(ByteBuf::release);
+    }
+
+    @Test
+    public void testKeptEmptySlabFreedBehindOtherSlabs() {
+        // two slabs of 4 slots of 1024 bytes
+        EntrySlabAllocatorImpl allocator = newAllocator(2 * 4096, 4096, 1024);
+        List<ByteBuf> first = allocate(allocator, 4, 1024);
+        List<ByteBuf> second = allocate(allocator, 4, 1024);
+        // the first slab is the only one with free slots once empty, so it's kept
+        first.forEach(ByteBuf::release);
+        second.remove(0).release();
+        assertEquals(2 * 4096, allocator.getUsedMemory());
+
+        // the kept empty slab is freed for another size class, although the second slab has free slots
+        ByteBuf small = allocator.directBuffer(64, 64);
+        assertEquals(0, allocator.getSpilledAllocations());
+        assertEquals(2 * 4096, allocator.getUsedMemory());
+        small.release();
+        second.forEach(ByteBuf::release);
+    }
+
+    @Test
+    public void testCapacityChange() {
+        EntrySlabAllocatorImpl allocator = newAllocator(1024 * 1024, 64 * 1024, 4096);
+        ByteBuf buf = allocator.directBuffer(100, 10000);
+        for (int i = 0; i < 10; i++) {
+            buf.writeLong(i);
+        }
+        assertEquals(112, allocator.getAllocatedMemory());
+
+        // the buffer moves out of its slot when it grows
+        for (int i = 10; i < 1000; i++) {
+            buf.writeLong(i);
+        }
+        assertTrue(buf.capacity() >= 8000);
+        assertEquals(0, allocator.getAllocatedMemory());
+        assertEquals(0, allocator.getRequestedMemory());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, buf.readLong());
+        }
+
+        // the slot is given back once
+        ByteBuf other = allocator.directBuffer(100, 100);
+        buf.release();
+        assertEquals(112, allocator.getAllocatedMemory());
+        other.release();
+        assertEquals(0, allocator.getAllocatedMemory());
+
+        // and when the buffer shrinks
+        buf = allocator.directBuffer(1000, 1000);
+        buf.writeBytes(new byte[500]);
+        buf.capacity(500);
+        assertEquals(0, allocator.getAllocatedMemory());
+        assertEquals(500, buf.readableBytes());
+        buf.release();
+        assertEquals(0, allocator.getAllocatedMemory());
+    }
+}
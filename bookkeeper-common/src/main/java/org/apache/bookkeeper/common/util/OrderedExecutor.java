@@ -25,18 +25,24 @@ import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
@@ -55,11 +61,17 @@ import org.slf4j.MDC;
  * basic amount of ordering we want (e.g. , per ledger handle). Ordering is
  * achieved by hashing the key objects to threads by their {@link #hashCode()}
  * method.
+ *
+ * <p>With work stealing enabled, the keys are hashed to stripes rather than to threads:
+ * the tasks of a stripe are executed in order, but any idle thread of a shared
+ * work-stealing pool can run them, as well as the tasks submitted without a key. A hot
+ * key then no longer delays the unrelated keys which were hashed to the same thread.
  */
 @Slf4j
 public class OrderedExecutor implements ExecutorService {
     public static final int NO_TASK_LIMIT = -1;
     private static final int DEFAULT_MAX_ARRAY_QUEUE_SIZE = 10_000;
+    public static final int DEFAULT_STRIPES_PER_THREAD = 16;
     protected static final long WARN_TIME_MICRO_SEC_DEFAULT = TimeUnit.SECONDS.toMicros(1);
 
     final String name;
@@ -75,6 +87,9 @@ public class OrderedExecutor implements ExecutorService {
     final boolean enableBusyWait;
     // we only want thread-scoped metrics on the server-side where it can be explicitly enabled
     final boolean enableThreadScopedMetrics;
+    // shared pool running the stripes and the unkeyed tasks, null if work stealing is disabled
+    final ForkJoinPool workStealingPool;
+    final ExecutorService unorderedExecutor;
 
     public static Builder newBuilder() {
         return new Builder();
@@ -93,7 +108,7 @@ public class OrderedExecutor implements ExecutorService {
             return new OrderedExecutor(name, numThreads, threadFactory, statsLogger,
                                            traceTaskExecution, preserveMdcForTaskExecution,
                                            warnTimeMicroSec, maxTasksInQueue, enableBusyWait,
-                                           enableThreadScopedMetrics);
+                                           enableThreadScopedMetrics, enableWorkStealing, stripesPerThread);
         }
     }
 
@@ -111,6 +126,8 @@ public class OrderedExecutor implements ExecutorService {
         protected int maxTasksInQueue = NO_TASK_LIMIT;
         protected boolean enableBusyWait = false;
         protected boolean enableThreadScopedMetrics = false;
+        protected boolean enableWorkStealing = false;
+        protected int stripesPerThread = DEFAULT_STRIPES_PER_THREAD;
 
         public AbstractBuilder<T> name(String name) {
             this.name = name;
@@ -162,6 +179,20 @@ public class OrderedExecutor implements ExecutorService {
             return this;
         }
 
+        /**
+         * Run the tasks on a shared work-stealing pool, keeping the ordering per key through
+         * {@link #stripesPerThread(int)} stripes per thread. Not supported by {@link OrderedScheduler}.
+         */
+        public AbstractBuilder<T> enableWorkStealing(boolean enableWorkStealing) {
+            this.enableWorkStealing = enableWorkStealing;
+            return this;
+        }
+
+        public AbstractBuilder<T> stripesPerThread(int stripesPerThread) {
+            this.stripesPerThread = stripesPerThread;
+            return this;
+        }
+
         @SuppressWarnings("unchecked")
         public T build() {
             if (null == threadFactory) {
@@ -177,7 +208,9 @@ public class OrderedExecutor implements ExecutorService {
                 warnTimeMicroSec,
                 maxTasksInQueue,
                 enableBusyWait,
-                enableThreadScopedMetrics);
+                enableThreadScopedMetrics,
+                enableWorkStealing,
+                stripesPerThread);
         }
     }
 
@@ -293,6 +326,103 @@ public class OrderedExecutor implements ExecutorService {
         }
     }
 
+    /**
+     * Worker thread of the work-stealing pool.
+     */
+    private static class WorkStealingThread extends ForkJoinWorkerThread {
+        private final String baseName;
+        private final boolean enableThreadScopedMetrics;
+        private final boolean enableBusyWait;
+
+        WorkStealingThread(ForkJoinPool pool, String name, String baseName,
+                           boolean enableThreadScopedMetrics, boolean enableBusyWait) {
+            super(pool);
+            setName(name + "-" + getPoolIndex());
+            this.baseName = baseName;
+            this.enableThreadScopedMetrics = enableThreadScopedMetrics;
+            this.enableBusyWait = enableBusyWait;
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            if (enableThreadScopedMetrics) {
+                ThreadRegistry.register(baseName, getPoolIndex());
+            }
+            if (enableBusyWait) {
+                try {
+                    CpuAffinity.acquireCore();
+                } catch (Throwable t) {
+                    log.warn("Failed to acquire CPU core for thread {}: {}", getName(), t.getMessage(), t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks submitted without a key on the work-stealing pool, limiting the number of pending ones.
+     */
+    private static class WorkStealingPoolExecutor extends AbstractExecutorService {
+        private final ForkJoinPool pool;
+        private final int maxQueueCapacity;
+        private final AtomicInteger queuedTasks = new AtomicInteger(0);
+
+        /**
+         * @param pool the pool running the tasks
+         * @param maxQueueCapacity the max number of pending tasks, 0 or less for no limit
+         */
+        WorkStealingPoolExecutor(ForkJoinPool pool, int maxQueueCapacity) {
+            this.pool = pool;
+            this.maxQueueCapacity = maxQueueCapacity;
+        }
+
+        @Override
+        public void execute(Runnable r) {
+            if (maxQueueCapacity <= 0) {
+                pool.execute(r);
+                return;
+            }
+            if (queuedTasks.incrementAndGet() > maxQueueCapacity) {
+                queuedTasks.decrementAndGet();
+                throw new SingleThreadExecutor.ExecutorRejectedException("Executor queue is full");
+            }
+            try {
+                pool.execute(() -> {
+                    queuedTasks.decrementAndGet();
+                    r.run();
+                });
+            } catch (RejectedExecutionException e) {
+                queuedTasks.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            pool.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return pool.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return pool.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return pool.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return pool.awaitTermination(timeout, unit);
+        }
+    }
+
     protected ExecutorService getBoundedExecutor(ExecutorService executor) {
         checkArgument(executor instanceof ThreadPoolExecutor);
         return new BoundedExecutorService((ThreadPoolExecutor) executor, this.maxTasksInQueue);
@@ -377,17 +507,66 @@ public class OrderedExecutor implements ExecutorService {
                                 StatsLogger statsLogger, boolean traceTaskExecution,
                                 boolean preserveMdcForTaskExecution, long warnTimeMicroSec, int maxTasksInQueue,
                                 boolean enableBusyWait, boolean enableThreadScopedMetrics) {
+        this(baseName, numThreads, threadFactory, statsLogger, traceTaskExecution, preserveMdcForTaskExecution,
+                warnTimeMicroSec, maxTasksInQueue, enableBusyWait, enableThreadScopedMetrics,
+                false, DEFAULT_STRIPES_PER_THREAD);
+    }
+
+    /**
+     * Constructs Safe executor.
+     *
+     * @param enableWorkStealing
+     *            - should we run the tasks on a shared work-stealing pool
+     * @param stripesPerThread
+     *            - number of ordered stripes per thread when work stealing is enabled.
+     *              maxTasksInQueue then applies to each stripe, and to the unkeyed tasks of each thread
+     */
+    protected OrderedExecutor(String baseName, int numThreads, ThreadFactory threadFactory,
+                                StatsLogger statsLogger, boolean traceTaskExecution,
+                                boolean preserveMdcForTaskExecution, long warnTimeMicroSec, int maxTasksInQueue,
+                                boolean enableBusyWait, boolean enableThreadScopedMetrics,
+                                boolean enableWorkStealing, int stripesPerThread) {
         checkArgument(numThreads > 0);
         checkArgument(!StringUtils.isBlank(baseName));
+        checkArgument(!enableWorkStealing || stripesPerThread > 0);
 
         this.maxTasksInQueue = maxTasksInQueue;
         this.warnTimeMicroSec = warnTimeMicroSec;
         this.enableBusyWait = enableBusyWait;
         this.enableThreadScopedMetrics = enableThreadScopedMetrics;
         name = baseName;
-        threads = new ExecutorService[numThreads];
-        threadIds = new long[numThreads];
-        for (int i = 0; i < numThreads; i++) {
+        if (enableWorkStealing) {
+            final String threadName = name + "-" + getClass().getSimpleName();
+            workStealingPool = new ForkJoinPool(numThreads,
+                    pool -> new WorkStealingThread(pool, threadName, baseName,
+                            enableThreadScopedMetrics, enableBusyWait),
+                    null, true /* asyncMode */);
+            // the unkeyed tasks are bounded as they would be by the queues of the threads
+            ExecutorService unordered = new WorkStealingPoolExecutor(workStealingPool,
+                    maxTasksInQueue > 0 ? (int) Math.min(Integer.MAX_VALUE, (long) maxTasksInQueue * numThreads) : 0);
+            if (traceTaskExecution || preserveMdcForTaskExecution) {
+                unordered = addExecutorDecorators(unordered);
+            }
+            unorderedExecutor = unordered;
+            threads = new ExecutorService[numThreads * stripesPerThread];
+            // keys are not bound to a thread
+            threadIds = new long[threads.length];
+            Arrays.fill(threadIds, -1L);
+        } else {
+            workStealingPool = null;
+            unorderedExecutor = null;
+            threads = new ExecutorService[numThreads];
+            threadIds = new long[numThreads];
+        }
+        for (int i = 0; i < threads.length; i++) {
+            if (null != workStealingPool) {
+                ExecutorService stripe = new OrderedStripeExecutor(workStealingPool, maxTasksInQueue);
+                if (traceTaskExecution || preserveMdcForTaskExecution) {
+                    stripe = addExecutorDecorators(stripe);
+                }
+                threads[i] = stripe;
+                continue;
+            }
             ExecutorService thread = createSingleThreadExecutor(
                     new ThreadFactoryBuilder().setNameFormat(name + "-" + getClass().getSimpleName() + "-" + i + "-%d")
                     .setThreadFactory(threadFactory).build());
@@ -470,6 +649,32 @@ public class OrderedExecutor implements ExecutorService {
             }
         }
 
+        if (null != workStealingPool) {
+            final ForkJoinPool pool = workStealingPool;
+            statsLogger.registerGauge(String.format("%s-queue", name), new Gauge<Number>() {
+                @Override
+                public Number getDefaultValue() {
+                    return 0;
+                }
+
+                @Override
+                public Number getSample() {
+                    return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+                }
+            });
+            statsLogger.registerGauge(String.format("%s-steals", name), new Gauge<Number>() {
+                @Override
+                public Number getDefaultValue() {
+                    return 0;
+                }
+
+                @Override
+                public Number getSample() {
+                    return pool.getStealCount();
+                }
+            });
+        }
+
         statsLogger.registerGauge(String.format("%s-threads", name), new Gauge<Number>() {
             @Override
             public Number getDefaultValue() {
@@ -567,6 +772,11 @@ public class OrderedExecutor implements ExecutorService {
     }
 
     public ExecutorService chooseThread() {
+        // unkeyed tasks can run on any thread of the work-stealing pool
+        if (null != unorderedExecutor) {
+            return unorderedExecutor;
+        }
+
         // skip random # generation in this special case
         if (threads.length == 1) {
             return threads[0];
@@ -582,7 +792,7 @@ public class OrderedExecutor implements ExecutorService {
         }
 
         if (null == orderingKey) {
-            return threads[rand.nextInt(threads.length)];
+            return chooseThread();
         } else {
             return threads[chooseThreadIdx(orderingKey.hashCode(), threads.length)];
         }
@@ -704,6 +914,9 @@ public class OrderedExecutor implements ExecutorService {
         for (int i = 0; i < threads.length; i++) {
             threads[i].shutdown();
         }
+        if (null != workStealingPool) {
+            workStealingPool.shutdown();
+        }
     }
 
     /**
@@ -715,6 +928,9 @@ public class OrderedExecutor implements ExecutorService {
         for (ExecutorService executor : threads) {
             runnables.addAll(executor.shutdownNow());
         }
+        if (null != workStealingPool) {
+            runnables.addAll(workStealingPool.shutdownNow());
+        }
         return runnables;
     }
 
@@ -748,6 +964,9 @@ public class OrderedExecutor implements ExecutorService {
      */
     @Override
     public boolean isTerminated() {
+        if (null != workStealingPool && !workStealingPool.isTerminated()) {
+            return false;
+        }
         for (ExecutorService executor : threads) {
             if (!executor.isTerminated()) {
                 return false;
@@ -771,6 +990,9 @@ public class OrderedExecutor implements ExecutorService {
                 Thread.currentThread().interrupt();
             }
         }
+        if (null != workStealingPool && !workStealingPool.isTerminated()) {
+            workStealingPool.shutdownNow();
+        }
     }
 
 }
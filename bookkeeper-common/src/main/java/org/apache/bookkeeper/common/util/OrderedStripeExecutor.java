@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+
+/**
+ * Implements an executor that runs its tasks one at a time, in submission order, on the threads
+ * of a shared work-stealing pool.
+ *
+ * <p>The stripe is scheduled on the pool whenever it has pending tasks, and drains them in batches.
+ * As a stripe is never scheduled twice at the same time, the tasks of a stripe are executed in order,
+ * while any idle thread of the pool can pick up the next batch of a busy stripe.
+ *
+ * <p>Tasks are executed in a safe manner: if there are exceptions they are logged and the executor will
+ * proceed with the next tasks.
+ */
+@Slf4j
+class OrderedStripeExecutor extends AbstractExecutorService implements ExecutorService {
+    // max number of tasks run in a batch, before giving the pool thread a chance to run other stripes
+    static final int MAX_TASKS_PER_BATCH = 64;
+
+    private final ForkJoinPool pool;
+    private final MpscUnboundedArrayQueue<Runnable> queue = new MpscUnboundedArrayQueue<>(64);
+    private final int maxQueueCapacity;
+    private final AtomicInteger queuedTasks = new AtomicInteger(0);
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Runnable drainTask = this::drain;
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param pool the pool running the tasks
+     * @param maxQueueCapacity the max number of pending tasks, 0 or less for no limit
+     */
+    OrderedStripeExecutor(ForkJoinPool pool, int maxQueueCapacity) {
+        this.pool = pool;
+        this.maxQueueCapacity = maxQueueCapacity;
+    }
+
+    @Override
+    public void execute(Runnable r) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shutting down");
+        }
+        if (queuedTasks.incrementAndGet() > maxQueueCapacity && maxQueueCapacity > 0) {
+            queuedTasks.decrementAndGet();
+            throw new SingleThreadExecutor.ExecutorRejectedException("Executor queue is full");
+        }
+        queue.offer(r);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                pool.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                // the pool no longer accepts tasks, the pending ones are left to shutdownNow()
+                scheduled.set(false);
+                shutdown = true;
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            for (int i = 0; i < MAX_TASKS_PER_BATCH; i++) {
+                Runnable r = queue.poll();
+                if (null == r) {
+                    break;
+                }
+                queuedTasks.decrementAndGet();
+                safeRunTask(r);
+            }
+            scheduled.set(false);
+            // a task may have been added after the last poll, before the stripe was marked as idle
+            if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                pool.execute(drainTask);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the pool is shutting down, the tasks accepted before still run, on this pool thread
+            }
+        }
+    }
+
+    private static void safeRunTask(Runnable r) {
+        try {
+            r.run();
+        } catch (Throwable t) {
+            log.error("Error while running task: {}", t.getMessage(), t);
+        }
+    }
+
+    int getQueuedTasksCount() {
+        return queuedTasks.get();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> remainingTasks = new ArrayList<>();
+        // only the thread owning the stripe can consume its queue
+        if (scheduled.compareAndSet(false, true)) {
+            queue.drain(remainingTasks::add);
+            queuedTasks.addAndGet(-remainingTasks.size());
+            scheduled.set(false);
+        }
+        return remainingTasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && !scheduled.get() && queue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit) || isTerminated();
+    }
+}
@@ -289,9 +289,9 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
                 });
     }
 
-    private static class ExecutorRejectedException extends RejectedExecutionException {
+    static class ExecutorRejectedException extends RejectedExecutionException {
 
-        private ExecutorRejectedException(String msg) {
+        ExecutorRejectedException(String msg) {
             super(msg);
         }
         @Override
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests of the work-stealing mode of {@link OrderedExecutor}.
+ */
+public class OrderedExecutorWorkStealingTest {
+
+    private static final int NUM_KEYS = 50;
+    private static final int TASKS_PER_KEY = 1000;
+
+    private OrderedExecutor executor;
+
+    @After
+    public void teardown() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private OrderedExecutor newExecutor(int numThreads, int maxTasksInQueue) {
+        return OrderedExecutor.newBuilder()
+                .name("test-work-stealing")
+                .numThreads(numThreads)
+                .maxTasksInQueue(maxTasksInQueue)
+                .enableWorkStealing(true)
+                .stripesPerThread(2)
+                .build();
+    }
+
+    @Test
+    public void testOrderPerKeyUnderStealing() throws Exception {
+        executor = newExecutor(4, OrderedExecutor.NO_TASK_LIMIT);
+        List<List<Integer>> executed = new ArrayList<>();
+        List<AtomicBoolean> running = new ArrayList<>();
+        for (int key = 0; key < NUM_KEYS; key++) {
+            executed.add(Collections.synchronizedList(new ArrayList<>()));
+            running.add(new AtomicBoolean(false));
+        }
+        AtomicInteger overlaps = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(NUM_KEYS * TASKS_PER_KEY);
+
+        // key 0 is hot and slow, so the other threads steal the stripes hashed along it
+        for (int seq = 0; seq < TASKS_PER_KEY; seq++) {
+            for (int key = 0; key < NUM_KEYS; key++) {
+                final int k = key;
+                final int s = seq;
+                executor.executeOrdered(key, () -> {
+                    if (!running.get(k).compareAndSet(false, true)) {
+                        overlaps.incrementAndGet();
+                    }
+                    if (k == 0 && s % 100 == 0) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    executed.get(k).add(s);
+                    running.get(k).set(false);
+                    done.countDown();
+                });
+            }
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        assertEquals(0, overlaps.get());
+        for (int key = 0; key < NUM_KEYS; key++) {
+            List<Integer> seqs = executed.get(key);
+            assertEquals(TASKS_PER_KEY, seqs.size());
+            for (int seq = 0; seq < TASKS_PER_KEY; seq++) {
+                assertEquals("order of key " + key, seq, (int) seqs.get(seq));
+            }
+        }
+        assertEquals(-1L, executor.getThreadID(0));
+    }
+
+    @Test
+    public void testOrderPerKeyWithConcurrentProducers() throws Exception {
+        executor = newExecutor(4, OrderedExecutor.NO_TASK_LIMIT);
+        int numProducers = 4;
+        // the tasks of each producer for a key must run in the order the producer submitted them
+        List<List<int[]>> executed = new ArrayList<>();
+        for (int key = 0; key < NUM_KEYS; key++) {
+            executed.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        CountDownLatch done = new CountDownLatch(numProducers * NUM_KEYS * TASKS_PER_KEY / 10);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < numProducers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int seq = 0; seq < TASKS_PER_KEY / 10; seq++) {
+                    for (int key = 0; key < NUM_KEYS; key++) {
+                        final int[] task = { producer, seq };
+                        final int k = key;
+                        executor.executeOrdered(key, () -> {
+                            executed.get(k).add(task);
+                            done.countDown();
+                        });
+                    }
+                    // interleave the unkeyed tasks, which run on any thread
+                    executor.execute(() -> { });
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        for (int key = 0; key < NUM_KEYS; key++) {
+            int[] lastSeq = new int[numProducers];
+            Arrays.fill(lastSeq, -1);
+            for (int[] task : executed.get(key)) {
+                assertTrue("order of key " + key, task[1] > lastSeq[task[0]]);
+                lastSeq[task[0]] = task[1];
+            }
+        }
+    }
+
+    @Test
+    public void testUnkeyedTasksBounded() throws Exception {
+        executor = newExecutor(1, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // the running task is no longer pending
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch ran = new CountDownLatch(2);
+        executor.execute(ran::countDown);
+        executor.execute(ran::countDown);
+        try {
+            executor.execute(() -> fail("rejected task run"));
+            fail("unkeyed tasks should be bounded by maxTasksInQueue");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        release.countDown();
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+        // room again once the pending tasks ran
+        CountDownLatch again = new CountDownLatch(1);
+        executor.execute(again::countDown);
+        assertTrue(again.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejectionSurfacedWhenPoolShutDown() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        pool.shutdown();
+        OrderedStripeExecutor stripe = new OrderedStripeExecutor(pool, OrderedExecutor.NO_TASK_LIMIT);
+        AtomicBoolean ran = new AtomicBoolean(false);
+        Runnable task = () -> ran.set(true);
+        try {
+            stripe.execute(task);
+            fail("the rejection of the pool should be surfaced");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        // not run in the caller thread, but left to shutdownNow()
+        assertFalse(ran.get());
+        assertTrue(stripe.isShutdown());
+        assertEquals(Collections.singletonList(task), stripe.shutdownNow());
+        assertTrue(stripe.isTerminated());
+    }
+}
@@ -56,6 +56,9 @@ public abstract class HttpRouter<Handler> {
     public static final String BOOKIE_INFO                  = "/api/v1/bookie/info";
     public static final String CLUSTER_INFO                  = "/api/v1/bookie/cluster_info";
     public static final String ENTRY_LOCATION_COMPACT       = "/api/v1/bookie/entry_location_compact";
+    public static final String REQUEST_TRACES               = "/api/v1/bookie/request_traces";
+    public static final String LEDGER_IO                    = "/api/v1/bookie/ledger_io";
+    public static final String THREAD_PLACEMENT             = "/api/v1/bookie/thread_placement";
     // autorecovery
     public static final String AUTORECOVERY_STATUS          = "/api/v1/autorecovery/status";
     public static final String RECOVERY_BOOKIE              = "/api/v1/autorecovery/bookie";
@@ -100,6 +103,9 @@ public abstract class HttpRouter<Handler> {
             handlerFactory.newHandler(HttpServer.ApiType.RESUME_GC_COMPACTION));
         this.endpointHandlers.put(ENTRY_LOCATION_COMPACT,
                 handlerFactory.newHandler(HttpServer.ApiType.TRIGGER_ENTRY_LOCATION_COMPACT));
+        this.endpointHandlers.put(REQUEST_TRACES, handlerFactory.newHandler(HttpServer.ApiType.REQUEST_TRACES));
+        this.endpointHandlers.put(LEDGER_IO, handlerFactory.newHandler(HttpServer.ApiType.LEDGER_IO));
+        this.endpointHandlers.put(THREAD_PLACEMENT, handlerFactory.newHandler(HttpServer.ApiType.THREAD_PLACEMENT));
 
         // autorecovery
         this.endpointHandlers.put(AUTORECOVERY_STATUS, handlerFactory
@@ -69,6 +69,45 @@ public interface BookKeeperServerStats {
     String GET_BOOKIE_INFO = "GET_BOOKIE_INFO";
     String GET_LIST_OF_ENTRIES_OF_LEDGER = "GET_LIST_OF_ENTRIES_OF_LEDGER";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST = "GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST";
+    String COPY_LEDGER_FRAGMENT = "COPY_LEDGER_FRAGMENT";
+    String COPY_LEDGER_FRAGMENT_REQUEST = "COPY_LEDGER_FRAGMENT_REQUEST";
+    String COPY_LEDGER_FRAGMENT_BYTES = "COPY_LEDGER_FRAGMENT_BYTES";
+
+    // Stage timings of the sampled add and read requests
+    String REQUEST_TRACE_SCOPE = "request_trace";
+
+    // Per ledger I/O accounting
+    String LEDGER_IO_SCOPE = "ledger_io";
+    String LEDGER_IO_TOP_LEDGER = "TOP_LEDGER";
+    String LEDGER_IO_TOP_LEDGER_VALUE = "TOP_LEDGER_VALUE";
+
+    // Entry slabs of the bookie subsystems
+    String ENTRY_SLABS_SCOPE = "entry_slabs";
+    String ENTRY_SLABS_MEMORY_BUDGET = "MEMORY_BUDGET";
+    String ENTRY_SLABS_USED_MEMORY = "USED_MEMORY";
+    String ENTRY_SLABS_ALLOCATED_MEMORY = "ALLOCATED_MEMORY";
+    String ENTRY_SLABS_REQUESTED_MEMORY = "REQUESTED_MEMORY";
+    String ENTRY_SLABS_INTERNAL_FRAGMENTATION = "INTERNAL_FRAGMENTATION_PERCENT";
+    String ENTRY_SLABS_EXTERNAL_FRAGMENTATION = "EXTERNAL_FRAGMENTATION_PERCENT";
+    String ENTRY_SLABS_SLABBED_ALLOCATIONS = "SLABBED_ALLOCATIONS";
+    String ENTRY_SLABS_SPILLED_ALLOCATIONS = "SPILLED_ALLOCATIONS";
+
+    // Governor of the memory of the caches and the Netty buffers
+    String MEMORY_GOVERNOR_SCOPE = "memory_governor";
+    String MEMORY_GOVERNOR_MEMORY_BUDGET = "MEMORY_BUDGET";
+    String MEMORY_GOVERNOR_GOVERNED_MEMORY = "GOVERNED_MEMORY";
+    String MEMORY_GOVERNOR_USED_MEMORY = "USED_MEMORY";
+    String MEMORY_GOVERNOR_CACHE_MEMORY_LIMIT = "CACHE_MEMORY_LIMIT";
+    String MEMORY_GOVERNOR_MOVES = "MEMORY_MOVES";
+    String MEMORY_GOVERNOR_PAUSED_CHANNELS = "PAUSED_CHANNELS";
+    String MEMORY_GOVERNOR_CHANNEL_PAUSES = "CHANNEL_PAUSES";
+
+    // Per tenant fair scheduling of the requests
+    String FAIR_SCHEDULER_SCOPE = "fair_scheduler";
+    String FAIR_SCHEDULER_PENDING_REQUESTS = "PENDING_REQUESTS";
+    String FAIR_SCHEDULER_DISPATCHED_REQUESTS = "DISPATCHED_REQUESTS";
+    String FAIR_SCHEDULER_REJECTED_REQUESTS = "REJECTED_REQUESTS";
+    String FAIR_SCHEDULER_RATE_LIMITED_REQUESTS = "RATE_LIMITED_REQUESTS";
 
     // Ensemble Stats
     String WATCHER_SCOPE = "bookie_watcher";
@@ -53,6 +53,8 @@ public interface Bookie {
     // these can probably be moved out and called directly on ledgerdirmanager
     long getTotalDiskSpace() throws IOException;
     long getTotalFreeSpace() throws IOException;
+    // number of entries waiting to be written to the journals
+    int getJournalQueueLength();
 
     // TODO: Shouldn't this be async?
     ByteBuf readEntry(long ledgerId, long entryId)
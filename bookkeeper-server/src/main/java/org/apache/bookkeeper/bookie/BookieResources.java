@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.net.URI;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorBuilder;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorWithOomHandler;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.meta.MetadataBookieDriver;
@@ -70,6 +71,10 @@ public class BookieResources {
             .poolingConcurrency(conf.getAllocatorPoolingConcurrency())
             .outOfMemoryPolicy(conf.getAllocatorOutOfMemoryPolicy())
             .leakDetectionPolicy(conf.getAllocatorLeakDetectionPolicy())
+            .entrySlabMemoryBudget(MemorySubsystem.Journal, conf.getAllocatorEntrySlabsJournalBudgetMb() * 1024 * 1024)
+            .entrySlabMemoryBudget(MemorySubsystem.Read, conf.getAllocatorEntrySlabsReadBudgetMb() * 1024 * 1024)
+            .entrySlabSize(conf.getAllocatorEntrySlabSizeBytes())
+            .entrySlabMaxCapacity(conf.getAllocatorEntrySlabMaxCapacityBytes())
             .build();
     }
 
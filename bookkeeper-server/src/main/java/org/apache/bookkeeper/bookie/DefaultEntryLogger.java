@@ -60,6 +60,8 @@ import java.util.regex.Pattern;
 import org.apache.bookkeeper.bookie.storage.CompactionEntryLog;
 import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.common.allocator.EntrySlabAllocator;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -286,6 +288,8 @@ public class DefaultEntryLogger implements EntryLogger {
     private final int maxSaneEntrySize;
 
     private final ByteBufAllocator allocator;
+    // Allocator of the entries read from the entry logs
+    private final ByteBufAllocator readAllocator;
 
     final ServerConfiguration conf;
 
@@ -319,6 +323,7 @@ public class DefaultEntryLogger implements EntryLogger {
         // but the protocol varies so an exact value is difficult to determine
         this.maxSaneEntrySize = conf.getNettyMaxFrameSizeBytes() - 500;
         this.allocator = allocator;
+        this.readAllocator = EntrySlabAllocator.forSubsystem(allocator, MemorySubsystem.Read);
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
         entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled();
@@ -840,7 +845,7 @@ public class DefaultEntryLogger implements EntryLogger {
             throw new IOException("Bad entry read from log file id: " + entryLogId, e);
         }
 
-        ByteBuf data = allocator.buffer(entrySize, entrySize);
+        ByteBuf data = readAllocator.buffer(entrySize, entrySize);
         int rc = readFromLogChannel(entryLogId, fc, data, pos);
         if (rc != entrySize) {
             ReferenceCountUtil.release(data);
@@ -45,6 +45,8 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
 import org.apache.bookkeeper.bookie.stats.JournalStats;
+import org.apache.bookkeeper.common.allocator.EntrySlabAllocator;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
 import org.apache.bookkeeper.common.collections.BatchedArrayBlockingQueue;
 import org.apache.bookkeeper.common.collections.BatchedBlockingQueue;
 import org.apache.bookkeeper.common.collections.BlockingMpscQueue;
@@ -54,6 +56,7 @@ import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.proto.BookieRequestHandler;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.RequestTrace;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
@@ -61,6 +64,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.ThreadRegistry;
 import org.apache.bookkeeper.util.IOUtils;
 import org.apache.bookkeeper.util.MathUtils;
+import org.apache.bookkeeper.util.ThreadPlacement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -301,6 +305,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         Object ctx;
         long enqueueTime;
         boolean ackBeforeSync;
+        // trace of the add request of the entry, null if it is not sampled
+        RequestTrace trace;
 
         OpStatsLogger journalAddEntryStats;
         Counter callbackTime;
@@ -318,9 +324,19 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
             qe.enqueueTime = enqueueTime;
             qe.journalAddEntryStats = journalAddEntryStats;
             qe.callbackTime = callbackTime;
+            if (cb instanceof RequestTrace.TracedWriteCallback) {
+                qe.trace = ((RequestTrace.TracedWriteCallback) cb).getRequestTrace();
+                qe.stampTrace(RequestTrace.Stage.JOURNAL_ENQUEUED);
+            }
             return qe;
         }
 
+        void stampTrace(RequestTrace.Stage stage) {
+            if (trace != null) {
+                trace.stamp(stage);
+            }
+        }
+
         @Override
         public void run() {
             long startTime = System.nanoTime();
@@ -354,6 +370,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
             this.entry = null;
             this.cb = null;
             this.ctx = null;
+            this.trace = null;
             this.journalAddEntryStats = null;
             this.callbackTime = null;
             recyclerHandle.recycle(this);
@@ -383,6 +400,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                             && qe.entryId != BookieImpl.METAENTRY_ID_FORCE_LEDGER) {
                         writeHandlers.add((BookieRequestHandler) qe.getCtx());
                     }
+                    qe.stampTrace(RequestTrace.Stage.FORCE_WRITTEN);
                     qe.run();
                 }
             }
@@ -486,6 +504,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     LOG.warn("Unable to acquire CPU core for Journal ForceWrite thread: {}", e.getMessage(), e);
                 }
             }
+            ThreadPlacement.placeCurrentThread(conf, ThreadPlacement.Role.FORCE_WRITE, journalIndex);
 
             final ObjectHashSet<BookieRequestHandler> writeHandlers = new ObjectHashSet<>();
             final ForceWriteRequest[] localRequests = new ForceWriteRequest[conf.getJournalQueueSize()];
@@ -604,6 +623,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     final int maxBackupJournals;
 
     final File journalDirectory;
+    private final int journalIndex;
     final ServerConfiguration conf;
     final ForceWriteThread forceWriteThread;
     final FileChannelProvider fileChannelProvider;
@@ -645,6 +665,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     volatile boolean running = true;
     private final LedgerDirsManager ledgerDirsManager;
     private final ByteBufAllocator allocator;
+    // Allocator of the entries queued to the journal, from the journal slabs if any
+    private final ByteBufAllocator entryAllocator;
     private final MemoryLimitController memoryLimitController;
 
     // Expose Stats
@@ -662,6 +684,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
             LedgerDirsManager ledgerDirsManager, StatsLogger statsLogger, ByteBufAllocator allocator) {
         super(journalThreadName + "-" + conf.getBookiePort());
         this.allocator = allocator;
+        this.entryAllocator = EntrySlabAllocator.forSubsystem(allocator, MemorySubsystem.Journal);
 
         StatsLogger journalStatsLogger = statsLogger.scopeLabel("journalIndex", String.valueOf(journalIndex));
 
@@ -680,6 +703,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
         this.journalDirectory = journalDirectory;
+        this.journalIndex = journalIndex;
         this.maxJournalSize = conf.getMaxJournalSizeMB() * MB;
         this.journalPreAllocSize = conf.getJournalPreAllocSizeMB() * MB;
         this.journalWriteBufferSize = conf.getJournalWriteBufferSizeKB() * KB;
@@ -892,8 +916,19 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     public void logAddEntry(long ledgerId, long entryId, ByteBuf entry,
                             boolean ackBeforeSync, WriteCallback cb, Object ctx)
             throws InterruptedException {
-        // Retain entry until it gets written to journal
-        entry.retain();
+        int entrySize = entry.readableBytes();
+        // Copy the entry into the journal slabs, so that the buffer of the request can be released right away
+        // rather than pinned in the pool until the entry gets written to journal. When the slabs can't take the
+        // entry, a copy would be pinned in the pool just the same, so the entry is retained instead
+        ByteBuf copy = entryAllocator instanceof EntrySlabAllocator
+                ? ((EntrySlabAllocator) entryAllocator).slabBuffer(entrySize, entrySize) : null;
+        if (copy != null) {
+            copy.writeBytes(entry, entry.readerIndex(), entrySize);
+            entry = copy;
+        } else {
+            // Retain entry until it gets written to journal
+            entry.retain();
+        }
 
         journalStats.getJournalQueueSize().inc();
 
@@ -951,6 +986,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 LOG.warn("Unable to acquire CPU core for Journal thread: {}", e.getMessage(), e);
             }
         }
+        ThreadPlacement.placeCurrentThread(conf, ThreadPlacement.Role.JOURNAL, journalIndex);
 
         RecyclableArrayList<QueueEntry> toFlush = entryListRecycler.newInstance();
         int numEntriesToFlush = 0;
@@ -1039,11 +1075,13 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                         journalStats.getJournalQueueSize().dec();
                         journalStats.getJournalQueueStats()
                                 .registerSuccessfulEvent(MathUtils.elapsedNanos(qe.enqueueTime), TimeUnit.NANOSECONDS);
+                        qe.stampTrace(RequestTrace.Stage.JOURNAL_DEQUEUED);
                     }
                 } else {
                     journalStats.getJournalQueueSize().dec();
                     journalStats.getJournalQueueStats()
                             .registerSuccessfulEvent(MathUtils.elapsedNanos(qe.enqueueTime), TimeUnit.NANOSECONDS);
+                    qe.stampTrace(RequestTrace.Stage.JOURNAL_DEQUEUED);
                 }
                 if (numEntriesToFlush > 0) {
                     boolean shouldFlush = false;
@@ -1091,6 +1129,9 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
                         for (int i = 0; i < toFlush.size(); i++) {
                             QueueEntry entry = toFlush.get(i);
+                            if (entry != null) {
+                                entry.stampTrace(RequestTrace.Stage.JOURNAL_FLUSHED);
+                            }
                             if (entry != null && (!syncData || entry.ackBeforeSync)) {
                                 toFlush.set(i, null);
                                 numEntriesToFlush--;
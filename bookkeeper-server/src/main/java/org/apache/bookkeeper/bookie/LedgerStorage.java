@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.PrimitiveIterator;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
 import org.apache.bookkeeper.common.util.Watcher;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -82,6 +83,16 @@ public interface LedgerStorage {
      */
     boolean entryExists(long ledgerId, long entryId) throws IOException, BookieException;
 
+    /**
+     * Whether an entry can be read without going to the disk. It has to be cheap, as it is called
+     * by the request processor to classify the read requests before scheduling them.
+     *
+     * <p>Storages which can't tell return false, so all their reads are considered alike.
+     */
+    default boolean isEntryCached(long ledgerId, long entryId) {
+        return false;
+    }
+
     /**
      * Fenced the ledger id in ledger storage.
      *
@@ -213,6 +224,26 @@ public interface LedgerStorage {
      */
     void registerLedgerDeletionListener(LedgerDeletionListener listener);
 
+    /**
+     * Set the per ledger I/O accounting of the bookie, so that the storage can account the reads
+     * served by its caches.
+     *
+     * @param accounting the ledger I/O accounting of the bookie
+     */
+    default void setLedgerIoAccounting(LedgerIoAccounting accounting) {
+        return;
+    }
+
+    /**
+     * Set the memory governor of the bookie, so that the storage can register the caches and the memory
+     * reservations whose memory is governed.
+     *
+     * @param governor the memory governor of the bookie
+     */
+    default void setMemoryGovernor(MemoryGovernor governor) {
+        return;
+    }
+
     void setExplicitLac(long ledgerId, ByteBuf lac) throws IOException;
 
     ByteBuf getExplicitLac(long ledgerId) throws IOException, BookieException;
@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_CACHE_MEMORY_LIMIT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_CHANNEL_PAUSES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_GOVERNED_MEMORY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_MEMORY_BUDGET;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_MOVES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_PAUSED_CHANNELS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_USED_MEMORY;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.PlatformDependent;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+
+/**
+ * Governor of the memory of the bookie, as a single budget shared by the caches of the ledger storage, the
+ * RocksDB block caches and the Netty buffers.
+ *
+ * <p>The memory granted to the caches and the fixed reservations are tracked by a {@link MemoryLimitController},
+ * the rest of the budget being left to the Netty buffers. At each rebalance, at most one step of memory is moved:
+ * <ul>
+ *   <li>from the cache losing the least utility to the Netty buffers, if the reads from the channels have been
+ *   paused since the previous rebalance, or if the granted memory exceeds the budget;</li>
+ *   <li>from the free memory, or else from the cache losing the least utility, to the cache gaining the most
+ *   utility, if the gain is greater enough than the loss.</li>
+ * </ul>
+ * The utilities of all the caches are in the same unit, the bytes of I/O a step of memory saves over a rebalance
+ * interval, so that the gain of a cache can be weighed against the loss of another one.
+ *
+ * <p>The reads from the Netty channels are paused when the used direct memory, plus the fixed reservations,
+ * goes above the high watermark of the budget, and resumed once it's back below the low watermark, or at the
+ * latest after a rebalance interval, since the memory held by the memory pools isn't necessarily given back.
+ */
+@Slf4j
+@StatsDoc(
+    name = MEMORY_GOVERNOR_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Memory governor related stats"
+)
+public class MemoryGovernor implements AutoCloseable {
+
+    // the gain of a cache must exceed the loss of the donor by this factor for the memory to be moved, so that the
+    // memory doesn't go back and forth between caches of close utilities
+    private static final double MIN_GAIN_OVER_LOSS = 1.2;
+    private static final long RESUME_CHECK_INTERVAL_MILLIS = 10;
+
+    /**
+     * Marginal utility of a cache over a rebalance interval, in bytes of I/O saved by a step of memory, such as the
+     * bytes of the reads served from the memory instead of the disk, or of the writes not throttled.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class MarginalUtility {
+        // estimated bytes of I/O saved with one more step of memory
+        private final long gain;
+        // estimated bytes of I/O lost with one step of memory less
+        private final long loss;
+    }
+
+    /**
+     * Cache whose memory is governed.
+     */
+    public interface GovernedCache {
+
+        String getName();
+
+        /**
+         * @return the memory granted to the cache, in bytes
+         */
+        long getMemoryLimit();
+
+        long getMinMemoryLimit();
+
+        long getMaxMemoryLimit();
+
+        /**
+         * Set the memory granted to the cache. The cache can round the limit down, and can take some time to
+         * release the memory above the new limit.
+         */
+        void setMemoryLimit(long memoryLimit);
+
+        /**
+         * @return the marginal utility of the cache since the previous sample, in bytes of I/O per step of memory
+         */
+        MarginalUtility sampleMarginalUtility();
+    }
+
+    private static final BufferPoolMXBean DIRECT_BUFFER_POOL = ManagementFactory
+            .getPlatformMXBeans(BufferPoolMXBean.class).stream()
+            .filter(pool -> "direct".equals(pool.getName()))
+            .findAny().orElse(null);
+
+    private final long maxMemory;
+    private final long step;
+    private final long minNettyMemory;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final int rebalanceIntervalSeconds;
+    private final long maxPauseNanos;
+
+    private final MemoryLimitController memory;
+    private final AtomicLong reservedMemory = new AtomicLong();
+    private final List<GovernedCache> caches = new CopyOnWriteArrayList<>();
+    // paused channels, with the time they have been paused at
+    private final Map<Channel, Long> pausedChannels = new ConcurrentHashMap<>();
+    private final AtomicLong pausesSinceRebalance = new AtomicLong();
+    private final ScheduledExecutorService executor;
+    private final StatsLogger statsLogger;
+
+    @StatsDoc(
+        name = MEMORY_GOVERNOR_MEMORY_BUDGET,
+        help = "Memory budget of the governor, in bytes"
+    )
+    private final Gauge<Long> memoryBudgetGauge;
+    @StatsDoc(
+        name = MEMORY_GOVERNOR_GOVERNED_MEMORY,
+        help = "Memory granted to the caches plus the fixed reservations, in bytes"
+    )
+    private final Gauge<Long> governedMemoryGauge;
+    @StatsDoc(
+        name = MEMORY_GOVERNOR_USED_MEMORY,
+        help = "Used direct memory plus the fixed reservations, in bytes"
+    )
+    private final Gauge<Long> usedMemoryGauge;
+    @StatsDoc(
+        name = MEMORY_GOVERNOR_CACHE_MEMORY_LIMIT,
+        help = "Memory granted to each cache, in bytes"
+    )
+    private final Map<String, Gauge<Long>> cacheMemoryLimitGauges = new ConcurrentHashMap<>();
+    @StatsDoc(
+        name = MEMORY_GOVERNOR_MOVES,
+        help = "Number of steps of memory moved between the caches and the Netty buffers"
+    )
+    private final Counter memoryMoves;
+    @StatsDoc(
+        name = MEMORY_GOVERNOR_PAUSED_CHANNELS,
+        help = "Number of channels whose reads are paused for lack of memory"
+    )
+    private final Gauge<Integer> pausedChannelsGauge;
+    @StatsDoc(
+        name = MEMORY_GOVERNOR_CHANNEL_PAUSES,
+        help = "Number of times the reads of a channel have been paused for lack of memory"
+    )
+    private final Counter channelPauses;
+
+    public MemoryGovernor(ServerConfiguration conf, StatsLogger statsLogger) {
+        this.maxMemory = getMaxMemory(conf);
+        this.step = getStep(conf);
+        this.minNettyMemory = conf.getMemoryGovernorMinNettyMemoryMb() > 0
+                ? conf.getMemoryGovernorMinNettyMemoryMb() * 1024 * 1024 : maxMemory / 5;
+        this.highWatermark = (long) (maxMemory * conf.getMemoryGovernorBackpressureHighWatermark());
+        this.lowWatermark = (long) (maxMemory * conf.getMemoryGovernorBackpressureLowWatermark());
+        this.rebalanceIntervalSeconds = conf.getMemoryGovernorRebalanceIntervalSeconds();
+        this.maxPauseNanos = TimeUnit.SECONDS.toNanos(rebalanceIntervalSeconds);
+        // Unbounded, as the registered caches and the reservations are granted even above the budget
+        this.memory = new MemoryLimitController(0);
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("MemoryGovernor"));
+        this.statsLogger = statsLogger;
+
+        this.memoryBudgetGauge = gauge(() -> maxMemory);
+        statsLogger.registerGauge(MEMORY_GOVERNOR_MEMORY_BUDGET, memoryBudgetGauge);
+        this.governedMemoryGauge = gauge(memory::currentUsage);
+        statsLogger.registerGauge(MEMORY_GOVERNOR_GOVERNED_MEMORY, governedMemoryGauge);
+        this.usedMemoryGauge = gauge(this::getUsedMemory);
+        statsLogger.registerGauge(MEMORY_GOVERNOR_USED_MEMORY, usedMemoryGauge);
+        this.memoryMoves = statsLogger.getCounter(MEMORY_GOVERNOR_MOVES);
+        this.pausedChannelsGauge = new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                return pausedChannels.size();
+            }
+        };
+        statsLogger.registerGauge(MEMORY_GOVERNOR_PAUSED_CHANNELS, pausedChannelsGauge);
+        this.channelPauses = statsLogger.getCounter(MEMORY_GOVERNOR_CHANNEL_PAUSES);
+
+        if (PlatformDependent.usedDirectMemory() < 0 && DIRECT_BUFFER_POOL == null) {
+            log.warn("Unable to measure the used direct memory, the reads of the channels will not be paused");
+        }
+        log.info("Governing {} MB of memory, by steps of {} MB, with {} MB left to the Netty buffers",
+                maxMemory / 1024 / 1024, step / 1024 / 1024, minNettyMemory / 1024 / 1024);
+    }
+
+    /**
+     * @return the memory budget of the governor, in bytes
+     */
+    public static long getMaxMemory(ServerConfiguration conf) {
+        return conf.getMemoryGovernorMaxMemoryMb() > 0
+                ? conf.getMemoryGovernorMaxMemoryMb() * 1024 * 1024 : PlatformDependent.estimateMaxDirectMemory();
+    }
+
+    /**
+     * @return the amount of memory moved at once between the caches, in bytes
+     */
+    public static long getStep(ServerConfiguration conf) {
+        return conf.getMemoryGovernorStepMb() * 1024L * 1024L;
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::safeRebalance, rebalanceIntervalSeconds, rebalanceIntervalSeconds,
+                TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(this::resumeChannels, RESUME_CHECK_INTERVAL_MILLIS,
+                RESUME_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        pausedChannels.keySet().forEach(channel -> channel.config().setAutoRead(true));
+        pausedChannels.clear();
+    }
+
+    /**
+     * Reserve a fixed amount of memory of the budget, for a memory user which can't be resized.
+     *
+     * @param name the name of the memory user
+     * @param size the reserved memory, in bytes
+     */
+    public void reserveMemory(String name, long size) {
+        memory.tryReserveMemory(size);
+        reservedMemory.addAndGet(size);
+        log.info("Reserved {} MB of memory for {}", size / 1024 / 1024, name);
+        warnIfOverBudget();
+    }
+
+    /**
+     * Register a cache whose memory is governed, the current memory limit of the cache being granted to it.
+     */
+    public void registerCache(GovernedCache cache) {
+        memory.tryReserveMemory(cache.getMemoryLimit());
+        caches.add(cache);
+
+        Gauge<Long> limitGauge = gauge(cache::getMemoryLimit);
+        cacheMemoryLimitGauges.put(cache.getName(), limitGauge);
+        statsLogger.scopeLabel("cache", cache.getName()).registerGauge(MEMORY_GOVERNOR_CACHE_MEMORY_LIMIT,
+                limitGauge);
+        log.info("Granted {} MB of memory to the cache {}", cache.getMemoryLimit() / 1024 / 1024, cache.getName());
+        warnIfOverBudget();
+    }
+
+    private void warnIfOverBudget() {
+        if (memory.currentUsage() > maxMemory - minNettyMemory) {
+            log.warn("The caches and the reservations take {} MB of memory, above the {} MB of the budget not left"
+                    + " to the Netty buffers, the caches will be shrunk", memory.currentUsage() / 1024 / 1024,
+                    (maxMemory - minNettyMemory) / 1024 / 1024);
+        }
+    }
+
+    /**
+     * @return the memory granted to each cache, by cache name
+     */
+    public Map<String, Long> getCacheMemoryLimits() {
+        Map<String, Long> limits = new LinkedHashMap<>();
+        caches.forEach(cache -> limits.put(cache.getName(), cache.getMemoryLimit()));
+        return limits;
+    }
+
+    /**
+     * @return the used direct memory plus the fixed reservations, in bytes
+     */
+    public long getUsedMemory() {
+        long used = reservedMemory.get() + Math.max(PlatformDependent.usedDirectMemory(), 0);
+        if (DIRECT_BUFFER_POOL != null) {
+            // The direct buffers allocated without the Netty counter, such as the ones with a cleaner
+            used += DIRECT_BUFFER_POOL.getMemoryUsed();
+        }
+        return used;
+    }
+
+    /**
+     * Pause the reads from the channel if the used memory is above the high watermark. The reads are resumed
+     * once the used memory gets back below the low watermark.
+     *
+     * @param channel the channel a request has been read from
+     */
+    public void checkBackpressure(Channel channel) {
+        if (getUsedMemory() > highWatermark && channel.config().isAutoRead()) {
+            channel.config().setAutoRead(false);
+            if (pausedChannels.putIfAbsent(channel, System.nanoTime()) == null) {
+                channelPauses.inc();
+                if (pausesSinceRebalance.getAndIncrement() == 0) {
+                    log.warn("Used memory {} MB above the high watermark of {} MB, pausing the reads of the channels",
+                            getUsedMemory() / 1024 / 1024, highWatermark / 1024 / 1024);
+                }
+            }
+        }
+    }
+
+    private void resumeChannels() {
+        if (pausedChannels.isEmpty()) {
+            return;
+        }
+
+        boolean belowLowWatermark = getUsedMemory() < lowWatermark;
+        long now = System.nanoTime();
+        int resumed = 0;
+        for (Map.Entry<Channel, Long> e : pausedChannels.entrySet()) {
+            if (belowLowWatermark || now - e.getValue() > maxPauseNanos) {
+                pausedChannels.remove(e.getKey());
+                e.getKey().config().setAutoRead(true);
+                resumed++;
+            }
+        }
+        if (resumed > 0) {
+            log.info("Resumed the reads of {} channels, used memory {} MB, low watermark {} MB", resumed,
+                    getUsedMemory() / 1024 / 1024, lowWatermark / 1024 / 1024);
+        }
+    }
+
+    private void safeRebalance() {
+        try {
+            rebalance();
+        } catch (Throwable t) {
+            log.error("Error while rebalancing the memory of the caches", t);
+        }
+    }
+
+    /**
+     * Move at most one step of memory between the caches and the Netty buffers.
+     */
+    void rebalance() {
+        Map<GovernedCache, MarginalUtility> utilities = new LinkedHashMap<>();
+        caches.forEach(cache -> utilities.put(cache, cache.sampleMarginalUtility()));
+        long pauses = pausesSinceRebalance.getAndSet(0);
+        long free = maxMemory - minNettyMemory - memory.currentUsage();
+
+        GovernedCache donor = null;
+        long donorLoss = Long.MAX_VALUE;
+        GovernedCache recipient = null;
+        long recipientGain = 0;
+        for (Map.Entry<GovernedCache, MarginalUtility> e : utilities.entrySet()) {
+            GovernedCache cache = e.getKey();
+            MarginalUtility utility = e.getValue();
+            if (cache.getMemoryLimit() - step >= cache.getMinMemoryLimit() && utility.getLoss() < donorLoss) {
+                donor = cache;
+                donorLoss = utility.getLoss();
+            }
+            if (cache.getMemoryLimit() + step <= cache.getMaxMemoryLimit() && utility.getGain() > recipientGain) {
+                recipient = cache;
+                recipientGain = utility.getGain();
+            }
+        }
+
+        if (pauses > 0 || free < 0) {
+            // Give memory back to the Netty buffers
+            if (donor != null) {
+                log.info("Moving {} MB of memory from the cache {} to the Netty buffers, {} channel pauses",
+                        step / 1024 / 1024, donor.getName(), pauses);
+                resize(donor, donor.getMemoryLimit() - step);
+            }
+        } else if (recipient != null && free >= step) {
+            log.info("Granting {} MB of free memory to the cache {}, marginal gain {}", step / 1024 / 1024,
+                    recipient.getName(), recipientGain);
+            resize(recipient, recipient.getMemoryLimit() + step);
+        } else if (recipient != null && donor != null && donor != recipient
+                && recipientGain > donorLoss * MIN_GAIN_OVER_LOSS) {
+            log.info("Moving {} MB of memory from the cache {} to the cache {}, marginal loss {} and gain {}",
+                    step / 1024 / 1024, donor.getName(), recipient.getName(), donorLoss, recipientGain);
+            resize(donor, donor.getMemoryLimit() - step);
+            resize(recipient, recipient.getMemoryLimit() + step);
+        }
+    }
+
+    private void resize(GovernedCache cache, long memoryLimit) {
+        long oldLimit = cache.getMemoryLimit();
+        if (memoryLimit > oldLimit) {
+            memory.tryReserveMemory(memoryLimit - oldLimit);
+        }
+        cache.setMemoryLimit(memoryLimit);
+
+        // The cache can round the limit down
+        long newLimit = cache.getMemoryLimit();
+        if (newLimit < Math.max(memoryLimit, oldLimit)) {
+            memory.releaseMemory(Math.max(memoryLimit, oldLimit) - newLimit);
+        }
+        memoryMoves.inc();
+    }
+
+    private static Gauge<Long> gauge(Supplier<Long> supplier) {
+        return new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return supplier.get();
+            }
+        };
+    }
+}
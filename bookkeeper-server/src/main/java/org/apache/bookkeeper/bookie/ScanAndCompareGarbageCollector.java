@@ -26,16 +26,17 @@ import static org.apache.bookkeeper.common.concurrent.FutureUtils.result;
 import com.google.common.collect.Sets;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.Cleanup;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
@@ -49,6 +50,7 @@ import org.apache.bookkeeper.meta.MetadataBookieDriver;
 import org.apache.bookkeeper.meta.MetadataDrivers;
 import org.apache.bookkeeper.meta.exceptions.MetadataException;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgersChangeListener;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.versioning.Versioned;
 import org.apache.commons.configuration.ConfigurationException;
@@ -82,6 +84,38 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
     private long lastOverReplicatedLedgerGcTimeMillis;
     private final boolean verifyMetadataOnGc;
     private int activeLedgerCounter;
+    // last ledger id compared by a scan which did not complete, the next scan resumes after it
+    private long scanCheckpoint = -1L;
+
+    // incremental gc: the bookie is notified of the ledgers deleted from the metadata store, through a single
+    // watch of the ledger manager on all the ledgers, and collects the deleted ones it stores, only comparing
+    // all the ledgers every fullScanWaitTimeMillis
+    private static final int MAX_PENDING_DELETED_LEDGERS = 100000;
+    private final boolean incrementalGc;
+    private final long fullScanWaitTimeMillis;
+    private long lastFullScanTimeMillis = 0L;
+    private volatile boolean fullScanRequested = false;
+    private final Set<Long> deletedLedgers = ConcurrentHashMap.newKeySet();
+    private final LedgersChangeListener deletionListener = new LedgersChangeListener() {
+        @Override
+        public void onLedgerChanged(long ledgerId) {
+        }
+
+        @Override
+        public void onLedgerDeleted(long ledgerId) {
+            if (deletedLedgers.size() < MAX_PENDING_DELETED_LEDGERS) {
+                deletedLedgers.add(ledgerId);
+            } else {
+                // too many deletions to keep track of, the full scan catches them
+                fullScanRequested = true;
+            }
+        }
+
+        @Override
+        public void onChangesLost() {
+            fullScanRequested = true;
+        }
+    };
     private StatsLogger statsLogger;
     private final int maxConcurrentRequests;
 
@@ -104,6 +138,19 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
 
         verifyMetadataOnGc = conf.getVerifyMetadataOnGC();
 
+        this.fullScanWaitTimeMillis = conf.getGcFullScanWaitTime();
+        if (conf.getGcIncrementalEnabled() && ledgerManager != null) {
+            this.incrementalGc = ledgerManager.registerLedgersChangeListener(deletionListener);
+            if (incrementalGc) {
+                LOG.info("Incremental garbage collection enabled, full scan interval={}", fullScanWaitTimeMillis);
+            } else {
+                LOG.warn("Incremental garbage collection is not supported by the ledger manager, comparing all"
+                        + " the ledgers at each garbage collection");
+            }
+        } else {
+            this.incrementalGc = false;
+        }
+
         this.activeLedgerCounter = 0;
     }
 
@@ -141,16 +188,28 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
                 lastOverReplicatedLedgerGcTimeMillis = System.currentTimeMillis();
             }
 
-            // Iterate over all the ledger on the metadata store
             long zkOpTimeoutMs = this.conf.getZkTimeout() * 2;
+            if (incrementalGc) {
+                collectDeletedLedgers(bkActiveLedgers, garbageCleaner, zkOpTimeoutMs);
+                if (!fullScanRequested && curTime - lastFullScanTimeMillis < fullScanWaitTimeMillis) {
+                    return;
+                }
+                // the changes lost from now on are caught by the next full scan
+                fullScanRequested = false;
+                LOG.info("Start full scan of the ledgers on the metadata store. activeLedgerCounter={}",
+                        activeLedgerCounter);
+            }
+
+            // Iterate over all the ledger on the metadata store, resuming the previous scan if it did not complete
+            if (scanCheckpoint >= 0) {
+                LOG.info("Resuming the scan of the ledgers on the metadata store after ledger {}", scanCheckpoint);
+            }
             LedgerRangeIterator ledgerRangeIterator = ledgerManager
-                    .getLedgerRanges(zkOpTimeoutMs);
+                    .getLedgerRanges(zkOpTimeoutMs, scanCheckpoint + 1);
             Set<Long> ledgersInMetadata = null;
             long start;
-            long end = -1;
+            long end = scanCheckpoint;
             boolean done = false;
-            AtomicBoolean isBookieInEnsembles = new AtomicBoolean(false);
-            Versioned<LedgerMetadata> metadata = null;
             while (!done) {
                 start = end + 1;
                 if (ledgerRangeIterator.hasNext()) {
@@ -169,52 +228,78 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
                     LOG.debug("Active in metadata {}, Active in bookie {}", ledgersInMetadata, subBkActiveLedgers);
                 }
                 for (Long bkLid : subBkActiveLedgers) {
-                    if (!ledgersInMetadata.contains(bkLid)) {
-                        if (verifyMetadataOnGc) {
-                            isBookieInEnsembles.set(false);
-                            metadata = null;
-                            int rc = BKException.Code.OK;
-                            try {
-                                metadata = result(ledgerManager.readLedgerMetadata(bkLid), zkOpTimeoutMs,
-                                        TimeUnit.MILLISECONDS);
-                            } catch (BKException | TimeoutException e) {
-                                if (e instanceof BKException) {
-                                    rc = ((BKException) e).getCode();
-                                } else {
-                                    LOG.warn("Time-out while fetching metadata for Ledger {} : {}.", bkLid,
-                                            e.getMessage());
-
-                                    continue;
-                                }
-                            }
-                            // check bookie should be part of ensembles in one
-                            // of the segment else ledger should be deleted from
-                            // local storage
-                            if (metadata != null && metadata.getValue() != null) {
-                                metadata.getValue().getAllEnsembles().forEach((entryId, ensembles) -> {
-                                    if (ensembles != null && ensembles.contains(selfBookieAddress)) {
-                                        isBookieInEnsembles.set(true);
-                                    }
-                                });
-                                if (isBookieInEnsembles.get()) {
-                                    continue;
-                                }
-                            } else if (rc != BKException.Code.NoSuchLedgerExistsOnMetadataServerException) {
-                                LOG.warn("Ledger {} Missing in metadata list, but ledgerManager returned rc: {}.",
-                                        bkLid, rc);
-                                continue;
-                            }
-                        }
+                    if (!ledgersInMetadata.contains(bkLid) && verifyLedgerDeleted(bkLid, zkOpTimeoutMs)) {
                         garbageCleaner.clean(bkLid);
                     }
                 }
+                scanCheckpoint = end;
             }
+            scanCheckpoint = -1L;
+            lastFullScanTimeMillis = curTime;
         } catch (Throwable t) {
             // ignore exception, collecting garbage next time
             LOG.warn("Exception when iterating over the metadata", t);
         }
     }
 
+    /**
+     * Check, if the bookie is configured to verify the metadata on gc, that a ledger missing in the metadata
+     * store is actually deleted, or at least no longer stored by this bookie.
+     *
+     * @return true if the ledger can be garbage collected
+     */
+    private boolean verifyLedgerDeleted(long bkLid, long zkOpTimeoutMs) throws Exception {
+        if (!verifyMetadataOnGc) {
+            return true;
+        }
+        Versioned<LedgerMetadata> metadata = null;
+        int rc = BKException.Code.OK;
+        try {
+            metadata = result(ledgerManager.readLedgerMetadata(bkLid), zkOpTimeoutMs,
+                    TimeUnit.MILLISECONDS);
+        } catch (BKException | TimeoutException e) {
+            if (e instanceof BKException) {
+                rc = ((BKException) e).getCode();
+            } else {
+                LOG.warn("Time-out while fetching metadata for Ledger {} : {}.", bkLid,
+                        e.getMessage());
+                return false;
+            }
+        }
+        // check bookie should be part of ensembles in one
+        // of the segment else ledger should be deleted from
+        // local storage
+        if (metadata != null && metadata.getValue() != null) {
+            for (List<BookieId> ensemble : metadata.getValue().getAllEnsembles().values()) {
+                if (ensemble != null && ensemble.contains(selfBookieAddress)) {
+                    return false;
+                }
+            }
+        } else if (rc != BKException.Code.NoSuchLedgerExistsOnMetadataServerException) {
+            LOG.warn("Ledger {} Missing in metadata list, but ledgerManager returned rc: {}.",
+                    bkLid, rc);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Garbage collect the ledgers whose metadata was reported deleted since the previous garbage collection.
+     */
+    private void collectDeletedLedgers(NavigableSet<Long> bkActiveLedgers, GarbageCleaner garbageCleaner,
+                                       long zkOpTimeoutMs) throws Exception {
+        for (Iterator<Long> iterator = deletedLedgers.iterator(); iterator.hasNext();) {
+            long ledgerId = iterator.next();
+            iterator.remove();
+            if (bkActiveLedgers.contains(ledgerId) && verifyLedgerDeleted(ledgerId, zkOpTimeoutMs)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Garbage collecting ledger {} whose metadata was deleted", ledgerId);
+                }
+                garbageCleaner.clean(ledgerId);
+            }
+        }
+    }
+
     private Set<Long> removeOverReplicatedledgers(Set<Long> bkActiveledgers, final GarbageCleaner garbageCleaner)
             throws Exception {
         final Set<Long> overReplicatedLedgers = Sets.newHashSet();
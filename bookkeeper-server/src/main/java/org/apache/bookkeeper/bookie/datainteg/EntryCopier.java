@@ -19,6 +19,7 @@
 
 package org.apache.bookkeeper.bookie.datainteg;
 
+import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
@@ -44,5 +45,11 @@ public interface EntryCopier {
          * @return the number of bytes copied.
          */
         CompletableFuture<Long> copyFromAvailable(long entryId);
+
+        /**
+         * Fetch an entry from a remote bookie, without storing it locally.
+         * @return the entry, which must be released by the caller.
+         */
+        CompletableFuture<ByteBuf> fetchFromAvailable(long entryId);
     }
 }
@@ -122,17 +122,8 @@ public class EntryCopierImpl implements EntryCopier {
 
         @Override
         public CompletableFuture<Long> copyFromAvailable(long entryId) {
-            if (entryId < 0) {
-                throw new IllegalArgumentException(
-                        String.format("Entry ID (%d) can't be less than 0", entryId));
-            }
-            if (metadata.isClosed() && entryId > metadata.getLastEntryId()) {
-                throw new IllegalArgumentException(
-                        String.format("Invalid entry id (%d), last entry for ledger %d is %d",
-                                      entryId, ledgerId, metadata.getLastEntryId()));
-            }
             CompletableFuture<Long> promise = new CompletableFuture<>();
-            fetchEntry(entryId).whenComplete((buffer, exception) -> {
+            fetchFromAvailable(entryId).whenComplete((buffer, exception) -> {
                     if (exception != null) {
                         promise.completeExceptionally(exception);
                     } else {
@@ -150,6 +141,20 @@ public class EntryCopierImpl implements EntryCopier {
             return promise;
         }
 
+        @Override
+        public CompletableFuture<ByteBuf> fetchFromAvailable(long entryId) {
+            if (entryId < 0) {
+                throw new IllegalArgumentException(
+                        String.format("Entry ID (%d) can't be less than 0", entryId));
+            }
+            if (metadata.isClosed() && entryId > metadata.getLastEntryId()) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid entry id (%d), last entry for ledger %d is %d",
+                                      entryId, ledgerId, metadata.getLastEntryId()));
+            }
+            return fetchEntry(entryId);
+        }
+
         @VisibleForTesting
         CompletableFuture<ByteBuf> fetchEntry(long entryId) {
             List<BookieId> ensemble = metadata.getEnsembleAt(entryId);
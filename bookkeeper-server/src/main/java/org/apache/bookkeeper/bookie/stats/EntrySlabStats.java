@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.bookie.stats;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_ALLOCATED_MEMORY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_EXTERNAL_FRAGMENTATION;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_INTERNAL_FRAGMENTATION;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_MEMORY_BUDGET;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_REQUESTED_MEMORY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_SLABBED_ALLOCATIONS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_SPILLED_ALLOCATIONS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_SLABS_USED_MEMORY;
+
+import io.netty.buffer.ByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.Getter;
+import org.apache.bookkeeper.common.allocator.ByteBufAllocatorWithOomHandler;
+import org.apache.bookkeeper.common.allocator.EntrySlabAllocator;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+
+/**
+ * A umbrella class for the stats of the entry slabs of a bookie subsystem, labeled by subsystem.
+ */
+@StatsDoc(
+    name = ENTRY_SLABS_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Entry slabs related stats"
+)
+@Getter
+public class EntrySlabStats {
+
+    @StatsDoc(
+        name = ENTRY_SLABS_MEMORY_BUDGET,
+        help = "Max memory of the slabs of the subsystem, in bytes"
+    )
+    private final Gauge<Long> memoryBudgetGauge;
+    @StatsDoc(
+        name = ENTRY_SLABS_USED_MEMORY,
+        help = "Memory of the allocated slabs of the subsystem, in bytes"
+    )
+    private final Gauge<Long> usedMemoryGauge;
+    @StatsDoc(
+        name = ENTRY_SLABS_ALLOCATED_MEMORY,
+        help = "Memory of the slots of the live entry buffers of the subsystem, in bytes"
+    )
+    private final Gauge<Long> allocatedMemoryGauge;
+    @StatsDoc(
+        name = ENTRY_SLABS_REQUESTED_MEMORY,
+        help = "Capacity requested for the live entry buffers of the subsystem, in bytes"
+    )
+    private final Gauge<Long> requestedMemoryGauge;
+    @StatsDoc(
+        name = ENTRY_SLABS_INTERNAL_FRAGMENTATION,
+        help = "Percent of the slots of the live entry buffers exceeding their requested capacity"
+    )
+    private final Gauge<Long> internalFragmentationGauge;
+    @StatsDoc(
+        name = ENTRY_SLABS_EXTERNAL_FRAGMENTATION,
+        help = "Percent of the memory of the slabs in free slots"
+    )
+    private final Gauge<Long> externalFragmentationGauge;
+    @StatsDoc(
+        name = ENTRY_SLABS_SLABBED_ALLOCATIONS,
+        help = "Number of entry buffers allocated from the slabs"
+    )
+    private final Gauge<Long> slabbedAllocationsGauge;
+    @StatsDoc(
+        name = ENTRY_SLABS_SPILLED_ALLOCATIONS,
+        help = "Number of entry buffers allocated from the pooled allocator, for being too large or over budget"
+    )
+    private final Gauge<Long> spilledAllocationsGauge;
+
+    public EntrySlabStats(EntrySlabAllocator slabAllocator, StatsLogger statsLogger) {
+        StatsLogger subsystemLogger = statsLogger.scope(ENTRY_SLABS_SCOPE)
+                .scopeLabel("subsystem", slabAllocator.getSubsystem().name());
+
+        this.memoryBudgetGauge = gauge(slabAllocator::getMemoryBudget);
+        subsystemLogger.registerGauge(ENTRY_SLABS_MEMORY_BUDGET, memoryBudgetGauge);
+        this.usedMemoryGauge = gauge(slabAllocator::getUsedMemory);
+        subsystemLogger.registerGauge(ENTRY_SLABS_USED_MEMORY, usedMemoryGauge);
+        this.allocatedMemoryGauge = gauge(slabAllocator::getAllocatedMemory);
+        subsystemLogger.registerGauge(ENTRY_SLABS_ALLOCATED_MEMORY, allocatedMemoryGauge);
+        this.requestedMemoryGauge = gauge(slabAllocator::getRequestedMemory);
+        subsystemLogger.registerGauge(ENTRY_SLABS_REQUESTED_MEMORY, requestedMemoryGauge);
+        this.internalFragmentationGauge = gauge(() -> Math.round(slabAllocator.getInternalFragmentation() * 100));
+        subsystemLogger.registerGauge(ENTRY_SLABS_INTERNAL_FRAGMENTATION, internalFragmentationGauge);
+        this.externalFragmentationGauge = gauge(() -> Math.round(slabAllocator.getExternalFragmentation() * 100));
+        subsystemLogger.registerGauge(ENTRY_SLABS_EXTERNAL_FRAGMENTATION, externalFragmentationGauge);
+        this.slabbedAllocationsGauge = gauge(slabAllocator::getSlabbedAllocations);
+        subsystemLogger.registerGauge(ENTRY_SLABS_SLABBED_ALLOCATIONS, slabbedAllocationsGauge);
+        this.spilledAllocationsGauge = gauge(slabAllocator::getSpilledAllocations);
+        subsystemLogger.registerGauge(ENTRY_SLABS_SPILLED_ALLOCATIONS, spilledAllocationsGauge);
+    }
+
+    /**
+     * Register the stats of the entry slabs of each subsystem of the allocator.
+     *
+     * @param allocator the allocator of the bookie
+     * @param statsLogger the stats logger of the bookie
+     * @return the stats of the subsystems with slabs
+     */
+    public static List<EntrySlabStats> register(ByteBufAllocator allocator, StatsLogger statsLogger) {
+        List<EntrySlabStats> stats = new ArrayList<>();
+        if (allocator instanceof ByteBufAllocatorWithOomHandler) {
+            for (MemorySubsystem subsystem : MemorySubsystem.values()) {
+                EntrySlabAllocator slabAllocator =
+                        ((ByteBufAllocatorWithOomHandler) allocator).getEntrySlabAllocator(subsystem);
+                if (slabAllocator != null) {
+                    stats.add(new EntrySlabStats(slabAllocator, statsLogger));
+                }
+            }
+        }
+        return stats;
+    }
+
+    private static Gauge<Long> gauge(Supplier<Long> supplier) {
+        return new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return supplier.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.bookie.stats;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_IO_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_IO_TOP_LEDGER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_IO_TOP_LEDGER_VALUE;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHeavyHitters;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHeavyHitters.HeavyHitter;
+
+/**
+ * Per ledger accounting of the I/O of a bookie.
+ *
+ * <p>For each {@link Metric}, the heaviest ledgers are tracked by a space-saving sketch with a bounded
+ * number of ledgers, so the memory used doesn't depend on the number of ledgers served by the bookie.
+ * The top ledgers of each metric are exposed as gauges labelled by rank, and can be retrieved through
+ * the admin http endpoint.
+ *
+ * <p>The accounted values are halved every half-life, so the top ledgers are the heaviest ones of the
+ * recent past, and a ledger which stopped being used eventually leaves the sketches.
+ */
+@StatsDoc(
+    name = LEDGER_IO_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Heaviest ledgers of the bookie I/O, by rank"
+)
+public class LedgerIoAccounting {
+
+    /**
+     * The accounted ledger I/O metrics.
+     */
+    public enum Metric {
+        ADD_OPS,
+        ADD_BYTES,
+        READ_OPS,
+        READ_BYTES,
+        // reads served by the read cache of the ledger storage
+        READ_CACHE_HITS,
+        // bytes read ahead into the read cache and evicted without being read
+        READ_AHEAD_WASTED_BYTES
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    // min interval between two refreshes of the top ledgers exposed as gauges
+    private static final long GAUGES_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentLongHeavyHitters[] sketches;
+
+    private final long halfLifeNanos;
+    private final AtomicLong lastDecayNanos;
+
+    private final int numTopLedgersGauges;
+    private volatile List<HeavyHitter>[] gaugesTopLedgers;
+    private volatile long gaugesRefreshNanos;
+
+    /**
+     * @param maxLedgers the max number of ledgers tracked for each metric
+     * @param numTopLedgersGauges the number of top ledgers exposed as gauges for each metric
+     * @param halfLifeSeconds the time after which the accounted values are halved, 0 or less to never decay them
+     * @param statsLogger the stats logger of the gauges
+     */
+    @SuppressWarnings("unchecked")
+    public LedgerIoAccounting(int maxLedgers, int numTopLedgersGauges, int halfLifeSeconds, StatsLogger statsLogger) {
+        this.sketches = new ConcurrentLongHeavyHitters[METRICS.length];
+        for (int i = 0; i < METRICS.length; i++) {
+            sketches[i] = new ConcurrentLongHeavyHitters(maxLedgers);
+        }
+        this.halfLifeNanos = TimeUnit.SECONDS.toNanos(Math.max(halfLifeSeconds, 0));
+        this.lastDecayNanos = new AtomicLong(System.nanoTime());
+
+        this.numTopLedgersGauges = Math.max(numTopLedgersGauges, 0);
+        this.gaugesTopLedgers = new List[METRICS.length];
+        for (int i = 0; i < METRICS.length; i++) {
+            gaugesTopLedgers[i] = Collections.emptyList();
+        }
+        this.gaugesRefreshNanos = System.nanoTime() - GAUGES_REFRESH_INTERVAL_NANOS;
+
+        // TOP_LEDGER is the id of the ledger at the given rank for the metric, -1 if none, and
+        // TOP_LEDGER_VALUE the estimated value of the metric for this ledger
+        for (Metric metric : METRICS) {
+            for (int rank = 0; rank < this.numTopLedgersGauges; rank++) {
+                StatsLogger rankLogger = statsLogger.scope(metric.name())
+                        .scopeLabel("rank", Integer.toString(rank));
+                rankLogger.registerGauge(LEDGER_IO_TOP_LEDGER, new TopLedgerGauge(metric, rank, true));
+                rankLogger.registerGauge(LEDGER_IO_TOP_LEDGER_VALUE, new TopLedgerGauge(metric, rank, false));
+            }
+        }
+    }
+
+    public void recordAdd(long ledgerId, long bytes) {
+        add(Metric.ADD_OPS, ledgerId, 1);
+        add(Metric.ADD_BYTES, ledgerId, bytes);
+    }
+
+    public void recordRead(long ledgerId, long bytes) {
+        add(Metric.READ_OPS, ledgerId, 1);
+        add(Metric.READ_BYTES, ledgerId, bytes);
+    }
+
+    public void recordReadCacheHit(long ledgerId) {
+        add(Metric.READ_CACHE_HITS, ledgerId, 1);
+    }
+
+    public void recordReadAheadWaste(long ledgerId, long bytes) {
+        add(Metric.READ_AHEAD_WASTED_BYTES, ledgerId, bytes);
+    }
+
+    private void add(Metric metric, long ledgerId, long value) {
+        if (ledgerId >= 0 && value > 0) {
+            maybeDecay(System.nanoTime());
+            sketches[metric.ordinal()].add(ledgerId, value);
+        }
+    }
+
+    /**
+     * Halve the accounted values once for each half-life elapsed since they were last halved.
+     *
+     * @param nowNanos the current nano time
+     */
+    @VisibleForTesting
+    void maybeDecay(long nowNanos) {
+        if (halfLifeNanos <= 0) {
+            return;
+        }
+        long last = lastDecayNanos.get();
+        long halfLives = (nowNanos - last) / halfLifeNanos;
+        // a single thread decays the sketches for the elapsed half-lives
+        if (halfLives > 0 && lastDecayNanos.compareAndSet(last, last + halfLives * halfLifeNanos)) {
+            int shift = (int) Math.min(halfLives, 63);
+            for (ConcurrentLongHeavyHitters sketch : sketches) {
+                sketch.decay(shift);
+            }
+        }
+    }
+
+    /**
+     * Stop accounting a deleted ledger.
+     *
+     * @param ledgerId the deleted ledger
+     */
+    public void ledgerDeleted(long ledgerId) {
+        if (ledgerId >= 0) {
+            for (ConcurrentLongHeavyHitters sketch : sketches) {
+                sketch.remove(ledgerId);
+            }
+        }
+    }
+
+    /**
+     * @param metric the metric
+     * @param k the max number of ledgers to return
+     * @return the k ledgers with the highest estimated value of the metric, the heaviest first
+     */
+    public List<HeavyHitter> getTopLedgers(Metric metric, int k) {
+        maybeDecay(System.nanoTime());
+        return sketches[metric.ordinal()].top(k);
+    }
+
+    /**
+     * Forget the accounted ledgers, to start accounting from scratch.
+     */
+    public void reset() {
+        for (ConcurrentLongHeavyHitters sketch : sketches) {
+            sketch.clear();
+        }
+        lastDecayNanos.set(System.nanoTime());
+        gaugesRefreshNanos = System.nanoTime() - GAUGES_REFRESH_INTERVAL_NANOS;
+    }
+
+    private HeavyHitter getGaugeTopLedger(Metric metric, int rank) {
+        if (System.nanoTime() - gaugesRefreshNanos >= GAUGES_REFRESH_INTERVAL_NANOS) {
+            refreshGaugesTopLedgers();
+        }
+        List<HeavyHitter> topLedgers = gaugesTopLedgers[metric.ordinal()];
+        return rank < topLedgers.size() ? topLedgers.get(rank) : null;
+    }
+
+    // the gauges of all the ranks are sampled together, so the sketches are only scanned once per sampling
+    private synchronized void refreshGaugesTopLedgers() {
+        if (System.nanoTime() - gaugesRefreshNanos < GAUGES_REFRESH_INTERVAL_NANOS) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<HeavyHitter>[] topLedgers = new List[METRICS.length];
+        maybeDecay(System.nanoTime());
+        for (int i = 0; i < METRICS.length; i++) {
+            topLedgers[i] = sketches[i].top(numTopLedgersGauges);
+        }
+        gaugesTopLedgers = topLedgers;
+        gaugesRefreshNanos = System.nanoTime();
+    }
+
+    private class TopLedgerGauge implements Gauge<Long> {
+        private final Metric metric;
+        private final int rank;
+        private final boolean ledgerId;
+
+        TopLedgerGauge(Metric metric, int rank, boolean ledgerId) {
+            this.metric = metric;
+            this.rank = rank;
+            this.ledgerId = ledgerId;
+        }
+
+        @Override
+        public Long getDefaultValue() {
+            return ledgerId ? -1L : 0L;
+        }
+
+        @Override
+        public Long getSample() {
+            HeavyHitter topLedger = getGaugeTopLedger(metric, rank);
+            if (topLedger == null) {
+                return getDefaultValue();
+            }
+            return ledgerId ? topLedger.getKey() : topLedger.getWeight();
+        }
+    }
+}
@@ -53,7 +53,9 @@ import org.apache.bookkeeper.bookie.LastAddConfirmedUpdateNotification;
 import org.apache.bookkeeper.bookie.LedgerCache;
 import org.apache.bookkeeper.bookie.LedgerDirsManager;
 import org.apache.bookkeeper.bookie.LedgerStorage;
+import org.apache.bookkeeper.bookie.MemoryGovernor;
 import org.apache.bookkeeper.bookie.StateManager;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
 import org.apache.bookkeeper.bookie.storage.EntryLogIdsImpl;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
 import org.apache.bookkeeper.bookie.storage.directentrylogger.DirectEntryLogger;
@@ -120,6 +122,7 @@ public class DbLedgerStorage implements LedgerStorage {
     private static final long STORAGE_FLAGS_KEY = 0L;
     private int numberOfDirs;
     private List<SingleDirectoryDbLedgerStorage> ledgerStorageList;
+    private long rocksDBBlockCacheSize;
 
     private ExecutorService entryLoggerWriteExecutor = null;
     private ExecutorService entryLoggerFlushExecutor = null;
@@ -168,6 +171,7 @@ public class DbLedgerStorage implements LedgerStorage {
             throw new IOException("ledger and index dirs size not matched");
         }
 
+        rocksDBBlockCacheSize = KeyValueStorageRocksDB.getBlockCacheSize(conf) * numberOfDirs;
         long perDirectoryWriteCacheSize = writeCacheMaxSize / numberOfDirs;
         long perDirectoryReadCacheSize = readCacheMaxSize / numberOfDirs;
         int readAheadCacheBatchSize = conf.getInt(READ_AHEAD_CACHE_BATCH_SIZE, DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE);
@@ -325,6 +329,11 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerStorage(ledgerId).entryExists(ledgerId, entryId);
     }
 
+    @Override
+    public boolean isEntryCached(long ledgerId, long entryId) {
+        return getLedgerStorage(ledgerId).isEntryCached(ledgerId, entryId);
+    }
+
     @Override
     public boolean setFenced(long ledgerId) throws IOException {
         return getLedgerStorage(ledgerId).setFenced(ledgerId);
@@ -398,6 +407,18 @@ public class DbLedgerStorage implements LedgerStorage {
         ledgerStorageList.forEach(ls -> ls.registerLedgerDeletionListener(listener));
     }
 
+    @Override
+    public void setLedgerIoAccounting(LedgerIoAccounting accounting) {
+        ledgerStorageList.forEach(ls -> ls.setLedgerIoAccounting(accounting));
+    }
+
+    @Override
+    public void setMemoryGovernor(MemoryGovernor governor) {
+        // The RocksDB block caches can't be resized, their memory is reserved
+        governor.reserveMemory("the RocksDB block caches", rocksDBBlockCacheSize);
+        ledgerStorageList.forEach(ls -> ls.setMemoryGovernor(governor));
+    }
+
     @Override
     public void setExplicitLac(long ledgerId, ByteBuf lac) throws IOException {
         getLedgerStorage(ledgerId).setExplicitLac(ledgerId, lac);
@@ -174,6 +174,17 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
         }
     }
 
+    /**
+     * @return the size of the block cache of the entry location index of a ledger directory
+     */
+    static long getBlockCacheSize(ServerConfiguration conf) {
+        /* Set default RocksDB block-cache size to 10% / numberOfLedgers of direct memory, unless override */
+        int ledgerDirsSize = conf.getLedgerDirNames().length;
+        long defaultRocksDBBlockCacheSizeBytes = maxDirectMemory() / ledgerDirsSize / 10;
+        return DbLedgerStorage.getLongVariableOrDefault(conf, ROCKSDB_BLOCK_CACHE_SIZE,
+            defaultRocksDBBlockCacheSizeBytes);
+    }
+
     private RocksDB initializeRocksDBWithBookieConf(String basePath, String subPath, DbConfigType dbConfigType,
                                            ServerConfiguration conf, boolean readOnly) throws IOException {
         Options options = new Options();
@@ -181,11 +192,7 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
         ChecksumType checksumType = ChecksumType.valueOf(conf.getString(ROCKSDB_CHECKSUM_TYPE, "kxxHash"));
 
         if (dbConfigType == DbConfigType.EntryLocation) {
-            /* Set default RocksDB block-cache size to 10% / numberOfLedgers of direct memory, unless override */
-            int ledgerDirsSize = conf.getLedgerDirNames().length;
-            long defaultRocksDBBlockCacheSizeBytes = maxDirectMemory() / ledgerDirsSize / 10;
-            long blockCacheSize = DbLedgerStorage.getLongVariableOrDefault(conf, ROCKSDB_BLOCK_CACHE_SIZE,
-                defaultRocksDBBlockCacheSizeBytes);
+            long blockCacheSize = getBlockCacheSize(conf);
 
             long writeBufferSizeMB = conf.getInt(ROCKSDB_WRITE_BUFFER_SIZE_MB, 64);
             long sstSizeMB = conf.getInt(ROCKSDB_SST_SIZE_MB, 64);
@@ -30,7 +30,9 @@ import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
 import org.slf4j.Logger;
@@ -45,12 +47,18 @@ import org.slf4j.LoggerFactory;
  * ring-buffer fashion. When the read cache is full, the oldest segment
  * is cleared and rotated to make space for new entries to be added to
  * the read cache.
+ *
+ * <p>The memory of the cache can be resized by segments: the new segments are
+ * the next to be filled, and the oldest segments are the first to be dropped.
  */
 public class ReadCache implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(ReadCache.class);
 
     private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
 
+    // set in the size of the entries read ahead and not read yet, when the ledger I/O is accounted
+    private static final long READ_AHEAD_FLAG = 1L << 32;
+
     private final List<ByteBuf> cacheSegments;
     private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
 
@@ -62,6 +70,11 @@ public class ReadCache implements Closeable {
     private ByteBufAllocator allocator;
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    private volatile LedgerIoAccounting ledgerIoAccounting;
+
+    // bytes of the hits in the oldest segment, which would have been missed with one segment less
+    private final LongAdder oldestSegmentHitBytes = new LongAdder();
+
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize) {
         this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
     }
@@ -76,22 +89,113 @@ public class ReadCache implements Closeable {
 
         for (int i = 0; i < segmentsCount; i++) {
             cacheSegments.add(Unpooled.directBuffer(segmentSize, segmentSize));
-            ConcurrentLongLongPairHashMap concurrentLongLongPairHashMap = ConcurrentLongLongPairHashMap.newBuilder()
-                    .expectedItems(4096)
-                    .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
-                    .build();
-            cacheIndexes.add(concurrentLongLongPairHashMap);
+            cacheIndexes.add(newCacheIndex());
+        }
+    }
+
+    private static ConcurrentLongLongPairHashMap newCacheIndex() {
+        return ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(4096)
+                .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+                .build();
+    }
+
+    /**
+     * Set the memory limit of the cache, rounded down to a whole number of segments, with at least two segments.
+     *
+     * <p>The added segments are the next ones to be filled, and the removed segments are the oldest ones, whose
+     * entries are dropped.
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        int segmentsCount = (int) Math.max(2, memoryLimit / segmentSize);
+        List<ConcurrentLongLongPairHashMap> droppedIndexes = new ArrayList<>();
+
+        lock.writeLock().lock();
+        try {
+            while (cacheSegments.size() < segmentsCount) {
+                cacheSegments.add(currentSegmentIdx + 1, Unpooled.directBuffer(segmentSize, segmentSize));
+                cacheIndexes.add(currentSegmentIdx + 1, newCacheIndex());
+            }
+
+            while (cacheSegments.size() > segmentsCount) {
+                int oldestSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
+                droppedIndexes.add(cacheIndexes.remove(oldestSegmentIdx));
+                cacheSegments.remove(oldestSegmentIdx).release();
+                if (oldestSegmentIdx < currentSegmentIdx) {
+                    currentSegmentIdx--;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        droppedIndexes.forEach(this::accountReadAheadWaste);
+    }
+
+    /**
+     * @return the memory limit of the cache
+     */
+    public long getMemoryLimit() {
+        lock.readLock().lock();
+        try {
+            return (long) cacheSegments.size() * segmentSize;
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
+    /**
+     * @return the size of the segments, by which the memory of the cache is resized
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return the bytes of the hits in the oldest segment, which would have been misses with one segment less
+     */
+    public long getOldestSegmentHitBytes() {
+        return oldestSegmentHitBytes.sum();
+    }
+
     @Override
     public void close() {
         cacheSegments.forEach(ReferenceCountUtil::safeRelease);
     }
 
+    /**
+     * Write zeros to the whole cache, for its memory to be backed by the pages of the NUMA node of the
+     * calling thread, rather than of the threads first inserting the entries.
+     *
+     * <p>Only the segments of the cache are placed: the entries returned by {@link #get} are copies, in
+     * buffers of the allocator of the cache, whose pages are on the node of whichever thread first
+     * touched them.
+     */
+    public void prefault() {
+        for (ByteBuf segment : cacheSegments) {
+            segment.setZero(0, segment.capacity());
+        }
+    }
+
+    /**
+     * Set the ledger I/O accounting to which the cache hits, and the read-ahead entries evicted
+     * without being read, are reported.
+     */
+    public void setLedgerIoAccounting(LedgerIoAccounting ledgerIoAccounting) {
+        this.ledgerIoAccounting = ledgerIoAccounting;
+    }
+
     public void put(long ledgerId, long entryId, ByteBuf entry) {
+        put(ledgerId, entryId, entry, false);
+    }
+
+    /**
+     * @param readAhead whether the entry is read ahead, rather than being requested
+     */
+    public void put(long ledgerId, long entryId, ByteBuf entry, boolean readAhead) {
         int entrySize = entry.readableBytes();
         int alignedSize = align64(entrySize);
+        long indexedSize = readAhead && ledgerIoAccounting != null ? entrySize | READ_AHEAD_FLAG : entrySize;
 
         lock.readLock().lock();
 
@@ -107,7 +211,7 @@ public class ReadCache implements Closeable {
                 // Copy entry into read cache segment
                 cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(),
                         entry.readableBytes());
-                cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
+                cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, indexedSize);
                 return;
             }
         } finally {
@@ -116,6 +220,7 @@ public class ReadCache implements Closeable {
 
         // We could not insert in segment, we to get the write lock and roll-over to
         // next segment
+        ConcurrentLongLongPairHashMap droppedIndex = null;
         lock.writeLock().lock();
 
         try {
@@ -124,16 +229,41 @@ public class ReadCache implements Closeable {
                 // Rollover to next segment
                 currentSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
                 currentSegmentOffset.set(alignedSize);
-                cacheIndexes.get(currentSegmentIdx).clear();
+                droppedIndex = dropIndex(currentSegmentIdx);
                 offset = 0;
             }
 
             // Copy entry into read cache segment
             cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(), entry.readableBytes());
-            cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
+            cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, indexedSize);
         } finally {
             lock.writeLock().unlock();
         }
+
+        if (droppedIndex != null) {
+            accountReadAheadWaste(droppedIndex);
+        }
+    }
+
+    // empties the index of a segment being overwritten. When the ledger I/O is accounted, the index is
+    // replaced rather than cleared, and returned to be scanned for the read-ahead waste outside the lock
+    private ConcurrentLongLongPairHashMap dropIndex(int segmentIdx) {
+        if (ledgerIoAccounting == null) {
+            cacheIndexes.get(segmentIdx).clear();
+            return null;
+        }
+        return cacheIndexes.set(segmentIdx, newCacheIndex());
+    }
+
+    private void accountReadAheadWaste(ConcurrentLongLongPairHashMap cacheIndex) {
+        LedgerIoAccounting accounting = ledgerIoAccounting;
+        if (accounting != null) {
+            cacheIndex.forEach((ledgerId, entryId, entryOffset, entrySize) -> {
+                if ((entrySize & READ_AHEAD_FLAG) != 0) {
+                    accounting.recordReadAheadWaste(ledgerId, (int) entrySize);
+                }
+            });
+        }
     }
 
     public ByteBuf get(long ledgerId, long entryId) {
@@ -152,8 +282,21 @@ public class ReadCache implements Closeable {
                     int entryOffset = (int) res.first;
                     int entryLen = (int) res.second;
 
+                    // copied out of the segment, which can be overwritten once the lock is released
                     ByteBuf entry = allocator.buffer(entryLen, entryLen);
                     entry.writeBytes(cacheSegments.get(segmentIdx), entryOffset, entryLen);
+                    if (i == size - 1 && size > 1) {
+                        oldestSegmentHitBytes.add(entryLen);
+                    }
+
+                    LedgerIoAccounting accounting = ledgerIoAccounting;
+                    if (accounting != null) {
+                        accounting.recordReadCacheHit(ledgerId);
+                        if ((res.second & READ_AHEAD_FLAG) != 0) {
+                            // the read-ahead entry has been useful, it is not accounted as waste anymore
+                            cacheIndexes.get(segmentIdx).put(ledgerId, entryId, entryOffset, entryLen);
+                        }
+                    }
                     return entry;
                 }
             }
@@ -41,13 +41,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.BookieException;
@@ -64,10 +69,16 @@ import org.apache.bookkeeper.bookie.LedgerCache;
 import org.apache.bookkeeper.bookie.LedgerDirsManager;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
 import org.apache.bookkeeper.bookie.LedgerEntryPage;
+import org.apache.bookkeeper.bookie.MemoryGovernor;
+import org.apache.bookkeeper.bookie.MemoryGovernor.GovernedCache;
+import org.apache.bookkeeper.bookie.MemoryGovernor.MarginalUtility;
 import org.apache.bookkeeper.bookie.StateManager;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
 import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorageDataFormats.LedgerData;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.common.allocator.EntrySlabAllocator;
+import org.apache.bookkeeper.common.allocator.MemorySubsystem;
 import org.apache.bookkeeper.common.util.Watcher;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -77,6 +88,7 @@ import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.ThreadRegistry;
 import org.apache.bookkeeper.util.MathUtils;
+import org.apache.bookkeeper.util.ThreadPlacement;
 import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang.mutable.MutableLong;
@@ -143,6 +155,17 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final Counter flushExecutorTime;
 
+    private final String ledgerBaseDir;
+
+    // With the memory governor, the memory of the caches is resized by steps
+    private final boolean memoryGoverned;
+    private final long memoryGovernorStep;
+    private final long maxGovernedMemory;
+    // Memory limit of each write cache, applied to a write cache once flushed
+    private volatile long writeCacheMemoryLimit;
+    private final LongAdder throttledWriteBytes = new LongAdder();
+    private final AtomicLong writeCachePeakSize = new AtomicLong();
+
     public SingleDirectoryDbLedgerStorage(ServerConfiguration conf, LedgerManager ledgerManager,
                                           LedgerDirsManager ledgerDirsManager, LedgerDirsManager indexDirsManager,
                                           EntryLogger entryLogger, StatsLogger statsLogger, ByteBufAllocator allocator,
@@ -151,7 +174,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         checkArgument(ledgerDirsManager.getAllLedgerDirs().size() == 1,
                 "Db implementation only allows for one storage dir");
 
-        String ledgerBaseDir = ledgerDirsManager.getAllLedgerDirs().get(0).getPath();
+        ledgerBaseDir = ledgerDirsManager.getAllLedgerDirs().get(0).getPath();
         // indexBaseDir default use ledgerBaseDir
         String indexBaseDir = ledgerBaseDir;
         if (CollectionUtils.isEmpty(indexDirsManager.getAllLedgerDirs())) {
@@ -167,9 +190,34 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 .scopeLabel("ledgerDir", ledgerBaseDir)
                 .scopeLabel("indexDir", indexBaseDir);
 
+        // With the thread placement, the flush thread is placed first and the caches are allocated and
+        // zeroed from it, for the kernel to back them with memory of the NUMA node of the thread
+        boolean placeCaches = ThreadPlacement.isEnabled(conf);
+        if (placeCaches) {
+            executor.execute(() -> ThreadPlacement.placeCurrentThread(conf, ThreadPlacement.Role.DB_STORAGE));
+        }
+
+        // The caches allocate the entries they hand out to the read requests
+        ByteBufAllocator readAllocator = EntrySlabAllocator.forSubsystem(allocator, MemorySubsystem.Read);
+
+        // With the memory governor, the caches are resized by steps and each cache can grow up to half of the
+        // governed memory
+        this.memoryGoverned = conf.isMemoryGovernorEnabled();
+        this.memoryGovernorStep = MemoryGovernor.getStep(conf);
+        this.maxGovernedMemory = MemoryGovernor.getMaxMemory(conf);
+        this.writeCacheMemoryLimit = writeCacheSize / 2;
+        Supplier<WriteCache> writeCacheAllocation;
+        if (memoryGoverned) {
+            int segmentSize = Integer.highestOneBit((int) Math.min(memoryGovernorStep / 2, 1024 * 1024 * 1024));
+            writeCacheAllocation = () -> new WriteCache(readAllocator, maxGovernedMemory / 2, segmentSize,
+                    writeCacheSize / 2);
+        } else {
+            writeCacheAllocation = () -> new WriteCache(readAllocator, writeCacheSize / 2);
+        }
+
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        this.writeCache = allocateCache(placeCaches, writeCacheAllocation, WriteCache::prefault);
+        this.writeCacheBeingFlushed = allocateCache(placeCaches, writeCacheAllocation, WriteCache::prefault);
 
         readCacheMaxSize = readCacheSize;
         this.readAheadCacheBatchSize = readAheadCacheBatchSize;
@@ -181,7 +229,15 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        Supplier<ReadCache> readCacheAllocation;
+        if (memoryGoverned) {
+            // Segments of one step each
+            long readCacheLimit = Math.max(2, readCacheSize / memoryGovernorStep) * memoryGovernorStep;
+            readCacheAllocation = () -> new ReadCache(readAllocator, readCacheLimit, (int) memoryGovernorStep);
+        } else {
+            readCacheAllocation = () -> new ReadCache(readAllocator, readCacheSize);
+        }
+        readCache = allocateCache(placeCaches, readCacheAllocation, ReadCache::prefault);
 
         ledgerIndex = new LedgerMetadataIndex(conf,
                 KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
@@ -223,6 +279,26 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
+    private <T> T allocateCache(boolean onFlushThread, Supplier<T> allocation, Consumer<T> prefault)
+            throws IOException {
+        if (!onFlushThread) {
+            return allocation.get();
+        }
+
+        try {
+            return executor.submit(() -> {
+                T cache = allocation.get();
+                prefault.accept(cache);
+                return cache;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while allocating the caches", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to allocate the caches", e.getCause());
+        }
+    }
+
     @Override
     public void initialize(ServerConfiguration conf, LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager,
             LedgerDirsManager indexDirsManager, StatsLogger statsLogger,
@@ -370,6 +446,24 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return false;
         }
 
+        if (isEntryCached(ledgerId, entryId)) {
+            return true;
+        }
+
+        // Read from main storage
+        long entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
+        if (entryLocation != 0) {
+            return true;
+        }
+
+        // Only a negative result while in limbo equates to unknown
+        throwIfLimbo(ledgerId);
+
+        return false;
+    }
+
+    @Override
+    public boolean isEntryCached(long ledgerId, long entryId) {
         // We need to try to read from both write caches, since recent entries could be found in either of the two. The
         // write caches are already thread safe on their own, here we just need to make sure we get references to both
         // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
@@ -387,24 +481,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             }
         }
 
-        boolean inCache = localWriteCache.hasEntry(ledgerId, entryId)
+        return localWriteCache.hasEntry(ledgerId, entryId)
              || localWriteCacheBeingFlushed.hasEntry(ledgerId, entryId)
              || readCache.hasEntry(ledgerId, entryId);
-
-        if (inCache) {
-            return true;
-        }
-
-        // Read from main storage
-        long entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
-        if (entryLocation != 0) {
-            return true;
-        }
-
-        // Only a negative result while in limbo equates to unknown
-        throwIfLimbo(ledgerId);
-
-        return false;
     }
 
     @Override
@@ -501,6 +580,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             throws IOException, BookieException {
         long throttledStartTime = MathUtils.nowInNano();
         dbLedgerStorageStats.getThrottledWriteRequests().inc();
+        throttledWriteBytes.add(entry.readableBytes());
         long absoluteTimeoutNanos = System.nanoTime() + maxThrottleTimeNanos;
 
         while (System.nanoTime() < absoluteTimeoutNanos) {
@@ -671,7 +751,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                     }
 
                     // Insert entry in read cache
-                    readCache.put(orginalLedgerId, currentEntryId, entry);
+                    readCache.put(orginalLedgerId, currentEntryId, entry, true);
 
                     count++;
                     firstEntryId++;
@@ -785,7 +865,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
 
         try {
-            if (writeCache.isEmpty()) {
+            if (writeCache.isEmpty() && !isWriteCacheResizePending()) {
                 return;
             }
             // Swap the write cache so that writes can continue to happen while the flush is
@@ -844,6 +924,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             // Discard all the entry from the write cache, since they're now persisted
             writeCacheBeingFlushed.clear();
 
+            // The flushed write cache is not written to until the next swap, it can be resized
+            long memoryLimit = writeCacheMemoryLimit;
+            if (writeCacheBeingFlushed.getMemoryLimit() != memoryLimit && writeCacheBeingFlushed.isEmpty()) {
+                writeCacheBeingFlushed.setMemoryLimit(memoryLimit);
+            }
+
             double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
             double flushThroughput = sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds;
 
@@ -866,6 +952,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
+    private boolean isWriteCacheResizePending() {
+        long memoryLimit = writeCacheMemoryLimit;
+        return writeCache.getMemoryLimit() != memoryLimit || writeCacheBeingFlushed.getMemoryLimit() != memoryLimit;
+    }
+
     /**
      * Swap the current write cache with the replacement cache.
      */
@@ -877,6 +968,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             WriteCache tmp = writeCacheBeingFlushed;
             writeCacheBeingFlushed = writeCache;
             writeCache = tmp;
+            writeCachePeakSize.accumulateAndGet(writeCacheBeingFlushed.size(), Math::max);
 
             // since the cache is switched, we can allow flush to be triggered
             hasFlushBeenTriggered.set(false);
@@ -1071,6 +1163,109 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         ledgerDeletionListeners.add(listener);
     }
 
+    @Override
+    public void setLedgerIoAccounting(LedgerIoAccounting accounting) {
+        readCache.setLedgerIoAccounting(accounting);
+    }
+
+    @Override
+    public void setMemoryGovernor(MemoryGovernor governor) {
+        if (memoryGoverned) {
+            governor.registerCache(new GovernedWriteCache());
+            governor.registerCache(new GovernedReadCache());
+        }
+    }
+
+    /**
+     * The two write caches, governed together. The utility of the write caches is the bytes of the writes throttled
+     * for lack of room in the write cache, plus, for the loss, the bytes which would have overflown the write caches
+     * with a step less.
+     */
+    private class GovernedWriteCache implements GovernedCache {
+        private long lastThrottledWriteBytes = 0;
+
+        @Override
+        public String getName() {
+            return "write-cache-" + ledgerBaseDir;
+        }
+
+        @Override
+        public long getMemoryLimit() {
+            return 2 * writeCacheMemoryLimit;
+        }
+
+        @Override
+        public long getMinMemoryLimit() {
+            return memoryGovernorStep;
+        }
+
+        @Override
+        public long getMaxMemoryLimit() {
+            return maxGovernedMemory;
+        }
+
+        @Override
+        public void setMemoryLimit(long memoryLimit) {
+            // Applied to each write cache at its next flush
+            writeCacheMemoryLimit = Math.min(memoryLimit / 2, maxGovernedMemory / 2);
+        }
+
+        @Override
+        public MarginalUtility sampleMarginalUtility() {
+            long throttled = throttledWriteBytes.sum();
+            long gain = throttled - lastThrottledWriteBytes;
+            lastThrottledWriteBytes = throttled;
+
+            // a step less is half a step less for each write cache
+            long peakSize = Math.max(writeCachePeakSize.getAndSet(0), writeCache.size());
+            long overflow = Math.max(0, peakSize - (writeCacheMemoryLimit - memoryGovernorStep / 2));
+            return new MarginalUtility(gain, gain + overflow);
+        }
+    }
+
+    /**
+     * The read cache, whose utility is the bytes of the hits in its oldest segment, which would have been read from
+     * the disk with a step less, and which hint at the hits a step more would bring. The hits of the oldest segment
+     * are scaled from the size of a segment to the size of a step.
+     */
+    private class GovernedReadCache implements GovernedCache {
+        private long lastOldestSegmentHitBytes = 0;
+
+        @Override
+        public String getName() {
+            return "read-cache-" + ledgerBaseDir;
+        }
+
+        @Override
+        public long getMemoryLimit() {
+            return readCache.getMemoryLimit();
+        }
+
+        @Override
+        public long getMinMemoryLimit() {
+            return 2L * readCache.getSegmentSize();
+        }
+
+        @Override
+        public long getMaxMemoryLimit() {
+            return maxGovernedMemory;
+        }
+
+        @Override
+        public void setMemoryLimit(long memoryLimit) {
+            readCache.setMemoryLimit(memoryLimit);
+        }
+
+        @Override
+        public MarginalUtility sampleMarginalUtility() {
+            long hitBytes = readCache.getOldestSegmentHitBytes();
+            long oldestSegmentHitBytes = hitBytes - lastOldestSegmentHitBytes;
+            lastOldestSegmentHitBytes = hitBytes;
+            long utility = (long) ((double) oldestSegmentHitBytes * memoryGovernorStep / readCache.getSegmentSize());
+            return new MarginalUtility(utility, utility);
+        }
+    }
+
     public EntryLocationIndex getEntryLocationIndex() {
         return entryLocationIndex;
     }
@@ -25,6 +25,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.util.IllegalReferenceCountException;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -49,6 +50,9 @@ import org.slf4j.LoggerFactory;
  *
  * <p>There is the possibility to iterate through the stored entries in an ordered
  * way, by (ledgerId, entry).
+ *
+ * <p>The memory of the cache can be limited below its max size, only the segments
+ * covering the memory limit being allocated.
  */
 public class WriteCache implements Closeable {
 
@@ -77,6 +81,8 @@ public class WriteCache implements Closeable {
     private final long segmentOffsetMask;
     private final long segmentOffsetBits;
 
+    private volatile long memoryLimit;
+
     private final AtomicLong cacheSize = new AtomicLong(0);
     private final AtomicLong cacheOffset = new AtomicLong(0);
     private final LongAdder cacheCount = new LongAdder();
@@ -91,6 +97,10 @@ public class WriteCache implements Closeable {
     }
 
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, maxCacheSize);
+    }
+
+    public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, long memoryLimit) {
         checkArgument(maxSegmentSize > 0);
 
         long alignedMaxSegmentSize = alignToPowerOfTwo(maxSegmentSize);
@@ -105,14 +115,53 @@ public class WriteCache implements Closeable {
         this.segmentsCount = 1 + (int) (maxCacheSize / maxSegmentSize);
 
         this.cacheSegments = new ByteBuf[segmentsCount];
+        setMemoryLimit(memoryLimit);
+    }
 
-        for (int i = 0; i < segmentsCount - 1; i++) {
-            // All intermediate segments will be full-size
-            cacheSegments[i] = Unpooled.directBuffer(maxSegmentSize, maxSegmentSize);
+    /**
+     * Set the memory limit of the cache, allocating or releasing the segments accordingly.
+     *
+     * <p>The cache must be empty, and no entry must be added to it until the limit is set.
+     *
+     * @param memoryLimit the memory limit, capped to the max size of the cache
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        checkArgument(isEmpty(), "The write cache can only be resized while empty");
+        long limit = Math.min(memoryLimit, maxCacheSize);
+
+        for (int i = 0; i < segmentsCount; i++) {
+            // All the segments are full-size, but the one at the limit
+            int segmentSize = (int) Math.max(0, Math.min(maxSegmentSize, limit - (long) i * maxSegmentSize));
+            ByteBuf segment = cacheSegments[i];
+            if (segment != null && segment.capacity() == segmentSize) {
+                continue;
+            }
+
+            if (segment != null) {
+                segment.release();
+            }
+            cacheSegments[i] = segmentSize > 0 ? Unpooled.directBuffer(segmentSize, segmentSize) : null;
         }
+        this.memoryLimit = limit;
+    }
 
-        int lastSegmentSize = (int) (maxCacheSize % maxSegmentSize);
-        cacheSegments[segmentsCount - 1] = Unpooled.directBuffer(lastSegmentSize, lastSegmentSize);
+    /**
+     * @return the memory limit of the cache
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Write zeros to the whole cache, for its memory to be backed by the pages of the NUMA node of the
+     * calling thread, rather than of the threads first writing the entries.
+     */
+    public void prefault() {
+        for (ByteBuf segment : cacheSegments) {
+            if (segment != null) {
+                segment.setZero(0, segment.capacity());
+            }
+        }
     }
 
     public void clear() {
@@ -127,7 +176,9 @@ public class WriteCache implements Closeable {
     @Override
     public void close() {
         for (ByteBuf buf : cacheSegments) {
-            buf.release();
+            if (buf != null) {
+                buf.release();
+            }
         }
     }
 
@@ -147,7 +198,7 @@ public class WriteCache implements Closeable {
             localOffset = (int) (offset & segmentOffsetMask);
             segmentIdx = (int) (offset >>> segmentOffsetBits);
 
-            if ((offset + size) > maxCacheSize) {
+            if ((offset + size) > memoryLimit) {
                 // Cache is full
                 return false;
             } else if (maxSegmentSize - localOffset < size) {
@@ -191,12 +242,27 @@ public class WriteCache implements Closeable {
 
         long offset = result.first;
         int size = (int) result.second;
-        ByteBuf entry = allocator.buffer(size, size);
-
         int localOffset = (int) (offset & segmentOffsetMask);
         int segmentIdx = (int) (offset >>> segmentOffsetBits);
-        entry.writeBytes(cacheSegments[segmentIdx], localOffset, size);
-        return entry;
+
+        // The segment is released if the cache is resized after being cleared
+        ByteBuf segment = cacheSegments[segmentIdx];
+        if (segment == null) {
+            return null;
+        }
+        try {
+            segment.retain();
+        } catch (IllegalReferenceCountException e) {
+            return null;
+        }
+
+        try {
+            ByteBuf entry = allocator.buffer(size, size);
+            entry.writeBytes(segment, localOffset, size);
+            return entry;
+        } finally {
+            segment.release();
+        }
     }
 
     public boolean hasEntry(long ledgerId, long entryId) {
@@ -257,7 +323,9 @@ public class WriteCache implements Closeable {
 
             ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
             for (int i = 0; i < segmentsCount; i++) {
-                entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+                if (cacheSegments[i] != null) {
+                    entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+                }
             }
 
             for (int i = 0; i < sortedEntriesIdx; i += 4) {
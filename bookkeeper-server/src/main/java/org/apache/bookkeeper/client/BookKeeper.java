@@ -32,6 +32,7 @@ import io.netty.util.HashedWheelTimer;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -71,6 +72,7 @@ import org.apache.bookkeeper.conf.AbstractConfiguration;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.feature.FeatureProvider;
 import org.apache.bookkeeper.feature.SettableFeatureProvider;
+import org.apache.bookkeeper.meta.CachingLedgerManager;
 import org.apache.bookkeeper.meta.CleanupLedgerManager;
 import org.apache.bookkeeper.meta.LedgerIdGenerator;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -141,6 +143,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
 
     // Ensemble Placement Policy
     final EnsemblePlacementPolicy placementPolicy;
+    final Optional<ReadRoutingPolicy> readRoutingPolicy;
+    final Optional<ClientEntryCache> entryCache;
     BookieInfoReader bookieInfoReader;
 
     final ClientConfiguration conf;
@@ -503,9 +507,19 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         this.placementPolicy = initializeEnsemblePlacementPolicy(conf,
                 dnsResolver, this.requestTimer, this.featureProvider, this.statsLogger, bookieAddressResolver);
 
+        this.readRoutingPolicy = initializeReadRoutingPolicy(conf, this.statsLogger);
+
+        if (conf.getEntryCacheMaxSizeBytes() > 0) {
+            LOG.info("Entry cache enabled, max size {} bytes", conf.getEntryCacheMaxSizeBytes());
+            this.entryCache = Optional.of(
+                    new ClientEntryCache(conf.getEntryCacheMaxSizeBytes(), this.allocator, this.statsLogger));
+        } else {
+            this.entryCache = Optional.empty();
+        }
+
         this.bookieWatcher = new BookieWatcherImpl(
-                conf, this.placementPolicy, metadataDriver.getRegistrationClient(), bookieAddressResolver,
-                this.statsLogger.scope(WATCHER_SCOPE));
+                conf, this.placementPolicy, this.readRoutingPolicy, metadataDriver.getRegistrationClient(),
+                bookieAddressResolver, this.statsLogger.scope(WATCHER_SCOPE));
 
         // initialize bookie client
         this.bookieClient = new BookieClientImpl(conf, this.eventLoopGroup, this.allocator, this.mainWorkerPool,
@@ -533,7 +547,17 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         } catch (MetadataException e) {
             throw new IOException("Failed to initialize ledger manager factory", e);
         }
-        this.ledgerManager = new CleanupLedgerManager(ledgerManagerFactory.newLedgerManager());
+        if (conf.getLedgerMetadataCacheMaxEntries() > 0) {
+            LOG.info("Ledger metadata cache enabled, max entries {}, max size {} bytes, watch all ledgers {}",
+                    conf.getLedgerMetadataCacheMaxEntries(), conf.getLedgerMetadataCacheMaxSizeBytes(),
+                    conf.getLedgerMetadataCacheWatchAllLedgers());
+            this.ledgerManager = new CleanupLedgerManager(new CachingLedgerManager(
+                    ledgerManagerFactory.newLedgerManager(), conf.getLedgerMetadataCacheMaxEntries(),
+                    conf.getLedgerMetadataCacheMaxSizeBytes(), conf.getLedgerMetadataCacheWatchAllLedgers(),
+                    this.statsLogger));
+        } else {
+            this.ledgerManager = new CleanupLedgerManager(ledgerManagerFactory.newLedgerManager());
+        }
         this.ledgerIdGenerator = ledgerManagerFactory.newLedgerIdGenerator();
 
         this.bookieQuarantineRatio = conf.getBookieQuarantineRatio();
@@ -553,6 +577,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         requestTimer = null;
         metadataDriver = null;
         placementPolicy = null;
+        readRoutingPolicy = Optional.empty();
+        entryCache = Optional.empty();
         ownTimer = false;
         mainWorkerPool = null;
         ledgerManagerFactory = null;
@@ -583,6 +609,21 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         }
     }
 
+    protected Optional<ReadRoutingPolicy> initializeReadRoutingPolicy(ClientConfiguration conf,
+                                                                      StatsLogger statsLogger)
+        throws IOException {
+        try {
+            Class<? extends ReadRoutingPolicy> policyCls = conf.getReadRoutingPolicy();
+            if (null == policyCls) {
+                return Optional.empty();
+            }
+            LOG.info("Read routing policy {} enabled", policyCls.getName());
+            return Optional.of(ReflectionUtils.newInstance(policyCls).initialize(conf, statsLogger));
+        } catch (ConfigurationException e) {
+            throw new IOException("Failed to initialize read routing policy : ", e);
+        }
+    }
+
     int getReturnRc(int rc) {
         return getReturnRc(bookieClient, rc);
     }
@@ -655,7 +696,27 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
 
     @VisibleForTesting
     LedgerManager getUnderlyingLedgerManager() {
-        return ((CleanupLedgerManager) ledgerManager).getUnderlying();
+        LedgerManager underlying = ((CleanupLedgerManager) ledgerManager).getUnderlying();
+        if (underlying instanceof CachingLedgerManager) {
+            underlying = ((CachingLedgerManager) underlying).getUnderlying();
+        }
+        return underlying;
+    }
+
+    /**
+     * Read the metadata of the given ledgers ahead of opening them, when the ledger metadata cache
+     * is enabled (see {@link ClientConfiguration#setLedgerMetadataCacheMaxEntries(long)}). It is a
+     * no-op otherwise.
+     *
+     * @param ledgerIds ids of the ledgers which are about to be opened
+     * @return future which completes once the metadata of the ledgers is read
+     */
+    public CompletableFuture<Void> prefetchLedgerMetadata(Collection<Long> ledgerIds) {
+        LedgerManager underlying = ((CleanupLedgerManager) ledgerManager).getUnderlying();
+        if (underlying instanceof CachingLedgerManager) {
+            return ((CachingLedgerManager) underlying).prefetchLedgerMetadata(ledgerIds);
+        }
+        return CompletableFuture.completedFuture(null);
     }
 
     @VisibleForTesting
@@ -696,6 +757,15 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         return placementPolicy;
     }
 
+    /**
+     * Get the read routing policy, if one is configured.
+     *
+     * @return the read routing policy of this client.
+     */
+    public Optional<ReadRoutingPolicy> getReadRoutingPolicy() {
+        return readRoutingPolicy;
+    }
+
     @VisibleForTesting
     public MetadataClientDriver getMetadataClientDriver() {
         return metadataDriver;
@@ -1472,6 +1542,9 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
             }
         }
 
+        readRoutingPolicy.ifPresent(ReadRoutingPolicy::uninitialize);
+        entryCache.ifPresent(ClientEntryCache::close);
+
         if (ownTimer) {
             requestTimer.stop();
         }
@@ -1629,6 +1702,16 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return BookKeeper.this.getPlacementPolicy();
             }
 
+            @Override
+            public Optional<ReadRoutingPolicy> getReadRoutingPolicy() {
+                return BookKeeper.this.getReadRoutingPolicy();
+            }
+
+            @Override
+            public Optional<ClientEntryCache> getEntryCache() {
+                return entryCache;
+            }
+
             @Override
             public BookieClient getBookieClient() {
                 return BookKeeper.this.getBookieClient();
@@ -49,6 +49,8 @@ public class BookieInfoReader {
     private static final long GET_BOOKIE_INFO_REQUEST_FLAGS =
         BookkeeperProtocol.GetBookieInfoRequest.Flags.TOTAL_DISK_CAPACITY_VALUE
                                | BookkeeperProtocol.GetBookieInfoRequest.Flags.FREE_DISK_SPACE_VALUE;
+    private static final long GET_BOOKIE_INFO_WITH_LOAD_REQUEST_FLAGS = GET_BOOKIE_INFO_REQUEST_FLAGS
+                               | BookkeeperProtocol.GetBookieInfoRequest.Flags.LOAD_VALUE;
 
     private final ScheduledExecutorService scheduler;
     private final BookKeeper bk;
@@ -62,12 +64,29 @@ public class BookieInfoReader {
     public static class BookieInfo implements WeightedObject {
         private final long freeDiskSpace;
         private final long totalDiskSpace;
+        private final int addsInProgress;
+        private final int readsInProgress;
+        private final int journalQueueLength;
+        private final double loadFactor;
         public BookieInfo() {
             this(0L, 0L);
         }
         public BookieInfo(long totalDiskSpace, long freeDiskSpace) {
+            this(totalDiskSpace, freeDiskSpace, 0, 0, 0);
+        }
+        public BookieInfo(long totalDiskSpace, long freeDiskSpace,
+                          int addsInProgress, int readsInProgress, int journalQueueLength) {
+            this(totalDiskSpace, freeDiskSpace, addsInProgress, readsInProgress, journalQueueLength, 1.0);
+        }
+        private BookieInfo(long totalDiskSpace, long freeDiskSpace,
+                           int addsInProgress, int readsInProgress, int journalQueueLength,
+                           double loadFactor) {
             this.totalDiskSpace = totalDiskSpace;
             this.freeDiskSpace = freeDiskSpace;
+            this.addsInProgress = addsInProgress;
+            this.readsInProgress = readsInProgress;
+            this.journalQueueLength = journalQueueLength;
+            this.loadFactor = loadFactor;
         }
         public long getFreeDiskSpace() {
             return freeDiskSpace;
@@ -75,13 +94,37 @@ public class BookieInfoReader {
         public long getTotalDiskSpace() {
             return totalDiskSpace;
         }
+        public int getAddsInProgress() {
+            return addsInProgress;
+        }
+        public int getReadsInProgress() {
+            return readsInProgress;
+        }
+        public int getJournalQueueLength() {
+            return journalQueueLength;
+        }
+        /**
+         * Returns the load reported by the bookie, as the number of outstanding requests and journal entries.
+         */
+        public long getLoad() {
+            return (long) addsInProgress + readsInProgress + journalQueueLength;
+        }
+        /**
+         * Returns a copy of this info whose weight is scaled by the given factor.
+         */
+        BookieInfo withLoadFactor(double loadFactor) {
+            return new BookieInfo(totalDiskSpace, freeDiskSpace,
+                    addsInProgress, readsInProgress, journalQueueLength, loadFactor);
+        }
         @Override
         public long getWeight() {
-            return freeDiskSpace;
+            return loadFactor == 1.0 ? freeDiskSpace : (long) (freeDiskSpace * loadFactor);
         }
         @Override
         public String toString() {
-            return "FreeDiskSpace: " + this.freeDiskSpace + " TotalDiskCapacity: " + this.totalDiskSpace;
+            return "FreeDiskSpace: " + this.freeDiskSpace + " TotalDiskCapacity: " + this.totalDiskSpace
+                + " AddsInProgress: " + this.addsInProgress + " ReadsInProgress: " + this.readsInProgress
+                + " JournalQueueLength: " + this.journalQueueLength;
         }
     }
 
@@ -259,7 +302,18 @@ public class BookieInfoReader {
                     }
                 }
             }
-        }, 0, conf.getGetBookieInfoIntervalSeconds(), TimeUnit.SECONDS);
+        }, 0, getPollIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * The load of the bookies changes much faster than their free disk space, so when it is used to
+     * weight the bookies they are polled at the shorter load aware placement interval.
+     */
+    private int getPollIntervalSeconds() {
+        if (conf.getLoadAwarePlacementEnabled()) {
+            return Math.min(conf.getGetBookieInfoIntervalSeconds(), conf.getLoadAwarePlacementIntervalSeconds());
+        }
+        return conf.getGetBookieInfoIntervalSeconds();
     }
 
     private void submitTask() {
@@ -326,8 +380,7 @@ public class BookieInfoReader {
         }
 
         BookieClient bkc = bk.getBookieClient();
-        final long requested = BookkeeperProtocol.GetBookieInfoRequest.Flags.TOTAL_DISK_CAPACITY_VALUE
-                               | BookkeeperProtocol.GetBookieInfoRequest.Flags.FREE_DISK_SPACE_VALUE;
+        final long requested = getRequestFlags();
         totalSent = 0;
         completedCnt = 0;
         errorCnt = 0;
@@ -380,8 +433,42 @@ public class BookieInfoReader {
         }
     }
 
+    private long getRequestFlags() {
+        return conf.getLoadAwarePlacementEnabled()
+                ? GET_BOOKIE_INFO_WITH_LOAD_REQUEST_FLAGS : GET_BOOKIE_INFO_REQUEST_FLAGS;
+    }
+
+    /**
+     * Scale the weight of each bookie by its load relative to the average load of the cluster,
+     * so that busy bookies are picked less often than idle bookies with similar free space.
+     */
+    static Map<BookieId, BookieInfo> applyLoadFactors(Map<BookieId, BookieInfo> infos) {
+        if (infos.isEmpty()) {
+            return infos;
+        }
+        long totalLoad = 0;
+        for (BookieInfo info : infos.values()) {
+            totalLoad += info.getLoad();
+        }
+        if (totalLoad == 0) {
+            return infos;
+        }
+        double meanLoad = (double) totalLoad / infos.size();
+        Map<BookieId, BookieInfo> weighted = new HashMap<>(infos.size());
+        for (Map.Entry<BookieId, BookieInfo> e : infos.entrySet()) {
+            BookieInfo info = e.getValue();
+            double factor = (meanLoad + 1) / (info.getLoad() + meanLoad + 1);
+            weighted.put(e.getKey(), info.withLoadFactor(factor));
+        }
+        return weighted;
+    }
+
     void onExit() {
-        bk.placementPolicy.updateBookieInfo(bookieInfoMap.getBookieMap());
+        if (conf.getLoadAwarePlacementEnabled()) {
+            bk.placementPolicy.updateBookieInfo(applyLoadFactors(bookieInfoMap.getBookieMap()));
+        } else {
+            bk.placementPolicy.updateBookieInfo(bookieInfoMap.getBookieMap());
+        }
         if (errorCnt > 0) {
             if (LOG.isInfoEnabled()) {
                 LOG.info("Rescheduling in {}s due to errors", conf.getGetBookieInfoIntervalSeconds());
@@ -403,8 +490,7 @@ public class BookieInfoReader {
         final ConcurrentMap<BookieId, BookieInfo> map =
             new ConcurrentHashMap<BookieId, BookieInfo>();
         final CountDownLatch latch = new CountDownLatch(1);
-        long requested = BookkeeperProtocol.GetBookieInfoRequest.Flags.TOTAL_DISK_CAPACITY_VALUE
-                         | BookkeeperProtocol.GetBookieInfoRequest.Flags.FREE_DISK_SPACE_VALUE;
+        long requested = getRequestFlags();
 
         Collection<BookieId> bookies;
         bookies = bk.bookieWatcher.getBookies();
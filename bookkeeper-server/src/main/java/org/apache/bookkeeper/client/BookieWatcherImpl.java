@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -82,6 +83,7 @@ class BookieWatcherImpl implements BookieWatcher {
     private final ClientConfiguration conf;
     private final RegistrationClient registrationClient;
     private final EnsemblePlacementPolicy placementPolicy;
+    private final Optional<ReadRoutingPolicy> readRoutingPolicy;
     @StatsDoc(
         name = NEW_ENSEMBLE_TIME,
         help = "operation stats of new ensembles",
@@ -116,9 +118,19 @@ class BookieWatcherImpl implements BookieWatcher {
                              RegistrationClient registrationClient,
                              BookieAddressResolver bookieAddressResolver,
                              StatsLogger statsLogger)  {
+        this(conf, placementPolicy, Optional.empty(), registrationClient, bookieAddressResolver, statsLogger);
+    }
+
+    public BookieWatcherImpl(ClientConfiguration conf,
+                             EnsemblePlacementPolicy placementPolicy,
+                             Optional<ReadRoutingPolicy> readRoutingPolicy,
+                             RegistrationClient registrationClient,
+                             BookieAddressResolver bookieAddressResolver,
+                             StatsLogger statsLogger)  {
         this.conf = conf;
         this.bookieAddressResolver = bookieAddressResolver;
         this.placementPolicy = placementPolicy;
+        this.readRoutingPolicy = readRoutingPolicy;
         this.registrationClient = registrationClient;
         this.quarantinedBookies = CacheBuilder.newBuilder()
                 .expireAfterWrite(conf.getBookieQuarantineTimeSeconds(), TimeUnit.SECONDS)
@@ -194,6 +206,7 @@ class BookieWatcherImpl implements BookieWatcher {
         // component is trying to do a blocking ZK operation
         this.writableBookies = newBookieAddrs;
         placementPolicy.onClusterChanged(newBookieAddrs, readOnlyBookies);
+        readRoutingPolicy.ifPresent(policy -> policy.onClusterChanged(newBookieAddrs, readOnlyBookies));
         // we don't need to close clients here, because:
         // a. the dead bookies will be removed from topology, which will not be used in new ensemble.
         // b. the read sequence will be reordered based on znode availability, so most of the reads
@@ -213,6 +226,7 @@ class BookieWatcherImpl implements BookieWatcher {
     private synchronized void processReadOnlyBookiesChanged(Set<BookieId> readOnlyBookies) {
         this.readOnlyBookies = readOnlyBookies;
         placementPolicy.onClusterChanged(writableBookies, readOnlyBookies);
+        readRoutingPolicy.ifPresent(policy -> policy.onClusterChanged(writableBookies, readOnlyBookies));
     }
 
     /**
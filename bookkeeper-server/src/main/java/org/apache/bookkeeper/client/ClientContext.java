@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.client;
 
 import io.netty.buffer.ByteBufAllocator;
+import java.util.Optional;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -37,6 +38,8 @@ public interface ClientContext {
     LedgerManager getLedgerManager();
     BookieWatcher getBookieWatcher();
     EnsemblePlacementPolicy getPlacementPolicy();
+    Optional<ReadRoutingPolicy> getReadRoutingPolicy();
+    Optional<ClientEntryCache> getEntryCache();
     BookieClient getBookieClient();
     ByteBufAllocator getByteBufAllocator();
     OrderedExecutor getMainWorkerPool();
@@ -0,0 +1,349 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_COALESCED_READS;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_HITS;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_MISSES;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_SIZE;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * A size-bounded cache of ledger entries shared by all the ledger handles of a client.
+ *
+ * <p>Only entries up to the last add confirmed of a ledger are cached: their content can no
+ * longer change, whether the ledger is closed or still being written. The content of the cached
+ * entries is copied to buffers obtained from the client allocator (direct memory by default),
+ * and the cache evicts entries once their total size exceeds the configured limit.
+ *
+ * <p>Reads are coalesced entry by entry: a read waits for the entries that another read already
+ * requested from the bookies and receives its own copy of them, and only the other entries that
+ * are not cached are read, so readers tailing the same ledger do not multiply the read load on the
+ * bookies, whatever the ranges they read.
+ */
+class ClientEntryCache {
+
+    /**
+     * Read a range of entries from the bookies.
+     */
+    interface EntryReader {
+        CompletableFuture<LedgerEntries> read(long firstEntry, long lastEntry);
+    }
+
+    private final ByteBufAllocator allocator;
+    private final Cache<Key, CachedEntry> entries;
+    private final ConcurrentHashMap<Key, InFlightRead> inFlightReads = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong(0);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalescedReads;
+    private final Gauge<Long> sizeGauge;
+    private final StatsLogger statsLogger;
+
+    ClientEntryCache(long maxSizeBytes, ByteBufAllocator allocator, StatsLogger statsLogger) {
+        this.allocator = allocator;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .<Key, CachedEntry>weigher((key, entry) -> entry.data.readableBytes())
+                .<Key, CachedEntry>removalListener(notification -> {
+                    CachedEntry entry = notification.getValue();
+                    cachedBytes.addAndGet(-entry.data.readableBytes());
+                    entry.release();
+                })
+                .build();
+        this.statsLogger = statsLogger;
+        this.hits = statsLogger.getCounter(ENTRY_CACHE_HITS);
+        this.misses = statsLogger.getCounter(ENTRY_CACHE_MISSES);
+        this.coalescedReads = statsLogger.getCounter(ENTRY_CACHE_COALESCED_READS);
+        this.sizeGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return cachedBytes.get();
+            }
+        };
+        statsLogger.registerGauge(ENTRY_CACHE_SIZE, sizeGauge);
+    }
+
+    /**
+     * Read the entries <i>firstEntry</i> to <i>lastEntry</i> of a ledger, which must all be
+     * at or below its last add confirmed.
+     *
+     * <p>The cached entries are served from the cache, the entries already being read wait for
+     * that read, and <i>reader</i> is used to read each run of consecutive remaining entries from
+     * the bookies. The entries read are added to the cache.
+     *
+     * @param ledgerId ledger id
+     * @param firstEntry id of the first entry of the range
+     * @param lastEntry id of the last entry of the range
+     * @param reader function issuing the reads to the bookies
+     * @return a future of the entries read, owned by the caller
+     */
+    CompletableFuture<LedgerEntries> read(long ledgerId, long firstEntry, long lastEntry, EntryReader reader) {
+        int numEntries = (int) (lastEntry - firstEntry + 1);
+        List<CompletableFuture<LedgerEntry>> futures = new ArrayList<>(numEntries);
+        boolean coalesced = false;
+        boolean missed = false;
+        long runFirst = -1;
+        List<InFlightRead> run = new ArrayList<>();
+        for (long entryId = firstEntry; entryId <= lastEntry; entryId++) {
+            LedgerEntry cached = getCached(ledgerId, entryId);
+            if (null != cached) {
+                futures.add(CompletableFuture.completedFuture(cached));
+                issueRead(runFirst, run, reader);
+                continue;
+            }
+            missed = true;
+            CompletableFuture<LedgerEntry> future = new CompletableFuture<>();
+            futures.add(future);
+            Key key = new Key(ledgerId, entryId);
+            while (true) {
+                InFlightRead inFlightRead = inFlightReads.get(key);
+                if (null == inFlightRead) {
+                    inFlightRead = new InFlightRead(key, future);
+                    if (null == inFlightReads.putIfAbsent(key, inFlightRead)) {
+                        if (run.isEmpty()) {
+                            runFirst = entryId;
+                        }
+                        run.add(inFlightRead);
+                        break;
+                    }
+                } else if (inFlightRead.join(future)) {
+                    coalesced = true;
+                    // the run of entries to read stops at the entries read by others
+                    issueRead(runFirst, run, reader);
+                    break;
+                }
+            }
+        }
+        issueRead(runFirst, run, reader);
+
+        if (!missed) {
+            hits.inc();
+        } else {
+            misses.inc();
+            if (coalesced) {
+                coalescedReads.inc();
+            }
+        }
+        return collect(futures);
+    }
+
+    /**
+     * Read the consecutive entries of <i>run</i>, starting at <i>runFirst</i>, and clear it.
+     */
+    private void issueRead(long runFirst, List<InFlightRead> run, EntryReader reader) {
+        if (run.isEmpty()) {
+            return;
+        }
+        final List<InFlightRead> reads = new ArrayList<>(run);
+        run.clear();
+        CompletableFuture<LedgerEntries> future;
+        try {
+            future = reader.read(runFirst, runFirst + reads.size() - 1);
+        } catch (Throwable t) {
+            // the reads are registered, they must be completed for the next reads not to wait forever
+            future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+        }
+        future.whenComplete((result, cause) -> complete(reads, result, cause));
+    }
+
+    private static CompletableFuture<LedgerEntries> collect(List<CompletableFuture<LedgerEntry>> futures) {
+        CompletableFuture<LedgerEntries> promise = new CompletableFuture<>();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, cause) -> {
+            List<LedgerEntry> result = new ArrayList<>(futures.size());
+            Throwable failure = null;
+            for (CompletableFuture<LedgerEntry> future : futures) {
+                try {
+                    result.add(future.join());
+                } catch (CompletionException e) {
+                    if (null == failure) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            if (null != failure) {
+                result.forEach(LedgerEntry::close);
+                promise.completeExceptionally(failure);
+            } else {
+                promise.complete(LedgerEntriesImpl.create(result));
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * Add an entry to the cache. The entry must be at or below the last add confirmed of its ledger.
+     * The content of the entry is copied, the caller keeps the ownership of <i>data</i>.
+     */
+    void put(long ledgerId, long entryId, long length, ByteBuf data) {
+        Key key = new Key(ledgerId, entryId);
+        if (null != entries.getIfPresent(key)) {
+            return;
+        }
+        int size = data.readableBytes();
+        ByteBuf copy = allocator.directBuffer(size, size);
+        copy.writeBytes(data, data.readerIndex(), size);
+        cachedBytes.addAndGet(size);
+        entries.put(key, new CachedEntry(length, copy));
+    }
+
+    /**
+     * Release all the cached entries.
+     */
+    void close() {
+        entries.invalidateAll();
+        entries.cleanUp();
+        statsLogger.unregisterGauge(ENTRY_CACHE_SIZE, sizeGauge);
+    }
+
+    private LedgerEntry getCached(long ledgerId, long entryId) {
+        CachedEntry entry = entries.getIfPresent(new Key(ledgerId, entryId));
+        ByteBuf data = null == entry ? null : entry.retainedData();
+        return null == data ? null : LedgerEntryImpl.create(ledgerId, entryId, entry.length, data);
+    }
+
+    private void complete(List<InFlightRead> reads, LedgerEntries result, Throwable cause) {
+        for (InFlightRead read : reads) {
+            inFlightReads.remove(read.key, read);
+        }
+        if (null != cause) {
+            for (InFlightRead read : reads) {
+                read.complete().forEach(waiter -> waiter.completeExceptionally(cause));
+            }
+            return;
+        }
+
+        int i = 0;
+        for (LedgerEntry entry : result) {
+            put(entry.getLedgerId(), entry.getEntryId(), entry.getLength(), entry.getEntryBuffer());
+            if (i < reads.size() && reads.get(i).key.entryId == entry.getEntryId()) {
+                // every waiter gets its own copy
+                for (CompletableFuture<LedgerEntry> waiter : reads.get(i++).complete()) {
+                    waiter.complete(LedgerEntryImpl.duplicate(entry));
+                }
+            }
+        }
+        result.close();
+        for (; i < reads.size(); i++) {
+            BKException missing = BKException.create(BKException.Code.ReadException);
+            reads.get(i).complete().forEach(waiter -> waiter.completeExceptionally(missing));
+        }
+    }
+
+    private static final class InFlightRead {
+        private final Key key;
+        private final List<CompletableFuture<LedgerEntry>> waiters = new ArrayList<>(1);
+        private boolean completed = false;
+
+        InFlightRead(Key key, CompletableFuture<LedgerEntry> first) {
+            this.key = key;
+            waiters.add(first);
+        }
+
+        synchronized boolean join(CompletableFuture<LedgerEntry> waiter) {
+            if (completed) {
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        synchronized List<CompletableFuture<LedgerEntry>> complete() {
+            completed = true;
+            return waiters;
+        }
+    }
+
+    private static final class CachedEntry {
+        final long length;
+        final ByteBuf data;
+        private boolean released = false;
+
+        CachedEntry(long length, ByteBuf data) {
+            this.length = length;
+            this.data = data;
+        }
+
+        /**
+         * Retain the content of the entry, unless the entry was evicted concurrently. The check
+         * can't rely on the reference count of the buffer, as a pooled buffer may already have
+         * been reused once released.
+         */
+        synchronized ByteBuf retainedData() {
+            return released ? null : data.retainedDuplicate();
+        }
+
+        synchronized void release() {
+            if (!released) {
+                released = true;
+                data.release();
+            }
+        }
+    }
+
+    private static final class Key {
+        final long ledgerId;
+        final long entryId;
+
+        Key(long ledgerId, long entryId) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return ledgerId == other.ledgerId && entryId == other.entryId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(ledgerId) + Long.hashCode(entryId);
+        }
+    }
+}
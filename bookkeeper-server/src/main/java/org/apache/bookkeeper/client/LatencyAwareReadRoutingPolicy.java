@@ -0,0 +1,285 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.BOOKIE_LABEL;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.READ_ROUTING_SCORE;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * A {@link ReadRoutingPolicy} that prefers the replica expected to answer first.
+ *
+ * <p>For each bookie the policy tracks the number of reads in flight from this client and a
+ * peak-sensitive exponentially weighted moving average of the read latency: a sample above the
+ * average replaces it immediately, lower samples are blended in with a weight that depends on the
+ * time elapsed since the previous sample. The average also decays toward the median latency of the
+ * bookies while a bookie is not read from, so a bookie that was slow in the past is eventually probed
+ * again, without ever being preferred to the bookies answering fast. The reads failing without an
+ * answer of the bookie, such as for lack of a connection, are sampled as taking the read timeout.
+ *
+ * <p>As in C3, the score of a bookie is its latency multiplied by the cube of its queue size
+ * ({@code 1 + inFlight}), so the replica with the lowest latency is preferred but reads spread
+ * to the other replicas as soon as requests start to queue up on it. The replicas of an entry are
+ * ordered by ascending score, ties keep the order given by the placement policy. Only the leading
+ * replicas of the placement policy order which are writable and have no recent failure are reordered,
+ * so the replicas the placement policy demoted stay behind them.
+ *
+ * <p>A bookie that was never read from is assumed to have the median latency of the bookies with
+ * samples, so that it is neither always preferred nor never tried. The stats of a bookie are
+ * dropped when it leaves the cluster.
+ */
+public class LatencyAwareReadRoutingPolicy implements ReadRoutingPolicy {
+
+    // the median latency is recomputed at most once per interval, rather than for each read
+    private static final long MEDIAN_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ConcurrentHashMap<BookieId, BookieReadStats> bookieReadStats = new ConcurrentHashMap<>();
+    private long decayTimeNanos = TimeUnit.SECONDS.toNanos(10);
+    private long readTimeoutNanos = TimeUnit.SECONDS.toNanos(5);
+    private StatsLogger statsLogger = NullStatsLogger.INSTANCE;
+    // null until the bookies of the cluster are known
+    private volatile Set<BookieId> writableBookies = null;
+    private volatile double medianLatency = 0;
+    private volatile long medianRefreshNanos = Long.MIN_VALUE;
+
+    @Override
+    public ReadRoutingPolicy initialize(ClientConfiguration conf, StatsLogger statsLogger) {
+        if (conf.getReadRoutingLatencyDecayTimeMs() <= 0) {
+            throw new IllegalArgumentException("Invalid value provided for readRoutingLatencyDecayTimeMs");
+        }
+        this.decayTimeNanos = TimeUnit.MILLISECONDS.toNanos(conf.getReadRoutingLatencyDecayTimeMs());
+        if (conf.getReadEntryTimeout() > 0) {
+            this.readTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getReadEntryTimeout());
+        }
+        this.statsLogger = statsLogger;
+        return this;
+    }
+
+    @Override
+    public void uninitialize() {
+        bookieReadStats.forEach((bookie, stats) -> statsLogger.scopeLabel(BOOKIE_LABEL, bookie.toString())
+                .unregisterGauge(READ_ROUTING_SCORE, stats.scoreGauge));
+        bookieReadStats.clear();
+    }
+
+    @Override
+    public void onClusterChanged(Set<BookieId> writableBookies, Set<BookieId> readOnlyBookies) {
+        this.writableBookies = new HashSet<>(writableBookies);
+        bookieReadStats.forEach((bookie, stats) -> {
+            if (!writableBookies.contains(bookie) && !readOnlyBookies.contains(bookie)
+                    && bookieReadStats.remove(bookie, stats)) {
+                statsLogger.scopeLabel(BOOKIE_LABEL, bookie.toString())
+                        .unregisterGauge(READ_ROUTING_SCORE, stats.scoreGauge);
+            }
+        });
+    }
+
+    @Override
+    public DistributionSchedule.WriteSet reorderReadSequence(List<BookieId> ensemble,
+                                                             BookiesHealthInfo bookiesHealthInfo,
+                                                             DistributionSchedule.WriteSet writeSet) {
+        final int size = healthyPrefixSize(ensemble, bookiesHealthInfo, writeSet);
+        if (size <= 1) {
+            return writeSet;
+        }
+        final long now = MathUtils.nowInNano();
+        final double medianLatency = medianLatency(now);
+        final double[] scores = new double[size];
+        for (int i = 0; i < size; i++) {
+            BookieReadStats stats = bookieReadStats.get(ensemble.get(writeSet.get(i)));
+            scores[i] = stats != null ? stats.score(now, decayTimeNanos, medianLatency) : medianLatency + 1;
+        }
+        // stable insertion sort, the write set is as small as the write quorum
+        for (int i = 1; i < size; i++) {
+            double score = scores[i];
+            int bookieIndex = writeSet.get(i);
+            int j = i - 1;
+            while (j >= 0 && scores[j] > score) {
+                scores[j + 1] = scores[j];
+                writeSet.set(j + 1, writeSet.get(j));
+                j--;
+            }
+            scores[j + 1] = score;
+            writeSet.set(j + 1, bookieIndex);
+        }
+        return writeSet;
+    }
+
+    /**
+     * @return the number of leading replicas of the write set which are writable and have no recent failure
+     */
+    private int healthyPrefixSize(List<BookieId> ensemble, BookiesHealthInfo bookiesHealthInfo,
+                                  DistributionSchedule.WriteSet writeSet) {
+        Set<BookieId> writable = writableBookies;
+        for (int i = 0; i < writeSet.size(); i++) {
+            BookieId bookie = ensemble.get(writeSet.get(i));
+            if ((writable != null && !writable.contains(bookie))
+                    || bookiesHealthInfo.getBookieFailureHistory(bookie) >= 0) {
+                return i;
+            }
+        }
+        return writeSet.size();
+    }
+
+    @Override
+    public void onReadSent(BookieId bookie) {
+        getReadStats(bookie).inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onReadComplete(BookieId bookie, int rc, long latencyNanos) {
+        BookieReadStats stats = getReadStats(bookie);
+        stats.inFlight.updateAndGet(n -> n > 0 ? n - 1 : 0);
+        switch (rc) {
+        case BKException.Code.OK:
+        case BKException.Code.NoSuchEntryException:
+        case BKException.Code.NoSuchLedgerExistsException:
+            // the bookie answered: the latency is meaningful
+            stats.recordLatency(latencyNanos, MathUtils.nowInNano(), decayTimeNanos);
+            break;
+        default:
+            // timeouts, and errors raised locally (e.g. no connection) which come back quickly: the bookie is
+            // penalized as if it had taken the read timeout to answer, so it doesn't get the best score
+            stats.recordLatency(Math.max(latencyNanos, readTimeoutNanos), MathUtils.nowInNano(), decayTimeNanos);
+            break;
+        }
+    }
+
+    @Override
+    public Map<BookieId, Double> getBookieScores() {
+        final long now = MathUtils.nowInNano();
+        final double medianLatency = medianLatency(now);
+        Map<BookieId, Double> scores = new HashMap<>();
+        bookieReadStats.forEach((bookie, stats) ->
+                scores.put(bookie, stats.score(now, decayTimeNanos, medianLatency)));
+        return scores;
+    }
+
+    /**
+     * @return the median of the average latencies of the bookies with samples, 0 if there are none, refreshed
+     *         at most once per {@link #MEDIAN_REFRESH_NANOS}
+     */
+    double medianLatency(long now) {
+        if (medianRefreshNanos != Long.MIN_VALUE && now - medianRefreshNanos < MEDIAN_REFRESH_NANOS) {
+            return medianLatency;
+        }
+        double[] latencies = new double[bookieReadStats.size()];
+        int count = 0;
+        for (BookieReadStats stats : bookieReadStats.values()) {
+            if (count < latencies.length && stats.hasSamples()) {
+                latencies[count++] = stats.averageLatency();
+            }
+        }
+        double median = 0;
+        if (count > 0) {
+            Arrays.sort(latencies, 0, count);
+            median = count % 2 == 1 ? latencies[count / 2] : (latencies[count / 2 - 1] + latencies[count / 2]) / 2;
+        }
+        medianLatency = median;
+        medianRefreshNanos = now;
+        return median;
+    }
+
+    private BookieReadStats getReadStats(BookieId bookie) {
+        BookieReadStats stats = bookieReadStats.get(bookie);
+        if (stats == null) {
+            BookieReadStats newStats = new BookieReadStats();
+            stats = bookieReadStats.putIfAbsent(bookie, newStats);
+            if (stats == null) {
+                stats = newStats;
+                statsLogger.scopeLabel(BOOKIE_LABEL, bookie.toString())
+                        .registerGauge(READ_ROUTING_SCORE, stats.scoreGauge);
+            }
+        }
+        return stats;
+    }
+
+    private final class BookieReadStats {
+        final AtomicInteger inFlight = new AtomicInteger(0);
+        // guarded by this
+        double latencyNanos = 0;
+        long lastSampleNanos = 0;
+        boolean hasSamples = false;
+
+        final Gauge<Double> scoreGauge = new Gauge<Double>() {
+            @Override
+            public Double getDefaultValue() {
+                return 0.0;
+            }
+
+            @Override
+            public Double getSample() {
+                long now = MathUtils.nowInNano();
+                return score(now, decayTimeNanos, medianLatency(now));
+            }
+        };
+
+        synchronized void recordLatency(long sampleNanos, long now, long decayNanos) {
+            if (!hasSamples || sampleNanos > latencyNanos) {
+                latencyNanos = sampleNanos;
+            } else {
+                double weight = Math.exp(-(double) (now - lastSampleNanos) / decayNanos);
+                latencyNanos = latencyNanos * weight + sampleNanos * (1 - weight);
+            }
+            lastSampleNanos = now;
+            hasSamples = true;
+        }
+
+        synchronized boolean hasSamples() {
+            return hasSamples;
+        }
+
+        synchronized double averageLatency() {
+            return latencyNanos;
+        }
+
+        /**
+         * @param medianLatency the latency the average decays toward, also assumed if the bookie has no samples
+         */
+        double score(long now, long decayNanos, double medianLatency) {
+            double queueSize = 1 + inFlight.get();
+            double latency;
+            synchronized (this) {
+                latency = hasSamples
+                        ? medianLatency + (latencyNanos - medianLatency)
+                                * Math.exp(-(double) Math.max(0, now - lastSampleNanos) / decayNanos)
+                        : medianLatency;
+            }
+            // add one nanosecond so that the queue size still matters when the latency is 0
+            return (latency + 1) * queueSize * queueSize * queueSize;
+        }
+    }
+}
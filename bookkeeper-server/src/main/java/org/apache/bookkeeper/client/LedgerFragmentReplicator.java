@@ -32,6 +32,7 @@ import com.google.common.util.concurrent.RateLimiter;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCounted;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -45,6 +46,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import org.apache.bookkeeper.client.AsyncCallback.ReadCallback;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -108,6 +110,7 @@ public class LedgerFragmentReplicator {
     private final OpStatsLogger writeDataLatency;
 
     protected Throttler replicationThrottle = null;
+    private volatile int replicationRate;
 
     private AtomicInteger averageEntrySize;
 
@@ -124,11 +127,12 @@ public class LedgerFragmentReplicator {
         numBytesWritten = this.statsLogger.getOpStatsLogger(NUM_BYTES_WRITTEN);
         readDataLatency = this.statsLogger.getOpStatsLogger(READ_DATA_LATENCY);
         writeDataLatency = this.statsLogger.getOpStatsLogger(WRITE_DATA_LATENCY);
-        if (conf.getReplicationRateByBytes() > 0) {
-            this.replicationThrottle = new Throttler(conf.getReplicationRateByBytes());
+        this.conf = conf;
+        if (conf.getReplicationRateByBytes() > 0 || conf.getReplicationRateSplitAcrossBookiesByBytes() > 0) {
+            this.replicationRate = getReplicationRate();
+            this.replicationThrottle = new Throttler(replicationRate);
         }
         averageEntrySize = new AtomicInteger(INITIAL_AVERAGE_ENTRY_SIZE);
-        this.conf = conf;
     }
 
     public LedgerFragmentReplicator(BookKeeper bkc, ClientConfiguration conf) {
@@ -138,6 +142,30 @@ public class LedgerFragmentReplicator {
     private static final Logger LOG = LoggerFactory
             .getLogger(LedgerFragmentReplicator.class);
 
+    /**
+     * Get the bytes rate of this replicator: the configured rate, bounded by the share of this replicator of the
+     * rate split across the bookies. The share is the split rate divided by the number of available bookies, as
+     * a replication worker usually runs along with every bookie. It is a per-worker rate derived from the bookie
+     * count, not a budget coordinated with the other replicators.
+     */
+    private int getReplicationRate() {
+        int rate = conf.getReplicationRateByBytes();
+        int splitRate = conf.getReplicationRateSplitAcrossBookiesByBytes();
+        if (splitRate > 0) {
+            int numBookies = 1;
+            try {
+                BookieWatcher bookieWatcher = bkc.getBookieWatcher();
+                numBookies = Math.max(1, bookieWatcher.getBookies().size()
+                        + bookieWatcher.getReadOnlyBookies().size());
+            } catch (BKException e) {
+                LOG.warn("Failed to get the available bookies, using the whole split replication rate", e);
+            }
+            int share = Math.max(1, splitRate / numBookies);
+            rate = rate > 0 ? Math.min(rate, share) : share;
+        }
+        return rate;
+    }
+
     private void replicateFragmentInternal(final LedgerHandle lh,
             final LedgerFragment lf,
             final AsyncCallback.VoidCallback ledgerFragmentMcb,
@@ -188,11 +216,74 @@ public class LedgerFragmentReplicator {
                 entriesToReplicate.size(), ledgerFragmentMcb, null, BKException.Code.OK,
                 BKException.Code.LedgerRecoveryException);
         if (this.replicationThrottle != null) {
-            this.replicationThrottle.resetRate(this.conf.getReplicationRateByBytes());
+            this.replicationThrottle.resetRate(this.replicationRate);
         }
-        for (final Long entryId : entriesToReplicate) {
-            recoverLedgerFragmentEntry(entryId, lh, ledgerFragmentEntryMcb,
+        if (conf.isRereplicationBookieCopyEnabled()) {
+            copyLedgerFragmentEntries(entriesToReplicate, lh, lf, ledgerFragmentMcb,
                     newBookies, onReadEntryFailureCallback);
+            return;
+        }
+        recoverLedgerFragmentEntries(entriesToReplicate, lh, ledgerFragmentEntryMcb,
+                newBookies, onReadEntryFailureCallback);
+    }
+
+    /**
+     * This method asks each of the new bookies to copy a batch of contiguous
+     * ledger entries directly from the bookies of the fragment's ensemble, so
+     * the entries don't flow through the replicator. A bookie completes the
+     * copy only once the entries are durable. If a new bookie fails to copy
+     * the batch, the entries are recovered for that bookie through the
+     * replicator as usual.
+     */
+    private void copyLedgerFragmentEntries(final List<Long> entryIds,
+            final LedgerHandle lh,
+            final LedgerFragment lf,
+            final AsyncCallback.VoidCallback ledgerFragmentMcb,
+            final Set<BookieId> newBookies,
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException {
+        final long firstEntryId = entryIds.get(0);
+        final long lastEntryId = entryIds.get(entryIds.size() - 1);
+        final MultiCallback newBookiesMcb = new MultiCallback(
+                newBookies.size(), ledgerFragmentMcb, null, BKException.Code.OK,
+                BKException.Code.LedgerRecoveryException);
+        final LedgerMetadata metadata = lh.getLedgerMetadata();
+        final List<BookieId> ensemble = lf.getEnsemble();
+
+        for (BookieId newBookie : newBookies) {
+            if (replicationThrottle != null) {
+                replicationThrottle.acquire((int) Math.min(Integer.MAX_VALUE,
+                        (long) averageEntrySize.get() * entryIds.size()));
+            }
+            long startCopyTime = MathUtils.nowInNano();
+            bkc.getBookieClient().copyLedgerFragment(newBookie, lh.getId(), firstEntryId, lastEntryId,
+                    lh.getLedgerKey(), metadata.getDigestType(), ensemble, metadata.getWriteQuorumSize(),
+                    metadata.getAckQuorumSize())
+                .whenComplete((bytesCopied, exception) -> {
+                    if (exception == null) {
+                        writeDataLatency.registerSuccessfulEvent(
+                                MathUtils.elapsedNanos(startCopyTime), TimeUnit.NANOSECONDS);
+                        numEntriesWritten.addCount(entryIds.size());
+                        numBytesWritten.registerSuccessfulValue(bytesCopied);
+                        if (replicationThrottle != null) {
+                            updateAverageEntrySize((int) (bytesCopied / entryIds.size()));
+                        }
+                        newBookiesMcb.processResult(BKException.Code.OK, null, null);
+                        return;
+                    }
+                    LOG.warn("Bookie {} failed to copy entries {} - {} of ledger {}, replicating them"
+                            + " through the replicator: {}", newBookie, firstEntryId, lastEntryId, lh.getId(),
+                            exception.getMessage());
+                    MultiCallback entriesMcb = new MultiCallback(
+                            entryIds.size(), newBookiesMcb, null, BKException.Code.OK,
+                            BKException.Code.LedgerRecoveryException);
+                    try {
+                        recoverLedgerFragmentEntries(entryIds, lh, entriesMcb,
+                                Collections.singleton(newBookie), onReadEntryFailureCallback);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        newBookiesMcb.processResult(BKException.Code.InterruptedException, null, null);
+                    }
+                });
         }
     }
 
@@ -203,7 +294,8 @@ public class LedgerFragmentReplicator {
      * max entries up to the configured value of rereplicationEntryBatchSize and
      * then it re-replicates that batched entry fragments one by one. After
      * re-replication of all batched entry fragments, it will update the
-     * ensemble info with new Bookie once
+     * ensemble info with new Bookie once. Up to rereplicationMaxInFlightEntryBatches
+     * batched entry fragments are re-replicated concurrently.
      *
      * @param lh
      *            LedgerHandle for the ledger
@@ -225,43 +317,86 @@ public class LedgerFragmentReplicator {
                 bkc.getConf().getRereplicationEntryBatchSize());
         LOG.info("Replicating fragment {} in {} sub fragments.",
                 lf, partionedFragments.size());
-        replicateNextBatch(lh, partionedFragments.iterator(),
+        if (replicationThrottle != null && conf.getReplicationRateSplitAcrossBookiesByBytes() > 0) {
+            replicationRate = getReplicationRate();
+        }
+        BatchesReplication batchesReplication = new BatchesReplication(lh, partionedFragments.iterator(),
                 ledgerFragmentMcb, targetBookieAddresses, onReadEntryFailureCallback);
+        int maxInFlightBatches = Math.max(1, conf.getRereplicationMaxInFlightEntryBatches());
+        for (int i = 0; i < maxInFlightBatches; i++) {
+            batchesReplication.replicateNextBatch();
+        }
     }
 
     /**
-     * Replicate the batched entry fragments one after other.
+     * Replicate the batched entry fragments, keeping a bounded number of them in flight.
      */
-    private void replicateNextBatch(final LedgerHandle lh,
-            final Iterator<LedgerFragment> fragments,
-            final AsyncCallback.VoidCallback ledgerFragmentMcb,
-            final Set<BookieId> targetBookieAddresses,
-            final BiConsumer<Long, Long> onReadEntryFailureCallback) {
-        if (fragments.hasNext()) {
+    private class BatchesReplication implements AsyncCallback.VoidCallback {
+        private final LedgerHandle lh;
+        private final Iterator<LedgerFragment> fragments;
+        private final AsyncCallback.VoidCallback ledgerFragmentMcb;
+        private final Set<BookieId> targetBookieAddresses;
+        private final BiConsumer<Long, Long> onReadEntryFailureCallback;
+        private int numInFlight = 0;
+        private boolean completed = false;
+
+        BatchesReplication(LedgerHandle lh,
+                           Iterator<LedgerFragment> fragments,
+                           AsyncCallback.VoidCallback ledgerFragmentMcb,
+                           Set<BookieId> targetBookieAddresses,
+                           BiConsumer<Long, Long> onReadEntryFailureCallback) {
+            this.lh = lh;
+            this.fragments = fragments;
+            this.ledgerFragmentMcb = ledgerFragmentMcb;
+            this.targetBookieAddresses = targetBookieAddresses;
+            this.onReadEntryFailureCallback = onReadEntryFailureCallback;
+        }
+
+        void replicateNextBatch() {
+            LedgerFragment batch;
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                if (!fragments.hasNext()) {
+                    if (numInFlight > 0) {
+                        return;
+                    }
+                    completed = true;
+                    batch = null;
+                } else {
+                    batch = fragments.next();
+                    numInFlight++;
+                }
+            }
+            if (batch == null) {
+                ledgerFragmentMcb.processResult(BKException.Code.OK, null, null);
+                return;
+            }
             try {
-                replicateFragmentInternal(lh, fragments.next(),
-                        new AsyncCallback.VoidCallback() {
-                            @Override
-                            public void processResult(int rc, String v, Object ctx) {
-                                if (rc != BKException.Code.OK) {
-                                    ledgerFragmentMcb.processResult(rc, null,
-                                            null);
-                                } else {
-                                    replicateNextBatch(lh, fragments,
-                                            ledgerFragmentMcb,
-                                            targetBookieAddresses,
-                                            onReadEntryFailureCallback);
-                                }
-                            }
-
-                        }, targetBookieAddresses, onReadEntryFailureCallback);
+                replicateFragmentInternal(lh, batch, this, targetBookieAddresses, onReadEntryFailureCallback);
             } catch (InterruptedException e) {
-                ledgerFragmentMcb.processResult(
-                        BKException.Code.InterruptedException, null, null);
                 Thread.currentThread().interrupt();
+                processResult(BKException.Code.InterruptedException, null, null);
+            }
+        }
+
+        @Override
+        public void processResult(int rc, String v, Object ctx) {
+            synchronized (this) {
+                numInFlight--;
+                if (completed) {
+                    return;
+                }
+                if (rc != BKException.Code.OK) {
+                    completed = true;
+                }
+            }
+            if (rc != BKException.Code.OK) {
+                ledgerFragmentMcb.processResult(rc, null, null);
+            } else {
+                replicateNextBatch();
             }
-        } else {
-            ledgerFragmentMcb.processResult(BKException.Code.OK, null, null);
         }
     }
 
@@ -320,6 +455,60 @@ public class LedgerFragmentReplicator {
         return fragments;
     }
 
+    /**
+     * This method asynchronously recovers a batch of contiguous ledger entries.
+     * When rereplicationMaxInFlightEntryBatches is more than 1, the batch is
+     * read with a single range read, and each entry is written to the chosen
+     * new bookies as soon as the batch is read. If the range read fails, the
+     * entries are read again one by one, so that the entries which can't be
+     * read are reported individually. Otherwise, the entries are recovered one
+     * by one.
+     */
+    private void recoverLedgerFragmentEntries(final List<Long> entryIds,
+            final LedgerHandle lh,
+            final AsyncCallback.VoidCallback ledgerFragmentEntryMcb,
+            final Set<BookieId> newBookies,
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException {
+        if (entryIds.size() == 1 || conf.getRereplicationMaxInFlightEntryBatches() <= 1) {
+            for (final Long entryId : entryIds) {
+                recoverLedgerFragmentEntry(entryId, lh, ledgerFragmentEntryMcb, newBookies,
+                        onReadEntryFailureCallback);
+            }
+            return;
+        }
+        final long firstEntryId = entryIds.get(0);
+        final long lastEntryId = entryIds.get(entryIds.size() - 1);
+
+        if (replicationThrottle != null) {
+            replicationThrottle.acquire((int) Math.min(Integer.MAX_VALUE,
+                    (long) averageEntrySize.get() * entryIds.size()));
+        }
+
+        long startReadEntryTime = MathUtils.nowInNano();
+        lh.asyncReadEntries(firstEntryId, lastEntryId, new ReadCallback() {
+            @Override
+            public void readComplete(int rc, LedgerHandle lh,
+                    Enumeration<LedgerEntry> seq, Object ctx) {
+                if (rc != BKException.Code.OK) {
+                    LOG.warn("BK error reading ledger entries {} - {}, recovering them one by one: {}",
+                            firstEntryId, lastEntryId, BKException.getMessage(rc));
+                    // the bytes of the entries were already acquired from the throttler for the range read
+                    for (Long entryId : entryIds) {
+                        readLedgerFragmentEntry(entryId, lh, ledgerFragmentEntryMcb,
+                                newBookies, onReadEntryFailureCallback);
+                    }
+                    return;
+                }
+
+                readDataLatency.registerSuccessfulEvent(MathUtils.elapsedNanos(startReadEntryTime),
+                        TimeUnit.NANOSECONDS);
+                while (seq.hasMoreElements()) {
+                    writeLedgerFragmentEntry(seq.nextElement(), lh, ledgerFragmentEntryMcb, newBookies);
+                }
+            }
+        }, null);
+    }
+
     /**
      * This method asynchronously recovers a specific ledger entry by reading
      * the values via the BookKeeper Client (which would read it from the other
@@ -341,38 +530,22 @@ public class LedgerFragmentReplicator {
             final AsyncCallback.VoidCallback ledgerFragmentEntryMcb,
             final Set<BookieId> newBookies,
             final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException {
-        final long ledgerId = lh.getId();
-        final AtomicInteger numCompleted = new AtomicInteger(0);
-        final AtomicBoolean completed = new AtomicBoolean(false);
-
         if (replicationThrottle != null) {
             replicationThrottle.acquire(averageEntrySize.get());
         }
+        readLedgerFragmentEntry(entryId, lh, ledgerFragmentEntryMcb, newBookies, onReadEntryFailureCallback);
+    }
 
-        final WriteCallback multiWriteCallback = new WriteCallback() {
-            @Override
-            public void writeComplete(int rc, long ledgerId, long entryId, BookieId addr, Object ctx) {
-                if (rc != BKException.Code.OK) {
-                    LOG.error("BK error writing entry for ledgerId: {}, entryId: {}, bookie: {}",
-                            ledgerId, entryId, addr, BKException.create(rc));
-                    if (completed.compareAndSet(false, true)) {
-                        ledgerFragmentEntryMcb.processResult(rc, null, null);
-                    }
-                } else {
-                    numEntriesWritten.inc();
-                    if (ctx instanceof Long) {
-                        numBytesWritten.registerSuccessfulValue((Long) ctx);
-                    }
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Success writing ledger id {}, entry id {} to a new bookie {}!",
-                                ledgerId, entryId, addr);
-                    }
-                    if (numCompleted.incrementAndGet() == newBookies.size() && completed.compareAndSet(false, true)) {
-                        ledgerFragmentEntryMcb.processResult(rc, null, null);
-                    }
-                }
-            }
-        };
+    /**
+     * Read a ledger entry from the other replicas and write it to the new bookies, without acquiring its bytes
+     * from the throttler.
+     */
+    private void readLedgerFragmentEntry(final Long entryId,
+            final LedgerHandle lh,
+            final AsyncCallback.VoidCallback ledgerFragmentEntryMcb,
+            final Set<BookieId> newBookies,
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) {
+        final long ledgerId = lh.getId();
 
         long startReadEntryTime = MathUtils.nowInNano();
         /*
@@ -399,38 +572,76 @@ public class LedgerFragmentReplicator {
                  * Now that we've read the ledger entry, write it to the new
                  * bookie we've selected.
                  */
-                LedgerEntry entry = seq.nextElement();
-                byte[] data = entry.getEntry();
-                final long dataLength = data.length;
-                numEntriesRead.inc();
-                numBytesRead.registerSuccessfulValue(dataLength);
-
-                ReferenceCounted toSend = lh.getDigestManager()
-                        .computeDigestAndPackageForSending(entryId,
-                                lh.getLastAddConfirmed(), entry.getLength(),
-                                Unpooled.wrappedBuffer(data, 0, data.length),
-                                lh.getLedgerKey(),
-                                0
-                                );
-                if (replicationThrottle != null) {
-                    if (toSend instanceof ByteBuf) {
-                        updateAverageEntrySize(((ByteBuf) toSend).readableBytes());
-                    } else if (toSend instanceof ByteBufList) {
-                        updateAverageEntrySize(((ByteBufList) toSend).readableBytes());
+                writeLedgerFragmentEntry(seq.nextElement(), lh, ledgerFragmentEntryMcb, newBookies);
+            }
+        }, null);
+    }
+
+    /**
+     * Write a ledger entry which was read from the other replicas to the new bookies.
+     */
+    private void writeLedgerFragmentEntry(final LedgerEntry entry,
+            final LedgerHandle lh,
+            final AsyncCallback.VoidCallback ledgerFragmentEntryMcb,
+            final Set<BookieId> newBookies) {
+        final long entryId = entry.getEntryId();
+        final AtomicInteger numCompleted = new AtomicInteger(0);
+        final AtomicBoolean completed = new AtomicBoolean(false);
+
+        final WriteCallback multiWriteCallback = new WriteCallback() {
+            @Override
+            public void writeComplete(int rc, long ledgerId, long entryId, BookieId addr, Object ctx) {
+                if (rc != BKException.Code.OK) {
+                    LOG.error("BK error writing entry for ledgerId: {}, entryId: {}, bookie: {}",
+                            ledgerId, entryId, addr, BKException.create(rc));
+                    if (completed.compareAndSet(false, true)) {
+                        ledgerFragmentEntryMcb.processResult(rc, null, null);
+                    }
+                } else {
+                    numEntriesWritten.inc();
+                    if (ctx instanceof Long) {
+                        numBytesWritten.registerSuccessfulValue((Long) ctx);
+                    }
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Success writing ledger id {}, entry id {} to a new bookie {}!",
+                                ledgerId, entryId, addr);
+                    }
+                    if (numCompleted.incrementAndGet() == newBookies.size() && completed.compareAndSet(false, true)) {
+                        ledgerFragmentEntryMcb.processResult(rc, null, null);
                     }
                 }
-                for (BookieId newBookie : newBookies) {
-                    long startWriteEntryTime = MathUtils.nowInNano();
-                    bkc.getBookieClient().addEntry(newBookie, lh.getId(),
-                            lh.getLedgerKey(), entryId, toSend,
-                            multiWriteCallback, dataLength, BookieProtocol.FLAG_RECOVERY_ADD,
-                            false, WriteFlag.NONE);
-                    writeDataLatency.registerSuccessfulEvent(
-                           MathUtils.elapsedNanos(startWriteEntryTime), TimeUnit.NANOSECONDS);
-                }
-                toSend.release();
             }
-        }, null);
+        };
+
+        byte[] data = entry.getEntry();
+        final long dataLength = data.length;
+        numEntriesRead.inc();
+        numBytesRead.registerSuccessfulValue(dataLength);
+
+        ReferenceCounted toSend = lh.getDigestManager()
+                .computeDigestAndPackageForSending(entryId,
+                        lh.getLastAddConfirmed(), entry.getLength(),
+                        Unpooled.wrappedBuffer(data, 0, data.length),
+                        lh.getLedgerKey(),
+                        0
+                        );
+        if (replicationThrottle != null) {
+            if (toSend instanceof ByteBuf) {
+                updateAverageEntrySize(((ByteBuf) toSend).readableBytes());
+            } else if (toSend instanceof ByteBufList) {
+                updateAverageEntrySize(((ByteBufList) toSend).readableBytes());
+            }
+        }
+        for (BookieId newBookie : newBookies) {
+            long startWriteEntryTime = MathUtils.nowInNano();
+            bkc.getBookieClient().addEntry(newBookie, lh.getId(),
+                    lh.getLedgerKey(), entryId, toSend,
+                    multiWriteCallback, dataLength, BookieProtocol.FLAG_RECOVERY_ADD,
+                    false, WriteFlag.NONE);
+            writeDataLatency.registerSuccessfulEvent(
+                   MathUtils.elapsedNanos(startWriteEntryTime), TimeUnit.NANOSECONDS);
+        }
+        toSend.release();
     }
 
     private void updateAverageEntrySize(int toSendSize) {
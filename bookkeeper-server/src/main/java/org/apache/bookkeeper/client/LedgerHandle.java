@@ -861,6 +861,19 @@ public class LedgerHandle implements WriteHandle {
     CompletableFuture<LedgerEntries> readEntriesInternalAsync(long firstEntry,
                                                               long lastEntry,
                                                               boolean isRecoveryRead) {
+        Optional<ClientEntryCache> entryCache = clientCtx.getEntryCache();
+        // only the entries up to the last add confirmed are immutable and can be shared between readers
+        if (entryCache.isPresent() && !isRecoveryRead && lastEntry <= lastAddConfirmed
+                && !clientCtx.isClientClosed()) {
+            return entryCache.get().read(ledgerId, firstEntry, lastEntry,
+                    (first, last) -> readEntriesFromBookiesAsync(first, last, false));
+        }
+        return readEntriesFromBookiesAsync(firstEntry, lastEntry, isRecoveryRead);
+    }
+
+    private CompletableFuture<LedgerEntries> readEntriesFromBookiesAsync(long firstEntry,
+                                                                         long lastEntry,
+                                                                         boolean isRecoveryRead) {
         PendingReadOp op = new PendingReadOp(this, clientCtx,
                                              firstEntry, lastEntry, isRecoveryRead);
         if (!clientCtx.isClientClosed()) {
@@ -1571,6 +1584,10 @@ public class LedgerHandle implements WriteHandle {
             @Override
             public void readLastConfirmedAndEntryComplete(int rc, long lastAddConfirmed, LedgerEntry entry) {
                 if (rc == BKException.Code.OK) {
+                    if (null != entry && entry.getEntryId() <= lastAddConfirmed) {
+                        clientCtx.getEntryCache().ifPresent(cache -> cache.put(
+                                entry.getLedgerId(), entry.getEntryId(), entry.getLength(), entry.data));
+                    }
                     if (completed.compareAndSet(false, true)) {
                         cb.readLastConfirmedAndEntryComplete(rc, lastAddConfirmed, entry, ctx);
                     }
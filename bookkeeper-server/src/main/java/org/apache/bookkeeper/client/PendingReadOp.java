@@ -96,15 +96,22 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
             this.ensemble = ensemble;
             this.eId = eId;
 
+            DistributionSchedule.WriteSet ws;
             if (clientCtx.getConf().enableReorderReadSequence) {
-                writeSet = clientCtx.getPlacementPolicy()
+                ws = clientCtx.getPlacementPolicy()
                     .reorderReadSequence(
                             ensemble,
                             lh.getBookiesHealthInfo(),
                             lh.getWriteSetForReadOperation(eId));
             } else {
-                writeSet = lh.getWriteSetForReadOperation(eId);
+                ws = lh.getWriteSetForReadOperation(eId);
             }
+            // sticky reads deliberately pin all the reads of a ledger to the same bookie
+            if (clientCtx.getReadRoutingPolicy().isPresent() && !clientCtx.getConf().enableStickyReads) {
+                ws = clientCtx.getReadRoutingPolicy().get().reorderReadSequence(ensemble,
+                        lh.getBookiesHealthInfo(), ws);
+            }
+            writeSet = ws;
         }
 
         @Override
@@ -547,12 +554,14 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
         final int bookieIndex;
         final BookieId to;
         final LedgerEntryRequest entry;
+        final long sentNanos;
         long lac = LedgerHandle.INVALID_ENTRY_ID;
 
         ReadContext(int bookieIndex, BookieId to, LedgerEntryRequest entry) {
             this.bookieIndex = bookieIndex;
             this.to = to;
             this.entry = entry;
+            this.sentNanos = MathUtils.nowInNano();
         }
 
         @Override
@@ -575,6 +584,7 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
             lh.throttler.acquire();
         }
 
+        clientCtx.getReadRoutingPolicy().ifPresent(policy -> policy.onReadSent(to));
         if (isRecoveryRead) {
             int flags = BookieProtocol.FLAG_HIGH_PRIORITY | BookieProtocol.FLAG_DO_FENCING;
             clientCtx.getBookieClient().readEntry(to, lh.ledgerId, entry.eId,
@@ -590,6 +600,10 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
         final ReadContext rctx = (ReadContext) ctx;
         final LedgerEntryRequest entry = rctx.entry;
 
+        final long responseLatencyNanos = MathUtils.elapsedNanos(rctx.sentNanos);
+        clientCtx.getReadRoutingPolicy().ifPresent(
+                policy -> policy.onReadComplete(rctx.to, rc, responseLatencyNanos));
+
         if (rc != BKException.Code.OK) {
             entry.logErrorAndReattemptRead(rctx.bookieIndex, rctx.to, "Error: " + BKException.getMessage(rc), rc);
             return;
@@ -597,6 +611,8 @@ class PendingReadOp implements ReadEntryCallback, Runnable {
 
         heardFromHosts.add(rctx.to);
         heardFromHostsBitSet.set(rctx.bookieIndex, true);
+        clientCtx.getConf().readSpeculativeRequestPolicy.ifPresent(
+                policy -> policy.registerSuccessfulRequest(responseLatencyNanos, TimeUnit.NANOSECONDS));
 
         buffer.retain();
         // if entry has completed don't handle twice
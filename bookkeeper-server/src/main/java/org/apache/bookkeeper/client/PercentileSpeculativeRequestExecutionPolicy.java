@@ -0,0 +1,278 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SpeculativeRequestExecutionPolicy} that derives the speculative request timeout from the
+ * latency distribution of the recent requests.
+ *
+ * <p>Request latencies are recorded in a log-linear histogram covering the last two windows of
+ * {@link #WINDOW_MS}. The first speculative request is sent when a request has been outstanding for longer
+ * than the configured percentile of that distribution (capped at {@code maxSpeculativeRequestTimeout}); the
+ * following ones back off like {@link DefaultSpeculativeRequestExecutionPolicy}. Until enough latencies have
+ * been recorded, {@code firstSpeculativeRequestTimeout} is used instead.
+ *
+ * <p>The number of speculative requests is capped to a percentage of the requests over the same windows, so
+ * a slow down of the whole cluster doesn't turn into a storm of duplicate requests.
+ */
+public class PercentileSpeculativeRequestExecutionPolicy implements SpeculativeRequestExecutionPolicy {
+    private static final Logger LOG = LoggerFactory.getLogger(PercentileSpeculativeRequestExecutionPolicy.class);
+
+    static final long WINDOW_MS = 30000;
+    static final long MIN_SAMPLES = 100;
+    private static final long RECOMPUTE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // 8 linear buckets per power of two microseconds, up to ~2^34 us
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (34 - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    final int firstSpeculativeRequestTimeout;
+    final int maxSpeculativeRequestTimeout;
+    final float backoffMultiplier;
+    final double percentile;
+    final double maxSpeculativePercentage;
+
+    private final Window[] windows = { new Window(), new Window() };
+    private volatile int currentWindow = 0;
+    private volatile long windowStartNanos = MathUtils.nowInNano();
+
+    private volatile int speculativeRequestTimeout;
+    private volatile long lastComputeNanos = 0;
+
+    public PercentileSpeculativeRequestExecutionPolicy(int firstSpeculativeRequestTimeout,
+            int maxSpeculativeRequestTimeout, float backoffMultiplier,
+            double percentile, double maxSpeculativePercentage) {
+        this.firstSpeculativeRequestTimeout = firstSpeculativeRequestTimeout;
+        this.maxSpeculativeRequestTimeout = maxSpeculativeRequestTimeout;
+        this.backoffMultiplier = backoffMultiplier;
+        this.percentile = percentile;
+        this.maxSpeculativePercentage = maxSpeculativePercentage;
+        this.speculativeRequestTimeout = firstSpeculativeRequestTimeout;
+
+        if (backoffMultiplier <= 0) {
+            throw new IllegalArgumentException("Invalid value provided for backoffMultiplier");
+        }
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid value provided for percentile");
+        }
+        if (maxSpeculativePercentage < 0) {
+            throw new IllegalArgumentException("Invalid value provided for maxSpeculativePercentage");
+        }
+
+        // Prevent potential over flow
+        if (Math.round((double) maxSpeculativeRequestTimeout * (double) backoffMultiplier) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid values for maxSpeculativeRequestTimeout and backoffMultiplier");
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> initiateSpeculativeRequest(final ScheduledExecutorService scheduler,
+            final SpeculativeRequestExecutor requestExecutor) {
+        currentWindow().requests.incrementAndGet();
+        return scheduleSpeculativeRead(scheduler, requestExecutor, getSpeculativeRequestTimeout());
+    }
+
+    @Override
+    public void registerSuccessfulRequest(long latency, TimeUnit unit) {
+        currentWindow().buckets.incrementAndGet(bucketIndex(Math.max(0, unit.toMicros(latency))));
+    }
+
+    private ScheduledFuture<?> scheduleSpeculativeRead(final ScheduledExecutorService scheduler,
+                                                       final SpeculativeRequestExecutor requestExecutor,
+                                                       final int speculativeRequestTimeout) {
+        try {
+            return scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!tryAcquireSpeculativeRequest()) {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Speculative request budget exhausted, not issuing speculative request for {}",
+                                    requestExecutor);
+                        }
+                        return;
+                    }
+                    ListenableFuture<Boolean> issueNextRequest = requestExecutor.issueSpeculativeRequest();
+                    Futures.addCallback(issueNextRequest, new FutureCallback<Boolean>() {
+                        @Override
+                        public void onSuccess(Boolean issueNextRequest) {
+                            if (issueNextRequest) {
+                                scheduleSpeculativeRead(scheduler, requestExecutor,
+                                        Math.min(maxSpeculativeRequestTimeout,
+                                        Math.round((float) speculativeRequestTimeout * backoffMultiplier)));
+                            } else {
+                                // nothing was sent, give the budget back
+                                releaseSpeculativeRequest();
+                                if (LOG.isTraceEnabled()) {
+                                    LOG.trace("Stopped issuing speculative requests for {}, "
+                                        + "speculativeReadTimeout = {}", requestExecutor, speculativeRequestTimeout);
+                                }
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable thrown) {
+                            releaseSpeculativeRequest();
+                            LOG.warn("Failed to issue speculative request for {}, speculativeReadTimeout = {} : ",
+                                    requestExecutor, speculativeRequestTimeout, thrown);
+                        }
+                    }, directExecutor());
+                }
+            }, speculativeRequestTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException re) {
+            if (!scheduler.isShutdown()) {
+                LOG.warn("Failed to schedule speculative request for {}, speculativeReadTimeout = {} : ",
+                        requestExecutor, speculativeRequestTimeout, re);
+            }
+        }
+        return null;
+    }
+
+    @VisibleForTesting
+    boolean tryAcquireSpeculativeRequest() {
+        Window current = currentWindow();
+        Window previous = windows[1 - currentWindow];
+        double budget = (current.requests.get() + previous.requests.get()) * maxSpeculativePercentage / 100;
+        long previousSpeculativeRequests = previous.speculativeRequests.get();
+        while (true) {
+            long speculativeRequests = current.speculativeRequests.get();
+            if (previousSpeculativeRequests + speculativeRequests + 1 > budget) {
+                return false;
+            }
+            if (current.speculativeRequests.compareAndSet(speculativeRequests, speculativeRequests + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseSpeculativeRequest() {
+        currentWindow().speculativeRequests.updateAndGet(n -> n > 0 ? n - 1 : 0);
+    }
+
+    /**
+     * Get the timeout of the first speculative request, derived from the recent request latencies.
+     *
+     * @return the speculative request timeout in milliseconds.
+     */
+    @VisibleForTesting
+    int getSpeculativeRequestTimeout() {
+        long now = MathUtils.nowInNano();
+        if (now - lastComputeNanos >= RECOMPUTE_INTERVAL_NANOS) {
+            synchronized (this) {
+                if (now - lastComputeNanos >= RECOMPUTE_INTERVAL_NANOS) {
+                    speculativeRequestTimeout = computeSpeculativeRequestTimeout();
+                    lastComputeNanos = now;
+                }
+            }
+        }
+        return speculativeRequestTimeout;
+    }
+
+    private int computeSpeculativeRequestTimeout() {
+        long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for (Window window : windows) {
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                long count = window.buckets.get(i);
+                counts[i] += count;
+                total += count;
+            }
+        }
+        if (total < MIN_SAMPLES) {
+            return firstSpeculativeRequestTimeout;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        int bucket = NUM_BUCKETS - 1;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                bucket = i;
+                break;
+            }
+        }
+        long timeoutMs = (bucketUpperBoundMicros(bucket) + 999) / 1000;
+        return (int) Math.max(1, Math.min(maxSpeculativeRequestTimeout, timeoutMs));
+    }
+
+    private Window currentWindow() {
+        long now = MathUtils.nowInNano();
+        if (now - windowStartNanos >= TimeUnit.MILLISECONDS.toNanos(WINDOW_MS)) {
+            synchronized (this) {
+                if (now - windowStartNanos >= TimeUnit.MILLISECONDS.toNanos(WINDOW_MS)) {
+                    int next = 1 - currentWindow;
+                    windows[next].reset();
+                    currentWindow = next;
+                    windowStartNanos = now;
+                }
+            }
+        }
+        return windows[currentWindow];
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) ((micros >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min(NUM_BUCKETS - 1, (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket);
+    }
+
+    static long bucketUpperBoundMicros(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exp = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exp - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static final class Window {
+        final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+        final AtomicLong requests = new AtomicLong(0);
+        final AtomicLong speculativeRequests = new AtomicLong(0);
+
+        void reset() {
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            requests.set(0);
+            speculativeRequests.set(0);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.ITopologyAwareEnsemblePlacementPolicy.Ensemble;
+import org.apache.bookkeeper.client.ITopologyAwareEnsemblePlacementPolicy.Predicate;
+import org.apache.bookkeeper.client.WeightedRandomSelection.WeightedObject;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieNode;
+import org.apache.bookkeeper.net.NetworkTopologyImpl;
+import org.apache.bookkeeper.net.Node;
+import org.apache.bookkeeper.net.NodeBase;
+
+/**
+ * An immutable view of the bookies known by a placement policy, grouped by network location.
+ *
+ * <p>The bookies under every network location (root, regions, racks) are stored in an array, and
+ * their weighted selection is prepared, once when the snapshot is built. So the random picks done
+ * for each ensemble placement neither take the policy lock nor copy the bookies of a rack. A
+ * snapshot is built lazily after each change of the known bookies, of their racks or their weights.
+ */
+final class PlacementSnapshot {
+
+    private static final BookieNode[] NO_BOOKIES = new BookieNode[0];
+    private static final String[] NO_SCOPES = new String[0];
+
+    private final Map<BookieId, BookieNode> knownBookies;
+    // bookies under each network location, keyed by the normalized location
+    private final Map<String, BookieNode[]> scopeBookies;
+    // weighted selection of the bookies under each network location, empty if the placement isn't weighted
+    private final Map<String, WeightedRandomSelection<BookieNode>> scopeSelections;
+
+    PlacementSnapshot(Map<BookieId, BookieNode> knownBookies, Map<BookieNode, WeightedObject> bookieInfoMap,
+                      boolean isWeighted, int maxWeightMultiple) {
+        Map<String, List<BookieNode>> scopes = new HashMap<>();
+        for (BookieNode bookie : knownBookies.values()) {
+            String location = NodeBase.normalize(bookie.getNetworkLocation());
+            // the bookie belongs to the scope of each of its ancestors
+            int idx = 0;
+            while (idx >= 0) {
+                idx = location.indexOf(NodeBase.PATH_SEPARATOR, idx + 1);
+                String scope = idx < 0 ? location : location.substring(0, idx);
+                scopes.computeIfAbsent(scope, s -> new ArrayList<>()).add(bookie);
+            }
+        }
+        scopes.put(NodeBase.ROOT, new ArrayList<>(knownBookies.values()));
+
+        Map<String, BookieNode[]> scopeBookies = new HashMap<>();
+        Map<String, WeightedRandomSelection<BookieNode>> scopeSelections = new HashMap<>();
+        for (Map.Entry<String, List<BookieNode>> e : scopes.entrySet()) {
+            List<BookieNode> bookies = e.getValue();
+            scopeBookies.put(e.getKey(), bookies.toArray(NO_BOOKIES));
+            if (isWeighted && !bookies.isEmpty()) {
+                Map<BookieNode, WeightedObject> weights = new HashMap<>();
+                for (BookieNode bookie : bookies) {
+                    WeightedObject weight = bookieInfoMap.get(bookie);
+                    weights.put(bookie, null == weight ? new BookieInfo() : weight);
+                }
+                WeightedRandomSelection<BookieNode> selection =
+                        new WeightedRandomSelectionImpl<BookieNode>(maxWeightMultiple);
+                selection.updateMap(weights);
+                scopeSelections.put(e.getKey(), selection);
+            }
+        }
+        this.knownBookies = Collections.unmodifiableMap(new HashMap<>(knownBookies));
+        this.scopeBookies = scopeBookies;
+        this.scopeSelections = scopeSelections;
+    }
+
+    Map<BookieId, BookieNode> getKnownBookies() {
+        return knownBookies;
+    }
+
+    /**
+     * Choose a random bookie under <i>scope</i>, which isn't in <i>excludeBookies</i> and is accepted by
+     * <i>predicate</i>. If scope starts with ~, the bookie is chosen among all the bookies except the
+     * ones under any of the comma separated scopes that follow it.
+     *
+     * <p>Random bookies, weighted if the placement is, are drawn first, so in the common case the first
+     * draw is accepted and the cost doesn't depend on the number of bookies. If none of the draws is
+     * accepted, the bookies are visited in turn from a random one, so that a candidate is found
+     * whenever there is one.
+     *
+     * @return the chosen bookie, or null if there is no candidate.
+     */
+    BookieNode selectRandom(String scope, Set<Node> excludeBookies, Predicate<BookieNode> predicate,
+                            Ensemble<BookieNode> ensemble) {
+        String[] excludeScopes = NO_SCOPES;
+        String path;
+        if (scope.startsWith(NetworkTopologyImpl.INVERSE)) {
+            excludeScopes = scope.substring(1).split(NetworkTopologyImpl.NODE_SEPARATOR);
+            for (int i = 0; i < excludeScopes.length; i++) {
+                excludeScopes[i] = NodeBase.normalize(excludeScopes[i]);
+            }
+            path = NodeBase.ROOT;
+        } else {
+            path = NodeBase.normalize(scope);
+        }
+        BookieNode[] bookies = scopeBookies.getOrDefault(path, NO_BOOKIES);
+        WeightedRandomSelection<BookieNode> selection = scopeSelections.get(path);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < bookies.length; i++) {
+            BookieNode bn = null == selection ? bookies[random.nextInt(bookies.length)] : selection.getNextRandom();
+            if (isCandidate(bn, excludeScopes, excludeBookies, predicate, ensemble)) {
+                return bn;
+            }
+        }
+        int offset = bookies.length == 0 ? 0 : random.nextInt(bookies.length);
+        for (int i = 0; i < bookies.length; i++) {
+            BookieNode bn = bookies[(offset + i) % bookies.length];
+            if (isCandidate(bn, excludeScopes, excludeBookies, predicate, ensemble)) {
+                return bn;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCandidate(BookieNode bn, String[] excludeScopes, Set<Node> excludeBookies,
+                                       Predicate<BookieNode> predicate, Ensemble<BookieNode> ensemble) {
+        if (excludeBookies.contains(bn)) {
+            return false;
+        }
+        for (String excludeScope : excludeScopes) {
+            if (isUnder(bn.getNetworkLocation(), excludeScope)) {
+                return false;
+            }
+        }
+        return predicate.apply(bn, ensemble);
+    }
+
+    private static boolean isUnder(String location, String scope) {
+        return location.startsWith(scope)
+                && (location.length() == scope.length() || location.charAt(scope.length()) == NodeBase.PATH_SEPARATOR);
+    }
+}
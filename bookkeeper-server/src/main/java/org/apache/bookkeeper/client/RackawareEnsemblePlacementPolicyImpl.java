@@ -42,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
@@ -86,6 +87,8 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
 
     static final Logger LOG = LoggerFactory.getLogger(RackawareEnsemblePlacementPolicyImpl.class);
     int maxWeightMultiple;
+    // immutable view of the known bookies and of their weights, built lazily after they change
+    private volatile PlacementSnapshot placementSnapshot = null;
 
     protected int minNumRacksPerWriteQuorum;
     protected boolean enforceMinNumRacksPerWriteQuorum;
@@ -580,7 +583,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
                                                    boolean fallbackToRandom)
             throws BKNotEnoughBookiesException {
 
-        List<BookieNode> knownNodes = new ArrayList<>(knownBookies.values());
+        List<BookieNode> knownNodes = new ArrayList<>(getPlacementSnapshot().getKnownBookies().values());
         Set<Node> fullExclusionBookiesList = new HashSet<Node>(excludeBookies);
         for (BookieNode knownNode : knownNodes) {
             if (excludeRacks.contains(knownNode.getNetworkLocation())) {
@@ -606,35 +609,40 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         }
     }
 
-    private WeightedRandomSelection<BookieNode> prepareForWeightedSelection(List<Node> leaves) {
-        // create a map of bookieNode->freeDiskSpace for this rack. The assumption is that
-        // the number of nodes in a rack is of the order of 40, so it shouldn't be too bad
-        // to build it every time during a ledger creation
-        Map<BookieNode, WeightedObject> rackMap = new HashMap<BookieNode, WeightedObject>();
-        for (Node n : leaves) {
-            if (!(n instanceof BookieNode)) {
-                continue;
-            }
-            BookieNode bookie = (BookieNode) n;
-            if (this.bookieInfoMap.containsKey(bookie)) {
-                rackMap.put(bookie, this.bookieInfoMap.get(bookie));
-            } else {
-                rackMap.put(bookie, new BookieInfo());
-            }
+    @Override
+    void onKnownBookiesChanged() {
+        placementSnapshot = null;
+    }
+
+    /**
+     * Return the current placement snapshot, building it if the known bookies changed since the last
+     * one was built. The snapshot is published while holding the read lock, so a concurrent change
+     * can't be overwritten by a stale snapshot.
+     */
+    PlacementSnapshot getPlacementSnapshot() {
+        PlacementSnapshot current = placementSnapshot;
+        if (null != current) {
+            return current;
         }
-        if (rackMap.size() == 0) {
-            return null;
+        rwLock.readLock().lock();
+        try {
+            current = placementSnapshot;
+            if (null == current) {
+                current = new PlacementSnapshot(knownBookies, bookieInfoMap, isWeighted, maxWeightMultiple);
+                placementSnapshot = current;
+            }
+            return current;
+        } finally {
+            rwLock.readLock().unlock();
         }
-
-        WeightedRandomSelection<BookieNode> wRSelection = new WeightedRandomSelectionImpl<BookieNode>(
-                maxWeightMultiple);
-        wRSelection.updateMap(rackMap);
-        return wRSelection;
     }
 
     /**
      * Choose random node under a given network path.
      *
+     * <p>The node is chosen from the placement snapshot, without taking the policy lock nor copying
+     * the nodes under the network path.
+     *
      * @param netPath
      *          network path
      * @param excludeBookies
@@ -647,53 +655,16 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
      */
     protected BookieNode selectRandomFromRack(String netPath, Set<Node> excludeBookies, Predicate<BookieNode> predicate,
             Ensemble<BookieNode> ensemble) throws BKNotEnoughBookiesException {
-        WeightedRandomSelection<BookieNode> wRSelection = null;
-        List<Node> leaves = new ArrayList<Node>(topology.getLeaves(netPath));
-        if (!this.isWeighted) {
-            Collections.shuffle(leaves);
-        } else {
-            if (CollectionUtils.subtract(leaves, excludeBookies).size() < 1) {
-                throw new BKNotEnoughBookiesException();
-            }
-            wRSelection = prepareForWeightedSelection(leaves);
-            if (wRSelection == null) {
-                throw new BKNotEnoughBookiesException();
-            }
+        BookieNode bn = getPlacementSnapshot().selectRandom(netPath, excludeBookies, predicate, ensemble);
+        if (null == bn) {
+            throw new BKNotEnoughBookiesException();
         }
-
-        Iterator<Node> it = leaves.iterator();
-        Set<Node> bookiesSeenSoFar = new HashSet<Node>();
-        while (true) {
-            Node n;
-            if (isWeighted) {
-                if (bookiesSeenSoFar.size() == leaves.size()) {
-                    // Don't loop infinitely.
-                    break;
-                }
-                n = wRSelection.getNextRandom();
-                bookiesSeenSoFar.add(n);
-            } else {
-                if (it.hasNext()) {
-                    n = it.next();
-                } else {
-                    break;
-                }
-            }
-            if (excludeBookies.contains(n)) {
-                continue;
-            }
-            if (!(n instanceof BookieNode) || !predicate.apply((BookieNode) n, ensemble)) {
-                continue;
-            }
-            BookieNode bn = (BookieNode) n;
-            // got a good candidate
-            if (ensemble.addNode(bn)) {
-                // add the candidate to exclude set
-                excludeBookies.add(bn);
-            }
-            return bn;
+        // got a good candidate
+        if (ensemble.addNode(bn)) {
+            // add the candidate to exclude set
+            excludeBookies.add(bn);
         }
-        throw new BKNotEnoughBookiesException();
+        return bn;
     }
 
     /**
@@ -726,7 +697,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         if (bookiesToSelectFrom == null) {
             // If the list is null, we need to select from the entire knownBookies set
             wRSelection = this.weightedSelection;
-            bookiesToSelectFrom = new ArrayList<BookieNode>(knownBookies.values());
+            bookiesToSelectFrom = new ArrayList<BookieNode>(getPlacementSnapshot().getKnownBookies().values());
         }
         if (isWeighted) {
             if (CollectionUtils.subtract(bookiesToSelectFrom, excludeBookies).size() < numBookies) {
@@ -1269,50 +1240,13 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         conditionList.add(Pair.of(netPath, Collections.emptyList()));
 
         for (Pair<String, List<BookieNode>> condition : conditionList) {
-            WeightedRandomSelection<BookieNode> wRSelection = null;
-
-            final List<Node> leaves = new ArrayList<>(topology.getLeaves(condition.getLeft()));
-            if (!isWeighted) {
-                Collections.shuffle(leaves);
-            } else {
-                if (CollectionUtils.subtract(leaves, excludeBookies).size() < 1) {
-                    throw new BKNotEnoughBookiesException();
-                }
-                wRSelection = prepareForWeightedSelection(leaves);
-                if (wRSelection == null) {
-                    throw new BKNotEnoughBookiesException();
-                }
-            }
-
-            final Iterator<Node> it = leaves.iterator();
-            final Set<Node> bookiesSeenSoFar = new HashSet<>();
-            while (true) {
-                Node n;
-                if (isWeighted) {
-                    if (bookiesSeenSoFar.size() == leaves.size()) {
-                        // Don't loop infinitely.
-                        break;
-                    }
-                    n = wRSelection.getNextRandom();
-                    bookiesSeenSoFar.add(n);
-                } else {
-                    if (it.hasNext()) {
-                        n = it.next();
-                    } else {
-                        break;
-                    }
-                }
-                if (excludeBookies.contains(n)) {
-                    continue;
-                }
-                if (!(n instanceof BookieNode) || !predicate.apply((BookieNode) n, ensemble)) {
-                    continue;
-                }
-                // additional excludeBookies
-                if (condition.getRight().contains(n)) {
-                    continue;
-                }
-                BookieNode bn = (BookieNode) n;
+            // additional excludeBookies
+            final List<BookieNode> conditionExcludeBookies = condition.getRight();
+            final BookieNode bn = getPlacementSnapshot().selectRandom(condition.getLeft(), excludeBookies,
+                    (candidate, chosenNodes) -> !conditionExcludeBookies.contains(candidate)
+                            && predicate.apply(candidate, chosenNodes),
+                    ensemble);
+            if (null != bn) {
                 return bn;
             }
         }
@@ -65,6 +65,8 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
     private final long prevEntryId;
     private long lastAddConfirmed;
     private long timeOutInMillis;
+    // entries the bookies may return per response, the ones after the first are only used through the entry cache
+    private final int maxEntries;
     private final List<BookieId> currentEnsemble;
     private ScheduledFuture<?> speculativeTask = null;
 
@@ -440,6 +442,8 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
         this.prevEntryId = prevEntryId;
         this.lastAddConfirmed = lh.getLastAddConfirmed();
         this.timeOutInMillis = timeOutInMillis;
+        this.maxEntries = clientCtx.getEntryCache().isPresent()
+                ? Math.max(1, clientCtx.getConf().longPollReadMaxEntries) : 1;
         this.numResponsesPending = 0;
 
         this.currentEnsemble = ensemble;
@@ -517,7 +521,7 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
             prevEntryId,
             timeOutInMillis,
             true,
-            this, new ReadLastConfirmedAndEntryContext(bookieIndex, to));
+            this, new ReadLastConfirmedAndEntryContext(bookieIndex, to, maxEntries));
         this.numResponsesPending++;
     }
 
@@ -582,8 +586,17 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
                         elapsedMicros = Math.max(elapsedMicros, 0);
                         clientCtx.getClientStats().getReadLacAndEntryRespLogger()
                                 .registerSuccessfulEvent(elapsedMicros, TimeUnit.MICROSECONDS);
+                    } else {
+                        // the bookie answered without waiting for the lac to advance: the response time says how
+                        // quickly it serves reads. Responses to parked long polls are left out, their latency is
+                        // the time until the next add and would only delay the speculative reads.
+                        final long responseNanos = MathUtils.elapsedNanos(rCtx.getSentNanos());
+                        clientCtx.getConf().readLACSpeculativeRequestPolicy.ifPresent(
+                                policy -> policy.registerSuccessfulRequest(responseNanos, TimeUnit.NANOSECONDS));
                     }
 
+                    cacheNextEntries(entryId, rCtx);
+
                     // if the request has already completed, the buffer is not going to be used anymore, release it.
                     if (!completeRequest()) {
                         buffer.release();
@@ -629,6 +642,34 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
         }
     }
 
+    /**
+     * Add to the entry cache the entries the bookie returned after the entry <i>entryId</i>. They are
+     * all at or below the LAC returned by the bookie, so the next reads of the tailing reader are
+     * served from the cache.
+     */
+    private void cacheNextEntries(long entryId, ReadLastConfirmedAndEntryContext rCtx) {
+        if (rCtx.getNextEntries().isEmpty() || !clientCtx.getEntryCache().isPresent()) {
+            return;
+        }
+        ClientEntryCache entryCache = clientCtx.getEntryCache().get();
+        long nextEntryId = entryId + 1;
+        for (ByteBuf buffer : rCtx.getNextEntries()) {
+            if (nextEntryId > rCtx.getLastAddConfirmed()) {
+                break;
+            }
+            ByteBuf content;
+            try {
+                content = lh.getDigestManager().verifyDigestAndReturnData(nextEntryId, buffer);
+            } catch (BKException.BKDigestMatchException e) {
+                LOG.warn("Mac mismatch on entry {} of ledger {} returned by long poll read from bookie {}",
+                        nextEntryId, lh.getId(), rCtx.getBookieAddress());
+                break;
+            }
+            entryCache.put(lh.getId(), nextEntryId, buffer.getLong(DigestManager.METADATA_LENGTH - 8), content);
+            nextEntryId++;
+        }
+    }
+
     private boolean completeRequest() {
         boolean requestCompleted = requestComplete.compareAndSet(false, true);
         if (requestCompleted) {
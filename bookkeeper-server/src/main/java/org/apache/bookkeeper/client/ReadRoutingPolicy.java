@@ -0,0 +1,109 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * Define a policy for routing entry reads to the replicas of an entry.
+ *
+ * <p>While the {@link EnsemblePlacementPolicy} orders reads using static information (network location,
+ * failure history, pending requests), a read routing policy learns from the reads themselves: the client
+ * reports every read request sent to a bookie and its outcome, and the policy orders the replicas of the
+ * next reads by how quickly it expects each bookie to answer.
+ *
+ * <p>The policy is configured with {@link ClientConfiguration#setReadRoutingPolicy(Class)} and a single
+ * instance is shared by all the ledgers of a client, so implementations must be thread-safe.
+ *
+ * @see LatencyAwareReadRoutingPolicy
+ */
+public interface ReadRoutingPolicy {
+
+    /**
+     * Initialize the policy.
+     *
+     * @param conf client configuration
+     * @param statsLogger stats logger for the policy stats
+     * @return the initialized policy
+     */
+    ReadRoutingPolicy initialize(ClientConfiguration conf, StatsLogger statsLogger);
+
+    /**
+     * Uninitialize the policy, releasing any resource it holds.
+     */
+    void uninitialize();
+
+    /**
+     * The bookies of the cluster have changed. Policies keeping state per bookie should drop the state of the
+     * bookies that are no longer part of the cluster.
+     *
+     * @param writableBookies the writable bookies of the cluster
+     * @param readOnlyBookies the read-only bookies of the cluster
+     */
+    default void onClusterChanged(Set<BookieId> writableBookies, Set<BookieId> readOnlyBookies) {
+    }
+
+    /**
+     * Reorder the read sequence of a given write quorum <i>writeSet</i>, most preferred replica first.
+     * The replicas the placement policy moved to the end of the sequence, such as the failed ones, should
+     * stay behind the other replicas.
+     *
+     * @param ensemble
+     *          Ensemble to read entries.
+     * @param bookiesHealthInfo
+     *          Health info for bookies
+     * @param writeSet
+     *          Write quorum to read entries, possibly already reordered by the placement policy.
+     *          It will be modified in place and returned.
+     * @return The read sequence.
+     */
+    DistributionSchedule.WriteSet reorderReadSequence(List<BookieId> ensemble,
+                                                      BookiesHealthInfo bookiesHealthInfo,
+                                                      DistributionSchedule.WriteSet writeSet);
+
+    /**
+     * A read request has been sent to <i>bookie</i>.
+     *
+     * @param bookie the bookie the read was sent to
+     */
+    void onReadSent(BookieId bookie);
+
+    /**
+     * A read request sent to <i>bookie</i> has completed.
+     *
+     * @param bookie the bookie that answered
+     * @param rc the result code of the read
+     * @param latencyNanos the time elapsed since the request was sent
+     */
+    void onReadComplete(BookieId bookie, int rc, long latencyNanos);
+
+    /**
+     * Get the current score of every bookie known to the policy. Lower scores are preferred.
+     *
+     * @return the score of each bookie.
+     */
+    Map<BookieId, Double> getBookieScores();
+}
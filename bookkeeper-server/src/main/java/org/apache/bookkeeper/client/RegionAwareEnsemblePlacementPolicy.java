@@ -134,6 +134,7 @@ public class RegionAwareEnsemblePlacementPolicy extends RackawareEnsemblePlaceme
             topology.add(node);
             knownBookies.put(addr, node);
             historyBookies.put(addr, node);
+            onKnownBookiesChanged();
             String region = getLocalRegion(node);
             if (null == perRegionPlacement.get(region)) {
                 perRegionPlacement.put(region, new RackawareEnsemblePlacementPolicy()
@@ -182,6 +183,7 @@ public class RegionAwareEnsemblePlacementPolicy extends RackawareEnsemblePlaceme
                             topology.add(newNode);
                             knownBookies.put(bookieAddress, newNode);
                             historyBookies.put(bookieAddress, newNode);
+                            onKnownBookiesChanged();
                         }
                         //Handle per region placement policy.
                         String oldRegion = getRegion(bookieAddress);
@@ -22,6 +22,7 @@ package org.apache.bookkeeper.client;
 
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Define a policy for speculative request execution.
@@ -42,4 +43,13 @@ public interface SpeculativeRequestExecutionPolicy {
      */
     ScheduledFuture<?> initiateSpeculativeRequest(ScheduledExecutorService scheduler,
             SpeculativeRequestExecutor requestExecutor);
+
+    /**
+     * Record the latency of a successful request, for policies that adapt to the observed latencies.
+     *
+     * @param latency the latency of the request
+     * @param unit the unit of the latency
+     */
+    default void registerSuccessfulRequest(long latency, TimeUnit unit) {
+    }
 }
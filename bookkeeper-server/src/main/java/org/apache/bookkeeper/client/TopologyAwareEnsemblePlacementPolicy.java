@@ -690,6 +690,7 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                     if (this.isWeighted) {
                         this.bookieInfoMap.remove(node);
                     }
+                    onKnownBookiesChanged();
 
                     bookiesLeftCounter.registerSuccessfulValue(1L);
 
@@ -723,6 +724,7 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                 if (this.isWeighted) {
                     this.bookieInfoMap.putIfAbsent(node, new BookieInfo());
                 }
+                onKnownBookiesChanged();
 
                 bookiesJoinedCounter.registerSuccessfulValue(1L);
 
@@ -755,6 +757,7 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
                             topology.add(newNode);
                             knownBookies.put(bookieAddress, newNode);
                             historyBookies.put(bookieAddress, newNode);
+                            onKnownBookiesChanged();
                         }
                     }
                 } catch (IllegalArgumentException | NetworkTopologyImpl.InvalidTopologyException e) {
@@ -802,11 +805,20 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
             }
             this.bookieInfoMap = map;
             this.weightedSelection.updateMap(this.bookieInfoMap);
+            onKnownBookiesChanged();
         } finally {
             rwLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Called after the known bookies, their racks or their weights changed.
+     *
+     * <p>It should be called in writelock scope of 'rwLock'.
+     */
+    void onKnownBookiesChanged() {
+    }
+
     protected BookieNode createBookieNode(BookieId addr) {
         return new BookieNode(addr, resolveNetworkLocation(addr));
     }
@@ -84,6 +84,10 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     protected static final String METADATA_SERVICE_URI = "metadataServiceUri";
     protected static final String ZK_LEDGERS_ROOT_PATH = "zkLedgersRootPath";
     protected static final String ZK_REQUEST_RATE_LIMIT = "zkRequestRateLimit";
+    protected static final String ZK_LEDGER_METADATA_WRITE_BATCH_MAX_OPS = "zkLedgerMetadataWriteBatchMaxOps";
+    protected static final String ZK_LEDGER_ID_PREALLOCATION_SIZE = "zkLedgerIdPreallocationSize";
+    protected static final String ZK_LEDGER_LISTING_PARALLELISM = "zkLedgerListingParallelism";
+    protected static final String ZK_LEDGER_LISTING_CACHE_ENABLED = "zkLedgerListingCacheEnabled";
     protected static final String AVAILABLE_NODE = "available";
     protected static final String REREPLICATION_ENTRY_BATCH_SIZE = "rereplicationEntryBatchSize";
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_UNDERREPLICATED_MARK_TIME =
@@ -188,6 +192,10 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     public static final String LIMIT_STATS_LOGGING = "limitStatsLogging";
 
     protected static final String REPLICATION_RATE_BY_BYTES = "replicationRateByBytes";
+    protected static final String REPLICATION_RATE_SPLIT_ACROSS_BOOKIES_BY_BYTES =
+            "replicationRateSplitAcrossBookiesByBytes";
+    protected static final String REREPLICATION_MAX_IN_FLIGHT_ENTRY_BATCHES = "rereplicationMaxInFlightEntryBatches";
+    protected static final String REREPLICATION_BOOKIE_COPY_ENABLED = "rereplicationBookieCopyEnabled";
 
     protected AbstractConfiguration() {
         super();
@@ -577,6 +585,115 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         setProperty(ZK_REQUEST_RATE_LIMIT, rateLimit);
     }
 
+    /**
+     * Get the maximum number of ledger metadata creations and updates batched into a single
+     * zookeeper multi operation.
+     *
+     * <p>While a batch is outstanding, the ledger metadata creations and updates issued by the
+     * ledger manager are queued, and sent together in one multi operation once the batch completes.
+     * If a batch fails, its operations are retried one by one, so each of them gets its own result.
+     * Batching is disabled if the value is &lt;= 1.
+     *
+     * @return maximum number of operations in a ledger metadata write batch.
+     */
+    public int getZkLedgerMetadataWriteBatchMaxOps() {
+        return getInt(ZK_LEDGER_METADATA_WRITE_BATCH_MAX_OPS, 1);
+    }
+
+    /**
+     * Set the maximum number of ledger metadata creations and updates batched into a single
+     * zookeeper multi operation.
+     *
+     * @param maxOps
+     *          maximum number of operations in a ledger metadata write batch.
+     * @return configuration.
+     * @see #getZkLedgerMetadataWriteBatchMaxOps()
+     */
+    public T setZkLedgerMetadataWriteBatchMaxOps(int maxOps) {
+        setProperty(ZK_LEDGER_METADATA_WRITE_BATCH_MAX_OPS, maxOps);
+        return getThis();
+    }
+
+    /**
+     * Get the number of ledger ids reserved at once by the zookeeper based ledger id generator.
+     *
+     * <p>The ids are reserved with a single zookeeper multi operation, and handed out to the
+     * ledgers created afterwards. The reserved ids which are not used when the client is closed
+     * are skipped. Pre-allocation is disabled if the value is &lt;= 1.
+     *
+     * @return number of ledger ids reserved at once.
+     */
+    public int getZkLedgerIdPreallocationSize() {
+        return getInt(ZK_LEDGER_ID_PREALLOCATION_SIZE, 1);
+    }
+
+    /**
+     * Set the number of ledger ids reserved at once by the zookeeper based ledger id generator.
+     *
+     * @param size
+     *          number of ledger ids reserved at once.
+     * @return configuration.
+     * @see #getZkLedgerIdPreallocationSize()
+     */
+    public T setZkLedgerIdPreallocationSize(int size) {
+        setProperty(ZK_LEDGER_ID_PREALLOCATION_SIZE, size);
+        return getThis();
+    }
+
+    /**
+     * Get the number of leaf znodes listed concurrently when iterating over the ledgers of a hierarchical
+     * ledger manager, e.g. by the garbage collector or the auditor.
+     *
+     * <p>The leaf znodes are listed ahead of the consumer of the iteration, at most this number at a time.
+     *
+     * @return number of leaf znodes listed concurrently.
+     */
+    public int getZkLedgerListingParallelism() {
+        return getInt(ZK_LEDGER_LISTING_PARALLELISM, 1);
+    }
+
+    /**
+     * Set the number of leaf znodes listed concurrently when iterating over the ledgers of a hierarchical
+     * ledger manager.
+     *
+     * @param parallelism
+     *          number of leaf znodes listed concurrently.
+     * @return configuration.
+     * @see #getZkLedgerListingParallelism()
+     */
+    public T setZkLedgerListingParallelism(int parallelism) {
+        setProperty(ZK_LEDGER_LISTING_PARALLELISM, parallelism);
+        return getThis();
+    }
+
+    /**
+     * Whether the hierarchical ledger managers cache the ledgers listed in each leaf znode.
+     *
+     * <p>When enabled, iterating over the ledgers again only lists the children of the leaf znodes whose
+     * children changed since the previous iteration, which is checked with a stat of the znode. It trades
+     * memory, about 8 bytes per ledger, for the zookeeper traffic of listing all the ledgers at each
+     * iteration, and is meant for long lived ledger managers iterating periodically, like the one of the
+     * bookie garbage collector.
+     *
+     * @return whether the ledger listing cache is enabled.
+     */
+    public boolean getZkLedgerListingCacheEnabled() {
+        return getBoolean(ZK_LEDGER_LISTING_CACHE_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the ledger listing cache of the hierarchical ledger managers.
+     *
+     * @param enabled
+     *          whether the ledger listing cache is enabled.
+     * @return configuration.
+     * @see #getZkLedgerListingCacheEnabled()
+     */
+    public T setZkLedgerListingCacheEnabled(boolean enabled) {
+        setProperty(ZK_LEDGER_LISTING_CACHE_ENABLED, enabled);
+        return getThis();
+    }
+
     /**
      * Are z-node created with strict ACLs.
      *
@@ -1236,6 +1353,82 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getThis();
     }
 
+    /**
+     * Get the bytes rate which is split across the bookies to derive the rate of each replication worker. Each
+     * worker divides it by the number of available (writable and read-only) bookies it sees, and applies that
+     * share on top of {@link #getReplicationRateByBytes()}. The share is not coordinated between the workers: it
+     * is a per-worker rate which assumes a replication worker runs along with every bookie. So the share of an
+     * idle worker is not given to the busy ones, and the rate is exceeded if more workers than bookies run.
+     * Default value is -1 which it means the rate is not split across the bookies.
+     *
+     * @return bytes rate split across the bookies.
+     */
+    public int getReplicationRateSplitAcrossBookiesByBytes() {
+        return getInt(REPLICATION_RATE_SPLIT_ACROSS_BOOKIES_BY_BYTES, -1);
+    }
+
+    /**
+     * Set the bytes rate which is split across the bookies to derive the rate of each replication worker.
+     *
+     * @param rate bytes rate split across the bookies.
+     *
+     * @return ClientConfiguration
+     */
+    public T setReplicationRateSplitAcrossBookiesByBytes(int rate) {
+        this.setProperty(REPLICATION_RATE_SPLIT_ACROSS_BOOKIES_BY_BYTES, rate);
+        return getThis();
+    }
+
+    /**
+     * Get the max number of batches of rereplicationEntryBatchSize entries of a ledger fragment which are
+     * re-replicated concurrently. When more than 1, each batch is also read with a single range read and written
+     * to the target bookies as soon as it is read, so several batches in flight pipeline the reads with the
+     * writes. With the default of 1, the batches are re-replicated one after the other, entry by entry.
+     *
+     * @return max number of entry batches in flight. Default is 1.
+     */
+    public int getRereplicationMaxInFlightEntryBatches() {
+        return getInt(REREPLICATION_MAX_IN_FLIGHT_ENTRY_BATCHES, 1);
+    }
+
+    /**
+     * Set the max number of batches of entries of a ledger fragment which are re-replicated concurrently.
+     *
+     * @param maxInFlightBatches max number of entry batches in flight.
+     *
+     * @return ClientConfiguration
+     */
+    public T setRereplicationMaxInFlightEntryBatches(int maxInFlightBatches) {
+        this.setProperty(REREPLICATION_MAX_IN_FLIGHT_ENTRY_BATCHES, maxInFlightBatches);
+        return getThis();
+    }
+
+    /**
+     * Whether the target bookies copy the entries of a re-replicated ledger fragment directly from the other
+     * bookies of the fragment's ensemble. The replicator then only asks the target bookies to copy each batch
+     * of entries, instead of reading the entries and writing them back itself. Batches which a target bookie
+     * fails to copy, e.g. because it doesn't support the request, are re-replicated through the replicator.
+     * All the bookies of the cluster should be upgraded and serve the copy requests, see
+     * {@link ServerConfiguration#setLedgerFragmentCopyEnabled(boolean)}, before enabling it.
+     *
+     * @return true if the target bookies copy the entries themselves. Default is false.
+     */
+    public boolean isRereplicationBookieCopyEnabled() {
+        return getBoolean(REREPLICATION_BOOKIE_COPY_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable copying the entries of re-replicated ledger fragments directly between bookies.
+     *
+     * @param enabled flag to enable/disable bookie to bookie copy.
+     *
+     * @return ClientConfiguration
+     */
+    public T setRereplicationBookieCopyEnabled(boolean enabled) {
+        this.setProperty(REREPLICATION_BOOKIE_COPY_ENABLED, enabled);
+        return getThis();
+    }
+
     /**
      * Trickery to allow inheritance with fluent style.
      */
@@ -27,6 +27,7 @@ import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.client.EnsemblePlacementPolicy;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.client.RackawareEnsemblePlacementPolicy;
+import org.apache.bookkeeper.client.ReadRoutingPolicy;
 import org.apache.bookkeeper.client.api.BookKeeperBuilder;
 import org.apache.bookkeeper.common.util.ReflectionUtils;
 import org.apache.bookkeeper.discover.RegistrationClient;
@@ -111,6 +112,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String MAX_SPECULATIVE_READ_LAC_TIMEOUT = "maxSpeculativeReadLACTimeout";
     protected static final String SPECULATIVE_READ_LAC_TIMEOUT_BACKOFF_MULTIPLIER =
         "speculativeReadLACTimeoutBackoffMultiplier";
+    protected static final String SPECULATIVE_READ_TIMEOUT_PERCENTILE = "speculativeReadTimeoutPercentile";
+    protected static final String SPECULATIVE_READ_MAX_PERCENTAGE = "speculativeReadMaxPercentage";
     protected static final String ENABLE_PARALLEL_RECOVERY_READ = "enableParallelRecoveryRead";
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
@@ -142,6 +145,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
 
     // Bookie info poll interval
     protected static final String DISK_WEIGHT_BASED_PLACEMENT_ENABLED = "diskWeightBasedPlacementEnabled";
+    protected static final String LOAD_AWARE_PLACEMENT_ENABLED = "loadAwarePlacementEnabled";
+    protected static final String LOAD_AWARE_PLACEMENT_INTERVAL_SECONDS = "loadAwarePlacementIntervalSeconds";
     protected static final String GET_BOOKIE_INFO_INTERVAL_SECONDS = "getBookieInfoIntervalSeconds";
     protected static final String GET_BOOKIE_INFO_RETRY_INTERVAL_SECONDS = "getBookieInfoRetryIntervalSeconds";
     protected static final String BOOKIE_MAX_MULTIPLE_FOR_WEIGHTED_PLACEMENT =
@@ -162,6 +167,17 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         "ensemblePlacementPolicyOrderSlowBookies";
     protected static final String BOOKIE_ADDRESS_RESOLVER_ENABLED = "bookieAddressResolverEnabled";
 
+    // Read Routing Policy
+    protected static final String READ_ROUTING_POLICY = "readRoutingPolicy";
+    protected static final String READ_ROUTING_LATENCY_DECAY_TIME_MS = "readRoutingLatencyDecayTimeMs";
+
+    // Entry Cache
+    protected static final String ENTRY_CACHE_MAX_SIZE_BYTES = "entryCacheMaxSizeBytes";
+    protected static final String LONG_POLL_READ_MAX_ENTRIES = "longPollReadMaxEntries";
+    protected static final String LEDGER_METADATA_CACHE_MAX_ENTRIES = "ledgerMetadataCacheMaxEntries";
+    protected static final String LEDGER_METADATA_CACHE_MAX_SIZE_BYTES = "ledgerMetadataCacheMaxSizeBytes";
+    protected static final String LEDGER_METADATA_CACHE_WATCH_ALL_LEDGERS = "ledgerMetadataCacheWatchAllLedgers";
+
     // Stats
     protected static final String ENABLE_TASK_EXECUTION_STATS = "enableTaskExecutionStats";
     protected static final String TASK_EXECUTION_WARN_TIME_MICROS = "taskExecutionWarnTimeMicros";
@@ -1097,6 +1113,57 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the latency percentile at which speculative reads are triggered.
+     *
+     * <p>If greater than zero, the first speculative read (and read last add confirmed and entry)
+     * timeout is derived from the read latencies observed by the client: a speculative request is
+     * sent when a read has been outstanding for longer than this percentile of the recent reads.
+     * The timeout is capped by {@link #getMaxSpeculativeReadTimeout()} (resp.
+     * {@link #getMaxSpeculativeReadLACTimeout()}), and {@link #getFirstSpeculativeReadTimeout()}
+     * (resp. {@link #getFirstSpeculativeReadLACTimeout()}) is used until enough reads were observed.
+     *
+     * @return the latency percentile, between 0 and 100. Default 0, i.e. static speculative timeouts.
+     */
+    public double getSpeculativeReadTimeoutPercentile() {
+        return getDouble(SPECULATIVE_READ_TIMEOUT_PERCENTILE, 0.0);
+    }
+
+    /**
+     * Set the latency percentile at which speculative reads are triggered.
+     *
+     * @see #getSpeculativeReadTimeoutPercentile()
+     * @param percentile the latency percentile, e.g. 95.0. 0 disables latency-based timeouts.
+     * @return client configuration
+     */
+    public ClientConfiguration setSpeculativeReadTimeoutPercentile(double percentile) {
+        setProperty(SPECULATIVE_READ_TIMEOUT_PERCENTILE, percentile);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of speculative reads, as a percentage of the reads, when speculative read
+     * timeouts are derived from observed latencies. Speculative reads above this budget are not sent,
+     * which prevents read storms when all the bookies slow down at once.
+     *
+     * @return the maximum percentage of speculative reads. Default 10.
+     */
+    public double getSpeculativeReadMaxPercentage() {
+        return getDouble(SPECULATIVE_READ_MAX_PERCENTAGE, 10.0);
+    }
+
+    /**
+     * Set the maximum number of speculative reads, as a percentage of the reads.
+     *
+     * @see #getSpeculativeReadMaxPercentage()
+     * @param percentage the maximum percentage of speculative reads.
+     * @return client configuration
+     */
+    public ClientConfiguration setSpeculativeReadMaxPercentage(double percentage) {
+        setProperty(SPECULATIVE_READ_MAX_PERCENTAGE, percentage);
+        return this;
+    }
+
     /**
      * Whether to enable parallel reading in recovery read.
      *
@@ -1221,6 +1288,194 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the read routing policy class, used to order the replicas of an entry by their observed
+     * responsiveness before reading it. If not set, no read routing policy is used.
+     *
+     * @return read routing policy class, or null if not configured.
+     */
+    public Class<? extends ReadRoutingPolicy> getReadRoutingPolicy() throws ConfigurationException {
+        return ReflectionUtils.getClass(this, READ_ROUTING_POLICY,
+                null,
+                ReadRoutingPolicy.class,
+                DEFAULT_LOADER);
+    }
+
+    /**
+     * Set the read routing policy class.
+     *
+     * <p>When a read routing policy is configured, the client orders the replicas of each entry read
+     * using {@link ReadRoutingPolicy#reorderReadSequence(java.util.List,
+     * org.apache.bookkeeper.client.DistributionSchedule.WriteSet)}, after the ordering done by the
+     * placement policy (if {@link #setReorderReadSequenceEnabled(boolean)} is set).
+     *
+     * @param policyClass
+     *          Read routing policy class.
+     * @return client configuration.
+     */
+    public ClientConfiguration setReadRoutingPolicy(Class<? extends ReadRoutingPolicy> policyClass) {
+        setProperty(READ_ROUTING_POLICY, policyClass.getName());
+        return this;
+    }
+
+    /**
+     * Get the time constant, in milliseconds, over which the read latency tracked for a bookie by
+     * {@link org.apache.bookkeeper.client.LatencyAwareReadRoutingPolicy} decays toward the median
+     * latency of the bookies. Old samples lose weight with this time constant, so a bookie that was
+     * slow is probed again after it has not been read from for a while.
+     *
+     * @return read latency decay time in milliseconds.
+     */
+    public int getReadRoutingLatencyDecayTimeMs() {
+        return getInt(READ_ROUTING_LATENCY_DECAY_TIME_MS, 10000);
+    }
+
+    /**
+     * Set the time constant, in milliseconds, over which the tracked read latency of a bookie decays.
+     *
+     * @see #getReadRoutingLatencyDecayTimeMs()
+     * @param decayTimeMs read latency decay time in milliseconds.
+     * @return client configuration.
+     */
+    public ClientConfiguration setReadRoutingLatencyDecayTimeMs(int decayTimeMs) {
+        setProperty(READ_ROUTING_LATENCY_DECAY_TIME_MS, decayTimeMs);
+        return this;
+    }
+
+    /**
+     * Get the maximum size, in bytes, of the client-side entry cache.
+     *
+     * <p>The entry cache keeps the entries read at or below the last add confirmed of a ledger, so
+     * that readers in the same client reading the same entries are served without reading again
+     * from the bookies. Concurrent reads of the same entries are also coalesced into a single read.
+     * The cache is disabled if the size is &lt;= 0.
+     *
+     * @return maximum size of the entry cache in bytes.
+     */
+    public long getEntryCacheMaxSizeBytes() {
+        return getLong(ENTRY_CACHE_MAX_SIZE_BYTES, 0L);
+    }
+
+    /**
+     * Set the maximum size, in bytes, of the client-side entry cache. The cache is disabled if the
+     * size is &lt;= 0, which is the default.
+     *
+     * @see #getEntryCacheMaxSizeBytes()
+     * @param maxSizeBytes maximum size of the entry cache in bytes.
+     * @return client configuration.
+     */
+    public ClientConfiguration setEntryCacheMaxSizeBytes(long maxSizeBytes) {
+        setProperty(ENTRY_CACHE_MAX_SIZE_BYTES, maxSizeBytes);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of entries a bookie may return in response to a long poll read issued
+     * by {@link org.apache.bookkeeper.client.LedgerHandle#asyncReadLastConfirmedAndEntry}.
+     *
+     * <p>When the last add confirmed advances by more than one entry while a long poll read is
+     * parked on a bookie, the bookie returns the entries that became readable, up to this number,
+     * instead of the next entry only. The entries following the requested one are added to the
+     * entry cache, so a reader that fell behind catches up without a round trip per entry. It only
+     * applies if the entry cache is enabled (see {@link #setEntryCacheMaxSizeBytes(long)}).
+     *
+     * @return maximum number of entries returned by a long poll read.
+     */
+    public int getLongPollReadMaxEntries() {
+        return getInt(LONG_POLL_READ_MAX_ENTRIES, 1);
+    }
+
+    /**
+     * Set the maximum number of entries a bookie may return in response to a long poll read.
+     *
+     * @see #getLongPollReadMaxEntries()
+     * @param maxEntries maximum number of entries returned by a long poll read.
+     * @return client configuration.
+     */
+    public ClientConfiguration setLongPollReadMaxEntries(int maxEntries) {
+        setProperty(LONG_POLL_READ_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of ledgers whose metadata is cached by the client.
+     *
+     * <p>The metadata read when opening a ledger is cached, so opening the same ledgers again does not
+     * read their metadata from the metadata store. The cached open ledgers are kept up to date by
+     * watching them on the metadata store, see {@link #getLedgerMetadataCacheWatchAllLedgers()}. The
+     * cache is disabled if the number is &lt;= 0.
+     *
+     * @return maximum number of ledgers in the ledger metadata cache.
+     */
+    public long getLedgerMetadataCacheMaxEntries() {
+        return getLong(LEDGER_METADATA_CACHE_MAX_ENTRIES, 0L);
+    }
+
+    /**
+     * Set the maximum number of ledgers whose metadata is cached by the client. The cache is
+     * disabled if the number is &lt;= 0, which is the default.
+     *
+     * @see #getLedgerMetadataCacheMaxEntries()
+     * @param maxEntries maximum number of ledgers in the ledger metadata cache.
+     * @return client configuration.
+     */
+    public ClientConfiguration setLedgerMetadataCacheMaxEntries(long maxEntries) {
+        setProperty(LEDGER_METADATA_CACHE_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the maximum estimated memory size of the ledger metadata cached by the client, in bytes.
+     * The cache is only bounded by its number of ledgers if the size is &lt;= 0, which is the default.
+     *
+     * @see #getLedgerMetadataCacheMaxEntries()
+     * @return maximum size of the ledger metadata cache.
+     */
+    public long getLedgerMetadataCacheMaxSizeBytes() {
+        return getLong(LEDGER_METADATA_CACHE_MAX_SIZE_BYTES, 0L);
+    }
+
+    /**
+     * Set the maximum estimated memory size of the ledger metadata cached by the client, in bytes.
+     *
+     * @see #getLedgerMetadataCacheMaxSizeBytes()
+     * @param maxSizeBytes maximum size of the ledger metadata cache.
+     * @return client configuration.
+     */
+    public ClientConfiguration setLedgerMetadataCacheMaxSizeBytes(long maxSizeBytes) {
+        setProperty(LEDGER_METADATA_CACHE_MAX_SIZE_BYTES, maxSizeBytes);
+        return this;
+    }
+
+    /**
+     * Get whether the ledger metadata cache is kept up to date with a single watch on all the ledgers.
+     *
+     * <p>By default, each cached ledger is watched while it is open, and the closed ledgers are not
+     * watched, so the re-replication or the deletion of a cached closed ledger by another client is only
+     * seen once it is evicted. With a single watch on all the ledgers, every cached ledger follows the
+     * changes made by the other clients. But the client is then notified of every change of every ledger
+     * of the cluster, cached or not, which costs each client and the metadata store as much as the
+     * cluster creates, updates and deletes ledgers. The watch needs ZooKeeper 3.6+ servers.
+     *
+     * @see #getLedgerMetadataCacheMaxEntries()
+     * @return whether the ledger metadata cache watches all the ledgers. Default is false.
+     */
+    public boolean getLedgerMetadataCacheWatchAllLedgers() {
+        return getBoolean(LEDGER_METADATA_CACHE_WATCH_ALL_LEDGERS, false);
+    }
+
+    /**
+     * Set whether the ledger metadata cache is kept up to date with a single watch on all the ledgers.
+     *
+     * @see #getLedgerMetadataCacheWatchAllLedgers()
+     * @param watchAllLedgers whether the ledger metadata cache watches all the ledgers.
+     * @return client configuration.
+     */
+    public ClientConfiguration setLedgerMetadataCacheWatchAllLedgers(boolean watchAllLedgers) {
+        setProperty(LEDGER_METADATA_CACHE_WATCH_ALL_LEDGERS, watchAllLedgers);
+        return this;
+    }
+
     /**
      * Get the threshold for the number of pending requests beyond which to reorder
      * reads. If &lt;= zero, this feature is turned off.
@@ -1497,6 +1752,17 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return getInt(GET_BOOKIE_INFO_INTERVAL_SECONDS, 24 * 60 * 60);
     }
 
+    /**
+     * Get the time interval between successive calls for bookie get info when load aware placement
+     * is enabled, so that the load used to weight the bookies stays current. Default is 10s.
+     *
+     * @return the poll interval in seconds
+     * @see #getLoadAwarePlacementEnabled()
+     */
+    public int getLoadAwarePlacementIntervalSeconds() {
+        return getInt(LOAD_AWARE_PLACEMENT_INTERVAL_SECONDS, 10);
+    }
+
     /**
      * Get the time interval between retries on unsuccessful bookie info request.  Default is
      * 60s.
@@ -1515,6 +1781,20 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return getBoolean(DISK_WEIGHT_BASED_PLACEMENT_ENABLED, false);
     }
 
+    /**
+     * Return whether load aware placement is enabled.
+     *
+     * <p>When enabled the bookie info poll also fetches the load of each bookie (adds and reads in
+     * progress and journal queue length), and the disk weight of bookies that are busier than the
+     * cluster average is scaled down. It only has effect when disk weight based placement is enabled.
+     * The bookie info is then polled every {@link #getLoadAwarePlacementIntervalSeconds()}.
+     *
+     * @return true if load aware placement is enabled
+     */
+    public boolean getLoadAwarePlacementEnabled() {
+        return getBoolean(LOAD_AWARE_PLACEMENT_ENABLED, false);
+    }
+
     /**
      * Returns the max multiple to use for nodes with very high weight.
      * @return max multiple
@@ -1550,6 +1830,18 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Set whether or not load aware placement is enabled.
+     *
+     * @param isEnabled - boolean indicating enabled or not
+     * @return client configuration
+     * @see #getLoadAwarePlacementEnabled()
+     */
+    public ClientConfiguration setLoadAwarePlacementEnabled(boolean isEnabled) {
+        setProperty(LOAD_AWARE_PLACEMENT_ENABLED, isEnabled);
+        return this;
+    }
+
     /**
      * Set the time interval between successive polls for bookie get info.
      *
@@ -1562,6 +1854,20 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Set the time interval between successive polls for bookie get info when load aware placement
+     * is enabled.
+     *
+     * @param pollInterval
+     * @param unit
+     * @return client configuration
+     * @see #getLoadAwarePlacementIntervalSeconds()
+     */
+    public ClientConfiguration setLoadAwarePlacementIntervalSeconds(int pollInterval, TimeUnit unit) {
+        setProperty(LOAD_AWARE_PLACEMENT_INTERVAL_SECONDS, unit.toSeconds(pollInterval));
+        return this;
+    }
+
     /**
      * Set the time interval between retries on unsuccessful GetInfo requests.
      *
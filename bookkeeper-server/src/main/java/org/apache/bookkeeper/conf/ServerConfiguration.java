@@ -114,6 +114,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
             "gcOverreplicatedLedgerMaxConcurrentRequests";
     protected static final String USE_TRANSACTIONAL_COMPACTION = "useTransactionalCompaction";
     protected static final String VERIFY_METADATA_ON_GC = "verifyMetadataOnGC";
+    protected static final String GC_INCREMENTAL_ENABLED = "gcIncrementalEnabled";
+    protected static final String GC_FULL_SCAN_WAIT_TIME = "gcFullScanWaitTime";
     protected static final String GC_ENTRYLOGMETADATA_CACHE_ENABLED = "gcEntryLogMetadataCacheEnabled";
     protected static final String GC_ENTRYLOG_METADATA_CACHE_PATH = "gcEntryLogMetadataCachePath";
     protected static final String USE_TARGET_ENTRYLOG_SIZE_FOR_GC = "useTargetEntryLogSizeForGc";
@@ -211,6 +213,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String AUTO_RECOVERY_DAEMON_ENABLED = "autoRecoveryDaemonEnabled";
     protected static final String LOST_BOOKIE_RECOVERY_DELAY = "lostBookieRecoveryDelay";
     protected static final String RW_REREPLICATE_BACKOFF_MS = "rwRereplicateBackoffMs";
+    protected static final String RW_MAX_CONCURRENT_LEDGERS = "rwMaxConcurrentLedgers";
     protected static final String UNDERREPLICATED_LEDGER_RECOVERY_GRACE_PERIOD =
             "underreplicatedLedgerRecoveryGracePeriod";
     protected static final String AUDITOR_REPLICAS_CHECK_INTERVAL = "auditorReplicasCheckInterval";
@@ -219,6 +222,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String AUDITOR_ACQUIRE_CONCURRENT_OPEN_LEDGER_OPERATIONS_TIMEOUT_MSEC =
         "auditorAcquireConcurrentOpenLedgerOperationsTimeOutMSec";
     protected static final String IN_FLIGHT_READ_ENTRY_NUM_IN_LEDGER_CHECKER = "inFlightReadEntryNumInLedgerChecker";
+    protected static final String AUDITOR_SHARDED_CHECKS_ENABLED = "auditorShardedChecksEnabled";
 
 
     // Worker Thread parameters.
@@ -234,6 +238,47 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String REQUEST_TIMER_TICK_DURATION_MILLISEC = "requestTimerTickDurationMs";
     protected static final String REQUEST_TIMER_NO_OF_TICKS = "requestTimerNumTicks";
 
+    // Request tracing parameters
+    protected static final String REQUEST_TRACE_SAMPLE_INTERVAL = "requestTraceSampleInterval";
+    protected static final String REQUEST_TRACE_NUM_SLOWEST_REQUESTS = "requestTraceNumSlowestRequests";
+
+    // Ledger I/O accounting parameters
+    protected static final String LEDGER_IO_ACCOUNTING_ENABLED = "ledgerIoAccountingEnabled";
+    protected static final String LEDGER_IO_ACCOUNTING_MAX_LEDGERS = "ledgerIoAccountingMaxLedgers";
+    protected static final String LEDGER_IO_ACCOUNTING_NUM_TOP_LEDGERS_GAUGES = "ledgerIoAccountingNumTopLedgersGauges";
+    protected static final String LEDGER_IO_ACCOUNTING_HALF_LIFE_SECONDS = "ledgerIoAccountingHalfLifeSeconds";
+    // Per tenant fair scheduling of the requests
+    protected static final String FAIR_SCHEDULING_ENABLED = "fairSchedulingEnabled";
+    protected static final String FAIR_SCHEDULING_MAX_DISPATCHED_REQUESTS_PER_THREAD =
+            "fairSchedulingMaxDispatchedRequestsPerThread";
+    protected static final String FAIR_SCHEDULING_MAX_PENDING_REQUESTS_PER_TENANT =
+            "fairSchedulingMaxPendingRequestsPerTenant";
+    protected static final String FAIR_SCHEDULING_TENANT_WEIGHTS = "fairSchedulingTenantWeights";
+    protected static final String FAIR_SCHEDULING_TENANT_RATE_LIMIT = "fairSchedulingTenantRateLimit";
+    protected static final String FAIR_SCHEDULING_TENANT_RATE_LIMITS = "fairSchedulingTenantRateLimits";
+    protected static final String FAIR_SCHEDULING_TAILING_READS_WEIGHT = "fairSchedulingTailingReadsWeight";
+    protected static final String FAIR_SCHEDULING_CATCH_UP_READS_WEIGHT = "fairSchedulingCatchUpReadsWeight";
+    // Placement of the threads on the NUMA nodes and cores
+    protected static final String THREAD_PLACEMENT_ENABLED = "threadPlacementEnabled";
+    protected static final String THREAD_PLACEMENT_NUMA_NODES = "threadPlacementNumaNodes";
+    protected static final String THREAD_PLACEMENT_PIN_TO_CORES = "threadPlacementPinToCores";
+    // Slabs of the entry buffers of the bookie subsystems
+    protected static final String ALLOCATOR_ENTRY_SLABS_JOURNAL_BUDGET_MB = "allocatorEntrySlabsJournalBudgetMb";
+    protected static final String ALLOCATOR_ENTRY_SLABS_READ_BUDGET_MB = "allocatorEntrySlabsReadBudgetMb";
+    protected static final String ALLOCATOR_ENTRY_SLAB_SIZE = "allocatorEntrySlabSizeBytes";
+    protected static final String ALLOCATOR_ENTRY_SLAB_MAX_CAPACITY = "allocatorEntrySlabMaxCapacityBytes";
+    // Governor of the memory shared by the caches and the Netty buffers
+    protected static final String MEMORY_GOVERNOR_ENABLED = "memoryGovernorEnabled";
+    protected static final String MEMORY_GOVERNOR_MAX_MEMORY_MB = "memoryGovernorMaxMemoryMb";
+    protected static final String MEMORY_GOVERNOR_STEP_MB = "memoryGovernorStepMb";
+    protected static final String MEMORY_GOVERNOR_MIN_NETTY_MEMORY_MB = "memoryGovernorMinNettyMemoryMb";
+    protected static final String MEMORY_GOVERNOR_REBALANCE_INTERVAL_SECONDS =
+            "memoryGovernorRebalanceIntervalSeconds";
+    protected static final String MEMORY_GOVERNOR_BACKPRESSURE_HIGH_WATERMARK =
+            "memoryGovernorBackpressureHighWatermark";
+    protected static final String MEMORY_GOVERNOR_BACKPRESSURE_LOW_WATERMARK =
+            "memoryGovernorBackpressureLowWatermark";
+
     protected static final String READ_BUFFER_SIZE = "readBufferSizeBytes";
     protected static final String WRITE_BUFFER_SIZE = "writeBufferSizeBytes";
     // Whether the bookie should use its hostname or ipaddress for the
@@ -329,6 +374,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String DATA_INTEGRITY_CHECKING_ENABLED = "dataIntegrityChecking";
     protected static final String DATA_INTEGRITY_COOKIE_STAMPING_ENABLED = "dataIntegrityStampMissingCookies";
 
+    // Serve the requests to copy ledger fragments from other bookies
+    protected static final String LEDGER_FRAGMENT_COPY_ENABLED = "ledgerFragmentCopyEnabled";
+
     // Used for default,command until or test case
     protected static final String DEFAULT_ROCKSDB_CONF = "defaultRocksdbConf";
 
@@ -508,6 +556,58 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether garbage collection is incremental.
+     *
+     * <p>When enabled, the bookie watches the ledgers deleted from the metadata store, with a single watch on
+     * all the ledgers, and garbage collects the deleted ledgers it stores, instead of comparing all the
+     * ledgers in the metadata store with its ledgers at each garbage collection. A full comparison still
+     * runs every {@link #getGcFullScanWaitTime()}, and after the watch missed changes, to catch the deletions
+     * which were missed, e.g. while the bookie was down. It requires a ledger manager which can watch all
+     * the ledgers, like the zookeeper based ones, otherwise all the ledgers are compared at each garbage
+     * collection.
+     *
+     * @return whether garbage collection is incremental
+     */
+    public boolean getGcIncrementalEnabled() {
+        return this.getBoolean(GC_INCREMENTAL_ENABLED, false);
+    }
+
+    /**
+     * Set whether garbage collection is incremental.
+     *
+     * @param enabled
+     * @return server configuration
+     * @see #getGcIncrementalEnabled()
+     */
+    public ServerConfiguration setGcIncrementalEnabled(boolean enabled) {
+        this.setProperty(GC_INCREMENTAL_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the wait time in millis between full comparisons of the ledgers of the bookie with the ledgers
+     * in the metadata store, when garbage collection is incremental. Default is 1 day.
+     *
+     * @return wait time between full scans in millis
+     */
+    public long getGcFullScanWaitTime() {
+        return this.getLong(GC_FULL_SCAN_WAIT_TIME, TimeUnit.DAYS.toMillis(1));
+    }
+
+    /**
+     * Set the wait time between full comparisons of the ledgers of the bookie with the ledgers in the
+     * metadata store, when garbage collection is incremental.
+     *
+     * @param waitTime
+     * @param unit
+     * @return server configuration
+     */
+    public ServerConfiguration setGcFullScanWaitTime(long waitTime, TimeUnit unit) {
+        this.setProperty(GC_FULL_SCAN_WAIT_TIME, Long.toString(unit.toMillis(waitTime)));
+        return this;
+    }
+
     /**
      * Get whether the bookie is configured to use persistent
      * entrylogMetadataMap.
@@ -2127,6 +2227,660 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getInt(REQUEST_TIMER_NO_OF_TICKS, 1024);
     }
 
+    /**
+     * Get the sampling interval of the request tracer: on average one add or read request
+     * out of this number has the timings of its processing stages recorded.
+     *
+     * <p>Default is 0, which disables the request tracing.
+     *
+     * @return the sampling interval of the request tracer
+     */
+    public int getRequestTraceSampleInterval() {
+        return getInt(REQUEST_TRACE_SAMPLE_INTERVAL, 0);
+    }
+
+    /**
+     * Set the sampling interval of the request tracer.
+     *
+     * @param sampleInterval
+     *          trace one request out of this number, 0 to disable the tracing
+     * @return server configuration
+     */
+    public ServerConfiguration setRequestTraceSampleInterval(int sampleInterval) {
+        setProperty(REQUEST_TRACE_SAMPLE_INTERVAL, sampleInterval);
+        return this;
+    }
+
+    /**
+     * Get the number of slowest traced requests, with the timings of all their stages,
+     * kept by the request tracer.
+     *
+     * @return the number of slowest traced requests kept by the request tracer
+     */
+    public int getRequestTraceNumSlowestRequests() {
+        return getInt(REQUEST_TRACE_NUM_SLOWEST_REQUESTS, 32);
+    }
+
+    /**
+     * Set the number of slowest traced requests kept by the request tracer.
+     *
+     * @param numSlowestRequests
+     *          number of slowest traced requests to keep
+     * @return server configuration
+     */
+    public ServerConfiguration setRequestTraceNumSlowestRequests(int numSlowestRequests) {
+        setProperty(REQUEST_TRACE_NUM_SLOWEST_REQUESTS, numSlowestRequests);
+        return this;
+    }
+
+    /**
+     * Whether the bookie accounts the adds, reads, read cache hits and wasted read-ahead bytes of
+     * its heaviest ledgers.
+     *
+     * <p>Default is false.
+     *
+     * @return true if the ledger I/O accounting is enabled
+     */
+    public boolean isLedgerIoAccountingEnabled() {
+        return getBoolean(LEDGER_IO_ACCOUNTING_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the ledger I/O accounting.
+     *
+     * @param enabled
+     *          whether to account the I/O of the heaviest ledgers
+     * @return server configuration
+     */
+    public ServerConfiguration setLedgerIoAccountingEnabled(boolean enabled) {
+        setProperty(LEDGER_IO_ACCOUNTING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of ledgers tracked by the ledger I/O accounting for each metric. The
+     * higher it is, the more accurate the accounting of the heaviest ledgers is.
+     *
+     * @return the max number of ledgers tracked for each metric
+     */
+    public int getLedgerIoAccountingMaxLedgers() {
+        return getInt(LEDGER_IO_ACCOUNTING_MAX_LEDGERS, 1024);
+    }
+
+    /**
+     * Set the max number of ledgers tracked by the ledger I/O accounting for each metric.
+     *
+     * @param maxLedgers
+     *          max number of ledgers tracked for each metric
+     * @return server configuration
+     */
+    public ServerConfiguration setLedgerIoAccountingMaxLedgers(int maxLedgers) {
+        setProperty(LEDGER_IO_ACCOUNTING_MAX_LEDGERS, maxLedgers);
+        return this;
+    }
+
+    /**
+     * Get the number of heaviest ledgers of each metric of the ledger I/O accounting exposed as gauges.
+     *
+     * @return the number of heaviest ledgers exposed as gauges for each metric
+     */
+    public int getLedgerIoAccountingNumTopLedgersGauges() {
+        return getInt(LEDGER_IO_ACCOUNTING_NUM_TOP_LEDGERS_GAUGES, 10);
+    }
+
+    /**
+     * Set the number of heaviest ledgers of each metric of the ledger I/O accounting exposed as gauges.
+     *
+     * @param numTopLedgers
+     *          number of heaviest ledgers exposed as gauges for each metric
+     * @return server configuration
+     */
+    public ServerConfiguration setLedgerIoAccountingNumTopLedgersGauges(int numTopLedgers) {
+        setProperty(LEDGER_IO_ACCOUNTING_NUM_TOP_LEDGERS_GAUGES, numTopLedgers);
+        return this;
+    }
+
+    /**
+     * Get the half-life of the values accounted by the ledger I/O accounting: they are halved every
+     * half-life, so that the heaviest ledgers are the ones of the recent past. 0 or less keeps the
+     * values accounted since the bookie started, or since the accounting was reset.
+     *
+     * <p>Default is 300 seconds.
+     *
+     * @return the half-life of the accounted values, in seconds
+     */
+    public int getLedgerIoAccountingHalfLifeSeconds() {
+        return getInt(LEDGER_IO_ACCOUNTING_HALF_LIFE_SECONDS, 300);
+    }
+
+    /**
+     * Set the half-life of the values accounted by the ledger I/O accounting.
+     *
+     * @param halfLifeSeconds
+     *          half-life of the accounted values, in seconds, 0 or less to never decay them
+     * @return server configuration
+     */
+    public ServerConfiguration setLedgerIoAccountingHalfLifeSeconds(int halfLifeSeconds) {
+        setProperty(LEDGER_IO_ACCOUNTING_HALF_LIFE_SECONDS, halfLifeSeconds);
+        return this;
+    }
+
+    /**
+     * Whether the add and read requests are scheduled fairly among the tenants of the bookie,
+     * before being dispatched to the worker thread pools. A tenant is the authenticated principal
+     * of a client, or its host address when the client is not authenticated.
+     *
+     * <p>Default is false.
+     *
+     * @return true if the requests are scheduled fairly among the tenants
+     */
+    public boolean isFairSchedulingEnabled() {
+        return getBoolean(FAIR_SCHEDULING_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the fair scheduling of the requests among the tenants.
+     *
+     * @param enabled
+     *          whether to schedule the requests fairly among the tenants
+     * @return server configuration
+     */
+    public ServerConfiguration setFairSchedulingEnabled(boolean enabled) {
+        setProperty(FAIR_SCHEDULING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of requests dispatched by the fair scheduler to a worker thread pool, per
+     * thread of the pool, and not completed yet. The other requests wait in the queues of their
+     * tenants, so the lower it is the fairer the scheduling is, at the cost of idle threads when
+     * the dispatched requests are unevenly spread among the threads.
+     *
+     * @return the max number of dispatched requests per worker thread
+     */
+    public int getFairSchedulingMaxDispatchedRequestsPerThread() {
+        return getInt(FAIR_SCHEDULING_MAX_DISPATCHED_REQUESTS_PER_THREAD, 4);
+    }
+
+    /**
+     * Set the max number of requests dispatched by the fair scheduler per worker thread.
+     *
+     * @param maxRequests
+     *          max number of dispatched requests per worker thread
+     * @return server configuration
+     */
+    public ServerConfiguration setFairSchedulingMaxDispatchedRequestsPerThread(int maxRequests) {
+        setProperty(FAIR_SCHEDULING_MAX_DISPATCHED_REQUESTS_PER_THREAD, maxRequests);
+        return this;
+    }
+
+    /**
+     * Get the max number of requests of a tenant waiting to be dispatched to a worker thread pool,
+     * including the requests delayed by its rate limit. The requests beyond it are rejected with a
+     * too many requests error.
+     *
+     * @return the max number of pending requests per tenant
+     */
+    public int getFairSchedulingMaxPendingRequestsPerTenant() {
+        return getInt(FAIR_SCHEDULING_MAX_PENDING_REQUESTS_PER_TENANT, 10000);
+    }
+
+    /**
+     * Set the max number of requests of a tenant waiting to be dispatched to a worker thread pool.
+     *
+     * @param maxRequests
+     *          max number of pending requests per tenant
+     * @return server configuration
+     */
+    public ServerConfiguration setFairSchedulingMaxPendingRequestsPerTenant(int maxRequests) {
+        setProperty(FAIR_SCHEDULING_MAX_PENDING_REQUESTS_PER_TENANT, maxRequests);
+        return this;
+    }
+
+    /**
+     * Get the scheduling weights of the tenants, as a list of tenant:weight. A tenant gets a share
+     * of the worker threads proportional to its weight, the weight of the unlisted tenants being 1.
+     *
+     * @return the weights of the tenants
+     */
+    public String[] getFairSchedulingTenantWeights() {
+        return getStringArray(FAIR_SCHEDULING_TENANT_WEIGHTS);
+    }
+
+    /**
+     * Set the scheduling weights of the tenants.
+     *
+     * @param weights
+     *          comma separated list of tenant:weight
+     * @return server configuration
+     */
+    public ServerConfiguration setFairSchedulingTenantWeights(String weights) {
+        setProperty(FAIR_SCHEDULING_TENANT_WEIGHTS, weights);
+        return this;
+    }
+
+    /**
+     * Get the default max rate of the requests of a tenant, per second and per thread pool. The
+     * requests beyond it are delayed until the rate allows them, within the max number of pending
+     * requests of the tenant.
+     *
+     * <p>Default is 0, meaning no rate limit.
+     *
+     * @return the default max rate of the requests of a tenant
+     */
+    public double getFairSchedulingTenantRateLimit() {
+        return getDouble(FAIR_SCHEDULING_TENANT_RATE_LIMIT, 0);
+    }
+
+    /**
+     * Set the default max rate of the requests of a tenant, per second and per thread pool.
+     *
+     * @param rateLimit
+     *          max rate of the requests of a tenant, 0 for no rate limit
+     * @return server configuration
+     */
+    public ServerConfiguration setFairSchedulingTenantRateLimit(double rateLimit) {
+        setProperty(FAIR_SCHEDULING_TENANT_RATE_LIMIT, rateLimit);
+        return this;
+    }
+
+    /**
+     * Get the max rates of the requests of specific tenants, as a list of tenant:rate, overriding
+     * the default rate limit.
+     *
+     * @return the max rates of the requests of specific tenants
+     */
+    public String[] getFairSchedulingTenantRateLimits() {
+        return getStringArray(FAIR_SCHEDULING_TENANT_RATE_LIMITS);
+    }
+
+    /**
+     * Set the max rates of the requests of specific tenants.
+     *
+     * @param rateLimits
+     *          comma separated list of tenant:rate
+     * @return server configuration
+     */
+    public ServerConfiguration setFairSchedulingTenantRateLimits(String rateLimits) {
+        setProperty(FAIR_SCHEDULING_TENANT_RATE_LIMITS, rateLimits);
+        return this;
+    }
+
+    /**
+     * Get the scheduling weight of the tailing reads, which are served from the caches of the ledger
+     * storage, relatively to the catch-up reads, which have to go to the disk.
+     *
+     * @return the scheduling weight of the tailing reads
+     */
+    public int getFairSchedulingTailingReadsWeight() {
+        return getInt(FAIR_SCHEDULING_TAILING_READS_WEIGHT, 4);
+    }
+
+    /**
+     * Set the scheduling weight of the tailing reads.
+     *
+     * @param weight
+     *          scheduling weight of the tailing reads
+     * @return server configuration
+     */
+    public ServerConfiguration setFairSchedulingTailingReadsWeight(int weight) {
+        setProperty(FAIR_SCHEDULING_TAILING_READS_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Get the scheduling weight of the catch-up reads, which have to go to the disk, relatively to
+     * the tailing reads, which are served from the caches of the ledger storage.
+     *
+     * @return the scheduling weight of the catch-up reads
+     */
+    public int getFairSchedulingCatchUpReadsWeight() {
+        return getInt(FAIR_SCHEDULING_CATCH_UP_READS_WEIGHT, 1);
+    }
+
+    /**
+     * Set the scheduling weight of the catch-up reads.
+     *
+     * @param weight
+     *          scheduling weight of the catch-up reads
+     * @return server configuration
+     */
+    public ServerConfiguration setFairSchedulingCatchUpReadsWeight(int weight) {
+        setProperty(FAIR_SCHEDULING_CATCH_UP_READS_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Whether to place the bookie threads on the NUMA nodes of the host. The Netty event loops, the journal
+     * and force-write threads, the read and add worker threads and the DbLedgerStorage flush threads are
+     * spread over the NUMA nodes, and the DbLedgerStorage caches are allocated on the node of the flush thread
+     * of their directory.
+     *
+     * <p>Default is false.
+     *
+     * @return whether the thread placement is enabled
+     */
+    public boolean isThreadPlacementEnabled() {
+        return getBoolean(THREAD_PLACEMENT_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the placement of the bookie threads on the NUMA nodes.
+     *
+     * @param enabled
+     *          whether to place the bookie threads
+     * @return server configuration
+     */
+    public ServerConfiguration setThreadPlacementEnabled(boolean enabled) {
+        setProperty(THREAD_PLACEMENT_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the NUMA nodes the bookie threads are placed on. All the NUMA nodes of the host are used if
+     * none is configured.
+     *
+     * @return the ids of the NUMA nodes the bookie threads are placed on
+     */
+    public String[] getThreadPlacementNumaNodes() {
+        return getStringArray(THREAD_PLACEMENT_NUMA_NODES);
+    }
+
+    /**
+     * Set the NUMA nodes the bookie threads are placed on.
+     *
+     * @param nodes
+     *          comma separated list of NUMA node ids
+     * @return server configuration
+     */
+    public ServerConfiguration setThreadPlacementNumaNodes(String nodes) {
+        setProperty(THREAD_PLACEMENT_NUMA_NODES, nodes);
+        return this;
+    }
+
+    /**
+     * Whether each placed thread is pinned to a single CPU of its NUMA node, one physical core after the
+     * other, rather than allowed to run on all the CPUs of the node.
+     *
+     * <p>Default is false.
+     *
+     * @return whether the placed threads are pinned to cores
+     */
+    public boolean isThreadPlacementPinToCores() {
+        return getBoolean(THREAD_PLACEMENT_PIN_TO_CORES, false);
+    }
+
+    /**
+     * Set whether each placed thread is pinned to a single CPU of its NUMA node.
+     *
+     * @param pinToCores
+     *          whether to pin the placed threads to cores
+     * @return server configuration
+     */
+    public ServerConfiguration setThreadPlacementPinToCores(boolean pinToCores) {
+        setProperty(THREAD_PLACEMENT_PIN_TO_CORES, pinToCores);
+        return this;
+    }
+
+    /**
+     * Get the memory budget of the slabs of the entries queued to the journal. The entries of the add requests are
+     * copied into slabbed buffers, releasing the buffers of the requests, until the budget is used up.
+     *
+     * <p>Default is 0, which disables the slabs of the journal.
+     *
+     * @return the memory budget of the journal slabs, in MB
+     */
+    public long getAllocatorEntrySlabsJournalBudgetMb() {
+        return getLong(ALLOCATOR_ENTRY_SLABS_JOURNAL_BUDGET_MB, 0);
+    }
+
+    /**
+     * Set the memory budget of the slabs of the entries queued to the journal.
+     *
+     * @param budgetMb
+     *          memory budget of the journal slabs, in MB
+     * @return server configuration
+     */
+    public ServerConfiguration setAllocatorEntrySlabsJournalBudgetMb(long budgetMb) {
+        setProperty(ALLOCATOR_ENTRY_SLABS_JOURNAL_BUDGET_MB, budgetMb);
+        return this;
+    }
+
+    /**
+     * Get the memory budget of the slabs of the entries read from the ledger storage.
+     *
+     * <p>Default is 0, which disables the slabs of the read path.
+     *
+     * @return the memory budget of the read slabs, in MB
+     */
+    public long getAllocatorEntrySlabsReadBudgetMb() {
+        return getLong(ALLOCATOR_ENTRY_SLABS_READ_BUDGET_MB, 0);
+    }
+
+    /**
+     * Set the memory budget of the slabs of the entries read from the ledger storage.
+     *
+     * @param budgetMb
+     *          memory budget of the read slabs, in MB
+     * @return server configuration
+     */
+    public ServerConfiguration setAllocatorEntrySlabsReadBudgetMb(long budgetMb) {
+        setProperty(ALLOCATOR_ENTRY_SLABS_READ_BUDGET_MB, budgetMb);
+        return this;
+    }
+
+    /**
+     * Get the size of a slab of entry buffers.
+     *
+     * <p>Default is 1 MB.
+     *
+     * @return the size of a slab, in bytes
+     */
+    public int getAllocatorEntrySlabSizeBytes() {
+        return getInt(ALLOCATOR_ENTRY_SLAB_SIZE, 1024 * 1024);
+    }
+
+    /**
+     * Set the size of a slab of entry buffers.
+     *
+     * @param slabSize
+     *          size of a slab, in bytes
+     * @return server configuration
+     */
+    public ServerConfiguration setAllocatorEntrySlabSizeBytes(int slabSize) {
+        setProperty(ALLOCATOR_ENTRY_SLAB_SIZE, slabSize);
+        return this;
+    }
+
+    /**
+     * Get the capacity of the largest entry buffers allocated from the slabs. The larger entries are allocated
+     * from the pooled allocator.
+     *
+     * <p>Default is 64 KB.
+     *
+     * @return the max capacity of a slabbed entry buffer, in bytes
+     */
+    public int getAllocatorEntrySlabMaxCapacityBytes() {
+        return getInt(ALLOCATOR_ENTRY_SLAB_MAX_CAPACITY, 64 * 1024);
+    }
+
+    /**
+     * Set the capacity of the largest entry buffers allocated from the slabs.
+     *
+     * @param maxCapacity
+     *          max capacity of a slabbed entry buffer, in bytes
+     * @return server configuration
+     */
+    public ServerConfiguration setAllocatorEntrySlabMaxCapacityBytes(int maxCapacity) {
+        setProperty(ALLOCATOR_ENTRY_SLAB_MAX_CAPACITY, maxCapacity);
+        return this;
+    }
+
+    /**
+     * Whether the memory of the bookie is governed as a single budget. The governor moves memory, one step at a
+     * time, between the write and read caches of the DbLedgerStorage according to their marginal utility, and
+     * pauses the reads from the Netty channels when the direct memory gets close to the budget.
+     *
+     * <p>Default is false.
+     *
+     * @return whether the memory governor is enabled
+     */
+    public boolean isMemoryGovernorEnabled() {
+        return getBoolean(MEMORY_GOVERNOR_ENABLED, false);
+    }
+
+    /**
+     * Set whether the memory of the bookie is governed as a single budget.
+     *
+     * @param enabled
+     *          whether to enable the memory governor
+     * @return server configuration
+     */
+    public ServerConfiguration setMemoryGovernorEnabled(boolean enabled) {
+        setProperty(MEMORY_GOVERNOR_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the memory budget of the governor, shared by the caches, the RocksDB block caches and the Netty buffers.
+     *
+     * <p>Default is 0, which means the max direct memory of the JVM.
+     *
+     * @return the memory budget, in MB
+     */
+    public long getMemoryGovernorMaxMemoryMb() {
+        return getLong(MEMORY_GOVERNOR_MAX_MEMORY_MB, 0);
+    }
+
+    /**
+     * Set the memory budget of the governor.
+     *
+     * @param maxMemoryMb
+     *          memory budget, in MB
+     * @return server configuration
+     */
+    public ServerConfiguration setMemoryGovernorMaxMemoryMb(long maxMemoryMb) {
+        setProperty(MEMORY_GOVERNOR_MAX_MEMORY_MB, maxMemoryMb);
+        return this;
+    }
+
+    /**
+     * Get the amount of memory moved at once between two caches, which is also the size of the segments of the
+     * governed caches.
+     *
+     * <p>Default is 64 MB.
+     *
+     * @return the step of the memory governor, in MB
+     */
+    public int getMemoryGovernorStepMb() {
+        return getInt(MEMORY_GOVERNOR_STEP_MB, 64);
+    }
+
+    /**
+     * Set the amount of memory moved at once between two caches.
+     *
+     * @param stepMb
+     *          step of the memory governor, in MB
+     * @return server configuration
+     */
+    public ServerConfiguration setMemoryGovernorStepMb(int stepMb) {
+        setProperty(MEMORY_GOVERNOR_STEP_MB, stepMb);
+        return this;
+    }
+
+    /**
+     * Get the memory of the budget which is never granted to the caches, being left to the Netty buffers.
+     *
+     * <p>Default is 0, which means 20% of the budget.
+     *
+     * @return the min memory of the Netty buffers, in MB
+     */
+    public long getMemoryGovernorMinNettyMemoryMb() {
+        return getLong(MEMORY_GOVERNOR_MIN_NETTY_MEMORY_MB, 0);
+    }
+
+    /**
+     * Set the memory of the budget which is never granted to the caches.
+     *
+     * @param minNettyMemoryMb
+     *          min memory of the Netty buffers, in MB
+     * @return server configuration
+     */
+    public ServerConfiguration setMemoryGovernorMinNettyMemoryMb(long minNettyMemoryMb) {
+        setProperty(MEMORY_GOVERNOR_MIN_NETTY_MEMORY_MB, minNettyMemoryMb);
+        return this;
+    }
+
+    /**
+     * Get the interval between two rebalances of the memory between the caches. At most one step of memory is
+     * moved at each rebalance.
+     *
+     * <p>Default is 10 seconds.
+     *
+     * @return the rebalance interval, in seconds
+     */
+    public int getMemoryGovernorRebalanceIntervalSeconds() {
+        return getInt(MEMORY_GOVERNOR_REBALANCE_INTERVAL_SECONDS, 10);
+    }
+
+    /**
+     * Set the interval between two rebalances of the memory between the caches.
+     *
+     * @param intervalSeconds
+     *          rebalance interval, in seconds
+     * @return server configuration
+     */
+    public ServerConfiguration setMemoryGovernorRebalanceIntervalSeconds(int intervalSeconds) {
+        setProperty(MEMORY_GOVERNOR_REBALANCE_INTERVAL_SECONDS, intervalSeconds);
+        return this;
+    }
+
+    /**
+     * Get the fraction of the memory budget used above which the reads from the Netty channels are paused.
+     *
+     * <p>Default is 0.95.
+     *
+     * @return the backpressure high watermark
+     */
+    public double getMemoryGovernorBackpressureHighWatermark() {
+        return getDouble(MEMORY_GOVERNOR_BACKPRESSURE_HIGH_WATERMARK, 0.95);
+    }
+
+    /**
+     * Set the fraction of the memory budget used above which the reads from the Netty channels are paused.
+     *
+     * @param highWatermark
+     *          backpressure high watermark
+     * @return server configuration
+     */
+    public ServerConfiguration setMemoryGovernorBackpressureHighWatermark(double highWatermark) {
+        setProperty(MEMORY_GOVERNOR_BACKPRESSURE_HIGH_WATERMARK, highWatermark);
+        return this;
+    }
+
+    /**
+     * Get the fraction of the memory budget used below which the paused reads from the Netty channels are resumed.
+     *
+     * <p>Default is 0.85.
+     *
+     * @return the backpressure low watermark
+     */
+    public double getMemoryGovernorBackpressureLowWatermark() {
+        return getDouble(MEMORY_GOVERNOR_BACKPRESSURE_LOW_WATERMARK, 0.85);
+    }
+
+    /**
+     * Set the fraction of the memory budget used below which the paused reads from the Netty channels are resumed.
+     *
+     * @param lowWatermark
+     *          backpressure low watermark
+     * @return server configuration
+     */
+    public ServerConfiguration setMemoryGovernorBackpressureLowWatermark(double lowWatermark) {
+        setProperty(MEMORY_GOVERNOR_BACKPRESSURE_LOW_WATERMARK, lowWatermark);
+        return this;
+    }
+
     /**
      * Get the number of bytes used as capacity for the write buffer. Default is
      * 64KB.
@@ -2742,6 +3496,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         setProperty(AUDITOR_ACQUIRE_CONCURRENT_OPEN_LEDGER_OPERATIONS_TIMEOUT_MSEC, timeoutMs);
     }
 
+    /**
+     * Get whether the periodic ledger checks (all ledgers check, placement policy check and replicas check)
+     * are sharded across all the auto-recovery instances. When enabled, the ledger id space is partitioned
+     * across the instances taking part in the auditor election with a consistent hash over their bookie ids, and
+     * every instance checks its own shard, while the bookie failures keep being audited by the elected auditor
+     * only. The elected auditor exposes the sum of the results of all the shards under the {@code shards} scope.
+     *
+     * @return true if the periodic ledger checks are sharded. By default it is false.
+     */
+    public boolean isAuditorShardedChecksEnabled() {
+        return getBoolean(AUDITOR_SHARDED_CHECKS_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable sharding the periodic ledger checks across all the auto-recovery instances.
+     *
+     * @param enabled
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setAuditorShardedChecksEnabled(boolean enabled) {
+        setProperty(AUDITOR_SHARDED_CHECKS_ENABLED, enabled);
+        return this;
+    }
+
 
     /**
      * Set what percentage of a ledger (fragment)'s entries will be verified.
@@ -2823,6 +3601,26 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         setProperty(RW_REREPLICATE_BACKOFF_MS, backoffMs);
     }
 
+    /**
+     * Get the max number of under replicated ledgers the replication worker replicates concurrently.
+     *
+     * @return max number of ledgers replicated concurrently. By default it is 1.
+     */
+    public int getRwMaxConcurrentLedgers() {
+        return getInt(RW_MAX_CONCURRENT_LEDGERS, 1);
+    }
+
+    /**
+     * Set the max number of under replicated ledgers the replication worker replicates concurrently.
+     *
+     * @param maxConcurrentLedgers max number of ledgers replicated concurrently
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setRwMaxConcurrentLedgers(int maxConcurrentLedgers) {
+        setProperty(RW_MAX_CONCURRENT_LEDGERS, maxConcurrentLedgers);
+        return this;
+    }
+
     /**
      * Sets that whether force start a bookie in readonly mode.
      *
@@ -3987,6 +4785,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this.getBoolean(DATA_INTEGRITY_COOKIE_STAMPING_ENABLED, false);
     }
 
+    /**
+     * Whether the bookie serves the requests to copy ledger fragments from the other bookies
+     * of their ensemble, sent by the replicators with re-replication bookie copy enabled.
+     * The bookie then creates a bookkeeper client on startup, to read the entries from the
+     * other bookies. When disabled, the requests are rejected and the replicators re-replicate
+     * the entries themselves.
+     *
+     * @return true if the bookie copies the ledger fragments requested. Default is false.
+     */
+    public boolean isLedgerFragmentCopyEnabled() {
+        return this.getBoolean(LEDGER_FRAGMENT_COPY_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable serving the requests to copy ledger fragments from other bookies.
+     *
+     * @param enabled flag to enable/disable copying ledger fragments.
+     * @return server configuration
+     * @see #isLedgerFragmentCopyEnabled()
+     */
+    public ServerConfiguration setLedgerFragmentCopyEnabled(boolean enabled) {
+        this.setProperty(LEDGER_FRAGMENT_COPY_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get default rocksdb conf.
      *
@@ -18,10 +18,24 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.bookkeeper.conf.AbstractConfiguration;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
@@ -40,6 +54,11 @@ public abstract class AbstractHierarchicalLedgerManager extends AbstractZkLedger
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractHierarchicalLedgerManager.class);
 
+    // number of buckets listed concurrently when iterating over the ledgers
+    private final int listingParallelism;
+    // ledgers of the buckets listed so far, indexed by bucket path, null if the cache is disabled
+    private final ConcurrentMap<String, LedgerBucket> bucketCache;
+
     /**
      * Constructor.
      *
@@ -50,6 +69,283 @@ public abstract class AbstractHierarchicalLedgerManager extends AbstractZkLedger
      */
     public AbstractHierarchicalLedgerManager(AbstractConfiguration conf, ZooKeeper zk) {
         super(conf, zk);
+        this.listingParallelism = Math.max(1, conf.getZkLedgerListingParallelism());
+        this.bucketCache = conf.getZkLedgerListingCacheEnabled() ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * The ledgers of a leaf node (bucket) of the hierarchy, as of the given version of its children.
+     */
+    private static class LedgerBucket {
+        final int cversion;
+        final long[] ledgers;
+
+        LedgerBucket(int cversion, NavigableSet<Long> ledgers) {
+            this.cversion = cversion;
+            this.ledgers = ledgers.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        NavigableSet<Long> toSet() {
+            NavigableSet<Long> set = new TreeSet<>();
+            for (long ledger : ledgers) {
+                set.add(ledger);
+            }
+            return set;
+        }
+    }
+
+    /**
+     * List the ledgers of a bucket. If the bucket cache is enabled, the children of the bucket are only
+     * listed if they changed since the bucket was listed last, otherwise the cached ledgers are returned.
+     */
+    private CompletableFuture<NavigableSet<Long>> listBucket(String bucketPath) {
+        CompletableFuture<NavigableSet<Long>> promise = new CompletableFuture<>();
+        if (bucketCache == null) {
+            listBucketChildren(bucketPath, promise);
+            return promise;
+        }
+        zk.exists(bucketPath, false, (rc, path, ctx, stat) -> {
+            if (rc == Code.NONODE.intValue()) {
+                bucketCache.remove(bucketPath);
+                promise.complete(new TreeSet<>());
+            } else if (rc != Code.OK.intValue()) {
+                promise.completeExceptionally(KeeperException.create(Code.get(rc), path));
+            } else {
+                LedgerBucket cached = bucketCache.get(bucketPath);
+                if (cached != null && cached.cversion == stat.getCversion()) {
+                    promise.complete(cached.toSet());
+                } else {
+                    listBucketChildren(bucketPath, promise);
+                }
+            }
+        }, null);
+        return promise;
+    }
+
+    private void listBucketChildren(String bucketPath, CompletableFuture<NavigableSet<Long>> promise) {
+        zk.getChildren(bucketPath, false, (rc, path, ctx, children, stat) -> {
+            if (rc == Code.NONODE.intValue()) {
+                // raced with a recursive node removal
+                if (bucketCache != null) {
+                    bucketCache.remove(bucketPath);
+                }
+                promise.complete(new TreeSet<>());
+            } else if (rc != Code.OK.intValue()) {
+                promise.completeExceptionally(KeeperException.create(Code.get(rc), path));
+            } else {
+                NavigableSet<Long> ledgers = ledgerListToSet(children, bucketPath);
+                if (bucketCache != null) {
+                    bucketCache.put(bucketPath, new LedgerBucket(stat.getCversion(), ledgers));
+                }
+                promise.complete(ledgers);
+            }
+        }, null);
+    }
+
+    /**
+     * Filter the ledgers listed in a bucket, e.g. to drop the ledgers which don't belong to it.
+     *
+     * @param bucketPath path of the bucket
+     * @param ledgers ledgers listed in the bucket
+     * @return ledgers of the bucket
+     * @throws IOException if the bucket path is invalid
+     */
+    protected NavigableSet<Long> filterBucketLedgers(String bucketPath, NavigableSet<Long> ledgers)
+            throws IOException {
+        return ledgers;
+    }
+
+    /**
+     * Iterates over the ledgers of a hierarchy of nodes of a given depth, returning one range per leaf node
+     * (bucket). Up to {@link AbstractConfiguration#getZkLedgerListingParallelism()} buckets are listed ahead
+     * of the range returned by {@link #next()}, so the listing of the buckets is pipelined but never runs more
+     * than that ahead of the consumer.
+     *
+     * <p>The iteration may start from a given ledger id, skipping the subtrees which only contain smaller
+     * ledger ids, so that a scan which was interrupted can be resumed from the last ledger id it processed.
+     */
+    protected class LedgerBucketRangeIterator implements LedgerRangeIterator {
+
+        private class Level {
+            final String path;
+            final int depth;
+            final Iterator<String> children;
+            // whether the path is a prefix of the path of the start ledger
+            final boolean onStartPath;
+
+            Level(String path, int depth, List<String> children, boolean onStartPath) {
+                this.path = path;
+                this.depth = depth;
+                Collections.sort(children);
+                this.children = children.iterator();
+                this.onStartPath = onStartPath;
+            }
+        }
+
+        private class PendingBucket {
+            final String path;
+            final boolean onStartPath;
+            final CompletableFuture<NavigableSet<Long>> ledgers;
+
+            PendingBucket(String path, boolean onStartPath) {
+                this.path = path;
+                this.onStartPath = onStartPath;
+                this.ledgers = listBucket(path);
+            }
+        }
+
+        private final int bucketDepth;
+        private final long startLedgerId;
+        private final String[] startPath;
+        private final long zkOpTimeoutMs;
+        private final Deque<Level> levels = new ArrayDeque<>();
+        private final Deque<PendingBucket> pending = new ArrayDeque<>();
+        private final Set<String> listedBuckets = new HashSet<>();
+        private boolean started = false;
+        private boolean exhausted = false;
+        private LedgerRange nextRange = null;
+
+        /**
+         * @param bucketDepth depth of the buckets below the ledger root path
+         * @param startLedgerId smallest ledger id to return
+         * @param startLedgerPath path of the start ledger relative to the ledger root path
+         * @param zkOpTimeoutMs timeout of the zookeeper operations, no timeout if &lt;= 0
+         */
+        protected LedgerBucketRangeIterator(int bucketDepth, long startLedgerId, String startLedgerPath,
+                                            long zkOpTimeoutMs) {
+            this.bucketDepth = bucketDepth;
+            this.startLedgerId = startLedgerId;
+            this.startPath = startLedgerId > 0 ? startLedgerPath.substring(1).split("/") : null;
+            this.zkOpTimeoutMs = zkOpTimeoutMs;
+        }
+
+        private <T> T await(CompletableFuture<T> future, String path) throws IOException {
+            try {
+                return zkOpTimeoutMs > 0 ? future.get(zkOpTimeoutMs, TimeUnit.MILLISECONDS) : future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading ledgers at path " + path, ie);
+            } catch (ExecutionException ee) {
+                throw new IOException("Error reading ledgers at path " + path, ee.getCause());
+            } catch (TimeoutException te) {
+                throw new IOException("Timeout reading ledgers at path " + path, te);
+            }
+        }
+
+        private List<String> getChildrenAt(String path) throws IOException {
+            CompletableFuture<List<String>> promise = new CompletableFuture<>();
+            zk.getChildren(path, false, (rc, p, ctx, children) -> {
+                if (rc == Code.NONODE.intValue()) {
+                    // raced with a recursive node removal
+                    promise.complete(new ArrayList<>());
+                } else if (rc != Code.OK.intValue()) {
+                    promise.completeExceptionally(KeeperException.create(Code.get(rc), p));
+                } else {
+                    promise.complete(children);
+                }
+            }, null);
+            return await(promise, path);
+        }
+
+        private void start() throws IOException {
+            // sync once so that the listing reflects at least the state of the metadata store at this point
+            CompletableFuture<Void> synced = new CompletableFuture<>();
+            zk.sync(ledgerRootPath, (rc, path, ctx) -> {
+                if (rc == Code.OK.intValue() || rc == Code.NONODE.intValue()) {
+                    synced.complete(null);
+                } else {
+                    synced.completeExceptionally(KeeperException.create(Code.get(rc), path));
+                }
+            }, null);
+            await(synced, ledgerRootPath);
+            levels.push(new Level(ledgerRootPath, 0, getChildrenAt(ledgerRootPath), startPath != null));
+            started = true;
+        }
+
+        /**
+         * Walk the hierarchy depth first up to the next bucket, and start listing it.
+         *
+         * @return false if all the buckets were visited
+         */
+        private boolean listNextBucket() throws IOException {
+            while (!levels.isEmpty()) {
+                Level level = levels.peek();
+                if (!level.children.hasNext()) {
+                    levels.pop();
+                    continue;
+                }
+                String node = level.children.next();
+                if (level.depth == 0 && !isLedgerParentNode(node)) {
+                    continue;
+                }
+                boolean onStartPath = false;
+                if (level.onStartPath) {
+                    int cmp = node.compareTo(startPath[level.depth]);
+                    if (cmp < 0) {
+                        // only contains ledgers below the start ledger
+                        continue;
+                    }
+                    onStartPath = cmp == 0;
+                }
+                String path = level.path + "/" + node;
+                if (level.depth + 1 == bucketDepth) {
+                    pending.add(new PendingBucket(path, onStartPath));
+                    return true;
+                }
+                levels.push(new Level(path, level.depth + 1, getChildrenAt(path), onStartPath));
+            }
+            return false;
+        }
+
+        private synchronized void preload() throws IOException {
+            if (!started) {
+                start();
+            }
+            while (nextRange == null && !exhausted) {
+                // keep up to listingParallelism buckets being listed
+                while (pending.size() < listingParallelism) {
+                    if (!listNextBucket()) {
+                        break;
+                    }
+                }
+                PendingBucket bucket = pending.poll();
+                if (bucket == null) {
+                    exhausted = true;
+                    if (bucketCache != null && startPath == null) {
+                        // drop the buckets which were removed since the previous full scan
+                        bucketCache.keySet().retainAll(listedBuckets);
+                    }
+                    break;
+                }
+                NavigableSet<Long> ledgers = filterBucketLedgers(bucket.path, await(bucket.ledgers, bucket.path));
+                listedBuckets.add(bucket.path);
+                if (bucket.onStartPath) {
+                    ledgers = ledgers.tailSet(startLedgerId, true);
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("All active ledgers from ZK for hash node {}: {}", bucket.path, ledgers);
+                }
+                if (!ledgers.isEmpty()) {
+                    nextRange = new LedgerRange(ledgers);
+                }
+            }
+        }
+
+        @Override
+        public synchronized boolean hasNext() throws IOException {
+            preload();
+            return nextRange != null;
+        }
+
+        @Override
+        public synchronized LedgerRange next() throws IOException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            LedgerRange range = nextRange;
+            nextRange = null;
+            return range;
+        }
     }
 
     /**
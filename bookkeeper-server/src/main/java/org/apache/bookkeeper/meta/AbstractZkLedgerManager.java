@@ -20,6 +20,7 @@ package org.apache.bookkeeper.meta;
 import com.google.common.annotations.VisibleForTesting;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NavigableSet;
@@ -29,6 +30,7 @@ import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
@@ -41,14 +43,17 @@ import org.apache.bookkeeper.conf.AbstractConfiguration;
 import org.apache.bookkeeper.meta.zk.ZKMetadataDriverBase;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgersChangeListener;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.MultiCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
 import org.apache.bookkeeper.util.BookKeeperConstants;
+import org.apache.bookkeeper.util.StringUtils;
 import org.apache.bookkeeper.util.ZkUtils;
 import org.apache.bookkeeper.versioning.LongVersion;
 import org.apache.bookkeeper.versioning.Version;
 import org.apache.bookkeeper.versioning.Versioned;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.zookeeper.AddWatchMode;
 import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.AsyncCallback.DataCallback;
 import org.apache.zookeeper.AsyncCallback.StatCallback;
@@ -57,6 +62,8 @@ import org.apache.zookeeper.AsyncCallback.VoidCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooKeeper;
@@ -85,6 +92,11 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
             new ConcurrentHashMap<Long, Set<LedgerMetadataListener>>();
     // we use this to prevent long stack chains from building up in callbacks
     protected ScheduledExecutorService scheduler;
+    // batches ledger metadata writes into multi operations, null if batching is disabled
+    private final ZkLedgerMetadataWriteBatcher writeBatcher;
+    // listeners on the changes of all the ledgers, notified by a single persistent recursive watch
+    private final Set<LedgersChangeListener> ledgersChangeListeners = new CopyOnWriteArraySet<>();
+    private final Watcher ledgersWatcher = this::processLedgersEvent;
 
     /**
      * ReadLedgerMetadataTask class.
@@ -189,6 +201,11 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
         this.ledgerRootPath = ZKMetadataDriverBase.resolveZkLedgersRootPath(conf);
         this.scheduler = Executors
                 .newSingleThreadScheduledExecutor(new DefaultThreadFactory("ZkLedgerManagerScheduler"));
+        if (conf.getZkLedgerMetadataWriteBatchMaxOps() > 1) {
+            this.writeBatcher = new ZkLedgerMetadataWriteBatcher(zk, conf.getZkLedgerMetadataWriteBatchMaxOps());
+        } else {
+            this.writeBatcher = null;
+        }
         if (LOG.isDebugEnabled()) {
             LOG.debug("Using AbstractZkLedgerManager with root path : {}", ledgerRootPath);
         }
@@ -341,8 +358,19 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
         }
 
         List<ACL> zkAcls = ZkUtils.getACLs(conf);
-        ZkUtils.asyncCreateFullPathOptimistic(zk, ledgerPath, data, zkAcls,
-                                              CreateMode.PERSISTENT, scb, null);
+        if (writeBatcher != null) {
+            writeBatcher.submit(new ZkLedgerMetadataWriteBatcher.BatchedOp(
+                    Op.create(ledgerPath, data, zkAcls, CreateMode.PERSISTENT), data.length,
+                    result -> scb.processResult(Code.OK.intValue(), ledgerPath, null, ledgerPath),
+                    done -> ZkUtils.asyncCreateFullPathOptimistic(zk, ledgerPath, data, zkAcls, CreateMode.PERSISTENT,
+                            (rc, path, ctx, name) -> {
+                                done.run();
+                                scb.processResult(rc, path, ctx, name);
+                            }, null)));
+        } else {
+            ZkUtils.asyncCreateFullPathOptimistic(zk, ledgerPath, data, zkAcls,
+                                                  CreateMode.PERSISTENT, scb, null);
+        }
         return promise;
     }
 
@@ -445,6 +473,125 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The ledgers are watched with a persistent recursive watch on the ledgers root, which needs ZooKeeper
+     * 3.6+ servers. The watch is added when the first listener is registered, and the listener is not
+     * registered if the servers don't support it.
+     */
+    @Override
+    public boolean registerLedgersChangeListener(LedgersChangeListener listener) {
+        synchronized (ledgersChangeListeners) {
+            if (!ledgersChangeListeners.add(listener) || ledgersChangeListeners.size() > 1) {
+                return true;
+            }
+            try {
+                zk.addWatch(ledgerRootPath, ledgersWatcher, AddWatchMode.PERSISTENT_RECURSIVE);
+            } catch (KeeperException.UnimplementedException e) {
+                LOG.warn("The ledgers under {} can't be watched, persistent recursive watches need ZooKeeper 3.6+",
+                        ledgerRootPath);
+                ledgersChangeListeners.remove(listener);
+                return false;
+            } catch (KeeperException e) {
+                LOG.warn("Failed to watch the ledgers under {} : {}, retrying", ledgerRootPath, e.code());
+                scheduler.schedule(this::rewatchLedgers, ZK_CONNECT_BACKOFF_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                scheduler.schedule(this::rewatchLedgers, ZK_CONNECT_BACKOFF_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void unregisterLedgersChangeListener(LedgersChangeListener listener) {
+        synchronized (ledgersChangeListeners) {
+            if (ledgersChangeListeners.remove(listener) && ledgersChangeListeners.isEmpty()) {
+                zk.removeWatches(ledgerRootPath, ledgersWatcher, WatcherType.Any, true, (rc, path, ctx) -> {
+                    if (rc != KeeperException.Code.OK.intValue()) {
+                        LOG.warn("Failed to remove the watch on the ledgers under {} : {}",
+                                ledgerRootPath, KeeperException.Code.get(rc));
+                    }
+                }, null);
+            }
+        }
+    }
+
+    private void addLedgersWatch() {
+        zk.addWatch(ledgerRootPath, ledgersWatcher, AddWatchMode.PERSISTENT_RECURSIVE, (rc, path, ctx) -> {
+            if (rc == KeeperException.Code.UNIMPLEMENTED.intValue()) {
+                // the listeners were told the changes are lost, there is no point in retrying
+                LOG.error("The ledgers under {} can't be watched anymore, persistent recursive watches need"
+                        + " ZooKeeper 3.6+", ledgerRootPath);
+            } else if (rc != KeeperException.Code.OK.intValue()) {
+                LOG.warn("Failed to watch the ledgers under {} : {}, retrying", ledgerRootPath,
+                        KeeperException.Code.get(rc));
+                scheduler.schedule(this::rewatchLedgers, ZK_CONNECT_BACKOFF_MS, TimeUnit.MILLISECONDS);
+            }
+        }, null);
+    }
+
+    private void rewatchLedgers() {
+        synchronized (ledgersChangeListeners) {
+            if (!ledgersChangeListeners.isEmpty()) {
+                for (LedgersChangeListener listener : ledgersChangeListeners) {
+                    listener.onChangesLost();
+                }
+                addLedgersWatch();
+            }
+        }
+    }
+
+    private void processLedgersEvent(WatchedEvent event) {
+        if (Event.EventType.None == event.getType()) {
+            // the changes made while disconnected are not replayed to a persistent watch when it is
+            // restored, and an expired session loses it
+            if (Event.KeeperState.SyncConnected != event.getState()) {
+                for (LedgersChangeListener listener : ledgersChangeListeners) {
+                    listener.onChangesLost();
+                }
+            }
+            if (Event.KeeperState.Expired == event.getState()) {
+                scheduler.schedule(this::rewatchLedgers, ZK_CONNECT_BACKOFF_MS, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        String path = event.getPath();
+        // the watch also covers the other znodes under the ledgers root, like the bookies or the buckets
+        // of the hierarchical ledger managers
+        if (null == path || !isLedgerNode(path.substring(path.lastIndexOf('/') + 1))) {
+            return;
+        }
+        final long ledgerId;
+        try {
+            ledgerId = getLedgerId(path);
+        } catch (IOException ioe) {
+            return;
+        }
+        for (LedgersChangeListener listener : ledgersChangeListeners) {
+            if (Event.EventType.NodeDeleted == event.getType()) {
+                listener.onLedgerDeleted(ledgerId);
+            } else if (Event.EventType.NodeCreated == event.getType()
+                    || Event.EventType.NodeDataChanged == event.getType()) {
+                listener.onLedgerChanged(ledgerId);
+            }
+        }
+    }
+
+    private static boolean isLedgerNode(String znode) {
+        if (znode.length() <= StringUtils.LEDGER_NODE_PREFIX.length()
+                || !znode.startsWith(StringUtils.LEDGER_NODE_PREFIX)) {
+            return false;
+        }
+        for (int i = StringUtils.LEDGER_NODE_PREFIX.length(); i < znode.length(); i++) {
+            if (!Character.isDigit(znode.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void cancelMetadataWatch(long ledgerId, Watcher watcher) {
         zk.removeWatches(getLedgerPath(ledgerId), watcher, WatcherType.Data, true, new VoidCallback() {
             @Override
@@ -526,9 +673,7 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
             promise.completeExceptionally(new BKException.BKMetadataSerializationException(ioe));
             return promise;
         }
-        zk.setData(getLedgerPath(ledgerId),
-                   data, (int) zv.getLongVersion(),
-                   new StatCallback() {
+        StatCallback scb = new StatCallback() {
             @Override
             public void processResult(int rc, String path, Object ctx, Stat stat) {
                 if (KeeperException.Code.BADVERSION.intValue() == rc) {
@@ -545,10 +690,45 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
                             new BKException.ZKException(KeeperException.create(Code.get(rc), path)));
                 }
             }
-        }, null);
+        };
+        final String ledgerPath = getLedgerPath(ledgerId);
+        final int znodeVersion = (int) zv.getLongVersion();
+        if (writeBatcher != null) {
+            writeBatcher.submit(new ZkLedgerMetadataWriteBatcher.BatchedOp(
+                    Op.setData(ledgerPath, data, znodeVersion), data.length,
+                    result -> scb.processResult(Code.OK.intValue(), ledgerPath, null,
+                            ((OpResult.SetDataResult) result).getStat()),
+                    done -> zk.setData(ledgerPath, data, znodeVersion, (rc, path, ctx, stat) -> {
+                        done.run();
+                        if (rc == Code.BADVERSION.intValue()) {
+                            checkMetadataWritten(ledgerPath, data, znodeVersion, scb);
+                        } else {
+                            scb.processResult(rc, path, ctx, stat);
+                        }
+                    }, null)));
+        } else {
+            zk.setData(ledgerPath, data, znodeVersion, scb, null);
+        }
         return promise;
     }
 
+    /**
+     * A batch of writes is retried by the zookeeper client after a connection loss, even if it was committed, and
+     * then fails with a version conflict. Report the write as successful if the ledger metadata is still the one
+     * written on top of the expected version.
+     */
+    private void checkMetadataWritten(String ledgerPath, byte[] data, int znodeVersion, StatCallback scb) {
+        zk.getData(ledgerPath, false, (rc, path, ctx, readData, stat) -> {
+            if (rc == Code.OK.intValue() && stat.getVersion() == znodeVersion + 1
+                    && Arrays.equals(data, readData)) {
+                LOG.info("Ledger metadata {} was already written at version {}", ledgerPath, stat.getVersion());
+                scb.processResult(Code.OK.intValue(), path, ctx, stat);
+            } else {
+                scb.processResult(Code.BADVERSION.intValue(), path, ctx, null);
+            }
+        }, null);
+    }
+
     /**
      * Process ledgers in a single zk node.
      *
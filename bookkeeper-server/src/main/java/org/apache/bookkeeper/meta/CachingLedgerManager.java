@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_HITS;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_MISSES;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_SIZE;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgersChangeListener;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.versioning.Version;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.apache.zookeeper.AsyncCallback;
+
+/**
+ * A ledger manager that caches the ledger metadata read through it.
+ *
+ * <p>The cache is bounded by a number of ledgers and, optionally, by the estimated memory size of the
+ * cached metadata. Both bounds are enforced with a single weight: each ledger weighs at least its share
+ * of the size bound for the maximum number of ledgers.
+ *
+ * <p>By default, the cached open ledgers are watched with a {@link LedgerMetadataListener} each, until they
+ * are closed or evicted, so that they follow the updates of their writer. The closed ledgers are not watched:
+ * their metadata only changes when their fragments are re-replicated or when they are deleted, which is only
+ * seen once they are evicted and read again, or when an update through this ledger manager fails.
+ *
+ * <p>Optionally, the cached metadata is kept coherent with a single watch on the changes of all the ledgers
+ * instead, see {@link LedgerManager#registerLedgersChangeListener(LedgersChangeListener)}. A ledger whose
+ * metadata is changed by another client, or deleted, is dropped from the cache and read again on the next
+ * lookup. This watch notifies the client of every change of every ledger of the cluster, whether it is cached
+ * or not, and it needs a metadata store supporting it, like ZooKeeper 3.6+. When the underlying ledger manager
+ * can't watch all the ledgers, the open ledgers are watched one by one.
+ *
+ * <p>Updates made through this ledger manager refresh the cached metadata. A conditional update failing
+ * with a version conflict invalidates the cached metadata, so that the read done before retrying the
+ * update goes to the metadata store.
+ */
+public class CachingLedgerManager implements LedgerManager, LedgerMetadataListener, LedgersChangeListener {
+
+    // rough memory footprint of the metadata of a ledger, besides its ensembles and custom metadata
+    private static final int METADATA_OVERHEAD_BYTES = 256;
+    private static final int ENSEMBLE_OVERHEAD_BYTES = 64;
+    private static final int BOOKIE_OVERHEAD_BYTES = 48;
+
+    private final LedgerManager underlying;
+    private final Cache<Long, Versioned<LedgerMetadata>> cache;
+    // whether the cache is kept coherent by a watch on all the ledgers, or by a listener per cached open ledger
+    private final boolean watchingAllLedgers;
+    // ledgers for which a metadata listener is registered on the underlying ledger manager
+    private final Set<Long> watchedLedgers = ConcurrentHashMap.newKeySet();
+    // watched ledgers which got closed, whose listener is unregistered on the next read. It can't be while
+    // the listeners of the ledger are notified
+    private final Set<Long> closedLedgers = ConcurrentHashMap.newKeySet();
+    // the reads in flight, which are not cached if the ledger changes before they complete
+    private final Map<Long, Object> pendingReads = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final StatsLogger statsLogger;
+    private final Gauge<Long> sizeGauge;
+
+    /**
+     * @param underlying the ledger manager reading and writing the metadata store
+     * @param maxEntries the maximum number of cached ledgers
+     * @param maxSizeBytes the maximum estimated size of the cached metadata, or &lt;= 0 for no bound
+     * @param watchAllLedgers whether to keep the cache coherent with a single watch on all the ledgers, rather
+     *                        than with a watch per cached open ledger
+     * @param statsLogger the stats logger of the cache
+     */
+    public CachingLedgerManager(LedgerManager underlying, long maxEntries, long maxSizeBytes,
+                                boolean watchAllLedgers, StatsLogger statsLogger) {
+        this.underlying = underlying;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (maxSizeBytes > 0) {
+            int minWeight = (int) Math.min(Integer.MAX_VALUE, (maxSizeBytes + maxEntries - 1) / maxEntries);
+            builder.maximumWeight(maxSizeBytes)
+                    .weigher((Long ledgerId, Versioned<LedgerMetadata> metadata) ->
+                            Math.max(minWeight, estimateSize(metadata.getValue())));
+        } else {
+            builder.maximumSize(maxEntries);
+        }
+        this.cache = builder.removalListener(this::onRemoval).build();
+        this.hits = statsLogger.getCounter(LEDGER_METADATA_CACHE_HITS);
+        this.misses = statsLogger.getCounter(LEDGER_METADATA_CACHE_MISSES);
+        this.statsLogger = statsLogger;
+        this.sizeGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return cache.size();
+            }
+        };
+        statsLogger.registerGauge(LEDGER_METADATA_CACHE_SIZE, sizeGauge);
+        this.watchingAllLedgers = watchAllLedgers && underlying.registerLedgersChangeListener(this);
+    }
+
+    public LedgerManager getUnderlying() {
+        return underlying;
+    }
+
+    /**
+     * Estimate the memory size of the metadata of a ledger, which mostly depends on its ensembles.
+     */
+    @VisibleForTesting
+    static int estimateSize(LedgerMetadata metadata) {
+        long size = METADATA_OVERHEAD_BYTES + metadata.getPassword().length;
+        for (Map.Entry<String, byte[]> entry : metadata.getCustomMetadata().entrySet()) {
+            size += entry.getKey().length() + entry.getValue().length;
+        }
+        for (List<BookieId> ensemble : metadata.getAllEnsembles().values()) {
+            size += ENSEMBLE_OVERHEAD_BYTES;
+            for (BookieId bookie : ensemble) {
+                size += BOOKIE_OVERHEAD_BYTES + bookie.getId().length();
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    @VisibleForTesting
+    long size() {
+        cache.cleanUp();
+        return cache.size();
+    }
+
+    private void cacheMetadata(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        if (watchingAllLedgers) {
+            cache.asMap().merge(ledgerId, metadata, CachingLedgerManager::newest);
+            return;
+        }
+        synchronized (watchedLedgers) {
+            cache.asMap().merge(ledgerId, metadata, CachingLedgerManager::newest);
+            if (!metadata.getValue().isClosed() && watchedLedgers.add(ledgerId)) {
+                underlying.registerLedgerMetadataListener(ledgerId, this);
+            }
+        }
+    }
+
+    private void unwatchClosedLedgers() {
+        if (closedLedgers.isEmpty()) {
+            return;
+        }
+        synchronized (watchedLedgers) {
+            for (Long ledgerId : closedLedgers) {
+                closedLedgers.remove(ledgerId);
+                if (watchedLedgers.remove(ledgerId)) {
+                    underlying.unregisterLedgerMetadataListener(ledgerId, this);
+                }
+            }
+        }
+    }
+
+    private void refreshMetadata(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        cache.asMap().computeIfPresent(ledgerId, (id, cached) -> newest(cached, metadata));
+    }
+
+    private static Versioned<LedgerMetadata> newest(Versioned<LedgerMetadata> cached,
+                                                    Versioned<LedgerMetadata> metadata) {
+        return metadata.getVersion().compare(cached.getVersion()) == Version.Occurred.BEFORE ? cached : metadata;
+    }
+
+    private void invalidate(long ledgerId) {
+        pendingReads.remove(ledgerId);
+        cache.invalidate(ledgerId);
+    }
+
+    private void onRemoval(RemovalNotification<Long, Versioned<LedgerMetadata>> notification) {
+        if (watchingAllLedgers || notification.getCause() == RemovalCause.REPLACED) {
+            return;
+        }
+        long ledgerId = notification.getKey();
+        synchronized (watchedLedgers) {
+            // the ledger may have been cached again since it was removed
+            if (cache.getIfPresent(ledgerId) == null && watchedLedgers.remove(ledgerId)) {
+                underlying.unregisterLedgerMetadataListener(ledgerId, this);
+            }
+        }
+    }
+
+    @Override
+    public void onChanged(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        if (metadata == null) {
+            // the ledger is deleted
+            invalidate(ledgerId);
+        } else {
+            refreshMetadata(ledgerId, metadata);
+            if (metadata.getValue().isClosed()) {
+                closedLedgers.add(ledgerId);
+            }
+        }
+    }
+
+    @Override
+    public void onLedgerChanged(long ledgerId) {
+        invalidate(ledgerId);
+    }
+
+    @Override
+    public void onLedgerDeleted(long ledgerId) {
+        invalidate(ledgerId);
+    }
+
+    @Override
+    public void onChangesLost() {
+        pendingReads.clear();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Read the metadata of the given ledgers that are not cached yet, so that they are served from the
+     * cache when opened afterwards. Failures to read the metadata of a ledger are ignored.
+     *
+     * @param ledgerIds ids of the ledgers to prefetch
+     * @return future which completes once all the reads are completed
+     */
+    public CompletableFuture<Void> prefetchLedgerMetadata(Collection<Long> ledgerIds) {
+        CompletableFuture<?>[] reads = ledgerIds.stream()
+                .filter(ledgerId -> cache.getIfPresent(ledgerId) == null)
+                .map(ledgerId -> readLedgerMetadata(ledgerId).handle((metadata, exception) -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(reads);
+    }
+
+    @Override
+    public CompletableFuture<Versioned<LedgerMetadata>> createLedgerMetadata(long ledgerId, LedgerMetadata metadata) {
+        return underlying.createLedgerMetadata(ledgerId, metadata);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeLedgerMetadata(long ledgerId, Version version) {
+        return underlying.removeLedgerMetadata(ledgerId, version)
+                .whenComplete((result, exception) -> invalidate(ledgerId));
+    }
+
+    @Override
+    public CompletableFuture<Versioned<LedgerMetadata>> readLedgerMetadata(long ledgerId) {
+        unwatchClosedLedgers();
+        Versioned<LedgerMetadata> cached = cache.getIfPresent(ledgerId);
+        if (cached != null) {
+            hits.inc();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.inc();
+        Object read = new Object();
+        pendingReads.put(ledgerId, read);
+        return underlying.readLedgerMetadata(ledgerId).whenComplete((metadata, exception) -> {
+            // a change notified while reading may be more recent than the metadata read
+            if (pendingReads.remove(ledgerId, read) && exception == null) {
+                cacheMetadata(ledgerId, metadata);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Versioned<LedgerMetadata>> writeLedgerMetadata(long ledgerId, LedgerMetadata metadata,
+                                                                            Version currentVersion) {
+        return underlying.writeLedgerMetadata(ledgerId, metadata, currentVersion)
+                .whenComplete((written, exception) -> {
+                    if (exception == null) {
+                        refreshMetadata(ledgerId, written);
+                    } else {
+                        // the cached metadata may be stale, e.g. on a version conflict
+                        invalidate(ledgerId);
+                    }
+                });
+    }
+
+    @Override
+    public void registerLedgerMetadataListener(long ledgerId, LedgerMetadataListener listener) {
+        underlying.registerLedgerMetadataListener(ledgerId, listener);
+    }
+
+    @Override
+    public void unregisterLedgerMetadataListener(long ledgerId, LedgerMetadataListener listener) {
+        underlying.unregisterLedgerMetadataListener(ledgerId, listener);
+    }
+
+    @Override
+    public boolean registerLedgersChangeListener(LedgersChangeListener listener) {
+        return underlying.registerLedgersChangeListener(listener);
+    }
+
+    @Override
+    public void unregisterLedgersChangeListener(LedgersChangeListener listener) {
+        underlying.unregisterLedgersChangeListener(listener);
+    }
+
+    @Override
+    public void asyncProcessLedgers(Processor<Long> processor, AsyncCallback.VoidCallback finalCb,
+                                    Object context, int successRc, int failureRc) {
+        underlying.asyncProcessLedgers(processor, finalCb, context, successRc, failureRc);
+    }
+
+    @Override
+    public LedgerRangeIterator getLedgerRanges(long zkOpTimeOutMs) {
+        return underlying.getLedgerRanges(zkOpTimeOutMs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        statsLogger.unregisterGauge(LEDGER_METADATA_CACHE_SIZE, sizeGauge);
+        if (watchingAllLedgers) {
+            underlying.unregisterLedgersChangeListener(this);
+        }
+        cache.invalidateAll();
+        underlying.close();
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgersChangeListener;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
 import org.apache.bookkeeper.versioning.Version;
 import org.apache.bookkeeper.versioning.Versioned;
@@ -107,6 +108,16 @@ public class CleanupLedgerManager implements LedgerManager {
         underlying.unregisterLedgerMetadataListener(ledgerId, listener);
     }
 
+    @Override
+    public boolean registerLedgersChangeListener(LedgersChangeListener listener) {
+        return underlying.registerLedgersChangeListener(listener);
+    }
+
+    @Override
+    public void unregisterLedgersChangeListener(LedgersChangeListener listener) {
+        underlying.unregisterLedgersChangeListener(listener);
+    }
+
     private GenericCallback removeCallback(GenericCallback callback) {
         return callbacks.remove(callback);
     }
@@ -232,6 +243,19 @@ public class CleanupLedgerManager implements LedgerManager {
         }
     }
 
+    @Override
+    public LedgerRangeIterator getLedgerRanges(long zkOpTimeoutMs, long startLedgerId) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return new ClosedLedgerRangeIterator();
+            }
+            return underlying.getLedgerRanges(zkOpTimeoutMs, startLedgerId);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void close() throws IOException {
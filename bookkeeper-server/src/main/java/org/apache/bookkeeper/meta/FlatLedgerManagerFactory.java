@@ -74,7 +74,7 @@ public class FlatLedgerManagerFactory extends AbstractZkLedgerManagerFactory {
     public LedgerIdGenerator newLedgerIdGenerator() {
         List<ACL> zkAcls = ZkUtils.getACLs(conf);
         String ledgersRootPath = ZKMetadataDriverBase.resolveZkLedgersRootPath(conf);
-        return new ZkLedgerIdGenerator(zk, ledgersRootPath, null, zkAcls);
+        return new ZkLedgerIdGenerator(zk, ledgersRootPath, null, zkAcls, conf.getZkLedgerIdPreallocationSize());
     }
 
     @Override
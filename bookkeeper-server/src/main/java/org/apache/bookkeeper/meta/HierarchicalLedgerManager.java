@@ -18,6 +18,7 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.IOException;
+import java.util.NoSuchElementException;
 import org.apache.bookkeeper.conf.AbstractConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager.LedgerRangeIterator;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
@@ -87,11 +88,30 @@ class HierarchicalLedgerManager extends AbstractHierarchicalLedgerManager {
 
     @Override
     public LedgerRangeIterator getLedgerRanges(long zkOpTimeoutMs) {
-        LedgerRangeIterator legacyLedgerRangeIterator = legacyLM.getLedgerRanges(zkOpTimeoutMs);
-        LedgerRangeIterator longLedgerRangeIterator = longLM.getLedgerRanges(zkOpTimeoutMs);
+        return getLedgerRanges(zkOpTimeoutMs, 0L);
+    }
+
+    @Override
+    public LedgerRangeIterator getLedgerRanges(long zkOpTimeoutMs, long startLedgerId) {
+        LedgerRangeIterator legacyLedgerRangeIterator = startLedgerId < Integer.MAX_VALUE
+                ? legacyLM.getLedgerRanges(zkOpTimeoutMs, startLedgerId)
+                : EMPTY_RANGE_ITERATOR;
+        LedgerRangeIterator longLedgerRangeIterator = longLM.getLedgerRanges(zkOpTimeoutMs, startLedgerId);
         return new HierarchicalLedgerRangeIterator(legacyLedgerRangeIterator, longLedgerRangeIterator);
     }
 
+    private static final LedgerRangeIterator EMPTY_RANGE_ITERATOR = new LedgerRangeIterator() {
+        @Override
+        public boolean hasNext() {
+            return false;
+        }
+
+        @Override
+        public LedgerRange next() {
+            throw new NoSuchElementException();
+        }
+    };
+
     private static class HierarchicalLedgerRangeIterator implements LedgerRangeIterator {
 
         LedgerRangeIterator legacyLedgerRangeIterator;
@@ -34,7 +34,7 @@ public class HierarchicalLedgerManagerFactory extends LegacyHierarchicalLedgerMa
         List<ACL> zkAcls = ZkUtils.getACLs(conf);
         String zkLedgersRootPath = ZKMetadataDriverBase.resolveZkLedgersRootPath(conf);
         ZkLedgerIdGenerator subIdGenerator = new ZkLedgerIdGenerator(zk, zkLedgersRootPath,
-                LegacyHierarchicalLedgerManager.IDGEN_ZNODE, zkAcls);
+                LegacyHierarchicalLedgerManager.IDGEN_ZNODE, zkAcls, conf.getZkLedgerIdPreallocationSize());
         return new LongZkLedgerIdGenerator(zk, zkLedgersRootPath, LongHierarchicalLedgerManager.IDGEN_ZNODE,
                 subIdGenerator, zkAcls);
     }
@@ -17,7 +17,18 @@
  */
 package org.apache.bookkeeper.meta;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hashing;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 import org.apache.bookkeeper.net.BookieId;
 
@@ -49,4 +60,119 @@ public interface LedgerAuditorManager extends AutoCloseable {
      * @return
      */
     BookieId getCurrentAuditor() throws IOException, InterruptedException;
+
+    /**
+     * Return the shard of the ledger id space this instance is responsible for auditing. The ledger id space
+     * is partitioned across all the instances taking part in the auditor election.
+     *
+     * @return the shard of this instance, or null if this instance is not taking part in the election yet
+     */
+    default AuditorShard getAuditorShard() throws IOException, InterruptedException {
+        return AuditorShard.ALL;
+    }
+
+    /**
+     * Publish the results of the checks of the shard of this instance, so that the auditor can merge the results
+     * of all the shards.
+     *
+     * @param stats values of the results of the checks, indexed by name
+     */
+    default void publishAuditorShardStats(Map<String, Integer> stats) throws IOException, InterruptedException {
+    }
+
+    /**
+     * Return the results of the checks published by the instances taking part in the auditor election.
+     *
+     * @return the results of the checks of each instance, indexed by name
+     */
+    default List<Map<String, Integer>> getAuditorShardStats() throws IOException, InterruptedException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * A partition of the ledger id space, assigned to one of the instances taking part in the auditor election.
+     *
+     * <p>The ledgers are assigned with a consistent hash over the identifiers of the instances, so that only the
+     * ledgers of a shard are re-assigned when an instance comes or goes, and all the instances agree on the
+     * assignment as long as they see the same instances, whatever the order of their election votes.
+     */
+    final class AuditorShard {
+
+        public static final AuditorShard ALL = new AuditorShard("", Collections.singleton(""));
+
+        // points of each instance on the hash ring, to balance the shards
+        private static final int VIRTUAL_NODES_PER_MEMBER = 100;
+
+        private final String member;
+        private final List<String> members;
+        private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+        /**
+         * @param member identifier of this instance
+         * @param members identifiers of all the instances taking part in the auditor election
+         */
+        public AuditorShard(String member, Collection<String> members) {
+            this.member = member;
+            this.members = new ArrayList<>(new TreeSet<>(members));
+            if (!this.members.contains(member)) {
+                throw new IllegalArgumentException("Auditor shard member " + member + " not in " + members);
+            }
+            // sorted, so that the points colliding on the ring are assigned the same way by all the instances
+            for (String m : this.members) {
+                for (int i = 0; i < VIRTUAL_NODES_PER_MEMBER; i++) {
+                    ring.putIfAbsent(hash(m + "#" + i), m);
+                }
+            }
+        }
+
+        private static long hash(String s) {
+            return Hashing.murmur3_128().hashString(s, UTF_8).asLong();
+        }
+
+        public String getMember() {
+            return member;
+        }
+
+        public List<String> getMembers() {
+            return Collections.unmodifiableList(members);
+        }
+
+        public int getNumShards() {
+            return members.size();
+        }
+
+        /**
+         * Return the identifier of the instance auditing the given ledger.
+         */
+        public String getOwner(long ledgerId) {
+            Map.Entry<Long, String> point = ring.ceilingEntry(Hashing.murmur3_128().hashLong(ledgerId).asLong());
+            return point != null ? point.getValue() : ring.firstEntry().getValue();
+        }
+
+        /**
+         * Return true if the given ledger belongs to this shard.
+         */
+        public boolean contains(long ledgerId) {
+            return members.size() == 1 || member.equals(getOwner(ledgerId));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AuditorShard)) {
+                return false;
+            }
+            AuditorShard other = (AuditorShard) o;
+            return member.equals(other.member) && members.equals(other.members);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * member.hashCode() + members.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return member + " of " + members;
+        }
+    }
 }
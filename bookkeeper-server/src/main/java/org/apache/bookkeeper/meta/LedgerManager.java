@@ -19,12 +19,14 @@ package org.apache.bookkeeper.meta;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgersChangeListener;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
 import org.apache.bookkeeper.versioning.Version;
 import org.apache.bookkeeper.versioning.Versioned;
@@ -126,6 +128,28 @@ public interface LedgerManager extends Closeable {
      */
     void unregisterLedgerMetadataListener(long ledgerId, LedgerMetadataListener listener);
 
+    /**
+     * Register a <i>listener</i> on the metadata changes of all the ledgers. The changes are watched
+     * with a single watch on the metadata store, whatever the number of ledgers, and the listener is
+     * only told which ledger changed, it has to read the new metadata itself if it needs it.
+     *
+     * @param listener
+     *          listener.
+     * @return true if the listener is registered, false if the ledger manager can't watch all the ledgers.
+     */
+    default boolean registerLedgersChangeListener(LedgersChangeListener listener) {
+        return false;
+    }
+
+    /**
+     * Unregister a <i>listener</i> registered by {@link #registerLedgersChangeListener(LedgersChangeListener)}.
+     *
+     * @param listener
+     *          listener.
+     */
+    default void unregisterLedgersChangeListener(LedgersChangeListener listener) {
+    }
+
     /**
      * Loop to process all ledgers.
      * <p>
@@ -160,6 +184,51 @@ public interface LedgerManager extends Closeable {
      */
     LedgerRangeIterator getLedgerRanges(long zkOpTimeOutMs);
 
+    /**
+     * Loop to scan a range of metadata from metadata storage, starting from a given ledger id. It allows to
+     * resume a scan from the last ledger id it processed.
+     *
+     * <p>The default implementation scans all the metadata and skips the ledgers below the start ledger id,
+     * ledger managers which can skip them more efficiently should override it.
+     *
+     * @param zkOpTimeOutMs
+     *            Iterator considers timeout while fetching ledger-range from
+     *            zk.
+     * @param startLedgerId
+     *            smallest ledger id returned by the iterator
+     * @return will return a iterator of the Ranges
+     */
+    default LedgerRangeIterator getLedgerRanges(long zkOpTimeOutMs, long startLedgerId) {
+        LedgerRangeIterator iterator = getLedgerRanges(zkOpTimeOutMs);
+        if (startLedgerId <= 0) {
+            return iterator;
+        }
+        return new LedgerRangeIterator() {
+            private LedgerRange nextRange = null;
+
+            @Override
+            public boolean hasNext() throws IOException {
+                while (nextRange == null && iterator.hasNext()) {
+                    LedgerRange range = iterator.next();
+                    if (range.end() >= startLedgerId) {
+                        nextRange = new LedgerRange(new TreeSet<>(range.getLedgers()).tailSet(startLedgerId));
+                    }
+                }
+                return nextRange != null;
+            }
+
+            @Override
+            public LedgerRange next() throws IOException {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                LedgerRange range = nextRange;
+                nextRange = null;
+                return range;
+            }
+        };
+    }
+
     /**
      * Used to represent the Ledgers range returned from the
      * current scan.
@@ -18,18 +18,11 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
 import java.util.NavigableSet;
-import java.util.NoSuchElementException;
 import org.apache.bookkeeper.conf.AbstractConfiguration;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
 import org.apache.bookkeeper.util.StringUtils;
-import org.apache.bookkeeper.util.ZkUtils;
 import org.apache.zookeeper.AsyncCallback;
-import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,13 +46,6 @@ class LegacyHierarchicalLedgerManager extends AbstractHierarchicalLedgerManager
     private static final String MAX_ID_SUFFIX = "9999";
     private static final String MIN_ID_SUFFIX = "0000";
 
-    private static final ThreadLocal<StringBuilder> threadLocalNodeBuilder = new ThreadLocal<StringBuilder>() {
-        @Override
-        protected StringBuilder initialValue() {
-            return new StringBuilder();
-        }
-    };
-
     /**
      * Constructor.
      *
@@ -153,135 +139,21 @@ class LegacyHierarchicalLedgerManager extends AbstractHierarchicalLedgerManager
 
     @Override
     public LedgerRangeIterator getLedgerRanges(long zkOpTimeoutMs) {
-        return new LegacyHierarchicalLedgerRangeIterator(zkOpTimeoutMs);
+        return getLedgerRanges(zkOpTimeoutMs, 0L);
     }
 
-    /**
-     * Iterator through each metadata bucket with hierarchical mode.
-     */
-    private class LegacyHierarchicalLedgerRangeIterator implements LedgerRangeIterator {
-        private Iterator<String> l1NodesIter = null;
-        private Iterator<String> l2NodesIter = null;
-        private String curL1Nodes = "";
-        private boolean iteratorDone = false;
-        private LedgerRange nextRange = null;
-        private final long zkOpTimeoutMs;
-
-        public LegacyHierarchicalLedgerRangeIterator(long zkOpTimeoutMs) {
-            this.zkOpTimeoutMs = zkOpTimeoutMs;
-        }
-
-        /**
-         * Iterate next level1 znode.
-         *
-         * @return false if have visited all level1 nodes
-         * @throws InterruptedException/KeeperException if error occurs reading zookeeper children
-         */
-        private boolean nextL1Node() throws KeeperException, InterruptedException {
-            l2NodesIter = null;
-            while (l2NodesIter == null) {
-                if (l1NodesIter.hasNext()) {
-                    curL1Nodes = l1NodesIter.next();
-                } else {
-                    return false;
-                }
-                // Top level nodes are always exactly 2 digits long. (Don't pick up long hierarchical top level nodes)
-                if (!isLedgerParentNode(curL1Nodes)) {
-                    continue;
-                }
-                List<String> l2Nodes = zk.getChildren(ledgerRootPath + "/" + curL1Nodes, null);
-                Collections.sort(l2Nodes);
-                l2NodesIter = l2Nodes.iterator();
-                if (!l2NodesIter.hasNext()) {
-                    l2NodesIter = null;
-                    continue;
-                }
-            }
-            return true;
-        }
-
-        private synchronized void preload() throws IOException {
-            while (nextRange == null && !iteratorDone) {
-                boolean hasMoreElements = false;
-                try {
-                    if (l1NodesIter == null) {
-                        List<String> l1Nodes = zk.getChildren(ledgerRootPath, null);
-                        Collections.sort(l1Nodes);
-                        l1NodesIter = l1Nodes.iterator();
-                        hasMoreElements = nextL1Node();
-                    } else if (l2NodesIter == null || !l2NodesIter.hasNext()) {
-                        hasMoreElements = nextL1Node();
-                    } else {
-                        hasMoreElements = true;
-                    }
-                } catch (KeeperException ke) {
-                    throw new IOException("Error preloading next range", ke);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Interrupted while preloading", ie);
-                }
-                if (hasMoreElements) {
-                    nextRange = getLedgerRangeByLevel(curL1Nodes, l2NodesIter.next());
-                    if (nextRange.size() == 0) {
-                        nextRange = null;
-                    }
-                } else {
-                    iteratorDone = true;
-                }
-            }
-        }
-
-        @Override
-        public synchronized boolean hasNext() throws IOException {
-            preload();
-            return nextRange != null && !iteratorDone;
-        }
-
-        @Override
-        public synchronized LedgerRange next() throws IOException {
-            if (!hasNext()) {
-                throw new NoSuchElementException();
-            }
-            LedgerRange r = nextRange;
-            nextRange = null;
-            return r;
-        }
-
-        /**
-         * Get a single node level1/level2.
-         *
-         * @param level1
-         *          1st level node name
-         * @param level2
-         *          2nd level node name
-         * @throws IOException
-         */
-        LedgerRange getLedgerRangeByLevel(final String level1, final String level2)
-                throws IOException {
-            StringBuilder nodeBuilder = threadLocalNodeBuilder.get();
-            nodeBuilder.setLength(0);
-            nodeBuilder.append(ledgerRootPath).append("/")
-                       .append(level1).append("/").append(level2);
-            String nodePath = nodeBuilder.toString();
-            List<String> ledgerNodes = null;
-            try {
-                ledgerNodes = ZkUtils.getChildrenInSingleNode(zk, nodePath, zkOpTimeoutMs);
-            } catch (KeeperException.NoNodeException e) {
-                /* If the node doesn't exist, we must have raced with a recursive node removal, just
-                 * return an empty list. */
-                ledgerNodes = new ArrayList<>();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IOException("Error when get child nodes from zk", e);
-            }
-            NavigableSet<Long> zkActiveLedgers = ledgerListToSet(ledgerNodes, nodePath);
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("All active ledgers from ZK for hash node "
-                          + level1 + "/" + level2 + " : " + zkActiveLedgers);
-            }
+    @Override
+    public LedgerRangeIterator getLedgerRanges(long zkOpTimeoutMs, long startLedgerId) {
+        // ledgers are stored under /(2 digits)/(4 digits)/L(4 digits)
+        return new LedgerBucketRangeIterator(2, startLedgerId,
+                StringUtils.getShortHierarchicalLedgerPath(Math.max(0L, startLedgerId)), zkOpTimeoutMs);
+    }
 
-            return new LedgerRange(zkActiveLedgers.subSet(getStartLedgerIdByLevel(level1, level2), true,
-                                                          getEndLedgerIdByLevel(level1, level2), true));
-        }
+    @Override
+    protected NavigableSet<Long> filterBucketLedgers(String bucketPath, NavigableSet<Long> ledgers)
+            throws IOException {
+        String[] nodes = bucketPath.substring(ledgerRootPath.length() + 1).split("/");
+        return ledgers.subSet(getStartLedgerIdByLevel(nodes[0], nodes[1]), true,
+                getEndLedgerIdByLevel(nodes[0], nodes[1]), true);
     }
 }
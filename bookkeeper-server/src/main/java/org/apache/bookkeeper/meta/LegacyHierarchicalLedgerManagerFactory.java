@@ -75,7 +75,8 @@ public class LegacyHierarchicalLedgerManagerFactory extends AbstractZkLedgerMana
             zk,
             ZKMetadataDriverBase.resolveZkLedgersRootPath(conf),
             LegacyHierarchicalLedgerManager.IDGEN_ZNODE,
-            zkAcls);
+            zkAcls,
+            conf.getZkLedgerIdPreallocationSize());
     }
 
     @Override
@@ -18,19 +18,11 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.Set;
 import org.apache.bookkeeper.conf.AbstractConfiguration;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
 import org.apache.bookkeeper.util.StringUtils;
-import org.apache.bookkeeper.util.ZkUtils;
 import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.AsyncCallback.VoidCallback;
-import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -139,172 +131,14 @@ class LongHierarchicalLedgerManager extends AbstractHierarchicalLedgerManager {
 
     @Override
     public LedgerRangeIterator getLedgerRanges(long zkOpTimeoutMs) {
-        return new LongHierarchicalLedgerRangeIterator(zkOpTimeoutMs);
+        return getLedgerRanges(zkOpTimeoutMs, 0L);
     }
 
-
-    /**
-     * Iterates recursively through each metadata bucket.
-     */
-    private class LongHierarchicalLedgerRangeIterator implements LedgerRangeIterator {
-        LedgerRangeIterator rootIterator;
-        final long zkOpTimeoutMs;
-
-        /**
-         * Returns all children with path as a parent.  If path is non-existent,
-         * returns an empty list anyway (after all, there are no children there).
-         * Maps all exceptions (other than NoNode) to IOException in keeping with
-         * LedgerRangeIterator.
-         *
-         * @param path
-         * @return Iterator into set of all children with path as a parent
-         * @throws IOException
-         */
-        List<String> getChildrenAt(String path) throws IOException {
-            try {
-                List<String> children = ZkUtils.getChildrenInSingleNode(zk, path, zkOpTimeoutMs);
-                Collections.sort(children);
-                return children;
-            } catch (KeeperException.NoNodeException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("NoNodeException at path {}, assumed race with deletion", path);
-                }
-                return new ArrayList<>();
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new IOException("Interrupted while reading ledgers at path " + path, ie);
-            }
-        }
-
-        /**
-         * Represents the ledger range rooted at a leaf node, returns at most one LedgerRange.
-         */
-        class LeafIterator implements LedgerRangeIterator {
-            // Null iff iteration is complete
-            LedgerRange range;
-
-            LeafIterator(String path) throws IOException {
-                List<String> ledgerLeafNodes = getChildrenAt(path);
-                Set<Long> ledgerIds = ledgerListToSet(ledgerLeafNodes, path);
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("All active ledgers from ZK for hash node {}: {}", path, ledgerIds);
-                }
-                if (!ledgerIds.isEmpty()) {
-                    range = new LedgerRange(ledgerIds);
-                } // else, hasNext() should return false so that advance will skip us and move on
-            }
-
-            @Override
-            public boolean hasNext() throws IOException {
-                return range != null;
-            }
-
-            @Override
-            public LedgerRange next() throws IOException {
-                if (range == null) {
-                    throw new NoSuchElementException(
-                            "next() must only be called if hasNext() is true");
-                }
-                LedgerRange ret = range;
-                range = null;
-                return ret;
-            }
-        }
-
-
-        /**
-         * The main constraint is that between calls one of two things must be true.
-         * 1) nextLevelIterator is null and thisLevelIterator.hasNext() == false: iteration complete, hasNext()
-         *    returns false
-         * 2) nextLevelIterator is non-null: nextLevelIterator.hasNext() must return true and nextLevelIterator.next()
-         *    must return the next LedgerRange
-         * The above means that nextLevelIterator != null ==> nextLevelIterator.hasNext()
-         * It also means that hasNext() iff nextLevelIterator != null
-         */
-        private class InnerIterator implements LedgerRangeIterator {
-            final String path;
-            final int level;
-
-            // Always non-null
-            final Iterator<String> thisLevelIterator;
-            // non-null iff nextLevelIterator.hasNext() is true
-            LedgerRangeIterator nextLevelIterator;
-
-            /**
-             * Builds InnerIterator.
-             *
-             * @param path Subpath for thisLevelIterator
-             * @param level Level of thisLevelIterator (must be <= 3)
-             * @throws IOException
-             */
-            InnerIterator(String path, int level) throws IOException {
-                this.path = path;
-                this.level = level;
-                thisLevelIterator = getChildrenAt(path).iterator();
-                advance();
-            }
-
-            /**
-             * Resolves the difference between cases 1 and 2 after nextLevelIterator is exhausted.
-             * Pre-condition: nextLevelIterator == null, thisLevelIterator != null
-             * Post-condition: nextLevelIterator == null && !thisLevelIterator.hasNext() OR
-             *                 nextLevelIterator.hasNext() == true and nextLevelIterator.next()
-             *                 yields the next result of next()
-             * @throws IOException Exception representing error
-             */
-            void advance() throws IOException {
-                while (thisLevelIterator.hasNext()) {
-                    String node = thisLevelIterator.next();
-                    if (level == 0 && !isLedgerParentNode(node)) {
-                        continue;
-                    }
-                    LedgerRangeIterator nextIterator = level < 3
-                            ? new InnerIterator(path + "/" + node, level + 1)
-                            : new LeafIterator(path + "/" + node);
-                    if (nextIterator.hasNext()) {
-                        nextLevelIterator = nextIterator;
-                        break;
-                    }
-                }
-            }
-
-            @Override
-            public boolean hasNext() throws IOException {
-                return nextLevelIterator != null;
-            }
-
-            @Override
-            public LedgerRange next() throws IOException {
-                LedgerRange ret = nextLevelIterator.next();
-                if (!nextLevelIterator.hasNext()) {
-                    nextLevelIterator = null;
-                    advance();
-                }
-                return ret;
-            }
-        }
-
-        private LongHierarchicalLedgerRangeIterator(long zkOpTimeoutMs) {
-            this.zkOpTimeoutMs = zkOpTimeoutMs;
-        }
-
-        private void bootstrap() throws IOException {
-            if (rootIterator == null) {
-                rootIterator = new InnerIterator(ledgerRootPath, 0);
-            }
-        }
-
-        @Override
-        public synchronized boolean hasNext() throws IOException {
-            bootstrap();
-            return rootIterator.hasNext();
-        }
-
-        @Override
-        public synchronized LedgerRange next() throws IOException {
-            bootstrap();
-            return rootIterator.next();
-        }
+    @Override
+    public LedgerRangeIterator getLedgerRanges(long zkOpTimeoutMs, long startLedgerId) {
+        // ledgers are stored under /(3 digits)/(4 digits)/(4 digits)/(4 digits)/L(4 digits)
+        return new LedgerBucketRangeIterator(4, startLedgerId,
+                StringUtils.getLongHierarchicalLedgerPath(Math.max(0L, startLedgerId)), zkOpTimeoutMs);
     }
 
     @Override
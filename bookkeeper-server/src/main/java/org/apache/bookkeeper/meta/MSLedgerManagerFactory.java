@@ -206,7 +206,8 @@ public class MSLedgerManagerFactory extends AbstractZkLedgerManagerFactory {
             zk,
             ZKMetadataDriverBase.resolveZkLedgersRootPath(conf),
             MsLedgerManager.IDGEN_ZNODE,
-            zkAcls);
+            zkAcls,
+            conf.getZkLedgerIdPreallocationSize());
     }
 
     static class MsLedgerManager implements LedgerManager, MetastoreWatcher {
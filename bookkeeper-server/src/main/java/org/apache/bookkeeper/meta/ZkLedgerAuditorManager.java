@@ -24,9 +24,14 @@ import static org.apache.bookkeeper.replication.ReplicationStats.ELECTION_ATTEMP
 import com.google.protobuf.TextFormat;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
@@ -56,10 +61,14 @@ public class ZkLedgerAuditorManager implements LedgerAuditorManager {
     private final ServerConfiguration conf;
     private final String basePath;
     private final String electionPath;
+    private final String shardStatsPath;
 
-    private String myVote;
+    private volatile String myVote;
+    private volatile String myBookieId;
 
     private static final String ELECTION_ZNODE = "auditorelection";
+    // not under the election path, whose children are all votes
+    private static final String SHARD_STATS_ZNODE = "auditorshards";
 
     // Represents the index of the auditor node
     private static final int AUDITOR_INDEX = 0;
@@ -85,6 +94,7 @@ public class ZkLedgerAuditorManager implements LedgerAuditorManager {
         this.basePath = ZKMetadataDriverBase.resolveZkLedgersRootPath(conf) + '/'
                 + BookKeeperConstants.UNDER_REPLICATION_NODE;
         this.electionPath = basePath + '/' + ELECTION_ZNODE;
+        this.shardStatsPath = basePath + '/' + SHARD_STATS_ZNODE;
         this.electionAttempts = statsLogger.getCounter(ELECTION_ATTEMPTS);
     }
 
@@ -92,6 +102,7 @@ public class ZkLedgerAuditorManager implements LedgerAuditorManager {
     public void tryToBecomeAuditor(String bookieId, Consumer<AuditorEvent> listener)
             throws IOException, InterruptedException {
         this.listener = listener;
+        this.myBookieId = bookieId;
         createElectorPath();
 
         try {
@@ -171,6 +182,104 @@ public class ZkLedgerAuditorManager implements LedgerAuditorManager {
         }
     }
 
+    @Override
+    public AuditorShard getAuditorShard() throws IOException, InterruptedException {
+        String vote = myVote;
+        String bookieId = myBookieId;
+        if (vote == null) {
+            return null;
+        }
+        try {
+            List<String> children = zkc.getChildren(getVotePath(""), false);
+            if (!children.contains(StringUtils.substringAfterLast(vote, PATH_SEPARATOR))) {
+                return null;
+            }
+            // the shards are assigned on the bookie ids, which do not change when a vote is cast again
+            Set<String> members = new HashSet<>();
+            for (String child : children) {
+                try {
+                    byte[] data = zkc.getData(getVotePath(PATH_SEPARATOR + child), false, null);
+                    AuditorVoteFormat.Builder builder = AuditorVoteFormat.newBuilder();
+                    TextFormat.merge(new String(data, UTF_8), builder);
+                    members.add(builder.build().getBookieId());
+                } catch (KeeperException.NoNodeException nne) {
+                    // the vote was withdrawn since listed
+                }
+            }
+            members.add(bookieId);
+            return new AuditorShard(bookieId, members);
+        } catch (KeeperException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void publishAuditorShardStats(Map<String, Integer> stats) throws IOException, InterruptedException {
+        String bookieId = myBookieId;
+        if (bookieId == null) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> e : stats.entrySet()) {
+            sb.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        byte[] data = sb.toString().getBytes(UTF_8);
+        String path = shardStatsPath + PATH_SEPARATOR + bookieId;
+        try {
+            try {
+                zkc.setData(path, data, -1);
+            } catch (KeeperException.NoNodeException nne) {
+                if (zkc.exists(shardStatsPath, false) == null) {
+                    try {
+                        zkc.create(shardStatsPath, new byte[0], ZkUtils.getACLs(conf), CreateMode.PERSISTENT);
+                    } catch (KeeperException.NodeExistsException nee) {
+                        // do nothing, someone else could have created it
+                    }
+                }
+                // ephemeral, so that the results of a gone instance are no longer merged
+                zkc.create(path, data, ZkUtils.getACLs(conf), CreateMode.EPHEMERAL);
+            }
+        } catch (KeeperException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Integer>> getAuditorShardStats() throws IOException, InterruptedException {
+        List<Map<String, Integer>> result = new ArrayList<>();
+        try {
+            List<String> children;
+            try {
+                children = zkc.getChildren(shardStatsPath, false);
+            } catch (KeeperException.NoNodeException nne) {
+                return result;
+            }
+            for (String child : children) {
+                byte[] data;
+                try {
+                    data = zkc.getData(shardStatsPath + PATH_SEPARATOR + child, false, null);
+                } catch (KeeperException.NoNodeException nne) {
+                    continue;
+                }
+                Map<String, Integer> stats = new HashMap<>();
+                for (String line : new String(data, UTF_8).split("\n")) {
+                    int sep = line.indexOf('=');
+                    if (sep > 0) {
+                        try {
+                            stats.put(line.substring(0, sep), Integer.parseInt(line.substring(sep + 1)));
+                        } catch (NumberFormatException nfe) {
+                            log.warn("Ignoring invalid auditor shard stat {} of {}", line, child);
+                        }
+                    }
+                }
+                result.add(stats);
+            }
+            return result;
+        } catch (KeeperException e) {
+            throw new IOException(e);
+        }
+    }
+
     @Override
     public void close() throws Exception {
         log.info("Shutting down AuditorElector");
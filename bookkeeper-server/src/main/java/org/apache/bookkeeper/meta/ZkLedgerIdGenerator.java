@@ -18,6 +18,10 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
@@ -27,6 +31,8 @@ import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.ACL;
 import org.slf4j.Logger;
@@ -47,14 +53,29 @@ public class ZkLedgerIdGenerator implements LedgerIdGenerator {
     final ZooKeeper zk;
     final String ledgerPrefix;
     final List<ACL> zkAcls;
+    // number of ids reserved at once, ids are generated one by one if <= 1
+    final int idRangeSize;
+    // ids reserved and not handed out yet, and callbacks waiting for an id
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+    private final Deque<GenericCallback<Long>> waiters = new ArrayDeque<>();
+    private boolean reserving = false;
 
     public ZkLedgerIdGenerator(ZooKeeper zk,
                                String ledgersPath,
                                String idGenZnodeName,
                                List<ACL> zkAcls) {
+        this(zk, ledgersPath, idGenZnodeName, zkAcls, 1);
+    }
+
+    public ZkLedgerIdGenerator(ZooKeeper zk,
+                               String ledgersPath,
+                               String idGenZnodeName,
+                               List<ACL> zkAcls,
+                               int idRangeSize) {
         this.zk = zk;
         ledgerPrefix = createLedgerPrefix(ledgersPath, idGenZnodeName);
         this.zkAcls = zkAcls;
+        this.idRangeSize = idRangeSize;
     }
 
     public static String createLedgerPrefix(String ledgersPath, String idGenZnodeName) {
@@ -69,7 +90,124 @@ public class ZkLedgerIdGenerator implements LedgerIdGenerator {
 
     @Override
     public void generateLedgerId(final GenericCallback<Long> cb) {
-        generateLedgerIdImpl(cb, zk, ledgerPrefix, zkAcls);
+        if (idRangeSize <= 1) {
+            generateLedgerIdImpl(cb, zk, ledgerPrefix, zkAcls);
+            return;
+        }
+        Long ledgerId;
+        synchronized (this) {
+            ledgerId = reservedIds.poll();
+            if (ledgerId == null) {
+                waiters.add(cb);
+                if (reserving) {
+                    return;
+                }
+                reserving = true;
+            }
+        }
+        if (ledgerId != null) {
+            cb.operationComplete(BKException.Code.OK, ledgerId);
+        } else {
+            reserveLedgerIds();
+        }
+    }
+
+    private void reserveLedgerIds() {
+        generateLedgerIdsImpl((rc, ledgerIds) -> {
+            List<GenericCallback<Long>> served = new ArrayList<>();
+            List<Long> servedIds = new ArrayList<>();
+            boolean reserveMore;
+            synchronized (this) {
+                if (rc == BKException.Code.OK) {
+                    reservedIds.addAll(ledgerIds);
+                    while (!waiters.isEmpty() && !reservedIds.isEmpty()) {
+                        served.add(waiters.poll());
+                        servedIds.add(reservedIds.poll());
+                    }
+                } else {
+                    served.addAll(waiters);
+                    waiters.clear();
+                }
+                reserveMore = !waiters.isEmpty();
+                reserving = reserveMore;
+            }
+            for (int i = 0; i < served.size(); i++) {
+                if (rc == BKException.Code.OK) {
+                    served.get(i).operationComplete(rc, servedIds.get(i));
+                } else {
+                    served.get(i).operationComplete(rc, null);
+                }
+            }
+            if (reserveMore) {
+                reserveLedgerIds();
+            }
+        }, zk, ledgerPrefix, zkAcls, idRangeSize);
+    }
+
+    /**
+     * Generate a range of ledger ids with a single zookeeper multi operation, creating and then deleting
+     * <i>count</i> sequential znodes. The ids may not be contiguous if other clients generate ids concurrently.
+     */
+    public static void generateLedgerIdsImpl(final GenericCallback<List<Long>> cb, ZooKeeper zk,
+                                             String ledgerPrefix, List<ACL> zkAcls, int count) {
+        List<Op> creates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            creates.add(Op.create(ledgerPrefix, new byte[0], zkAcls, CreateMode.EPHEMERAL_SEQUENTIAL));
+        }
+        zk.multi(creates, (rc, path, ctx, results) -> {
+            if (rc == KeeperException.Code.NONODE.intValue()) {
+                // the id generation path does not exist yet, create it while generating a single id
+                generateLedgerIdImpl((singleRc, ledgerId) -> cb.operationComplete(singleRc,
+                        singleRc == BKException.Code.OK ? Collections.singletonList(ledgerId) : null),
+                        zk, ledgerPrefix, zkAcls);
+                return;
+            } else if (rc != KeeperException.Code.OK.intValue()) {
+                LOG.error("Could not generate new ledger ids",
+                        KeeperException.create(KeeperException.Code.get(rc), path));
+                cb.operationComplete(BKException.Code.ZKException, null);
+                return;
+            }
+
+            List<Long> ledgerIds = new ArrayList<>(count);
+            List<Op> deletes = new ArrayList<>(count);
+            for (OpResult result : results) {
+                String idPathName = ((OpResult.CreateResult) result).getPath();
+                deletes.add(Op.delete(idPathName, -1));
+                try {
+                    long ledgerId = getLedgerIdFromGenPath(idPathName, ledgerPrefix);
+                    if (ledgerId >= 0 && ledgerId < Integer.MAX_VALUE) {
+                        ledgerIds.add(ledgerId);
+                    }
+                } catch (IOException e) {
+                    LOG.error("Could not extract ledger-id from id gen path:" + idPathName, e);
+                }
+            }
+            if (ledgerIds.isEmpty()) {
+                cb.operationComplete(BKException.Code.LedgerIdOverflowException, null);
+            } else {
+                cb.operationComplete(BKException.Code.OK, ledgerIds);
+            }
+
+            // delete the znodes for id generation
+            zk.multi(deletes, (deleteRc, deletePath, deleteCtx, deleteResults) -> {
+                if (deleteRc == KeeperException.Code.NONODE.intValue()) {
+                    // some znodes are already deleted, e.g. by a retry of a committed multi after a connection
+                    // loss, and the multi deleted none of them: delete the remaining ones one by one
+                    for (Op delete : deletes) {
+                        zk.delete(delete.getPath(), -1, (singleRc, singlePath, singleCtx) -> {
+                            if (singleRc != KeeperException.Code.OK.intValue()
+                                    && singleRc != KeeperException.Code.NONODE.intValue()) {
+                                LOG.warn("Exception during deleting znode for id generation : ",
+                                        KeeperException.create(KeeperException.Code.get(singleRc), singlePath));
+                            }
+                        }, null);
+                    }
+                } else if (deleteRc != KeeperException.Code.OK.intValue()) {
+                    LOG.warn("Exception during deleting znodes for id generation : ",
+                            KeeperException.create(KeeperException.Code.get(deleteRc), deletePath));
+                }
+            }, null);
+        }, null);
     }
 
     public static void generateLedgerIdImpl(final GenericCallback<Long> cb, ZooKeeper zk, String ledgerPrefix,
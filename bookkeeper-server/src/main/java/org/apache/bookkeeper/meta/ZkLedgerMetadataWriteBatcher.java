@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.meta;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.ZooKeeper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batches the ledger metadata writes of a zookeeper based ledger manager into zookeeper multi operations.
+ *
+ * <p>At most one batch is outstanding at a time. The operations submitted while a batch is outstanding
+ * are queued and sent together once it completes, so batches grow with the write concurrency without
+ * delaying writes when there is no concurrency. A multi operation is atomic, so if an operation fails its
+ * batch, it is executed again on its own to get its own result, and the other operations are batched again.
+ */
+class ZkLedgerMetadataWriteBatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ZkLedgerMetadataWriteBatcher.class);
+
+    // stay well below the default jute.maxbuffer of 1MB
+    private static final int MAX_BATCH_BYTES = 512 * 1024;
+
+    /**
+     * A ledger metadata write queued in the batcher.
+     */
+    static class BatchedOp {
+        private final Op op;
+        private final int size;
+        private final Consumer<OpResult> onCommitted;
+        private final Consumer<Runnable> runAlone;
+
+        /**
+         * @param op the zookeeper operation to batch
+         * @param size size of the data written by the operation
+         * @param onCommitted called with the result of the operation when its batch is committed
+         * @param runAlone executes the operation on its own, calling the given callback once completed
+         */
+        BatchedOp(Op op, int size, Consumer<OpResult> onCommitted, Consumer<Runnable> runAlone) {
+            this.op = op;
+            this.size = size + op.getPath().length();
+            this.onCommitted = onCommitted;
+            this.runAlone = runAlone;
+        }
+    }
+
+    private final ZooKeeper zk;
+    private final int maxOps;
+    private final Deque<BatchedOp> pending = new ArrayDeque<>();
+    private boolean inFlight = false;
+
+    ZkLedgerMetadataWriteBatcher(ZooKeeper zk, int maxOps) {
+        this.zk = zk;
+        this.maxOps = maxOps;
+    }
+
+    void submit(BatchedOp op) {
+        List<BatchedOp> batch;
+        synchronized (this) {
+            pending.add(op);
+            if (inFlight) {
+                return;
+            }
+            inFlight = true;
+            batch = nextBatch();
+        }
+        send(batch);
+    }
+
+    private List<BatchedOp> nextBatch() {
+        List<BatchedOp> batch = new ArrayList<>(Math.min(maxOps, pending.size()));
+        int bytes = 0;
+        while (!pending.isEmpty() && batch.size() < maxOps) {
+            BatchedOp op = pending.peek();
+            if (!batch.isEmpty() && bytes + op.size > MAX_BATCH_BYTES) {
+                break;
+            }
+            bytes += op.size;
+            batch.add(pending.poll());
+        }
+        return batch;
+    }
+
+    private void send(List<BatchedOp> batch) {
+        if (batch.size() == 1) {
+            batch.get(0).runAlone.accept(this::batchCompleted);
+            return;
+        }
+        List<Op> ops = new ArrayList<>(batch.size());
+        for (BatchedOp op : batch) {
+            ops.add(op.op);
+        }
+        zk.multi(ops, (rc, path, ctx, results) -> {
+            if (rc == KeeperException.Code.OK.intValue()) {
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).onCommitted.accept(results.get(i));
+                }
+            } else {
+                int failed = failedOpIndex(results);
+                if (failed < 0) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Batch of {} ledger metadata writes failed with {}, retrying them one by one",
+                                batch.size(), KeeperException.Code.get(rc));
+                    }
+                    for (BatchedOp op : batch) {
+                        op.runAlone.accept(() -> {});
+                    }
+                } else {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Ledger metadata write on {} failed with {}, retrying it alone and batching the"
+                                + " {} other writes again", batch.get(failed).op.getPath(),
+                                KeeperException.Code.get(rc), batch.size() - 1);
+                    }
+                    // only this write failed, e.g. the creation of a ledger in a bucket which does not exist yet,
+                    // which is created along the ledger when it is retried alone
+                    batch.get(failed).runAlone.accept(() -> {});
+                    synchronized (this) {
+                        for (int i = batch.size() - 1; i >= 0; i--) {
+                            if (i != failed) {
+                                pending.addFirst(batch.get(i));
+                            }
+                        }
+                    }
+                }
+            }
+            batchCompleted();
+        }, null);
+    }
+
+    /**
+     * Find the operation which failed a multi operation. The operations before it succeeded before being rolled
+     * back, and the operations after it were not executed.
+     *
+     * @return index of the failed operation, or -1 if the multi failed as a whole
+     */
+    static int failedOpIndex(List<OpResult> results) {
+        if (results == null) {
+            return -1;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            OpResult result = results.get(i);
+            if (result instanceof OpResult.ErrorResult) {
+                int err = ((OpResult.ErrorResult) result).getErr();
+                if (err != KeeperException.Code.OK.intValue()
+                        && err != KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void batchCompleted() {
+        List<BatchedOp> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                inFlight = false;
+                return;
+            }
+            batch = nextBatch();
+        }
+        send(batch);
+    }
+}
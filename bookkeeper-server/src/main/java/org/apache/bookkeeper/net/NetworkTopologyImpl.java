@@ -19,9 +19,7 @@ package org.apache.bookkeeper.net;
 
 import com.google.common.base.Strings;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -389,6 +387,10 @@ public class NetworkTopologyImpl implements NetworkTopology {
      * The lock used to manage access.
      */
     protected ReadWriteLock netlock = new ReentrantReadWriteLock();
+    /**
+     * Flattened view of the leaves, reset on every change and rebuilt on the next lookup.
+     */
+    private volatile TopologySnapshot snapshot = null;
 
     public NetworkTopologyImpl() {
         clusterMap = new InnerNode(InnerNode.ROOT);
@@ -425,6 +427,7 @@ public class NetworkTopologyImpl implements NetworkTopology {
                         + " at an illegal network location");
             }
             if (clusterMap.add(node)) {
+                snapshot = null;
                 LOG.info("Adding a new node: " + NodeBase.getPath(node));
                 if (rack == null) {
                     numOfRacks++;
@@ -501,6 +504,7 @@ public class NetworkTopologyImpl implements NetworkTopology {
         netlock.writeLock().lock();
         try {
             if (clusterMap.remove(node)) {
+                snapshot = null;
                 InnerNode rack = (InnerNode) getNode(node.getNetworkLocation());
                 if (rack == null) {
                     numOfRacks--;
@@ -577,24 +581,49 @@ public class NetworkTopologyImpl implements NetworkTopology {
     /** @return the total number of racks */
     @Override
     public int getNumOfRacks() {
-        netlock.readLock().lock();
-        try {
-            return numOfRacks;
-        } finally {
-            netlock.readLock().unlock();
-        }
+        return getSnapshot().getNumOfRacks();
     }
 
     /** @return the total number of leaf nodes */
     public int getNumOfLeaves() {
+        return getSnapshot().getNumOfLeaves();
+    }
+
+    /**
+     * Return the current snapshot of the topology, building it if the topology changed since the
+     * last one was built. The snapshot is published while holding the read lock, so a concurrent
+     * change, which resets it under the write lock, can't be lost.
+     */
+    private TopologySnapshot getSnapshot() {
+        TopologySnapshot current = snapshot;
+        if (null != current) {
+            return current;
+        }
         netlock.readLock().lock();
         try {
-            return clusterMap.getNumOfLeaves();
+            current = snapshot;
+            if (null == current) {
+                List<Node> leaves = new ArrayList<Node>(clusterMap.getNumOfLeaves());
+                collectLeaves(clusterMap, leaves);
+                current = new TopologySnapshot(leaves, numOfRacks);
+                snapshot = current;
+            }
+            return current;
         } finally {
             netlock.readLock().unlock();
         }
     }
 
+    private static void collectLeaves(InnerNode node, List<Node> leaves) {
+        for (Node child : node.getChildren()) {
+            if (child instanceof InnerNode) {
+                collectLeaves((InnerNode) child, leaves);
+            } else {
+                leaves.add(child);
+            }
+        }
+    }
+
     /**
      * Return the distance between two nodes.
      *
@@ -749,47 +778,17 @@ public class NetworkTopologyImpl implements NetworkTopology {
     }
 
     /**
-     * Return leaves in <i>scope</i>.
+     * Return leaves in <i>scope</i>. If scope starts with ~, return all the leaves except the ones in
+     * the comma separated scopes that follow it.
+     *
+     * <p>The lookup is served by a snapshot of the topology, without taking the topology lock.
+     *
      * @param scope a path string
-     * @return leaves nodes under specific scope
+     * @return an unmodifiable set of the leaves under the scope
      */
-    private Set<Node> doGetLeaves(String scope) {
-        Node node = getNode(scope);
-        Set<Node> leafNodes = new HashSet<Node>();
-        if (node == null) {
-            return leafNodes;
-        }
-
-        if (!(node instanceof InnerNode)) {
-            leafNodes.add(node);
-        } else {
-            InnerNode innerNode = (InnerNode) node;
-            for (int i = 0; i < innerNode.getNumOfLeaves(); i++) {
-                leafNodes.add(innerNode.getLeaf(i, null));
-            }
-        }
-        return leafNodes;
-    }
-
     @Override
     public Set<Node> getLeaves(String scope) {
-        netlock.readLock().lock();
-        try {
-            if (scope.startsWith(INVERSE)) {
-                Set<Node> allNodes = doGetLeaves(NodeBase.ROOT);
-                String[] excludeScopes = scope.substring(1).split(NODE_SEPARATOR);
-                Set<Node> excludeNodes = new HashSet<Node>();
-                Arrays.stream(excludeScopes).forEach((excludeScope) -> {
-                    excludeNodes.addAll(doGetLeaves(excludeScope));
-                });
-                allNodes.removeAll(excludeNodes);
-                return allNodes;
-            } else {
-                return doGetLeaves(scope);
-            }
-        } finally {
-            netlock.readLock().unlock();
-        }
+        return getSnapshot().getLeaves(scope);
     }
 
     @Override
@@ -801,26 +800,18 @@ public class NetworkTopologyImpl implements NetworkTopology {
         }
         scope = NodeBase.normalize(scope);
         int count = 0; // the number of nodes in both scope & excludedNodes
-        netlock.readLock().lock();
-        try {
-            for (Node node : excludedNodes) {
-                if ((NodeBase.getPath(node) + NodeBase.PATH_SEPARATOR_STR).startsWith(scope
-                        + NodeBase.PATH_SEPARATOR_STR)) {
-                    count++;
-                }
-            }
-            Node n = getNode(scope);
-            int scopeNodeCount = 0;
-            if (n instanceof InnerNode) {
-                scopeNodeCount = ((InnerNode) n).getNumOfLeaves();
+        for (Node node : excludedNodes) {
+            if ((NodeBase.getPath(node) + NodeBase.PATH_SEPARATOR_STR).startsWith(scope
+                    + NodeBase.PATH_SEPARATOR_STR)) {
+                count++;
             }
-            if (isExcluded) {
-                return clusterMap.getNumOfLeaves() - scopeNodeCount - excludedNodes.size() + count;
-            } else {
-                return scopeNodeCount - count;
-            }
-        } finally {
-            netlock.readLock().unlock();
+        }
+        TopologySnapshot current = getSnapshot();
+        int scopeNodeCount = current.getNumOfLeaves(scope);
+        if (isExcluded) {
+            return current.getNumOfLeaves() - scopeNodeCount - excludedNodes.size() + count;
+        } else {
+            return scopeNodeCount - count;
         }
     }
 
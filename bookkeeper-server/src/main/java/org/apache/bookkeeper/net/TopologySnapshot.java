@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, flattened view of the leaves of a {@link NetworkTopologyImpl}.
+ *
+ * <p>The leaves under every inner node (root, regions, racks) are computed once when the snapshot
+ * is built, so the lookups done for each ensemble placement don't walk the tree nor take the
+ * topology lock. A snapshot is built lazily after each membership change of the topology.
+ */
+final class TopologySnapshot {
+
+    private final Set<Node> allLeaves;
+    // leaves under each inner node, keyed by the path of the inner node
+    private final Map<String, Set<Node>> innerNodeLeaves;
+    // leaves keyed by their own path
+    private final Map<String, Node> leaves;
+    private final int numOfRacks;
+
+    TopologySnapshot(List<Node> leafNodes, int numOfRacks) {
+        Map<String, List<Node>> scopes = new HashMap<>();
+        Map<String, Node> leaves = new HashMap<>();
+        for (Node leaf : leafNodes) {
+            leaves.put(NodeBase.getPath(leaf), leaf);
+            String location = NodeBase.normalize(leaf.getNetworkLocation());
+            // the leaf belongs to the scope of each of its ancestors
+            int idx = 0;
+            while (idx >= 0) {
+                idx = location.indexOf(NodeBase.PATH_SEPARATOR, idx + 1);
+                String scope = idx < 0 ? location : location.substring(0, idx);
+                scopes.computeIfAbsent(scope, s -> new ArrayList<>()).add(leaf);
+            }
+        }
+        Map<String, Set<Node>> innerNodeLeaves = new HashMap<>();
+        scopes.forEach((scope, nodes) -> innerNodeLeaves.put(scope, immutableSet(nodes)));
+        this.allLeaves = immutableSet(leafNodes);
+        innerNodeLeaves.put(NodeBase.ROOT, allLeaves);
+        this.innerNodeLeaves = innerNodeLeaves;
+        this.leaves = leaves;
+        this.numOfRacks = numOfRacks;
+    }
+
+    private static Set<Node> immutableSet(List<Node> nodes) {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(nodes));
+    }
+
+    int getNumOfRacks() {
+        return numOfRacks;
+    }
+
+    int getNumOfLeaves() {
+        return allLeaves.size();
+    }
+
+    /**
+     * Return the number of leaves under the inner node at <i>scope</i>, or 0 if <i>scope</i> is not
+     * an inner node.
+     */
+    int getNumOfLeaves(String scope) {
+        Set<Node> scopeLeaves = innerNodeLeaves.get(NodeBase.normalize(scope));
+        return null == scopeLeaves ? 0 : scopeLeaves.size();
+    }
+
+    /**
+     * Return the leaves under <i>scope</i>. If scope starts with ~, return all the leaves except the
+     * ones under any of the comma separated scopes that follow it.
+     *
+     * @param scope a path string
+     * @return an unmodifiable set of the leaves under the scope
+     */
+    Set<Node> getLeaves(String scope) {
+        if (!scope.startsWith(NetworkTopologyImpl.INVERSE)) {
+            return doGetLeaves(scope);
+        }
+        Set<Node> excludeNodes = new HashSet<>();
+        for (String excludeScope : scope.substring(1).split(NetworkTopologyImpl.NODE_SEPARATOR)) {
+            excludeNodes.addAll(doGetLeaves(excludeScope));
+        }
+        if (excludeNodes.isEmpty()) {
+            return allLeaves;
+        }
+        Set<Node> result = new LinkedHashSet<>();
+        for (Node leaf : allLeaves) {
+            if (!excludeNodes.contains(leaf)) {
+                result.add(leaf);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private Set<Node> doGetLeaves(String scope) {
+        String path = NodeBase.normalize(scope);
+        Set<Node> scopeLeaves = innerNodeLeaves.get(path);
+        if (null != scopeLeaves) {
+            return scopeLeaves;
+        }
+        Node leaf = leaves.get(path);
+        return null == leaf ? Collections.emptySet() : Collections.singleton(leaf);
+    }
+}
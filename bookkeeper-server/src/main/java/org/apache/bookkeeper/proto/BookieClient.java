@@ -24,6 +24,7 @@ import io.netty.util.ReferenceCounted;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.api.DigestType;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
@@ -230,6 +231,37 @@ public interface BookieClient {
     CompletableFuture<AvailabilityOfEntriesOfLedger> getListOfEntriesOfLedger(BookieId address,
             long ledgerId);
 
+    /**
+     * Makes async request asking a bookie to copy the entries of a ledger fragment
+     * from the bookies of the fragment's ensemble into its own storage, and returns
+     * Future for the number of bytes copied. The future only completes once all the
+     * entries are durable on the target bookie.
+     *
+     * @param address
+     *            BookieId of the bookie which should store the entries
+     * @param ledgerId
+     *            ledgerId
+     * @param firstEntryId
+     *            first entry of the range to copy
+     * @param lastEntryId
+     *            last entry of the range to copy, inclusive
+     * @param masterKey
+     *            master key of the ledger
+     * @param digestType
+     *            digest type of the ledger
+     * @param ensemble
+     *            ensemble of the fragment holding the entries
+     * @param writeQuorumSize
+     *            write quorum size of the ledger
+     * @param ackQuorumSize
+     *            ack quorum size of the ledger
+     * @return returns Future
+     */
+    CompletableFuture<Long> copyLedgerFragment(BookieId address, long ledgerId,
+                                               long firstEntryId, long lastEntryId, byte[] masterKey,
+                                               DigestType digestType, List<BookieId> ensemble,
+                                               int writeQuorumSize, int ackQuorumSize);
+
     /**
      * @return whether bookie client object has been closed
      */
@@ -49,12 +49,14 @@ import org.apache.bookkeeper.auth.AuthProviderFactoryFactory;
 import org.apache.bookkeeper.auth.ClientAuthProvider;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.api.DigestType;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureCopyLedgerFragment;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureGetListOfEntriesOfLedger;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
@@ -339,6 +341,36 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         return futureResult;
     }
 
+    @Override
+    public CompletableFuture<Long> copyLedgerFragment(BookieId address, long ledgerId,
+                                                      long firstEntryId, long lastEntryId, byte[] masterKey,
+                                                      DigestType digestType, List<BookieId> ensemble,
+                                                      int writeQuorumSize, int ackQuorumSize) {
+        FutureCopyLedgerFragment futureResult = new FutureCopyLedgerFragment(ledgerId);
+        final PerChannelBookieClientPool client = lookupClient(address);
+        if (client == null) {
+            futureResult.copyLedgerFragmentComplete(getRc(BKException.Code.BookieHandleNotAvailableException),
+                    ledgerId, 0L);
+            return futureResult;
+        }
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                try {
+                    executor.executeOrdered(ledgerId, () ->
+                            futureResult.copyLedgerFragmentComplete(rc, ledgerId, 0L)
+                    );
+                } catch (RejectedExecutionException re) {
+                    futureResult.copyLedgerFragmentComplete(getRc(BKException.Code.InterruptedException),
+                            ledgerId, 0L);
+                }
+            } else {
+                pcbc.copyLedgerFragment(ledgerId, firstEntryId, lastEntryId, masterKey,
+                        digestType, ensemble, writeQuorumSize, ackQuorumSize, futureResult);
+            }
+        }, ledgerId);
+        return futureResult;
+    }
+
     private void completeRead(final int rc,
                               final long ledgerId,
                               final long entryId,
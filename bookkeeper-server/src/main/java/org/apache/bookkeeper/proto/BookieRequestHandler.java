@@ -24,8 +24,13 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.group.ChannelGroup;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.auth.BookKeeperPrincipal;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.processor.RequestProcessor;
 
@@ -44,6 +49,10 @@ public class BookieRequestHandler extends ChannelInboundHandlerAdapter {
 
     private ByteBuf pendingSendResponses = null;
     private int maxPendingResponsesSize = DEFAULT_PENDING_RESPONSE_SIZE;
+    // traces of the sampled requests whose responses are pending
+    private List<RequestTrace> pendingTraces = null;
+    // tenant of the requests of the channel, resolved on the first scheduled request
+    private String tenant = null;
 
     BookieRequestHandler(ServerConfiguration conf, RequestProcessor processor, ChannelGroup allChannels) {
         this.requestProcessor = processor;
@@ -54,6 +63,42 @@ public class BookieRequestHandler extends ChannelInboundHandlerAdapter {
         return ctx;
     }
 
+    /**
+     * @return the authenticated principal of the client of the channel, or null if it is not authenticated
+     */
+    BookKeeperPrincipal principal() {
+        // the requests are only processed once the client is authenticated
+        BookieNettyServer.BookieSideConnectionPeerContextHandler contextHandler =
+                ctx.pipeline().get(BookieNettyServer.BookieSideConnectionPeerContextHandler.class);
+        BookKeeperPrincipal principal = contextHandler == null ? null
+                : contextHandler.getConnectionPeer().getAuthorizedId();
+        if (principal == null || BookKeeperPrincipal.ANONYMOUS.getName().equals(principal.getName())) {
+            return null;
+        }
+        return principal;
+    }
+
+    /**
+     * @return the tenant of the requests of the channel, which is the authenticated principal of the
+     *         client, or its host address if it is not authenticated
+     */
+    String tenant() {
+        String tenant = this.tenant;
+        if (tenant == null) {
+            BookKeeperPrincipal principal = principal();
+            SocketAddress remoteAddress = ctx.channel().remoteAddress();
+            if (principal != null) {
+                tenant = principal.getName();
+            } else if (remoteAddress instanceof InetSocketAddress) {
+                tenant = ((InetSocketAddress) remoteAddress).getHostString();
+            } else {
+                tenant = String.valueOf(remoteAddress);
+            }
+            this.tenant = tenant;
+        }
+        return tenant;
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         log.info("Channel connected {}", ctx.channel());
@@ -90,11 +135,18 @@ public class BookieRequestHandler extends ChannelInboundHandlerAdapter {
         requestProcessor.processRequest(msg, this);
     }
 
-    public synchronized void prepareSendResponseV2(int rc, BookieProtocol.ParsedAddRequest req) {
+    public synchronized void prepareSendResponseV2(int rc, BookieProtocol.ParsedAddRequest req,
+                                                   RequestTrace trace) {
         if (pendingSendResponses == null) {
             pendingSendResponses = ctx().alloc().directBuffer(maxPendingResponsesSize);
         }
         BookieProtoEncoding.ResponseEnDeCoderPreV3.serializeAddResponseInto(rc, req, pendingSendResponses);
+        if (trace != null) {
+            if (pendingTraces == null) {
+                pendingTraces = new ArrayList<>();
+            }
+            pendingTraces.add(trace);
+        }
     }
 
     public synchronized void flushPendingResponse() {
@@ -109,5 +161,11 @@ public class BookieRequestHandler extends ChannelInboundHandlerAdapter {
             }
             pendingSendResponses = null;
         }
+        if (pendingTraces != null && !pendingTraces.isEmpty()) {
+            for (int i = 0; i < pendingTraces.size(); i++) {
+                pendingTraces.get(i).complete();
+            }
+            pendingTraces.clear();
+        }
     }
 }
@@ -21,9 +21,13 @@
 package org.apache.bookkeeper.proto;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_IO_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_GOVERNOR_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.REQUEST_TRACE_SCOPE;
 import static org.apache.bookkeeper.proto.RequestUtils.hasFlag;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -33,12 +37,15 @@ import io.netty.channel.Channel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
+import java.io.IOException;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import lombok.AccessLevel;
@@ -46,14 +53,24 @@ import lombok.Getter;
 import org.apache.bookkeeper.auth.AuthProviderFactoryFactory;
 import org.apache.bookkeeper.auth.AuthToken;
 import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieImpl;
+import org.apache.bookkeeper.bookie.MemoryGovernor;
+import org.apache.bookkeeper.bookie.datainteg.EntryCopier;
+import org.apache.bookkeeper.bookie.datainteg.EntryCopierImpl;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.processor.RequestProcessor;
+import org.apache.bookkeeper.proto.FairRequestScheduler.RequestClass;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.tls.SecurityException;
 import org.apache.bookkeeper.tls.SecurityHandlerFactory;
 import org.apache.bookkeeper.tls.SecurityHandlerFactory.NodeType;
+import org.apache.bookkeeper.util.ThreadPlacement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -115,6 +132,15 @@ public class BookieRequestProcessor implements RequestProcessor {
     private final boolean statsEnabled;
 
     private final RequestStats requestStats;
+    private final RequestTracer requestTracer;
+    // null when the ledger I/O accounting is disabled
+    private final LedgerIoAccounting ledgerIoAccounting;
+    // null when the memory governor is disabled
+    private final MemoryGovernor memoryGovernor;
+
+    // per tenant fair scheduling of the requests on the read and write thread pools, null when disabled
+    private final FairRequestScheduler readScheduler;
+    private final FairRequestScheduler writeScheduler;
 
     final Semaphore addsSemaphore;
     final Semaphore readsSemaphore;
@@ -129,6 +155,13 @@ public class BookieRequestProcessor implements RequestProcessor {
 
     private final boolean throttleReadResponses;
 
+    /**
+     * The client and copier used to pull ledger fragments from other bookies,
+     * created on startup when the bookie serves the copy ledger fragment requests.
+     */
+    private BookKeeper fragmentCopyClient;
+    private volatile EntryCopier fragmentCopier;
+
     public BookieRequestProcessor(ServerConfiguration serverCfg, Bookie bookie, StatsLogger statsLogger,
                                   SecurityHandlerFactory shFactory, ByteBufAllocator allocator,
                                   ChannelGroup allChannels) throws SecurityException {
@@ -143,12 +176,14 @@ public class BookieRequestProcessor implements RequestProcessor {
                 this.serverCfg.getNumReadWorkerThreads(),
                 "BookieReadThreadPool",
                 serverCfg.getMaxPendingReadRequestPerThread(),
-                statsLogger);
+                statsLogger,
+                ThreadPlacement.Role.READ_WORKER);
         this.writeThreadPool = createExecutor(
                 this.serverCfg.getNumAddWorkerThreads(),
                 "BookieWriteThreadPool",
                 serverCfg.getMaxPendingAddRequestPerThread(),
-                statsLogger);
+                statsLogger,
+                ThreadPlacement.Role.WRITE_WORKER);
         if (serverCfg.getNumLongPollWorkerThreads() <= 0 && readThreadPool != null) {
             this.longPollThreadPool = this.readThreadPool;
         } else {
@@ -197,6 +232,37 @@ public class BookieRequestProcessor implements RequestProcessor {
         // Expose Stats
         this.statsEnabled = serverCfg.isStatisticsEnabled();
         this.requestStats = new RequestStats(statsLogger);
+        this.requestTracer = new RequestTracer(serverCfg.getRequestTraceSampleInterval(),
+                serverCfg.getRequestTraceNumSlowestRequests(), statsLogger.scope(REQUEST_TRACE_SCOPE));
+        if (serverCfg.isLedgerIoAccountingEnabled() && bookie != null) {
+            this.ledgerIoAccounting = new LedgerIoAccounting(serverCfg.getLedgerIoAccountingMaxLedgers(),
+                    serverCfg.getLedgerIoAccountingNumTopLedgersGauges(),
+                    serverCfg.getLedgerIoAccountingHalfLifeSeconds(), statsLogger.scope(LEDGER_IO_SCOPE));
+            bookie.getLedgerStorage().setLedgerIoAccounting(ledgerIoAccounting);
+            bookie.getLedgerStorage().registerLedgerDeletionListener(ledgerIoAccounting::ledgerDeleted);
+        } else {
+            this.ledgerIoAccounting = null;
+        }
+        if (serverCfg.isMemoryGovernorEnabled() && bookie != null) {
+            this.memoryGovernor = new MemoryGovernor(serverCfg, statsLogger.scope(MEMORY_GOVERNOR_SCOPE));
+            bookie.getLedgerStorage().setMemoryGovernor(memoryGovernor);
+            memoryGovernor.start();
+        } else {
+            this.memoryGovernor = null;
+        }
+
+        if (serverCfg.isFairSchedulingEnabled() && readThreadPool != null && bookie != null) {
+            this.readScheduler = new FairRequestScheduler(serverCfg, readThreadPool,
+                    serverCfg.getNumReadWorkerThreads(), requestTimer, "read", statsLogger);
+        } else {
+            this.readScheduler = null;
+        }
+        if (serverCfg.isFairSchedulingEnabled() && writeThreadPool != null) {
+            this.writeScheduler = new FairRequestScheduler(serverCfg, writeThreadPool,
+                    serverCfg.getNumAddWorkerThreads(), requestTimer, "write", statsLogger);
+        } else {
+            this.writeScheduler = null;
+        }
 
         int maxAdds = serverCfg.getMaxAddsInProgressLimit();
         addsSemaphore = maxAdds > 0 ? new Semaphore(maxAdds, true) : null;
@@ -206,6 +272,9 @@ public class BookieRequestProcessor implements RequestProcessor {
     }
 
     protected void onAddRequestStart(Channel channel) {
+        if (memoryGovernor != null) {
+            memoryGovernor.checkBackpressure(channel);
+        }
         if (addsSemaphore != null) {
             if (!addsSemaphore.tryAcquire()) {
                 final long throttlingStartTimeNanos = MathUtils.nowInNano();
@@ -230,6 +299,9 @@ public class BookieRequestProcessor implements RequestProcessor {
     }
 
     protected void onReadRequestStart(Channel channel) {
+        if (memoryGovernor != null) {
+            memoryGovernor.checkBackpressure(channel);
+        }
         if (readsSemaphore != null) {
             if (!readsSemaphore.tryAcquire()) {
                 final long throttlingStartTimeNanos = MathUtils.nowInNano();
@@ -272,21 +344,93 @@ public class BookieRequestProcessor implements RequestProcessor {
             shutdownExecutor(longPollThreadPool);
         }
         shutdownExecutor(highPriorityThreadPool);
+        if (memoryGovernor != null) {
+            memoryGovernor.close();
+        }
         requestTimer.stop();
+        closeFragmentCopier();
         LOG.info("Closed RequestProcessor");
     }
 
+    /**
+     * Create the client and copier used to pull ledger fragments from other bookies, if the bookie serves
+     * the copy ledger fragment requests. It is called on startup, before the requests are accepted.
+     */
+    synchronized void startFragmentCopier() throws IOException, InterruptedException {
+        if (!serverCfg.isLedgerFragmentCopyEnabled() || null == bookie || null != fragmentCopier) {
+            return;
+        }
+        ClientConfiguration clientConfiguration = new ClientConfiguration(serverCfg);
+        clientConfiguration.setClientRole(ClientConfiguration.CLIENT_ROLE_SYSTEM);
+        try {
+            fragmentCopyClient = BookKeeper.forConfig(clientConfiguration).build();
+        } catch (BKException e) {
+            throw new IOException("Failed to create bookkeeper client to copy ledger fragments", e);
+        }
+        fragmentCopier = new EntryCopierImpl(BookieImpl.getBookieId(serverCfg),
+                fragmentCopyClient.getClientCtx().getBookieClient(),
+                bookie.getLedgerStorage(), Ticker.systemTicker());
+    }
+
+    /**
+     * @return the copier of the ledger fragments, or null if the bookie doesn't serve the copy requests
+     */
+    EntryCopier getFragmentCopier() {
+        return fragmentCopier;
+    }
+
+    /**
+     * Whether the client of a channel may ask the bookie to copy ledger fragments, which writes entries
+     * of any ledger it has the master key of. When the bookie authenticates its clients, only the
+     * authenticated ones may.
+     */
+    boolean isFragmentCopyAuthorized(BookieRequestHandler requestHandler) {
+        String authProviderFactoryClass = serverCfg.getBookieAuthProviderFactoryClass();
+        if (null == authProviderFactoryClass || authProviderFactoryClass.isEmpty()) {
+            return true;
+        }
+        return null != requestHandler.principal();
+    }
+
+    private synchronized void closeFragmentCopier() {
+        if (null != fragmentCopyClient) {
+            try {
+                fragmentCopyClient.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (BKException e) {
+                LOG.warn("Failed to close the fragment copy client", e);
+            }
+            fragmentCopyClient = null;
+            fragmentCopier = null;
+        }
+    }
+
     private OrderedExecutor createExecutor(
             int numThreads,
             String nameFormat,
             int maxTasksInQueue,
             StatsLogger statsLogger) {
+        return createExecutor(numThreads, nameFormat, maxTasksInQueue, statsLogger, null);
+    }
+
+    private OrderedExecutor createExecutor(
+            int numThreads,
+            String nameFormat,
+            int maxTasksInQueue,
+            StatsLogger statsLogger,
+            ThreadPlacement.Role placementRole) {
         if (numThreads <= 0) {
             return null;
         } else {
+            ThreadFactory threadFactory = new DefaultThreadFactory(nameFormat);
+            if (placementRole != null) {
+                threadFactory = ThreadPlacement.placingThreadFactory(serverCfg, placementRole, threadFactory);
+            }
             return OrderedExecutor.newBuilder()
                     .numThreads(numThreads)
                     .name(nameFormat)
+                    .threadFactory(threadFactory)
                     .traceTaskExecution(serverCfg.getEnableTaskExecutionStats())
                     .preserveMdcForTaskExecution(serverCfg.getPreserveMdcForTaskExecution())
                     .statsLogger(statsLogger)
@@ -351,6 +495,9 @@ public class BookieRequestProcessor implements RequestProcessor {
                     case GET_LIST_OF_ENTRIES_OF_LEDGER:
                         processGetListOfEntriesOfLedgerProcessorV3(r, requestHandler);
                         break;
+                    case COPY_LEDGER_FRAGMENT:
+                        processCopyLedgerFragmentProcessorV3(r, requestHandler);
+                        break;
                     default:
                         LOG.info("Unknown operation type {}", header.getOperation());
                         BookkeeperProtocol.Response.Builder response =
@@ -441,29 +588,36 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         if (null == threadPool) {
             write.run();
+        } else if (threadPool == writeThreadPool && writeScheduler != null) {
+            writeScheduler.submit(requestHandler.tenant(), RequestClass.TAILING, r.getAddRequest().getLedgerId(),
+                    write, () -> rejectAddRequestV3(r, write));
         } else {
             try {
                 threadPool.executeOrdered(r.getAddRequest().getLedgerId(), write);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
-                              r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
-                }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-                BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
-                        .setLedgerId(r.getAddRequest().getLedgerId())
-                        .setEntryId(r.getAddRequest().getEntryId())
-                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                        .setHeader(write.getHeader())
-                        .setStatus(addResponse.getStatus())
-                        .setAddResponse(addResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+                rejectAddRequestV3(r, write);
             }
         }
     }
 
+    private void rejectAddRequestV3(BookkeeperProtocol.Request r, WriteEntryProcessorV3 write) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
+                      r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
+        }
+        getRequestStats().getAddEntryRejectedCounter().inc();
+        BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
+                .setLedgerId(r.getAddRequest().getLedgerId())
+                .setEntryId(r.getAddRequest().getEntryId())
+                .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                .setHeader(write.getHeader())
+                .setStatus(addResponse.getStatus())
+                .setAddResponse(addResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+    }
+
     private void processForceLedgerRequestV3(final BookkeeperProtocol.Request r,
                                              final BookieRequestHandler requestHandler) {
         ForceLedgerProcessorV3 forceLedger = new ForceLedgerProcessorV3(r, requestHandler, this);
@@ -531,30 +685,51 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         if (null == threadPool) {
             read.run();
+        } else if (threadPool == readThreadPool && readScheduler != null) {
+            long ledgerId = r.getReadRequest().getLedgerId();
+            readScheduler.submit(requestHandler.tenant(), readRequestClass(ledgerId, r.getReadRequest().getEntryId()),
+                    ledgerId, read, () -> rejectReadRequestV3(r, read));
         } else {
             try {
                 threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
-                              r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
-                }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
-                    .setLedgerId(r.getReadRequest().getLedgerId())
-                    .setEntryId(r.getReadRequest().getEntryId())
-                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                    .setHeader(read.getHeader())
-                    .setStatus(readResponse.getStatus())
-                    .setReadResponse(readResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
-                onReadRequestFinish();
+                rejectReadRequestV3(r, read);
             }
         }
     }
 
+    private void rejectReadRequestV3(BookkeeperProtocol.Request r, ReadEntryProcessorV3 read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
+                      r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
+            .setLedgerId(r.getReadRequest().getLedgerId())
+            .setEntryId(r.getReadRequest().getEntryId())
+            .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+            .setHeader(read.getHeader())
+            .setStatus(readResponse.getStatus())
+            .setReadResponse(readResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
+        onReadRequestFinish();
+    }
+
+    /**
+     * Reads served from the caches of the ledger storage, or of the last add confirmed, are tailing
+     * reads, while the other ones have to go to the disk to catch up.
+     */
+    private RequestClass readRequestClass(long ledgerId, long entryId) {
+        if (entryId == BookieProtocol.LAST_ADD_CONFIRMED
+                || bookie.getLedgerStorage().isEntryCached(ledgerId, entryId)) {
+            return RequestClass.TAILING;
+        } else {
+            return RequestClass.CATCH_UP;
+        }
+    }
+
     private void processStartTLSRequestV3(final BookkeeperProtocol.Request r,
                                           final BookieRequestHandler requestHandler) {
         BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder();
@@ -631,6 +806,17 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processCopyLedgerFragmentProcessorV3(final BookkeeperProtocol.Request r,
+                                                      final BookieRequestHandler requestHandler) {
+        CopyLedgerFragmentProcessorV3 copyLedgerFragment =
+                new CopyLedgerFragmentProcessorV3(r, requestHandler, this);
+        if (null == readThreadPool) {
+            copyLedgerFragment.run();
+        } else {
+            readThreadPool.submit(copyLedgerFragment);
+        }
+    }
+
     private void processAddRequest(final BookieProtocol.ParsedAddRequest r, final BookieRequestHandler requestHandler) {
         WriteEntryProcessor write = WriteEntryProcessor.create(r, requestHandler, this);
 
@@ -645,24 +831,31 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         if (null == threadPool) {
             write.run();
+        } else if (threadPool == writeThreadPool && writeScheduler != null) {
+            writeScheduler.submit(requestHandler.tenant(), RequestClass.TAILING, r.getLedgerId(), write,
+                    () -> rejectAddRequest(r, write));
         } else {
             try {
                 threadPool.executeOrdered(r.getLedgerId(), write);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
-                }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-
-                write.sendWriteReqResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getAddRequestStats());
+                rejectAddRequest(r, write);
             }
         }
     }
 
+    private void rejectAddRequest(BookieProtocol.ParsedAddRequest r, WriteEntryProcessor write) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
+                    r.entryId);
+        }
+        getRequestStats().getAddEntryRejectedCounter().inc();
+
+        write.sendWriteReqResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+            requestStats.getAddRequestStats());
+    }
+
     private void processReadRequest(final BookieProtocol.ReadRequest r, final BookieRequestHandler requestHandler) {
         ExecutorService fenceThreadPool =
                 null == highPriorityThreadPool ? null : highPriorityThreadPool.chooseThread(requestHandler.ctx());
@@ -681,28 +874,53 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         if (null == threadPool) {
             read.run();
+        } else if (threadPool == readThreadPool && readScheduler != null) {
+            readScheduler.submit(requestHandler.tenant(), readRequestClass(r.getLedgerId(), r.getEntryId()),
+                    r.getLedgerId(), read, () -> rejectReadRequest(r, read));
         } else {
             try {
                 threadPool.executeOrdered(r.getLedgerId(), read);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
-                }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                read.sendResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getReadRequestStats());
-                onReadRequestFinish();
+                rejectReadRequest(r, read);
             }
         }
     }
 
+    private void rejectReadRequest(BookieProtocol.ReadRequest r, ReadEntryProcessor read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
+                    r.entryId);
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        read.sendResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+            requestStats.getReadRequestStats());
+        onReadRequestFinish();
+    }
+
     public long getWaitTimeoutOnBackpressureMillis() {
         return waitTimeoutOnBackpressureMillis;
     }
 
+    public RequestTracer getRequestTracer() {
+        return requestTracer;
+    }
+
+    /**
+     * @return the ledger I/O accounting of the bookie, or null if it is disabled
+     */
+    public LedgerIoAccounting getLedgerIoAccounting() {
+        return ledgerIoAccounting;
+    }
+
+    /**
+     * @return the memory governor of the bookie, or null if it is disabled
+     */
+    public MemoryGovernor getMemoryGovernor() {
+        return memoryGovernor;
+    }
+
     public void blacklistChannel(Channel channel) {
         blacklistedChannels
                 .ifPresent(x -> x.put(channel, true));
@@ -131,6 +131,7 @@ public class BookieServer {
         }
 
         this.uncleanShutdownDetection.registerStartUp();
+        getBookieRequestProcessor().startFragmentCopier();
         this.nettyServer.start();
 
         running = true;
@@ -160,7 +161,6 @@ public class BookieServer {
         return bookie;
     }
 
-    @VisibleForTesting
     public BookieRequestProcessor getBookieRequestProcessor() {
         return (BookieRequestProcessor) requestProcessor;
     }
@@ -71,6 +71,32 @@ public class BookkeeperInternalCallbacks {
         void onChanged(long ledgerId, Versioned<LedgerMetadata> metadata);
     }
 
+    /**
+     * Listener on the metadata changes of all the ledgers.
+     */
+    public interface LedgersChangeListener {
+        /**
+         * Triggered when the metadata of a ledger is created or updated.
+         *
+         * @param ledgerId
+         *          ledger id.
+         */
+        void onLedgerChanged(long ledgerId);
+
+        /**
+         * Triggered when the metadata of a ledger is deleted.
+         *
+         * @param ledgerId
+         *          ledger id.
+         */
+        void onLedgerDeleted(long ledgerId);
+
+        /**
+         * Triggered when changes may have been missed, e.g. while disconnected from the metadata store.
+         */
+        void onChangesLost();
+    }
+
     /**
      * A writer callback interface.
      */
@@ -114,6 +140,13 @@ public class BookkeeperInternalCallbacks {
                 AvailabilityOfEntriesOfLedger availabilityOfEntriesOfLedger);
     }
 
+    /**
+     * A callback interface for CopyLedgerFragment command.
+     */
+    public interface CopyLedgerFragmentCallback {
+        void copyLedgerFragmentComplete(int rc, long ledgerId, long bytesCopied);
+    }
+
     /**
      * Handle the Response Code and transform it to a BKException.
      *
@@ -153,6 +186,28 @@ public class BookkeeperInternalCallbacks {
         }
     }
 
+    /**
+     * Future for CopyLedgerFragment, completed with the number of bytes copied.
+     */
+    public static class FutureCopyLedgerFragment extends CompletableFuture<Long>
+            implements CopyLedgerFragmentCallback {
+        private final long ledgerIdOfTheRequest;
+
+        FutureCopyLedgerFragment(long ledgerId) {
+            this.ledgerIdOfTheRequest = ledgerId;
+        }
+
+        @Override
+        public void copyLedgerFragmentComplete(int rc, long ledgerIdOfTheResponse, long bytesCopied) {
+            if ((rc == BKException.Code.OK) && (ledgerIdOfTheRequest != ledgerIdOfTheResponse)) {
+                LOG.error("For copyLedgerFragment expected ledgerId in the response: {} actual ledgerId: {}",
+                        ledgerIdOfTheRequest, ledgerIdOfTheResponse);
+                rc = BKException.Code.WriteException;
+            }
+            finish(rc, bytesCopied, this);
+        }
+    }
+
     /**
      * A generic callback interface.
      */
@@ -0,0 +1,262 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.bookie.datainteg.EntryCopier;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor class for v3 copy ledger fragment packets.
+ *
+ * <p>The bookie pulls the requested entries from the bookies of the fragment's
+ * ensemble and adds them locally through the journal, the same way a recovery
+ * add would. The response is only sent once every entry is durable, so the
+ * requester can update the ledger ensemble as soon as it is received.
+ */
+public class CopyLedgerFragmentProcessorV3 extends PacketProcessorBaseV3 implements Runnable, WriteCallback {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CopyLedgerFragmentProcessorV3.class);
+
+    // maximum number of entries of a fragment fetched and added concurrently
+    static final int MAX_OUTSTANDING_ENTRIES = 16;
+
+    protected final CopyLedgerFragmentRequest copyLedgerFragmentRequest;
+    protected final long ledgerId;
+    private final byte[] masterKey;
+    private final long startTimeNanos;
+
+    private final AtomicLong nextEntryId;
+    private final AtomicLong entriesToCopy;
+    private final AtomicLong bytesCopied = new AtomicLong(0);
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private volatile EntryCopier.Batch batch;
+
+    public CopyLedgerFragmentProcessorV3(Request request, BookieRequestHandler requestHandler,
+                                         BookieRequestProcessor requestProcessor) {
+        super(request, requestHandler, requestProcessor);
+        this.copyLedgerFragmentRequest = request.getCopyLedgerFragmentRequest();
+        this.ledgerId = copyLedgerFragmentRequest.getLedgerId();
+        this.masterKey = copyLedgerFragmentRequest.getMasterKey().toByteArray();
+        this.startTimeNanos = MathUtils.nowInNano();
+        this.nextEntryId = new AtomicLong(copyLedgerFragmentRequest.getFirstEntryId());
+        this.entriesToCopy = new AtomicLong(
+                copyLedgerFragmentRequest.getLastEntryId() - copyLedgerFragmentRequest.getFirstEntryId() + 1);
+    }
+
+    @Override
+    public void run() {
+        if (!isVersionCompatible()) {
+            complete(StatusCode.EBADVERSION);
+            return;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received new copyLedgerFragment request: {}", request);
+        }
+        EntryCopier copier = requestProcessor.getFragmentCopier();
+        if (null == copier) {
+            // answered the way the bookies not supporting the request do, so the requester falls back
+            complete(StatusCode.EBADREQ);
+            return;
+        }
+        if (!requestProcessor.isFragmentCopyAuthorized(requestHandler)) {
+            LOG.error("Unauthorized client {} asking to copy a fragment of ledger: {}",
+                    requestHandler.ctx().channel().remoteAddress(), ledgerId);
+            complete(StatusCode.EUA);
+            return;
+        }
+        if (copyLedgerFragmentRequest.getFirstEntryId() < 0
+                || entriesToCopy.get() <= 0
+                || copyLedgerFragmentRequest.getEnsembleCount() == 0
+                // the ledgers without digest type, which have no master key either, are copied by the requester
+                || !copyLedgerFragmentRequest.hasDigestType()) {
+            complete(StatusCode.EBADREQ);
+            return;
+        }
+
+        try {
+            List<BookieId> ensemble = new ArrayList<>(copyLedgerFragmentRequest.getEnsembleCount());
+            for (String bookie : copyLedgerFragmentRequest.getEnsembleList()) {
+                ensemble.add(BookieId.parse(bookie));
+            }
+            // the copier only needs the fragment's ensemble, registered so it covers every entry requested
+            LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                    .withId(ledgerId)
+                    .withEnsembleSize(ensemble.size())
+                    .withWriteQuorumSize(copyLedgerFragmentRequest.getWriteQuorumSize())
+                    .withAckQuorumSize(copyLedgerFragmentRequest.getAckQuorumSize())
+                    .withPassword(masterKey)
+                    .withDigestType(digestType())
+                    .newEnsembleEntry(0L, ensemble)
+                    .build();
+            batch = copier.newBatch(ledgerId, metadata);
+        } catch (IllegalArgumentException e) {
+            LOG.error("Invalid copyLedgerFragment request for ledger: {}", ledgerId, e);
+            complete(StatusCode.EBADREQ);
+            return;
+        } catch (Exception e) {
+            LOG.error("Failed to start copying fragment of ledger: {}", ledgerId, e);
+            complete(StatusCode.EIO);
+            return;
+        }
+
+        long outstanding = Math.min(entriesToCopy.get(), MAX_OUTSTANDING_ENTRIES);
+        for (int i = 0; i < outstanding; i++) {
+            copyNextEntry();
+        }
+    }
+
+    private DigestType digestType() {
+        switch (copyLedgerFragmentRequest.getDigestType()) {
+            case HMAC:
+                return DigestType.MAC;
+            case CRC32:
+                return DigestType.CRC32;
+            case CRC32C:
+                return DigestType.CRC32C;
+            case DUMMY:
+                return DigestType.DUMMY;
+            default:
+                throw new IllegalArgumentException("Unknown digest type: " + copyLedgerFragmentRequest.getDigestType());
+        }
+    }
+
+    private void copyNextEntry() {
+        if (completed.get()) {
+            return;
+        }
+        final long entryId = nextEntryId.getAndIncrement();
+        if (entryId > copyLedgerFragmentRequest.getLastEntryId()) {
+            return;
+        }
+        batch.fetchFromAvailable(entryId).whenComplete((entry, exception) -> {
+            if (exception != null) {
+                LOG.error("Failed to fetch entry {}@{} from the fragment ensemble", entryId, ledgerId, exception);
+                complete(fetchErrorStatus(exception));
+                return;
+            }
+            addEntry(entryId, entry);
+        });
+    }
+
+    private void addEntry(long entryId, ByteBuf entry) {
+        if (completed.get()) {
+            ReferenceCountUtil.release(entry);
+            return;
+        }
+        final long length = entry.readableBytes();
+        StatusCode status;
+        try {
+            // the bookie releases the entry once it has been added
+            requestProcessor.getBookie().recoveryAddEntry(entry, this, length, masterKey);
+            return;
+        } catch (OperationRejectedException e) {
+            requestProcessor.getRequestStats().getAddEntryRejectedCounter().inc();
+            status = StatusCode.ETOOMANYREQUESTS;
+        } catch (BookieException e) {
+            LOG.error("Unauthorized access to ledger:{} while copying entry:{}", ledgerId, entryId, e);
+            status = StatusCode.EUA;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = StatusCode.EIO;
+        } catch (Exception e) {
+            LOG.error("Error copying entry:{} to ledger:{}", entryId, ledgerId, e);
+            status = StatusCode.EIO;
+        }
+        complete(status);
+    }
+
+    @Override
+    public void writeComplete(int rc, long ledgerId, long entryId, BookieId addr, Object ctx) {
+        if (BookieProtocol.EOK != rc) {
+            LOG.error("Error adding copied entry:{} to ledger:{}, rc: {}", entryId, ledgerId, rc);
+            complete(StatusCode.EIO);
+            return;
+        }
+        bytesCopied.addAndGet((Long) ctx);
+        if (entriesToCopy.decrementAndGet() == 0) {
+            complete(StatusCode.EOK);
+        } else {
+            copyNextEntry();
+        }
+    }
+
+    private static StatusCode fetchErrorStatus(Throwable exception) {
+        Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+        switch (BKException.getExceptionCode(cause, BKException.Code.ReadException)) {
+            case BKException.Code.NoSuchEntryException:
+                return StatusCode.ENOENTRY;
+            case BKException.Code.NoSuchLedgerExistsException:
+            case BKException.Code.NoSuchLedgerExistsOnMetadataServerException:
+                return StatusCode.ENOLEDGER;
+            default:
+                return StatusCode.EIO;
+        }
+    }
+
+    private void complete(StatusCode status) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        CopyLedgerFragmentResponse.Builder copyLedgerFragmentResponse = CopyLedgerFragmentResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .setStatus(status);
+        if (status == StatusCode.EOK) {
+            long entries = copyLedgerFragmentRequest.getLastEntryId() - copyLedgerFragmentRequest.getFirstEntryId()
+                    + 1;
+            copyLedgerFragmentResponse.setEntriesCopied(entries).setBytesCopied(bytesCopied.get());
+            requestProcessor.getRequestStats().getCopyLedgerFragmentBytes().addCount(bytesCopied.get());
+            requestProcessor.getRequestStats().getCopyLedgerFragmentStats()
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            requestProcessor.getRequestStats().getCopyLedgerFragmentStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+        Response response = Response.newBuilder()
+                .setHeader(getHeader())
+                .setStatus(status)
+                .setCopyLedgerFragmentResponse(copyLedgerFragmentResponse)
+                .build();
+        sendResponse(status, response, requestProcessor.getRequestStats().getCopyLedgerFragmentRequestStats());
+    }
+}
@@ -0,0 +1,479 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_DISPATCHED_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_PENDING_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_RATE_LIMITED_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_REJECTED_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_SCOPE;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.util.Timer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+
+/**
+ * Schedules the requests of the tenants of the bookie on a worker thread pool, so that a tenant
+ * flooding the bookie with requests can't starve the other ones.
+ *
+ * <p>The requests are queued per tenant and per {@link RequestClass}, and only a bounded number of
+ * them are dispatched to the thread pool at a time. Whenever a dispatched request completes, the next
+ * one is picked by deficit round robin: among the request classes according to their weights, then
+ * among the tenants having pending requests of the picked class according to the tenant weights. The
+ * requests of a tenant and class are dispatched in order, ordered by ledger on the thread pool.
+ *
+ * <p>The queues of a class are guarded by a lock of their own, and the rate limiting state of a tenant
+ * by the tenant. The requests are dispatched to the thread pool without holding any lock, by one
+ * thread at a time, the threads submitting or completing requests meanwhile leaving the dispatching
+ * to it.
+ *
+ * <p>The requests of a tenant exceeding its rate limit are delayed until the rate allows them, while
+ * the requests of a tenant exceeding its max number of pending requests, delayed ones included, are
+ * rejected, so that the tenant is pushed back instead of building up latency.
+ */
+@StatsDoc(
+    name = FAIR_SCHEDULER_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Per tenant stats of the fair scheduling of the requests"
+)
+class FairRequestScheduler {
+
+    /**
+     * Classes of the scheduled requests. Recovery and fencing requests are not scheduled, as they
+     * are run by the high priority thread pool.
+     */
+    enum RequestClass {
+        // adds, and reads which are served from the caches of the ledger storage
+        TAILING,
+        // reads which have to go to the disk
+        CATCH_UP
+    }
+
+    private static final RequestClass[] CLASSES = RequestClass.values();
+
+    // tenants without pending requests for this long are forgotten when a new tenant shows up
+    private static final long IDLE_TENANT_EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    // the requests a rate limited tenant may burst after being idle, in seconds of its rate
+    private static final long MAX_BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final OrderedExecutor executor;
+    private final Timer timer;
+    private final int maxDispatchedRequests;
+    private final int maxPendingRequestsPerTenant;
+    private final int[] classWeights;
+    private final Map<String, Integer> tenantWeights;
+    private final double defaultRateLimit;
+    private final Map<String, Double> tenantRateLimits;
+    private final StatsLogger statsLogger;
+    private long idleTenantExpiryNanos = IDLE_TENANT_EXPIRY_NANOS;
+
+    private final ConcurrentHashMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final ClassQueues[] classQueues;
+    private final AtomicInteger dispatchedRequests = new AtomicInteger();
+    // the number of dispatch calls since the running one started, the dispatching thread being the
+    // one which moved it from 0
+    private final AtomicInteger dispatchCalls = new AtomicInteger();
+
+    // only accessed by the dispatching thread
+    private int currentClass = 0;
+    private int classDeficit = 0;
+
+    /**
+     * @param conf the server configuration
+     * @param executor the thread pool running the scheduled requests
+     * @param numThreads the number of threads of the pool
+     * @param timer the timer delaying the rate limited requests
+     * @param name the name of the pool, scoping the stats of the scheduler
+     * @param statsLogger the stats logger of the request processor
+     */
+    FairRequestScheduler(ServerConfiguration conf, OrderedExecutor executor, int numThreads, Timer timer,
+                         String name, StatsLogger statsLogger) {
+        this.executor = executor;
+        this.timer = timer;
+        this.maxDispatchedRequests = Math.max(1, numThreads * conf.getFairSchedulingMaxDispatchedRequestsPerThread());
+        this.maxPendingRequestsPerTenant = conf.getFairSchedulingMaxPendingRequestsPerTenant();
+        this.classWeights = new int[CLASSES.length];
+        classWeights[RequestClass.TAILING.ordinal()] = Math.max(1, conf.getFairSchedulingTailingReadsWeight());
+        classWeights[RequestClass.CATCH_UP.ordinal()] = Math.max(1, conf.getFairSchedulingCatchUpReadsWeight());
+        this.tenantWeights = parseTenantValues(conf.getFairSchedulingTenantWeights(), Integer::parseInt);
+        this.defaultRateLimit = conf.getFairSchedulingTenantRateLimit();
+        this.tenantRateLimits = parseTenantValues(conf.getFairSchedulingTenantRateLimits(), Double::parseDouble);
+        this.statsLogger = statsLogger.scope(FAIR_SCHEDULER_SCOPE).scope(name);
+
+        this.classQueues = new ClassQueues[CLASSES.length];
+        for (int i = 0; i < CLASSES.length; i++) {
+            classQueues[i] = new ClassQueues(i);
+        }
+    }
+
+    private static <T> Map<String, T> parseTenantValues(String[] entries, Function<String, T> parser) {
+        Map<String, T> values = new HashMap<>();
+        if (entries == null) {
+            return values;
+        }
+        for (String entry : entries) {
+            // the host address of a tenant may contain colons
+            int idx = entry.lastIndexOf(':');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("Invalid fair scheduling tenant value " + entry
+                        + ", expected tenant:value");
+            }
+            values.put(entry.substring(0, idx).trim(), parser.apply(entry.substring(idx + 1).trim()));
+        }
+        return values;
+    }
+
+    /**
+     * Schedule a request on the thread pool.
+     *
+     * @param tenant the tenant of the request
+     * @param requestClass the class of the request
+     * @param orderingKey the ordering key of the request on the thread pool
+     * @param task the request processing
+     * @param onReject called instead of the request processing, if the request is rejected
+     */
+    void submit(String tenant, RequestClass requestClass, long orderingKey, Runnable task, Runnable onReject) {
+        boolean[] added = new boolean[1];
+        // the pending request, counted while the tenant is looked up, keeps it from expiring
+        Tenant t = tenants.compute(tenant, (name, existing) -> {
+            Tenant reserved = existing;
+            if (reserved == null) {
+                reserved = new Tenant(name);
+                added[0] = true;
+            }
+            reserved.pendingRequests.incrementAndGet();
+            return reserved;
+        });
+        if (added[0]) {
+            expireIdleTenants();
+        }
+
+        if (t.pendingRequests.get() > maxPendingRequestsPerTenant) {
+            t.rejectedRequests.inc();
+            requestDone(t);
+            onReject.run();
+            return;
+        }
+
+        ScheduledRequest request = new ScheduledRequest(t, requestClass.ordinal(), orderingKey, task, onReject);
+        boolean delayed;
+        synchronized (t) {
+            delayed = t.delay(request);
+            if (!delayed) {
+                // under the tenant lock, so the request can't overtake the delayed ones being released
+                classQueues[request.classIdx].add(request);
+            }
+        }
+        if (delayed) {
+            t.rateLimitedRequests.inc();
+        } else {
+            dispatch();
+        }
+    }
+
+    private void requestCompleted() {
+        dispatchedRequests.decrementAndGet();
+        dispatch();
+    }
+
+    private static void requestDone(Tenant t) {
+        if (t.pendingRequests.decrementAndGet() == 0) {
+            t.idleSinceNanos = System.nanoTime();
+        }
+    }
+
+    // dispatches the pending requests as long as the thread pool has room for them. Only one thread
+    // dispatches at a time, so the requests of a tenant reach the thread pool in order, and the calls
+    // made meanwhile by the other threads make it check again for the requests they added or completed
+    private void dispatch() {
+        if (dispatchCalls.getAndIncrement() != 0) {
+            return;
+        }
+        int calls = 1;
+        do {
+            while (dispatchedRequests.get() < maxDispatchedRequests) {
+                ScheduledRequest request = pollNext();
+                if (request == null) {
+                    break;
+                }
+                requestDone(request.tenant);
+                dispatchedRequests.incrementAndGet();
+                try {
+                    executor.executeOrdered(request.orderingKey, request);
+                    request.tenant.dispatchedRequests.inc();
+                } catch (RejectedExecutionException e) {
+                    dispatchedRequests.decrementAndGet();
+                    request.onReject.run();
+                }
+            }
+            calls = dispatchCalls.addAndGet(-calls);
+        } while (calls != 0);
+    }
+
+    private ScheduledRequest pollNext() {
+        // at most one round of the classes, ending on the current one
+        for (int i = 0; i <= CLASSES.length; i++) {
+            if (classDeficit > 0) {
+                ScheduledRequest request = classQueues[currentClass].poll();
+                if (request != null) {
+                    classDeficit--;
+                    return request;
+                }
+            }
+            currentClass = (currentClass + 1) % CLASSES.length;
+            classDeficit = classWeights[currentClass];
+        }
+        return null;
+    }
+
+    // releases the delayed requests of a tenant allowed by its rate limit
+    private void releaseDelayed(Tenant t) {
+        synchronized (t) {
+            long now = System.nanoTime();
+            ScheduledRequest request;
+            while ((request = t.delayedRequests.peekFirst()) != null && request.readyAtNanos <= now) {
+                t.delayedRequests.pollFirst();
+                classQueues[request.classIdx].add(request);
+            }
+            if (request != null) {
+                t.scheduleRelease(request.readyAtNanos - now);
+            }
+        }
+        dispatch();
+    }
+
+    @VisibleForTesting
+    void setIdleTenantExpiryNanos(long idleTenantExpiryNanos) {
+        this.idleTenantExpiryNanos = idleTenantExpiryNanos;
+    }
+
+    private void expireIdleTenants() {
+        long now = System.nanoTime();
+        for (String name : tenants.keySet()) {
+            // the stats are unregistered under the lock of the tenant entry, so they can't be unregistered
+            // after the ones of a new tenant of the same name are registered
+            tenants.computeIfPresent(name, (k, t) -> {
+                if (t.pendingRequests.get() == 0 && now - t.idleSinceNanos > idleTenantExpiryNanos) {
+                    t.unregisterStats();
+                    return null;
+                }
+                return t;
+            });
+        }
+    }
+
+    /**
+     * The queues of the tenants for a class of requests, guarded by their own lock.
+     */
+    private static final class ClassQueues {
+        private final int classIdx;
+        // the tenants having pending requests of the class, in round robin order
+        private final ArrayDeque<Tenant> activeTenants = new ArrayDeque<>();
+
+        ClassQueues(int classIdx) {
+            this.classIdx = classIdx;
+        }
+
+        synchronized void add(ScheduledRequest request) {
+            Tenant t = request.tenant;
+            ArrayDeque<ScheduledRequest> queue = t.queues.get(classIdx);
+            if (queue.isEmpty()) {
+                activeTenants.addLast(t);
+            }
+            queue.addLast(request);
+        }
+
+        synchronized ScheduledRequest poll() {
+            Tenant t = activeTenants.peekFirst();
+            if (t == null) {
+                return null;
+            }
+            if (t.deficits[classIdx] <= 0) {
+                // new round for the tenant
+                t.deficits[classIdx] = t.weight;
+            }
+            ArrayDeque<ScheduledRequest> queue = t.queues.get(classIdx);
+            ScheduledRequest request = queue.pollFirst();
+            t.deficits[classIdx]--;
+            if (queue.isEmpty()) {
+                activeTenants.pollFirst();
+                t.deficits[classIdx] = 0;
+            } else if (t.deficits[classIdx] == 0) {
+                activeTenants.pollFirst();
+                activeTenants.addLast(t);
+            }
+            return request;
+        }
+    }
+
+    private final class Tenant {
+        private final int weight;
+        // the interval between two requests within the rate limit, 0 when not rate limited
+        private final long rateIntervalNanos;
+        // the queues and deficits of a class are guarded by the lock of the class queues
+        private final List<ArrayDeque<ScheduledRequest>> queues;
+        private final int[] deficits = new int[CLASSES.length];
+        private final AtomicInteger pendingRequests = new AtomicInteger();
+        private volatile long idleSinceNanos = System.nanoTime();
+
+        // the rate limiting state is guarded by the tenant lock. The earliest time of the next request
+        // within the rate limit, and the requests waiting for their time in order
+        private long nextRequestNanos = System.nanoTime();
+        private final ArrayDeque<ScheduledRequest> delayedRequests = new ArrayDeque<>();
+
+        private final StatsLogger statsLogger;
+        private final Gauge<Integer> pendingRequestsGauge;
+        private final RequestCount dispatchedRequests = new RequestCount();
+        private final RequestCount rejectedRequests = new RequestCount();
+        private final RequestCount rateLimitedRequests = new RequestCount();
+
+        Tenant(String name) {
+            this.weight = Math.max(1, tenantWeights.getOrDefault(name, 1));
+            double rateLimit = tenantRateLimits.getOrDefault(name, defaultRateLimit);
+            this.rateIntervalNanos = rateLimit > 0 ? Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit)) : 0;
+            this.queues = new ArrayList<>(CLASSES.length);
+            for (int i = 0; i < CLASSES.length; i++) {
+                queues.add(new ArrayDeque<>());
+            }
+
+            this.statsLogger = FairRequestScheduler.this.statsLogger.scopeLabel("tenant", name);
+            this.pendingRequestsGauge = new Gauge<Integer>() {
+                @Override
+                public Integer getDefaultValue() {
+                    return 0;
+                }
+
+                @Override
+                public Integer getSample() {
+                    return pendingRequests.get();
+                }
+            };
+            statsLogger.registerGauge(FAIR_SCHEDULER_PENDING_REQUESTS, pendingRequestsGauge);
+            statsLogger.registerGauge(FAIR_SCHEDULER_DISPATCHED_REQUESTS, dispatchedRequests);
+            statsLogger.registerGauge(FAIR_SCHEDULER_REJECTED_REQUESTS, rejectedRequests);
+            statsLogger.registerGauge(FAIR_SCHEDULER_RATE_LIMITED_REQUESTS, rateLimitedRequests);
+        }
+
+        private void unregisterStats() {
+            statsLogger.unregisterGauge(FAIR_SCHEDULER_PENDING_REQUESTS, pendingRequestsGauge);
+            statsLogger.unregisterGauge(FAIR_SCHEDULER_DISPATCHED_REQUESTS, dispatchedRequests);
+            statsLogger.unregisterGauge(FAIR_SCHEDULER_REJECTED_REQUESTS, rejectedRequests);
+            statsLogger.unregisterGauge(FAIR_SCHEDULER_RATE_LIMITED_REQUESTS, rateLimitedRequests);
+        }
+
+        // takes the time of the request within the rate limit, and queues it with the delayed requests
+        // if it's not due yet or if delayed requests are already waiting
+        private boolean delay(ScheduledRequest request) {
+            if (rateIntervalNanos == 0) {
+                return false;
+            }
+            long now = System.nanoTime();
+            // the time saved while idle allows a burst of requests, up to a max
+            long next = Math.max(nextRequestNanos, now - MAX_BURST_NANOS);
+            nextRequestNanos = next + rateIntervalNanos;
+            if (next <= now && delayedRequests.isEmpty()) {
+                return false;
+            }
+            request.readyAtNanos = next;
+            delayedRequests.addLast(request);
+            if (delayedRequests.size() == 1) {
+                scheduleRelease(next - now);
+            }
+            return true;
+        }
+
+        private void scheduleRelease(long delayNanos) {
+            try {
+                timer.newTimeout(timeout -> releaseDelayed(this), delayNanos, TimeUnit.NANOSECONDS);
+            } catch (IllegalStateException | RejectedExecutionException e) {
+                // the timer is stopped along with the bookie
+                ScheduledRequest request;
+                while ((request = delayedRequests.pollFirst()) != null) {
+                    requestDone(this);
+                    request.onReject.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * A count of requests of a tenant. It is exposed as a gauge rather than a counter, so that it can be
+     * unregistered when the tenant expires, while the stats providers keep their counters forever.
+     */
+    private static final class RequestCount implements Gauge<Long> {
+        private final LongAdder count = new LongAdder();
+
+        void inc() {
+            count.increment();
+        }
+
+        @Override
+        public Long getDefaultValue() {
+            return 0L;
+        }
+
+        @Override
+        public Long getSample() {
+            return count.sum();
+        }
+    }
+
+    private final class ScheduledRequest implements Runnable {
+        private final Tenant tenant;
+        private final int classIdx;
+        private final long orderingKey;
+        private final Runnable task;
+        private final Runnable onReject;
+        // the time of the request within the rate limit of its tenant, when delayed
+        private long readyAtNanos;
+
+        ScheduledRequest(Tenant tenant, int classIdx, long orderingKey, Runnable task, Runnable onReject) {
+            this.tenant = tenant;
+            this.classIdx = classIdx;
+            this.orderingKey = orderingKey;
+            this.task = task;
+            this.onReject = onReject;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                requestCompleted();
+            }
+        }
+    }
+}
@@ -70,6 +70,12 @@ public class GetBookieInfoProcessorV3 extends PacketProcessorBaseV3 implements R
                 totalDiskSpace = requestProcessor.getBookie().getTotalDiskSpace();
                 getBookieInfoResponse.setTotalDiskCapacity(totalDiskSpace);
             }
+            if ((requested & GetBookieInfoRequest.Flags.LOAD_VALUE) != 0) {
+                RequestStats requestStats = requestProcessor.getRequestStats();
+                getBookieInfoResponse.setAddsInProgress(requestStats.addsInProgressCount());
+                getBookieInfoResponse.setReadsInProgress(requestStats.readsInProgressCount());
+                getBookieInfoResponse.setJournalQueueLength(requestProcessor.getBookie().getJournalQueueLength());
+            }
             if (LOG.isDebugEnabled()) {
                 LOG.debug("FreeDiskSpace info is " + freeDiskSpace + " totalDiskSpace is: " + totalDiskSpace);
             }
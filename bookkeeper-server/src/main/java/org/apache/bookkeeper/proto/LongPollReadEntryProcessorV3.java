@@ -18,9 +18,14 @@
 package org.apache.bookkeeper.proto;
 
 import com.google.common.base.Stopwatch;
+import com.google.protobuf.UnsafeByteOperations;
+import io.netty.buffer.ByteBuf;
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.Timeout;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -52,6 +57,8 @@ class LongPollReadEntryProcessorV3 extends ReadEntryProcessorV3 implements Watch
     private Timeout expirationTimerTask = null;
     private Future<?> deferredTask = null;
     private boolean shouldReadEntry = false;
+    // the entries following the piggybacked entry, wrapped by the response until it is written
+    private final List<ByteBuf> nextEntryBodies = new ArrayList<>();
 
     LongPollReadEntryProcessorV3(Request request,
                                  BookieRequestHandler requestHandler,
@@ -98,8 +105,9 @@ class LongPollReadEntryProcessorV3 extends ReadEntryProcessorV3 implements Watch
                     if (logger.isDebugEnabled()) {
                         logger.debug("ReadLAC Piggy Back reading entry:{} from ledger: {}", entryId, ledgerId);
                     }
+                    ReadResponse readResponse;
                     try {
-                        return super.readEntry(readResponseBuilder, entryId, true, startTimeSw);
+                        readResponse = super.readEntry(readResponseBuilder, entryId, true, startTimeSw);
                     } catch (Bookie.NoEntryException e) {
                         requestProcessor.getRequestStats().getReadLastEntryNoEntryErrorCounter().inc();
                         logger.info(
@@ -109,6 +117,10 @@ class LongPollReadEntryProcessorV3 extends ReadEntryProcessorV3 implements Watch
                         // entries across the ensemble
                         return buildResponse(readResponseBuilder, StatusCode.EOK, startTimeSw);
                     }
+                    if (null == readResponse || !readRequest.hasMaxEntries() || readRequest.getMaxEntries() <= 1) {
+                        return readResponse;
+                    }
+                    return readNextEntries(readResponse.toBuilder(), entryId + 1, knownLAC).build();
                 } else {
                     if (knownLAC < previousLAC) {
                         if (logger.isDebugEnabled()) {
@@ -125,6 +137,46 @@ class LongPollReadEntryProcessorV3 extends ReadEntryProcessorV3 implements Watch
         }
     }
 
+    /**
+     * Add to the response the entries following the piggybacked entry, up to the number of entries
+     * granted by the client and the known LAC. Stops at the first entry this bookie fails to read,
+     * as the client only processes consecutive entries, and once half of the max frame size is used.
+     * The entries are wrapped without copying and released once the response is written.
+     */
+    private ReadResponse.Builder readNextEntries(ReadResponse.Builder readResponseBuilder,
+                                                 long firstEntryId, long knownLAC) {
+        long lastEntryId = Math.min(knownLAC, previousLAC + readRequest.getMaxEntries());
+        long maxBytes = requestProcessor.getServerCfg().getNettyMaxFrameSizeBytes() / 2;
+        long bytes = 0;
+        for (long nextEntryId = firstEntryId; nextEntryId <= lastEntryId && bytes < maxBytes; nextEntryId++) {
+            ByteBuf entryBody;
+            try {
+                entryBody = requestProcessor.getBookie().readEntry(ledgerId, nextEntryId);
+            } catch (IOException | BookieException e) {
+                // the piggybacked entry was read, the following entries are best effort
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Stop reading the entries following entry {} of ledger {} at entry {}",
+                            firstEntryId - 1, ledgerId, nextEntryId, e);
+                }
+                break;
+            }
+            synchronized (this) {
+                nextEntryBodies.add(entryBody);
+            }
+            bytes += entryBody.readableBytes();
+            readResponseBuilder.addNextEntryBodies(UnsafeByteOperations.unsafeWrap(entryBody.nioBuffer()));
+        }
+        return readResponseBuilder;
+    }
+
+    @Override
+    protected void onResponseDone() {
+        synchronized (this) {
+            nextEntryBodies.forEach(ReferenceCountUtil::release);
+            nextEntryBodies.clear();
+        }
+    }
+
     private ReadResponse buildErrorResponse(StatusCode statusCode, Stopwatch sw) {
         ReadResponse.Builder builder = ReadResponse.newBuilder()
                 .setLedgerId(ledgerId)
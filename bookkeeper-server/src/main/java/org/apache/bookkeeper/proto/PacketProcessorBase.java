@@ -38,6 +38,8 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
     BookieRequestHandler requestHandler;
     BookieRequestProcessor requestProcessor;
     long enqueueNanos;
+    // trace of the request, null if it is not sampled
+    RequestTrace trace;
 
     protected void init(T request, BookieRequestHandler requestHandler, BookieRequestProcessor requestProcessor) {
         this.request = request;
@@ -51,6 +53,10 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
         requestHandler = null;
         requestProcessor = null;
         enqueueNanos = -1;
+        if (trace != null) {
+            trace.recycle();
+            trace = null;
+        }
     }
 
     protected boolean isVersionCompatible() {
@@ -115,6 +121,7 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
                 if (response instanceof BookieProtocol.Response) {
                     ((BookieProtocol.Response) response).release();
                 }
+                completeTrace(false);
                 return;
             } else {
                 requestProcessor.invalidateBlacklist(channel);
@@ -145,6 +152,7 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
         } else {
             statsLogger.registerFailedEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
         }
+        completeTrace(BookieProtocol.EOK == rc);
     }
 
     /**
@@ -163,6 +171,7 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
             }
         } catch (ExecutionException | InterruptedException e) {
             logger.debug("Netty channel write exception. ", e);
+            completeTrace(false);
             return;
         }
         if (BookieProtocol.EOK == rc) {
@@ -170,10 +179,30 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
         } else {
             statsLogger.registerFailedEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
         }
+        completeTrace(BookieProtocol.EOK == rc);
+    }
+
+    protected void startTrace(RequestTrace.Type type) {
+        trace = requestProcessor.getRequestTracer().startTrace(type, request.getLedgerId(), request.getEntryId());
+    }
+
+    protected void stampTrace(RequestTrace.Stage stage) {
+        if (trace != null) {
+            trace.stamp(stage);
+        }
+    }
+
+    private void completeTrace(boolean success) {
+        if (trace != null) {
+            trace.setSuccess(success);
+            trace.complete();
+            trace = null;
+        }
     }
 
     @Override
     public void run() {
+        stampTrace(RequestTrace.Stage.DEQUEUED);
         if (request instanceof BookieProtocol.ReadRequest) {
             requestProcessor.getRequestStats().getReadEntrySchedulingDelayStats()
                     .registerSuccessfulEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
@@ -43,6 +43,8 @@ public abstract class PacketProcessorBaseV3 implements Runnable {
     final BookieRequestHandler requestHandler;
     final BookieRequestProcessor requestProcessor;
     final long enqueueNanos;
+    // trace of the request, null if it is not sampled
+    RequestTrace trace;
 
     public PacketProcessorBaseV3(Request request, BookieRequestHandler requestHandler,
                                  BookieRequestProcessor requestProcessor) {
@@ -83,6 +85,8 @@ public abstract class PacketProcessorBaseV3 implements Runnable {
                 requestProcessor.getRequestStats().getChannelWriteStats()
                         .registerFailedEvent(MathUtils.elapsedNanos(writeNanos), TimeUnit.NANOSECONDS);
                 statsLogger.registerFailedEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
+                completeTrace(false);
+                onResponseDone();
                 return;
             } else {
                 requestProcessor.invalidateBlacklist(channel);
@@ -105,11 +109,40 @@ public abstract class PacketProcessorBaseV3 implements Runnable {
                     } else {
                         statsLogger.registerFailedEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
                     }
+                    completeTrace(future.isSuccess() && StatusCode.EOK == code);
+                    onResponseDone();
                 }
             });
         } else {
             log.debug("Netty channel {} is inactive, "
                     + "hence bypassing netty channel writeAndFlush during sendResponse", channel);
+            completeTrace(false);
+            onResponseDone();
+        }
+    }
+
+    /**
+     * Called once the response is written to the channel, or dropped. The buffers the response
+     * wraps without copying can be released from then on.
+     */
+    protected void onResponseDone() {
+    }
+
+    protected void startTrace(RequestTrace.Type type, long ledgerId, long entryId) {
+        trace = requestProcessor.getRequestTracer().startTrace(type, ledgerId, entryId);
+    }
+
+    protected void stampTrace(RequestTrace.Stage stage) {
+        if (trace != null) {
+            trace.stamp(stage);
+        }
+    }
+
+    private void completeTrace(boolean success) {
+        if (trace != null) {
+            trace.setSuccess(success);
+            trace.complete();
+            trace = null;
         }
     }
 
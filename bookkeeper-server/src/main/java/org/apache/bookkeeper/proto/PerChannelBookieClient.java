@@ -94,14 +94,17 @@ import lombok.SneakyThrows;
 import org.apache.bookkeeper.auth.BookKeeperPrincipal;
 import org.apache.bookkeeper.auth.ClientAuthProvider;
 import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.BookKeeperClientStats;
 import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.api.DigestType;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.util.MdcUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.CopyLedgerFragmentCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
@@ -115,6 +118,8 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoRequest;
@@ -272,6 +277,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final OpStatsLogger connectTimer;
     private final OpStatsLogger getListOfEntriesOfLedgerCompletionOpLogger;
     private final OpStatsLogger getListOfEntriesOfLedgerCompletionTimeoutOpLogger;
+    private final OpStatsLogger copyLedgerFragmentOpLogger;
+    private final OpStatsLogger copyLedgerFragmentTimeoutOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.NETTY_EXCEPTION_CNT,
         help = "the number of exceptions received from this channel"
@@ -432,6 +439,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         startTLSTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_START_TLS_OP);
         getListOfEntriesOfLedgerCompletionTimeoutOpLogger = statsLogger
                 .getOpStatsLogger(BookKeeperClientStats.TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER);
+        copyLedgerFragmentOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.COPY_LEDGER_FRAGMENT_OP);
+        copyLedgerFragmentTimeoutOpLogger = statsLogger
+                .getOpStatsLogger(BookKeeperClientStats.TIMEOUT_COPY_LEDGER_FRAGMENT);
         exceptionCounter = statsLogger.getCounter(BookKeeperClientStats.NETTY_EXCEPTION_CNT);
         connectTimer = statsLogger.getOpStatsLogger(BookKeeperClientStats.CLIENT_CONNECT_TIMER);
         addEntryOutstanding = statsLogger.getCounter(BookKeeperClientStats.ADD_OP_OUTSTANDING);
@@ -899,6 +909,39 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, getListOfEntriesOfLedgerRequest);
     }
 
+    public void copyLedgerFragment(final long ledgerId, final long firstEntryId, final long lastEntryId,
+                                   final byte[] masterKey, final DigestType digestType,
+                                   final List<BookieId> ensemble, final int writeQuorumSize, final int ackQuorumSize,
+                                   CopyLedgerFragmentCallback cb) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.COPY_LEDGER_FRAGMENT);
+        completionObjects.put(completionKey, new CopyLedgerFragmentCompletion(completionKey, cb, ledgerId));
+
+        // Build the request.
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.COPY_LEDGER_FRAGMENT).setTxnId(txnId);
+
+        CopyLedgerFragmentRequest.Builder copyLedgerFragmentRequestBuilder = CopyLedgerFragmentRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setFirstEntryId(firstEntryId)
+                .setLastEntryId(lastEntryId)
+                .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
+                .setWriteQuorumSize(writeQuorumSize)
+                .setAckQuorumSize(ackQuorumSize);
+        if (null != digestType) {
+            copyLedgerFragmentRequestBuilder.setDigestType(BookKeeper.DigestType.toProtoDigestType(
+                    BookKeeper.DigestType.fromApiDigestType(digestType)));
+        }
+        for (BookieId bookie : ensemble) {
+            copyLedgerFragmentRequestBuilder.addEnsemble(bookie.toString());
+        }
+
+        final Request copyLedgerFragmentRequest = Request.newBuilder().setHeader(headerBuilder)
+                .setCopyLedgerFragmentRequest(copyLedgerFragmentRequestBuilder).build();
+
+        writeAndFlush(channel, completionKey, copyLedgerFragmentRequest);
+    }
+
     /**
      * Long Poll Reads.
      */
@@ -982,6 +1025,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     return;
                 }
                 readBuilder = readBuilder.setFlag(ReadRequest.Flag.ENTRY_PIGGYBACK);
+                if (ctx instanceof ReadLastConfirmedAndEntryContext
+                        && ((ReadLastConfirmedAndEntryContext) ctx).getMaxEntries() > 1) {
+                    readBuilder.setMaxEntries(((ReadLastConfirmedAndEntryContext) ctx).getMaxEntries());
+                }
             }
 
             // Only one flag can be set on the read requests
@@ -1937,6 +1984,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             if (readResponse.hasLacUpdateTimestamp()) {
                 lacUpdateTimestamp = readResponse.getLacUpdateTimestamp();
             }
+            if (readResponse.getNextEntryBodiesCount() > 0 && (ctx instanceof ReadLastConfirmedAndEntryContext)) {
+                List<ByteBuf> nextEntries = new ArrayList<>(readResponse.getNextEntryBodiesCount());
+                for (ByteString body : readResponse.getNextEntryBodiesList()) {
+                    nextEntries.add(Unpooled.wrappedBuffer(body.asReadOnlyByteBuffer()));
+                }
+                ((ReadLastConfirmedAndEntryContext) ctx).setNextEntries(nextEntries);
+            }
             handleReadResponse(readResponse.getLedgerId(),
                                readResponse.getEntryId(),
                                status, buffer, maxLAC, lacUpdateTimestamp);
@@ -2075,7 +2129,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             int rc = convertStatus(status, BKException.Code.ReadException);
             cb.getBookieInfoComplete(rc,
                                      new BookieInfo(totalDiskSpace,
-                                                    freeDiskSpace), ctx);
+                                                    freeDiskSpace,
+                                                    getBookieInfoResponse.getAddsInProgress(),
+                                                    getBookieInfoResponse.getReadsInProgress(),
+                                                    getBookieInfoResponse.getJournalQueueLength()), ctx);
         }
     }
 
@@ -2134,6 +2191,59 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    class CopyLedgerFragmentCompletion extends CompletionValue {
+        final CopyLedgerFragmentCallback cb;
+
+        public CopyLedgerFragmentCompletion(final CompletionKey key,
+                final CopyLedgerFragmentCallback origCallback, final long ledgerId) {
+            super("CopyLedgerFragment", null, ledgerId, 0L, copyLedgerFragmentOpLogger,
+                    copyLedgerFragmentTimeoutOpLogger);
+            this.cb = new CopyLedgerFragmentCallback() {
+                @Override
+                public void copyLedgerFragmentComplete(int rc, long ledgerId, long bytesCopied) {
+                    logOpResult(rc);
+                    origCallback.copyLedgerFragmentComplete(rc, ledgerId, bytesCopied);
+                    key.release();
+                }
+            };
+        }
+
+        @Override
+        boolean maybeTimeout() {
+            // the target bookie both reads the entries from its peers and adds them through its journal
+            if (MathUtils.elapsedNanos(startTime) >= readEntryTimeoutNanos + addEntryTimeoutNanos) {
+                timeout();
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> cb.copyLedgerFragmentComplete(rc, ledgerId, 0L));
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            CopyLedgerFragmentResponse copyLedgerFragmentResponse = response.getCopyLedgerFragmentResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK ? copyLedgerFragmentResponse.getStatus()
+                    : response.getStatus();
+
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledgerId", ledgerId);
+            }
+
+            int rc = convertStatus(status, BKException.Code.WriteException);
+            cb.copyLedgerFragmentComplete(rc, ledgerId, copyLedgerFragmentResponse.getBytesCopied());
+        }
+    }
+
     private final Recycler<AddCompletion> addCompletionRecycler = new Recycler<AddCompletion>() {
             @Override
             protected AddCompletion newObject(Recycler.Handle<AddCompletion> handle) {
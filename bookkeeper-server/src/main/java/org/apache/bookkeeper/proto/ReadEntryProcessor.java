@@ -28,6 +28,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
 import org.apache.bookkeeper.common.concurrent.FutureEventListener;
 import org.apache.bookkeeper.proto.BookieProtocol.ReadRequest;
 import org.apache.bookkeeper.stats.OpStatsLogger;
@@ -49,6 +50,7 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
                                             boolean throttleReadResponses) {
         ReadEntryProcessor rep = RECYCLER.get();
         rep.init(request, requestHandler, requestProcessor);
+        rep.startTrace(RequestTrace.Type.READ);
         rep.fenceThreadPool = fenceThreadPool;
         rep.throttleReadResponses = throttleReadResponses;
         requestProcessor.onReadRequestStart(requestHandler.ctx().channel());
@@ -85,6 +87,11 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
                 }
             }
             data = requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId());
+            stampTrace(RequestTrace.Stage.READ_DONE);
+            LedgerIoAccounting ledgerIoAccounting = requestProcessor.getLedgerIoAccounting();
+            if (ledgerIoAccounting != null) {
+                ledgerIoAccounting.recordRead(request.getLedgerId(), data.readableBytes());
+            }
             if (LOG.isDebugEnabled()) {
                 LOG.debug("##### Read entry ##### {} -- ref-count: {}", data.readableBytes(), data.refCnt());
             }
@@ -28,6 +28,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
 import org.apache.bookkeeper.common.concurrent.FutureEventListener;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadResponse;
@@ -79,6 +80,10 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
 
         this.fenceThreadPool = fenceThreadPool;
         lastPhaseStartTime = Stopwatch.createStarted();
+        // the time long poll reads spend waiting for the entry would dominate their trace
+        if (!readRequest.hasPreviousLAC()) {
+            startTrace(RequestTrace.Type.READ, ledgerId, entryId);
+        }
     }
 
     protected Long getPreviousLAC() {
@@ -171,6 +176,11 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                                      Stopwatch startTimeSw)
         throws IOException, BookieException {
         ByteBuf entryBody = requestProcessor.getBookie().readEntry(ledgerId, entryId);
+        stampTrace(RequestTrace.Stage.READ_DONE);
+        LedgerIoAccounting ledgerIoAccounting = requestProcessor.getLedgerIoAccounting();
+        if (ledgerIoAccounting != null) {
+            ledgerIoAccounting.recordRead(ledgerId, entryBody.readableBytes());
+        }
         if (null != fenceResult) {
             handleReadResultForFenceRead(entryBody, readResponseBuilder, entryId, startTimeSw);
             return null;
@@ -248,6 +258,7 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
 
     @Override
     public void run() {
+        stampTrace(RequestTrace.Stage.DEQUEUED);
         requestProcessor.getRequestStats().getReadEntrySchedulingDelayStats().registerSuccessfulEvent(
             MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
         if (!requestHandler.ctx().channel().isOpen()) {
@@ -17,10 +17,14 @@
  */
 package org.apache.bookkeeper.proto;
 
+import io.netty.buffer.ByteBuf;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallbackCtx;
+import org.apache.bookkeeper.util.MathUtils;
 
 /**
  * A {@link ReadEntryCallbackCtx} for long poll read requests.
@@ -31,10 +35,19 @@ public class ReadLastConfirmedAndEntryContext implements ReadEntryCallbackCtx {
     final BookieId bookie;
     long lac = LedgerHandle.INVALID_ENTRY_ID;
     Optional<Long> lacUpdateTimestamp = Optional.empty();
+    final int maxEntries;
+    final long sentNanos;
+    List<ByteBuf> nextEntries = Collections.emptyList();
 
     public ReadLastConfirmedAndEntryContext(int bookieIndex, BookieId bookie) {
+        this(bookieIndex, bookie, 1);
+    }
+
+    public ReadLastConfirmedAndEntryContext(int bookieIndex, BookieId bookie, int maxEntries) {
         this.bookieIndex = bookieIndex;
         this.bookie = bookie;
+        this.maxEntries = maxEntries;
+        this.sentNanos = MathUtils.nowInNano();
     }
 
     public int getBookieIndex() {
@@ -55,6 +68,15 @@ public class ReadLastConfirmedAndEntryContext implements ReadEntryCallbackCtx {
         return lac;
     }
 
+    /**
+     * Get the time the request was sent, as returned by {@link MathUtils#nowInNano()}.
+     *
+     * @return the time the request was sent in nanoseconds.
+     */
+    public long getSentNanos() {
+        return sentNanos;
+    }
+
     public Optional<Long> getLacUpdateTimestamp() {
         return lacUpdateTimestamp;
     }
@@ -63,4 +85,26 @@ public class ReadLastConfirmedAndEntryContext implements ReadEntryCallbackCtx {
         this.lacUpdateTimestamp = Optional.of(lacUpdateTimestamp);
     }
 
+    /**
+     * Get the number of entries the bookie is allowed to return in response to the long poll request.
+     *
+     * @return the credits granted to the request.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get the entries following the piggybacked entry that were returned by the bookie.
+     *
+     * @return the bodies of the next entries, in entry id order.
+     */
+    public List<ByteBuf> getNextEntries() {
+        return nextEntries;
+    }
+
+    public void setNextEntries(List<ByteBuf> nextEntries) {
+        this.nextEntries = nextEntries;
+    }
+
 }
@@ -27,6 +27,9 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_REJEC
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CHANNEL_WRITE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_LEDGER_FRAGMENT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_LEDGER_FRAGMENT_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_LEDGER_FRAGMENT_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FORCE_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FORCE_LEDGER_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_BOOKIE_INFO;
@@ -246,6 +249,22 @@ public class RequestStats {
             parent = GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST
     )
     final OpStatsLogger getListOfEntriesOfLedgerStats;
+    @StatsDoc(
+            name = COPY_LEDGER_FRAGMENT_REQUEST,
+            help = "request stats of CopyLedgerFragment on a bookie"
+    )
+    final OpStatsLogger copyLedgerFragmentRequestStats;
+    @StatsDoc(
+            name = COPY_LEDGER_FRAGMENT,
+            help = "operation stats of CopyLedgerFragment",
+            parent = COPY_LEDGER_FRAGMENT_REQUEST
+    )
+    final OpStatsLogger copyLedgerFragmentStats;
+    @StatsDoc(
+            name = COPY_LEDGER_FRAGMENT_BYTES,
+            help = "bytes copied from other bookies by CopyLedgerFragment requests"
+    )
+    final Counter copyLedgerFragmentBytes;
 
     public RequestStats(StatsLogger statsLogger) {
         this.addEntryStats = statsLogger.getThreadScopedOpStatsLogger(ADD_ENTRY);
@@ -281,6 +300,10 @@ public class RequestStats {
         this.getListOfEntriesOfLedgerRequestStats =
                 statsLogger.getOpStatsLogger(GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST);
 
+        this.copyLedgerFragmentStats = statsLogger.getOpStatsLogger(COPY_LEDGER_FRAGMENT);
+        this.copyLedgerFragmentRequestStats = statsLogger.getOpStatsLogger(COPY_LEDGER_FRAGMENT_REQUEST);
+        this.copyLedgerFragmentBytes = statsLogger.getCounter(COPY_LEDGER_FRAGMENT_BYTES);
+
         statsLogger.registerGauge(ADD_ENTRY_IN_PROGRESS, new Gauge<Number>() {
             @Override
             public Number getDefaultValue() {
@@ -356,6 +379,10 @@ public class RequestStats {
         return maxAddsInProgress.get();
     }
 
+    int addsInProgressCount() {
+        return addsInProgress.get();
+    }
+
     //
     // Read requests
     //
@@ -378,6 +405,10 @@ public class RequestStats {
         readsInProgress.decrementAndGet();
     }
 
+    int readsInProgressCount() {
+        return readsInProgress.get();
+    }
+
     int maxReadsInProgressCount() {
         return maxReadsInProgress.get();
     }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+
+/**
+ * The timings of the processing stages of a sampled add or read request.
+ *
+ * <p>A trace is taken from the {@link RequestTracer} when a request is sampled, and is handed
+ * along with the request through the request processors and the journal, each of them stamping
+ * the stage it completes. Once the response has been sent the trace is recorded by the tracer
+ * and recycled.
+ *
+ * <p>The stages of a request are stamped one after the other, so a trace is only accessed by
+ * a thread at a time.
+ */
+public final class RequestTrace {
+
+    /**
+     * Type of the traced requests.
+     */
+    public enum Type {
+        ADD,
+        READ
+    }
+
+    /**
+     * Processing stages of a request, in the order they are stamped.
+     */
+    public enum Stage {
+        // the request has been received by the request processor
+        RECEIVED,
+        // the request has been picked up by a worker thread
+        DEQUEUED,
+        // the entry has been added to the ledger storage and queued to the journal
+        JOURNAL_ENQUEUED,
+        // the entry has been picked up by the journal thread
+        JOURNAL_DEQUEUED,
+        // the journal group commit containing the entry has been written to the journal file
+        JOURNAL_FLUSHED,
+        // the journal file has been synced to the disk
+        FORCE_WRITTEN,
+        // the write callback of the entry has been triggered
+        CALLBACK,
+        // the entry has been read from the ledger storage
+        READ_DONE,
+        // the response has been written to the channel
+        RESPONSE_SENT
+    }
+
+    /**
+     * A write callback carrying the trace of the request it completes, so that the journal
+     * can stamp the stages of the entry.
+     */
+    public interface TracedWriteCallback extends WriteCallback {
+
+        /**
+         * @return the trace of the request, or null if the request is not sampled
+         */
+        RequestTrace getRequestTrace();
+    }
+
+    static final Stage[] STAGES = Stage.values();
+
+    private final long[] stageNanos = new long[STAGES.length];
+    private int stampedStages;
+    private boolean success;
+    private Type type;
+    private long ledgerId;
+    private long entryId;
+    private RequestTracer tracer;
+
+    static RequestTrace create(RequestTracer tracer, Type type, long ledgerId, long entryId) {
+        RequestTrace trace = RECYCLER.get();
+        trace.tracer = tracer;
+        trace.type = type;
+        trace.ledgerId = ledgerId;
+        trace.entryId = entryId;
+        trace.success = true;
+        trace.stamp(Stage.RECEIVED);
+        return trace;
+    }
+
+    /**
+     * Record the current time as the completion time of the given stage.
+     *
+     * @param stage the completed stage
+     */
+    public void stamp(Stage stage) {
+        stamp(stage, System.nanoTime());
+    }
+
+    @VisibleForTesting
+    void stamp(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] = nanos;
+        stampedStages |= 1 << stage.ordinal();
+    }
+
+    boolean isStamped(Stage stage) {
+        return (stampedStages & (1 << stage.ordinal())) != 0;
+    }
+
+    long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    int getStampedStages() {
+        return stampedStages;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    long getLedgerId() {
+        return ledgerId;
+    }
+
+    long getEntryId() {
+        return entryId;
+    }
+
+    boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @param success whether the request succeeded
+     */
+    void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    /**
+     * Stamp the response as sent, record the trace and recycle it.
+     */
+    void complete() {
+        stamp(Stage.RESPONSE_SENT);
+        tracer.record(this);
+        recycle();
+    }
+
+    /**
+     * Recycle the trace without recording it, when no response is sent for the request.
+     */
+    void recycle() {
+        stampedStages = 0;
+        tracer = null;
+        recyclerHandle.recycle(this);
+    }
+
+    private final Handle<RequestTrace> recyclerHandle;
+
+    private RequestTrace(Handle<RequestTrace> recyclerHandle) {
+        this.recyclerHandle = recyclerHandle;
+    }
+
+    private static final Recycler<RequestTrace> RECYCLER = new Recycler<RequestTrace>() {
+        @Override
+        protected RequestTrace newObject(Handle<RequestTrace> handle) {
+            return new RequestTrace(handle);
+        }
+    };
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.proto.RequestTrace.STAGES;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.bookkeeper.proto.RequestTrace.Stage;
+import org.apache.bookkeeper.proto.RequestTrace.Type;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * Samples add and read requests, and records the timings of their processing stages.
+ *
+ * <p>For each request type, the time spent in each stage, since the previous stamped stage, is
+ * recorded in a stat named after the stage, along with the total processing time. The slowest
+ * traced requests are kept with the timings of all their stages, until they are reset.
+ *
+ * <p>Requests which are not sampled don't get a trace, so they go through the request processing
+ * without any allocation or extra timestamp.
+ */
+public class RequestTracer {
+
+    static final String TOTAL = "TOTAL";
+
+    private final int sampleInterval;
+
+    private final OpStatsLogger[][] stageStats;
+    private final OpStatsLogger[] totalStats;
+
+    // the slowest traced requests, the stage times being relative to the reception of the request
+    private final long[] slowestTotalNanos;
+    private final long[][] slowestStageNanos;
+    private final int[] slowestStampedStages;
+    private final Type[] slowestTypes;
+    private final long[] slowestLedgerIds;
+    private final long[] slowestEntryIds;
+    private final boolean[] slowestSuccesses;
+    private final long[] slowestCompletionTimes;
+    private int numSlowest = 0;
+    // total time under which a traced request is not slow enough to be kept
+    private volatile long slowestThresholdNanos = Long.MIN_VALUE;
+
+    /**
+     * Description of a traced request, as exposed to the admin endpoints.
+     */
+    @Getter
+    @Builder
+    public static class TracedRequest {
+        private String type;
+        private long ledgerId;
+        private long entryId;
+        private boolean success;
+        // wall clock time at which the response was sent
+        private long completionTime;
+        private long totalMicros;
+        // stamped stages, with the time elapsed since the reception of the request
+        private Map<String, Long> stageMicros;
+    }
+
+    /**
+     * @param sampleInterval trace on average one request out of this number, 0 or less to disable the tracing
+     * @param numSlowestRequests number of slowest traced requests to keep
+     * @param statsLogger stats logger of the stage timings
+     */
+    public RequestTracer(int sampleInterval, int numSlowestRequests, StatsLogger statsLogger) {
+        this.sampleInterval = sampleInterval;
+
+        Type[] types = Type.values();
+        this.stageStats = new OpStatsLogger[types.length][STAGES.length];
+        this.totalStats = new OpStatsLogger[types.length];
+        for (Type type : types) {
+            StatsLogger typeLogger = statsLogger.scope(type.name());
+            // the reception is the reference of the other stages
+            for (int i = 1; i < STAGES.length; i++) {
+                stageStats[type.ordinal()][i] = typeLogger.getOpStatsLogger(STAGES[i].name());
+            }
+            totalStats[type.ordinal()] = typeLogger.getOpStatsLogger(TOTAL);
+        }
+
+        int numSlowest = Math.max(numSlowestRequests, 0);
+        this.slowestTotalNanos = new long[numSlowest];
+        this.slowestStageNanos = new long[numSlowest][STAGES.length];
+        this.slowestStampedStages = new int[numSlowest];
+        this.slowestTypes = new Type[numSlowest];
+        this.slowestLedgerIds = new long[numSlowest];
+        this.slowestEntryIds = new long[numSlowest];
+        this.slowestSuccesses = new boolean[numSlowest];
+        this.slowestCompletionTimes = new long[numSlowest];
+    }
+
+    public boolean isEnabled() {
+        return sampleInterval > 0;
+    }
+
+    /**
+     * Start the trace of a request, if it is sampled.
+     *
+     * @param type the request type
+     * @param ledgerId the ledger of the request
+     * @param entryId the entry of the request
+     * @return the trace of the request, or null if it is not sampled
+     */
+    public RequestTrace startTrace(Type type, long ledgerId, long entryId) {
+        if (sampleInterval <= 0
+                || (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0)) {
+            return null;
+        }
+        return RequestTrace.create(this, type, ledgerId, entryId);
+    }
+
+    void record(RequestTrace trace) {
+        final boolean success = trace.isSuccess();
+        final int typeIdx = trace.getType().ordinal();
+        final long receivedNanos = trace.getStageNanos(Stage.RECEIVED);
+        long previousNanos = receivedNanos;
+        for (int i = 1; i < STAGES.length; i++) {
+            if (trace.isStamped(STAGES[i])) {
+                long stageNanos = trace.getStageNanos(STAGES[i]);
+                register(stageStats[typeIdx][i], success, stageNanos - previousNanos);
+                previousNanos = stageNanos;
+            }
+        }
+        final long totalNanos = previousNanos - receivedNanos;
+        register(totalStats[typeIdx], success, totalNanos);
+
+        if (totalNanos > slowestThresholdNanos && slowestTotalNanos.length > 0) {
+            recordSlowRequest(trace, success, totalNanos);
+        }
+    }
+
+    private static void register(OpStatsLogger stats, boolean success, long nanos) {
+        if (success) {
+            stats.registerSuccessfulEvent(nanos, TimeUnit.NANOSECONDS);
+        } else {
+            stats.registerFailedEvent(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void recordSlowRequest(RequestTrace trace, boolean success, long totalNanos) {
+        int slot;
+        if (numSlowest < slowestTotalNanos.length) {
+            slot = numSlowest++;
+        } else {
+            slot = fastestSlowRequest();
+            if (totalNanos <= slowestTotalNanos[slot]) {
+                // a faster request has been replaced since the threshold was read
+                return;
+            }
+        }
+
+        final long receivedNanos = trace.getStageNanos(Stage.RECEIVED);
+        for (int i = 0; i < STAGES.length; i++) {
+            slowestStageNanos[slot][i] = trace.getStageNanos(STAGES[i]) - receivedNanos;
+        }
+        slowestTotalNanos[slot] = totalNanos;
+        slowestStampedStages[slot] = trace.getStampedStages();
+        slowestTypes[slot] = trace.getType();
+        slowestLedgerIds[slot] = trace.getLedgerId();
+        slowestEntryIds[slot] = trace.getEntryId();
+        slowestSuccesses[slot] = success;
+        slowestCompletionTimes[slot] = System.currentTimeMillis();
+
+        if (numSlowest == slowestTotalNanos.length) {
+            slowestThresholdNanos = slowestTotalNanos[fastestSlowRequest()];
+        }
+    }
+
+    private int fastestSlowRequest() {
+        int fastest = 0;
+        for (int i = 1; i < numSlowest; i++) {
+            if (slowestTotalNanos[i] < slowestTotalNanos[fastest]) {
+                fastest = i;
+            }
+        }
+        return fastest;
+    }
+
+    /**
+     * @return the slowest traced requests, the slowest first
+     */
+    public synchronized List<TracedRequest> getSlowestRequests() {
+        List<TracedRequest> requests = new ArrayList<>(numSlowest);
+        for (int slot = 0; slot < numSlowest; slot++) {
+            Map<String, Long> stageMicros = new LinkedHashMap<>();
+            for (int i = 1; i < STAGES.length; i++) {
+                if ((slowestStampedStages[slot] & (1 << i)) != 0) {
+                    stageMicros.put(STAGES[i].name(), TimeUnit.NANOSECONDS.toMicros(slowestStageNanos[slot][i]));
+                }
+            }
+            requests.add(TracedRequest.builder()
+                    .type(slowestTypes[slot].name())
+                    .ledgerId(slowestLedgerIds[slot])
+                    .entryId(slowestEntryIds[slot])
+                    .success(slowestSuccesses[slot])
+                    .completionTime(slowestCompletionTimes[slot])
+                    .totalMicros(TimeUnit.NANOSECONDS.toMicros(slowestTotalNanos[slot]))
+                    .stageMicros(stageMicros)
+                    .build());
+        }
+        requests.sort(Comparator.comparingLong(TracedRequest::getTotalMicros).reversed());
+        return requests;
+    }
+
+    /**
+     * Forget the slowest traced requests, to start tracking new ones.
+     */
+    public synchronized void resetSlowestRequests() {
+        numSlowest = 0;
+        slowestThresholdNanos = Long.MIN_VALUE;
+    }
+}
@@ -24,9 +24,9 @@ import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookieProtocol.ParsedAddRequest;
-import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.util.MathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +34,8 @@ import org.slf4j.LoggerFactory;
 /**
  * Processes add entry requests.
  */
-class WriteEntryProcessor extends PacketProcessorBase<ParsedAddRequest> implements WriteCallback {
+class WriteEntryProcessor extends PacketProcessorBase<ParsedAddRequest>
+        implements RequestTrace.TracedWriteCallback {
 
     private static final Logger LOG = LoggerFactory.getLogger(WriteEntryProcessor.class);
 
@@ -50,6 +51,7 @@ class WriteEntryProcessor extends PacketProcessorBase<ParsedAddRequest> implemen
                                              BookieRequestProcessor requestProcessor) {
         WriteEntryProcessor wep = RECYCLER.get();
         wep.init(request, requestHandler, requestProcessor);
+        wep.startTrace(RequestTrace.Type.ADD);
         requestProcessor.onAddRequestStart(requestHandler.ctx().channel());
         return wep;
     }
@@ -71,6 +73,9 @@ class WriteEntryProcessor extends PacketProcessorBase<ParsedAddRequest> implemen
         startTimeNanos = MathUtils.nowInNano();
         int rc = BookieProtocol.EOK;
         ByteBuf addData = request.getData();
+        // the entry may be released by the time it is added
+        final int addSize = addData.readableBytes();
+        final LedgerIoAccounting ledgerIoAccounting = requestProcessor.getLedgerIoAccounting();
         try {
             if (request.isRecoveryAdd()) {
                 requestProcessor.getBookie().recoveryAddEntry(addData, this, requestHandler, request.getMasterKey());
@@ -78,6 +83,9 @@ class WriteEntryProcessor extends PacketProcessorBase<ParsedAddRequest> implemen
                 requestProcessor.getBookie().addEntry(addData, false, this,
                         requestHandler, request.getMasterKey());
             }
+            if (ledgerIoAccounting != null) {
+                ledgerIoAccounting.recordAdd(request.getLedgerId(), addSize);
+            }
         } catch (OperationRejectedException e) {
             requestProcessor.getRequestStats().getAddEntryRejectedCounter().inc();
             // Avoid to log each occurence of this exception as this can happen when the ledger storage is
@@ -123,13 +131,24 @@ class WriteEntryProcessor extends PacketProcessorBase<ParsedAddRequest> implemen
                 .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
         }
 
-        requestHandler.prepareSendResponseV2(rc, request);
+        // the trace is completed once the pending responses of the channel are flushed
+        if (trace != null) {
+            trace.stamp(RequestTrace.Stage.CALLBACK);
+            trace.setSuccess(BookieProtocol.EOK == rc);
+        }
+        requestHandler.prepareSendResponseV2(rc, request, trace);
+        trace = null;
         requestProcessor.onAddRequestFinish();
 
         request.recycle();
         recycle();
     }
 
+    @Override
+    public RequestTrace getRequestTrace() {
+        return trace;
+    }
+
     @Override
     public String toString() {
         return String.format("WriteEntry(%d, %d)",
@@ -27,6 +27,7 @@ import java.util.EnumSet;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
@@ -46,6 +47,8 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
                                  BookieRequestProcessor requestProcessor) {
         super(request, requestHandler, requestProcessor);
         requestProcessor.onAddRequestStart(requestHandler.ctx().channel());
+        startTrace(RequestTrace.Type.ADD, request.getAddRequest().getLedgerId(),
+                request.getAddRequest().getEntryId());
     }
 
     // Returns null if there is no exception thrown
@@ -72,10 +75,16 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
             return addResponse.build();
         }
 
-        BookkeeperInternalCallbacks.WriteCallback wcb = new BookkeeperInternalCallbacks.WriteCallback() {
+        BookkeeperInternalCallbacks.WriteCallback wcb = new RequestTrace.TracedWriteCallback() {
+            @Override
+            public RequestTrace getRequestTrace() {
+                return trace;
+            }
+
             @Override
             public void writeComplete(int rc, long ledgerId, long entryId,
                                       BookieId addr, Object ctx) {
+                stampTrace(RequestTrace.Stage.CALLBACK);
                 if (BookieProtocol.EOK == rc) {
                     requestProcessor.getRequestStats().getAddEntryStats()
                         .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
@@ -115,6 +124,8 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
         StatusCode status = null;
         byte[] masterKey = addRequest.getMasterKey().toByteArray();
         ByteBuf entryToAdd = Unpooled.wrappedBuffer(addRequest.getBody().asReadOnlyByteBuffer());
+        final int addSize = entryToAdd.readableBytes();
+        final LedgerIoAccounting ledgerIoAccounting = requestProcessor.getLedgerIoAccounting();
         try {
             if (RequestUtils.hasFlag(addRequest, AddRequest.Flag.RECOVERY_ADD)) {
                 requestProcessor.getBookie().recoveryAddEntry(entryToAdd, wcb,
@@ -124,6 +135,9 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
                         requestHandler.ctx().channel(), masterKey);
             }
             status = StatusCode.EOK;
+            if (ledgerIoAccounting != null) {
+                ledgerIoAccounting.recordAdd(addRequest.getLedgerId(), addSize);
+            }
         } catch (OperationRejectedException e) {
             requestProcessor.getRequestStats().getAddEntryRejectedCounter().inc();
             // Avoid to log each occurence of this exception as this can happen when the ledger storage is
@@ -162,6 +176,7 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
 
     @Override
     public void run() {
+        stampTrace(RequestTrace.Stage.DEQUEUED);
         requestProcessor.getRequestStats().getWriteThreadQueuedLatency()
                 .registerSuccessfulEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
         AddResponse addResponse = getAddResponse();
@@ -49,4 +49,13 @@ class CRC32CDigestManager extends DigestManager {
     int update(int digest, ByteBuf data, int offset, int len) {
         return Crc32cIntChecksum.resumeChecksum(digest, data, offset, len);
     }
+
+    @Override
+    int updateChecksummed(int digest, ChecksummedCompositeByteBuf buf) {
+        if (!buf.hasPayloadChecksum()) {
+            return super.updateChecksummed(digest, buf);
+        }
+        // the payload was already checksummed by the producer, no need to read it again
+        return Crc32cIntChecksum.combineChecksum(digest, buf.payloadChecksum(), buf.readableBytes());
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto.checksum;
+
+import com.scurrilous.circe.checksum.Crc32cIntChecksum;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+
+/**
+ * A {@link CompositeByteBuf} assembled from chunks whose CRC32C checksum is already known to the producer.
+ *
+ * <p>The per-chunk checksums are folded into a payload checksum as the chunks are added, in time proportional to
+ * the number of chunks. When such a buffer is added as an entry to a ledger using the CRC32C digest type, the
+ * {@link DigestManager} combines the payload checksum with the entry headers instead of hashing the payload again.
+ *
+ * <p>The checksums are trusted as given: a wrong checksum is not detected when the entry is written, but the entry
+ * will fail digest verification when it is read back. If the readable content of the buffer stops matching the
+ * checksummed chunks (e.g. components added through the plain {@code addComponent} methods, or the reader index
+ * moved), the payload is hashed as usual.
+ */
+public class ChecksummedCompositeByteBuf extends CompositeByteBuf {
+
+    private int payloadChecksum = 0;
+    private long checksummedBytes = 0;
+
+    public ChecksummedCompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents) {
+        super(alloc, direct, maxNumComponents);
+    }
+
+    /**
+     * Add a chunk with its CRC32C checksum and increase the {@code writerIndex}.
+     *
+     * <p>Ownership of {@code buffer} is transferred to this {@link CompositeByteBuf}.
+     *
+     * @param buffer the chunk to append; its readable bytes must be exactly the checksummed data
+     * @param checksum the CRC32C checksum of the readable bytes of {@code buffer}
+     * @return this buffer
+     */
+    public ChecksummedCompositeByteBuf addChecksummedComponent(ByteBuf buffer, int checksum) {
+        int length = buffer.readableBytes();
+        addComponent(true, buffer);
+        payloadChecksum = Crc32cIntChecksum.combineChecksum(payloadChecksum, checksum, length);
+        checksummedBytes += length;
+        return this;
+    }
+
+    /**
+     * @return true if the readable bytes of this buffer are exactly the chunks added with
+     *         {@link #addChecksummedComponent(ByteBuf, int)}, so {@link #payloadChecksum()} can be used
+     */
+    public boolean hasPayloadChecksum() {
+        return readerIndex() == 0 && writerIndex() == checksummedBytes;
+    }
+
+    /**
+     * @return the CRC32C checksum of all the checksummed chunks, in order
+     */
+    public int payloadChecksum() {
+        return payloadChecksum;
+    }
+}
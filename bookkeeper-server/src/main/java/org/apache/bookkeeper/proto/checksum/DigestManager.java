@@ -62,6 +62,15 @@ public abstract class DigestManager {
 
     abstract boolean isInt32Digest();
 
+    /**
+     * Updates the digest with the payload of a {@link ChecksummedCompositeByteBuf}. Digest types that can derive
+     * their digest from the CRC32C checksums carried by the buffer override this to skip reading the payload;
+     * the others hash the payload as any composite buffer.
+     */
+    int updateChecksummed(int digest, ChecksummedCompositeByteBuf buf) {
+        return updateComponents(digest, buf);
+    }
+
     final int macCodeLength;
 
     public DigestManager(long ledgerId, boolean useV2Protocol, ByteBufAllocator allocator) {
@@ -143,15 +152,7 @@ public abstract class DigestManager {
         ReferenceCountUtil.retain(unwrapped);
         ReferenceCountUtil.safeRelease(data);
 
-        if (unwrapped instanceof CompositeByteBuf) {
-            CompositeByteBuf cbb = (CompositeByteBuf) unwrapped;
-            for (int i = 0; i < cbb.numComponents(); i++) {
-                ByteBuf b = cbb.component(i);
-                digest = update(digest, b, b.readerIndex(), b.readableBytes());
-            }
-        } else {
-            digest = update(digest, unwrapped, unwrapped.readerIndex(), unwrapped.readableBytes());
-        }
+        digest = updatePayload(digest, unwrapped);
 
         populateValueAndReset(digest, buf);
 
@@ -183,20 +184,30 @@ public abstract class DigestManager {
         ReferenceCountUtil.retain(unwrapped);
         ReferenceCountUtil.release(data);
 
-        if (unwrapped instanceof CompositeByteBuf) {
-            CompositeByteBuf cbb = ((CompositeByteBuf) unwrapped);
-            for (int i = 0; i < cbb.numComponents(); i++) {
-                ByteBuf b = cbb.component(i);
-                digest = update(digest, b, b.readerIndex(), b.readableBytes());
-            }
-        } else {
-            digest = update(digest, unwrapped, unwrapped.readerIndex(), unwrapped.readableBytes());
-        }
+        digest = updatePayload(digest, unwrapped);
         populateValueAndReset(digest, headersBuffer);
 
         return ByteBufList.get(headersBuffer, unwrapped);
     }
 
+    private int updatePayload(int digest, ByteBuf unwrapped) {
+        if (unwrapped instanceof ChecksummedCompositeByteBuf) {
+            return updateChecksummed(digest, (ChecksummedCompositeByteBuf) unwrapped);
+        } else if (unwrapped instanceof CompositeByteBuf) {
+            return updateComponents(digest, (CompositeByteBuf) unwrapped);
+        } else {
+            return update(digest, unwrapped, unwrapped.readerIndex(), unwrapped.readableBytes());
+        }
+    }
+
+    final int updateComponents(int digest, CompositeByteBuf cbb) {
+        for (int i = 0; i < cbb.numComponents(); i++) {
+            ByteBuf b = cbb.component(i);
+            digest = update(digest, b, b.readerIndex(), b.readableBytes());
+        }
+        return digest;
+    }
+
     /**
      * Computes the digest for writeLac for sending.
      *
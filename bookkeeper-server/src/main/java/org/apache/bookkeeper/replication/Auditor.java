@@ -27,6 +27,7 @@ import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.SettableFuture;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -43,6 +44,7 @@ import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.BookKeeperAdmin;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerAuditorManager;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.meta.LedgerManagerFactory;
 import org.apache.bookkeeper.meta.LedgerUnderreplicationManager;
@@ -90,6 +92,9 @@ public class Auditor implements AutoCloseable {
     private final List<AuditorTask> allAuditorTasks = Lists.newArrayList();
 
     private final AuditorStats auditorStats;
+    private boolean ledgerChecksScheduled = false;
+    private volatile boolean elected = false;
+    private volatile LedgerAuditorManager ledgerAuditorManager;
 
     static BookKeeper createBookKeeperClient(ServerConfiguration conf) throws InterruptedException, IOException {
         return createBookKeeperClient(conf, NullStatsLogger.INSTANCE);
@@ -415,9 +420,62 @@ public class Auditor implements AutoCloseable {
             }
 
             scheduleBookieCheckTask();
-            scheduleCheckAllLedgersTask();
-            schedulePlacementPolicyCheckTask();
-            scheduleReplicasCheckTask();
+            // already scheduled if this instance was running the sharded ledger checks before being elected
+            scheduleLedgerChecks();
+            elected = true;
+        }
+    }
+
+    /**
+     * Start only the periodic ledger checks, on the ledgers of the shard of this auto-recovery instance. This is
+     * run by the instances which are not the elected auditor, when the ledger checks are sharded. The same
+     * instance is then {@link #start() started} as the full auditor when elected.
+     */
+    public void startShardChecks() {
+        LOG.info("I'm starting the sharded ledger checks. ID: {}", bookieIdentifier);
+        synchronized (this) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            scheduleLedgerChecks();
+        }
+    }
+
+    private void scheduleLedgerChecks() {
+        if (ledgerChecksScheduled) {
+            return;
+        }
+        scheduleCheckAllLedgersTask();
+        schedulePlacementPolicyCheckTask();
+        scheduleReplicasCheckTask();
+        ledgerChecksScheduled = true;
+    }
+
+    /**
+     * Check only the ledgers of the shard of this instance in the periodic ledger checks, and publish the
+     * results of the checks so that the elected auditor exposes the results of all the shards.
+     */
+    void setShardedChecks(LedgerAuditorManager ledgerAuditorManager) {
+        this.ledgerAuditorManager = ledgerAuditorManager;
+        for (AuditorTask task : Arrays.asList(auditorCheckAllLedgersTask, auditorPlacementPolicyCheckTask,
+                auditorReplicasCheckTask)) {
+            task.setShardSupplier(ledgerAuditorManager::getAuditorShard);
+            task.setShardCheckedCallback(this::publishShardCheckValues);
+        }
+    }
+
+    @VisibleForTesting
+    void publishShardCheckValues() {
+        try {
+            ledgerAuditorManager.publishAuditorShardStats(auditorStats.getShardCheckValues());
+            if (elected) {
+                auditorStats.updateMergedShardCheckValues(ledgerAuditorManager.getAuditorShardStats());
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while publishing the results of the sharded ledger checks", ie);
+        } catch (IOException ioe) {
+            LOG.warn("Failed to publish the results of the sharded ledger checks", ioe);
         }
     }
 
@@ -104,6 +104,10 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
                 LOG.info("Ledger replication disabled, skipping checkAllLedgers");
                 return;
             }
+            if (!updateShard()) {
+                LOG.info("No auditor shard assigned, skipping checkAllLedgers");
+                return;
+            }
 
             LOG.info("Starting checkAllLedgers");
             checkAllLedgers();
@@ -162,6 +166,11 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
             final CompletableFuture<Void> processFuture = new CompletableFuture<>();
 
             BookkeeperInternalCallbacks.Processor<Long> checkLedgersProcessor = (ledgerId, callback) -> {
+                if (!isLedgerInShard(ledgerId)) {
+                    // checked by the auditor instance owning the shard of the ledger
+                    callback.processResult(BKException.Code.OK, null, null);
+                    return;
+                }
                 try {
                     if (!ledgerUnderreplicationManager.isLedgerReplicationEnabled()) {
                         LOG.info("Ledger rereplication has been disabled, aborting periodic check");
@@ -68,6 +68,8 @@ public class AuditorElector {
     private final LedgerAuditorManager ledgerAuditorManager;
 
     Auditor auditor;
+    // runs the ledger checks of the shard of this instance while it is not the auditor
+    private volatile Auditor shardAuditor;
     private AtomicBoolean running = new AtomicBoolean(false);
 
 
@@ -141,9 +143,33 @@ public class AuditorElector {
 
     public Future<?> start() {
         running.set(true);
+        if (conf.isAuditorShardedChecksEnabled()) {
+            try {
+                shardAuditor = newAuditor();
+                shardAuditor.startShardChecks();
+            } catch (UnavailableException e) {
+                LOG.error("Failed to start the sharded ledger checks", e);
+            }
+        }
         return submitElectionTask();
     }
 
+    private Auditor newAuditor() throws UnavailableException {
+        Auditor newAuditor = new Auditor(bookieId, conf, bkc, false, statsLogger);
+        if (conf.isAuditorShardedChecksEnabled()) {
+            newAuditor.setShardedChecks(ledgerAuditorManager);
+        }
+        return newAuditor;
+    }
+
+    private void stopShardAuditor() {
+        Auditor a = shardAuditor;
+        if (a != null) {
+            shardAuditor = null;
+            a.shutdown();
+        }
+    }
+
     /**
      * Run cleanup operations for the auditor elector.
      */
@@ -184,7 +210,11 @@ public class AuditorElector {
                     try {
                         ledgerAuditorManager.tryToBecomeAuditor(bookieId, e -> handleAuditorEvent(e));
 
-                        auditor = new Auditor(bookieId, conf, bkc, false, statsLogger);
+                        // the instance running the sharded ledger checks becomes the full auditor, so that
+                        // there is a single auditor, with a single set of clients, per instance
+                        Auditor electedAuditor = shardAuditor;
+                        shardAuditor = null;
+                        auditor = electedAuditor != null ? electedAuditor : newAuditor();
                         auditor.start();
                     } catch (InterruptedException e) {
                         LOG.error("Interrupted while performing auditor election", e);
@@ -242,6 +272,7 @@ public class AuditorElector {
             executor.shutdown();
         }
 
+        stopShardAuditor();
         if (auditor != null) {
             auditor.shutdown();
             auditor = null;
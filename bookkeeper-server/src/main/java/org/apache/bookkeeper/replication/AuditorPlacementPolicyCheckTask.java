@@ -83,6 +83,10 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
                 LOG.info("Ledger replication disabled, skipping placementPolicyCheck");
                 return;
             }
+            if (!updateShard()) {
+                LOG.info("No auditor shard assigned, skipping placementPolicyCheck");
+                return;
+            }
 
             Stopwatch stopwatch = Stopwatch.createStarted();
             LOG.info("Starting PlacementPolicyCheck");
@@ -181,6 +185,9 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
             List<Long> urLedgersElapsedRecoveryGracePeriod = new ArrayList<Long>();
             while (underreplicatedLedgersInfo.hasNext()) {
                 UnderreplicatedLedger underreplicatedLedger = underreplicatedLedgersInfo.next();
+                if (!isLedgerInShard(underreplicatedLedger.getLedgerId())) {
+                    continue;
+                }
                 long underreplicatedLedgerMarkTimeInMilSecs = underreplicatedLedger.getCtime();
                 if (underreplicatedLedgerMarkTimeInMilSecs != UnderreplicatedLedger.UNASSIGNED_CTIME) {
                     long elapsedTimeInSecs =
@@ -203,6 +210,10 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
                 new BookkeeperInternalCallbacks.Processor<Long>() {
                     @Override
                     public void process(Long ledgerId, AsyncCallback.VoidCallback iterCallback) {
+                        if (!isLedgerInShard(ledgerId)) {
+                            iterCallback.processResult(BKException.Code.OK, null, null);
+                            return;
+                        }
                         ledgerManager.readLedgerMetadata(ledgerId).whenComplete((metadataVer, exception) -> {
                             if (exception == null) {
                                 doPlacementPolicyCheck(ledgerId, iterCallback, metadataVer);
@@ -37,6 +37,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeperAdmin;
 import org.apache.bookkeeper.client.RoundRobinDistributionSchedule;
@@ -92,6 +93,10 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                 LOG.info("Ledger replication disabled, skipping replicasCheck task.");
                 return;
             }
+            if (!updateShard()) {
+                LOG.info("No auditor shard assigned, skipping replicasCheck task.");
+                return;
+            }
             Stopwatch stopwatch = Stopwatch.createStarted();
             LOG.info("Starting ReplicasCheck");
             replicasCheck();
@@ -188,6 +193,12 @@ public class AuditorReplicasCheckTask extends AuditorTask {
             numLedgersFoundHavingLessThanAQReplicasOfAnEntry.set(0);
             numLedgersFoundHavingLessThanWQReplicasOfAnEntry.set(0);
             Set<Long> ledgersInRange = ledgerRange.getLedgers();
+            if (shard.getNumShards() > 1) {
+                ledgersInRange = ledgersInRange.stream().filter(this::isLedgerInShard).collect(Collectors.toSet());
+                if (ledgersInRange.isEmpty()) {
+                    continue;
+                }
+            }
             int numOfLedgersInRange = ledgersInRange.size();
             // Final result after processing all the ledgers
             final AtomicInteger resultCode = new AtomicInteger();
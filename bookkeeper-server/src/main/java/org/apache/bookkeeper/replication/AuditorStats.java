@@ -18,6 +18,7 @@
 package org.apache.bookkeeper.replication;
 
 import static org.apache.bookkeeper.replication.ReplicationStats.AUDITOR_SCOPE;
+import static org.apache.bookkeeper.replication.ReplicationStats.AUDITOR_SHARDS_SCOPE;
 import static org.apache.bookkeeper.replication.ReplicationStats.AUDIT_BOOKIES_TIME;
 import static org.apache.bookkeeper.replication.ReplicationStats.BOOKIE_TO_LEDGERS_MAP_CREATION_TIME;
 import static org.apache.bookkeeper.replication.ReplicationStats.CHECK_ALL_LEDGERS_TIME;
@@ -40,6 +41,10 @@ import static org.apache.bookkeeper.replication.ReplicationStats.REPLICAS_CHECK_
 import static org.apache.bookkeeper.replication.ReplicationStats.UNDER_REPLICATED_LEDGERS_TOTAL_SIZE;
 import static org.apache.bookkeeper.replication.ReplicationStats.URL_PUBLISH_TIME_FOR_LOST_BOOKIE;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import lombok.Getter;
 import org.apache.bookkeeper.stats.Counter;
@@ -63,6 +68,9 @@ public class AuditorStats {
     private final AtomicInteger numLedgersHavingLessThanWQReplicasOfAnEntryGuageValue;
     private final AtomicInteger underReplicatedLedgersGuageValue;
     private final StatsLogger statsLogger;
+    // results of the sharded ledger checks of all the auto-recovery instances, summed by the elected auditor
+    private final Map<String, Integer> mergedShardCheckValues = new ConcurrentHashMap<>();
+    private boolean mergedShardCheckGaugesRegistered = false;
     @StatsDoc(
             name = NUM_UNDER_REPLICATED_LEDGERS,
             help = "the distribution of num under_replicated ledgers on each auditor run"
@@ -291,4 +299,57 @@ public class AuditorStats {
         };
         this.statsLogger.registerGauge(NUM_UNDER_REPLICATED_LEDGERS_GUAGE, numUnderReplicatedLedgers);
     }
+
+    /**
+     * Return the results of the last ledger checks of this instance, which only cover the ledgers of its shard
+     * when the ledger checks are sharded.
+     */
+    Map<String, Integer> getShardCheckValues() {
+        Map<String, Integer> values = new HashMap<>();
+        values.put(NUM_LEDGERS_NOT_ADHERING_TO_PLACEMENT_POLICY, ledgersNotAdheringToPlacementPolicyGuageValue.get());
+        values.put(NUM_LEDGERS_SOFTLY_ADHERING_TO_PLACEMENT_POLICY,
+                ledgersSoftlyAdheringToPlacementPolicyGuageValue.get());
+        values.put(NUM_UNDERREPLICATED_LEDGERS_ELAPSED_RECOVERY_GRACE_PERIOD,
+                numOfURLedgersElapsedRecoveryGracePeriodGuageValue.get());
+        values.put(NUM_LEDGERS_HAVING_NO_REPLICA_OF_AN_ENTRY, numLedgersHavingNoReplicaOfAnEntryGuageValue.get());
+        values.put(NUM_LEDGERS_HAVING_LESS_THAN_AQ_REPLICAS_OF_AN_ENTRY,
+                numLedgersHavingLessThanAQReplicasOfAnEntryGuageValue.get());
+        values.put(NUM_LEDGERS_HAVING_LESS_THAN_WQ_REPLICAS_OF_AN_ENTRY,
+                numLedgersHavingLessThanWQReplicasOfAnEntryGuageValue.get());
+        return values;
+    }
+
+    /**
+     * Sum the results of the sharded ledger checks of all the auto-recovery instances, exposed under the
+     * {@link ReplicationStats#AUDITOR_SHARDS_SCOPE} scope with the names of the gauges of a single instance.
+     */
+    synchronized void updateMergedShardCheckValues(List<Map<String, Integer>> shardValues) {
+        Map<String, Integer> merged = new HashMap<>();
+        for (String name : getShardCheckValues().keySet()) {
+            merged.put(name, 0);
+        }
+        for (Map<String, Integer> values : shardValues) {
+            for (Map.Entry<String, Integer> e : values.entrySet()) {
+                merged.computeIfPresent(e.getKey(), (name, sum) -> sum + e.getValue());
+            }
+        }
+        mergedShardCheckValues.putAll(merged);
+        if (!mergedShardCheckGaugesRegistered) {
+            StatsLogger shardsStatsLogger = statsLogger.scope(AUDITOR_SHARDS_SCOPE);
+            for (String name : merged.keySet()) {
+                shardsStatsLogger.registerGauge(name, new Gauge<Integer>() {
+                    @Override
+                    public Integer getDefaultValue() {
+                        return 0;
+                    }
+
+                    @Override
+                    public Integer getSample() {
+                        return mergedShardCheckValues.getOrDefault(name, 0);
+                    }
+                });
+            }
+            mergedShardCheckGaugesRegistered = true;
+        }
+    }
 }
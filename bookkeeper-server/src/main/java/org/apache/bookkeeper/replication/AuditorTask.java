@@ -33,6 +33,7 @@ import org.apache.bookkeeper.client.BookKeeperAdmin;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerAuditorManager.AuditorShard;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.meta.LedgerUnderreplicationManager;
 import org.apache.bookkeeper.net.BookieId;
@@ -50,6 +51,9 @@ abstract class AuditorTask implements Runnable {
     private final ShutdownTaskHandler shutdownTaskHandler;
     private final BiConsumer<AtomicBoolean, Throwable> hasAuditCheckTask;
     private final AtomicBoolean hasTask = new AtomicBoolean(false);
+    private volatile ShardSupplier shardSupplier = () -> AuditorShard.ALL;
+    protected volatile AuditorShard shard = AuditorShard.ALL;
+    private volatile Runnable shardCheckedCallback = null;
 
     AuditorTask(ServerConfiguration conf,
                 AuditorStats auditorStats,
@@ -70,6 +74,10 @@ abstract class AuditorTask implements Runnable {
     @Override
     public void run() {
         runTask();
+        Runnable callback = shardCheckedCallback;
+        if (callback != null) {
+            callback.run();
+        }
     }
 
     protected abstract void runTask();
@@ -139,6 +147,49 @@ abstract class AuditorTask implements Runnable {
         return new BookKeeperAdmin(bookKeeper, auditorStats.getStatsLogger(), new ClientConfiguration(conf));
     }
 
+    void setShardSupplier(ShardSupplier shardSupplier) {
+        this.shardSupplier = shardSupplier;
+    }
+
+    /**
+     * Set the callback run after each run of this task, to publish the results of the check of the shard.
+     */
+    void setShardCheckedCallback(Runnable shardCheckedCallback) {
+        this.shardCheckedCallback = shardCheckedCallback;
+    }
+
+    /**
+     * Refresh the shard of the ledgers checked by this task, as the shards are re-assigned when the
+     * auto-recovery instances come and go.
+     *
+     * @return false if this instance has no shard assigned, so the check should be skipped
+     */
+    protected boolean updateShard() {
+        AuditorShard newShard;
+        try {
+            newShard = shardSupplier.getShard();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while getting the auditor shard", ie);
+            return false;
+        } catch (IOException ioe) {
+            LOG.warn("Failed to get the auditor shard", ioe);
+            return false;
+        }
+        if (newShard == null) {
+            return false;
+        }
+        if (!newShard.equals(shard) && newShard.getNumShards() > 1) {
+            LOG.info("Checking the ledgers of auditor shard {}", newShard);
+        }
+        shard = newShard;
+        return true;
+    }
+
+    protected boolean isLedgerInShard(long ledgerId) {
+        return shard.contains(ledgerId);
+    }
+
     protected void submitShutdownTask() {
         if (shutdownTaskHandler != null) {
             shutdownTaskHandler.submitShutdownTask();
@@ -160,4 +211,11 @@ abstract class AuditorTask implements Runnable {
         void submitShutdownTask();
     }
 
+    /**
+     * ShardSupplier used to get the shard of the ledgers checked by the auditor tasks.
+     */
+    interface ShardSupplier {
+        AuditorShard getShard() throws IOException, InterruptedException;
+    }
+
 }
@@ -34,9 +34,9 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +46,7 @@ import java.util.SortedMap;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -101,7 +102,8 @@ public class ReplicationWorker implements Runnable {
     private final LedgerChecker ledgerChecker;
     private final BookKeeper bkc;
     private final boolean ownBkc;
-    private final Thread workerThread;
+    // every worker thread replicates one under replicated ledger at a time
+    private final List<Thread> workerThreads;
     private final long rwRereplicateBackoffMs;
     private final long openLedgerRereplicationGracePeriod;
     private final Timer pendingReplicationTimer;
@@ -190,7 +192,12 @@ public class ReplicationWorker implements Runnable {
         this.ledgerManager = bkc.getLedgerManagerFactory().newLedgerManager();
         this.admin = new BookKeeperAdmin(bkc, statsLogger, new ClientConfiguration(conf));
         this.ledgerChecker = new LedgerChecker(bkc);
-        this.workerThread = new BookieThread(this, "ReplicationWorker");
+        int numWorkerThreads = Math.max(1, conf.getRwMaxConcurrentLedgers());
+        this.workerThreads = new ArrayList<>(numWorkerThreads);
+        for (int i = 0; i < numWorkerThreads; i++) {
+            this.workerThreads.add(new BookieThread(this,
+                    numWorkerThreads == 1 ? "ReplicationWorker" : "ReplicationWorker-" + i));
+        }
         this.openLedgerRereplicationGracePeriod = conf
                 .getOpenLedgerRereplicationGracePeriod();
         this.lockReleaseOfFailedLedgerGracePeriod = conf.getLockReleaseOfFailedLedgerGracePeriod();
@@ -225,7 +232,7 @@ public class ReplicationWorker implements Runnable {
                 .getCounter(NUM_ENTRIES_UNABLE_TO_READ_FOR_REPLICATION);
         this.numNotAdheringPlacementLedgersReplicated = this.statsLogger
                 .getCounter(NUM_NOT_ADHERING_PLACEMENT_LEDGERS_REPLICATED);
-        this.exceptionCounters = new HashMap<String, Counter>();
+        this.exceptionCounters = new ConcurrentHashMap<String, Counter>();
         this.onReadEntryFailureCallback = (ledgerid, entryid) -> {
             numEntriesUnableToReadForReplication.inc();
             unableToReadEntriesForReplication.getUnchecked(ledgerid).add(entryid);
@@ -236,7 +243,7 @@ public class ReplicationWorker implements Runnable {
      * Start the replication worker.
      */
     public void start() {
-        this.workerThread.start();
+        this.workerThreads.forEach(Thread::start);
     }
 
     @Override
@@ -752,8 +759,10 @@ public class ReplicationWorker implements Runnable {
         LOG.info("Shutting down ReplicationWorker");
         this.pendingReplicationTimer.cancel();
         try {
-            this.workerThread.interrupt();
-            this.workerThread.join();
+            this.workerThreads.forEach(Thread::interrupt);
+            for (Thread workerThread : workerThreads) {
+                workerThread.join();
+            }
         } catch (InterruptedException e) {
             LOG.error("Interrupted during shutting down replication worker : ",
                     e);
@@ -782,7 +791,7 @@ public class ReplicationWorker implements Runnable {
      */
     @VisibleForTesting
     public boolean isRunning() {
-        return workerRunning && workerThread.isAlive();
+        return workerRunning && workerThreads.stream().anyMatch(Thread::isAlive);
     }
 
     /**
@@ -810,12 +819,7 @@ public class ReplicationWorker implements Runnable {
     }
 
     private Counter getExceptionCounter(String name) {
-        Counter counter = this.exceptionCounters.get(name);
-        if (counter == null) {
-            counter = this.exceptionLogger.getCounter(name);
-            this.exceptionCounters.put(name, counter);
-        }
-        return counter;
+        return this.exceptionCounters.computeIfAbsent(name, this.exceptionLogger::getCounter);
     }
 
 }
@@ -51,6 +51,7 @@ import org.apache.bookkeeper.server.http.service.ExpandStorageService;
 import org.apache.bookkeeper.server.http.service.GCDetailsService;
 import org.apache.bookkeeper.server.http.service.GetLastLogMarkService;
 import org.apache.bookkeeper.server.http.service.GetLedgerMetaService;
+import org.apache.bookkeeper.server.http.service.LedgerIoService;
 import org.apache.bookkeeper.server.http.service.ListBookieInfoService;
 import org.apache.bookkeeper.server.http.service.ListBookiesService;
 import org.apache.bookkeeper.server.http.service.ListDiskFilesService;
@@ -60,8 +61,10 @@ import org.apache.bookkeeper.server.http.service.LostBookieRecoveryDelayService;
 import org.apache.bookkeeper.server.http.service.MetricsService;
 import org.apache.bookkeeper.server.http.service.ReadLedgerEntryService;
 import org.apache.bookkeeper.server.http.service.RecoveryBookieService;
+import org.apache.bookkeeper.server.http.service.RequestTracesService;
 import org.apache.bookkeeper.server.http.service.ResumeCompactionService;
 import org.apache.bookkeeper.server.http.service.SuspendCompactionService;
+import org.apache.bookkeeper.server.http.service.ThreadPlacementService;
 import org.apache.bookkeeper.server.http.service.TriggerAuditService;
 import org.apache.bookkeeper.server.http.service.TriggerGCService;
 import org.apache.bookkeeper.server.http.service.TriggerLocationCompactService;
@@ -238,6 +241,12 @@ public class BKHttpServiceProvider implements HttpServiceProvider {
                 return new ResumeCompactionService(bookieServer);
             case TRIGGER_ENTRY_LOCATION_COMPACT:
                 return new TriggerLocationCompactService(bookieServer);
+            case REQUEST_TRACES:
+                return new RequestTracesService(bookieServer);
+            case LEDGER_IO:
+                return new LedgerIoService(bookieServer);
+            case THREAD_PLACEMENT:
+                return new ThreadPlacementService(configuration);
 
             // autorecovery
             case AUTORECOVERY_STATUS:
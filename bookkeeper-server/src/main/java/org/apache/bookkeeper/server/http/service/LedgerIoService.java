@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.server.http.service;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
+import org.apache.bookkeeper.common.util.JsonUtil;
+import org.apache.bookkeeper.http.HttpServer;
+import org.apache.bookkeeper.http.service.HttpEndpointService;
+import org.apache.bookkeeper.http.service.HttpServiceRequest;
+import org.apache.bookkeeper.http.service.HttpServiceResponse;
+import org.apache.bookkeeper.proto.BookieServer;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHeavyHitters.HeavyHitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HttpEndpointService that handle the per ledger I/O accounting of the bookie.
+ *
+ * <p>GET returns the heaviest ledgers of each accounted metric, or only of the metric given by the
+ * optional "metric" parameter. The optional "k" parameter is the max number of ledgers returned per
+ * metric, 10 by default. The output would be like:
+ *        {
+ *           "ADD_BYTES" : [ {
+ *             "ledgerId" : 10,
+ *             "value" : 104857600,
+ *             "error" : 0
+ *           }, {
+ *             "ledgerId" : 12,
+ *             "value" : 2097152,
+ *             "error" : 1024
+ *           } ]
+ *         }
+ *
+ * <p>DELETE forgets the accounted ledgers.
+ */
+public class LedgerIoService implements HttpEndpointService {
+
+    static final Logger LOG = LoggerFactory.getLogger(LedgerIoService.class);
+
+    static final int DEFAULT_NUM_TOP_LEDGERS = 10;
+
+    protected BookieServer bookieServer;
+
+    public LedgerIoService(BookieServer bookieServer) {
+        checkNotNull(bookieServer);
+        this.bookieServer = bookieServer;
+    }
+
+    @Override
+    public HttpServiceResponse handle(HttpServiceRequest request) throws Exception {
+        HttpServiceResponse response = new HttpServiceResponse();
+        LedgerIoAccounting accounting = bookieServer.getBookieRequestProcessor().getLedgerIoAccounting();
+        if (accounting == null) {
+            response.setCode(HttpServer.StatusCode.NOT_FOUND);
+            response.setBody("Ledger I/O accounting is not enabled, set ledgerIoAccountingEnabled to enable it.");
+            return response;
+        }
+
+        if (HttpServer.Method.GET == request.getMethod()) {
+            Map<String, String> params = request.getParams();
+            LedgerIoAccounting.Metric[] metrics = LedgerIoAccounting.Metric.values();
+            int k = DEFAULT_NUM_TOP_LEDGERS;
+            try {
+                if (params != null && params.containsKey("metric")) {
+                    metrics = new LedgerIoAccounting.Metric[] {
+                        LedgerIoAccounting.Metric.valueOf(params.get("metric").toUpperCase())
+                    };
+                }
+                if (params != null && params.containsKey("k")) {
+                    k = Integer.parseInt(params.get("k"));
+                }
+            } catch (IllegalArgumentException e) {
+                response.setCode(HttpServer.StatusCode.BAD_REQUEST);
+                response.setBody("Invalid parameter: " + e.getMessage());
+                return response;
+            }
+
+            Map<String, List<Map<String, Long>>> output = new LinkedHashMap<>();
+            for (LedgerIoAccounting.Metric metric : metrics) {
+                List<Map<String, Long>> topLedgers = new ArrayList<>();
+                for (HeavyHitter topLedger : accounting.getTopLedgers(metric, k)) {
+                    Map<String, Long> ledger = new LinkedHashMap<>();
+                    ledger.put("ledgerId", topLedger.getKey());
+                    ledger.put("value", topLedger.getWeight());
+                    ledger.put("error", topLedger.getError());
+                    topLedgers.add(ledger);
+                }
+                output.put(metric.name(), topLedgers);
+            }
+
+            String jsonResponse = JsonUtil.toJson(output);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("output body:" + jsonResponse);
+            }
+            response.setBody(jsonResponse);
+            response.setCode(HttpServer.StatusCode.OK);
+            return response;
+        } else if (HttpServer.Method.DELETE == request.getMethod()) {
+            accounting.reset();
+            response.setCode(HttpServer.StatusCode.OK);
+            return response;
+        } else {
+            response.setCode(HttpServer.StatusCode.NOT_FOUND);
+            response.setBody("Only support GET method to retrieve the heaviest ledgers,"
+                + " and DELETE method to reset them.");
+            return response;
+        }
+    }
+}
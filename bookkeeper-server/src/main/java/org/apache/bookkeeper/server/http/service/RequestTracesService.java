@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.server.http.service;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import org.apache.bookkeeper.common.util.JsonUtil;
+import org.apache.bookkeeper.http.HttpServer;
+import org.apache.bookkeeper.http.service.HttpEndpointService;
+import org.apache.bookkeeper.http.service.HttpServiceRequest;
+import org.apache.bookkeeper.http.service.HttpServiceResponse;
+import org.apache.bookkeeper.proto.BookieServer;
+import org.apache.bookkeeper.proto.RequestTracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HttpEndpointService that handle the slowest traced requests of the bookie.
+ *
+ * <p>GET returns the slowest traced requests, the slowest first, the output would be like:
+ *        [ {
+ *           "type" : "ADD",
+ *           "ledgerId" : 10,
+ *           "entryId" : 42,
+ *           "success" : true,
+ *           "completionTime" : 1544578144944,
+ *           "totalMicros" : 2930,
+ *           "stageMicros" : {
+ *             "DEQUEUED" : 12,
+ *             "JOURNAL_ENQUEUED" : 25,
+ *             "JOURNAL_DEQUEUED" : 40,
+ *             "JOURNAL_FLUSHED" : 1190,
+ *             "FORCE_WRITTEN" : 2870,
+ *             "CALLBACK" : 2875,
+ *             "RESPONSE_SENT" : 2930
+ *           }
+ *         } ]
+ *
+ * <p>DELETE forgets the slowest traced requests.
+ */
+public class RequestTracesService implements HttpEndpointService {
+
+    static final Logger LOG = LoggerFactory.getLogger(RequestTracesService.class);
+
+    protected BookieServer bookieServer;
+
+    public RequestTracesService(BookieServer bookieServer) {
+        checkNotNull(bookieServer);
+        this.bookieServer = bookieServer;
+    }
+
+    @Override
+    public HttpServiceResponse handle(HttpServiceRequest request) throws Exception {
+        HttpServiceResponse response = new HttpServiceResponse();
+        RequestTracer tracer = bookieServer.getBookieRequestProcessor().getRequestTracer();
+
+        if (HttpServer.Method.GET == request.getMethod()) {
+            List<RequestTracer.TracedRequest> requests = tracer.getSlowestRequests();
+
+            String jsonResponse = JsonUtil.toJson(requests);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("output body:" + jsonResponse);
+            }
+            response.setBody(jsonResponse);
+            response.setCode(HttpServer.StatusCode.OK);
+            return response;
+        } else if (HttpServer.Method.DELETE == request.getMethod()) {
+            tracer.resetSlowestRequests();
+            response.setCode(HttpServer.StatusCode.OK);
+            return response;
+        } else {
+            response.setCode(HttpServer.StatusCode.NOT_FOUND);
+            response.setBody("Only support GET method to retrieve the slowest traced requests,"
+                + " and DELETE method to reset them.");
+            return response;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.server.http.service;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.bookkeeper.common.util.JsonUtil;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.http.HttpServer;
+import org.apache.bookkeeper.http.service.HttpEndpointService;
+import org.apache.bookkeeper.http.service.HttpServiceRequest;
+import org.apache.bookkeeper.http.service.HttpServiceResponse;
+import org.apache.bookkeeper.util.ThreadPlacement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HttpEndpointService that handle the placement of the bookie threads on the NUMA nodes.
+ *
+ * <p>GET returns the NUMA nodes of the host with their cpus, the nodes the threads are placed on,
+ * and the placement of each live placed thread. The output would be like:
+ *        {
+ *           "enabled" : true,
+ *           "pinToCores" : false,
+ *           "numaNodes" : { "0" : [ 0, 1, 2, 3 ], "1" : [ 4, 5, 6, 7 ] },
+ *           "planNodes" : [ 0, 1 ],
+ *           "threads" : [ {
+ *             "thread" : "bookie-io-1-1",
+ *             "role" : "IO",
+ *             "index" : 0,
+ *             "numaNode" : 0,
+ *             "cpus" : [ 0, 1, 2, 3 ]
+ *           } ]
+ *         }
+ */
+public class ThreadPlacementService implements HttpEndpointService {
+
+    static final Logger LOG = LoggerFactory.getLogger(ThreadPlacementService.class);
+
+    protected ServerConfiguration conf;
+
+    public ThreadPlacementService(ServerConfiguration conf) {
+        checkNotNull(conf);
+        this.conf = conf;
+    }
+
+    @Override
+    public HttpServiceResponse handle(HttpServiceRequest request) throws Exception {
+        HttpServiceResponse response = new HttpServiceResponse();
+
+        if (HttpServer.Method.GET == request.getMethod()) {
+            Map<String, Object> output = new LinkedHashMap<>();
+            output.put("enabled", ThreadPlacement.isEnabled(conf));
+            output.put("pinToCores", conf.isThreadPlacementPinToCores());
+            output.put("numaNodes", ThreadPlacement.getNumaNodes());
+            output.put("planNodes", ThreadPlacement.getPlanNodes(conf));
+            output.put("threads", ThreadPlacement.getPlacements());
+
+            String jsonResponse = JsonUtil.toJson(output);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("output body:" + jsonResponse);
+            }
+            response.setBody(jsonResponse);
+            response.setCode(HttpServer.StatusCode.OK);
+            return response;
+        } else {
+            response.setCode(HttpServer.StatusCode.NOT_FOUND);
+            response.setBody("Only support GET method to retrieve the thread placement.");
+            return response;
+        }
+    }
+}
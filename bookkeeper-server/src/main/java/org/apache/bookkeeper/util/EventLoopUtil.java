@@ -47,7 +47,10 @@ public class EventLoopUtil {
     }
 
     public static EventLoopGroup getServerEventLoopGroup(ServerConfiguration conf, ThreadFactory threadFactory) {
-        return getEventLoopGroup(threadFactory, conf.getServerNumIOThreads(), conf.isBusyWaitEnabled());
+        EventLoopGroup eventLoopGroup = getEventLoopGroup(threadFactory, conf.getServerNumIOThreads(),
+                conf.isBusyWaitEnabled());
+        ThreadPlacement.placeEventLoops(conf, ThreadPlacement.Role.IO, eventLoopGroup);
+        return eventLoopGroup;
     }
 
     public static EventLoopGroup getServerAcceptorGroup(ServerConfiguration conf, ThreadFactory threadFactory) {
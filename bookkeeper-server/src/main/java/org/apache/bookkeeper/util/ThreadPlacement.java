@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+
+/**
+ * Placement of the bookie threads on the NUMA nodes, and optionally on the cores, of the host.
+ *
+ * <p>The threads of each role are numbered, and the thread with index {@code i} of a role is placed on the
+ * {@code i % N}-th of the N NUMA nodes of the plan. A thread is either allowed to run on all the CPUs of its node, or
+ * pinned to a single CPU of the node when the threads are pinned to cores, the CPUs of a node being handed out one
+ * physical core after the other.
+ *
+ * <p>The threads which acquire a dedicated core when busy-wait is enabled are left out of the plan.
+ *
+ * <p>The placement is best-effort: if the CPU affinity can't be set, a warning is logged once and the threads keep
+ * running on all the CPUs.
+ */
+@Slf4j
+@UtilityClass
+public class ThreadPlacement {
+
+    /**
+     * Role of the placed threads.
+     */
+    public enum Role {
+        // Netty event loops of the bookie server
+        IO(true),
+        // journal threads, numbered by journal directory
+        JOURNAL(true),
+        // force-write threads, numbered by journal directory
+        FORCE_WRITE(true),
+        // read worker threads
+        READ_WORKER(false),
+        // add worker threads
+        WRITE_WORKER(false),
+        // DbLedgerStorage flush threads, numbered by ledger directory
+        DB_STORAGE(false);
+
+        private final boolean acquiresCoreWhenBusyWait;
+
+        Role(boolean acquiresCoreWhenBusyWait) {
+            this.acquiresCoreWhenBusyWait = acquiresCoreWhenBusyWait;
+        }
+    }
+
+    /**
+     * Placement of a thread, as reported to the admin endpoints.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Placement {
+        private final String thread;
+        private final String role;
+        private final int index;
+        private final int numaNode;
+        private final List<Integer> cpus;
+    }
+
+    private static final Map<Thread, Placement> placements = new WeakHashMap<>();
+    private static final Map<Role, AtomicInteger> nextIndexes = new ConcurrentHashMap<>();
+    private static final Map<Integer, AtomicInteger> nextCpus = new ConcurrentHashMap<>();
+    private static final Set<Integer> ignoredNodes = ConcurrentHashMap.newKeySet();
+    private static volatile boolean affinityFailed = false;
+
+    public static boolean isEnabled(ServerConfiguration conf) {
+        return conf.isThreadPlacementEnabled();
+    }
+
+    /**
+     * Place the current thread as the next thread of the given role.
+     *
+     * @param conf the bookie configuration
+     * @param role the role of the thread
+     */
+    public static void placeCurrentThread(ServerConfiguration conf, Role role) {
+        if (isEnabled(conf)) {
+            int index = nextIndexes.computeIfAbsent(role, r -> new AtomicInteger()).getAndIncrement();
+            placeCurrentThread(conf, role, index);
+        }
+    }
+
+    /**
+     * Place the current thread as the thread with the given index of the given role.
+     *
+     * @param conf the bookie configuration
+     * @param role the role of the thread
+     * @param index the index of the thread among the threads of its role
+     */
+    public static void placeCurrentThread(ServerConfiguration conf, Role role, int index) {
+        if (!isEnabled(conf) || affinityFailed || (role.acquiresCoreWhenBusyWait && conf.isBusyWaitEnabled())) {
+            return;
+        }
+
+        try {
+            Placement placement = plan(conf, getNumaNodes(), role, index);
+            CpuAffinity.setAffinity(new TreeSet<>(placement.getCpus()));
+
+            Thread thread = Thread.currentThread();
+            synchronized (placements) {
+                placements.put(thread, placement);
+            }
+            log.info("Placed {} thread {} ({}) on NUMA node {} with cpus {}", role, index, thread.getName(),
+                    placement.getNumaNode(), placement.getCpus());
+        } catch (Throwable t) {
+            affinityFailed = true;
+            log.warn("Unable to place {} thread {} ({}), the bookie threads will not be placed: {}", role, index,
+                    Thread.currentThread().getName(), t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Plan the placement of the current thread as the thread with the given index of the given role. When the
+     * threads are pinned to cores, each planned thread is handed the next CPU of its node.
+     */
+    @VisibleForTesting
+    static Placement plan(ServerConfiguration conf, SortedMap<Integer, List<Integer>> numaNodes, Role role,
+                          int index) {
+        List<Integer> nodes = getPlanNodes(conf, numaNodes);
+        int node = nodes.get(index % nodes.size());
+        List<Integer> nodeCpus = numaNodes.get(node);
+
+        List<Integer> cpus;
+        if (conf.isThreadPlacementPinToCores()) {
+            int next = nextCpus.computeIfAbsent(node, n -> new AtomicInteger()).getAndIncrement();
+            cpus = Collections.singletonList(nodeCpus.get(next % nodeCpus.size()));
+        } else {
+            cpus = nodeCpus;
+        }
+        return new Placement(Thread.currentThread().getName(), role.name(), index, node, cpus);
+    }
+
+    /**
+     * Place each event loop of the group as the thread with the loop index of the given role.
+     *
+     * @param conf the bookie configuration
+     * @param role the role of the event loops
+     * @param eventLoopGroup the event loops to place
+     */
+    public static void placeEventLoops(ServerConfiguration conf, Role role, EventLoopGroup eventLoopGroup) {
+        if (!isEnabled(conf)) {
+            return;
+        }
+
+        int index = 0;
+        for (EventExecutor eventLoop : eventLoopGroup) {
+            final int loopIndex = index++;
+            eventLoop.execute(() -> placeCurrentThread(conf, role, loopIndex));
+        }
+    }
+
+    /**
+     * Get a thread factory placing the threads it creates, in creation order, as the threads of the given role.
+     *
+     * @param conf the bookie configuration
+     * @param role the role of the created threads
+     * @param threadFactory the factory creating the threads
+     * @return the placing thread factory, or the given factory if the thread placement is disabled
+     */
+    public static ThreadFactory placingThreadFactory(ServerConfiguration conf, Role role,
+                                                     ThreadFactory threadFactory) {
+        if (!isEnabled(conf)) {
+            return threadFactory;
+        }
+
+        AtomicInteger nextIndex = new AtomicInteger();
+        return runnable -> {
+            final int index = nextIndex.getAndIncrement();
+            return threadFactory.newThread(() -> {
+                placeCurrentThread(conf, role, index);
+                runnable.run();
+            });
+        };
+    }
+
+    /**
+     * @return the NUMA nodes of the host, with their CPUs
+     */
+    public static SortedMap<Integer, List<Integer>> getNumaNodes() {
+        return CpuAffinity.getNumaNodes();
+    }
+
+    /**
+     * @return the NUMA nodes the threads are spread over
+     */
+    public static List<Integer> getPlanNodes(ServerConfiguration conf) {
+        return getPlanNodes(conf, getNumaNodes());
+    }
+
+    private static List<Integer> getPlanNodes(ServerConfiguration conf, SortedMap<Integer, List<Integer>> numaNodes) {
+        List<Integer> nodes = new ArrayList<>();
+        for (String node : conf.getThreadPlacementNumaNodes()) {
+            int nodeId = Integer.parseInt(node.trim());
+            if (numaNodes.containsKey(nodeId)) {
+                nodes.add(nodeId);
+            } else if (ignoredNodes.add(nodeId)) {
+                log.warn("Ignoring the NUMA node {} of the thread placement, the available nodes are {}", nodeId,
+                        numaNodes.keySet());
+            }
+        }
+        if (nodes.isEmpty()) {
+            nodes.addAll(numaNodes.keySet());
+        }
+        return nodes;
+    }
+
+    @VisibleForTesting
+    static void resetPlan() {
+        nextIndexes.clear();
+        nextCpus.clear();
+        ignoredNodes.clear();
+    }
+
+    /**
+     * @return the placements of the live placed threads, by role and index
+     */
+    public static List<Placement> getPlacements() {
+        List<Placement> livePlacements = new ArrayList<>();
+        synchronized (placements) {
+            placements.forEach((thread, placement) -> {
+                if (thread.isAlive()) {
+                    livePlacements.add(placement);
+                }
+            });
+        }
+        livePlacements.sort(Comparator.comparing((Placement p) -> Role.valueOf(p.getRole()))
+                .thenComparingInt(Placement::getIndex));
+        return livePlacements;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Concurrent space-saving sketch of the heaviest primitive long keys.
+ *
+ * <p>Each key is added with a weight, and the sketch keeps track of the total weight of at most a fixed
+ * number of keys. When the sketch is full, the key with the lowest total weight is evicted to make
+ * room for the new one, which inherits the highest weight evicted so far as its error. So the weight of
+ * a tracked key is over-estimated by at most its error, and any key whose total weight is greater than
+ * the total weight added divided by the capacity is guaranteed to be tracked.
+ *
+ * <p>The weights can be decayed, for the sketch to track the heaviest keys of the recent past rather
+ * than since its creation.
+ *
+ * <p>The keys are split in sections, each one guarded by its own lock, and a key always maps to
+ * the same section. Each section keeps its keys in a min-heap ordered by weight, indexed by an open
+ * hash table with linear probing, so no allocation is needed to add a key.
+ *
+ * <p>Keys <strong>MUST</strong> be &gt;= 0.
+ */
+public class ConcurrentLongHeavyHitters {
+
+    private static final int DefaultConcurrencyLevel = 16;
+
+    private final Section[] sections;
+
+    /**
+     * A tracked key with its estimated weight.
+     */
+    public static final class HeavyHitter {
+        private final long key;
+        private final long weight;
+        private final long error;
+
+        HeavyHitter(long key, long weight, long error) {
+            this.key = key;
+            this.weight = weight;
+            this.error = error;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        /**
+         * @return the estimated total weight of the key, which is never lower than the actual one
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return the max over-estimation of the weight of the key
+         */
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + weight + "(+/-" + error + ")";
+        }
+    }
+
+    public ConcurrentLongHeavyHitters(int capacity) {
+        this(capacity, DefaultConcurrencyLevel);
+    }
+
+    /**
+     * @param capacity the max number of tracked keys
+     * @param concurrencyLevel the number of sections
+     */
+    public ConcurrentLongHeavyHitters(int capacity, int concurrencyLevel) {
+        checkArgument(capacity > 0);
+        checkArgument(concurrencyLevel > 0);
+        int numSections = Math.min(alignToPowerOfTwo(concurrencyLevel), alignToPowerOfTwo(capacity));
+        int perSectionCapacity = (capacity + numSections - 1) / numSections;
+        this.sections = new Section[numSections];
+        for (int i = 0; i < numSections; i++) {
+            sections[i] = new Section(perSectionCapacity);
+        }
+    }
+
+    /**
+     * Add the given weight to a key.
+     *
+     * @param key the key, &gt;= 0
+     * @param weight the weight to add, &gt; 0
+     */
+    public void add(long key, long weight) {
+        checkBiggerEqualZero(key);
+        long h = hash(key);
+        getSection(h).add(key, (int) h, weight);
+    }
+
+    /**
+     * Stop tracking a key.
+     *
+     * @param key the key
+     * @return true if the key was tracked
+     */
+    public boolean remove(long key) {
+        checkBiggerEqualZero(key);
+        long h = hash(key);
+        return getSection(h).remove(key, (int) h);
+    }
+
+    /**
+     * @param key the key
+     * @return the estimated weight of the key, 0 if it is not tracked
+     */
+    public long getWeight(long key) {
+        checkBiggerEqualZero(key);
+        long h = hash(key);
+        return getSection(h).getWeight(key, (int) h);
+    }
+
+    /**
+     * @param k the max number of keys to return
+     * @return the k tracked keys with the highest estimated weight, the heaviest first
+     */
+    public List<HeavyHitter> top(int k) {
+        List<HeavyHitter> all = new ArrayList<>();
+        for (Section s : sections) {
+            s.collect(all);
+        }
+        all.sort(Comparator.comparingLong(HeavyHitter::getWeight).reversed());
+        return all.size() > k ? new ArrayList<>(all.subList(0, Math.max(k, 0))) : all;
+    }
+
+    /**
+     * Divide the weights of all the tracked keys by 2 to the power of the given shift, so that the
+     * past weights count less than the recent ones. The keys whose weight drops to 0 are no longer
+     * tracked.
+     *
+     * @param shift the number of times the weights are halved
+     */
+    public void decay(int shift) {
+        checkArgument(shift >= 0);
+        if (shift == 0) {
+            return;
+        }
+        for (Section s : sections) {
+            s.decay(Math.min(shift, 63));
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Section s : sections) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Section s : sections) {
+            s.clear();
+        }
+    }
+
+    private Section getSection(long hash) {
+        // Use 32 msb out of long to get the section
+        final int sectionIdx = (int) (hash >>> 32) & (sections.length - 1);
+        return sections[sectionIdx];
+    }
+
+    private static final class Section {
+        private final int capacity;
+
+        // min-heap of the tracked keys, ordered by weight
+        private final long[] keys;
+        private final long[] weights;
+        private final long[] errors;
+        // index in the hash table of the key at each heap position
+        private final int[] tableSlots;
+        private int size = 0;
+        // highest weight of the evicted keys, which bounds the weight of any key that is not tracked
+        private long evictedWeight = 0;
+
+        // hash table of the heap position of each key, plus one, 0 marking the empty slots
+        private final long[] tableKeys;
+        private final int[] tablePositions;
+        private final int tableMask;
+
+        Section(int capacity) {
+            this.capacity = capacity;
+            this.keys = new long[capacity];
+            this.weights = new long[capacity];
+            this.errors = new long[capacity];
+            this.tableSlots = new int[capacity];
+            int tableSize = alignToPowerOfTwo(capacity * 2);
+            this.tableKeys = new long[tableSize];
+            this.tablePositions = new int[tableSize];
+            this.tableMask = tableSize - 1;
+        }
+
+        synchronized void add(long key, int keyHash, long weight) {
+            int slot = findSlot(key, keyHash);
+            if (tablePositions[slot] != 0) {
+                int pos = tablePositions[slot] - 1;
+                weights[pos] += weight;
+                siftDown(pos);
+            } else if (size < capacity) {
+                int pos = size++;
+                keys[pos] = key;
+                weights[pos] = evictedWeight + weight;
+                errors[pos] = evictedWeight;
+                tableKeys[slot] = key;
+                setPosition(slot, pos);
+                siftUp(pos);
+            } else {
+                // replace the lightest key, which becomes the error of the new one
+                removeSlot(tableSlots[0]);
+                slot = findSlot(key, keyHash);
+                evictedWeight = Math.max(evictedWeight, weights[0]);
+                errors[0] = weights[0];
+                weights[0] += weight;
+                keys[0] = key;
+                tableKeys[slot] = key;
+                setPosition(slot, 0);
+                siftDown(0);
+            }
+        }
+
+        synchronized boolean remove(long key, int keyHash) {
+            int slot = findSlot(key, keyHash);
+            if (tablePositions[slot] == 0) {
+                return false;
+            }
+            removePosition(tablePositions[slot] - 1);
+            return true;
+        }
+
+        synchronized void decay(int shift) {
+            for (int i = 0; i < size; i++) {
+                weights[i] >>>= shift;
+                errors[i] >>>= shift;
+            }
+            evictedWeight >>>= shift;
+            // the heap order is kept, with the keys which don't weigh anymore at the top
+            while (size > 0 && weights[0] == 0) {
+                removePosition(0);
+            }
+        }
+
+        synchronized long getWeight(long key, int keyHash) {
+            int slot = findSlot(key, keyHash);
+            return tablePositions[slot] != 0 ? weights[tablePositions[slot] - 1] : 0;
+        }
+
+        synchronized void collect(List<HeavyHitter> hitters) {
+            for (int i = 0; i < size; i++) {
+                hitters.add(new HeavyHitter(keys[i], weights[i], errors[i]));
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            for (int i = 0; i < size; i++) {
+                tablePositions[tableSlots[i]] = 0;
+            }
+            size = 0;
+            evictedWeight = 0;
+        }
+
+        // returns the slot of the key, or the empty slot where it should be inserted
+        private int findSlot(long key, int keyHash) {
+            int slot = keyHash & tableMask;
+            while (tablePositions[slot] != 0 && tableKeys[slot] != key) {
+                slot = (slot + 1) & tableMask;
+            }
+            return slot;
+        }
+
+        private void removePosition(int pos) {
+            removeSlot(tableSlots[pos]);
+            int last = --size;
+            if (pos != last) {
+                moveHeapEntry(last, pos);
+                siftDown(pos);
+                siftUp(pos);
+            }
+        }
+
+        private void setPosition(int slot, int pos) {
+            tablePositions[slot] = pos + 1;
+            tableSlots[pos] = slot;
+        }
+
+        // remove a key from the hash table, shifting back the following keys of the probe sequence
+        private void removeSlot(int slot) {
+            int hole = slot;
+            int next = (hole + 1) & tableMask;
+            while (tablePositions[next] != 0) {
+                int ideal = (int) hash(tableKeys[next]) & tableMask;
+                // move the key to the hole if the hole is on its probe sequence
+                if (((next - ideal) & tableMask) >= ((next - hole) & tableMask)) {
+                    tableKeys[hole] = tableKeys[next];
+                    setPosition(hole, tablePositions[next] - 1);
+                    hole = next;
+                }
+                next = (next + 1) & tableMask;
+            }
+            tablePositions[hole] = 0;
+        }
+
+        private void moveHeapEntry(int from, int to) {
+            keys[to] = keys[from];
+            weights[to] = weights[from];
+            errors[to] = errors[from];
+            setPosition(tableSlots[from], to);
+        }
+
+        private void swap(int i, int j) {
+            long key = keys[i];
+            long weight = weights[i];
+            long error = errors[i];
+            int slot = tableSlots[i];
+            moveHeapEntry(j, i);
+            keys[j] = key;
+            weights[j] = weight;
+            errors[j] = error;
+            setPosition(slot, j);
+        }
+
+        private void siftUp(int pos) {
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (weights[parent] <= weights[pos]) {
+                    return;
+                }
+                swap(pos, parent);
+                pos = parent;
+            }
+        }
+
+        private void siftDown(int pos) {
+            while (true) {
+                int child = 2 * pos + 1;
+                if (child >= size) {
+                    return;
+                }
+                if (child + 1 < size && weights[child + 1] < weights[child]) {
+                    child++;
+                }
+                if (weights[pos] <= weights[child]) {
+                    return;
+                }
+                swap(pos, child);
+                pos = child;
+            }
+        }
+    }
+
+    private static final long HashMixer = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    static final long hash(long key) {
+        long hash = key * HashMixer;
+        hash ^= hash >>> R;
+        hash *= HashMixer;
+        return hash;
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return (int) Math.pow(2, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+
+    private static void checkBiggerEqualZero(long n) {
+        if (n < 0L) {
+            throw new IllegalArgumentException("Keys must be >= 0");
+        }
+    }
+}
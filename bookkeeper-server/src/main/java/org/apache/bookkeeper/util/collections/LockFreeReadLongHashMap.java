@@ -0,0 +1,680 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.bookkeeper.util.collections.ConcurrentLongHashMap.hash;
+import static org.apache.bookkeeper.util.collections.ConcurrentLongHashMap.signSafeMod;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap.EntryProcessor;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap.LongObjectPredicate;
+
+/**
+ * Map from long to an Object, with lock-free reads.
+ *
+ * <p>Provides the same methods as {@link ConcurrentLongHashMap}, as an open hash map with linear probing split in
+ * sections, but the reads never take a lock, not even as a fallback:
+ * <ol>
+ * <li>The buckets of a section are held in atomic arrays, which only the writers of the section update, under the
+ * lock of the section.
+ * <li>A rehash fills a new table while the readers go on with the current one, and publishes the new table once
+ * complete. Only the writers of the rehashed section wait for the rehash.
+ * <li>A bucket is read by loading its value, then its key, then its value again. A key is stored in a bucket before
+ * its value, and a bucket is marked as deleted before being given to another key, so the key and the value are
+ * consistent if the value hasn't changed in between.
+ * </ol>
+ *
+ * <p>The batch methods take the lock of each section once for all the keys of the section.
+ *
+ * <p>There is no long to long variant: the value of a bucket is the reference checked by the readers, and a pair of
+ * longs can't be updated nor read atomically without a lock, so a long to long map with lock-free reads would have
+ * to box its values, which {@link ConcurrentLongLongHashMap} avoids.
+ *
+ * @param <V>
+ */
+@SuppressWarnings("unchecked")
+public class LockFreeReadLongHashMap<V> {
+
+    private static final Object EmptyValue = null;
+    private static final Object DeletedValue = new Object();
+
+    private static final int DefaultExpectedItems = 256;
+    private static final int DefaultConcurrencyLevel = 16;
+
+    private static final float DefaultMapFillFactor = 0.66f;
+    private static final float DefaultMapIdleFactor = 0.15f;
+
+    private static final float DefaultExpandFactor = 2;
+    private static final float DefaultShrinkFactor = 2;
+
+    private static final boolean DefaultAutoShrink = false;
+
+    public static <V> Builder<V> newBuilder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Builder of LockFreeReadLongHashMap.
+     */
+    public static class Builder<T> {
+        int expectedItems = DefaultExpectedItems;
+        int concurrencyLevel = DefaultConcurrencyLevel;
+        float mapFillFactor = DefaultMapFillFactor;
+        float mapIdleFactor = DefaultMapIdleFactor;
+        float expandFactor = DefaultExpandFactor;
+        float shrinkFactor = DefaultShrinkFactor;
+        boolean autoShrink = DefaultAutoShrink;
+
+        public Builder<T> expectedItems(int expectedItems) {
+            this.expectedItems = expectedItems;
+            return this;
+        }
+
+        public Builder<T> concurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        public Builder<T> mapFillFactor(float mapFillFactor) {
+            this.mapFillFactor = mapFillFactor;
+            return this;
+        }
+
+        public Builder<T> mapIdleFactor(float mapIdleFactor) {
+            this.mapIdleFactor = mapIdleFactor;
+            return this;
+        }
+
+        public Builder<T> expandFactor(float expandFactor) {
+            this.expandFactor = expandFactor;
+            return this;
+        }
+
+        public Builder<T> shrinkFactor(float shrinkFactor) {
+            this.shrinkFactor = shrinkFactor;
+            return this;
+        }
+
+        public Builder<T> autoShrink(boolean autoShrink) {
+            this.autoShrink = autoShrink;
+            return this;
+        }
+
+        public LockFreeReadLongHashMap<T> build() {
+            return new LockFreeReadLongHashMap<>(expectedItems, concurrencyLevel,
+                    mapFillFactor, mapIdleFactor, autoShrink, expandFactor, shrinkFactor);
+        }
+    }
+
+    private final Section<V>[] sections;
+
+    private LockFreeReadLongHashMap(int expectedItems, int concurrencyLevel,
+                                    float mapFillFactor, float mapIdleFactor,
+                                    boolean autoShrink, float expandFactor, float shrinkFactor) {
+        checkArgument(expectedItems > 0);
+        checkArgument(concurrencyLevel > 0);
+        checkArgument(expectedItems >= concurrencyLevel);
+        checkArgument(mapFillFactor > 0 && mapFillFactor < 1);
+        checkArgument(mapIdleFactor > 0 && mapIdleFactor < 1);
+        checkArgument(mapFillFactor > mapIdleFactor);
+        checkArgument(expandFactor > 1);
+        checkArgument(shrinkFactor > 1);
+
+        int numSections = alignToPowerOfTwo(concurrencyLevel);
+        int perSectionExpectedItems = expectedItems / numSections;
+        int perSectionCapacity = Math.max(2, (int) (perSectionExpectedItems / mapFillFactor));
+        this.sections = (Section<V>[]) new Section[numSections];
+
+        for (int i = 0; i < numSections; i++) {
+            sections[i] = new Section<>(perSectionCapacity, mapFillFactor, mapIdleFactor,
+                    autoShrink, expandFactor, shrinkFactor);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Section<V> s : sections) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    public long capacity() {
+        long capacity = 0;
+        for (Section<V> s : sections) {
+            capacity += s.table.capacity;
+        }
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        for (Section<V> s : sections) {
+            if (s.size != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public V get(long key) {
+        long h = hash(key);
+        return getSection(h).get(key, (int) h);
+    }
+
+    /**
+     * Get the values of a batch of keys.
+     *
+     * @param keys the keys to look up
+     * @param values the array receiving, at the index of each key, its value or null if the key is not in the map
+     * @return the number of keys found
+     */
+    public int getAll(long[] keys, V[] values) {
+        checkArgument(values.length >= keys.length);
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            long h = hash(keys[i]);
+            V value = getSection(h).get(keys[i], (int) h);
+            values[i] = value;
+            if (value != null) {
+                ++found;
+            }
+        }
+        return found;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public V put(long key, V value) {
+        checkNotNull(value);
+        long h = hash(key);
+        return getSection(h).put(key, value, (int) h, false, null);
+    }
+
+    /**
+     * Put a batch of entries, taking the lock of each section once.
+     *
+     * @param keys the keys of the entries
+     * @param values the values of the entries, at the index of their key
+     */
+    public void putAll(long[] keys, V[] values) {
+        checkArgument(values.length >= keys.length);
+
+        // Group the entries by section, with a counting sort on the section index
+        int[] entrySections = new int[keys.length];
+        long[] hashes = new long[keys.length];
+        int[] sectionStarts = new int[sections.length + 1];
+        for (int i = 0; i < keys.length; i++) {
+            checkNotNull(values[i]);
+            hashes[i] = hash(keys[i]);
+            entrySections[i] = getSectionIndex(hashes[i]);
+            ++sectionStarts[entrySections[i] + 1];
+        }
+        for (int s = 0; s < sections.length; s++) {
+            sectionStarts[s + 1] += sectionStarts[s];
+        }
+
+        int[] order = new int[keys.length];
+        int[] nextPositions = sectionStarts.clone();
+        for (int i = 0; i < keys.length; i++) {
+            order[nextPositions[entrySections[i]]++] = i;
+        }
+
+        for (int s = 0; s < sections.length; s++) {
+            if (sectionStarts[s] < sectionStarts[s + 1]) {
+                sections[s].putAll(keys, values, hashes, order, sectionStarts[s], sectionStarts[s + 1]);
+            }
+        }
+    }
+
+    public V putIfAbsent(long key, V value) {
+        checkNotNull(value);
+        long h = hash(key);
+        return getSection(h).put(key, value, (int) h, true, null);
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> provider) {
+        checkNotNull(provider);
+        long h = hash(key);
+        return getSection(h).put(key, null, (int) h, true, provider);
+    }
+
+    public V remove(long key) {
+        long h = hash(key);
+        return getSection(h).remove(key, null, (int) h);
+    }
+
+    public boolean remove(long key, Object value) {
+        checkNotNull(value);
+        long h = hash(key);
+        return getSection(h).remove(key, value, (int) h) != null;
+    }
+
+    public int removeIf(LongObjectPredicate<V> predicate) {
+        checkNotNull(predicate);
+
+        int removedCount = 0;
+        for (Section<V> s : sections) {
+            removedCount += s.removeIf(predicate);
+        }
+
+        return removedCount;
+    }
+
+    private int getSectionIndex(long hash) {
+        // Use 32 msb out of long to get the section
+        return (int) (hash >>> 32) & (sections.length - 1);
+    }
+
+    private Section<V> getSection(long hash) {
+        return sections[getSectionIndex(hash)];
+    }
+
+    public void clear() {
+        for (Section<V> s : sections) {
+            s.clear();
+        }
+    }
+
+    public void forEach(EntryProcessor<V> processor) {
+        for (Section<V> s : sections) {
+            s.forEach(processor);
+        }
+    }
+
+    /**
+     * @return a new list of all keys (makes a copy)
+     */
+    public List<Long> keys() {
+        List<Long> keys = Lists.newArrayListWithExpectedSize((int) size());
+        forEach((key, value) -> keys.add(key));
+        return keys;
+    }
+
+    /**
+     * @return a new list of all values (makes a copy)
+     */
+    public List<V> values() {
+        List<V> values = Lists.newArrayListWithExpectedSize((int) size());
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    /**
+     * Buckets of a section, replaced as a whole by a rehash.
+     */
+    private static final class Table<V> {
+        private final int capacity;
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<V> values;
+
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * @return the value of the key in the bucket, {@link #DeletedValue} if the bucket holds another key, or
+         *         {@link #EmptyValue} if the bucket is empty
+         */
+        V read(int bucket, long key) {
+            while (true) {
+                V storedValue = values.get(bucket);
+                if (storedValue == EmptyValue || storedValue == DeletedValue) {
+                    return storedValue;
+                }
+
+                long storedKey = keys.get(bucket);
+                if (values.get(bucket) != storedValue) {
+                    // The bucket has been updated in between, read it again
+                    continue;
+                }
+                return storedKey == key ? storedValue : (V) DeletedValue;
+            }
+        }
+    }
+
+    // A section is a portion of the hash map that is covered by a single lock, taken by the writers only
+    @SuppressWarnings("serial")
+    private static final class Section<V> extends ReentrantLock {
+        private volatile Table<V> table;
+
+        private final int initCapacity;
+        private volatile int size;
+        private int usedBuckets;
+        private int resizeThresholdUp;
+        private int resizeThresholdBelow;
+        private final float mapFillFactor;
+        private final float mapIdleFactor;
+        private final float expandFactor;
+        private final float shrinkFactor;
+        private final boolean autoShrink;
+
+        Section(int capacity, float mapFillFactor, float mapIdleFactor, boolean autoShrink,
+                float expandFactor, float shrinkFactor) {
+            this.initCapacity = alignToPowerOfTwo(capacity);
+            this.table = new Table<>(initCapacity);
+            this.size = 0;
+            this.usedBuckets = 0;
+            this.autoShrink = autoShrink;
+            this.mapFillFactor = mapFillFactor;
+            this.mapIdleFactor = mapIdleFactor;
+            this.expandFactor = expandFactor;
+            this.shrinkFactor = shrinkFactor;
+            this.resizeThresholdUp = (int) (initCapacity * mapFillFactor);
+            this.resizeThresholdBelow = (int) (initCapacity * mapIdleFactor);
+        }
+
+        V get(long key, int keyHash) {
+            Table<V> table = this.table;
+            int bucket = keyHash;
+
+            for (int probes = 0; probes < table.capacity; probes++) {
+                bucket = signSafeMod(bucket, table.capacity);
+
+                V storedValue = table.read(bucket, key);
+                if (storedValue == EmptyValue) {
+                    // Not found
+                    return null;
+                } else if (storedValue != DeletedValue) {
+                    return storedValue;
+                }
+
+                ++bucket;
+            }
+
+            // The table was full of other and deleted keys
+            return null;
+        }
+
+        V put(long key, V value, int keyHash, boolean onlyIfAbsent, LongFunction<V> valueProvider) {
+            lock();
+            try {
+                return putLocked(key, value, keyHash, onlyIfAbsent, valueProvider);
+            } finally {
+                unlock();
+            }
+        }
+
+        void putAll(long[] keys, V[] values, long[] hashes, int[] order, int from, int to) {
+            lock();
+            try {
+                for (int i = from; i < to; i++) {
+                    int entry = order[i];
+                    putLocked(keys[entry], values[entry], (int) hashes[entry], false, null);
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        private V putLocked(long key, V value, int keyHash, boolean onlyIfAbsent, LongFunction<V> valueProvider) {
+            Table<V> table = this.table;
+            int capacity = table.capacity;
+            int bucket = keyHash;
+
+            // Remember where we find the first available spot
+            int firstDeletedKey = -1;
+
+            try {
+                while (true) {
+                    bucket = signSafeMod(bucket, capacity);
+
+                    long storedKey = table.keys.get(bucket);
+                    V storedValue = table.values.get(bucket);
+
+                    if (storedKey == key && storedValue != EmptyValue) {
+                        if (storedValue == DeletedValue) {
+                            V newValue = value != null ? value : valueProvider.apply(key);
+                            table.values.set(bucket, newValue);
+                            ++size;
+                            return valueProvider != null ? newValue : null;
+                        } else if (!onlyIfAbsent) {
+                            // Over written an old value for same key
+                            table.values.set(bucket, value);
+                            return storedValue;
+                        } else {
+                            return storedValue;
+                        }
+                    } else if (storedValue == EmptyValue) {
+                        // Found an empty bucket. This means the key is not in the map. If we've already seen a deleted
+                        // key, we should write at that position
+                        if (firstDeletedKey != -1) {
+                            bucket = firstDeletedKey;
+                        } else {
+                            ++usedBuckets;
+                        }
+
+                        // The key is stored before the value, for the readers to see it along with the value
+                        V newValue = value != null ? value : valueProvider.apply(key);
+                        table.keys.set(bucket, key);
+                        table.values.set(bucket, newValue);
+                        ++size;
+                        return valueProvider != null ? newValue : null;
+                    } else if (storedValue == DeletedValue) {
+                        // The bucket contained a different deleted key
+                        if (firstDeletedKey == -1) {
+                            firstDeletedKey = bucket;
+                        }
+                    }
+
+                    ++bucket;
+                }
+            } finally {
+                if (usedBuckets > resizeThresholdUp) {
+                    int newCapacity = alignToPowerOfTwo((int) (capacity * expandFactor));
+                    rehash(newCapacity);
+                }
+            }
+        }
+
+        private void cleanDeletedStatus(Table<V> table, int startBucket) {
+            // Cleanup all the buckets that were in `DeletedValue` state,
+            // so that we can reduce unnecessary expansions
+            int lastBucket = signSafeMod(startBucket - 1, table.capacity);
+            while (table.values.get(lastBucket) == DeletedValue) {
+                table.values.set(lastBucket, (V) EmptyValue);
+                --usedBuckets;
+
+                lastBucket = signSafeMod(--lastBucket, table.capacity);
+            }
+        }
+
+        private void removeBucket(Table<V> table, int bucket) {
+            --size;
+            V nextValueInArray = table.values.get(signSafeMod(bucket + 1, table.capacity));
+            if (nextValueInArray == EmptyValue) {
+                table.values.set(bucket, (V) EmptyValue);
+                --usedBuckets;
+
+                cleanDeletedStatus(table, bucket);
+            } else {
+                table.values.set(bucket, (V) DeletedValue);
+            }
+        }
+
+        private V remove(long key, Object value, int keyHash) {
+            lock();
+
+            try {
+                Table<V> table = this.table;
+                int bucket = keyHash;
+                for (int probes = 0; probes < table.capacity; probes++) {
+                    bucket = signSafeMod(bucket, table.capacity);
+
+                    long storedKey = table.keys.get(bucket);
+                    V storedValue = table.values.get(bucket);
+                    if (storedValue == EmptyValue) {
+                        // Key wasn't found
+                        return null;
+                    } else if (storedKey == key && storedValue != DeletedValue) {
+                        if (value == null || value.equals(storedValue)) {
+                            removeBucket(table, bucket);
+                            return storedValue;
+                        } else {
+                            return null;
+                        }
+                    }
+
+                    ++bucket;
+                }
+                return null;
+            } finally {
+                try {
+                    shrinkIfIdle();
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        int removeIf(LongObjectPredicate<V> filter) {
+            lock();
+
+            int removedCount = 0;
+            try {
+                // Go through all the buckets for this section
+                Table<V> table = this.table;
+                for (int bucket = 0; size > 0 && bucket < table.capacity; bucket++) {
+                    long storedKey = table.keys.get(bucket);
+                    V storedValue = table.values.get(bucket);
+
+                    if (storedValue != EmptyValue && storedValue != DeletedValue) {
+                        if (filter.test(storedKey, storedValue)) {
+                            // Removing item
+                            ++removedCount;
+                            removeBucket(table, bucket);
+                        }
+                    }
+                }
+
+                return removedCount;
+            } finally {
+                try {
+                    shrinkIfIdle();
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        private void shrinkIfIdle() {
+            int capacity = table.capacity;
+            if (autoShrink && size < resizeThresholdBelow) {
+                // Shrinking must at least ensure initCapacity,
+                // so as to avoid frequent shrinking and expansion near initCapacity
+                int newCapacity = Math.max(alignToPowerOfTwo((int) (capacity / shrinkFactor)), initCapacity);
+                int newResizeThresholdUp = (int) (newCapacity * mapFillFactor);
+                if (newCapacity < capacity && newResizeThresholdUp > size) {
+                    // shrink the hashmap
+                    rehash(newCapacity);
+                }
+            }
+        }
+
+        void clear() {
+            lock();
+
+            try {
+                // Publish an empty table, the readers of the current table seeing the map as before the clear
+                int capacity = autoShrink ? initCapacity : table.capacity;
+                table = new Table<>(capacity);
+                size = 0;
+                usedBuckets = 0;
+                resizeThresholdUp = (int) (capacity * mapFillFactor);
+                resizeThresholdBelow = (int) (capacity * mapIdleFactor);
+            } finally {
+                unlock();
+            }
+        }
+
+        public void forEach(EntryProcessor<V> processor) {
+            Table<V> table = this.table;
+
+            // Go through all the buckets for this section
+            for (int bucket = 0; bucket < table.capacity; bucket++) {
+                V storedValue = table.values.get(bucket);
+                if (storedValue == EmptyValue || storedValue == DeletedValue) {
+                    continue;
+                }
+
+                long storedKey = table.keys.get(bucket);
+                if (table.values.get(bucket) == storedValue) {
+                    processor.accept(storedKey, storedValue);
+                } else {
+                    // The bucket has been updated in between, read it again
+                    --bucket;
+                }
+            }
+        }
+
+        private void rehash(int newCapacity) {
+            // Fill a new table, while the readers go on with the current one
+            Table<V> table = this.table;
+            Table<V> newTable = new Table<>(newCapacity);
+
+            for (int i = 0; i < table.capacity; i++) {
+                V storedValue = table.values.get(i);
+                if (storedValue != EmptyValue && storedValue != DeletedValue) {
+                    insertKeyValueNoLock(newTable, table.keys.get(i), storedValue);
+                }
+            }
+
+            this.table = newTable;
+            usedBuckets = size;
+            resizeThresholdUp = (int) (newCapacity * mapFillFactor);
+            resizeThresholdBelow = (int) (newCapacity * mapIdleFactor);
+        }
+
+        private static <V> void insertKeyValueNoLock(Table<V> table, long key, V value) {
+            int bucket = (int) hash(key);
+
+            while (true) {
+                bucket = signSafeMod(bucket, table.capacity);
+
+                V storedValue = table.values.get(bucket);
+
+                if (storedValue == EmptyValue) {
+                    // The bucket is empty, so we can use it. The table is not published yet.
+                    table.keys.lazySet(bucket, key);
+                    table.values.lazySet(bucket, value);
+                    return;
+                }
+
+                ++bucket;
+            }
+        }
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return (int) Math.pow(2, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+}
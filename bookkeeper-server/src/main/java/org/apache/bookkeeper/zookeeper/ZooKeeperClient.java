@@ -41,6 +41,7 @@ import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.zookeeper.ZooWorker.ZooCallable;
+import org.apache.zookeeper.AddWatchMode;
 import org.apache.zookeeper.AsyncCallback.ACLCallback;
 import org.apache.zookeeper.AsyncCallback.Children2Callback;
 import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
@@ -58,6 +59,7 @@ import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.Watcher.Event.EventType;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.apache.zookeeper.Watcher.WatcherType;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.data.Stat;
@@ -104,6 +106,7 @@ public class ZooKeeperClient extends ZooKeeper implements Watcher, AutoCloseable
     private final OpStatsLogger getACLStats;
     private final OpStatsLogger setACLStats;
     private final OpStatsLogger syncStats;
+    private final OpStatsLogger addWatchStats;
     private final OpStatsLogger createClientStats;
 
     private final Callable<ZooKeeper> clientCreator = new Callable<ZooKeeper>() {
@@ -313,6 +316,7 @@ public class ZooKeeperClient extends ZooKeeper implements Watcher, AutoCloseable
         getACLStats = scopedStatsLogger.getOpStatsLogger("get_acl");
         setACLStats = scopedStatsLogger.getOpStatsLogger("set_acl");
         syncStats = scopedStatsLogger.getOpStatsLogger("sync");
+        addWatchStats = scopedStatsLogger.getOpStatsLogger("add_watch");
     }
 
     @Override
@@ -681,6 +685,79 @@ public class ZooKeeperClient extends ZooKeeper implements Watcher, AutoCloseable
         proc.run();
     }
 
+    @Override
+    public void addWatch(final String basePath, final Watcher watcher, final AddWatchMode mode)
+            throws KeeperException, InterruptedException {
+        ZooWorker.syncCallWithRetries(this, new ZooCallable<Void>() {
+
+            @Override
+            public Void call() throws KeeperException, InterruptedException {
+                ZooKeeper zkHandle = zk.get();
+                if (null == zkHandle) {
+                    ZooKeeperClient.super.addWatch(basePath, watcher, mode);
+                } else {
+                    zkHandle.addWatch(basePath, watcher, mode);
+                }
+                return null;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("addWatch (%s, mode = %s)", basePath, mode);
+            }
+
+        }, operationRetryPolicy, rateLimiter, addWatchStats);
+    }
+
+    @Override
+    public void addWatch(final String basePath, final Watcher watcher, final AddWatchMode mode,
+                         final VoidCallback cb, final Object context) {
+        final Runnable proc = new ZkRetryRunnable(operationRetryPolicy, rateLimiter, addWatchStats) {
+
+            final VoidCallback vCb = new VoidCallback() {
+
+                @Override
+                public void processResult(int rc, String path, Object ctx) {
+                    ZooWorker worker = (ZooWorker) ctx;
+                    if (allowRetry(worker, rc)) {
+                        backOffAndRetry(that, worker.nextRetryWaitTime());
+                    } else {
+                        cb.processResult(rc, path, context);
+                    }
+                }
+
+            };
+
+            @Override
+            public String toString() {
+                return String.format("addWatch (%s, mode = %s)", basePath, mode);
+            }
+
+            @Override
+            void zkRun() {
+                ZooKeeper zkHandle = zk.get();
+                if (null == zkHandle) {
+                    ZooKeeperClient.super.addWatch(basePath, watcher, mode, vCb, worker);
+                } else {
+                    zkHandle.addWatch(basePath, watcher, mode, vCb, worker);
+                }
+            }
+        };
+        // execute it immediately
+        proc.run();
+    }
+
+    @Override
+    public void removeWatches(String path, Watcher watcher, WatcherType watcherType, boolean local,
+                              VoidCallback cb, Object ctx) {
+        ZooKeeper zkHandle = zk.get();
+        if (null == zkHandle) {
+            ZooKeeperClient.super.removeWatches(path, watcher, watcherType, local, cb, ctx);
+        } else {
+            zkHandle.removeWatches(path, watcher, watcherType, local, cb, ctx);
+        }
+    }
+
     @Override
     public States getState() {
         ZooKeeper zkHandle = zk.get();
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.bookkeeper.bookie.MemoryGovernor.GovernedCache;
+import org.apache.bookkeeper.bookie.MemoryGovernor.MarginalUtility;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link MemoryGovernor}.
+ */
+public class MemoryGovernorTest {
+
+    private static final long MB = 1024 * 1024;
+    // a budget of 100 MB, of which 20 MB are left to the Netty buffers, moved by steps of 10 MB
+    private static final long STEP = 10 * MB;
+
+    private MemoryGovernor governor;
+
+    @After
+    public void teardown() {
+        if (governor != null) {
+            governor.close();
+        }
+    }
+
+    private MemoryGovernor newGovernor(double highWatermark) {
+        ServerConfiguration conf = new ServerConfiguration()
+                .setMemoryGovernorMaxMemoryMb(100)
+                .setMemoryGovernorStepMb(10)
+                .setMemoryGovernorMinNettyMemoryMb(20)
+                .setMemoryGovernorBackpressureHighWatermark(highWatermark)
+                .setMemoryGovernorBackpressureLowWatermark(highWatermark / 2);
+        governor = new MemoryGovernor(conf, NullStatsLogger.INSTANCE);
+        return governor;
+    }
+
+    private MemoryGovernor newGovernor() {
+        return newGovernor(0.95);
+    }
+
+    private static class TestCache implements GovernedCache {
+        private final String name;
+        private long memoryLimit;
+        private long maxMemoryLimit = 60 * MB;
+        private long gain;
+        private long loss;
+
+        TestCache(String name, long memoryLimit) {
+            this.name = name;
+            this.memoryLimit = memoryLimit;
+        }
+
+        TestCache maxMemoryLimit(long maxMemoryLimit) {
+            this.maxMemoryLimit = maxMemoryLimit;
+            return this;
+        }
+
+        TestCache utility(long gain, long loss) {
+            this.gain = gain;
+            this.loss = loss;
+            return this;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getMemoryLimit() {
+            return memoryLimit;
+        }
+
+        @Override
+        public long getMinMemoryLimit() {
+            return STEP;
+        }
+
+        @Override
+        public long getMaxMemoryLimit() {
+            return maxMemoryLimit;
+        }
+
+        @Override
+        public void setMemoryLimit(long memoryLimit) {
+            this.memoryLimit = memoryLimit;
+        }
+
+        @Override
+        public MarginalUtility sampleMarginalUtility() {
+            return new MarginalUtility(gain, loss);
+        }
+    }
+
+    @Test
+    public void testFreeMemoryGrantedToHighestGain() {
+        MemoryGovernor governor = newGovernor();
+        TestCache read = new TestCache("read", 10 * MB).utility(1000, 1000);
+        TestCache write = new TestCache("write", 20 * MB).utility(5000, 5000);
+        governor.registerCache(read);
+        governor.registerCache(write);
+
+        governor.rebalance();
+        assertEquals(10 * MB, read.getMemoryLimit());
+        assertEquals(30 * MB, write.getMemoryLimit());
+
+        // up to the max memory of the cache, then to the next cache gaining something
+        for (int i = 0; i < 10; i++) {
+            governor.rebalance();
+        }
+        assertEquals(60 * MB, write.getMemoryLimit());
+        assertEquals(20 * MB, read.getMemoryLimit());
+        assertEquals(80 * MB, read.getMemoryLimit() + write.getMemoryLimit());
+    }
+
+    @Test
+    public void testNothingGrantedWithoutGain() {
+        MemoryGovernor governor = newGovernor();
+        TestCache read = new TestCache("read", 20 * MB);
+        governor.registerCache(read);
+
+        governor.rebalance();
+        assertEquals(20 * MB, read.getMemoryLimit());
+    }
+
+    @Test
+    public void testMemoryMovedBetweenCaches() {
+        MemoryGovernor governor = newGovernor();
+        // no free memory left
+        TestCache read = new TestCache("read", 40 * MB).utility(1000, 1000);
+        TestCache write = new TestCache("write", 40 * MB).utility(5000, 5000);
+        governor.registerCache(read);
+        governor.registerCache(write);
+
+        // from the cache losing the least bytes to the one gaining the most
+        governor.rebalance();
+        assertEquals(30 * MB, read.getMemoryLimit());
+        assertEquals(50 * MB, write.getMemoryLimit());
+
+        // not when the gain is close to the loss
+        read.utility(1100, 1100);
+        write.utility(1000, 1000);
+        governor.rebalance();
+        assertEquals(30 * MB, read.getMemoryLimit());
+        assertEquals(50 * MB, write.getMemoryLimit());
+
+        // nor below the min memory of the donor
+        read.utility(0, 0);
+        write.utility(1000, 1000).maxMemoryLimit(80 * MB);
+        for (int i = 0; i < 3; i++) {
+            governor.rebalance();
+        }
+        assertEquals(STEP, read.getMemoryLimit());
+        assertEquals(70 * MB, write.getMemoryLimit());
+    }
+
+    @Test
+    public void testMemoryGivenBackOverBudget() {
+        MemoryGovernor governor = newGovernor();
+        TestCache read = new TestCache("read", 40 * MB).utility(1100, 1100);
+        TestCache write = new TestCache("write", 40 * MB).utility(1000, 1000);
+        governor.registerCache(read);
+        governor.registerCache(write);
+        governor.reserveMemory("rocksdb", 15 * MB);
+
+        // from the cache losing the least, until the caches and the reservations fit the budget
+        governor.rebalance();
+        assertEquals(40 * MB, read.getMemoryLimit());
+        assertEquals(30 * MB, write.getMemoryLimit());
+        governor.rebalance();
+        assertEquals(20 * MB, write.getMemoryLimit());
+        governor.rebalance();
+        assertEquals(20 * MB, write.getMemoryLimit());
+        assertEquals(40 * MB, read.getMemoryLimit());
+    }
+
+    @Test
+    public void testMemoryGivenBackOnChannelPauses() {
+        // the reservation alone is above the high watermark
+        MemoryGovernor governor = newGovernor(0.1);
+        governor.reserveMemory("test", 11 * MB);
+        TestCache read = new TestCache("read", 20 * MB).utility(5000, 5000);
+        governor.registerCache(read);
+
+        EmbeddedChannel channel = new EmbeddedChannel();
+        governor.checkBackpressure(channel);
+        assertFalse(channel.config().isAutoRead());
+
+        // to the Netty buffers, although there is free memory and the cache would gain from it
+        governor.rebalance();
+        assertEquals(10 * MB, read.getMemoryLimit());
+
+        // the pauses are counted from the previous rebalance
+        governor.rebalance();
+        assertEquals(20 * MB, read.getMemoryLimit());
+
+        governor.close();
+        assertTrue(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRange;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRangeIterator;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgersChangeListener;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests of {@link ScanAndCompareGarbageCollector}.
+ */
+public class ScanAndCompareGarbageCollectorTest {
+
+    private LedgerManager ledgerManager;
+    private CompactableLedgerStorage ledgerStorage;
+    private ScanAndCompareGarbageCollector garbageCollector;
+    private final List<Long> cleaned = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        ledgerManager = mock(LedgerManager.class);
+        ledgerStorage = mock(CompactableLedgerStorage.class);
+        when(ledgerStorage.getActiveLedgersInRange(0, Long.MAX_VALUE))
+                .thenReturn(Arrays.asList(1L, 2L, 3L, 10L, 11L, 12L, 20L));
+        garbageCollector = new ScanAndCompareGarbageCollector(ledgerManager, ledgerStorage,
+                new ServerConfiguration().setBookieId("bookie0"), NullStatsLogger.INSTANCE);
+    }
+
+    private LedgersChangeListener newIncrementalGarbageCollector(boolean supported) throws Exception {
+        when(ledgerManager.registerLedgersChangeListener(any())).thenReturn(supported);
+        ServerConfiguration conf = new ServerConfiguration().setBookieId("bookie0");
+        conf.setGcIncrementalEnabled(true);
+        garbageCollector = new ScanAndCompareGarbageCollector(ledgerManager, ledgerStorage, conf,
+                NullStatsLogger.INSTANCE);
+        ArgumentCaptor<LedgersChangeListener> listener = ArgumentCaptor.forClass(LedgersChangeListener.class);
+        verify(ledgerManager).registerLedgersChangeListener(listener.capture());
+        doAnswer(invocation -> ranges(false, Arrays.asList(1L, 2L, 3L), Arrays.asList(10L, 11L, 12L, 20L)))
+                .when(ledgerManager).getLedgerRanges(anyLong(), eq(0L));
+        return listener.getValue();
+    }
+
+    /**
+     * Iterate over the given ranges of ledgers, failing after them if failAtEnd is set.
+     */
+    @SafeVarargs
+    private static LedgerRangeIterator ranges(boolean failAtEnd, List<Long>... ranges) {
+        return new LedgerRangeIterator() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() throws IOException {
+                if (next < ranges.length) {
+                    return true;
+                } else if (failAtEnd) {
+                    throw new IOException("zookeeper failure");
+                }
+                return false;
+            }
+
+            @Override
+            public LedgerRange next() throws IOException {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new LedgerRange(new TreeSet<>(ranges[next++]));
+            }
+        };
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testScanResumedAfterFailure() {
+        doReturn(ranges(true, Arrays.asList(1L, 2L)), ranges(false, Arrays.asList(1L, 2L), Arrays.asList(12L)))
+                .when(ledgerManager).getLedgerRanges(anyLong(), eq(0L));
+        doReturn(ranges(false, Arrays.asList(12L))).when(ledgerManager).getLedgerRanges(anyLong(), eq(3L));
+
+        // the scan fails after comparing the ledgers up to 2
+        garbageCollector.gc(cleaned::add);
+        assertEquals(Arrays.asList(), cleaned);
+
+        // the next scan resumes after ledger 2, and completes
+        garbageCollector.gc(cleaned::add);
+        verify(ledgerManager).getLedgerRanges(anyLong(), eq(3L));
+        assertEquals(Arrays.asList(3L, 10L, 11L, 20L), cleaned);
+
+        // the scan after a completed one starts over
+        cleaned.clear();
+        garbageCollector.gc(cleaned::add);
+        assertEquals(Arrays.asList(3L, 10L, 11L, 20L), cleaned);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testScanNotResumedAfterCompletion() {
+        doAnswer(invocation -> ranges(false, Arrays.asList(1L, 2L, 3L), Arrays.asList(10L, 11L, 12L, 20L)))
+                .when(ledgerManager).getLedgerRanges(anyLong(), eq(0L));
+
+        garbageCollector.gc(cleaned::add);
+        garbageCollector.gc(cleaned::add);
+        assertEquals(Arrays.asList(), cleaned);
+    }
+
+    @Test
+    public void testIncrementalGc() throws Exception {
+        LedgersChangeListener listener = newIncrementalGarbageCollector(true);
+        // the first garbage collection compares all the ledgers
+        garbageCollector.gc(cleaned::add);
+        verify(ledgerManager, times(1)).getLedgerRanges(anyLong(), anyLong());
+
+        // the next ones collect the deleted ledgers stored by the bookie, without comparing all the ledgers
+        listener.onLedgerChanged(2);
+        listener.onLedgerDeleted(10);
+        listener.onLedgerDeleted(99);
+        garbageCollector.gc(cleaned::add);
+        assertEquals(Arrays.asList(10L), cleaned);
+        garbageCollector.gc(cleaned::add);
+        assertEquals(Arrays.asList(10L), cleaned);
+        verify(ledgerManager, times(1)).getLedgerRanges(anyLong(), anyLong());
+        // the ledgers are watched with a single watch
+        verify(ledgerManager, never()).registerLedgerMetadataListener(anyLong(), any());
+
+        // the deletions may have been missed while the watch was lost
+        listener.onChangesLost();
+        garbageCollector.gc(cleaned::add);
+        verify(ledgerManager, times(2)).getLedgerRanges(anyLong(), anyLong());
+        garbageCollector.gc(cleaned::add);
+        verify(ledgerManager, times(2)).getLedgerRanges(anyLong(), anyLong());
+    }
+
+    @Test
+    public void testIncrementalGcNotSupported() throws Exception {
+        newIncrementalGarbageCollector(false);
+        garbageCollector.gc(cleaned::add);
+        garbageCollector.gc(cleaned::add);
+        verify(ledgerManager, times(2)).getLedgerRanges(anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.bookie.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting.Metric;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHeavyHitters.HeavyHitter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link LedgerIoAccounting}.
+ */
+public class LedgerIoAccountingTest {
+
+    private static final int HALF_LIFE_SECONDS = 60;
+
+    private static long weight(LedgerIoAccounting accounting, Metric metric, long ledgerId) {
+        for (HeavyHitter hitter : accounting.getTopLedgers(metric, Integer.MAX_VALUE)) {
+            if (hitter.getKey() == ledgerId) {
+                return hitter.getWeight();
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void testAccounting() {
+        LedgerIoAccounting accounting = new LedgerIoAccounting(16, 0, HALF_LIFE_SECONDS, NullStatsLogger.INSTANCE);
+        accounting.recordAdd(1, 100);
+        accounting.recordAdd(1, 100);
+        accounting.recordAdd(2, 1000);
+        accounting.recordRead(2, 10);
+        accounting.recordReadCacheHit(2);
+        accounting.recordReadAheadWaste(3, 50);
+        // ignored
+        accounting.recordAdd(-1, 100);
+        accounting.recordReadAheadWaste(4, 0);
+
+        assertEquals(2, weight(accounting, Metric.ADD_OPS, 1));
+        assertEquals(200, weight(accounting, Metric.ADD_BYTES, 1));
+        List<HeavyHitter> topAddBytes = accounting.getTopLedgers(Metric.ADD_BYTES, 1);
+        assertEquals(1, topAddBytes.size());
+        assertEquals(2, topAddBytes.get(0).getKey());
+        assertEquals(1, weight(accounting, Metric.READ_OPS, 2));
+        assertEquals(10, weight(accounting, Metric.READ_BYTES, 2));
+        assertEquals(1, weight(accounting, Metric.READ_CACHE_HITS, 2));
+        assertEquals(50, weight(accounting, Metric.READ_AHEAD_WASTED_BYTES, 3));
+        assertEquals(1, accounting.getTopLedgers(Metric.READ_AHEAD_WASTED_BYTES, 10).size());
+
+        accounting.ledgerDeleted(2);
+        assertEquals(0, weight(accounting, Metric.ADD_BYTES, 2));
+        assertEquals(0, weight(accounting, Metric.READ_CACHE_HITS, 2));
+        assertEquals(200, weight(accounting, Metric.ADD_BYTES, 1));
+
+        accounting.reset();
+        for (Metric metric : Metric.values()) {
+            assertTrue(accounting.getTopLedgers(metric, 10).isEmpty());
+        }
+    }
+
+    @Test
+    public void testDecay() {
+        LedgerIoAccounting accounting = new LedgerIoAccounting(16, 0, HALF_LIFE_SECONDS, NullStatsLogger.INSTANCE);
+        long start = System.nanoTime();
+        accounting.recordAdd(1, 1000);
+        accounting.recordAdd(2, 1);
+
+        // no half-life elapsed yet
+        accounting.maybeDecay(start);
+        assertEquals(1000, weight(accounting, Metric.ADD_BYTES, 1));
+
+        // halved once for each elapsed half-life, the ledgers which don't weigh anymore being forgotten
+        long halfLifeNanos = TimeUnit.SECONDS.toNanos(HALF_LIFE_SECONDS);
+        accounting.maybeDecay(start + 2 * halfLifeNanos + halfLifeNanos / 2);
+        assertEquals(250, weight(accounting, Metric.ADD_BYTES, 1));
+        assertEquals(0, weight(accounting, Metric.ADD_OPS, 1));
+        assertEquals(0, weight(accounting, Metric.ADD_BYTES, 2));
+        assertTrue(accounting.getTopLedgers(Metric.ADD_OPS, 10).isEmpty());
+
+        // the recent values weigh more than the past ones
+        accounting.recordAdd(3, 300);
+        assertEquals(3, accounting.getTopLedgers(Metric.ADD_BYTES, 1).get(0).getKey());
+
+        // the next half-life is counted from the last decay, after two half-lives, not from the last call
+        accounting.maybeDecay(start + 3 * halfLifeNanos + halfLifeNanos / 4);
+        assertEquals(125, weight(accounting, Metric.ADD_BYTES, 1));
+        assertEquals(150, weight(accounting, Metric.ADD_BYTES, 3));
+    }
+
+    @Test
+    public void testNoDecay() {
+        LedgerIoAccounting accounting = new LedgerIoAccounting(16, 0, 0, NullStatsLogger.INSTANCE);
+        accounting.recordAdd(1, 1000);
+        accounting.maybeDecay(System.nanoTime() + TimeUnit.DAYS.toNanos(1));
+        assertEquals(1000, weight(accounting, Metric.ADD_BYTES, 1));
+        assertEquals(1, weight(accounting, Metric.ADD_OPS, 1));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting;
+import org.apache.bookkeeper.bookie.stats.LedgerIoAccounting.Metric;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHeavyHitters.HeavyHitter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link ReadCache}.
+ */
+public class ReadCacheTest {
+
+    private static final int ENTRY_SIZE = 100;
+
+    private static void put(ReadCache cache, long ledgerId, long entryId, boolean readAhead) {
+        ByteBuf entry = Unpooled.wrappedBuffer(new byte[ENTRY_SIZE]);
+        entry.setLong(0, entryId);
+        cache.put(ledgerId, entryId, entry, readAhead);
+    }
+
+    private static long weight(LedgerIoAccounting accounting, Metric metric, long ledgerId) {
+        for (HeavyHitter hitter : accounting.getTopLedgers(metric, Integer.MAX_VALUE)) {
+            if (hitter.getKey() == ledgerId) {
+                return hitter.getWeight();
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void testReadAheadWasteAccounted() {
+        // two segments of 8 aligned entries each
+        ReadCache cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, 2048, 1024);
+        LedgerIoAccounting accounting = new LedgerIoAccounting(16, 0, 0, NullStatsLogger.INSTANCE);
+        cache.setLedgerIoAccounting(accounting);
+
+        for (long entryId = 0; entryId < 8; entryId++) {
+            put(cache, 1, entryId, true);
+        }
+        ByteBuf entry = cache.get(1, 3);
+        assertNotNull(entry);
+        assertEquals(3, entry.getLong(0));
+        entry.release();
+
+        for (long entryId = 0; entryId < 8; entryId++) {
+            put(cache, 2, entryId, false);
+        }
+        assertEquals(0, weight(accounting, Metric.READ_AHEAD_WASTED_BYTES, 1));
+
+        // overwrites the segment of the first ledger, of which only one read-ahead entry has been read
+        put(cache, 2, 8, false);
+        assertNull(cache.get(1, 0));
+        assertEquals(7 * ENTRY_SIZE, weight(accounting, Metric.READ_AHEAD_WASTED_BYTES, 1));
+        assertEquals(0, weight(accounting, Metric.READ_AHEAD_WASTED_BYTES, 2));
+        assertEquals(1, weight(accounting, Metric.READ_CACHE_HITS, 1));
+
+        // the entries of the new index are still found
+        entry = cache.get(2, 8);
+        assertNotNull(entry);
+        assertEquals(8, entry.getLong(0));
+        entry.release();
+        cache.close();
+    }
+
+    @Test
+    public void testReadAheadWasteOfRemovedSegments() {
+        ReadCache cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, 4096, 1024);
+        LedgerIoAccounting accounting = new LedgerIoAccounting(16, 0, 0, NullStatsLogger.INSTANCE);
+        cache.setLedgerIoAccounting(accounting);
+
+        // fills three of the four segments
+        for (long entryId = 0; entryId < 24; entryId++) {
+            put(cache, 1, entryId, true);
+        }
+        // drops the empty segment and the oldest one
+        cache.setMemoryLimit(2048);
+        assertEquals(2048, cache.getMemoryLimit());
+        assertEquals(8 * ENTRY_SIZE, weight(accounting, Metric.READ_AHEAD_WASTED_BYTES, 1));
+        assertNull(cache.get(1, 7));
+        ByteBuf entry = cache.get(1, 23);
+        assertNotNull(entry);
+        entry.release();
+        cache.close();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.ENTRY_CACHE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests of {@link ClientEntryCache}.
+ */
+public class ClientEntryCacheTest {
+
+    private static final long LEDGER_ID = 1;
+    private static final int ENTRY_SIZE = 100;
+
+    private StatsLogger statsLogger;
+    private ClientEntryCache cache;
+    // the reads sent to the bookies, as {first, last}
+    private final List<long[]> reads = new ArrayList<>();
+    private final List<CompletableFuture<LedgerEntries>> pendingReads = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        statsLogger = mock(StatsLogger.class);
+        when(statsLogger.getCounter(anyString())).thenReturn(mock(Counter.class));
+        cache = new ClientEntryCache(1024 * 1024, ByteBufAllocator.DEFAULT, statsLogger);
+    }
+
+    @After
+    public void teardown() {
+        cache.close();
+    }
+
+    private static byte[] content(long entryId) {
+        byte[] content = new byte[ENTRY_SIZE];
+        content[0] = (byte) entryId;
+        return content;
+    }
+
+    private static LedgerEntries entries(long first, long last) {
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (long entryId = first; entryId <= last; entryId++) {
+            entries.add(LedgerEntryImpl.create(LEDGER_ID, entryId, ENTRY_SIZE,
+                    Unpooled.wrappedBuffer(content(entryId))));
+        }
+        return LedgerEntriesImpl.create(entries);
+    }
+
+    // reads are left pending until completed by the test
+    private CompletableFuture<LedgerEntries> pendingReader(long first, long last) {
+        reads.add(new long[] { first, last });
+        CompletableFuture<LedgerEntries> future = new CompletableFuture<>();
+        pendingReads.add(future);
+        return future;
+    }
+
+    private CompletableFuture<LedgerEntries> immediateReader(long first, long last) {
+        reads.add(new long[] { first, last });
+        return CompletableFuture.completedFuture(entries(first, last));
+    }
+
+    private static void assertEntries(long first, long last, CompletableFuture<LedgerEntries> future)
+            throws Exception {
+        try (LedgerEntries entries = future.get(10, TimeUnit.SECONDS)) {
+            long entryId = first;
+            for (LedgerEntry entry : entries) {
+                assertEquals(entryId, entry.getEntryId());
+                assertEquals(Unpooled.wrappedBuffer(content(entryId)), entry.getEntryBuffer());
+                entryId++;
+            }
+            assertEquals(last + 1, entryId);
+        }
+    }
+
+    private void assertRead(int index, long first, long last) {
+        assertEquals("first entry of read " + index, first, reads.get(index)[0]);
+        assertEquals("last entry of read " + index, last, reads.get(index)[1]);
+    }
+
+    @Test
+    public void testCachedEntriesNotReadAgain() throws Exception {
+        assertEntries(0, 9, cache.read(LEDGER_ID, 0, 9, this::immediateReader));
+        assertEntries(0, 9, cache.read(LEDGER_ID, 0, 9, this::immediateReader));
+        assertEntries(3, 5, cache.read(LEDGER_ID, 3, 5, this::immediateReader));
+        assertEquals(1, reads.size());
+    }
+
+    @Test
+    public void testOnlyMissingEntriesRead() throws Exception {
+        assertEntries(2, 3, cache.read(LEDGER_ID, 2, 3, this::immediateReader));
+        assertEntries(6, 6, cache.read(LEDGER_ID, 6, 6, this::immediateReader));
+        assertEntries(0, 9, cache.read(LEDGER_ID, 0, 9, this::immediateReader));
+
+        assertEquals(5, reads.size());
+        assertRead(2, 0, 1);
+        assertRead(3, 4, 5);
+        assertRead(4, 7, 9);
+    }
+
+    @Test
+    public void testOverlappingReadsCoalesced() throws Exception {
+        CompletableFuture<LedgerEntries> first = cache.read(LEDGER_ID, 0, 4, this::pendingReader);
+        CompletableFuture<LedgerEntries> second = cache.read(LEDGER_ID, 2, 6, this::pendingReader);
+        CompletableFuture<LedgerEntries> third = cache.read(LEDGER_ID, 0, 4, this::pendingReader);
+
+        // the second read only asks for the entries the first one doesn't, the third one asks for nothing
+        assertEquals(2, reads.size());
+        assertRead(0, 0, 4);
+        assertRead(1, 5, 6);
+        assertFalse(first.isDone());
+
+        pendingReads.get(0).complete(entries(0, 4));
+        assertEntries(0, 4, first);
+        assertEntries(0, 4, third);
+        assertFalse(second.isDone());
+
+        pendingReads.get(1).complete(entries(5, 6));
+        assertEntries(2, 6, second);
+
+        assertEntries(0, 6, cache.read(LEDGER_ID, 0, 6, this::pendingReader));
+        assertEquals(2, reads.size());
+    }
+
+    @Test
+    public void testReaderThrows() throws Exception {
+        RuntimeException exception = new RuntimeException("read failed");
+        CompletableFuture<LedgerEntries> failed = cache.read(LEDGER_ID, 0, 4, (first, last) -> {
+            throw exception;
+        });
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+            fail("The read should have failed");
+        } catch (ExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+
+        // the failed read doesn't stay in flight, the next read is sent
+        assertEntries(0, 4, cache.read(LEDGER_ID, 0, 4, this::immediateReader));
+        assertEquals(1, reads.size());
+    }
+
+    @Test
+    public void testReadFailurePropagatedToWaiters() throws Exception {
+        CompletableFuture<LedgerEntries> first = cache.read(LEDGER_ID, 0, 4, this::pendingReader);
+        CompletableFuture<LedgerEntries> second = cache.read(LEDGER_ID, 3, 4, this::pendingReader);
+        assertEquals(1, reads.size());
+
+        BKException exception = BKException.create(BKException.Code.ReadException);
+        pendingReads.get(0).completeExceptionally(exception);
+        for (CompletableFuture<LedgerEntries> future : Arrays.asList(first, second)) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("The read should have failed");
+            } catch (ExecutionException e) {
+                assertSame(exception, e.getCause());
+            }
+        }
+
+        assertEntries(3, 4, cache.read(LEDGER_ID, 3, 4, this::immediateReader));
+        assertEquals(2, reads.size());
+        assertRead(1, 3, 4);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEviction() throws Exception {
+        cache.close();
+        ArgumentCaptor<Gauge<Long>> gauge = ArgumentCaptor.forClass(Gauge.class);
+        long maxSize = 10 * ENTRY_SIZE;
+        cache = new ClientEntryCache(maxSize, ByteBufAllocator.DEFAULT, statsLogger);
+        verify(statsLogger, times(2)).registerGauge(eq(ENTRY_CACHE_SIZE), gauge.capture());
+
+        for (long entryId = 0; entryId < 100; entryId++) {
+            assertEntries(entryId, entryId, cache.read(LEDGER_ID, entryId, entryId, this::immediateReader));
+            long cachedBytes = gauge.getValue().getSample();
+            assertTrue("cached bytes " + cachedBytes, cachedBytes <= maxSize);
+        }
+        assertEquals(100, reads.size());
+
+        // the first entries were evicted
+        assertEntries(0, 0, cache.read(LEDGER_ID, 0, 0, this::immediateReader));
+        assertEquals(101, reads.size());
+    }
+}
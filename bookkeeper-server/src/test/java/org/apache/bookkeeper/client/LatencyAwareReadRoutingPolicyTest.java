@@ -0,0 +1,223 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.BOOKIE_LABEL;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.READ_ROUTING_SCORE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Sets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link LatencyAwareReadRoutingPolicy}.
+ */
+public class LatencyAwareReadRoutingPolicyTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final BookieId bookie0 = BookieId.parse("bookie0:3181");
+    private final BookieId bookie1 = BookieId.parse("bookie1:3181");
+    private final BookieId bookie2 = BookieId.parse("bookie2:3181");
+    private final BookieId bookie3 = BookieId.parse("bookie3:3181");
+    private final List<BookieId> ensemble = Arrays.asList(bookie0, bookie1, bookie2, bookie3);
+
+    private StatsLogger statsLogger;
+    private StatsLogger bookieStatsLogger;
+    private LatencyAwareReadRoutingPolicy policy;
+    // the entries of the bookies which failed recently
+    private final Map<BookieId, Long> failureHistory = new HashMap<>();
+    private final BookiesHealthInfo bookiesHealthInfo = new BookiesHealthInfo() {
+        @Override
+        public long getBookieFailureHistory(BookieId bookie) {
+            return failureHistory.getOrDefault(bookie, -1L);
+        }
+
+        @Override
+        public long getBookiePendingRequests(BookieId bookie) {
+            return 0;
+        }
+    };
+
+    @Before
+    public void setup() {
+        statsLogger = mock(StatsLogger.class);
+        bookieStatsLogger = mock(StatsLogger.class);
+        when(statsLogger.scopeLabel(eq(BOOKIE_LABEL), any())).thenReturn(bookieStatsLogger);
+        // decay slowly enough for the latencies not to change during a test
+        policy = newPolicy(3_600_000);
+    }
+
+    private LatencyAwareReadRoutingPolicy newPolicy(int decayTimeMs) {
+        ClientConfiguration conf = new ClientConfiguration().setReadRoutingLatencyDecayTimeMs(decayTimeMs);
+        return (LatencyAwareReadRoutingPolicy) new LatencyAwareReadRoutingPolicy().initialize(conf, statsLogger);
+    }
+
+    private void read(BookieId bookie, long latencyNanos) {
+        policy.onReadSent(bookie);
+        policy.onReadComplete(bookie, BKException.Code.OK, latencyNanos);
+    }
+
+    private List<Integer> order(Integer... writeSet) {
+        DistributionSchedule.WriteSet ws = RoundRobinDistributionSchedule.writeSetFromValues(writeSet);
+        ws = policy.reorderReadSequence(ensemble, bookiesHealthInfo, ws);
+        Integer[] ordered = new Integer[ws.size()];
+        for (int i = 0; i < ws.size(); i++) {
+            ordered[i] = ws.get(i);
+        }
+        return Arrays.asList(ordered);
+    }
+
+    @Test
+    public void testPreferLowestLatency() {
+        read(bookie0, 30 * MS);
+        read(bookie1, 10 * MS);
+        read(bookie2, 20 * MS);
+
+        assertEquals(Arrays.asList(1, 2, 0), order(0, 1, 2));
+    }
+
+    @Test
+    public void testSpreadQueuedReads() {
+        read(bookie0, 10 * MS);
+        read(bookie1, 15 * MS);
+        // (1 + 1)^3 = 8 times the latency once a read is queued on the fastest bookie
+        policy.onReadSent(bookie0);
+
+        assertEquals(Arrays.asList(1, 0), order(0, 1));
+    }
+
+    @Test
+    public void testUnsampledBookieScoresMedian() {
+        read(bookie0, 10 * MS);
+        read(bookie1, 20 * MS);
+        read(bookie2, 30 * MS);
+
+        // bookie3 was never read from: it ranks as the median bookie, neither first nor last
+        List<Integer> order = order(3, 2, 0);
+        assertEquals(Arrays.asList(0, 3, 2), order);
+
+        Map<BookieId, Double> scores = policy.getBookieScores();
+        assertFalse(scores.containsKey(bookie3));
+        policy.onReadSent(bookie3);
+        // one read in flight: (median + 1) * (1 + 1)^3
+        assertEquals((20 * MS + 1) * 8, policy.getBookieScores().get(bookie3), MS);
+    }
+
+    @Test
+    public void testNoSamplesKeepOrder() {
+        assertEquals(Arrays.asList(2, 0, 1), order(2, 0, 1));
+    }
+
+    @Test
+    public void testLocalErrorsPenalized() {
+        read(bookie0, 10 * MS);
+        read(bookie2, 30 * MS);
+        policy.onReadSent(bookie1);
+        policy.onReadComplete(bookie1, BKException.Code.BookieHandleNotAvailableException, 1);
+
+        // bookie1 failed right away, but it is sampled as taking the read timeout
+        assertEquals(Arrays.asList(0, 2, 1), order(1, 0, 2));
+        assertEquals(TimeUnit.SECONDS.toNanos(new ClientConfiguration().getReadEntryTimeout()) + 1,
+                policy.getBookieScores().get(bookie1), MS);
+    }
+
+    @Test
+    public void testDecayTowardMedian() throws Exception {
+        policy = newPolicy(50);
+        read(bookie0, 10 * MS);
+        read(bookie1, 20 * MS);
+        read(bookie2, 30 * MS);
+        Thread.sleep(1000);
+
+        // the idle bookies decayed to the median rather than to 0, so they are not preferred to a bookie just read
+        read(bookie0, 15 * MS);
+        assertEquals(Arrays.asList(0, 1, 2), order(2, 1, 0));
+        Map<BookieId, Double> scores = policy.getBookieScores();
+        assertEquals(20 * MS, scores.get(bookie1), MS);
+        assertEquals(20 * MS, scores.get(bookie2), MS);
+    }
+
+    @Test
+    public void testFailedBookiesStayLast() {
+        read(bookie0, 10 * MS);
+        read(bookie1, 20 * MS);
+        read(bookie2, 30 * MS);
+
+        // the placement policy moved the failed bookie0 to the end
+        failureHistory.put(bookie0, 1L);
+        assertEquals(Arrays.asList(1, 2, 0), order(2, 1, 0));
+    }
+
+    @Test
+    public void testUnavailableBookiesStayLast() {
+        read(bookie0, 10 * MS);
+        read(bookie1, 20 * MS);
+        read(bookie2, 30 * MS);
+
+        // the placement policy moved the read-only bookie0 and the gone bookie3 to the end
+        policy.onClusterChanged(Sets.newHashSet(bookie1, bookie2), Sets.newHashSet(bookie0));
+        assertEquals(Arrays.asList(1, 2, 0, 3), order(2, 1, 0, 3));
+        assertEquals(Arrays.asList(1, 2, 3, 0), order(2, 1, 3, 0));
+    }
+
+    @Test
+    public void testGaugeUnregisteredWhenBookieLeaves() {
+        read(bookie0, 10 * MS);
+        read(bookie1, 20 * MS);
+        verify(bookieStatsLogger, times(2)).registerGauge(eq(READ_ROUTING_SCORE), any());
+
+        policy.onClusterChanged(Sets.newHashSet(bookie0), Collections.emptySet());
+        verify(bookieStatsLogger).unregisterGauge(eq(READ_ROUTING_SCORE), any());
+
+        Map<BookieId, Double> scores = policy.getBookieScores();
+        assertTrue(scores.containsKey(bookie0));
+        assertFalse(scores.containsKey(bookie1));
+    }
+
+    @Test
+    public void testReadOnlyBookieKept() {
+        read(bookie0, 10 * MS);
+
+        policy.onClusterChanged(Collections.emptySet(), Sets.newHashSet(bookie0));
+        verify(bookieStatsLogger, never()).unregisterGauge(eq(READ_ROUTING_SCORE), any());
+        assertTrue(policy.getBookieScores().containsKey(bookie0));
+    }
+}
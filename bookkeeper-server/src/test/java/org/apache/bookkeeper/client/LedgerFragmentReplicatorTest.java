@@ -0,0 +1,234 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.AsyncCallback.ReadCallback;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.checksum.DigestManager;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of the re-replication of the entry batches of {@link LedgerFragmentReplicator}.
+ */
+public class LedgerFragmentReplicatorTest {
+
+    private static final long LEDGER_ID = 1;
+    private static final long LAST_ENTRY_ID = 19;
+    private static final int BATCH_SIZE = 5;
+    private static final BookieId NEW_BOOKIE = BookieId.parse("bookie1:3181");
+
+    private final ClientConfiguration conf = new ClientConfiguration();
+    private BookKeeper bkc;
+    private LedgerHandle lh;
+    // the reads sent, as {first, last}, and their callbacks when deferred
+    private final List<long[]> reads = new ArrayList<>();
+    private final List<Runnable> pendingReads = new ArrayList<>();
+    private final Set<Long> unreadableEntries = new HashSet<>();
+    private boolean failRangeReads = false;
+    private boolean deferReads = false;
+    private final List<Long> written = new ArrayList<>();
+    private final List<Long> readFailures = new ArrayList<>();
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+    @Before
+    public void setup() {
+        conf.setRereplicationEntryBatchSize(BATCH_SIZE);
+        bkc = mock(BookKeeper.class);
+        when(bkc.getConf()).thenReturn(conf);
+        BookieClient bookieClient = mock(BookieClient.class);
+        when(bkc.getBookieClient()).thenReturn(bookieClient);
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(3);
+            written.add(entryId);
+            WriteCallback cb = invocation.getArgument(5);
+            cb.writeComplete(BKException.Code.OK, LEDGER_ID, entryId, invocation.getArgument(0),
+                    invocation.getArgument(6));
+            return null;
+        }).when(bookieClient).addEntry(any(), anyLong(), any(), anyLong(), any(), any(), any(), anyInt(),
+                anyBoolean(), any());
+
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withId(LEDGER_ID)
+                .withPassword(new byte[0])
+                .withDigestType(DigestType.CRC32C)
+                .withEnsembleSize(1)
+                .withWriteQuorumSize(1)
+                .withAckQuorumSize(1)
+                .newEnsembleEntry(0, Arrays.asList(BookieId.parse("bookie0:3181")))
+                .withClosedState().withLastEntryId(LAST_ENTRY_ID).withLength(1000)
+                .build();
+        lh = mock(LedgerHandle.class);
+        when(lh.getId()).thenReturn(LEDGER_ID);
+        when(lh.getLedgerMetadata()).thenReturn(metadata);
+        when(lh.getDistributionSchedule()).thenReturn(new RoundRobinDistributionSchedule(1, 1, 1));
+        when(lh.getLedgerKey()).thenReturn(new byte[0]);
+        when(lh.getLastAddConfirmed()).thenReturn(LAST_ENTRY_ID);
+        DigestManager digestManager = mock(DigestManager.class);
+        when(lh.getDigestManager()).thenReturn(digestManager);
+        when(digestManager.computeDigestAndPackageForSending(anyLong(), anyLong(), anyLong(), any(), any(),
+                anyInt())).thenAnswer(invocation -> Unpooled.buffer(10).writerIndex(10));
+        doAnswer(invocation -> {
+            long first = invocation.getArgument(0);
+            long last = invocation.getArgument(1);
+            ReadCallback cb = invocation.getArgument(2);
+            reads.add(new long[] { first, last });
+            Runnable read = () -> completeRead(first, last, cb);
+            if (deferReads) {
+                pendingReads.add(read);
+            } else {
+                read.run();
+            }
+            return null;
+        }).when(lh).asyncReadEntries(anyLong(), anyLong(), any(), any());
+    }
+
+    private void completeRead(long first, long last, ReadCallback cb) {
+        boolean fail = first < last ? failRangeReads : unreadableEntries.contains(first);
+        if (fail) {
+            cb.readComplete(BKException.Code.ReadException, lh, null, null);
+            return;
+        }
+        Vector<LedgerEntry> entries = new Vector<>();
+        for (long entryId = first; entryId <= last; entryId++) {
+            entries.add(new LedgerEntry(LedgerEntryImpl.create(LEDGER_ID, entryId, 10,
+                    Unpooled.wrappedBuffer(new byte[10]))));
+        }
+        Enumeration<LedgerEntry> seq = entries.elements();
+        cb.readComplete(BKException.Code.OK, lh, seq, null);
+    }
+
+    private void replicate(LedgerFragmentReplicator replicator) throws Exception {
+        LedgerFragment fragment = new LedgerFragment(lh, 0, LAST_ENTRY_ID, Collections.singleton(0));
+        replicator.replicate(lh, fragment, (rc, path, ctx) -> result.complete(rc),
+                Collections.singleton(NEW_BOOKIE), (ledgerId, entryId) -> readFailures.add(entryId));
+    }
+
+    private List<Long> allEntries() {
+        List<Long> entries = new ArrayList<>();
+        for (long entryId = 0; entryId <= LAST_ENTRY_ID; entryId++) {
+            entries.add(entryId);
+        }
+        return entries;
+    }
+
+    @Test
+    public void testEntryByEntryByDefault() throws Exception {
+        replicate(new LedgerFragmentReplicator(bkc, NullStatsLogger.INSTANCE, conf));
+
+        assertEquals(BKException.Code.OK, (int) result.get());
+        for (long[] read : reads) {
+            assertEquals(read[0], read[1]);
+        }
+        assertEquals(LAST_ENTRY_ID + 1, reads.size());
+        written.sort(null);
+        assertEquals(allEntries(), written);
+    }
+
+    @Test
+    public void testBoundedBatchesInFlight() throws Exception {
+        conf.setRereplicationMaxInFlightEntryBatches(2);
+        deferReads = true;
+        replicate(new LedgerFragmentReplicator(bkc, NullStatsLogger.INSTANCE, conf));
+
+        int maxInFlight = 0;
+        while (!pendingReads.isEmpty()) {
+            maxInFlight = Math.max(maxInFlight, pendingReads.size());
+            assertTrue("batches in flight " + pendingReads.size(), pendingReads.size() <= 2);
+            assertFalse(result.isDone());
+            // completing a batch starts the next one
+            pendingReads.remove(0).run();
+        }
+        assertEquals(2, maxInFlight);
+        assertEquals(BKException.Code.OK, (int) result.get());
+        // a single range read per batch
+        assertEquals(4, reads.size());
+        for (long[] read : reads) {
+            assertEquals(BATCH_SIZE - 1, read[1] - read[0]);
+        }
+        written.sort(null);
+        assertEquals(allEntries(), written);
+    }
+
+    @Test
+    public void testEntryByEntryFallbackOnRangeReadFailure() throws Exception {
+        conf.setRereplicationMaxInFlightEntryBatches(2);
+        conf.setReplicationRateByBytes(1024 * 1024);
+        LedgerFragmentReplicator replicator = new LedgerFragmentReplicator(bkc, NullStatsLogger.INSTANCE, conf);
+        LedgerFragmentReplicator.Throttler throttler = mock(LedgerFragmentReplicator.Throttler.class);
+        replicator.replicationThrottle = throttler;
+        failRangeReads = true;
+        unreadableEntries.add(7L);
+        replicate(replicator);
+
+        assertEquals(BKException.Code.LedgerRecoveryException, (int) result.get());
+        // the entries unreadable in the batch are reported individually
+        assertEquals(Arrays.asList(7L), readFailures);
+        List<Long> expected = allEntries();
+        expected.remove(7L);
+        written.sort(null);
+        // the batch of the unreadable entry fails, while the other batch in flight completes
+        assertTrue(written.containsAll(Arrays.asList(5L, 6L, 8L, 9L)));
+        assertTrue(expected.containsAll(written));
+
+        // the bytes of each batch are acquired once, for the range read, and not again entry by entry
+        int numRangeReads = 0;
+        for (long[] read : reads) {
+            numRangeReads += read[0] < read[1] ? 1 : 0;
+        }
+        verify(throttler, times(numRangeReads)).acquire(anyInt());
+        verify(throttler, never()).acquire(eq(1024));
+        assertArrayEquals(new long[] { 7, 7 }, reads.stream().filter(r -> r[0] == 7).findFirst().get());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link PercentileSpeculativeRequestExecutionPolicy}.
+ */
+public class PercentileSpeculativeRequestExecutionPolicyTest {
+
+    private final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+    private final SpeculativeRequestExecutor executor = mock(SpeculativeRequestExecutor.class);
+
+    private static PercentileSpeculativeRequestExecutionPolicy newPolicy(double maxSpeculativePercentage) {
+        return new PercentileSpeculativeRequestExecutionPolicy(100, 2000, 2, 95, maxSpeculativePercentage);
+    }
+
+    private static void record(PercentileSpeculativeRequestExecutionPolicy policy, int count, long latencyMs) {
+        for (int i = 0; i < count; i++) {
+            policy.registerSuccessfulRequest(latencyMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void testFirstTimeoutUntilEnoughSamples() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(10);
+        record(policy, (int) PercentileSpeculativeRequestExecutionPolicy.MIN_SAMPLES - 1, 5);
+        assertEquals(100, policy.getSpeculativeRequestTimeout());
+    }
+
+    @Test
+    public void testTimeoutFollowsPercentile() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(10);
+        // 95% of the requests take 5ms, the others 500ms
+        record(policy, 950, 5);
+        record(policy, 50, 500);
+        int timeout = policy.getSpeculativeRequestTimeout();
+        // the upper bound of the histogram bucket of 5ms, rounded up to the millisecond
+        assertTrue("timeout " + timeout, timeout >= 5 && timeout <= 6);
+    }
+
+    @Test
+    public void testTimeoutCappedByMax() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(10);
+        record(policy, 1000, 10_000);
+        assertEquals(2000, policy.getSpeculativeRequestTimeout());
+    }
+
+    @Test
+    public void testSpeculativeRequestBudget() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(10);
+        for (int i = 0; i < 20; i++) {
+            policy.initiateSpeculativeRequest(scheduler, executor);
+        }
+        // 10% of 20 requests
+        assertTrue(policy.tryAcquireSpeculativeRequest());
+        assertTrue(policy.tryAcquireSpeculativeRequest());
+        assertFalse(policy.tryAcquireSpeculativeRequest());
+
+        policy.initiateSpeculativeRequest(scheduler, executor);
+        assertFalse(policy.tryAcquireSpeculativeRequest());
+        for (int i = 0; i < 9; i++) {
+            policy.initiateSpeculativeRequest(scheduler, executor);
+        }
+        assertTrue(policy.tryAcquireSpeculativeRequest());
+    }
+
+    @Test
+    public void testSpeculativeRequestBudgetConcurrent() throws Exception {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(10);
+        for (int i = 0; i < 1000; i++) {
+            policy.initiateSpeculativeRequest(scheduler, executor);
+        }
+        int numThreads = 8;
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (policy.tryAcquireSpeculativeRequest()) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // never more than 10% of 1000 requests, whatever the interleaving
+        assertEquals(100, acquired.get());
+    }
+
+    @Test
+    public void testBuckets() {
+        int previous = -1;
+        for (long micros = 0; micros < 10_000_000; micros = micros * 9 / 8 + 1) {
+            int index = PercentileSpeculativeRequestExecutionPolicy.bucketIndex(micros);
+            assertTrue(index >= previous);
+            assertTrue(micros <= PercentileSpeculativeRequestExecutionPolicy.bucketUpperBoundMicros(index));
+            if (index > 0) {
+                assertTrue(micros > PercentileSpeculativeRequestExecutionPolicy.bucketUpperBoundMicros(index - 1));
+            }
+            previous = index;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.TopologyAwareEnsemblePlacementPolicy.EnsembleForReplacementWithNoConstraints;
+import org.apache.bookkeeper.client.TopologyAwareEnsemblePlacementPolicy.TruePredicate;
+import org.apache.bookkeeper.client.WeightedRandomSelection.WeightedObject;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieNode;
+import org.apache.bookkeeper.net.Node;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link PlacementSnapshot}.
+ */
+public class PlacementSnapshotTest {
+
+    private final Map<BookieId, BookieNode> knownBookies = new HashMap<>();
+    private BookieNode r1Rack1Bookie1;
+    private BookieNode r1Rack1Bookie2;
+    private BookieNode r1Rack2Bookie1;
+    private BookieNode r2Rack1Bookie1;
+
+    @Before
+    public void setup() {
+        r1Rack1Bookie1 = addBookie("bookie1:3181", "/region1/rack1");
+        r1Rack1Bookie2 = addBookie("bookie2:3181", "/region1/rack1");
+        r1Rack2Bookie1 = addBookie("bookie3:3181", "/region1/rack2");
+        r2Rack1Bookie1 = addBookie("bookie4:3181", "/region2/rack1");
+    }
+
+    private BookieNode addBookie(String id, String location) {
+        BookieNode bookie = new BookieNode(BookieId.parse(id), location);
+        knownBookies.put(bookie.getAddr(), bookie);
+        return bookie;
+    }
+
+    private static Set<Node> nodes(Node... nodes) {
+        return new HashSet<>(Arrays.asList(nodes));
+    }
+
+    private static Set<Node> selectAll(PlacementSnapshot snapshot, String scope, Set<Node> excludeBookies) {
+        Set<Node> selected = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            BookieNode bn = snapshot.selectRandom(scope, excludeBookies, TruePredicate.INSTANCE,
+                    EnsembleForReplacementWithNoConstraints.INSTANCE);
+            if (null != bn) {
+                selected.add(bn);
+            }
+        }
+        return selected;
+    }
+
+    @Test
+    public void testSelectUnderScope() {
+        PlacementSnapshot snapshot = new PlacementSnapshot(knownBookies, new HashMap<>(), false, 3);
+        assertEquals(nodes(r1Rack1Bookie1, r1Rack1Bookie2, r1Rack2Bookie1, r2Rack1Bookie1),
+                selectAll(snapshot, "", new HashSet<>()));
+        assertEquals(nodes(r1Rack1Bookie1, r1Rack1Bookie2, r1Rack2Bookie1),
+                selectAll(snapshot, "/region1", new HashSet<>()));
+        assertEquals(nodes(r1Rack1Bookie1, r1Rack1Bookie2), selectAll(snapshot, "/region1/rack1/", new HashSet<>()));
+        assertEquals(nodes(), selectAll(snapshot, "/region3", new HashSet<>()));
+    }
+
+    @Test
+    public void testSelectOutsideOfScopes() {
+        PlacementSnapshot snapshot = new PlacementSnapshot(knownBookies, new HashMap<>(), false, 3);
+        assertEquals(nodes(r1Rack2Bookie1, r2Rack1Bookie1), selectAll(snapshot, "~/region1/rack1", new HashSet<>()));
+        assertEquals(nodes(r2Rack1Bookie1), selectAll(snapshot, "~/region1/rack1,/region1/rack2", new HashSet<>()));
+        // a scope isn't a prefix of the name of its siblings
+        assertEquals(nodes(r1Rack1Bookie1, r1Rack1Bookie2, r1Rack2Bookie1, r2Rack1Bookie1),
+                selectAll(snapshot, "~/region1/rack", new HashSet<>()));
+        assertEquals(nodes(), selectAll(snapshot, "~/region1,/region2", new HashSet<>()));
+    }
+
+    @Test
+    public void testSelectExcludedAndRejectedBookies() {
+        PlacementSnapshot snapshot = new PlacementSnapshot(knownBookies, new HashMap<>(), false, 3);
+        // the only candidate is found although most of the draws are rejected
+        for (int i = 0; i < 100; i++) {
+            assertEquals(r1Rack1Bookie2, snapshot.selectRandom("", nodes(r1Rack1Bookie1, r2Rack1Bookie1),
+                    (candidate, ensemble) -> !candidate.equals(r1Rack2Bookie1),
+                    EnsembleForReplacementWithNoConstraints.INSTANCE));
+        }
+        assertNull(snapshot.selectRandom("/region1/rack1", nodes(r1Rack1Bookie1),
+                (candidate, ensemble) -> false, EnsembleForReplacementWithNoConstraints.INSTANCE));
+    }
+
+    @Test
+    public void testWeightedSelection() {
+        Map<BookieNode, WeightedObject> bookieInfoMap = new HashMap<>();
+        bookieInfoMap.put(r1Rack1Bookie1, new BookieInfo(100L, 100L));
+        bookieInfoMap.put(r1Rack1Bookie2, new BookieInfo(100L, 1L));
+        // the bookies without info are weighted too
+        PlacementSnapshot snapshot = new PlacementSnapshot(knownBookies, bookieInfoMap, true, 100);
+        assertEquals(nodes(r1Rack1Bookie1, r1Rack1Bookie2, r1Rack2Bookie1, r2Rack1Bookie1),
+                selectAll(snapshot, "", new HashSet<>()));
+
+        int heavier = 0;
+        for (int i = 0; i < 1000; i++) {
+            BookieNode bn = snapshot.selectRandom("/region1/rack1", new HashSet<>(), TruePredicate.INSTANCE,
+                    EnsembleForReplacementWithNoConstraints.INSTANCE);
+            if (r1Rack1Bookie1.equals(bn)) {
+                heavier++;
+            }
+        }
+        assertTrue("the bookie with more free space is picked " + heavier + " times", heavier > 900);
+        // nor weights nor exclusions prevent from finding the last candidate
+        assertEquals(r1Rack1Bookie2, snapshot.selectRandom("/region1/rack1", nodes(r1Rack1Bookie1),
+                TruePredicate.INSTANCE, EnsembleForReplacementWithNoConstraints.INSTANCE));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testKnownBookiesAreImmutable() {
+        PlacementSnapshot snapshot = new PlacementSnapshot(knownBookies, new HashMap<>(), false, 3);
+        assertEquals(knownBookies, snapshot.getKnownBookies());
+        snapshot.getKnownBookies().remove(r1Rack1Bookie1.getAddr());
+    }
+}
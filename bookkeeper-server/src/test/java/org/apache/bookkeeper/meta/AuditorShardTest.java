@@ -0,0 +1,144 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.meta.LedgerAuditorManager.AuditorShard;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link AuditorShard}.
+ */
+public class AuditorShardTest {
+
+    private static final int NUM_LEDGERS = 100000;
+
+    private static List<String> members(int count) {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add("bookie" + i + ".example.com:3181");
+        }
+        return members;
+    }
+
+    private static List<AuditorShard> shards(List<String> members) {
+        List<AuditorShard> shards = new ArrayList<>();
+        for (String member : members) {
+            shards.add(new AuditorShard(member, members));
+        }
+        return shards;
+    }
+
+    @Test
+    public void testEachLedgerInExactlyOneShard() {
+        List<AuditorShard> shards = shards(members(5));
+        Map<String, Integer> ledgersPerShard = new HashMap<>();
+        for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+            int owners = 0;
+            for (AuditorShard shard : shards) {
+                if (shard.contains(ledgerId)) {
+                    owners++;
+                    ledgersPerShard.merge(shard.getMember(), 1, Integer::sum);
+                    assertEquals(shard.getMember(), shard.getOwner(ledgerId));
+                }
+            }
+            assertEquals("owners of ledger " + ledgerId, 1, owners);
+        }
+        // the shards are balanced by the virtual nodes
+        for (int count : ledgersPerShard.values()) {
+            assertTrue("ledgers per shard " + ledgersPerShard, count > NUM_LEDGERS / 5 / 2);
+            assertTrue("ledgers per shard " + ledgersPerShard, count < NUM_LEDGERS / 5 * 2);
+        }
+    }
+
+    @Test
+    public void testAssignmentIndependentOfMembersOrder() {
+        List<String> members = members(4);
+        List<String> shuffled = new ArrayList<>(members);
+        Collections.shuffle(shuffled);
+        // the same member may be listed twice when voting again
+        shuffled.add(members.get(2));
+        for (String member : members) {
+            AuditorShard shard = new AuditorShard(member, members);
+            AuditorShard other = new AuditorShard(member, shuffled);
+            assertEquals(shard, other);
+            assertEquals(4, other.getNumShards());
+            for (long ledgerId = 0; ledgerId < 10000; ledgerId++) {
+                assertEquals(shard.getOwner(ledgerId), other.getOwner(ledgerId));
+            }
+        }
+    }
+
+    @Test
+    public void testFewLedgersMovedWhenMembersChange() {
+        List<String> members = members(10);
+        AuditorShard before = new AuditorShard(members.get(0), members);
+        List<String> grown = members(11);
+        AuditorShard after = new AuditorShard(grown.get(0), grown);
+
+        int moved = 0;
+        for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+            String owner = after.getOwner(ledgerId);
+            if (!owner.equals(before.getOwner(ledgerId))) {
+                moved++;
+                // only the ledgers taken over by the new member move
+                assertEquals(grown.get(10), owner);
+            }
+        }
+        // about 1/11 of the ledgers, where a modulo over the member count would move most of them
+        assertTrue("moved " + moved, moved > NUM_LEDGERS / 11 / 2);
+        assertTrue("moved " + moved, moved < NUM_LEDGERS / 11 * 2);
+
+        // removing a member only moves its ledgers
+        List<String> shrunk = new ArrayList<>(members);
+        String removed = shrunk.remove(3);
+        AuditorShard afterRemoval = new AuditorShard(shrunk.get(0), shrunk);
+        for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+            String owner = before.getOwner(ledgerId);
+            if (!owner.equals(removed)) {
+                assertEquals(owner, afterRemoval.getOwner(ledgerId));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleShard() {
+        AuditorShard shard = new AuditorShard("bookie0", Arrays.asList("bookie0"));
+        for (long ledgerId : new long[] { 0L, 1L, -1L, Long.MAX_VALUE }) {
+            assertTrue(shard.contains(ledgerId));
+            assertTrue(AuditorShard.ALL.contains(ledgerId));
+        }
+        assertEquals(1, AuditorShard.ALL.getNumShards());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMemberNotInMembers() {
+        new AuditorShard("bookie9", members(3));
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link CachingLedgerManager}.
+ */
+public class CachingLedgerManagerTest {
+
+    private LedgerManager underlying;
+    private final Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> pendingReads = new HashMap<>();
+
+    @Before
+    public void setup() {
+        underlying = mock(LedgerManager.class);
+        when(underlying.registerLedgersChangeListener(any())).thenReturn(true);
+        when(underlying.readLedgerMetadata(anyLong())).thenAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(metadata(ledgerId, 1));
+        });
+    }
+
+    private static Versioned<LedgerMetadata> metadata(long ledgerId, long version, String... ensemble) {
+        return new Versioned<>(builder(ledgerId, ensemble).build(), new LongVersion(version));
+    }
+
+    private static Versioned<LedgerMetadata> closedMetadata(long ledgerId, long version) {
+        LedgerMetadata metadata = builder(ledgerId).withClosedState().withLastEntryId(10).withLength(100).build();
+        return new Versioned<>(metadata, new LongVersion(version));
+    }
+
+    private static LedgerMetadataBuilder builder(long ledgerId, String... ensemble) {
+        List<BookieId> bookies = new ArrayList<>();
+        for (String bookie : ensemble.length == 0 ? new String[] { "bookie0:3181", "bookie1:3181" } : ensemble) {
+            bookies.add(BookieId.parse(bookie));
+        }
+        return LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withPassword(new byte[0])
+                .withDigestType(DigestType.CRC32C)
+                .withEnsembleSize(bookies.size())
+                .withWriteQuorumSize(bookies.size())
+                .withAckQuorumSize(bookies.size())
+                .newEnsembleEntry(0, bookies);
+    }
+
+    private void deferReads() {
+        when(underlying.readLedgerMetadata(anyLong())).thenAnswer(invocation -> {
+            CompletableFuture<Versioned<LedgerMetadata>> future = new CompletableFuture<>();
+            pendingReads.put(invocation.getArgument(0), future);
+            return future;
+        });
+    }
+
+    // a cache kept coherent by a watch on all the ledgers
+    private CachingLedgerManager newCache(long maxEntries, long maxSizeBytes) {
+        return new CachingLedgerManager(underlying, maxEntries, maxSizeBytes, true, NullStatsLogger.INSTANCE);
+    }
+
+    @Test
+    public void testReadsServedFromCache() throws Exception {
+        CachingLedgerManager cache = newCache(10, 0);
+        Versioned<LedgerMetadata> first = cache.readLedgerMetadata(1).get();
+        assertSame(first, cache.readLedgerMetadata(1).get());
+        cache.readLedgerMetadata(2).get();
+
+        verify(underlying, times(1)).readLedgerMetadata(1);
+        verify(underlying, times(1)).readLedgerMetadata(2);
+        // a single watch for all the ledgers, instead of a watch per ledger
+        verify(underlying, times(1)).registerLedgersChangeListener(cache);
+        verify(underlying, never()).registerLedgerMetadataListener(anyLong(), any());
+    }
+
+    @Test
+    public void testOnlyOpenLedgersWatchedByDefault() throws Exception {
+        when(underlying.readLedgerMetadata(2)).thenReturn(CompletableFuture.completedFuture(closedMetadata(2, 1)));
+        CachingLedgerManager cache = new CachingLedgerManager(underlying, 10, 0, false, NullStatsLogger.INSTANCE);
+        verify(underlying, never()).registerLedgersChangeListener(any());
+
+        cache.readLedgerMetadata(1).get();
+        cache.readLedgerMetadata(2).get();
+        verify(underlying).registerLedgerMetadataListener(1L, cache);
+        verify(underlying, never()).registerLedgerMetadataListener(eq(2L), any());
+
+        // the watch of a ledger is dropped once it is closed, and the closed metadata stays cached
+        Versioned<LedgerMetadata> closed = closedMetadata(1, 2);
+        cache.onChanged(1, closed);
+        assertSame(closed, cache.readLedgerMetadata(1).get());
+        verify(underlying).unregisterLedgerMetadataListener(1L, (LedgerMetadataListener) cache);
+        verify(underlying, times(1)).readLedgerMetadata(1);
+        verify(underlying, times(1)).readLedgerMetadata(2);
+    }
+
+    @Test
+    public void testChangedAndDeletedLedgersInvalidated() throws Exception {
+        CachingLedgerManager cache = newCache(10, 0);
+        cache.readLedgerMetadata(1).get();
+        cache.readLedgerMetadata(2).get();
+        cache.readLedgerMetadata(3).get();
+
+        cache.onLedgerChanged(1);
+        cache.onLedgerDeleted(2);
+        cache.readLedgerMetadata(1).get();
+        cache.readLedgerMetadata(2).get();
+        cache.readLedgerMetadata(3).get();
+        verify(underlying, times(2)).readLedgerMetadata(1);
+        verify(underlying, times(2)).readLedgerMetadata(2);
+        verify(underlying, times(1)).readLedgerMetadata(3);
+
+        cache.onChangesLost();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testChangeDuringReadNotCached() throws Exception {
+        deferReads();
+        CachingLedgerManager cache = newCache(10, 0);
+        CompletableFuture<Versioned<LedgerMetadata>> read = cache.readLedgerMetadata(1);
+        // the metadata read may predate the change
+        cache.onLedgerChanged(1);
+        pendingReads.get(1L).complete(metadata(1, 1));
+        assertEquals(new LongVersion(1), read.get().getVersion());
+        assertEquals(0, cache.size());
+
+        cache.readLedgerMetadata(1);
+        pendingReads.get(1L).complete(metadata(1, 2));
+        assertEquals(1, cache.size());
+        assertEquals(new LongVersion(2), cache.readLedgerMetadata(1).get().getVersion());
+    }
+
+    @Test
+    public void testWritesRefreshCache() throws Exception {
+        CachingLedgerManager cache = newCache(10, 0);
+        cache.readLedgerMetadata(1).get();
+        Versioned<LedgerMetadata> written = metadata(1, 2);
+        when(underlying.writeLedgerMetadata(eq(1L), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(written));
+        cache.writeLedgerMetadata(1, written.getValue(), new LongVersion(1)).get();
+
+        assertSame(written, cache.readLedgerMetadata(1).get());
+        verify(underlying, times(1)).readLedgerMetadata(1);
+    }
+
+    @Test
+    public void testBoundedByEntries() throws Exception {
+        CachingLedgerManager cache = newCache(10, 0);
+        for (long ledgerId = 0; ledgerId < 100; ledgerId++) {
+            cache.readLedgerMetadata(ledgerId).get();
+            assertTrue(cache.size() <= 10);
+        }
+    }
+
+    @Test
+    public void testBoundedByWeight() throws Exception {
+        List<String> bookies = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            bookies.add("bookie" + i + ".example.com:3181");
+        }
+        Versioned<LedgerMetadata> large = metadata(0, 1, bookies.toArray(new String[0]));
+        int largeSize = CachingLedgerManager.estimateSize(large.getValue());
+        assertTrue(largeSize > CachingLedgerManager.estimateSize(metadata(0, 1).getValue()));
+        when(underlying.readLedgerMetadata(anyLong())).thenReturn(CompletableFuture.completedFuture(large));
+
+        // room for 5 large ledgers, or 100 ledgers weighing at most 1% of the size each
+        CachingLedgerManager cache = newCache(100, 5L * largeSize);
+        for (long ledgerId = 0; ledgerId < 100; ledgerId++) {
+            cache.readLedgerMetadata(ledgerId).get();
+            assertTrue("size " + cache.size(), cache.size() <= 5);
+        }
+
+        // small ledgers are bounded by the number of entries
+        setup();
+        cache = newCache(10, 1024 * 1024);
+        for (long ledgerId = 0; ledgerId < 100; ledgerId++) {
+            cache.readLedgerMetadata(ledgerId).get();
+            assertTrue("size " + cache.size(), cache.size() <= 10);
+        }
+    }
+
+    @Test
+    public void testListenerPerLedgerWhenNoWatchOnAllLedgers() throws Exception {
+        when(underlying.registerLedgersChangeListener(any())).thenReturn(false);
+        CachingLedgerManager cache = newCache(2, 0);
+        for (long ledgerId : Arrays.asList(1L, 2L, 3L)) {
+            cache.readLedgerMetadata(ledgerId).get();
+            verify(underlying).registerLedgerMetadataListener(ledgerId, cache);
+        }
+        assertEquals(2, cache.size());
+        // the evicted ledger is no longer watched
+        verify(underlying).unregisterLedgerMetadataListener(1L, (LedgerMetadataListener) cache);
+
+        cache.onChanged(2, null);
+        cache.readLedgerMetadata(2).get();
+        verify(underlying, times(2)).readLedgerMetadata(2);
+    }
+}
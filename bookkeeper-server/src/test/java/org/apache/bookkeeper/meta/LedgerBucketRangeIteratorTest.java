@@ -0,0 +1,197 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRange;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRangeIterator;
+import org.apache.bookkeeper.util.ZkUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of the listing of the ledgers of the hierarchical ledger managers by
+ * {@link AbstractHierarchicalLedgerManager.LedgerBucketRangeIterator}.
+ */
+public class LedgerBucketRangeIteratorTest {
+
+    private static final long ZK_OP_TIMEOUT_MS = 10000;
+
+    private File zkDir;
+    private ZooKeeperServer zks;
+    private ServerCnxnFactory serverFactory;
+    private ZooKeeper zk;
+    private final List<AbstractZkLedgerManager> ledgerManagers = new ArrayList<>();
+    private final NavigableSet<Long> ledgers = new TreeSet<>();
+
+    @Before
+    public void setup() throws Exception {
+        zkDir = Files.createTempDirectory("zk").toFile();
+        zks = new ZooKeeperServer(zkDir, zkDir, 2000);
+        serverFactory = ServerCnxnFactory.createFactory(0, 100);
+        serverFactory.startup(zks);
+
+        CountDownLatch connected = new CountDownLatch(1);
+        zk = new ZooKeeper("127.0.0.1:" + serverFactory.getLocalPort(), 10000, event -> {
+            if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
+                connected.countDown();
+            }
+        });
+        assertTrue(connected.await(10, TimeUnit.SECONDS));
+        zk.create("/ledgers", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        // znodes which are not ledger buckets
+        zk.create("/ledgers/LAYOUT", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        zk.create("/ledgers/idgen", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        for (AbstractZkLedgerManager ledgerManager : ledgerManagers) {
+            ledgerManager.close();
+        }
+        zk.close();
+        serverFactory.shutdown();
+        zks.shutdown();
+        FileUtils.deleteDirectory(zkDir);
+    }
+
+    private AbstractZkLedgerManager newLedgerManager(int parallelism, boolean cacheEnabled) {
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setZkLedgerListingParallelism(parallelism);
+        conf.setZkLedgerListingCacheEnabled(cacheEnabled);
+        AbstractZkLedgerManager ledgerManager = new HierarchicalLedgerManager(conf, zk);
+        ledgerManagers.add(ledgerManager);
+        return ledgerManager;
+    }
+
+    private void createLedgers(AbstractZkLedgerManager ledgerManager, long... ledgerIds) throws Exception {
+        for (long ledgerId : ledgerIds) {
+            ZkUtils.createFullPathOptimistic(zk, ledgerManager.getLedgerPath(ledgerId), new byte[0],
+                    ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            ledgers.add(ledgerId);
+        }
+    }
+
+    private void deleteLedgers(AbstractZkLedgerManager ledgerManager, long... ledgerIds) throws Exception {
+        for (long ledgerId : ledgerIds) {
+            ZkUtils.deleteFullPathOptimistic(zk, ledgerManager.getLedgerPath(ledgerId), -1);
+            ledgers.remove(ledgerId);
+        }
+    }
+
+    // ledgers in the same buckets, in adjacent buckets, and in both the short and the long hierarchies
+    private void createLedgers(AbstractZkLedgerManager ledgerManager) throws Exception {
+        createLedgers(ledgerManager, 0, 1, 2, 9999, 10000, 10001, 19999, 123456789, Integer.MAX_VALUE - 1L,
+                Integer.MAX_VALUE, Integer.MAX_VALUE + 1L, 1234567890123L, 1234567890124L, Long.MAX_VALUE - 1);
+    }
+
+    /**
+     * List the ledgers, checking that the ranges are ordered and each cover a single bucket.
+     */
+    private static NavigableSet<Long> listLedgers(LedgerManager ledgerManager, long startLedgerId)
+            throws Exception {
+        NavigableSet<Long> listed = new TreeSet<>();
+        LedgerRangeIterator iterator = ledgerManager.getLedgerRanges(ZK_OP_TIMEOUT_MS, startLedgerId);
+        while (iterator.hasNext()) {
+            LedgerRange range = iterator.next();
+            assertFalse(range.getLedgers().isEmpty());
+            assertTrue(listed.isEmpty() || listed.last() < range.start());
+            assertEquals(range.start() / 10000, range.end() / 10000);
+            listed.addAll(range.getLedgers());
+        }
+        assertFalse(iterator.hasNext());
+        return listed;
+    }
+
+    @Test
+    public void testListingAcrossBuckets() throws Exception {
+        AbstractZkLedgerManager ledgerManager = newLedgerManager(1, false);
+        assertTrue(listLedgers(ledgerManager, 0).isEmpty());
+        createLedgers(ledgerManager);
+        assertEquals(ledgers, listLedgers(ledgerManager, 0));
+        // listing several buckets ahead of the consumer
+        assertEquals(ledgers, listLedgers(newLedgerManager(4, false), 0));
+    }
+
+    @Test
+    public void testResumeListing() throws Exception {
+        AbstractZkLedgerManager ledgerManager = newLedgerManager(2, false);
+        createLedgers(ledgerManager);
+        List<Long> startLedgerIds = new ArrayList<>();
+        for (long ledgerId : ledgers) {
+            // resume from a listed ledger, and from the ledgers around it which are not listed
+            startLedgerIds.add(ledgerId);
+            startLedgerIds.add(ledgerId + 1);
+            if (ledgerId > 0) {
+                startLedgerIds.add(ledgerId - 1);
+            }
+        }
+        startLedgerIds.add(5000L);
+        startLedgerIds.add(1000000L);
+        for (long startLedgerId : startLedgerIds) {
+            assertEquals("start " + startLedgerId, ledgers.tailSet(startLedgerId, true),
+                    listLedgers(ledgerManager, startLedgerId));
+        }
+    }
+
+    @Test
+    public void testListingCache() throws Exception {
+        AbstractZkLedgerManager ledgerManager = newLedgerManager(2, true);
+        createLedgers(ledgerManager);
+        assertEquals(ledgers, listLedgers(ledgerManager, 0));
+        assertEquals(ledgers, listLedgers(ledgerManager, 0));
+
+        // changes in listed buckets, in a new bucket, and the removal of a bucket
+        createLedgers(ledgerManager, 3, 50000, Integer.MAX_VALUE + 2L);
+        deleteLedgers(ledgerManager, 1, 123456789, 1234567890124L);
+        assertEquals(ledgers, listLedgers(ledgerManager, 0));
+        assertEquals(ledgers.tailSet(10000L, true), listLedgers(ledgerManager, 10000));
+
+        // a resumed listing does not drop the cached buckets it skipped
+        deleteLedgers(ledgerManager, 50000);
+        assertEquals(ledgers.tailSet(20000L, true), listLedgers(ledgerManager, 20000));
+        assertEquals(ledgers, listLedgers(ledgerManager, 0));
+
+        // a bucket listed again once removed
+        createLedgers(ledgerManager, 123456789);
+        assertEquals(ledgers, listLedgers(ledgerManager, 0));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerAuditorManager.AuditorShard;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.commons.io.FileUtils;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the auditor shards and the results of the sharded checks of {@link ZkLedgerAuditorManager}.
+ */
+public class ZkLedgerAuditorManagerTest {
+
+    private File zkDir;
+    private ZooKeeperServer zks;
+    private ServerCnxnFactory serverFactory;
+    private final List<ZooKeeper> clients = new ArrayList<>();
+    private final List<ZkLedgerAuditorManager> managers = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Before
+    public void setup() throws Exception {
+        zkDir = Files.createTempDirectory("zk").toFile();
+        zks = new ZooKeeperServer(zkDir, zkDir, 2000);
+        serverFactory = ServerCnxnFactory.createFactory(0, 100);
+        serverFactory.startup(zks);
+        newZooKeeper().create("/ledgers", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        executor.shutdownNow();
+        for (ZkLedgerAuditorManager manager : managers) {
+            manager.close();
+        }
+        for (ZooKeeper zk : clients) {
+            zk.close();
+        }
+        serverFactory.shutdown();
+        zks.shutdown();
+        FileUtils.deleteDirectory(zkDir);
+    }
+
+    private ZooKeeper newZooKeeper() throws Exception {
+        CountDownLatch connected = new CountDownLatch(1);
+        ZooKeeper zk = new ZooKeeper("127.0.0.1:" + serverFactory.getLocalPort(), 10000, event -> {
+            if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
+                connected.countDown();
+            }
+        });
+        assertTrue(connected.await(10, TimeUnit.SECONDS));
+        clients.add(zk);
+        return zk;
+    }
+
+    // an instance taking part in the election, each with its own session as its votes are ephemeral
+    private ZkLedgerAuditorManager startManager(String bookieId) throws Exception {
+        ZkLedgerAuditorManager manager = new ZkLedgerAuditorManager(newZooKeeper(), new ServerConfiguration(),
+                NullStatsLogger.INSTANCE);
+        managers.add(manager);
+        executor.submit(() -> {
+            manager.tryToBecomeAuditor(bookieId, e -> { });
+            return null;
+        });
+        // the vote is cast before waiting for the election
+        long deadline = System.currentTimeMillis() + 10000;
+        while (manager.getAuditorShard() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return manager;
+    }
+
+    @Test
+    public void testShardsOfTheVotingInstances() throws Exception {
+        ZkLedgerAuditorManager manager0 = new ZkLedgerAuditorManager(newZooKeeper(), new ServerConfiguration(),
+                NullStatsLogger.INSTANCE);
+        managers.add(manager0);
+        // no shard before taking part in the election
+        assertNull(manager0.getAuditorShard());
+        manager0.tryToBecomeAuditor("bookie0:3181", e -> { });
+        assertEquals(new AuditorShard("bookie0:3181", Arrays.asList("bookie0:3181")), manager0.getAuditorShard());
+
+        ZkLedgerAuditorManager manager1 = startManager("bookie1:3181");
+        ZkLedgerAuditorManager manager2 = startManager("bookie2:3181");
+        List<String> members = Arrays.asList("bookie0:3181", "bookie1:3181", "bookie2:3181");
+        List<AuditorShard> shards = Arrays.asList(manager0.getAuditorShard(), manager1.getAuditorShard(),
+                manager2.getAuditorShard());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(new AuditorShard(members.get(i), members), shards.get(i));
+        }
+        for (long ledgerId = 0; ledgerId < 1000; ledgerId++) {
+            int owners = 0;
+            for (AuditorShard shard : shards) {
+                owners += shard.contains(ledgerId) ? 1 : 0;
+            }
+            assertEquals(1, owners);
+        }
+
+        // the shards of the remaining instances no longer include the instance gone
+        manager1.close();
+        assertEquals(new AuditorShard("bookie2:3181", Arrays.asList("bookie0:3181", "bookie2:3181")),
+                manager2.getAuditorShard());
+        assertNull(manager1.getAuditorShard());
+    }
+
+    @Test
+    public void testShardStatsPublished() throws Exception {
+        ZkLedgerAuditorManager manager0 = new ZkLedgerAuditorManager(newZooKeeper(), new ServerConfiguration(),
+                NullStatsLogger.INSTANCE);
+        managers.add(manager0);
+        assertEquals(Collections.emptyList(), manager0.getAuditorShardStats());
+        manager0.tryToBecomeAuditor("bookie0:3181", e -> { });
+        ZkLedgerAuditorManager manager1 = startManager("bookie1:3181");
+
+        Map<String, Integer> stats0 = new HashMap<>();
+        stats0.put("A", 1);
+        stats0.put("B", 2);
+        Map<String, Integer> stats1 = new HashMap<>();
+        stats1.put("A", 10);
+        manager0.publishAuditorShardStats(stats0);
+        manager1.publishAuditorShardStats(stats1);
+        assertEquals(new HashSet<>(Arrays.asList(stats0, stats1)),
+                new HashSet<>(manager0.getAuditorShardStats()));
+
+        // published again, over the previous results
+        stats1.put("A", 20);
+        manager1.publishAuditorShardStats(stats1);
+        assertEquals(new HashSet<>(Arrays.asList(stats0, stats1)),
+                new HashSet<>(manager0.getAuditorShardStats()));
+
+        // the results of an instance gone are dropped along its session
+        manager1.close();
+        clients.get(clients.size() - 1).close();
+        assertEquals(Arrays.asList(stats0), manager0.getAuditorShardStats());
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.apache.commons.io.FileUtils;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link ZkLedgerMetadataWriteBatcher}, and of the ledger ids reserved by {@link ZkLedgerIdGenerator}.
+ */
+public class ZkLedgerMetadataWriteBatcherTest {
+
+    private File zkDir;
+    private ZooKeeperServer zks;
+    private ServerCnxnFactory serverFactory;
+    private ZooKeeper zk;
+    private AbstractZkLedgerManager ledgerManager;
+
+    @Before
+    public void setup() throws Exception {
+        zkDir = Files.createTempDirectory("zk").toFile();
+        zks = new ZooKeeperServer(zkDir, zkDir, 2000);
+        serverFactory = ServerCnxnFactory.createFactory(0, 100);
+        serverFactory.startup(zks);
+
+        CountDownLatch connected = new CountDownLatch(1);
+        zk = new ZooKeeper("127.0.0.1:" + serverFactory.getLocalPort(), 10000, event -> {
+            if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
+                connected.countDown();
+            }
+        });
+        assertTrue(connected.await(10, TimeUnit.SECONDS));
+        zk.create("/ledgers", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        zk.create("/ledgers/LAYOUT", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setZkLedgerMetadataWriteBatchMaxOps(16);
+        ledgerManager = new LegacyHierarchicalLedgerManager(conf, zk);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        ledgerManager.close();
+        zk.close();
+        serverFactory.shutdown();
+        zks.shutdown();
+        FileUtils.deleteDirectory(zkDir);
+    }
+
+    private static LedgerMetadata metadata(long ledgerId, boolean closed) {
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withPassword(new byte[0])
+                .withDigestType(DigestType.CRC32C)
+                .withEnsembleSize(1)
+                .withWriteQuorumSize(1)
+                .withAckQuorumSize(1)
+                .newEnsembleEntry(0, Arrays.asList(BookieId.parse("bookie0:3181")));
+        if (closed) {
+            builder.withClosedState().withLastEntryId(10).withLength(100);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testFailedOpIndex() {
+        assertEquals(-1, ZkLedgerMetadataWriteBatcher.failedOpIndex(null));
+        assertEquals(1, ZkLedgerMetadataWriteBatcher.failedOpIndex(Arrays.asList(
+                new OpResult.ErrorResult(Code.OK.intValue()),
+                new OpResult.ErrorResult(Code.NONODE.intValue()),
+                new OpResult.ErrorResult(Code.RUNTIMEINCONSISTENCY.intValue()))));
+        assertEquals(-1, ZkLedgerMetadataWriteBatcher.failedOpIndex(Arrays.asList(
+                new OpResult.ErrorResult(Code.RUNTIMEINCONSISTENCY.intValue()),
+                new OpResult.ErrorResult(Code.RUNTIMEINCONSISTENCY.intValue()))));
+    }
+
+    @Test
+    public void testBatchedCreatesInNewBuckets() throws Exception {
+        // ledgers in the same bucket, and in buckets which do not exist yet
+        List<Long> ledgerIds = new ArrayList<>();
+        for (long bucket = 0; bucket < 5; bucket++) {
+            for (long ledger = 0; ledger < 5; ledger++) {
+                ledgerIds.add(bucket * 10000 + ledger);
+            }
+        }
+        List<CompletableFuture<Versioned<LedgerMetadata>>> creates = new ArrayList<>();
+        for (long ledgerId : ledgerIds) {
+            creates.add(ledgerManager.createLedgerMetadata(ledgerId, metadata(ledgerId, false)));
+        }
+        for (CompletableFuture<Versioned<LedgerMetadata>> create : creates) {
+            assertEquals(new LongVersion(0), create.get(10, TimeUnit.SECONDS).getVersion());
+        }
+
+        List<CompletableFuture<Versioned<LedgerMetadata>>> writes = new ArrayList<>();
+        for (long ledgerId : ledgerIds) {
+            writes.add(ledgerManager.writeLedgerMetadata(ledgerId, metadata(ledgerId, true), new LongVersion(0)));
+        }
+        for (CompletableFuture<Versioned<LedgerMetadata>> write : writes) {
+            assertEquals(new LongVersion(1), write.get(10, TimeUnit.SECONDS).getVersion());
+        }
+        for (long ledgerId : ledgerIds) {
+            assertTrue(ledgerManager.readLedgerMetadata(ledgerId).get().getValue().isClosed());
+        }
+    }
+
+    @Test
+    public void testAlreadyCommittedWriteSucceeds() throws Exception {
+        ledgerManager.createLedgerMetadata(1, metadata(1, false)).get();
+        LedgerMetadata closed = metadata(1, true);
+        // the write was committed, but its result was lost along the connection
+        zk.setData(ledgerManager.getLedgerPath(1), new LedgerMetadataSerDe().serialize(closed), 0);
+
+        Versioned<LedgerMetadata> written = ledgerManager.writeLedgerMetadata(1, closed, new LongVersion(0)).get();
+        assertEquals(new LongVersion(1), written.getVersion());
+
+        // a write conflicting with another one still fails
+        try {
+            ledgerManager.writeLedgerMetadata(1, metadata(1, false), new LongVersion(1)).get();
+            ledgerManager.writeLedgerMetadata(1, closed, new LongVersion(1)).get();
+            fail("the metadata was modified by another write");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BKException.BKMetadataVersionException);
+        }
+    }
+
+    @Test
+    public void testReservedLedgerIds() throws Exception {
+        ZkLedgerIdGenerator idGenerator = new ZkLedgerIdGenerator(zk, "/ledgers", "idgen",
+                ZooDefs.Ids.OPEN_ACL_UNSAFE, 10);
+        List<CompletableFuture<Long>> ids = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            CompletableFuture<Long> id = new CompletableFuture<>();
+            idGenerator.generateLedgerId((rc, ledgerId) -> {
+                if (rc == BKException.Code.OK) {
+                    id.complete(ledgerId);
+                } else {
+                    id.completeExceptionally(BKException.create(rc));
+                }
+            });
+            ids.add(id);
+        }
+        List<Long> ledgerIds = new ArrayList<>();
+        for (CompletableFuture<Long> id : ids) {
+            long ledgerId = id.get(10, TimeUnit.SECONDS);
+            assertTrue(!ledgerIds.contains(ledgerId));
+            ledgerIds.add(ledgerId);
+        }
+
+        // the znodes reserving the ids are deleted
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!zk.getChildren("/ledgers/idgen", false).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, zk.getChildren("/ledgers/idgen", false).size());
+    }
+}
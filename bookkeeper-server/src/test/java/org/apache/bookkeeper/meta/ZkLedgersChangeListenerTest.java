@@ -0,0 +1,200 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgersChangeListener;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.apache.commons.io.FileUtils;
+import org.apache.zookeeper.AddWatchMode;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the watch of {@link AbstractZkLedgerManager} on the metadata changes of all the ledgers.
+ */
+public class ZkLedgersChangeListenerTest {
+
+    private File zkDir;
+    private ZooKeeperServer zks;
+    private ServerCnxnFactory serverFactory;
+    private ZooKeeper zk;
+    private AbstractZkLedgerManager ledgerManager;
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    private final LedgersChangeListener listener = new LedgersChangeListener() {
+        @Override
+        public void onLedgerChanged(long ledgerId) {
+            events.add("changed " + ledgerId);
+        }
+
+        @Override
+        public void onLedgerDeleted(long ledgerId) {
+            events.add("deleted " + ledgerId);
+        }
+
+        @Override
+        public void onChangesLost() {
+            events.add("lost");
+        }
+    };
+
+    @Before
+    public void setup() throws Exception {
+        zkDir = Files.createTempDirectory("zk").toFile();
+        startServer(0);
+
+        CountDownLatch connected = new CountDownLatch(1);
+        zk = new ZooKeeper("127.0.0.1:" + serverFactory.getLocalPort(), 10000, event -> {
+            if (event.getState() == Watcher.Event.KeeperState.SyncConnected) {
+                connected.countDown();
+            }
+        });
+        assertTrue(connected.await(10, TimeUnit.SECONDS));
+        // the ledgers root is never empty, as it would be deleted along the last ledger
+        zk.create("/ledgers", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        zk.create("/ledgers/LAYOUT", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        ledgerManager = new HierarchicalLedgerManager(new ClientConfiguration(), zk);
+    }
+
+    private void startServer(int port) throws Exception {
+        zks = new ZooKeeperServer(zkDir, zkDir, 2000);
+        serverFactory = ServerCnxnFactory.createFactory(port, 100);
+        serverFactory.startup(zks);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        ledgerManager.close();
+        zk.close();
+        serverFactory.shutdown();
+        zks.shutdown();
+        FileUtils.deleteDirectory(zkDir);
+    }
+
+    private static LedgerMetadata metadata(long ledgerId, boolean closed) {
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withPassword(new byte[0])
+                .withDigestType(DigestType.CRC32C)
+                .withEnsembleSize(1)
+                .withWriteQuorumSize(1)
+                .withAckQuorumSize(1)
+                .newEnsembleEntry(0, Arrays.asList(BookieId.parse("bookie0:3181")));
+        if (closed) {
+            builder.withClosedState().withLastEntryId(10).withLength(100);
+        }
+        return builder.build();
+    }
+
+    private String nextEvent() throws InterruptedException {
+        return events.poll(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testNotRegisteredWithoutPersistentRecursiveWatches() throws Exception {
+        // a server older than 3.6
+        ZooKeeper oldZk = mock(ZooKeeper.class);
+        doThrow(new KeeperException.UnimplementedException())
+                .when(oldZk).addWatch(anyString(), any(Watcher.class), any(AddWatchMode.class));
+        AbstractZkLedgerManager oldLedgerManager = new HierarchicalLedgerManager(new ClientConfiguration(), oldZk);
+        try {
+            assertFalse(oldLedgerManager.registerLedgersChangeListener(listener));
+        } finally {
+            oldLedgerManager.close();
+        }
+    }
+
+    @Test
+    public void testLedgerChangesNotified() throws Exception {
+        assertTrue(ledgerManager.registerLedgersChangeListener(listener));
+
+        // a short ledger id, and a long one in the buckets of the long hierarchical ledger manager
+        for (long ledgerId : new long[] { 1L, Integer.MAX_VALUE + 1L }) {
+            Versioned<LedgerMetadata> created = ledgerManager.createLedgerMetadata(ledgerId,
+                    metadata(ledgerId, false)).get();
+            // the buckets created along the ledger are not reported
+            assertEquals("changed " + ledgerId, nextEvent());
+
+            Versioned<LedgerMetadata> written = ledgerManager.writeLedgerMetadata(ledgerId,
+                    metadata(ledgerId, true), created.getVersion()).get();
+            assertEquals("changed " + ledgerId, nextEvent());
+
+            ledgerManager.removeLedgerMetadata(ledgerId, written.getVersion()).get();
+            assertEquals("deleted " + ledgerId, nextEvent());
+        }
+
+        // the other znodes under the ledgers root are not reported
+        zk.create("/ledgers/available", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        zk.create("/ledgers/underreplication", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+
+        ledgerManager.unregisterLedgersChangeListener(listener);
+        ledgerManager.createLedgerMetadata(2, metadata(2, false)).get();
+        assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testChangesLostOnDisconnection() throws Exception {
+        assertTrue(ledgerManager.registerLedgersChangeListener(listener));
+
+        int port = serverFactory.getLocalPort();
+        serverFactory.shutdown();
+        assertEquals("lost", nextEvent());
+
+        // the watch is restored on reconnection
+        startServer(port);
+        ledgerManager.createLedgerMetadata(3, metadata(3, false)).get(30, TimeUnit.SECONDS);
+        String event;
+        do {
+            event = nextEvent();
+        } while ("lost".equals(event));
+        assertEquals("changed 3", event);
+    }
+}
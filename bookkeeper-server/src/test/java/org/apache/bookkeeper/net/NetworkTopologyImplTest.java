@@ -0,0 +1,134 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Sets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of the leaf lookups of {@link NetworkTopologyImpl}.
+ */
+public class NetworkTopologyImplTest {
+
+    private NetworkTopologyImpl topology;
+    private Node r1Rack1Node1;
+    private Node r1Rack1Node2;
+    private Node r1Rack2Node1;
+    private Node r2Rack1Node1;
+
+    @Before
+    public void setup() {
+        topology = new NetworkTopologyImpl();
+        r1Rack1Node1 = addNode("node1", "/region1/rack1");
+        r1Rack1Node2 = addNode("node2", "/region1/rack1");
+        r1Rack2Node1 = addNode("node1", "/region1/rack2");
+        r2Rack1Node1 = addNode("node1", "/region2/rack1");
+    }
+
+    private Node addNode(String name, String location) {
+        Node node = new NodeBase(name, location);
+        topology.add(node);
+        return node;
+    }
+
+    private static Set<Node> nodes(Node... nodes) {
+        return new HashSet<>(Arrays.asList(nodes));
+    }
+
+    @Test
+    public void testLeavesOfInnerNodes() {
+        assertEquals(nodes(r1Rack1Node1, r1Rack1Node2, r1Rack2Node1, r2Rack1Node1), topology.getLeaves(NodeBase.ROOT));
+        assertEquals(nodes(r1Rack1Node1, r1Rack1Node2, r1Rack2Node1), topology.getLeaves("/region1"));
+        assertEquals(nodes(r1Rack1Node1, r1Rack1Node2), topology.getLeaves("/region1/rack1"));
+        assertEquals(nodes(r2Rack1Node1), topology.getLeaves("/region2/rack1"));
+        // trailing separators are normalized
+        assertEquals(nodes(r1Rack2Node1), topology.getLeaves("/region1/rack2/"));
+        assertEquals(4, topology.getNumOfLeaves());
+        assertEquals(3, topology.getNumOfRacks());
+    }
+
+    @Test
+    public void testLeavesOfLeafAndUnknownScopes() {
+        assertEquals(nodes(r1Rack1Node2), topology.getLeaves("/region1/rack1/node2"));
+        assertTrue(topology.getLeaves("/region3").isEmpty());
+        // a prefix of a path which is not a node of the tree
+        assertTrue(topology.getLeaves("/region1/rack").isEmpty());
+    }
+
+    @Test
+    public void testLeavesOfInverseScope() {
+        assertEquals(nodes(r2Rack1Node1), topology.getLeaves("~/region1"));
+        assertEquals(nodes(r1Rack2Node1), topology.getLeaves("~/region1/rack1,/region2"));
+        assertEquals(nodes(r1Rack1Node1, r1Rack2Node1, r2Rack1Node1), topology.getLeaves("~/region1/rack1/node2"));
+        assertEquals(topology.getLeaves(NodeBase.ROOT), topology.getLeaves("~/region3"));
+    }
+
+    @Test
+    public void testLeavesMatchRacks() {
+        for (String rack : new String[] { "/region1/rack1", "/region1/rack2", "/region2/rack1" }) {
+            assertEquals(new HashSet<>(topology.getDatanodesInRack(rack)), topology.getLeaves(rack));
+        }
+    }
+
+    @Test
+    public void testLookupsFollowMembershipChanges() {
+        Set<Node> before = topology.getLeaves("/region1/rack1");
+
+        Node r1Rack1Node3 = addNode("node3", "/region1/rack1");
+        Node r3Rack1Node1 = addNode("node1", "/region3/rack1");
+        assertEquals(nodes(r1Rack1Node1, r1Rack1Node2, r1Rack1Node3), topology.getLeaves("/region1/rack1"));
+        assertEquals(nodes(r3Rack1Node1), topology.getLeaves("/region3"));
+        assertEquals(4, topology.getNumOfRacks());
+        assertEquals(6, topology.getNumOfLeaves());
+        // the sets returned before the change are not modified
+        assertEquals(nodes(r1Rack1Node1, r1Rack1Node2), before);
+
+        topology.remove(r1Rack2Node1);
+        topology.remove(r3Rack1Node1);
+        assertTrue(topology.getLeaves("/region1/rack2").isEmpty());
+        assertTrue(topology.getLeaves("/region3").isEmpty());
+        assertEquals(nodes(r1Rack1Node1, r1Rack1Node2, r1Rack1Node3), topology.getLeaves("/region1"));
+        assertEquals(2, topology.getNumOfRacks());
+        assertEquals(4, topology.getNumOfLeaves());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testLeavesUnmodifiable() {
+        topology.getLeaves("/region1/rack1").clear();
+    }
+
+    @Test
+    public void testCountNumOfAvailableNodes() {
+        assertEquals(3, topology.countNumOfAvailableNodes("/region1", Collections.emptySet()));
+        assertEquals(2, topology.countNumOfAvailableNodes("/region1", Sets.newHashSet(r1Rack2Node1, r2Rack1Node1)));
+        assertEquals(1, topology.countNumOfAvailableNodes("~/region1", Collections.emptySet()));
+        assertEquals(0, topology.countNumOfAvailableNodes("~/region1", Sets.newHashSet(r1Rack1Node1, r2Rack1Node1)));
+        assertEquals(0, topology.countNumOfAvailableNodes("/region3", Collections.emptySet()));
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.datainteg.EntryCopier;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyLedgerFragmentResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests of {@link CopyLedgerFragmentProcessorV3}.
+ */
+public class CopyLedgerFragmentProcessorV3Test {
+
+    private static final long LEDGER_ID = 1;
+    private static final byte[] MASTER_KEY = "masterKey".getBytes();
+    private static final int ENTRY_SIZE = 10;
+
+    private Bookie bookie;
+    private EntryCopier copier;
+    private EntryCopier.Batch batch;
+    private BookieRequestProcessor requestProcessor;
+    private BookieRequestHandler requestHandler;
+    private EmbeddedChannel channel;
+    private final List<Long> added = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        bookie = mock(Bookie.class);
+        copier = mock(EntryCopier.class);
+        batch = mock(EntryCopier.Batch.class);
+        doReturn(batch).when(copier).newBatch(eq(LEDGER_ID), any());
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(Unpooled.buffer(ENTRY_SIZE).writerIndex(ENTRY_SIZE)
+                    .setLong(0, entryId));
+        }).when(batch).fetchFromAvailable(anyLong());
+        doAnswer(invocation -> {
+            ByteBuf entry = invocation.getArgument(0);
+            long entryId = entry.getLong(0);
+            entry.release();
+            synchronized (added) {
+                added.add(entryId);
+            }
+            WriteCallback cb = invocation.getArgument(1);
+            cb.writeComplete(BookieProtocol.EOK, LEDGER_ID, entryId, null, invocation.getArgument(2));
+            return null;
+        }).when(bookie).recoveryAddEntry(any(), any(), any(), any());
+
+        requestProcessor = mock(BookieRequestProcessor.class);
+        doReturn(bookie).when(requestProcessor).getBookie();
+        doReturn(copier).when(requestProcessor).getFragmentCopier();
+        doReturn(true).when(requestProcessor).isFragmentCopyAuthorized(any());
+        doReturn(new ServerConfiguration()).when(requestProcessor).getServerCfg();
+        doReturn(new RequestStats(NullStatsLogger.INSTANCE)).when(requestProcessor).getRequestStats();
+        doReturn(-1L).when(requestProcessor).getWaitTimeoutOnBackpressureMillis();
+
+        channel = new EmbeddedChannel();
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+        requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+    }
+
+    @After
+    public void teardown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private CopyLedgerFragmentRequest.Builder newRequest(long firstEntryId, long lastEntryId) {
+        return CopyLedgerFragmentRequest.newBuilder()
+                .setLedgerId(LEDGER_ID)
+                .setFirstEntryId(firstEntryId)
+                .setLastEntryId(lastEntryId)
+                .setMasterKey(ByteString.copyFrom(MASTER_KEY))
+                .setDigestType(LedgerMetadataFormat.DigestType.HMAC)
+                .addAllEnsemble(Arrays.asList("bookie0:3181", "bookie1:3181"))
+                .setWriteQuorumSize(2)
+                .setAckQuorumSize(2);
+    }
+
+    private CopyLedgerFragmentResponse copy(CopyLedgerFragmentRequest.Builder copyRequest) {
+        Request request = Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.COPY_LEDGER_FRAGMENT)
+                        .setTxnId(1))
+                .setCopyLedgerFragmentRequest(copyRequest)
+                .build();
+        new CopyLedgerFragmentProcessorV3(request, requestHandler, requestProcessor).run();
+        Response response = channel.readOutbound();
+        assertEquals(response.getStatus(), response.getCopyLedgerFragmentResponse().getStatus());
+        return response.getCopyLedgerFragmentResponse();
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        // more entries than copied concurrently
+        long lastEntryId = CopyLedgerFragmentProcessorV3.MAX_OUTSTANDING_ENTRIES * 2 + 2;
+        CopyLedgerFragmentResponse response = copy(newRequest(3, lastEntryId));
+
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertEquals(LEDGER_ID, response.getLedgerId());
+        assertEquals(lastEntryId - 2, response.getEntriesCopied());
+        assertEquals((lastEntryId - 2) * ENTRY_SIZE, response.getBytesCopied());
+        added.sort(null);
+        List<Long> expected = new ArrayList<>();
+        for (long entryId = 3; entryId <= lastEntryId; entryId++) {
+            expected.add(entryId);
+        }
+        assertEquals(expected, added);
+        verify(bookie, times(expected.size())).recoveryAddEntry(any(), any(), any(), eq(MASTER_KEY));
+    }
+
+    @Test
+    public void testDigestTypeOfTheLedger() throws Exception {
+        assertEquals(StatusCode.EOK, copy(newRequest(0, 0)).getStatus());
+
+        ArgumentCaptor<LedgerMetadata> metadata = ArgumentCaptor.forClass(LedgerMetadata.class);
+        verify(copier).newBatch(eq(LEDGER_ID), metadata.capture());
+        assertEquals(DigestType.MAC, metadata.getValue().getDigestType());
+        assertArrayEquals(MASTER_KEY, metadata.getValue().getPassword());
+        assertEquals(2, metadata.getValue().getWriteQuorumSize());
+        assertEquals(2, metadata.getValue().getAllEnsembles().get(0L).size());
+    }
+
+    @Test
+    public void testWithoutDigestType() throws Exception {
+        // the requester copies the ledgers without digest type itself
+        assertEquals(StatusCode.EBADREQ, copy(newRequest(0, 0).clearDigestType()).getStatus());
+        verify(copier, never()).newBatch(anyLong(), any());
+    }
+
+    @Test
+    public void testCopyDisabled() throws Exception {
+        doReturn(null).when(requestProcessor).getFragmentCopier();
+
+        // answered as by the bookies which don't support the request
+        assertEquals(StatusCode.EBADREQ, copy(newRequest(0, 0)).getStatus());
+        verify(bookie, never()).recoveryAddEntry(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testUnauthorized() throws Exception {
+        doReturn(false).when(requestProcessor).isFragmentCopyAuthorized(requestHandler);
+
+        assertEquals(StatusCode.EUA, copy(newRequest(0, 0)).getStatus());
+        verify(copier, never()).newBatch(anyLong(), any());
+    }
+
+    @Test
+    public void testFetchFailure() throws Exception {
+        CompletableFuture<ByteBuf> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new BKException.BKNoSuchEntryException());
+        doReturn(failed).when(batch).fetchFromAvailable(5L);
+
+        CopyLedgerFragmentResponse response = copy(newRequest(0, 9));
+        assertEquals(StatusCode.ENOENTRY, response.getStatus());
+        assertFalse(response.hasEntriesCopied());
+        assertFalse(added.contains(5L));
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_DISPATCHED_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_PENDING_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_RATE_LIMITED_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAIR_SCHEDULER_REJECTED_REQUESTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.util.HashedWheelTimer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.FairRequestScheduler.RequestClass;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link FairRequestScheduler}.
+ */
+public class FairRequestSchedulerTest {
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private OrderedExecutor executor;
+    private HashedWheelTimer timer;
+
+    @After
+    public void teardown() throws Exception {
+        blocked.countDown();
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    private FairRequestScheduler newScheduler(ServerConfiguration conf, int numThreads) {
+        return newScheduler(conf, numThreads, NullStatsLogger.INSTANCE);
+    }
+
+    private FairRequestScheduler newScheduler(ServerConfiguration conf, int numThreads, StatsLogger statsLogger) {
+        executor = OrderedExecutor.newBuilder().numThreads(numThreads).name("fair-scheduler-test").build();
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS);
+        return new FairRequestScheduler(conf, executor, numThreads, timer, "test", statsLogger);
+    }
+
+    // a scheduler dispatching a single request at a time, on a single thread
+    private FairRequestScheduler newSerialScheduler(ServerConfiguration conf) {
+        conf.setFairSchedulingMaxDispatchedRequestsPerThread(1);
+        return newScheduler(conf, 1);
+    }
+
+    private void submit(FairRequestScheduler scheduler, String tenant, RequestClass requestClass, String name,
+                        CountDownLatch done) {
+        scheduler.submit(tenant, requestClass, 0, () -> {
+            executed.add(name);
+            done.countDown();
+        }, () -> {
+            rejected.add(name);
+            done.countDown();
+        });
+    }
+
+    // occupies the dispatched request slot until the test is done submitting
+    private void block(FairRequestScheduler scheduler) {
+        scheduler.submit("blocker", RequestClass.TAILING, 0, () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> { });
+    }
+
+    @Test
+    public void testTenantWeights() throws Exception {
+        FairRequestScheduler scheduler = newSerialScheduler(new ServerConfiguration()
+                .setFairSchedulingTenantWeights("a:2"));
+        CountDownLatch done = new CountDownLatch(12);
+        block(scheduler);
+        for (int i = 1; i <= 6; i++) {
+            submit(scheduler, "a", RequestClass.TAILING, "a" + i, done);
+        }
+        for (int i = 1; i <= 6; i++) {
+            submit(scheduler, "b", RequestClass.TAILING, "b" + i, done);
+        }
+        blocked.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // two requests of a for each request of b, as long as both have pending requests
+        assertEquals(Arrays.asList("a1", "a2", "b1", "a3", "a4", "b2", "a5", "a6", "b3", "b4", "b5", "b6"),
+                executed);
+        assertTrue(rejected.isEmpty());
+    }
+
+    @Test
+    public void testClassWeights() throws Exception {
+        FairRequestScheduler scheduler = newSerialScheduler(new ServerConfiguration()
+                .setFairSchedulingTailingReadsWeight(1)
+                .setFairSchedulingCatchUpReadsWeight(3));
+        CountDownLatch done = new CountDownLatch(8);
+        block(scheduler);
+        for (int i = 1; i <= 4; i++) {
+            submit(scheduler, "a", RequestClass.TAILING, "t" + i, done);
+            submit(scheduler, "a", RequestClass.CATCH_UP, "c" + i, done);
+        }
+        blocked.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // the blocker used up the round of the tailing requests
+        assertEquals(Arrays.asList("c1", "c2", "c3", "t1", "c4", "t2", "t3", "t4"), executed);
+    }
+
+    @Test
+    public void testClassesBeforeTenants() throws Exception {
+        FairRequestScheduler scheduler = newSerialScheduler(new ServerConfiguration()
+                .setFairSchedulingTailingReadsWeight(1)
+                .setFairSchedulingCatchUpReadsWeight(1));
+        CountDownLatch done = new CountDownLatch(6);
+        block(scheduler);
+        // a flood of catch-up reads of a doesn't delay the tailing reads of b
+        for (int i = 1; i <= 4; i++) {
+            submit(scheduler, "a", RequestClass.CATCH_UP, "a" + i, done);
+        }
+        submit(scheduler, "b", RequestClass.TAILING, "b1", done);
+        submit(scheduler, "b", RequestClass.TAILING, "b2", done);
+        blocked.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "a3", "a4"), executed);
+    }
+
+    @Test
+    public void testMaxPendingRequests() throws Exception {
+        FairRequestScheduler scheduler = newSerialScheduler(new ServerConfiguration()
+                .setFairSchedulingMaxPendingRequestsPerTenant(2));
+        CountDownLatch done = new CountDownLatch(4);
+        block(scheduler);
+        submit(scheduler, "a", RequestClass.TAILING, "a1", done);
+        submit(scheduler, "a", RequestClass.TAILING, "a2", done);
+        submit(scheduler, "a", RequestClass.TAILING, "a3", done);
+        submit(scheduler, "b", RequestClass.TAILING, "b1", done);
+        assertEquals(Arrays.asList("a3"), rejected);
+        blocked.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // the dispatched requests are not pending anymore
+        CountDownLatch next = new CountDownLatch(2);
+        submit(scheduler, "a", RequestClass.TAILING, "a4", next);
+        submit(scheduler, "a", RequestClass.TAILING, "a5", next);
+        assertTrue(next.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a1", "b1", "a2", "a4", "a5"), executed);
+        assertEquals(Arrays.asList("a3"), rejected);
+    }
+
+    @Test
+    public void testRateLimitedRequestsDelayed() throws Exception {
+        int rate = 50;
+        FairRequestScheduler scheduler = newScheduler(new ServerConfiguration()
+                .setFairSchedulingTenantRateLimits("a:" + rate), 2);
+        int numRequests = 11;
+        CountDownLatch done = new CountDownLatch(numRequests);
+        long start = System.nanoTime();
+        for (int i = 0; i < numRequests; i++) {
+            submit(scheduler, "a", RequestClass.TAILING, "a" + i, done);
+        }
+
+        // the tenants without rate limit are not delayed by the rate limited ones
+        CountDownLatch other = new CountDownLatch(1);
+        submit(scheduler, "b", RequestClass.TAILING, "b", other);
+        assertTrue(other.await(10, TimeUnit.SECONDS));
+        assertTrue(done.getCount() > 0);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("elapsed " + elapsedMillis, elapsedMillis >= (numRequests - 1) * 1000 / rate);
+        assertTrue(rejected.isEmpty());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            expected.add("a" + i);
+        }
+        executed.remove("b");
+        assertEquals(expected, executed);
+    }
+
+    @Test
+    public void testConcurrentSubmits() throws Exception {
+        int numThreads = 4;
+        int maxDispatched = 2;
+        int numSubmitters = 8;
+        int requestsPerSubmitter = 5000;
+        FairRequestScheduler scheduler = newScheduler(new ServerConfiguration()
+                .setFairSchedulingMaxDispatchedRequestsPerThread(maxDispatched)
+                .setFairSchedulingMaxPendingRequestsPerTenant(numSubmitters * requestsPerSubmitter), numThreads);
+        CountDownLatch done = new CountDownLatch(numSubmitters * requestsPerSubmitter);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Thread> submitters = new ArrayList<>();
+        for (int s = 0; s < numSubmitters; s++) {
+            String tenant = "tenant-" + (s % 3);
+            long orderingKey = s;
+            Thread submitter = new Thread(() -> {
+                for (int i = 0; i < requestsPerSubmitter; i++) {
+                    RequestClass requestClass = i % 2 == 0 ? RequestClass.TAILING : RequestClass.CATCH_UP;
+                    scheduler.submit(tenant, requestClass, orderingKey, () -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        running.decrementAndGet();
+                        done.countDown();
+                    }, () -> {
+                        rejected.add(tenant);
+                        done.countDown();
+                    });
+                }
+            });
+            submitters.add(submitter);
+            submitter.start();
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertTrue(rejected.isEmpty());
+        assertTrue("max running " + maxRunning.get(), maxRunning.get() <= numThreads * maxDispatched);
+    }
+
+    @Test
+    public void testIdleTenantStatsUnregistered() throws Exception {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        StatsLogger statsLoggerA = mock(StatsLogger.class);
+        StatsLogger statsLoggerB = mock(StatsLogger.class);
+        when(statsLogger.scope(anyString())).thenReturn(statsLogger);
+        when(statsLogger.scopeLabel("tenant", "a")).thenReturn(statsLoggerA);
+        when(statsLogger.scopeLabel("tenant", "b")).thenReturn(statsLoggerB);
+        FairRequestScheduler scheduler = newScheduler(new ServerConfiguration(), 1, statsLogger);
+        scheduler.setIdleTenantExpiryNanos(0);
+        String[] statNames = { FAIR_SCHEDULER_PENDING_REQUESTS, FAIR_SCHEDULER_DISPATCHED_REQUESTS,
+                FAIR_SCHEDULER_REJECTED_REQUESTS, FAIR_SCHEDULER_RATE_LIMITED_REQUESTS };
+
+        CountDownLatch done = new CountDownLatch(1);
+        submit(scheduler, "a", RequestClass.TAILING, "a1", done);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (String statName : statNames) {
+            verify(statsLoggerA).registerGauge(eq(statName), any());
+        }
+        verify(statsLoggerA, never()).unregisterGauge(anyString(), any());
+        // the idle tenant expires when a new tenant shows up, along with all its stats
+        Thread.sleep(10);
+        done = new CountDownLatch(1);
+        submit(scheduler, "b", RequestClass.TAILING, "b1", done);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (String statName : statNames) {
+            verify(statsLoggerA).unregisterGauge(eq(statName), any());
+            verify(statsLoggerB).registerGauge(eq(statName), any());
+        }
+        verify(statsLoggerA, never()).getCounter(anyString());
+        verify(statsLoggerB, never()).unregisterGauge(anyString(), any());
+    }
+}
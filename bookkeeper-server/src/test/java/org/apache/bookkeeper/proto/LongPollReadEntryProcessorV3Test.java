@@ -0,0 +1,208 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Unit tests of {@link LongPollReadEntryProcessorV3}.
+ */
+public class LongPollReadEntryProcessorV3Test {
+
+    private static final long LEDGER_ID = 1;
+    private static final long PREVIOUS_LAC = 9;
+
+    private Bookie bookie;
+    private BookieRequestProcessor requestProcessor;
+    private BookieRequestHandler requestHandler;
+    private EmbeddedChannel channel;
+    private final List<ByteBuf> entryBodies = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        bookie = mock(Bookie.class);
+        requestProcessor = mock(BookieRequestProcessor.class);
+        Field bookieField = BookieRequestProcessor.class.getDeclaredField("bookie");
+        bookieField.setAccessible(true);
+        bookieField.set(requestProcessor, bookie);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getServerCfg()).thenReturn(new ServerConfiguration());
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+
+        channel = new EmbeddedChannel();
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+        requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+    }
+
+    @After
+    public void teardown() {
+        channel.finishAndReleaseAll();
+    }
+
+    // heap buffers, which stay readable from the written response once released
+    private ByteBuf entryBody(long entryId) {
+        ByteBuf body = Unpooled.buffer(16).writeLong(LEDGER_ID).writeLong(entryId);
+        entryBodies.add(body);
+        return body;
+    }
+
+    private void storeEntries(long firstEntryId, long lastEntryId) throws Exception {
+        for (long entryId = firstEntryId; entryId <= lastEntryId; entryId++) {
+            when(bookie.readEntry(LEDGER_ID, entryId)).thenReturn(entryBody(entryId));
+        }
+    }
+
+    private LongPollReadEntryProcessorV3 newProcessor(int maxEntries) {
+        ReadRequest readRequest = ReadRequest.newBuilder()
+                .setLedgerId(LEDGER_ID)
+                .setEntryId(BookieProtocol.LAST_ADD_CONFIRMED)
+                .setPreviousLAC(PREVIOUS_LAC)
+                .setFlag(ReadRequest.Flag.ENTRY_PIGGYBACK)
+                .setMaxEntries(maxEntries)
+                .build();
+        Request request = Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.READ_ENTRY)
+                        .setTxnId(1))
+                .setReadRequest(readRequest)
+                .build();
+        return new LongPollReadEntryProcessorV3(request, requestHandler, requestProcessor, null, null, null);
+    }
+
+    private static void assertEntry(long entryId, ByteBuf body) {
+        assertEquals(LEDGER_ID, body.getLong(0));
+        assertEquals(entryId, body.getLong(8));
+    }
+
+    private ReadResponse writtenResponse() {
+        Response response = channel.readOutbound();
+        return response.getReadResponse();
+    }
+
+    @Test
+    public void testNextEntriesReadAfterPiggybackedEntry() throws Exception {
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenReturn(20L);
+        storeEntries(10, 20);
+
+        newProcessor(4).executeOp();
+
+        ReadResponse response = writtenResponse();
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertEquals(PREVIOUS_LAC + 1, response.getEntryId());
+        assertEquals(20L, response.getMaxLAC());
+        assertEntry(10, Unpooled.wrappedBuffer(response.getBody().asReadOnlyByteBuffer()));
+        // the credits cover the entries up to previousLAC + maxEntries
+        assertEquals(3, response.getNextEntryBodiesCount());
+        for (int i = 0; i < 3; i++) {
+            assertEntry(11 + i, Unpooled.wrappedBuffer(response.getNextEntryBodies(i).asReadOnlyByteBuffer()));
+        }
+
+        InOrder inOrder = inOrder(bookie);
+        for (long entryId = 10; entryId <= 13; entryId++) {
+            inOrder.verify(bookie).readEntry(LEDGER_ID, entryId);
+        }
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void testNextEntriesStopAtFirstFailure() throws Exception {
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenReturn(20L);
+        storeEntries(10, 11);
+        when(bookie.readEntry(LEDGER_ID, 12)).thenThrow(new IOException("disk failure"));
+        storeEntries(13, 20);
+
+        newProcessor(10).executeOp();
+
+        // the piggybacked entry and the entries before the failed one are kept
+        ReadResponse response = writtenResponse();
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertEntry(10, Unpooled.wrappedBuffer(response.getBody().asReadOnlyByteBuffer()));
+        assertEquals(1, response.getNextEntryBodiesCount());
+        assertEntry(11, Unpooled.wrappedBuffer(response.getNextEntryBodies(0).asReadOnlyByteBuffer()));
+    }
+
+    @Test
+    public void testMissingPiggybackedEntry() throws Exception {
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenReturn(20L);
+        when(bookie.readEntry(eq(LEDGER_ID), anyLong())).thenThrow(new Bookie.NoEntryException(LEDGER_ID, 10));
+
+        newProcessor(10).executeOp();
+
+        ReadResponse response = writtenResponse();
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertFalse(response.hasBody());
+        assertEquals(0, response.getNextEntryBodiesCount());
+    }
+
+    @Test
+    public void testNextEntriesReleasedOnceWritten() throws Exception {
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenReturn(20L);
+        storeEntries(10, 20);
+        LongPollReadEntryProcessorV3 processor = newProcessor(4);
+
+        ReadResponse response = processor.getReadResponse();
+        assertEquals(3, response.getNextEntryBodiesCount());
+        // the piggybacked entry is copied, the next entries are wrapped until the response is written
+        assertEquals(0, entryBodies.get(0).refCnt());
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(1, entryBodies.get(i).refCnt());
+        }
+
+        processor.sendResponse(response);
+        for (int i = 0; i <= 3; i++) {
+            assertEquals(0, entryBodies.get(i).refCnt());
+        }
+    }
+}
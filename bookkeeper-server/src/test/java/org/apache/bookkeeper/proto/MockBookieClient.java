@@ -33,6 +33,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.DigestType;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
@@ -254,6 +255,19 @@ public class MockBookieClient implements BookieClient {
         return futureResult;
     }
 
+    @Override
+    public CompletableFuture<Long> copyLedgerFragment(BookieId address, long ledgerId,
+                                                      long firstEntryId, long lastEntryId, byte[] masterKey,
+                                                      DigestType digestType, List<BookieId> ensemble,
+                                                      int writeQuorumSize, int ackQuorumSize) {
+        CompletableFuture<Long> futureResult = new CompletableFuture<>();
+        executor.executeOrdered(address, () ->
+                futureResult.completeExceptionally(
+                        BKException.create(BKException.Code.IllegalOpException).fillInStackTrace())
+        );
+        return futureResult;
+    }
+
     @Override
     public boolean isClosed() {
         return false;
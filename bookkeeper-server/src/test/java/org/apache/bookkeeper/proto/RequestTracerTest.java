@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.proto.RequestTrace.Stage;
+import org.apache.bookkeeper.proto.RequestTrace.Type;
+import org.apache.bookkeeper.proto.RequestTracer.TracedRequest;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link RequestTracer} and {@link RequestTrace}.
+ */
+public class RequestTracerTest {
+
+    // the stats of the stages, by type and stage name
+    private final Map<String, OpStatsLogger> stats = new HashMap<>();
+
+    private StatsLogger newStatsLogger() {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        doAnswer(invocation -> {
+            String type = invocation.getArgument(0);
+            StatsLogger typeLogger = mock(StatsLogger.class);
+            doAnswer(inv -> stats.computeIfAbsent(type + "." + inv.getArgument(0), x -> mock(OpStatsLogger.class)))
+                    .when(typeLogger).getOpStatsLogger(anyString());
+            return typeLogger;
+        }).when(statsLogger).scope(anyString());
+        return statsLogger;
+    }
+
+    private OpStatsLogger stats(Type type, String stage) {
+        return stats.get(type.name() + "." + stage);
+    }
+
+    // records a trace of the given total time, with its response sent after a callback half way
+    private void record(RequestTracer tracer, Type type, long entryId, long totalMicros, boolean success) {
+        RequestTrace trace = tracer.startTrace(type, 1, entryId);
+        long receivedNanos = trace.getStageNanos(Stage.RECEIVED);
+        trace.stamp(Stage.CALLBACK, receivedNanos + TimeUnit.MICROSECONDS.toNanos(totalMicros) / 2);
+        trace.stamp(Stage.RESPONSE_SENT, receivedNanos + TimeUnit.MICROSECONDS.toNanos(totalMicros));
+        trace.setSuccess(success);
+        tracer.record(trace);
+        trace.recycle();
+    }
+
+    private static List<Long> entryIds(List<TracedRequest> requests) {
+        return requests.stream().map(TracedRequest::getEntryId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSamplingDisabled() {
+        RequestTracer tracer = new RequestTracer(0, 10, newStatsLogger());
+        assertFalse(tracer.isEnabled());
+        for (int i = 0; i < 1000; i++) {
+            assertNull(tracer.startTrace(Type.ADD, 1, i));
+        }
+    }
+
+    @Test
+    public void testSampling() {
+        RequestTracer tracer = new RequestTracer(1, 10, newStatsLogger());
+        assertTrue(tracer.isEnabled());
+        for (int i = 0; i < 1000; i++) {
+            RequestTrace trace = tracer.startTrace(Type.READ, 1, i);
+            assertNotNull(trace);
+            assertTrue(trace.isStamped(Stage.RECEIVED));
+            trace.recycle();
+        }
+
+        // one request out of 8 on average
+        tracer = new RequestTracer(8, 10, newStatsLogger());
+        int numRequests = 80000;
+        int sampled = 0;
+        for (int i = 0; i < numRequests; i++) {
+            RequestTrace trace = tracer.startTrace(Type.ADD, 1, i);
+            if (trace != null) {
+                sampled++;
+                trace.recycle();
+            }
+        }
+        assertTrue("sampled " + sampled, sampled > 9000 && sampled < 11000);
+    }
+
+    @Test
+    public void testStageDeltas() {
+        RequestTracer tracer = new RequestTracer(1, 10, newStatsLogger());
+        RequestTrace trace = tracer.startTrace(Type.ADD, 1, 2);
+        long receivedNanos = trace.getStageNanos(Stage.RECEIVED);
+        trace.stamp(Stage.DEQUEUED, receivedNanos + 1000);
+        trace.stamp(Stage.JOURNAL_ENQUEUED, receivedNanos + 3000);
+        // the journal dequeue is not stamped, the flush is timed since the enqueue
+        trace.stamp(Stage.JOURNAL_FLUSHED, receivedNanos + 10000);
+        trace.stamp(Stage.CALLBACK, receivedNanos + 12000);
+        trace.stamp(Stage.RESPONSE_SENT, receivedNanos + 20000);
+        tracer.record(trace);
+        trace.recycle();
+
+        verify(stats(Type.ADD, "DEQUEUED")).registerSuccessfulEvent(1000, TimeUnit.NANOSECONDS);
+        verify(stats(Type.ADD, "JOURNAL_ENQUEUED")).registerSuccessfulEvent(2000, TimeUnit.NANOSECONDS);
+        verify(stats(Type.ADD, "JOURNAL_FLUSHED")).registerSuccessfulEvent(7000, TimeUnit.NANOSECONDS);
+        verify(stats(Type.ADD, "CALLBACK")).registerSuccessfulEvent(2000, TimeUnit.NANOSECONDS);
+        verify(stats(Type.ADD, "RESPONSE_SENT")).registerSuccessfulEvent(8000, TimeUnit.NANOSECONDS);
+        verify(stats(Type.ADD, RequestTracer.TOTAL)).registerSuccessfulEvent(20000, TimeUnit.NANOSECONDS);
+        for (String stage : Arrays.asList("JOURNAL_DEQUEUED", "FORCE_WRITTEN", "READ_DONE")) {
+            verifyNoInteractions(stats(Type.ADD, stage));
+        }
+        verifyNoInteractions(stats(Type.READ, RequestTracer.TOTAL));
+
+        List<TracedRequest> slowest = tracer.getSlowestRequests();
+        assertEquals(1, slowest.size());
+        TracedRequest request = slowest.get(0);
+        assertEquals("ADD", request.getType());
+        assertEquals(1, request.getLedgerId());
+        assertEquals(2, request.getEntryId());
+        assertTrue(request.isSuccess());
+        assertEquals(20, request.getTotalMicros());
+        Map<String, Long> expected = new LinkedHashMap<>();
+        expected.put("DEQUEUED", 1L);
+        expected.put("JOURNAL_ENQUEUED", 3L);
+        expected.put("JOURNAL_FLUSHED", 10L);
+        expected.put("CALLBACK", 12L);
+        expected.put("RESPONSE_SENT", 20L);
+        assertEquals(expected, request.getStageMicros());
+        // in the order of the stages
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(request.getStageMicros().keySet()));
+    }
+
+    @Test
+    public void testFailedRequest() {
+        RequestTracer tracer = new RequestTracer(1, 10, newStatsLogger());
+        record(tracer, Type.READ, 0, 10, false);
+
+        verify(stats(Type.READ, "CALLBACK")).registerFailedEvent(5000, TimeUnit.NANOSECONDS);
+        verify(stats(Type.READ, RequestTracer.TOTAL)).registerFailedEvent(10000, TimeUnit.NANOSECONDS);
+        verify(stats(Type.READ, RequestTracer.TOTAL), never()).registerSuccessfulEvent(anyLong(), any());
+        assertFalse(tracer.getSlowestRequests().get(0).isSuccess());
+    }
+
+    @Test
+    public void testSlowestRequestsEviction() {
+        RequestTracer tracer = new RequestTracer(1, 3, newStatsLogger());
+        long[] totalMicros = { 5, 1, 7, 3, 9, 2 };
+        for (int i = 0; i < totalMicros.length; i++) {
+            record(tracer, Type.ADD, totalMicros[i], totalMicros[i], true);
+        }
+        // the slowest first
+        assertEquals(Arrays.asList(9L, 7L, 5L), entryIds(tracer.getSlowestRequests()));
+
+        // the fastest of the kept requests is evicted by a slower one
+        record(tracer, Type.READ, 6, 6, true);
+        List<TracedRequest> slowest = tracer.getSlowestRequests();
+        assertEquals(Arrays.asList(9L, 7L, 6L), entryIds(slowest));
+        assertEquals("READ", slowest.get(2).getType());
+        assertEquals(6, slowest.get(2).getTotalMicros());
+        assertEquals(3, (long) slowest.get(2).getStageMicros().get("CALLBACK"));
+
+        // but not by a faster one
+        record(tracer, Type.ADD, 4, 4, true);
+        assertEquals(Arrays.asList(9L, 7L, 6L), entryIds(tracer.getSlowestRequests()));
+
+        tracer.resetSlowestRequests();
+        assertTrue(tracer.getSlowestRequests().isEmpty());
+        record(tracer, Type.ADD, 1, 1, true);
+        assertEquals(Arrays.asList(1L), entryIds(tracer.getSlowestRequests()));
+    }
+
+    @Test
+    public void testNoSlowestRequestsKept() {
+        RequestTracer tracer = new RequestTracer(1, 0, newStatsLogger());
+        record(tracer, Type.ADD, 0, 10, true);
+        assertTrue(tracer.getSlowestRequests().isEmpty());
+        verify(stats(Type.ADD, RequestTracer.TOTAL)).registerSuccessfulEvent(10000, TimeUnit.NANOSECONDS);
+    }
+}
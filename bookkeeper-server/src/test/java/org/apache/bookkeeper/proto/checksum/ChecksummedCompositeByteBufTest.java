@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.proto.checksum;
+
+import static org.junit.Assert.assertEquals;
+
+import com.scurrilous.circe.checksum.Crc32cIntChecksum;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
+import java.util.Random;
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat.DigestType;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.Test;
+
+/**
+ * Test that the digest of a {@link ChecksummedCompositeByteBuf} is the digest of its content.
+ */
+public class ChecksummedCompositeByteBufTest {
+
+    private static final byte[] PASSWD = "passwd".getBytes();
+
+    private final Random random = new Random(0x5eed);
+
+    private ChecksummedCompositeByteBuf checksummedPayload(byte[]... chunks) {
+        ChecksummedCompositeByteBuf payload =
+                new ChecksummedCompositeByteBuf(ByteBufAllocator.DEFAULT, false, chunks.length);
+        for (byte[] chunk : chunks) {
+            ByteBuf buffer = Unpooled.wrappedBuffer(chunk);
+            payload.addChecksummedComponent(buffer, Crc32cIntChecksum.computeChecksum(buffer));
+        }
+        return payload;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static ByteBuf entry(DigestManager digestManager, ByteBuf payload) {
+        ReferenceCounted packaged = digestManager.computeDigestAndPackageForSending(1, 0, payload.readableBytes(),
+                payload, PASSWD, 0);
+        ByteBuf entry = ByteBufList.coalesce((ByteBufList) packaged);
+        packaged.release();
+        return entry;
+    }
+
+    @Test
+    public void testPayloadChecksum() {
+        byte[] first = randomBytes(100);
+        byte[] second = randomBytes(5000);
+        ChecksummedCompositeByteBuf payload = checksummedPayload(first, second);
+
+        assertEquals(true, payload.hasPayloadChecksum());
+        assertEquals(Crc32cIntChecksum.computeChecksum(Unpooled.wrappedBuffer(first, second)),
+                payload.payloadChecksum());
+        payload.release();
+    }
+
+    @Test
+    public void testDigestMatchesContent() throws Exception {
+        for (DigestType digestType : new DigestType[] { DigestType.CRC32C, DigestType.CRC32, DigestType.HMAC }) {
+            DigestManager digestManager = DigestManager.instantiate(1, PASSWD, digestType,
+                    ByteBufAllocator.DEFAULT, false);
+            byte[] first = randomBytes(1024);
+            byte[] second = randomBytes(3);
+
+            ByteBuf checksummed = entry(digestManager, checksummedPayload(first, second));
+            ByteBuf hashed = entry(digestManager, Unpooled.wrappedBuffer(first, second));
+            assertEquals(digestType.name(), hashed, checksummed);
+
+            ByteBuf data = digestManager.verifyDigestAndReturnData(1, checksummed);
+            assertEquals(Unpooled.wrappedBuffer(first, second), data);
+            checksummed.release();
+            hashed.release();
+        }
+    }
+
+    @Test
+    public void testDigestWithUnchecksummedComponent() throws Exception {
+        DigestManager digestManager = DigestManager.instantiate(1, PASSWD, DigestType.CRC32C,
+                ByteBufAllocator.DEFAULT, false);
+        byte[] first = randomBytes(64);
+        byte[] second = randomBytes(64);
+        ChecksummedCompositeByteBuf payload = checksummedPayload(first);
+        payload.addComponent(true, Unpooled.wrappedBuffer(second));
+        assertEquals(false, payload.hasPayloadChecksum());
+
+        // the payload no longer matches its checksum, so it is hashed
+        ByteBuf entry = entry(digestManager, payload);
+        ByteBuf data = digestManager.verifyDigestAndReturnData(1, entry);
+        assertEquals(Unpooled.wrappedBuffer(first, second), data);
+        entry.release();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.replication;
+
+import static org.apache.bookkeeper.replication.ReplicationStats.AUDITOR_SHARDS_SCOPE;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_HAVING_NO_REPLICA_OF_AN_ENTRY;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_NOT_ADHERING_TO_PLACEMENT_POLICY;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of the merged results of the sharded ledger checks of {@link AuditorStats}.
+ */
+public class AuditorStatsTest {
+
+    private final Map<String, Gauge<? extends Number>> shardsGauges = new HashMap<>();
+    private AuditorStats stats;
+
+    @Before
+    public void setup() {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        StatsLogger shardsStatsLogger = mock(StatsLogger.class);
+        when(statsLogger.getOpStatsLogger(anyString()))
+                .thenReturn(NullStatsLogger.INSTANCE.getOpStatsLogger("op"));
+        when(statsLogger.getCounter(anyString())).thenReturn(NullStatsLogger.INSTANCE.getCounter("counter"));
+        when(statsLogger.scope(AUDITOR_SHARDS_SCOPE)).thenReturn(shardsStatsLogger);
+        doAnswer(invocation -> {
+            shardsGauges.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(shardsStatsLogger).registerGauge(anyString(), any());
+        stats = new AuditorStats(statsLogger);
+    }
+
+    private int merged(String name) {
+        return shardsGauges.get(name).getSample().intValue();
+    }
+
+    @Test
+    public void testShardCheckValues() {
+        stats.getLedgersNotAdheringToPlacementPolicyGuageValue().set(3);
+        stats.getNumLedgersHavingNoReplicaOfAnEntryGuageValue().set(5);
+        Map<String, Integer> values = stats.getShardCheckValues();
+        assertEquals(6, values.size());
+        assertEquals(3, (int) values.get(NUM_LEDGERS_NOT_ADHERING_TO_PLACEMENT_POLICY));
+        assertEquals(5, (int) values.get(NUM_LEDGERS_HAVING_NO_REPLICA_OF_AN_ENTRY));
+    }
+
+    @Test
+    public void testMergedShardCheckValues() {
+        // not registered unless the checks are sharded
+        assertEquals(0, shardsGauges.size());
+
+        Map<String, Integer> shard0 = new HashMap<>();
+        shard0.put(NUM_LEDGERS_NOT_ADHERING_TO_PLACEMENT_POLICY, 3);
+        shard0.put(NUM_LEDGERS_HAVING_NO_REPLICA_OF_AN_ENTRY, 1);
+        Map<String, Integer> shard1 = new HashMap<>();
+        shard1.put(NUM_LEDGERS_NOT_ADHERING_TO_PLACEMENT_POLICY, 4);
+        // unknown values are ignored
+        shard1.put("UNKNOWN", 100);
+        stats.updateMergedShardCheckValues(Arrays.asList(shard0, shard1));
+
+        assertEquals(6, shardsGauges.size());
+        assertEquals(7, merged(NUM_LEDGERS_NOT_ADHERING_TO_PLACEMENT_POLICY));
+        assertEquals(1, merged(NUM_LEDGERS_HAVING_NO_REPLICA_OF_AN_ENTRY));
+
+        // the values of the shards gone are no longer counted
+        stats.updateMergedShardCheckValues(Collections.singletonList(shard1));
+        assertEquals(4, merged(NUM_LEDGERS_NOT_ADHERING_TO_PLACEMENT_POLICY));
+        assertEquals(0, merged(NUM_LEDGERS_HAVING_NO_REPLICA_OF_AN_ENTRY));
+        assertEquals(6, shardsGauges.size());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.ThreadPlacement.Placement;
+import org.apache.bookkeeper.util.ThreadPlacement.Role;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link ThreadPlacement}.
+ */
+public class ThreadPlacementTest {
+
+    // two nodes, with the CPUs ordered one physical core after the other
+    private final SortedMap<Integer, List<Integer>> numaNodes = new TreeMap<>();
+
+    @Before
+    public void setup() {
+        ThreadPlacement.resetPlan();
+        numaNodes.put(0, Arrays.asList(0, 2, 1, 3));
+        numaNodes.put(1, Arrays.asList(4, 6, 5, 7));
+    }
+
+    @After
+    public void teardown() {
+        ThreadPlacement.resetPlan();
+    }
+
+    private static ServerConfiguration newConf() {
+        return new ServerConfiguration().setThreadPlacementEnabled(true);
+    }
+
+    @Test
+    public void testRoundRobinOverNodes() {
+        ServerConfiguration conf = newConf();
+        for (int index = 0; index < 6; index++) {
+            Placement placement = ThreadPlacement.plan(conf, numaNodes, Role.READ_WORKER, index);
+            assertEquals(index % 2, placement.getNumaNode());
+            assertEquals(index, placement.getIndex());
+            assertEquals("READ_WORKER", placement.getRole());
+            // allowed to run on the whole node
+            assertEquals(numaNodes.get(index % 2), placement.getCpus());
+        }
+    }
+
+    @Test
+    public void testPlanNodes() {
+        ServerConfiguration conf = newConf().setThreadPlacementNumaNodes("1");
+        for (int index = 0; index < 3; index++) {
+            assertEquals(1, ThreadPlacement.plan(conf, numaNodes, Role.JOURNAL, index).getNumaNode());
+        }
+
+        // the unknown nodes are ignored
+        conf = newConf().setThreadPlacementNumaNodes("5, 1, 0");
+        assertEquals(1, ThreadPlacement.plan(conf, numaNodes, Role.IO, 0).getNumaNode());
+        assertEquals(0, ThreadPlacement.plan(conf, numaNodes, Role.IO, 1).getNumaNode());
+
+        // all the nodes when none of the configured ones is known
+        conf = newConf().setThreadPlacementNumaNodes("5");
+        assertEquals(0, ThreadPlacement.plan(conf, numaNodes, Role.IO, 0).getNumaNode());
+        assertEquals(1, ThreadPlacement.plan(conf, numaNodes, Role.IO, 1).getNumaNode());
+    }
+
+    @Test
+    public void testPinToCores() {
+        ServerConfiguration conf = newConf().setThreadPlacementPinToCores(true);
+        int[] expectedCpus = { 0, 4, 2, 6, 1, 5, 3, 7, 0, 4 };
+        for (int index = 0; index < expectedCpus.length; index++) {
+            Placement placement = ThreadPlacement.plan(conf, numaNodes, Role.WRITE_WORKER, index);
+            assertEquals(index % 2, placement.getNumaNode());
+            assertEquals(Collections.singletonList(expectedCpus[index]), placement.getCpus());
+        }
+
+        // the CPUs of a node are handed out across the roles
+        assertEquals(Collections.singletonList(2),
+                ThreadPlacement.plan(conf, numaNodes, Role.DB_STORAGE, 0).getCpus());
+    }
+
+    @Test
+    public void testBusyWaitThreadsNotPlaced() {
+        ServerConfiguration conf = newConf();
+        conf.setBusyWaitEnabled(true);
+        ThreadPlacement.placeCurrentThread(conf, Role.JOURNAL, 0);
+        assertTrue(ThreadPlacement.getPlacements().isEmpty());
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHeavyHitters.HeavyHitter;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link ConcurrentLongHeavyHitters}.
+ */
+public class ConcurrentLongHeavyHittersTest {
+
+    private static List<Long> keys(List<HeavyHitter> hitters) {
+        return hitters.stream().map(HeavyHitter::getKey).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testExactUnderCapacity() {
+        ConcurrentLongHeavyHitters sketch = new ConcurrentLongHeavyHitters(16, 4);
+        for (long key = 0; key < 10; key++) {
+            for (int i = 0; i <= key; i++) {
+                sketch.add(key, 10);
+            }
+        }
+        assertEquals(10, sketch.size());
+        for (long key = 0; key < 10; key++) {
+            assertEquals((key + 1) * 10, sketch.getWeight(key));
+        }
+        assertEquals(0, sketch.getWeight(10));
+
+        List<HeavyHitter> top = sketch.top(3);
+        assertEquals(Arrays.asList(9L, 8L, 7L), keys(top));
+        assertEquals(100, top.get(0).getWeight());
+        assertEquals(0, top.get(0).getError());
+        assertEquals(10, sketch.top(100).size());
+        assertTrue(sketch.top(0).isEmpty());
+    }
+
+    @Test
+    public void testLightestEvicted() {
+        ConcurrentLongHeavyHitters sketch = new ConcurrentLongHeavyHitters(4, 1);
+        sketch.add(1, 10);
+        sketch.add(2, 20);
+        sketch.add(3, 30);
+        sketch.add(4, 40);
+
+        // the new key takes the place of the lightest one, whose weight is its error
+        sketch.add(5, 1);
+        assertEquals(4, sketch.size());
+        assertEquals(0, sketch.getWeight(1));
+        assertEquals(11, sketch.getWeight(5));
+        HeavyHitter hitter = sketch.top(4).get(3);
+        assertEquals(5, hitter.getKey());
+        assertEquals(10, hitter.getError());
+
+        // the evicted weight bounds the weight of the keys added later
+        sketch.add(6, 1);
+        assertEquals(0, sketch.getWeight(5));
+        assertEquals(12, sketch.getWeight(6));
+        assertEquals(11, sketch.top(4).get(3).getError());
+    }
+
+    @Test
+    public void testHeavyKeysTracked() {
+        int capacity = 64;
+        // a single section, as the guarantee of the tracked keys holds per section
+        ConcurrentLongHeavyHitters sketch = new ConcurrentLongHeavyHitters(capacity, 1);
+        Map<Long, Long> actual = new HashMap<>();
+        Random random = new Random(1);
+        long total = 0;
+        for (int i = 0; i < 200000; i++) {
+            // a few heavy keys among a long tail
+            long key = random.nextInt(10) < 3 ? random.nextInt(8) : 100 + random.nextInt(100000);
+            long weight = 1 + random.nextInt(100);
+            sketch.add(key, weight);
+            actual.merge(key, weight, Long::sum);
+            total += weight;
+        }
+
+        List<HeavyHitter> top = sketch.top(capacity);
+        for (HeavyHitter hitter : top) {
+            long actualWeight = actual.get(hitter.getKey());
+            assertTrue(hitter.toString(), hitter.getWeight() >= actualWeight);
+            assertTrue(hitter.toString(), hitter.getWeight() - hitter.getError() <= actualWeight);
+        }
+        // the keys heavier than the total weight divided by the capacity are always tracked
+        for (Map.Entry<Long, Long> e : actual.entrySet()) {
+            if (e.getValue() > total / capacity) {
+                assertTrue("key " + e.getKey(), sketch.getWeight(e.getKey()) >= e.getValue());
+            }
+        }
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L),
+                keys(sketch.top(8)).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRemove() {
+        ConcurrentLongHeavyHitters sketch = new ConcurrentLongHeavyHitters(4, 1);
+        sketch.add(1, 10);
+        sketch.add(2, 20);
+        assertTrue(sketch.remove(1));
+        assertFalse(sketch.remove(1));
+        assertFalse(sketch.remove(3));
+        assertEquals(1, sketch.size());
+        assertEquals(0, sketch.getWeight(1));
+        assertEquals(20, sketch.getWeight(2));
+
+        // the room of the removed key is reused
+        sketch.add(3, 30);
+        sketch.add(4, 40);
+        sketch.add(5, 50);
+        assertEquals(4, sketch.size());
+        assertEquals(20, sketch.getWeight(2));
+        assertEquals(0, sketch.top(4).get(3).getError());
+    }
+
+    @Test
+    public void testRandomAddsAndRemoves() {
+        // never more keys than the capacity, so the weights stay exact, while the hash table of the keys
+        // goes through many deletions
+        int capacity = 128;
+        ConcurrentLongHeavyHitters sketch = new ConcurrentLongHeavyHitters(capacity, 1);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(capacity * 4);
+            if (expected.containsKey(key) || expected.size() < capacity) {
+                if (random.nextBoolean()) {
+                    long weight = 1 + random.nextInt(1000);
+                    sketch.add(key, weight);
+                    expected.merge(key, weight, Long::sum);
+                } else {
+                    assertEquals(expected.remove(key) != null, sketch.remove(key));
+                }
+            }
+        }
+        assertEquals(expected.size(), sketch.size());
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            assertEquals((long) e.getValue(), sketch.getWeight(e.getKey()));
+        }
+        for (HeavyHitter hitter : sketch.top(capacity)) {
+            assertEquals(0, hitter.getError());
+        }
+    }
+
+    @Test
+    public void testDecay() {
+        ConcurrentLongHeavyHitters sketch = new ConcurrentLongHeavyHitters(4, 1);
+        sketch.add(1, 1);
+        sketch.add(2, 6);
+        sketch.add(3, 40);
+        sketch.add(4, 80);
+        sketch.add(5, 1);
+        assertEquals(2, sketch.getWeight(5));
+        assertEquals(1, sketch.top(4).get(3).getError());
+
+        sketch.decay(0);
+        assertEquals(40, sketch.getWeight(3));
+
+        // the errors are decayed along with the weights
+        sketch.decay(1);
+        assertEquals(4, sketch.size());
+        assertEquals(Arrays.asList(4L, 3L, 2L, 5L), keys(sketch.top(4)));
+        assertEquals(1, sketch.getWeight(5));
+        assertEquals(0, sketch.top(4).get(3).getError());
+
+        // the keys which don't weigh anymore are dropped
+        sketch.decay(1);
+        assertEquals(3, sketch.size());
+        assertEquals(0, sketch.getWeight(5));
+        assertEquals(1, sketch.getWeight(2));
+        assertEquals(10, sketch.getWeight(3));
+        assertEquals(20, sketch.getWeight(4));
+
+        // so is the weight evicted so far, which a new key would inherit
+        sketch.add(6, 1);
+        assertEquals(1, sketch.getWeight(6));
+        assertEquals(0, sketch.top(4).get(3).getError());
+
+        sketch.decay(2);
+        assertEquals(2, sketch.size());
+        assertEquals(5, sketch.getWeight(4));
+        assertEquals(2, sketch.getWeight(3));
+
+        sketch.decay(100);
+        assertEquals(0, sketch.size());
+        sketch.add(7, 1);
+        assertEquals(1, sketch.getWeight(7));
+    }
+
+    @Test
+    public void testClear() {
+        ConcurrentLongHeavyHitters sketch = new ConcurrentLongHeavyHitters(2, 1);
+        sketch.add(1, 10);
+        sketch.add(2, 20);
+        sketch.add(3, 30);
+        sketch.clear();
+        assertEquals(0, sketch.size());
+        assertEquals(0, sketch.getWeight(3));
+        sketch.add(4, 1);
+        assertEquals(1, sketch.getWeight(4));
+        assertEquals(0, sketch.top(1).get(0).getError());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeKey() {
+        new ConcurrentLongHeavyHitters(4).add(-1, 1);
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        int numThreads = 4;
+        int numKeys = 100;
+        int addsPerThread = 100000;
+        ConcurrentLongHeavyHitters sketch = new ConcurrentLongHeavyHitters(numKeys * 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < addsPerThread; i++) {
+                    sketch.add(i % numKeys, 1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(numKeys, sketch.size());
+        for (long key = 0; key < numKeys; key++) {
+            assertEquals((long) numThreads * addsPerThread / numKeys, sketch.getWeight(key));
+        }
+    }
+}
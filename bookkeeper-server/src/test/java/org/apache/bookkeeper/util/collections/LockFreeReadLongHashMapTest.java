@@ -0,0 +1,669 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link LockFreeReadLongHashMap}.
+ */
+public class LockFreeReadLongHashMapTest {
+
+    @Test
+    public void testConstructor() {
+        try {
+            LockFreeReadLongHashMap.<String>newBuilder().expectedItems(0).build();
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            LockFreeReadLongHashMap.<String>newBuilder().expectedItems(16).concurrencyLevel(0).build();
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            LockFreeReadLongHashMap.<String>newBuilder().expectedItems(4).concurrencyLevel(8).build();
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void simpleInsertions() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder()
+                .expectedItems(16)
+                .build();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "one"));
+        assertFalse(map.isEmpty());
+
+        assertNull(map.put(2, "two"));
+        assertNull(map.put(3, "three"));
+
+        assertEquals(3, map.size());
+
+        assertEquals("one", map.get(1));
+        assertEquals(3, map.size());
+
+        assertEquals("one", map.remove(1));
+        assertEquals(2, map.size());
+        assertNull(map.get(1));
+        assertNull(map.get(5));
+        assertEquals(2, map.size());
+
+        assertNull(map.put(1, "one"));
+        assertEquals(3, map.size());
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals(3, map.size());
+        assertEquals("uno", map.get(1));
+    }
+
+    @Test
+    public void testRemove() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder().build();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "one"));
+        assertFalse(map.isEmpty());
+
+        assertFalse(map.remove(0, "zero"));
+        assertFalse(map.remove(1, "uno"));
+
+        assertFalse(map.isEmpty());
+        assertTrue(map.remove(1, "one"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testRemoveIf() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+
+        map.put(1L, "one");
+        map.put(2L, "two");
+        map.put(3L, "three");
+        map.put(4L, "four");
+
+        assertEquals(2, map.removeIf((k, v) -> k < 3));
+        assertFalse(map.containsKey(1L));
+        assertFalse(map.containsKey(2L));
+        assertTrue(map.containsKey(3L));
+        assertTrue(map.containsKey(4L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testRehashing() {
+        int n = 16;
+        LockFreeReadLongHashMap<Integer> map = LockFreeReadLongHashMap.<Integer>newBuilder()
+                .expectedItems(n / 2)
+                .concurrencyLevel(1)
+                .build();
+        assertEquals(n, map.capacity());
+        assertEquals(0, map.size());
+
+        for (int i = 0; i < n; i++) {
+            map.put(i, i);
+        }
+
+        assertEquals(2 * n, map.capacity());
+        assertEquals(n, map.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(Integer.valueOf(i), map.get(i));
+        }
+    }
+
+    @Test
+    public void testRehashingWithDeletes() {
+        int n = 16;
+        LockFreeReadLongHashMap<Integer> map = LockFreeReadLongHashMap.<Integer>newBuilder()
+                .expectedItems(n / 2)
+                .concurrencyLevel(1)
+                .build();
+        assertEquals(n, map.capacity());
+        assertEquals(0, map.size());
+
+        for (int i = 0; i < n / 2; i++) {
+            map.put(i, i);
+        }
+
+        for (int i = 0; i < n / 2; i++) {
+            map.remove(i);
+        }
+
+        for (int i = n; i < (2 * n); i++) {
+            map.put(i, i);
+        }
+
+        assertEquals(2 * n, map.capacity());
+        assertEquals(n, map.size());
+        for (int i = 0; i < n / 2; i++) {
+            assertNull(map.get(i));
+        }
+        for (int i = n; i < (2 * n); i++) {
+            assertEquals(Integer.valueOf(i), map.get(i));
+        }
+    }
+
+    @Test
+    public void testHashConflictWithDeletion() {
+        final int buckets = 16;
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder()
+                .expectedItems(buckets)
+                .concurrencyLevel(1)
+                .build();
+        int capacity = (int) map.capacity();
+
+        // Pick 2 keys that fall into the same bucket
+        long key1 = 1;
+        long key2 = key1 + 1;
+        while (ConcurrentLongHashMap.signSafeMod(ConcurrentLongHashMap.hash(key2), capacity)
+                != ConcurrentLongHashMap.signSafeMod(ConcurrentLongHashMap.hash(key1), capacity)) {
+            key2++;
+        }
+
+        assertNull(map.put(key1, "value-1"));
+        assertNull(map.put(key2, "value-2"));
+        assertEquals(2, map.size());
+
+        // The bucket of the first key is marked as deleted, the second key is still found behind it
+        assertEquals("value-1", map.remove(key1));
+        assertEquals(1, map.size());
+        assertEquals("value-2", map.get(key2));
+
+        // The deleted bucket is reused
+        assertNull(map.put(key1, "value-1-overwrite"));
+        assertEquals(2, map.size());
+        assertEquals("value-1-overwrite", map.get(key1));
+        assertEquals("value-2", map.get(key2));
+
+        assertEquals("value-1-overwrite", map.remove(key1));
+        assertEquals(1, map.size());
+        assertEquals("value-2", map.remove(key2));
+        assertTrue(map.isEmpty());
+        assertNull(map.get(key1));
+        assertNull(map.get(key2));
+
+        // The deleted buckets are cleaned, so the repeated deletes and reuses don't expand the map
+        for (int i = 0; i < 100 * capacity; i++) {
+            assertNull(map.put(key1, "value-1"));
+            assertNull(map.put(key2, "value-2"));
+            assertEquals("value-1", map.remove(key1));
+            assertEquals("value-2", map.remove(key2));
+        }
+        assertEquals(capacity, map.capacity());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testDeletedBucketsReused() {
+        LockFreeReadLongHashMap<Long> map = LockFreeReadLongHashMap.<Long>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+        long capacity = map.capacity();
+
+        // Churn with a constant number of keys, whose deleted buckets are taken by the next keys or cleaned, so
+        // that the map doesn't grow with the number of keys put
+        for (long key = 0; key < 100_000; key++) {
+            map.put(key, key);
+            if (key >= 8) {
+                assertEquals(Long.valueOf(key - 8), map.remove(key - 8));
+            }
+            assertTrue(map.size() <= 9);
+        }
+        assertTrue("capacity " + map.capacity(), map.capacity() <= 4 * capacity);
+        for (long key = 100_000 - 8; key < 100_000; key++) {
+            assertEquals(Long.valueOf(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder().build();
+        assertNull(map.putIfAbsent(1, "one"));
+        assertEquals("one", map.get(1));
+
+        assertEquals("one", map.putIfAbsent(1, "uno"));
+        assertEquals("one", map.get(1));
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        LockFreeReadLongHashMap<Integer> map = LockFreeReadLongHashMap.<Integer>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+        AtomicInteger counter = new AtomicInteger();
+        LongFunction<Integer> provider = key -> counter.getAndIncrement();
+
+        assertEquals(0, map.computeIfAbsent(0, provider).intValue());
+        assertEquals(0, map.get(0).intValue());
+
+        assertEquals(1, map.computeIfAbsent(1, provider).intValue());
+        assertEquals(1, map.get(1).intValue());
+
+        assertEquals(1, map.computeIfAbsent(1, provider).intValue());
+        assertEquals(1, map.get(1).intValue());
+
+        assertEquals(2, map.computeIfAbsent(2, provider).intValue());
+        assertEquals(2, map.get(2).intValue());
+    }
+
+    @Test
+    public void testIteration() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder().build();
+
+        assertEquals(Collections.emptyList(), map.keys());
+        assertEquals(Collections.emptyList(), map.values());
+
+        map.put(0, "zero");
+
+        assertEquals(Lists.newArrayList(0L), map.keys());
+        assertEquals(Lists.newArrayList("zero"), map.values());
+
+        map.remove(0);
+
+        assertEquals(Collections.emptyList(), map.keys());
+        assertEquals(Collections.emptyList(), map.values());
+
+        map.put(0, "zero");
+        map.put(1, "one");
+        map.put(2, "two");
+
+        List<Long> keys = map.keys();
+        Collections.sort(keys);
+        assertEquals(Lists.newArrayList(0L, 1L, 2L), keys);
+
+        List<String> values = map.values();
+        Collections.sort(values);
+        assertEquals(Lists.newArrayList("one", "two", "zero"), values);
+
+        map.put(1, "uno");
+
+        keys = map.keys();
+        Collections.sort(keys);
+        assertEquals(Lists.newArrayList(0L, 1L, 2L), keys);
+
+        values = map.values();
+        Collections.sort(values);
+        assertEquals(Lists.newArrayList("two", "uno", "zero"), values);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testNegative() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder().build();
+
+        map.put(-0, "zero");
+        map.put(-1, "one");
+        map.put(-2, "two");
+
+        List<Long> keys = map.keys();
+        Collections.sort(keys);
+        assertEquals(Lists.newArrayList(-2L, -1L, 0L), keys);
+
+        assertEquals("one", map.get(-1));
+        assertEquals("two", map.remove(-2));
+        assertNull(map.get(-2));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testExpandAndShrink() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder()
+                .expectedItems(2)
+                .concurrencyLevel(1)
+                .autoShrink(true)
+                .mapIdleFactor(0.25f)
+                .build();
+        assertEquals(4, map.capacity());
+
+        assertNull(map.put(1, "v1"));
+        assertNull(map.put(2, "v2"));
+        assertEquals(4, map.capacity());
+
+        // expand hashmap
+        assertNull(map.put(3, "v3"));
+        assertEquals(8, map.capacity());
+
+        assertTrue(map.remove(1, "v1"));
+        // not shrink
+        assertEquals(8, map.capacity());
+        assertTrue(map.remove(2, "v2"));
+        // shrink hashmap
+        assertEquals(4, map.capacity());
+
+        // not below the initial capacity
+        assertTrue(map.remove(3, "v3"));
+        assertEquals(4, map.capacity());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testExpandShrinkAndClear() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder()
+                .expectedItems(2)
+                .concurrencyLevel(1)
+                .autoShrink(true)
+                .mapIdleFactor(0.25f)
+                .build();
+        final long initCapacity = map.capacity();
+
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "v" + i);
+        }
+        assertTrue(map.capacity() > initCapacity);
+
+        // back to the initial capacity
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(initCapacity, map.capacity());
+        assertNull(map.get(1));
+
+        assertNull(map.put(1, "v1"));
+        assertEquals("v1", map.get(1));
+    }
+
+    @Test
+    public void testGetAllAndPutAll() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(4)
+                .build();
+
+        // spread over the sections, with a key repeated in the batch, whose last value is kept
+        int n = 100;
+        long[] keys = new long[n + 1];
+        String[] values = new String[n + 1];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i * 7;
+            values[i] = "v" + i;
+        }
+        keys[n] = 7;
+        values[n] = "v1-overwrite";
+        map.putAll(keys, values);
+        assertEquals(n, map.size());
+        assertEquals("v0", map.get(0));
+        assertEquals("v1-overwrite", map.get(7));
+        assertEquals("v99", map.get(99 * 7));
+
+        // the missing keys are null, and the array can be larger than the batch
+        long[] lookup = { 0, 1, 7, 99 * 7, -7 };
+        String[] found = new String[lookup.length + 1];
+        found[1] = "stale";
+        found[lookup.length] = "untouched";
+        assertEquals(3, map.getAll(lookup, found));
+        assertArrayEquals(new String[] { "v0", null, "v1-overwrite", "v99", null, "untouched" }, found);
+
+        // an empty batch
+        map.putAll(new long[0], new String[0]);
+        assertEquals(0, map.getAll(new long[0], new String[0]));
+        assertEquals(n, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetAllValuesTooShort() {
+        LockFreeReadLongHashMap.<String>newBuilder().build().getAll(new long[2], new String[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutAllValuesTooShort() {
+        LockFreeReadLongHashMap.<String>newBuilder().build().putAll(new long[2], new String[1]);
+    }
+
+    @Test
+    public void testPutAllNullValue() {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder().build();
+        try {
+            map.putAll(new long[] { 1, 2 }, new String[] { "one", null });
+            fail("should have thrown exception");
+        } catch (NullPointerException e) {
+            // ok
+        }
+        // checked before any entry is put
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void concurrentInsertions() throws Throwable {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder().build();
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        final int nThreads = 16;
+        final int n = 100_000;
+        String value = "value";
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            final int threadIdx = i;
+
+            futures.add(executor.submit(() -> {
+                Random random = new Random();
+
+                for (int j = 0; j < n; j++) {
+                    long key = random.nextLong();
+                    // Ensure keys are uniques
+                    key -= key % (threadIdx + 1);
+
+                    map.put(key, value);
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals(n * nThreads, map.size());
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void concurrentInsertionsAndReads() throws Throwable {
+        LockFreeReadLongHashMap<String> map = LockFreeReadLongHashMap.<String>newBuilder().build();
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        final int nThreads = 16;
+        final int n = 100_000;
+        String value = "value";
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            final int threadIdx = i;
+
+            futures.add(executor.submit(() -> {
+                Random random = new Random();
+
+                for (int j = 0; j < n; j++) {
+                    long key = random.nextLong();
+                    // Ensure keys are uniques
+                    key -= key % (threadIdx + 1);
+
+                    map.put(key, value);
+                    assertEquals(value, map.get(key));
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals(n * nThreads, map.size());
+
+        executor.shutdown();
+    }
+
+    /**
+     * Value of the stress test, which tells the key it has been put with.
+     */
+    private static final class Versioned {
+        private final long key;
+        private final long version;
+
+        Versioned(long key, long version) {
+            this.key = key;
+            this.version = version;
+        }
+    }
+
+    @Test
+    public void concurrentReadersAndWriters() throws Throwable {
+        // few buckets, so that the writers keep deleting and reusing buckets, and expanding and shrinking the sections
+        LockFreeReadLongHashMap<Versioned> map = LockFreeReadLongHashMap.<Versioned>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(4)
+                .autoShrink(true)
+                .build();
+        final int nWriters = 4;
+        final int nReaders = 8;
+        final int keysPerWriter = 256;
+        final long durationNanos = TimeUnit.SECONDS.toNanos(2);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CyclicBarrier barrier = new CyclicBarrier(nWriters + nReaders);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+
+        for (int w = 0; w < nWriters; w++) {
+            // each writer owns its keys, whose versions only grow
+            final long firstKey = w * keysPerWriter;
+            writers.add(executor.submit(() -> {
+                Random random = new Random(firstKey);
+                long[] versions = new long[keysPerWriter];
+                barrier.await();
+                long start = System.nanoTime();
+                while (System.nanoTime() - start < durationNanos) {
+                    int idx = random.nextInt(keysPerWriter);
+                    long key = firstKey + idx;
+                    switch (random.nextInt(4)) {
+                    case 0:
+                        map.remove(key);
+                        assertNull(map.get(key));
+                        break;
+                    case 1:
+                        // a batch of consecutive keys
+                        int count = Math.min(8, keysPerWriter - idx);
+                        long[] keys = new long[count];
+                        Versioned[] values = new Versioned[count];
+                        for (int i = 0; i < count; i++) {
+                            keys[i] = key + i;
+                            values[i] = new Versioned(key + i, ++versions[idx + i]);
+                        }
+                        map.putAll(keys, values);
+                        Versioned[] found = new Versioned[count];
+                        assertEquals(count, map.getAll(keys, found));
+                        assertArrayEquals(values, found);
+                        break;
+                    default:
+                        Versioned value = new Versioned(key, ++versions[idx]);
+                        map.put(key, value);
+                        assertTrue(map.get(key) == value);
+                        break;
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (int r = 0; r < nReaders; r++) {
+            final int seed = r;
+            readers.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                long[] lastVersions = new long[nWriters * keysPerWriter];
+                long[] keys = new long[4];
+                Versioned[] found = new Versioned[4];
+                barrier.await();
+                while (!done.get()) {
+                    long key = random.nextInt(nWriters * keysPerWriter);
+                    Versioned value = map.get(key);
+                    if (value != null) {
+                        // never the value of another key, nor an older value than one already read
+                        assertEquals(key, value.key);
+                        assertTrue(value.version >= lastVersions[(int) key]);
+                        lastVersions[(int) key] = value.version;
+                    }
+
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = random.nextInt(nWriters * keysPerWriter);
+                    }
+                    map.getAll(keys, found);
+                    for (int i = 0; i < keys.length; i++) {
+                        if (found[i] != null) {
+                            assertEquals(keys[i], found[i].key);
+                        }
+                    }
+                    map.forEach((k, v) -> assertEquals(k, v.key));
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            done.set(true);
+        }
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+
+        assertNotEquals(0, map.size());
+        map.forEach((k, v) -> assertEquals(k, v.key));
+    }
+}
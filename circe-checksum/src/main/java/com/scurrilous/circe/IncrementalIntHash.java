@@ -85,4 +85,29 @@ public interface IncrementalIntHash extends StatelessIntHash {
      * @see #supportsUnsafe()
      */
     int resume(int current, long address, long length);
+
+    /**
+     * Combines the outputs of this hash function for two adjacent input
+     * sequences M<sub>1</sub> and M<sub>2</sub> into the output for their
+     * concatenation, without access to the input bytes themselves:
+     * 
+     * <pre>
+     * h(M<sub>1</sub> M<sub>2</sub>) = combine(h(M<sub>1</sub>), h(M<sub>2</sub>), |M<sub>2</sub>|)
+     * </pre>
+     * 
+     * The cost depends only on the number of bits in {@code nextLength}, not on
+     * the amount of data that was hashed.
+     * 
+     * @param current the hash output for input hashed so far
+     * @param next the hash output for the input to be appended, calculated
+     *            independently from the initial state
+     * @param nextLength the length in bytes of the input to be appended
+     * @return the output of the hash function for the concatenated input
+     * @throws IllegalArgumentException if nextLength is negative
+     * @throws UnsupportedOperationException if this function does not support
+     *             combining outputs, which is the default
+     */
+    default int combine(int current, int next, long nextLength) {
+        throw new UnsupportedOperationException();
+    }
 }
@@ -79,4 +79,17 @@ public class Crc32cIntChecksum {
         return CRC32C_HASH.resume(previousChecksum, payload, offset, len);
     }
 
+    /**
+     * Combines the checksums of two adjacent chunks of data into the checksum of their concatenation, without
+     * touching the data: the cost is independent of the chunk sizes.
+     *
+     * @param previousChecksum : checksum of the first chunk (or of everything hashed so far)
+     * @param nextChecksum : checksum of the second chunk, computed independently
+     * @param nextLength : length in bytes of the second chunk
+     * @return the checksum of the concatenation of both chunks
+     */
+    public static int combineChecksum(int previousChecksum, int nextChecksum, long nextLength) {
+        return CRC32C_HASH.combine(previousChecksum, nextChecksum, nextLength);
+    }
+
 }
@@ -19,6 +19,7 @@
 package com.scurrilous.circe.checksum;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 public interface IntHash {
     int calculate(ByteBuf buffer);
@@ -28,4 +29,30 @@ public interface IntHash {
     int resume(int current, ByteBuf buffer);
 
     int resume(int current, ByteBuf buffer, int offset, int len);
+
+    /**
+     * Combines the checksums of two adjacent chunks of data into the checksum of their concatenation.
+     *
+     * <p>The default implementation relies on the linearity of the CRC: it hashes {@code nextLength} zero bytes,
+     * so its cost is proportional to the length. Implementations should override it with a faster operation.
+     *
+     * @param current the checksum of the first chunk
+     * @param next the checksum of the second chunk, computed independently
+     * @param nextLength the length in bytes of the second chunk
+     * @return the checksum of the concatenation of both chunks
+     */
+    default int combine(int current, int next, long nextLength) {
+        if (nextLength < 0) {
+            throw new IllegalArgumentException("negative length");
+        }
+        ByteBuf zeros = Unpooled.wrappedBuffer(new byte[(int) Math.min(nextLength, 4096)]);
+        int shifted = current;
+        int zerosChecksum = calculate(zeros, 0, 0);
+        for (long remaining = nextLength; remaining > 0; remaining -= zeros.capacity()) {
+            int len = (int) Math.min(remaining, zeros.capacity());
+            shifted = resume(shifted, zeros, 0, len);
+            zerosChecksum = resume(zerosChecksum, zeros, 0, len);
+        }
+        return shifted ^ zerosChecksum ^ next;
+    }
 }
@@ -53,4 +53,9 @@ public class Java8IntHash implements IntHash {
             return hash.resume(current, buffer.slice(offset, len).nioBuffer());
         }
     }
+
+    @Override
+    public int combine(int current, int next, long nextLength) {
+        return hash.combine(current, next, nextLength);
+    }
 }
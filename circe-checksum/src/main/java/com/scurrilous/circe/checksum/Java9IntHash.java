@@ -18,6 +18,9 @@
  */
 package com.scurrilous.circe.checksum;
 
+import static com.scurrilous.circe.params.CrcParameters.CRC32C;
+import com.scurrilous.circe.IncrementalIntHash;
+import com.scurrilous.circe.crc.StandardCrcProvider;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.concurrent.FastThreadLocal;
 import java.lang.reflect.InvocationTargetException;
@@ -32,6 +35,9 @@ public class Java9IntHash implements IntHash {
 
     private static final String CRC32C_CLASS_NAME = "java.util.zip.CRC32C";
 
+    // java.util.zip.CRC32C has no combine operation, borrow the one from the pure Java implementation
+    private static final IncrementalIntHash COMBINE_HASH = new StandardCrcProvider().getIncrementalInt(CRC32C);
+
     private static final FastThreadLocal<byte[]> TL_BUFFER = new FastThreadLocal<byte[]>() {
         @Override
         protected byte[] initialValue() {
@@ -119,4 +125,9 @@ public class Java9IntHash implements IntHash {
 
         return ~negCrc;
     }
+
+    @Override
+    public int combine(int current, int next, long nextLength) {
+        return COMBINE_HASH.combine(current, next, nextLength);
+    }
 }
@@ -51,4 +51,9 @@ public class JniIntHash implements IntHash {
             return hash.resume(current, buffer.slice(offset, len).nioBuffer());
         }
     }
+
+    @Override
+    public int combine(int current, int next, long nextLength) {
+        return hash.combine(current, next, nextLength);
+    }
 }
@@ -56,6 +56,29 @@ abstract class AbstractIntCrc extends AbstractIncrementalIntHash {
         return resumeRaw(current ^ xorOut, input, index, length) ^ xorOut;
     }
 
+    /**
+     * Combines the outputs for two adjacent inputs by hashing as many zero
+     * bytes as the second input: since a CRC is affine in its input,
+     * h(M<sub>1</sub> M<sub>2</sub>) = h(M<sub>1</sub> 0<sup>n</sup>) ^
+     * h(0<sup>n</sup>) ^ h(M<sub>2</sub>). The cost is proportional to the
+     * length of the second input; subclasses may override it with a faster
+     * operation.
+     */
+    @Override
+    public int combine(int current, int next, long nextLength) {
+        if (nextLength < 0)
+            throw new IllegalArgumentException("negative length");
+        final byte[] zeros = new byte[(int) Math.min(nextLength, 4096)];
+        int shifted = current;
+        int zerosHash = initial();
+        for (long remaining = nextLength; remaining > 0; remaining -= zeros.length) {
+            final int length = (int) Math.min(remaining, zeros.length);
+            shifted = resumeUnchecked(shifted, zeros, 0, length);
+            zerosHash = resumeUnchecked(zerosHash, zeros, 0, length);
+        }
+        return shifted ^ zerosHash ^ next;
+    }
+
     protected abstract int resumeRaw(int crc, byte[] input, int index, int length);
 
     protected final int reflect(int value) {
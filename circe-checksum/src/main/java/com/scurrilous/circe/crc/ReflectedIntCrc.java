@@ -22,6 +22,7 @@ package com.scurrilous.circe.crc;
 final class ReflectedIntCrc extends AbstractIntCrc {
 
     private final int[] table = new int[256];
+    private final ReflectedIntCrcCombiner combiner;
 
     ReflectedIntCrc(String algorithm, int width, int poly, int init, int xorOut) {
         super(algorithm, width, init, xorOut);
@@ -33,6 +34,7 @@ final class ReflectedIntCrc extends AbstractIntCrc {
                 crc = (crc & 1) != 0 ? (crc >>> 1) ^ poly : crc >>> 1;
             table[i] = crc;
         }
+        combiner = new ReflectedIntCrcCombiner(width, poly);
     }
 
     @Override
@@ -40,6 +42,12 @@ final class ReflectedIntCrc extends AbstractIntCrc {
         return reflect(super.initial());
     }
 
+    @Override
+    public int combine(int current, int next, long nextLength) {
+        // the initial output undoes the init/xorOut pair applied to "next"
+        return combiner.shift(current ^ initial(), nextLength) ^ next;
+    }
+
     @Override
     protected int resumeRaw(int crc, byte[] input, int index, int length) {
         for (int i = 0; i < length; ++i)
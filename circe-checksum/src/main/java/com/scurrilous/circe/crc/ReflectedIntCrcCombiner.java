@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.scurrilous.circe.crc;
+
+/**
+ * Combines the outputs of a "reflected" LSB-first int-width CRC function for
+ * two adjacent inputs, given only the length of the second input. Appending n
+ * zero bytes to a CRC register is a linear operator over GF(2), so the
+ * operators for every power-of-two byte count are precomputed once and a
+ * combine costs at most one matrix-vector product per bit of the length.
+ */
+final class ReflectedIntCrcCombiner {
+
+    // operators[k] advances a raw CRC register over 2^k zero bytes
+    private final int[][] operators = new int[Long.SIZE - 1][];
+
+    ReflectedIntCrcCombiner(int bitWidth, int reflectedPoly) {
+        // operator for a single zero bit
+        int[] op = new int[bitWidth];
+        op[0] = reflectedPoly;
+        for (int n = 1; n < bitWidth; ++n)
+            op[n] = 1 << (n - 1);
+
+        // square three times to get the operator for a single zero byte
+        for (int i = 0; i < 3; ++i)
+            op = square(op);
+
+        for (int k = 0; k < operators.length; ++k) {
+            operators[k] = op;
+            if (k + 1 < operators.length)
+                op = square(op);
+        }
+    }
+
+    /**
+     * Advances a raw (not xor-ed out) CRC register as if the given number of
+     * zero bytes were hashed.
+     *
+     * @param crc the raw CRC register
+     * @param length the number of zero bytes
+     * @return the updated raw CRC register
+     */
+    int shift(int crc, long length) {
+        if (length < 0)
+            throw new IllegalArgumentException("negative length");
+        for (int k = 0; length != 0; ++k, length >>>= 1) {
+            if ((length & 1) != 0)
+                crc = times(operators[k], crc);
+        }
+        return crc;
+    }
+
+    private static int times(int[] mat, int vec) {
+        int sum = 0;
+        for (int i = 0; vec != 0; ++i, vec >>>= 1) {
+            if ((vec & 1) != 0)
+                sum ^= mat[i];
+        }
+        return sum;
+    }
+
+    private static int[] square(int[] mat) {
+        final int[] square = new int[mat.length];
+        for (int n = 0; n < mat.length; ++n)
+            square[n] = times(mat, mat[n]);
+        return square;
+    }
+}
@@ -30,6 +30,9 @@ public final class Sse42Crc32C extends AbstractIncrementalIntHash implements Inc
 
     private static final boolean SUPPORTED = checkSupported();
 
+    private static final ReflectedIntCrcCombiner COMBINER = new ReflectedIntCrcCombiner(32,
+            Integer.reverse((int) CrcParameters.CRC32C.polynomial()));
+
     private static boolean checkSupported() {
         try {
             loadLibraryFromJar("/lib/libcirce-checksum." + libType());
@@ -106,6 +109,11 @@ public final class Sse42Crc32C extends AbstractIncrementalIntHash implements Inc
         return nativeUnsafe(current, address, length, config);
     }
 
+    @Override
+    public int combine(int current, int next, long nextLength) {
+        return COMBINER.shift(current, nextLength) ^ next;
+    }
+
     @Override
     protected int initial() {
         return 0;
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.scurrilous.circe.checksum;
+
+import static com.scurrilous.circe.params.CrcParameters.CRC16;
+import static com.scurrilous.circe.params.CrcParameters.CRC32C;
+import static com.scurrilous.circe.params.CrcParameters.CRC32_BZIP2;
+import static org.junit.Assert.assertEquals;
+
+import com.scurrilous.circe.IncrementalIntHash;
+import com.scurrilous.circe.crc.StandardCrcProvider;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test the combination of checksums, combine(crc(a), crc(b), len(b)) == crc(a || b).
+ */
+public class Crc32cIntChecksumTest {
+
+    private static final int[] LENGTHS = { 0, 1, 7, 100, 4095, 4096, 4097, 65536 + 13 };
+
+    private final Random random = new Random(0x5eed);
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testCombineChecksum() {
+        for (int firstLength : LENGTHS) {
+            for (int secondLength : LENGTHS) {
+                byte[] first = randomBytes(firstLength);
+                byte[] second = randomBytes(secondLength);
+                ByteBuf both = Unpooled.wrappedBuffer(first, second);
+
+                int combined = Crc32cIntChecksum.combineChecksum(
+                        Crc32cIntChecksum.computeChecksum(Unpooled.wrappedBuffer(first)),
+                        Crc32cIntChecksum.computeChecksum(Unpooled.wrappedBuffer(second)),
+                        secondLength);
+                assertEquals("lengths " + firstLength + ", " + secondLength,
+                        Crc32cIntChecksum.computeChecksum(both), combined);
+            }
+        }
+    }
+
+    @Test
+    public void testCombineIntHashes() {
+        IntHash java8 = new Java8IntHash();
+        // the default method hashes zeros instead of using the precomputed operators
+        IntHash defaultCombine = new IntHash() {
+            @Override
+            public int calculate(ByteBuf buffer) {
+                return java8.calculate(buffer);
+            }
+
+            @Override
+            public int calculate(ByteBuf buffer, int offset, int len) {
+                return java8.calculate(buffer, offset, len);
+            }
+
+            @Override
+            public int resume(int current, ByteBuf buffer) {
+                return java8.resume(current, buffer);
+            }
+
+            @Override
+            public int resume(int current, ByteBuf buffer, int offset, int len) {
+                return java8.resume(current, buffer, offset, len);
+            }
+        };
+        IntHash[] hashes = Java9IntHash.HAS_JAVA9_CRC32C
+                ? new IntHash[] { java8, defaultCombine, new Java9IntHash() }
+                : new IntHash[] { java8, defaultCombine };
+
+        for (IntHash hash : hashes) {
+            for (int secondLength : LENGTHS) {
+                byte[] first = randomBytes(33);
+                byte[] second = randomBytes(secondLength);
+                int expected = hash.calculate(Unpooled.wrappedBuffer(first, second));
+                int combined = hash.combine(hash.calculate(Unpooled.wrappedBuffer(first)),
+                        hash.calculate(Unpooled.wrappedBuffer(second)), secondLength);
+                assertEquals(hash.getClass() + " length " + secondLength, expected, combined);
+            }
+        }
+    }
+
+    @Test
+    public void testCombineCrcs() {
+        StandardCrcProvider provider = new StandardCrcProvider();
+        // reflected 32 and 16 bits wide, and normal (not reflected) CRCs
+        IncrementalIntHash[] hashes = {
+            provider.getIncrementalInt(CRC32C),
+            provider.getIncrementalInt(CRC16),
+            provider.getIncrementalInt(CRC32_BZIP2),
+        };
+        for (IncrementalIntHash hash : hashes) {
+            for (int secondLength : LENGTHS) {
+                byte[] first = randomBytes(17);
+                byte[] second = randomBytes(secondLength);
+                int expected = hash.resume(hash.calculate(first), second);
+                int combined = hash.combine(hash.calculate(first), hash.calculate(second), secondLength);
+                assertEquals(hash.algorithm() + " length " + secondLength, expected, combined);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCombineNegativeLength() {
+        Crc32cIntChecksum.combineChecksum(0, 0, -1);
+    }
+}
@@ -24,6 +24,7 @@ static const int NOT_IMPLEMENTED = -2;
 
 #ifdef __linux__
 #define _GNU_SOURCE
+#include <errno.h>
 #include <sched.h>
 #include <unistd.h>
 #include <sys/syscall.h>
@@ -36,12 +37,29 @@ static int set_affinity(int cpuid) {
     return sched_setaffinity(threadId, sizeof(cpu_set_t), &cpus);
 }
 
+static int set_affinity_mask(const int *cpuids, int count) {
+    cpu_set_t cpus;
+    CPU_ZERO(&cpus);
+    for (int i = 0; i < count; i++) {
+        // CPU_SET doesn't check its bounds, and would write past the set
+        if (cpuids[i] < 0 || cpuids[i] >= CPU_SETSIZE) {
+            errno = EINVAL;
+            return -1;
+        }
+        CPU_SET((size_t)cpuids[i], &cpus);
+    }
+    int threadId = (int)syscall(SYS_gettid);
+    return sched_setaffinity(threadId, sizeof(cpu_set_t), &cpus);
+}
+
 static const int IS_AVAILABLE = 1;
 
 #else
 
 static int set_affinity(int cpuid) { return NOT_IMPLEMENTED; }
 
+static int set_affinity_mask(const int *cpuids, int count) { return NOT_IMPLEMENTED; }
+
 static const int IS_AVAILABLE = 0;
 
 #endif
@@ -59,6 +77,17 @@ static const int IS_AVAILABLE = 0;
 
 #include <org_apache_bookkeeper_common_util_affinity_impl_CpuAffinityJni.h>
 
+static void throw_affinity_error(JNIEnv *env, int res) {
+    if (res == NOT_IMPLEMENTED) {
+        (*env)->ThrowNew(env, (*env)->FindClass(env, "java/lang/Exception"), "CPU affinity not implemented");
+    } else {
+        // Error in sched_setaffinity, get message from errno
+        char buffer[1024];
+        strerror_r(errno, buffer, sizeof(buffer));
+        (*env)->ThrowNew(env, (*env)->FindClass(env, "java/lang/Exception"), buffer);
+    }
+}
+
 /*
  * Class:     org_apache_bookkeeper_common_util_affinity_impl_CpuAffinityJni
  * Method:    isRoot
@@ -92,15 +121,28 @@ JNIEXPORT void JNICALL Java_org_apache_bookkeeper_common_util_affinity_impl_CpuA
     JNIEnv *env, jclass cls, jint cpuid) {
     int res = set_affinity(cpuid);
 
-    if (res == 0) {
-        // Success
+    if (res != 0) {
+        throw_affinity_error(env, res);
+    }
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_affinity_impl_CpuAffinityJni
+ * Method:    setAffinityMask
+ * Signature: ([I)V
+ */
+JNIEXPORT void JNICALL Java_org_apache_bookkeeper_common_util_affinity_impl_CpuAffinityJni_setAffinityMask(
+    JNIEnv *env, jclass cls, jintArray cpuids) {
+    jsize count = (*env)->GetArrayLength(env, cpuids);
+    jint *ids = (*env)->GetIntArrayElements(env, cpuids, NULL);
+    if (ids == NULL) {
+        // OutOfMemoryError already thrown
         return;
-    } else if (res == NOT_IMPLEMENTED) {
-        (*env)->ThrowNew(env, (*env)->FindClass(env, "java/lang/Exception"), "CPU affinity not implemented");
-    } else {
-        // Error in sched_setaffinity, get message from errno
-        char buffer[1024];
-        strerror_r(errno, buffer, sizeof(buffer));
-        (*env)->ThrowNew(env, (*env)->FindClass(env, "java/lang/Exception"), buffer);
+    }
+    int res = set_affinity_mask((const int *)ids, (int)count);
+    (*env)->ReleaseIntArrayElements(env, cpuids, ids, JNI_ABORT);
+
+    if (res != 0) {
+        throw_affinity_error(env, res);
     }
 }
@@ -21,6 +21,9 @@
 
 package org.apache.bookkeeper.common.util.affinity;
 
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
 import lombok.experimental.UtilityClass;
 import org.apache.bookkeeper.common.util.affinity.impl.CpuAffinityImpl;
 
@@ -47,4 +50,28 @@ public class CpuAffinity {
     public static void acquireCore() {
         CpuAffinityImpl.acquireCore();
     }
+
+    /**
+     * Restrict the current thread to run on the given CPUs.
+     *
+     * <p>Unlike {@link #acquireCore()}, this method doesn't take the exclusive ownership of the CPUs, which can be
+     * shared with other threads, and doesn't require the process to run as root.
+     *
+     * @param cpus the ids of the CPUs the current thread is allowed to run on
+     */
+    public static void setAffinity(Set<Integer> cpus) {
+        CpuAffinityImpl.setAffinity(cpus);
+    }
+
+    /**
+     * Get the NUMA nodes of the host, with the CPUs of each node that the process is allowed to run on.
+     *
+     * <p>The CPUs of a node are listed with the first CPU of each physical core before the other hyper-threads of the
+     * cores. On hosts without NUMA information, all the CPUs are reported on node 0.
+     *
+     * @return the CPUs of each NUMA node, by node id
+     */
+    public static SortedMap<Integer, List<Integer>> getNumaNodes() {
+        return CpuAffinityImpl.getNumaNodes();
+    }
 }
@@ -30,6 +30,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import lombok.experimental.UtilityClass;
@@ -54,6 +55,8 @@ public class CpuAffinityImpl {
 
     private static ProcessorsInfo processorsInfo = null;
 
+    private static NumaTopology numaTopology = null;
+
     public static synchronized void acquireCore() {
         if (!isInitialized) {
             init();
@@ -77,6 +80,35 @@ public class CpuAffinityImpl {
         }
     }
 
+    public static synchronized SortedMap<Integer, List<Integer>> getNumaNodes() {
+        if (numaTopology == null) {
+            numaTopology = NumaTopology.discover();
+        }
+        return numaTopology.getNodes();
+    }
+
+    public static synchronized void setAffinity(Set<Integer> cpus) {
+        if (!isInitialized) {
+            init();
+        }
+
+        if (!isSupported) {
+            throw new RuntimeException("CPU Affinity not supported in current environment");
+        }
+
+        int[] cpuIds = cpus.stream().mapToInt(Integer::intValue).toArray();
+        if (cpuIds.length == 0) {
+            throw new IllegalArgumentException("No CPU to set the affinity of thread "
+                    + Thread.currentThread().getName() + " to");
+        }
+
+        try {
+            CpuAffinityJni.setAffinityMask(cpuIds);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to set CPU affinity: " + e.getMessage());
+        }
+    }
+
     private static final String LOCK_FILE_PREFIX = Paths.get(System.getProperty("java.io.tmpdir"), "cpu-lock-")
             .toString();
 
@@ -33,4 +33,6 @@ public class CpuAffinityJni {
     static native boolean isAvailable();
 
     static native void setAffinity(int cpuId) throws IOException;
+
+    static native void setAffinityMask(int[] cpuIds) throws IOException;
 }
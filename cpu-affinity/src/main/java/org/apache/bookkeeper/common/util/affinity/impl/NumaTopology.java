@@ -0,0 +1,169 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.common.util.affinity.impl;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Discover the NUMA nodes of the host, and the processors of each node that the process is allowed to run on.
+ *
+ * <p>The processors of a node are ordered so that the first processor of each physical core comes before the
+ * hyper-threading siblings, in order for the threads pinned one per processor to be spread over the cores first.
+ */
+@Slf4j
+class NumaTopology {
+
+    private static final Charset ENCODING = StandardCharsets.US_ASCII;
+
+    private static final String NODES_PATH = "/sys/devices/system/node";
+    private static final String PROCESS_STATUS_PATH = "/proc/self/status";
+    private static final String CPUS_ALLOWED_LIST = "Cpus_allowed_list:";
+
+    private final SortedMap<Integer, List<Integer>> nodes;
+
+    private NumaTopology(SortedMap<Integer, List<Integer>> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return the processors of each NUMA node, by node id
+     */
+    SortedMap<Integer, List<Integer>> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Build the topology from the processors of each node.
+     *
+     * @param nodeCpus the processors of each node, by node id
+     * @param allowedCpus the processors the process is allowed to run on
+     * @param processorsInfo the physical cores of the processors, or null if unknown
+     */
+    static NumaTopology build(SortedMap<Integer, SortedSet<Integer>> nodeCpus, SortedSet<Integer> allowedCpus,
+                              ProcessorsInfo processorsInfo) {
+        SortedMap<Integer, List<Integer>> nodes = new TreeMap<>();
+        nodeCpus.forEach((node, cpus) -> {
+            SortedSet<Integer> usableCpus = new TreeSet<>(cpus);
+            usableCpus.retainAll(allowedCpus);
+            if (!usableCpus.isEmpty()) {
+                nodes.put(node, Collections.unmodifiableList(orderByCore(usableCpus, processorsInfo)));
+            }
+        });
+
+        if (nodes.isEmpty()) {
+            // Not a NUMA host, or no node information: all the processors are on the same node
+            nodes.put(0, Collections.unmodifiableList(orderByCore(allowedCpus, processorsInfo)));
+        }
+        return new NumaTopology(Collections.unmodifiableSortedMap(nodes));
+    }
+
+    private static List<Integer> orderByCore(SortedSet<Integer> cpus, ProcessorsInfo processorsInfo) {
+        List<Integer> ordered = new ArrayList<>(cpus.size());
+        if (processorsInfo == null) {
+            ordered.addAll(cpus);
+            return ordered;
+        }
+
+        List<Integer> siblings = new ArrayList<>();
+        Set<Integer> coveredCpus = new HashSet<>();
+        for (int cpu : cpus) {
+            if (coveredCpus.contains(cpu)) {
+                siblings.add(cpu);
+            } else {
+                ordered.add(cpu);
+                coveredCpus.addAll(processorsInfo.getCpusOnSameCore(cpu));
+            }
+        }
+        ordered.addAll(siblings);
+        return ordered;
+    }
+
+    @SuppressFBWarnings("DMI_HARDCODED_ABSOLUTE_FILENAME")
+    static NumaTopology discover() {
+        SortedSet<Integer> allowedCpus = readAllowedCpus();
+
+        SortedMap<Integer, SortedSet<Integer>> nodeCpus = new TreeMap<>();
+        Path nodesPath = Paths.get(NODES_PATH);
+        if (Files.isDirectory(nodesPath)) {
+            try (DirectoryStream<Path> nodeDirs = Files.newDirectoryStream(nodesPath, "node[0-9]*")) {
+                for (Path nodeDir : nodeDirs) {
+                    int node = Integer.parseInt(nodeDir.getFileName().toString().substring("node".length()));
+                    String cpuList = new String(Files.readAllBytes(nodeDir.resolve("cpulist")), ENCODING);
+                    nodeCpus.put(node, IsolatedProcessors.parseProcessorRange(cpuList));
+                }
+            } catch (IOException | NumberFormatException e) {
+                log.warn("Unable to read the NUMA nodes from {}: {}", NODES_PATH, e.getMessage());
+                nodeCpus.clear();
+            }
+        }
+
+        ProcessorsInfo processorsInfo;
+        try {
+            processorsInfo = ProcessorsInfo.parseCpuInfo();
+        } catch (RuntimeException e) {
+            log.info("Unable to read the physical cores of the processors: {}", e.getMessage());
+            processorsInfo = null;
+        }
+
+        return build(nodeCpus, allowedCpus, processorsInfo);
+    }
+
+    @SuppressFBWarnings("DMI_HARDCODED_ABSOLUTE_FILENAME")
+    private static SortedSet<Integer> readAllowedCpus() {
+        try {
+            for (String line : Files.readAllLines(Paths.get(PROCESS_STATUS_PATH), ENCODING)) {
+                if (line.startsWith(CPUS_ALLOWED_LIST)) {
+                    SortedSet<Integer> cpus = IsolatedProcessors.parseProcessorRange(
+                            StringUtils.substringAfter(line, CPUS_ALLOWED_LIST));
+                    if (!cpus.isEmpty()) {
+                        return cpus;
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Unable to read the allowed processors from {}: {}", PROCESS_STATUS_PATH, e.getMessage());
+        }
+
+        SortedSet<Integer> cpus = new TreeSet<>();
+        for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+            cpus.add(i);
+        }
+        return cpus;
+    }
+}
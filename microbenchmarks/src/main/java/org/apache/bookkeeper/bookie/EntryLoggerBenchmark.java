@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.EntryLogIdsImpl;
+import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.bookie.storage.directentrylogger.DirectEntryLogger;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.slogger.slf4j.Slf4jSlogger;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the entry loggers, {@link DefaultEntryLogger} and {@link DirectEntryLogger}, in temporary
+ * directories of {@code baseDir}: the append of entries, including the flush done every 10000 entries, and the
+ * read of random entries or of the entries in the order they were added, as by a catch-up read.
+ *
+ * <p>The DirectEntryLogger opens its files with O_DIRECT, which is not supported by tmpfs: {@code baseDir} has to
+ * be on a disk backed file system. The entry logs are removed once flushed and rotated, so that the disk usage
+ * stays bounded.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class EntryLoggerBenchmark {
+
+    private static final long ENTRY_LOG_SIZE = 64 * 1024 * 1024;
+    private static final int ENTRIES_PER_FLUSH = 10_000;
+    // Size of the entries read by the read benchmark
+    private static final long READ_SIZE = 256 * 1024 * 1024;
+    private static final long BUFFER_SIZE = 64 * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Entry loggers of the benchmark, one appending the entries and one filled with the read entries.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"DefaultEntryLogger", "DirectEntryLogger"})
+        private String entryLoggerType;
+
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "1000"})
+        private int ledgerCount;
+
+        @Param({"/var/tmp"})
+        private String baseDir;
+
+        private File tmpDir;
+        private ExecutorService writeExecutor;
+        private ExecutorService flushExecutor;
+        private EntryLogger writeEntryLogger;
+        private EntryLogger readEntryLogger;
+        private long[] readLocations;
+        private ByteBuf entry;
+        private long sequence;
+        private long readSequence;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            tmpDir = IOUtils.createTempDir("bench-entry-logger", "", new File(baseDir));
+            writeExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("EntryLoggerWrite"));
+            flushExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("EntryLoggerFlush"));
+            writeEntryLogger = newEntryLogger(new File(tmpDir, "write"));
+            readEntryLogger = newEntryLogger(new File(tmpDir, "read"));
+
+            entry = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+            byte[] data = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            entry.writeBytes(data);
+
+            readLocations = new long[(int) (READ_SIZE / entrySize)];
+            for (int i = 0; i < readLocations.length; i++) {
+                readLocations[i] = readEntryLogger.addEntry(i % ledgerCount, entry(i));
+            }
+            readEntryLogger.flush();
+        }
+
+        private EntryLogger newEntryLogger(File ledgerDir) throws IOException {
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { ledgerDir.getPath() });
+            conf.setEntryLogSizeLimit(ENTRY_LOG_SIZE);
+            ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+
+            switch (entryLoggerType) {
+                case "DefaultEntryLogger":
+                    return new DefaultEntryLogger(conf, ledgerDirsManager, null, NullStatsLogger.INSTANCE,
+                            allocator);
+                case "DirectEntryLogger":
+                    Slf4jSlogger slog = new Slf4jSlogger(EntryLoggerBenchmark.class);
+                    return new DirectEntryLogger(BookieImpl.getCurrentDirectory(ledgerDir),
+                            new EntryLogIdsImpl(ledgerDirsManager, slog), new NativeIOImpl(), allocator,
+                            writeExecutor, flushExecutor, ENTRY_LOG_SIZE, conf.getNettyMaxFrameSizeBytes() - 500,
+                            BUFFER_SIZE, BUFFER_SIZE, READ_BUFFER_SIZE, 1, 300, slog, NullStatsLogger.INSTANCE);
+                default:
+                    throw new IllegalArgumentException("Unknown entry logger type " + entryLoggerType);
+            }
+        }
+
+        /**
+         * @return the entry with the given sequence number, with the entry id in its header
+         */
+        ByteBuf entry(long i) {
+            entry.setLong(0, i % ledgerCount);
+            entry.setLong(8, i / ledgerCount);
+            // The DirectEntryLogger reads the added entries
+            entry.readerIndex(0);
+            return entry;
+        }
+
+        void flush() throws IOException {
+            writeEntryLogger.flush();
+            for (long logId : writeEntryLogger.getFlushedLogIds()) {
+                writeEntryLogger.removeEntryLog(logId);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            writeEntryLogger.close();
+            readEntryLogger.close();
+            writeExecutor.shutdown();
+            flushExecutor.shutdown();
+            entry.release();
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    @Benchmark
+    public long add(TestState s) throws Exception {
+        long i = s.sequence++;
+        long location = s.writeEntryLogger.addEntry(i % s.ledgerCount, s.entry(i));
+        if ((i + 1) % ENTRIES_PER_FLUSH == 0) {
+            s.flush();
+        }
+        return location;
+    }
+
+    @Benchmark
+    public int read(TestState s) throws Exception {
+        return read(s, ThreadLocalRandom.current().nextInt(s.readLocations.length));
+    }
+
+    @Benchmark
+    public int readSequential(TestState s) throws Exception {
+        return read(s, (int) (s.readSequence++ % s.readLocations.length));
+    }
+
+    private static int read(TestState s, int i) throws Exception {
+        ByteBuf entry = s.readEntryLogger.readEntry(i % s.ledgerCount, i / s.ledgerCount, s.readLocations[i]);
+        int size = entry.readableBytes();
+        entry.release();
+        return size;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of the group commit of the {@link Journal}, in a temporary directory of {@code journalDir}, which
+ * defaults to tmpfs to measure the journal rather than the disk.
+ *
+ * <p>Each benchmark thread adds an entry and waits for its acknowledgement, as a client with one outstanding add
+ * would, so that the number of threads is the number of entries the journal can group in a commit. The journal
+ * files are checkpointed every second and rolled at 256 MB, so that the usage of {@code journalDir} stays bounded.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class JournalBenchmark {
+
+    private static final long MAX_JOURNAL_SIZE_MB = 256;
+
+    /**
+     * Journal of the benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "1000"})
+        private int ledgerCount;
+
+        // Max time the journal waits to group the entries of a commit, as configured by default in the bookie
+        @Param({"2"})
+        private int maxGroupWaitMSec;
+
+        @Param({"/dev/shm"})
+        private String journalDir;
+
+        private File tmpDir;
+        private Journal journal;
+        private ScheduledExecutorService checkpointExecutor;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            tmpDir = IOUtils.createTempDir("bench-journal", "", new File(journalDir));
+            File journalDirectory = new File(tmpDir, "journal");
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setJournalDirName(journalDirectory.getPath());
+            conf.setLedgerDirNames(new String[] { new File(tmpDir, "ledgers").getPath() });
+            conf.setMaxJournalSizeMB(MAX_JOURNAL_SIZE_MB);
+            conf.setMaxBackupJournals(1);
+            conf.setJournalMaxGroupWaitMSec(maxGroupWaitMSec);
+
+            File currentDirectory = BookieImpl.getCurrentDirectory(journalDirectory);
+            BookieImpl.checkDirectoryStructure(currentDirectory);
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+            journal = new Journal(0, currentDirectory, conf, ledgerDirsManager, NullStatsLogger.INSTANCE,
+                    PooledByteBufAllocator.DEFAULT);
+            journal.start();
+
+            checkpointExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new DefaultThreadFactory("JournalCheckpoint"));
+            checkpointExecutor.scheduleWithFixedDelay(() -> {
+                try {
+                    journal.checkpointComplete(journal.newCheckpoint(), true);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, 1, 1, TimeUnit.SECONDS);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            checkpointExecutor.shutdownNow();
+            journal.shutdown();
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    /**
+     * Entry of a benchmark thread, which is added again once acknowledged.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private ByteBuf entry;
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setup(TestState s) {
+            entry = PooledByteBufAllocator.DEFAULT.directBuffer(s.entrySize, s.entrySize);
+            byte[] data = new byte[s.entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            entry.writeBytes(data);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public int addEntry(TestState s, ThreadState t) throws Exception {
+        long i = t.sequence++;
+        long ledgerId = ThreadLocalRandom.current().nextInt(s.ledgerCount);
+        CompletableFuture<Integer> acknowledged = new CompletableFuture<>();
+        t.entry.setLong(0, ledgerId);
+        t.entry.setLong(8, i);
+        s.journal.logAddEntry(ledgerId, i, t.entry, false,
+                (rc, entryLedgerId, entryId, addr, ctx) -> acknowledged.complete(rc), null);
+        return acknowledged.get();
+    }
+}
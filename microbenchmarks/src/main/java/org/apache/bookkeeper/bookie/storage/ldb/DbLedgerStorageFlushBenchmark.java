@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.DefaultEntryLogger;
+import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of the flush of the {@link SingleDirectoryDbLedgerStorage}, in a temporary directory of
+ * {@code baseDir}: each flush writes 64 MB of entries, added to the write cache before the flush, to the entry log
+ * and their locations to the location index.
+ *
+ * <p>The entry logs are removed once flushed and rotated, so that the disk usage stays bounded.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class DbLedgerStorageFlushBenchmark {
+
+    private static final long FLUSH_SIZE = 64 * 1024 * 1024;
+    // Each of the two write caches fits the entries of a flush, with their alignment to 64 bytes
+    private static final long WRITE_CACHE_SIZE = 4 * FLUSH_SIZE;
+    private static final long READ_CACHE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Storage of the benchmark, with the entries of the next flush.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "1000"})
+        private int ledgerCount;
+
+        @Param({"/var/tmp"})
+        private String baseDir;
+
+        private File ledgerDir;
+        private DefaultEntryLogger entryLogger;
+        private SingleDirectoryDbLedgerStorage storage;
+        private ByteBuf entry;
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            ledgerDir = IOUtils.createTempDir("bench-db-storage", "", new File(baseDir));
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { ledgerDir.getPath() });
+            conf.setEntryLogSizeLimit(2 * FLUSH_SIZE);
+            // The garbage collector, which is not started, resolves the bookie id whatever the address of the host
+            conf.setAllowLoopback(true);
+
+            ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+            entryLogger = new DefaultEntryLogger(conf, ledgerDirsManager, null, NullStatsLogger.INSTANCE,
+                    allocator);
+            storage = new SingleDirectoryDbLedgerStorage(conf, null, ledgerDirsManager, ledgerDirsManager,
+                    entryLogger, NullStatsLogger.INSTANCE, allocator, WRITE_CACHE_SIZE, READ_CACHE_SIZE, 100);
+
+            entry = allocator.directBuffer(entrySize, entrySize);
+            byte[] data = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            entry.writeBytes(data);
+        }
+
+        @Setup(Level.Invocation)
+        public void addEntries() throws Exception {
+            long numEntries = FLUSH_SIZE / entrySize;
+            for (long n = 0; n < numEntries; n++) {
+                long i = sequence++;
+                long entryId = i / ledgerCount;
+                // Ledger id, entry id and last add confirmed
+                entry.setLong(0, i % ledgerCount);
+                entry.setLong(8, entryId);
+                entry.setLong(16, entryId - 1);
+                storage.addEntry(entry);
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void removeFlushedEntryLogs() {
+            for (long logId : entryLogger.getFlushedLogIds()) {
+                entryLogger.removeEntryLog(logId);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            storage.shutdown();
+            entry.release();
+            FileUtils.deleteDirectory(ledgerDir);
+        }
+    }
+
+    @Benchmark
+    public void flush(TestState s) throws Exception {
+        s.storage.flush();
+    }
+}
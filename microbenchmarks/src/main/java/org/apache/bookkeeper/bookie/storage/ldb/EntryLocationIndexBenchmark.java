@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the {@link EntryLocationIndex} on a RocksDB in a temporary directory of {@code baseDir}: the
+ * insertion of the locations, one by one and by batches as done by the flush, and their lookup.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class EntryLocationIndexBenchmark {
+
+    private static final int NUM_INDEXED_ENTRIES = 1_000_000;
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Location index of the benchmark, filled with the locations of the looked up entries.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"1", "1000"})
+        private int ledgerCount;
+
+        @Param({"/var/tmp"})
+        private String baseDir;
+
+        private File indexDir;
+        private EntryLocationIndex locationIndex;
+        // The added entries go to ledgers past the looked up ones
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            indexDir = IOUtils.createTempDir("bench-location-index", "", new File(baseDir));
+            locationIndex = new EntryLocationIndex(new ServerConfiguration(), KeyValueStorageRocksDB.factory,
+                    indexDir.getPath(), NullStatsLogger.INSTANCE);
+
+            Batch batch = locationIndex.newBatch();
+            for (long i = 0; i < NUM_INDEXED_ENTRIES; i++) {
+                locationIndex.addLocation(batch, i % ledgerCount, i / ledgerCount, location(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    batch.flush();
+                    batch.clear();
+                }
+            }
+            batch.flush();
+            batch.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            locationIndex.close();
+            FileUtils.deleteDirectory(indexDir);
+        }
+
+        long ledgerId(long i) {
+            return ledgerCount + i % ledgerCount;
+        }
+
+        long entryId(long i) {
+            return i / ledgerCount;
+        }
+    }
+
+    // Entry log id in the upper 32 bits and offset in the entry log in the lower 32 bits
+    private static long location(long i) {
+        return (i / 1_000_000) << 32 | (i % 1_000_000) * 1024;
+    }
+
+    @Benchmark
+    public void addLocation(TestState s) throws Exception {
+        long i = s.sequence++;
+        s.locationIndex.addLocation(s.ledgerId(i), s.entryId(i), location(i));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void addLocationBatch(TestState s) throws Exception {
+        try (Batch batch = s.locationIndex.newBatch()) {
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                long i = s.sequence++;
+                s.locationIndex.addLocation(batch, s.ledgerId(i), s.entryId(i), location(i));
+            }
+            batch.flush();
+        }
+    }
+
+    @Benchmark
+    public long getLocation(TestState s) throws Exception {
+        long i = ThreadLocalRandom.current().nextLong(NUM_INDEXED_ENTRIES);
+        return s.locationIndex.getLocation(i % s.ledgerCount, i / s.ledgerCount);
+    }
+}
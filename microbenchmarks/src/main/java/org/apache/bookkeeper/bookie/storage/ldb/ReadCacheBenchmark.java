@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the {@link ReadCache}: the insertion of the entries read from the entry logs, rolling over
+ * the segments when full, and the lookup of cached entries.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ReadCacheBenchmark {
+
+    private static final long CACHE_SIZE = 256 * 1024 * 1024;
+    // Size of the entries looked up by the get benchmark, which all fit in the cache
+    private static final long CACHED_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Read caches and entry of the benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "1000"})
+        private int ledgerCount;
+
+        private ReadCache readCache;
+        private ReadCache filledReadCache;
+        private long numCachedEntries;
+        private ByteBuf entry;
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            readCache = new ReadCache(ByteBufAllocator.DEFAULT, CACHE_SIZE);
+            filledReadCache = new ReadCache(ByteBufAllocator.DEFAULT, CACHE_SIZE);
+
+            entry = ByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+            byte[] data = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            entry.writeBytes(data);
+
+            numCachedEntries = CACHED_SIZE / entrySize;
+            for (long i = 0; i < numCachedEntries; i++) {
+                filledReadCache.put(i % ledgerCount, i / ledgerCount, entry);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            readCache.close();
+            filledReadCache.close();
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public void put(TestState s) {
+        long i = s.sequence++;
+        s.readCache.put(i % s.ledgerCount, i / s.ledgerCount, s.entry);
+    }
+
+    @Benchmark
+    public int get(TestState s) {
+        long i = ThreadLocalRandom.current().nextLong(s.numCachedEntries);
+        ByteBuf entry = s.filledReadCache.get(i % s.ledgerCount, i / s.ledgerCount);
+        int size = entry.readableBytes();
+        entry.release();
+        return size;
+    }
+
+    @Benchmark
+    public ByteBuf getMiss(TestState s) {
+        long i = ThreadLocalRandom.current().nextLong(s.numCachedEntries);
+        return s.filledReadCache.get(i % s.ledgerCount, s.numCachedEntries + i);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks of the {@link WriteCache}: the insertion of the entries added to the bookie, and the iteration
+ * over the cached entries in (ledger id, entry id) order done by the flush.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class WriteCacheBenchmark {
+
+    private static final long CACHE_SIZE = 256 * 1024 * 1024;
+    // Size of the entries iterated by the forEach benchmark
+    private static final long FLUSHED_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Write cache and entry of the benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "1000"})
+        private int ledgerCount;
+
+        private WriteCache writeCache;
+        private WriteCache filledWriteCache;
+        private ByteBuf entry;
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            writeCache = new WriteCache(ByteBufAllocator.DEFAULT, CACHE_SIZE);
+            filledWriteCache = new WriteCache(ByteBufAllocator.DEFAULT, CACHE_SIZE);
+
+            entry = ByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+            byte[] data = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            entry.writeBytes(data);
+
+            long numEntries = FLUSHED_SIZE / entrySize;
+            for (long i = 0; i < numEntries; i++) {
+                filledWriteCache.put(i % ledgerCount, i / ledgerCount, entry);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            writeCache.close();
+            filledWriteCache.close();
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public boolean put(TestState s) {
+        long i = s.sequence++;
+        long ledgerId = i % s.ledgerCount;
+        long entryId = i / s.ledgerCount;
+        if (s.writeCache.put(ledgerId, entryId, s.entry)) {
+            return true;
+        }
+
+        // The cache is full, empty it as a flush would
+        s.writeCache.clear();
+        return s.writeCache.put(ledgerId, entryId, s.entry);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void forEach(TestState s, Blackhole bh) throws IOException {
+        s.filledWriteCache.forEach((ledgerId, entryId, entry) -> bh.consume(entry));
+    }
+}
@@ -20,8 +20,10 @@ package org.apache.bookkeeper.common;
 
 import com.google.common.collect.ImmutableMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
@@ -38,6 +40,7 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
 
 /**
  * Microbenchmarks for different executors providers.
@@ -80,4 +83,73 @@ public class OrderedExecutorBenchmark {
         s.executor.submit(() -> {
         }).get();
     }
+
+    private static final int SKEWED_NUM_THREADS = 4;
+    private static final int SKEWED_BATCH_SIZE = 1000;
+    private static final int SKEWED_NUM_KEYS = 10_000;
+
+    private static Map<String, Supplier<OrderedExecutor>> orderedProviders = ImmutableMap.of(
+            "OrderedExecutor", () -> OrderedExecutor.newBuilder().numThreads(SKEWED_NUM_THREADS).build(),
+            "OrderedExecutor-WorkStealing", () -> OrderedExecutor.newBuilder().numThreads(SKEWED_NUM_THREADS)
+                    .enableWorkStealing(true).build());
+
+    /**
+     * State holder of the skewed keys tests: a share of the keyed tasks go to a single hot key, and a share
+     * of the tasks are submitted without key.
+     */
+    @State(Scope.Benchmark)
+    public static class SkewedState {
+        @Param({"OrderedExecutor", "OrderedExecutor-WorkStealing"})
+        private String executorName;
+
+        // share of the keyed tasks submitted with the hot key
+        @Param({"0.0", "0.5", "0.9"})
+        private double hotKeyRatio;
+
+        // share of the tasks submitted without key
+        @Param({"0.0", "0.5"})
+        private double unkeyedRatio;
+
+        // cpu work of each task
+        @Param({"1000"})
+        private int taskTokens;
+
+        private OrderedExecutor executor;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            executor = orderedProviders.get(executorName).get();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Submit a batch of tasks with skewed keys, and wait for all of them. Unrelated keys hashed to the thread
+     * of the hot key are delayed by it, unless the other threads can steal them.
+     */
+    @Benchmark
+    @Threads(1)
+    public void submitSkewedBatchAndWait(SkewedState s) throws Exception {
+        CountDownLatch latch = new CountDownLatch(SKEWED_BATCH_SIZE);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int tokens = s.taskTokens;
+        Runnable task = () -> {
+            Blackhole.consumeCPU(tokens);
+            latch.countDown();
+        };
+        for (int i = 0; i < SKEWED_BATCH_SIZE; i++) {
+            if (random.nextDouble() < s.unkeyedRatio) {
+                s.executor.execute(task);
+            } else if (random.nextDouble() < s.hotKeyRatio) {
+                s.executor.executeOrdered(0L, task);
+            } else {
+                s.executor.executeOrdered(random.nextLong(1, SKEWED_NUM_KEYS), task);
+            }
+        }
+        latch.await();
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.stats;
+
+import io.netty.buffer.ByteBuf;
+import io.prometheus.client.CollectorRegistry;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.stats.prometheus.PrometheusMetricsProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the scrapes of the {@link PrometheusMetricsProvider}, written with
+ * {@link PrometheusMetricsProvider#writeAllMetrics} as the servlet used to, or generated into a pooled buffer.
+ *
+ * <p>Each op stats logger is exported as a summary of 18 series, so with its counter and gauge every scope
+ * adds 20 series. Run with {@code -prof gc} to compare the allocations of the scrapes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class PrometheusScrapeBenchmark {
+
+    /**
+     * State holder of the provider.
+     */
+    @State(Scope.Benchmark)
+    public static class ProviderState {
+        @Param({"1000", "30000"})
+        private int numScopes;
+
+        private PrometheusMetricsProvider provider;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            provider = new PrometheusMetricsProvider(new CollectorRegistry());
+            StatsLogger root = provider.getStatsLogger("bookie");
+            for (int i = 0; i < numScopes; i++) {
+                StatsLogger scoped = root.scopeLabel("ledger", Integer.toString(i));
+                scoped.getCounter("writes").addCount(i);
+                final long value = i;
+                scoped.registerGauge("size", new Gauge<Long>() {
+                    @Override
+                    public Long getDefaultValue() {
+                        return 0L;
+                    }
+
+                    @Override
+                    public Long getSample() {
+                        return value;
+                    }
+                });
+                OpStatsLogger opStats = scoped.getOpStatsLogger("add_entry");
+                for (int j = 1; j <= 10; j++) {
+                    opStats.registerSuccessfulEvent(j * 100L, TimeUnit.MICROSECONDS);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int writeAllMetrics(ProviderState s) throws IOException {
+        StringWriter writer = new StringWriter();
+        s.provider.writeAllMetrics(writer);
+        return writer.getBuffer().length();
+    }
+
+    @Benchmark
+    public int generateText(ProviderState s) {
+        ByteBuf buf = s.provider.generateMetrics(false);
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    public int generateOpenMetrics(ProviderState s) {
+        ByteBuf buf = s.provider.generateMetrics(true);
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.util.function.Supplier;
 import org.apache.bookkeeper.stats.codahale.CodahaleMetricsProvider;
 import org.apache.bookkeeper.stats.codahale.FastCodahaleMetricsProvider;
 import org.apache.bookkeeper.stats.prometheus.PrometheusMetricsProvider;
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
@@ -51,16 +52,28 @@ public class StatsLoggerBenchmark {
 
     static {
         providers.put("Prometheus", PrometheusMetricsProvider::new);
+        providers.put("PrometheusHistogram", StatsLoggerBenchmark::newPrometheusHistogramProvider);
         providers.put("Codahale", CodahaleMetricsProvider::new);
         providers.put("FastCodahale", FastCodahaleMetricsProvider::new);
     }
 
+    private static StatsProvider newPrometheusHistogramProvider() {
+        PropertiesConfiguration conf = new PropertiesConfiguration();
+        conf.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_HTTP_ENABLE, false);
+        conf.setProperty("exposeDefaultJVMMetrics", false);
+        conf.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_OP_STATS_TYPE,
+                PrometheusMetricsProvider.OP_STATS_TYPE_HISTOGRAM);
+        StatsProvider provider = new PrometheusMetricsProvider();
+        provider.start(conf);
+        return provider;
+    }
+
     /**
      * State holder of the logger.
      */
     @State(Scope.Benchmark)
     public static class LoggerState {
-        @Param({"Prometheus", "Codahale", "FastCodahale", "Twitter", "Ostrich"})
+        @Param({"Prometheus", "PrometheusHistogram", "Codahale", "FastCodahale", "Twitter", "Ostrich"})
         private String statsProvider;
 
         private Counter counter;
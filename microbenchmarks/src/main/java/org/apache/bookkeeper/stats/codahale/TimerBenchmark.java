@@ -17,10 +17,15 @@
 package org.apache.bookkeeper.stats.codahale;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.StatsProvider;
+import org.apache.bookkeeper.stats.prometheus.PrometheusMetricsProvider;
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -36,7 +41,8 @@ import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
 /**
- * Microbenchmarks for default and improved (fast) Codahale timers.
+ * Microbenchmarks for default and improved (fast) Codahale timers,
+ * compared with the Prometheus summaries and histograms.
  * To run:
  * build project from command line (mvn clean install).
  * execute ./run.sh
@@ -49,7 +55,9 @@ public class TimerBenchmark {
      */
     public enum TimerType {
         CodahaleTimer,
-        FastTimer
+        FastTimer,
+        PrometheusSummary,
+        PrometheusHistogram
     }
 
     /**
@@ -64,29 +72,24 @@ public class TimerBenchmark {
         @Param({"1", "10", "100"})
         public int timersPerThread;
 
+        private static StatsProvider provider;
         private static OpStatsLogger[] timers;
         private int timerIdx = 0;
 
         private static long[] times;
         private int timeIdx = 0;
 
+        private final StringWriter snapshotWriter = new StringWriter();
+
         @Setup(Level.Trial)
         @SuppressFBWarnings("SSD_DO_NOT_USE_INSTANCE_LOCK_ON_SHARED_STATIC_DATA")
         public void doSetup() throws Exception {
-            StatsLogger logger = null;
-            switch (timerType) {
-                case CodahaleTimer:
-                    logger = new CodahaleMetricsProvider().getStatsLogger("test");
-                    break;
-                case FastTimer:
-                    logger = new FastCodahaleMetricsProvider().getStatsLogger("test");
-                    break;
-            }
-
             synchronized (MyState.class) {
                 // timers (and response times) are shared across threads to test
                 // concurrency of timer updates.
                 if (timers == null) {
+                    provider = newProvider(timerType);
+                    StatsLogger logger = provider.getStatsLogger("test");
                     timers = new OpStatsLogger[timersPerThread];
                     for (int i = 0; i < timersPerThread; i++) {
                         timers[i] = logger.getOpStatsLogger("test-timer-" + i);
@@ -101,6 +104,38 @@ public class TimerBenchmark {
             }
         }
 
+        private static StatsProvider newProvider(TimerType timerType) {
+            switch (timerType) {
+                case CodahaleTimer:
+                    return new CodahaleMetricsProvider();
+                case FastTimer:
+                    return new FastCodahaleMetricsProvider();
+                default:
+                    PropertiesConfiguration conf = new PropertiesConfiguration();
+                    conf.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_HTTP_ENABLE, false);
+                    conf.setProperty("exposeDefaultJVMMetrics", false);
+                    conf.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_OP_STATS_TYPE,
+                            timerType == TimerType.PrometheusHistogram
+                                    ? PrometheusMetricsProvider.OP_STATS_TYPE_HISTOGRAM
+                                    : PrometheusMetricsProvider.OP_STATS_TYPE_SUMMARY);
+                    StatsProvider prometheus = new PrometheusMetricsProvider();
+                    prometheus.start(conf);
+                    return prometheus;
+            }
+        }
+
+        /**
+         * Prometheus loggers have no snapshot of their own, their snapshot is the export of all the metrics.
+         */
+        public void snapshot(OpStatsLogger timer) throws IOException {
+            if (timerType == TimerType.CodahaleTimer || timerType == TimerType.FastTimer) {
+                timer.toOpStatsData();
+            } else {
+                snapshotWriter.getBuffer().setLength(0);
+                provider.writeAllMetrics(snapshotWriter);
+            }
+        }
+
         public OpStatsLogger getTimer() {
             return timers[(timerIdx++) % timers.length];
         }
@@ -157,10 +192,10 @@ public class TimerBenchmark {
     @Measurement(iterations = 2, time = 10, timeUnit = TimeUnit.SECONDS)
     @Threads(4)
     @Fork(value = 1, warmups = 1)
-    public void timerTestWithSnapshots(MyState state) {
+    public void timerTestWithSnapshots(MyState state) throws IOException {
         OpStatsLogger timer = state.getTimer();
         if (state.isGetSnapshot()) {
-            timer.toOpStatsData();
+            state.snapshot(timer);
         } else {
             timer.registerSuccessfulEvent(state.getTime(), TimeUnit.MILLISECONDS);
         }
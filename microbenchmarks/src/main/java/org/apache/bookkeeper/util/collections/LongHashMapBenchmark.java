@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.util.collections;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks of the long to object maps, comparing the maps with lock-free reads to the maps with optimistic
+ * reads falling back to a read lock.
+ *
+ * <p>The keys follow the patterns of the bookie: the entry ids of a ledger, the ledger ids of a bookie, which are
+ * allocated by ranges, and random keys.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class LongHashMapBenchmark {
+
+    private static final int NUM_KEYS = 100_000;
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Common operations of the compared maps.
+     */
+    interface LongMap {
+        Object get(long key);
+
+        int getAll(long[] keys, Object[] values);
+
+        Object put(long key, Object value);
+
+        void putAll(long[] keys, Object[] values);
+
+        Object remove(long key);
+    }
+
+    static LongMap newMap(String type) {
+        switch (type) {
+            case "ConcurrentLongHashMap":
+                ConcurrentLongHashMap<Object> stampedMap = ConcurrentLongHashMap.newBuilder()
+                        .expectedItems(NUM_KEYS).concurrencyLevel(16).build();
+                return new LongMap() {
+                    @Override
+                    public Object get(long key) {
+                        return stampedMap.get(key);
+                    }
+
+                    @Override
+                    public int getAll(long[] keys, Object[] values) {
+                        int found = 0;
+                        for (int i = 0; i < keys.length; i++) {
+                            values[i] = stampedMap.get(keys[i]);
+                            found += values[i] != null ? 1 : 0;
+                        }
+                        return found;
+                    }
+
+                    @Override
+                    public Object put(long key, Object value) {
+                        return stampedMap.put(key, value);
+                    }
+
+                    @Override
+                    public void putAll(long[] keys, Object[] values) {
+                        for (int i = 0; i < keys.length; i++) {
+                            stampedMap.put(keys[i], values[i]);
+                        }
+                    }
+
+                    @Override
+                    public Object remove(long key) {
+                        return stampedMap.remove(key);
+                    }
+                };
+            case "LockFreeReadLongHashMap":
+                LockFreeReadLongHashMap<Object> lockFreeMap = LockFreeReadLongHashMap.newBuilder()
+                        .expectedItems(NUM_KEYS).concurrencyLevel(16).build();
+                return new LongMap() {
+                    @Override
+                    public Object get(long key) {
+                        return lockFreeMap.get(key);
+                    }
+
+                    @Override
+                    public int getAll(long[] keys, Object[] values) {
+                        return lockFreeMap.getAll(keys, values);
+                    }
+
+                    @Override
+                    public Object put(long key, Object value) {
+                        return lockFreeMap.put(key, value);
+                    }
+
+                    @Override
+                    public void putAll(long[] keys, Object[] values) {
+                        lockFreeMap.putAll(keys, values);
+                    }
+
+                    @Override
+                    public Object remove(long key) {
+                        return lockFreeMap.remove(key);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown map type " + type);
+        }
+    }
+
+    static long[] newKeys(String pattern, Random random) {
+        long[] keys = new long[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            switch (pattern) {
+                case "entryIds":
+                    keys[i] = i;
+                    break;
+                case "ledgerIds":
+                    // ranges of 1000 ids, as allocated by the ledger id generators
+                    keys[i] = (long) (i / 1000) << 20 | (i % 1000);
+                    break;
+                case "random":
+                    keys[i] = random.nextLong() & Long.MAX_VALUE;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown key pattern " + pattern);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * State holder of the benchmarks, with a map filled with the keys of the pattern.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"ConcurrentLongHashMap", "LockFreeReadLongHashMap"})
+        private String mapType;
+
+        @Param({"entryIds", "ledgerIds", "random"})
+        private String keyPattern;
+
+        private LongMap map;
+        private long[] keys;
+        private final Object value = new Object();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            map = newMap(mapType);
+            keys = newKeys(keyPattern, new Random(1));
+            for (long key : keys) {
+                map.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Per thread state, with the keys of the batches and the keys put and removed by the thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final Random random = new Random();
+        private final long[] batchKeys = new long[BATCH_SIZE];
+        private final Object[] batchValues = new Object[BATCH_SIZE];
+        private long nextChurnKey;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // keys out of the range of the patterns
+            nextChurnKey = (1L << 62) + ((long) random.nextInt(1024) << 40);
+        }
+
+        long nextKey(TestState s) {
+            return s.keys[random.nextInt(NUM_KEYS)];
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object get(TestState s, ThreadState t) {
+        return s.map.get(t.nextKey(s));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getMiss(TestState s, ThreadState t) {
+        return s.map.get(t.nextKey(s) | (1L << 61));
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int getBatch(TestState s, ThreadState t) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            t.batchKeys[i] = t.nextKey(s);
+        }
+        return s.map.getAll(t.batchKeys, t.batchValues);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void putBatch(TestState s, ThreadState t) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            t.batchKeys[i] = t.nextKey(s);
+            t.batchValues[i] = s.value;
+        }
+        s.map.putAll(t.batchKeys, t.batchValues);
+    }
+
+    /**
+     * Reads of the map while a writer keeps adding and removing keys, with rehashes of the sections.
+     */
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(3)
+    public Object readWhileWritingReader(TestState s, ThreadState t) {
+        return s.map.get(t.nextKey(s));
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public void readWhileWritingWriter(TestState s, ThreadState t, Blackhole bh) {
+        long key = t.nextChurnKey++;
+        bh.consume(s.map.put(key, s.value));
+        // keep up to 50k churn keys, growing and shrinking the sections
+        bh.consume(s.map.remove(key - 50_000));
+    }
+}
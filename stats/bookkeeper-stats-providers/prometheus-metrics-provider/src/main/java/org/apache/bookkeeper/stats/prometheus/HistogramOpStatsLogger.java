@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.bookkeeper.stats.OpStatsData;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+
+/**
+ * OpStatsLogger implementation that counts the latencies in the fixed buckets of a {@link LogLinearBuckets}
+ * layout, to be exported as a cumulative Prometheus histogram.
+ *
+ * <p>Each bucket is a {@link LongAdder}, so recording an event is lock-free and does not allocate. Unlike
+ * the {@link DataSketchesOpStatsLogger} quantiles, the bucket counts are never reset: the quantiles can be
+ * computed over any time range and aggregated across bookies on the Prometheus side.
+ *
+ * <p>Latencies are counted in microseconds and exported in milliseconds. The registered values, such as
+ * sizes in bytes, are counted in a layout of their own and exported as they are. A logger records either
+ * latencies or values: once a value is registered, the histogram of the values is the one exported.
+ */
+public class HistogramOpStatsLogger implements OpStatsLogger {
+
+    private final Counts latencies;
+    private final Counts values;
+
+    // whether values were registered, in which case they are exported rather than the latencies
+    private volatile boolean recordsValues = false;
+
+    private Map<String, String> labels;
+
+    // used for lazy registration for thread scoped metrics
+    private boolean threadInitialized;
+
+    public HistogramOpStatsLogger(LogLinearBuckets buckets, LogLinearBuckets valueBuckets,
+                                  Map<String, String> labels) {
+        this.latencies = new Counts(buckets);
+        this.values = new Counts(valueBuckets);
+        this.labels = labels;
+    }
+
+    /**
+     * The bucket counts and sums of the successful and failed events, in a layout.
+     */
+    private static class Counts {
+        final LogLinearBuckets buckets;
+        final LongAdder[] successBuckets;
+        final LongAdder[] failBuckets;
+        final LongAdder successSum = new LongAdder();
+        final LongAdder failSum = new LongAdder();
+
+        Counts(LogLinearBuckets buckets) {
+            this.buckets = buckets;
+            this.successBuckets = newBuckets(buckets.size());
+            this.failBuckets = newBuckets(buckets.size());
+        }
+
+        void record(boolean success, long value) {
+            (success ? successBuckets : failBuckets)[buckets.bucketIndex(value)].increment();
+            (success ? successSum : failSum).add(value);
+        }
+    }
+
+    private static LongAdder[] newBuckets(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    @Override
+    public void registerFailedEvent(long eventLatency, TimeUnit unit) {
+        latencies.record(false, unit.toMicros(eventLatency));
+    }
+
+    @Override
+    public void registerSuccessfulEvent(long eventLatency, TimeUnit unit) {
+        latencies.record(true, unit.toMicros(eventLatency));
+    }
+
+    @Override
+    public void registerSuccessfulValue(long value) {
+        if (!recordsValues) {
+            recordsValues = true;
+        }
+        values.record(true, value);
+    }
+
+    @Override
+    public void registerFailedValue(long value) {
+        if (!recordsValues) {
+            recordsValues = true;
+        }
+        values.record(false, value);
+    }
+
+    private Counts exported() {
+        return recordsValues ? values : latencies;
+    }
+
+    @Override
+    public OpStatsData toOpStatsData() {
+        // Not relevant as we don't use JMX here
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        // Not relevant as we don't use JMX here
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return the bucket layout of the exported histogram, which changes once values are registered
+     */
+    public LogLinearBuckets getBuckets() {
+        return exported().buckets;
+    }
+
+    public int getBucketsCount() {
+        return exported().buckets.size();
+    }
+
+    /**
+     * @return the inclusive upper bound of the bucket, in milliseconds for the latencies, or
+     *         {@link Double#POSITIVE_INFINITY} for the last one
+     */
+    public double getBucketUpperBound(int index) {
+        Counts counts = exported();
+        long upperBound = counts.buckets.getUpperBound(index);
+        if (upperBound == Long.MAX_VALUE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return counts == values ? upperBound : upperBound / 1000.0;
+    }
+
+    /**
+     * @return the number of events in the bucket, not including the lower buckets
+     */
+    public long getBucketCount(boolean success, int index) {
+        Counts counts = exported();
+        return success ? counts.successBuckets[index].sum() : counts.failBuckets[index].sum();
+    }
+
+    public double getSum(boolean success) {
+        Counts counts = exported();
+        long sum = success ? counts.successSum.sum() : counts.failSum.sum();
+        return counts == values ? sum : sum / 1000.0;
+    }
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    public boolean isThreadInitialized() {
+        return threadInitialized;
+    }
+
+    public void initializeThread(Map<String, String> labels) {
+        this.labels = labels;
+        this.threadInitialized = true;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A fixed log-linear bucket layout, in the style of HdrHistogram.
+ *
+ * <p>Every power of two range between the lowest and the highest bucket bounds is split into
+ * {@code 2^subBucketBits} linear sub-buckets, so the relative width of a bucket never exceeds
+ * {@code 2^-subBucketBits}. The index of the bucket holding a value is computed from its bits,
+ * without any search or allocation. The layout has one more bucket for the values above the
+ * highest bound.
+ *
+ * <p>The bucket upper bounds are inclusive, as the {@code le} label of the Prometheus histograms.
+ */
+public class LogLinearBuckets {
+
+    static final int MAX_SUB_BUCKET_BITS = 8;
+
+    private final int lowestExponent;
+    private final int highestExponent;
+    private final int subBucketBits;
+    private final int subBucketMask;
+    private final long lowestBound;
+    private final long[] upperBounds;
+
+    /**
+     * @param lowestBound the upper bound of the first bucket, rounded up to a power of two
+     * @param highestBound the upper bound of the last finite bucket, rounded up to a power of two
+     * @param subBucketBits the number of linear sub-buckets of a power of two range, as a power of two
+     */
+    public LogLinearBuckets(long lowestBound, long highestBound, int subBucketBits) {
+        checkArgument(subBucketBits >= 0 && subBucketBits <= MAX_SUB_BUCKET_BITS,
+                "subBucketBits must be between 0 and %s", MAX_SUB_BUCKET_BITS);
+        checkArgument(lowestBound > 0 && highestBound > lowestBound,
+                "Invalid bucket bounds [%s, %s]", lowestBound, highestBound);
+        checkArgument(highestBound <= (1L << 62), "highestBound is too large: %s", highestBound);
+        this.lowestExponent = Math.max(ceilLog2(lowestBound), subBucketBits);
+        this.highestExponent = Math.max(ceilLog2(highestBound), lowestExponent + 1);
+        this.subBucketBits = subBucketBits;
+        this.subBucketMask = (1 << subBucketBits) - 1;
+        this.lowestBound = 1L << lowestExponent;
+
+        int finiteBuckets = 1 + ((highestExponent - lowestExponent) << subBucketBits);
+        this.upperBounds = new long[finiteBuckets];
+        upperBounds[0] = this.lowestBound;
+        int idx = 1;
+        for (int exponent = lowestExponent; exponent < highestExponent; exponent++) {
+            for (int sub = 0; sub <= subBucketMask; sub++) {
+                upperBounds[idx++] = (1L << exponent) + ((long) (sub + 1) << (exponent - subBucketBits));
+            }
+        }
+    }
+
+    /**
+     * @return the number of buckets, including the one above the highest bound
+     */
+    public int size() {
+        return upperBounds.length + 1;
+    }
+
+    /**
+     * @return the inclusive upper bound of the bucket, or {@link Long#MAX_VALUE} for the last one
+     */
+    public long getUpperBound(int index) {
+        return index < upperBounds.length ? upperBounds[index] : Long.MAX_VALUE;
+    }
+
+    public int bucketIndex(long value) {
+        if (value <= lowestBound) {
+            return 0;
+        }
+        // the buckets hold the values in (2^exponent + sub * width, 2^exponent + (sub + 1) * width]
+        long v = value - 1;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        if (exponent >= highestExponent) {
+            return upperBounds.length;
+        }
+        int sub = (int) (v >>> (exponent - subBucketBits)) & subBucketMask;
+        return 1 + ((exponent - lowestExponent) << subBucketBits) + sub;
+    }
+
+    private static int ceilLog2(long value) {
+        return 64 - Long.numberOfLeadingZeros(value - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "LogLinearBuckets(lowest=" + lowestBound + ", highest=" + (1L << highestExponent)
+                + ", subBucketBits=" + subBucketBits + ")";
+    }
+}
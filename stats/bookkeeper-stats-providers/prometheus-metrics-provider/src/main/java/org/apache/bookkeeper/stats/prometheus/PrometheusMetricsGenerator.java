@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.prometheus.client.Collector;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes the metrics of a {@link PrometheusMetricsProvider} in the Prometheus text format, or in the
+ * OpenMetrics format, directly into a pooled direct {@link ByteBuf}.
+ *
+ * <p>The bytes of the metric names and labels of every series are encoded once and cached, so a scrape
+ * only has to format the values. The series are grouped by metric family, as the OpenMetrics format
+ * requires. The cache is rebuilt whenever the provider registers or replaces a metric.
+ */
+class PrometheusMetricsGenerator {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private static final double[] QUANTILES = { 0.5, 0.75, 0.95, 0.99, 0.999, 0.9999, 1.0 };
+
+    private static final byte[] EOF = "# EOF\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NAN = "NaN".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] POSITIVE_INFINITY = "+Inf".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEGATIVE_INFINITY = "-Inf".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final PrometheusMetricsProvider provider;
+
+    private volatile List<Family> families = null;
+    // the version of the metrics of the provider the families were built from
+    private volatile long familiesMetricsVersion = -1;
+    private volatile boolean familiesStale = false;
+
+    // size of the last scrape, used to allocate a buffer that will likely not need to grow
+    private volatile int lastScrapeSize = INITIAL_BUFFER_SIZE;
+
+    PrometheusMetricsGenerator(PrometheusMetricsProvider provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * @return a buffer with all the metrics, that the caller must release
+     */
+    ByteBuf generate(boolean openMetrics) {
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(lastScrapeSize);
+        try {
+            writeMetricsCollectedByPrometheusClient(buf, openMetrics);
+            for (Family family : getFamilies()) {
+                family.write(buf, openMetrics);
+            }
+            if (openMetrics) {
+                buf.writeBytes(EOF);
+            }
+            lastScrapeSize = buf.readableBytes() + buf.readableBytes() / 8;
+            return buf;
+        } catch (Throwable t) {
+            buf.release();
+            throw t;
+        }
+    }
+
+    private List<Family> getFamilies() {
+        // read before building, so that the metrics registered meanwhile trigger another rebuild
+        long metricsVersion = provider.metricsVersion.get();
+        List<Family> current = families;
+        if (current == null || familiesStale || familiesMetricsVersion != metricsVersion) {
+            familiesStale = false;
+            familiesMetricsVersion = metricsVersion;
+            current = buildFamilies();
+            families = current;
+        }
+        return current;
+    }
+
+    private List<Family> buildFamilies() {
+        Map<String, Family> byName = new TreeMap<>();
+        provider.counters.forEach((sc, counter) -> byName
+                .computeIfAbsent(sc.getScope() + "#counter", x -> new Family(sc.getScope(), Type.COUNTER))
+                .series.add(newSeries(Type.COUNTER, sc, counter)));
+        provider.gauges.forEach((sc, gauge) -> byName
+                .computeIfAbsent(sc.getScope() + "#gauge", x -> new Family(sc.getScope(), Type.GAUGE))
+                .series.add(newSeries(Type.GAUGE, sc, gauge)));
+        provider.opStats.forEach((sc, opStat) -> byName
+                .computeIfAbsent(sc.getScope() + "#summary", x -> new Family(sc.getScope(), Type.SUMMARY))
+                .series.add(newSeries(Type.SUMMARY, sc, opStat)));
+        provider.histogramOpStats.forEach((sc, histogram) -> byName
+                .computeIfAbsent(sc.getScope() + "#histogram", x -> new Family(sc.getScope(), Type.HISTOGRAM))
+                .series.add(newSeries(Type.HISTOGRAM, sc, histogram)));
+        return new ArrayList<>(byName.values());
+    }
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary"),
+        HISTOGRAM("histogram");
+
+        final String typeName;
+
+        Type(String typeName) {
+            this.typeName = typeName;
+        }
+    }
+
+    private ConcurrentMap<ScopeContext, ?> metrics(Type type) {
+        switch (type) {
+            case COUNTER:
+                return provider.counters;
+            case GAUGE:
+                return provider.gauges;
+            case SUMMARY:
+                return provider.opStats;
+            default:
+                return provider.histogramOpStats;
+        }
+    }
+
+    private static Series newSeries(Type type, ScopeContext sc, Object metric) {
+        String name = sc.getScope();
+        switch (type) {
+            case COUNTER: {
+                LongAdderCounter counter = (LongAdderCounter) metric;
+                return new Series(sc, metric, new byte[][] { encode(name, counter.getLabels()) });
+            }
+            case GAUGE: {
+                SimpleGauge<?> gauge = (SimpleGauge<?>) metric;
+                return new Series(sc, metric, new byte[][] { encode(name, gauge.getLabels()) });
+            }
+            case SUMMARY: {
+                DataSketchesOpStatsLogger opStat = (DataSketchesOpStatsLogger) metric;
+                byte[][] prefixes = new byte[2 * (QUANTILES.length + 2)][];
+                int i = 0;
+                for (boolean success : new boolean[] { false, true }) {
+                    for (double quantile : QUANTILES) {
+                        prefixes[i++] = encode(name, opStat.getLabels(), success, "quantile",
+                                Double.toString(quantile));
+                    }
+                    prefixes[i++] = encode(name + "_count", opStat.getLabels(), success, null, null);
+                    prefixes[i++] = encode(name + "_sum", opStat.getLabels(), success, null, null);
+                }
+                return new Series(sc, metric, prefixes);
+            }
+            default: {
+                HistogramOpStatsLogger histogram = (HistogramOpStatsLogger) metric;
+                int buckets = histogram.getBucketsCount();
+                byte[][] prefixes = new byte[2 * (buckets + 2)][];
+                int i = 0;
+                for (boolean success : new boolean[] { false, true }) {
+                    for (int b = 0; b < buckets; b++) {
+                        prefixes[i++] = encode(name + "_bucket", histogram.getLabels(), success, "le",
+                                Collector.doubleToGoString(histogram.getBucketUpperBound(b)));
+                    }
+                    prefixes[i++] = encode(name + "_count", histogram.getLabels(), success, null, null);
+                    prefixes[i++] = encode(name + "_sum", histogram.getLabels(), success, null, null);
+                }
+                return new Series(sc, metric, prefixes, histogram.getBuckets());
+            }
+        }
+    }
+
+    /**
+     * A series, with the encoded bytes of the names and labels of its samples, up to the value.
+     */
+    private static class Series {
+        final ScopeContext scopeContext;
+        final Object metric;
+        final byte[][] prefixes;
+        // the bucket layout the prefixes of a histogram were encoded for
+        final LogLinearBuckets buckets;
+
+        Series(ScopeContext scopeContext, Object metric, byte[][] prefixes) {
+            this(scopeContext, metric, prefixes, null);
+        }
+
+        Series(ScopeContext scopeContext, Object metric, byte[][] prefixes, LogLinearBuckets buckets) {
+            this.scopeContext = scopeContext;
+            this.metric = metric;
+            this.prefixes = prefixes;
+            this.buckets = buckets;
+        }
+    }
+
+    /**
+     * All the series with the same metric name.
+     */
+    private class Family {
+        final Type type;
+        final byte[] textTypeLine;
+        final byte[] openMetricsTypeLine;
+        final List<Series> series = new ArrayList<>();
+
+        Family(String name, Type type) {
+            this.type = type;
+            this.textTypeLine = ("# TYPE " + name + " " + type.typeName + "\n").getBytes(StandardCharsets.UTF_8);
+            if (type == Type.COUNTER) {
+                // OpenMetrics counter samples must end with _total, keep the other counters untyped rather
+                // than renaming them
+                this.openMetricsTypeLine = name.endsWith("_total")
+                        ? ("# TYPE " + name.substring(0, name.length() - "_total".length()) + " counter\n")
+                                .getBytes(StandardCharsets.UTF_8)
+                        : ("# TYPE " + name + " unknown\n").getBytes(StandardCharsets.UTF_8);
+            } else {
+                this.openMetricsTypeLine = textTypeLine;
+            }
+        }
+
+        void write(ByteBuf buf, boolean openMetrics) {
+            buf.writeBytes(openMetrics ? openMetricsTypeLine : textTypeLine);
+            ConcurrentMap<ScopeContext, ?> metrics = metrics(type);
+            for (int i = 0; i < series.size(); i++) {
+                Series s = series.get(i);
+                Object metric = metrics.get(s.scopeContext);
+                if (metric != s.metric) {
+                    // the metric was replaced since the cache was built
+                    familiesStale = true;
+                    if (metric == null) {
+                        continue;
+                    }
+                    s = newSeries(type, s.scopeContext, metric);
+                } else if (type == Type.HISTOGRAM && ((HistogramOpStatsLogger) metric).getBuckets() != s.buckets) {
+                    // the histogram exports its values since the cache was built
+                    familiesStale = true;
+                    s = newSeries(type, s.scopeContext, metric);
+                }
+                writeSeries(buf, s);
+            }
+        }
+
+        private void writeSeries(ByteBuf buf, Series s) {
+            byte[][] prefixes = s.prefixes;
+            switch (type) {
+                case COUNTER:
+                    buf.writeBytes(prefixes[0]);
+                    writeLong(buf, ((LongAdderCounter) s.metric).get());
+                    buf.writeByte('\n');
+                    break;
+                case GAUGE:
+                    buf.writeBytes(prefixes[0]);
+                    writeNumber(buf, ((SimpleGauge<?>) s.metric).getSample());
+                    buf.writeByte('\n');
+                    break;
+                case SUMMARY: {
+                    DataSketchesOpStatsLogger opStat = (DataSketchesOpStatsLogger) s.metric;
+                    int i = 0;
+                    for (int k = 0; k < 2; k++) {
+                        boolean success = k == 1;
+                        for (double quantile : QUANTILES) {
+                            buf.writeBytes(prefixes[i++]);
+                            writeDouble(buf, opStat.getQuantileValue(success, quantile));
+                            buf.writeByte('\n');
+                        }
+                        buf.writeBytes(prefixes[i++]);
+                        writeLong(buf, opStat.getCount(success));
+                        buf.writeByte('\n');
+                        buf.writeBytes(prefixes[i++]);
+                        writeLong(buf, opStat.getSum(success));
+                        buf.writeByte('\n');
+                    }
+                    break;
+                }
+                default: {
+                    HistogramOpStatsLogger histogram = (HistogramOpStatsLogger) s.metric;
+                    int buckets = prefixes.length / 2 - 2;
+                    int i = 0;
+                    for (int k = 0; k < 2; k++) {
+                        boolean success = k == 1;
+                        // the buckets are cumulative, and the count is the one of the last bucket
+                        long cumulativeCount = 0;
+                        for (int b = 0; b < buckets; b++) {
+                            cumulativeCount += histogram.getBucketCount(success, b);
+                            buf.writeBytes(prefixes[i++]);
+                            writeLong(buf, cumulativeCount);
+                            buf.writeByte('\n');
+                        }
+                        buf.writeBytes(prefixes[i++]);
+                        writeLong(buf, cumulativeCount);
+                        buf.writeByte('\n');
+                        buf.writeBytes(prefixes[i++]);
+                        writeDouble(buf, histogram.getSum(success));
+                        buf.writeByte('\n');
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private void writeMetricsCollectedByPrometheusClient(ByteBuf buf, boolean openMetrics) {
+        Enumeration<MetricFamilySamples> metricFamilySamples = provider.registry.metricFamilySamples();
+        while (metricFamilySamples.hasMoreElements()) {
+            MetricFamilySamples metricFamily = metricFamilySamples.nextElement();
+            if (openMetrics) {
+                buf.writeBytes(("# TYPE " + metricFamily.name + " " + openMetricsType(metricFamily.type) + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < metricFamily.samples.size(); i++) {
+                Sample sample = metricFamily.samples.get(i);
+                ByteBufUtil.writeUtf8(buf, sample.name);
+                if (!sample.labelNames.isEmpty()) {
+                    buf.writeByte('{');
+                    for (int j = 0; j < sample.labelNames.size(); j++) {
+                        if (j != 0) {
+                            buf.writeByte(',');
+                        }
+                        ByteBufUtil.writeUtf8(buf, sample.labelNames.get(j));
+                        buf.writeByte('=').writeByte('"');
+                        ByteBufUtil.writeUtf8(buf, escapeLabelValue(sample.labelValues.get(j)));
+                        buf.writeByte('"');
+                    }
+                    buf.writeByte('}');
+                }
+                buf.writeByte(' ');
+                writeDouble(buf, sample.value);
+                buf.writeByte('\n');
+            }
+        }
+    }
+
+    private static String openMetricsType(Collector.Type type) {
+        switch (type) {
+            case COUNTER:
+                return "counter";
+            case GAUGE:
+                return "gauge";
+            case SUMMARY:
+                return "summary";
+            case HISTOGRAM:
+                return "histogram";
+            case GAUGE_HISTOGRAM:
+                return "gaugehistogram";
+            case STATE_SET:
+                return "stateset";
+            case INFO:
+                return "info";
+            default:
+                return "unknown";
+        }
+    }
+
+    private static byte[] encode(String name, Map<String, String> labels) {
+        StringBuilder sb = new StringBuilder(name);
+        if (!labels.isEmpty()) {
+            sb.append('{');
+            appendLabels(sb, labels, true);
+            sb.append('}');
+        }
+        return sb.append(' ').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String name, Map<String, String> labels, boolean success,
+                                 String labelName, String labelValue) {
+        StringBuilder sb = new StringBuilder(name).append("{success=\"").append(success).append('"');
+        if (labelName != null) {
+            sb.append(',').append(labelName).append("=\"").append(labelValue).append('"');
+        }
+        appendLabels(sb, labels, false);
+        return sb.append("} ").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendLabels(StringBuilder sb, Map<String, String> labels, boolean isFirst) {
+        for (Map.Entry<String, String> e : labels.entrySet()) {
+            if (!isFirst) {
+                sb.append(',');
+            }
+            isFirst = false;
+            sb.append(e.getKey()).append("=\"").append(escapeLabelValue(e.getValue())).append('"');
+        }
+    }
+
+    private static String escapeLabelValue(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void writeNumber(ByteBuf buf, Number n) {
+        if (n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte) {
+            writeLong(buf, n.longValue());
+        } else {
+            writeDouble(buf, n.doubleValue());
+        }
+    }
+
+    static void writeDouble(ByteBuf buf, double d) {
+        if (Double.isNaN(d)) {
+            buf.writeBytes(NAN);
+        } else if (Double.isInfinite(d)) {
+            buf.writeBytes(d > 0 ? POSITIVE_INFINITY : NEGATIVE_INFINITY);
+        } else if (d == (long) d && Math.abs(d) < 1e15) {
+            // integral values are the most common ones, write them without going through a string
+            writeLong(buf, (long) d);
+            buf.writeByte('.').writeByte('0');
+        } else {
+            ByteBufUtil.writeAscii(buf, Double.toString(d));
+        }
+    }
+
+    static void writeLong(ByteBuf buf, long value) {
+        if (value == Long.MIN_VALUE) {
+            buf.writeBytes(LONG_MIN_VALUE);
+            return;
+        }
+        if (value < 0) {
+            buf.writeByte('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        buf.ensureWritable(digits);
+        int idx = buf.writerIndex() + digits;
+        do {
+            buf.setByte(--idx, (int) ('0' + value % 10));
+            value /= 10;
+        } while (value != 0);
+        buf.writerIndex(buf.writerIndex() + digits);
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.bookkeeper.stats.prometheus;
 
 // CHECKSTYLE.OFF: IllegalImport
 import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.PlatformDependent;
 import io.prometheus.client.Collector;
@@ -43,6 +44,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.StatsProvider;
@@ -75,6 +77,38 @@ public class PrometheusMetricsProvider implements StatsProvider {
     public static final String PROMETHEUS_STATS_LATENCY_ROLLOVER_SECONDS = "prometheusStatsLatencyRolloverSeconds";
     public static final int DEFAULT_PROMETHEUS_STATS_LATENCY_ROLLOVER_SECONDS = 60;
 
+    /*
+     * Whether the op stats are exported as summaries, with the quantiles of the last rollover period,
+     * or as cumulative histograms, whose quantiles can be aggregated across bookies and time ranges.
+     */
+    public static final String PROMETHEUS_STATS_OP_STATS_TYPE = "prometheusStatsOpStatsType";
+    public static final String OP_STATS_TYPE_SUMMARY = "summary";
+    public static final String OP_STATS_TYPE_HISTOGRAM = "histogram";
+    public static final String DEFAULT_PROMETHEUS_STATS_OP_STATS_TYPE = OP_STATS_TYPE_SUMMARY;
+
+    /*
+     * The histogram bucket layout: the bounds are rounded up to powers of two, and every power of two range
+     * between them is split into 2^subBucketBits buckets.
+     */
+    public static final String PROMETHEUS_STATS_HISTOGRAM_LOWEST_BOUND_MICROS =
+            "prometheusStatsHistogramLowestBoundMicros";
+    public static final long DEFAULT_PROMETHEUS_STATS_HISTOGRAM_LOWEST_BOUND_MICROS = 16L;
+
+    public static final String PROMETHEUS_STATS_HISTOGRAM_HIGHEST_BOUND_MICROS =
+            "prometheusStatsHistogramHighestBoundMicros";
+    public static final long DEFAULT_PROMETHEUS_STATS_HISTOGRAM_HIGHEST_BOUND_MICROS = 1L << 30;
+
+    public static final String PROMETHEUS_STATS_HISTOGRAM_SUB_BUCKET_BITS = "prometheusStatsHistogramSubBucketBits";
+    public static final int DEFAULT_PROMETHEUS_STATS_HISTOGRAM_SUB_BUCKET_BITS = 1;
+
+    /*
+     * The highest bound of the histogram buckets of the registered values, such as sizes in bytes, which
+     * have their own layout starting at 1.
+     */
+    public static final String PROMETHEUS_STATS_HISTOGRAM_VALUE_HIGHEST_BOUND =
+            "prometheusStatsHistogramValueHighestBound";
+    public static final long DEFAULT_PROMETHEUS_STATS_HISTOGRAM_VALUE_HIGHEST_BOUND = 1L << 40;
+
     final CollectorRegistry registry;
 
     Server server;
@@ -89,6 +123,20 @@ public class PrometheusMetricsProvider implements StatsProvider {
             new ConcurrentHashMap<>();
     final ConcurrentMap<ScopeContext, ThreadScopedLongAdderCounter> threadScopedCounters =
             new ConcurrentHashMap<>();
+    final ConcurrentMap<ScopeContext, HistogramOpStatsLogger> histogramOpStats = new ConcurrentHashMap<>();
+    final ConcurrentMap<ScopeContext, ThreadScopedHistogramOpStatsLogger> threadScopedHistogramOpStats =
+            new ConcurrentHashMap<>();
+
+    // incremented after each metric registered or replaced in the maps above, so that the cached
+    // series of the scrapes are rebuilt
+    final AtomicLong metricsVersion = new AtomicLong();
+
+    // the bucket layouts of the latencies and of the values of the op stats histograms,
+    // or null if the op stats are exported as summaries
+    volatile LogLinearBuckets histogramBuckets = null;
+    volatile LogLinearBuckets histogramValueBuckets = null;
+
+    private final PrometheusMetricsGenerator metricsGenerator = new PrometheusMetricsGenerator(this);
 
     public PrometheusMetricsProvider() {
         this(CollectorRegistry.defaultRegistry);
@@ -100,6 +148,26 @@ public class PrometheusMetricsProvider implements StatsProvider {
 
     @Override
     public void start(Configuration conf) {
+        String opStatsType = conf.getString(PROMETHEUS_STATS_OP_STATS_TYPE, DEFAULT_PROMETHEUS_STATS_OP_STATS_TYPE);
+        if (OP_STATS_TYPE_HISTOGRAM.equalsIgnoreCase(opStatsType)) {
+            int subBucketBits = conf.getInt(PROMETHEUS_STATS_HISTOGRAM_SUB_BUCKET_BITS,
+                    DEFAULT_PROMETHEUS_STATS_HISTOGRAM_SUB_BUCKET_BITS);
+            histogramValueBuckets = new LogLinearBuckets(1L,
+                    conf.getLong(PROMETHEUS_STATS_HISTOGRAM_VALUE_HIGHEST_BOUND,
+                            DEFAULT_PROMETHEUS_STATS_HISTOGRAM_VALUE_HIGHEST_BOUND),
+                    subBucketBits);
+            histogramBuckets = new LogLinearBuckets(
+                    conf.getLong(PROMETHEUS_STATS_HISTOGRAM_LOWEST_BOUND_MICROS,
+                            DEFAULT_PROMETHEUS_STATS_HISTOGRAM_LOWEST_BOUND_MICROS),
+                    conf.getLong(PROMETHEUS_STATS_HISTOGRAM_HIGHEST_BOUND_MICROS,
+                            DEFAULT_PROMETHEUS_STATS_HISTOGRAM_HIGHEST_BOUND_MICROS),
+                    subBucketBits);
+            log.info("Exporting op stats as Prometheus histograms with {} for the latencies and {} for the values",
+                    histogramBuckets, histogramValueBuckets);
+        } else if (!OP_STATS_TYPE_SUMMARY.equalsIgnoreCase(opStatsType)) {
+            throw new IllegalArgumentException("Unknown " + PROMETHEUS_STATS_OP_STATS_TYPE + ": " + opStatsType);
+        }
+
         boolean httpEnabled = conf.getBoolean(PROMETHEUS_STATS_HTTP_ENABLE, DEFAULT_PROMETHEUS_STATS_HTTP_ENABLE);
         boolean bkHttpServerEnabled = conf.getBoolean("httpServerEnabled", false);
         boolean exposeDefaultJVMMetrics = conf.getBoolean("exposeDefaultJVMMetrics", true);
@@ -159,6 +227,9 @@ public class PrometheusMetricsProvider implements StatsProvider {
 
     @Override
     public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
         if (server != null) {
             try {
                 server.stop();
@@ -184,6 +255,22 @@ public class PrometheusMetricsProvider implements StatsProvider {
         counters.forEach((sc, counter) -> prometheusTextFormat.writeCounter(writer, sc.getScope(), counter));
         opStats.forEach((sc, opStatLogger) ->
                 prometheusTextFormat.writeOpStat(writer, sc.getScope(), opStatLogger));
+        histogramOpStats.forEach((sc, histogram) ->
+                prometheusTextFormat.writeHistogram(writer, sc.getScope(), histogram));
+    }
+
+    /**
+     * Write all the metrics into a pooled direct buffer, in the Prometheus text format or in the
+     * OpenMetrics format.
+     *
+     * <p>Unlike {@link #writeAllMetrics(Writer)}, the metric names and labels are only encoded once,
+     * which keeps the scrapes cheap with a large number of series.
+     *
+     * @param openMetrics whether to use the OpenMetrics format
+     * @return the buffer holding the metrics, that the caller must release
+     */
+    public ByteBuf generateMetrics(boolean openMetrics) {
+        return metricsGenerator.generate(openMetrics);
     }
 
     @Override
@@ -199,6 +286,21 @@ public class PrometheusMetricsProvider implements StatsProvider {
         return Collector.sanitizeMetricName(completeName);
     }
 
+    <T> T computeMetricIfAbsent(ConcurrentMap<ScopeContext, T> metrics, ScopeContext scopeContext,
+                                Function<ScopeContext, ? extends T> factory) {
+        T metric = metrics.get(scopeContext);
+        if (metric == null) {
+            metric = metrics.computeIfAbsent(scopeContext, factory);
+            metricsVersion.incrementAndGet();
+        }
+        return metric;
+    }
+
+    <T> void putMetric(ConcurrentMap<ScopeContext, T> metrics, ScopeContext scopeContext, T metric) {
+        metrics.put(scopeContext, metric);
+        metricsVersion.incrementAndGet();
+    }
+
     @VisibleForTesting
     void rotateLatencyCollection() {
         opStats.forEach((name, metric) -> {
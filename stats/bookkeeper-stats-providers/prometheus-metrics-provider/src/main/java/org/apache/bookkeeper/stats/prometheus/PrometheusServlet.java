@@ -16,9 +16,12 @@
  */
 package org.apache.bookkeeper.stats.prometheus;
 
+import io.netty.buffer.ByteBuf;
 import io.prometheus.client.exporter.common.TextFormat;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -26,10 +29,14 @@ import javax.servlet.http.HttpServletResponse;
 
 /**
  * Servlet used to export metrics in prometheus text format.
+ *
+ * <p>The OpenMetrics format and gzip compression are used when the scraper accepts them.
  */
 public class PrometheusServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     private final transient PrometheusMetricsProvider provider;
 
     public PrometheusServlet(PrometheusMetricsProvider provider) {
@@ -38,15 +45,28 @@ public class PrometheusServlet extends HttpServlet {
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        resp.setStatus(HttpServletResponse.SC_OK);
-        resp.setContentType(TextFormat.CONTENT_TYPE_004);
+        String contentType = TextFormat.chooseContentType(req.getHeader("Accept"));
+        boolean openMetrics = TextFormat.CONTENT_TYPE_OPENMETRICS_100.equals(contentType);
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
 
-        Writer writer = resp.getWriter();
+        ByteBuf metrics = provider.generateMetrics(openMetrics);
         try {
-            provider.writeAllMetrics(writer);
-            writer.flush();
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.setContentType(contentType);
+            if (gzip) {
+                resp.setHeader("Content-Encoding", "gzip");
+                try (OutputStream out = new FastGZIPOutputStream(resp.getOutputStream())) {
+                    metrics.getBytes(metrics.readerIndex(), out, metrics.readableBytes());
+                }
+            } else {
+                resp.setContentLength(metrics.readableBytes());
+                try (OutputStream out = resp.getOutputStream()) {
+                    metrics.getBytes(metrics.readerIndex(), out, metrics.readableBytes());
+                }
+            }
         } finally {
-            writer.close();
+            metrics.release();
         }
     }
 
@@ -55,4 +75,13 @@ public class PrometheusServlet extends HttpServlet {
         doGet(req, resp);
     }
 
+    /**
+     * Favors the compression speed, as the metrics text compresses well anyway.
+     */
+    private static class FastGZIPOutputStream extends GZIPOutputStream {
+        FastGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
 }
@@ -42,18 +42,31 @@ public class PrometheusStatsLogger implements StatsLogger {
 
     @Override
     public OpStatsLogger getOpStatsLogger(String name) {
-        return provider.opStats.computeIfAbsent(scopeContext(name), x -> new DataSketchesOpStatsLogger(labels));
+        LogLinearBuckets buckets = provider.histogramBuckets;
+        if (buckets != null) {
+            LogLinearBuckets valueBuckets = provider.histogramValueBuckets;
+            return provider.computeMetricIfAbsent(provider.histogramOpStats, scopeContext(name),
+                    x -> new HistogramOpStatsLogger(buckets, valueBuckets, labels));
+        }
+        return provider.computeMetricIfAbsent(provider.opStats, scopeContext(name),
+                x -> new DataSketchesOpStatsLogger(labels));
     }
 
     @Override
     public OpStatsLogger getThreadScopedOpStatsLogger(String name) {
+        LogLinearBuckets buckets = provider.histogramBuckets;
+        if (buckets != null) {
+            LogLinearBuckets valueBuckets = provider.histogramValueBuckets;
+            return provider.threadScopedHistogramOpStats.computeIfAbsent(scopeContext(name),
+                    x -> new ThreadScopedHistogramOpStatsLogger(provider, x, buckets, valueBuckets, labels));
+        }
         return provider.threadScopedOpStats.computeIfAbsent(scopeContext(name),
                 x -> new ThreadScopedDataSketchesStatsLogger(provider, x, labels));
     }
 
     @Override
     public Counter getCounter(String name) {
-        return provider.counters.computeIfAbsent(scopeContext(name), x -> new LongAdderCounter(labels));
+        return provider.computeMetricIfAbsent(provider.counters, scopeContext(name), x -> new LongAdderCounter(labels));
     }
 
     public Counter getThreadScopedCounter(String name) {
@@ -63,7 +76,7 @@ public class PrometheusStatsLogger implements StatsLogger {
 
     @Override
     public <T extends Number> void registerGauge(String name, Gauge<T> gauge) {
-        provider.gauges.computeIfAbsent(scopeContext(name), x -> new SimpleGauge<T>(gauge, labels));
+        provider.computeMetricIfAbsent(provider.gauges, scopeContext(name), x -> new SimpleGauge<T>(gauge, labels));
     }
 
     @Override
@@ -110,6 +110,61 @@ public class PrometheusTextFormat {
         }
     }
 
+    void writeHistogram(Writer w, String name, HistogramOpStatsLogger histogram) {
+        // Example:
+        // # TYPE bookie_journal_JOURNAL_ADD_ENTRY histogram
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="false",le="0.016",} 0
+        // ...
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="false",le="+Inf",} 0
+        // bookie_journal_JOURNAL_ADD_ENTRY_count{success="false",} 0
+        // bookie_journal_JOURNAL_ADD_ENTRY_sum{success="false",} 0.0
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="true",le="0.016",} 0
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="true",le="0.024",} 3
+        // ...
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="true",le="+Inf",} 658
+        // bookie_journal_JOURNAL_ADD_ENTRY_count{success="true",} 658
+        // bookie_journal_JOURNAL_ADD_ENTRY_sum{success="true",} 1265.08
+        try {
+            writeType(w, name, "histogram");
+            writeHistogramSamples(w, histogram, name, false);
+            writeHistogramSamples(w, histogram, name, true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeHistogramSamples(Writer w, HistogramOpStatsLogger histogram, String name, Boolean success)
+            throws IOException {
+        // the buckets are cumulative, and the count is the one of the last bucket so that they are consistent
+        long cumulativeCount = 0;
+        for (int i = 0; i < histogram.getBucketsCount(); i++) {
+            cumulativeCount += histogram.getBucketCount(success, i);
+            w.append(name)
+                    .append("_bucket{success=\"").append(success.toString())
+                    .append("\",le=\"").append(Collector.doubleToGoString(histogram.getBucketUpperBound(i)))
+                    .append("\"");
+            if (!histogram.getLabels().isEmpty()) {
+                w.append(", ");
+                writeLabelsNoBraces(w, histogram.getLabels());
+            }
+            w.append("} ").append(Long.toString(cumulativeCount)).append('\n');
+        }
+
+        w.append(name).append("_count{success=\"").append(success.toString()).append("\"");
+        if (!histogram.getLabels().isEmpty()) {
+            w.append(", ");
+            writeLabelsNoBraces(w, histogram.getLabels());
+        }
+        w.append("} ").append(Long.toString(cumulativeCount)).append('\n');
+
+        w.append(name).append("_sum{success=\"").append(success.toString()).append("\"");
+        if (!histogram.getLabels().isEmpty()) {
+            w.append(", ");
+            writeLabelsNoBraces(w, histogram.getLabels());
+        }
+        w.append("} ").append(Double.toString(histogram.getSum(success))).append('\n');
+    }
+
     private void writeLabels(Writer w, Map<String, String> labels) throws IOException {
         if (labels.isEmpty()) {
             return;
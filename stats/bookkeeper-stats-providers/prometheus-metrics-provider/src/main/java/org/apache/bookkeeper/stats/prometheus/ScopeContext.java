@@ -26,10 +26,13 @@ import java.util.Objects;
 public class ScopeContext {
     private final String scope;
     private final Map<String, String> labels;
+    // the context is used as map key on every scrape, and computing the hash of the labels is not free
+    private final int hashCode;
 
     public ScopeContext(String scope, Map<String, String> labels) {
         this.scope = scope;
         this.labels = labels;
+        this.hashCode = Objects.hash(scope, labels);
     }
 
     public String getScope() {
@@ -45,11 +48,11 @@ public class ScopeContext {
             return false;
         }
         ScopeContext that = (ScopeContext) o;
-        return Objects.equals(scope, that.scope) && Objects.equals(labels, that.labels);
+        return hashCode == that.hashCode && Objects.equals(scope, that.scope) && Objects.equals(labels, that.labels);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(scope, labels);
+        return hashCode;
     }
 }
@@ -96,7 +96,8 @@ public class ThreadScopedDataSketchesStatsLogger implements OpStatsLogger {
             ThreadRegistry.ThreadPoolThread tpt = ThreadRegistry.get();
             if (tpt == null) {
                 statsLoggers.set(defaultStatsLogger);
-                provider.opStats.put(new ScopeContext(scopeContext.getScope(), originalLabels), defaultStatsLogger);
+                provider.putMetric(provider.opStats,
+                        new ScopeContext(scopeContext.getScope(), originalLabels), defaultStatsLogger);
                 return defaultStatsLogger;
             } else {
                 Map<String, String> threadScopedlabels = new HashMap<>(originalLabels);
@@ -104,7 +105,8 @@ public class ThreadScopedDataSketchesStatsLogger implements OpStatsLogger {
                 threadScopedlabels.put("thread", String.valueOf(tpt.getOrdinal()));
 
                 statsLogger.initializeThread(threadScopedlabels);
-                provider.opStats.put(new ScopeContext(scopeContext.getScope(), threadScopedlabels), statsLogger);
+                provider.putMetric(provider.opStats,
+                        new ScopeContext(scopeContext.getScope(), threadScopedlabels), statsLogger);
             }
         }
 
@@ -92,7 +92,8 @@ public class ThreadScopedLongAdderCounter implements Counter {
 
             if (tpt == null) {
                 counters.set(defaultCounter);
-                provider.counters.put(new ScopeContext(scopeContext.getScope(), originalLabels), defaultCounter);
+                provider.putMetric(provider.counters,
+                        new ScopeContext(scopeContext.getScope(), originalLabels), defaultCounter);
                 return defaultCounter;
             } else {
                 Map<String, String> threadScopedlabels = new HashMap<>(originalLabels);
@@ -100,7 +101,8 @@ public class ThreadScopedLongAdderCounter implements Counter {
                 threadScopedlabels.put("thread", String.valueOf(tpt.getOrdinal()));
 
                 counter.initializeThread(threadScopedlabels);
-                provider.counters.put(new ScopeContext(scopeContext.getScope(), threadScopedlabels), counter);
+                provider.putMetric(provider.counters,
+                        new ScopeContext(scopeContext.getScope(), threadScopedlabels), counter);
             }
         }
 
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link HistogramOpStatsLogger}.
+ */
+public class HistogramOpStatsLoggerTest {
+
+    private final LogLinearBuckets latencyBuckets = new LogLinearBuckets(16, 1L << 30, 1);
+    private final LogLinearBuckets valueBuckets = new LogLinearBuckets(1, 1L << 40, 1);
+    private final HistogramOpStatsLogger histogram =
+            new HistogramOpStatsLogger(latencyBuckets, valueBuckets, Collections.emptyMap());
+
+    // the upper bound of the bucket counting the single event of the histogram
+    private double upperBoundOfSingleEvent(boolean success) {
+        for (int i = 0; i < histogram.getBucketsCount(); i++) {
+            if (histogram.getBucketCount(success, i) > 0) {
+                assertEquals(1, histogram.getBucketCount(success, i));
+                return histogram.getBucketUpperBound(i);
+            }
+        }
+        throw new AssertionError("no event counted");
+    }
+
+    @Test
+    public void testLatenciesInMillis() {
+        histogram.registerSuccessfulEvent(3, TimeUnit.MILLISECONDS);
+        histogram.registerFailedEvent(100, TimeUnit.MICROSECONDS);
+
+        assertSame(latencyBuckets, histogram.getBuckets());
+        double upperBound = upperBoundOfSingleEvent(true);
+        assertTrue(upperBound >= 3.0 && upperBound < 4.5);
+        assertEquals(3.0, histogram.getSum(true), 0.0);
+        upperBound = upperBoundOfSingleEvent(false);
+        assertTrue(upperBound >= 0.1 && upperBound < 0.15);
+        assertEquals(0.1, histogram.getSum(false), 0.0);
+    }
+
+    @Test
+    public void testValuesInTheirOwnLayout() {
+        // counted as milliseconds in the latency layout, any value above about a million would be in +Inf
+        long value = 5L * 1024 * 1024 * 1024;
+        histogram.registerSuccessfulValue(value);
+        histogram.registerFailedValue(1);
+
+        assertSame(valueBuckets, histogram.getBuckets());
+        assertEquals(valueBuckets.size(), histogram.getBucketsCount());
+        double upperBound = upperBoundOfSingleEvent(true);
+        assertTrue(upperBound >= value && upperBound < value * 1.5);
+        assertEquals(value, histogram.getSum(true), 0.0);
+        assertEquals(2.0, upperBoundOfSingleEvent(false), 0.0);
+        assertEquals(1.0, histogram.getSum(false), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, histogram.getBucketUpperBound(histogram.getBucketsCount() - 1), 0.0);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link LogLinearBuckets}.
+ */
+public class LogLinearBucketsTest {
+
+    @Test
+    public void testBucketBounds() {
+        LogLinearBuckets buckets = new LogLinearBuckets(16, 1L << 30, 1);
+        // the first bucket, 2 buckets per power of two range up to 2^30, and +Inf
+        assertEquals(1 + 26 * 2 + 1, buckets.size());
+        assertEquals(16, buckets.getUpperBound(0));
+        assertEquals(24, buckets.getUpperBound(1));
+        assertEquals(32, buckets.getUpperBound(2));
+        assertEquals(48, buckets.getUpperBound(3));
+        assertEquals(1L << 30, buckets.getUpperBound(buckets.size() - 2));
+        assertEquals(Long.MAX_VALUE, buckets.getUpperBound(buckets.size() - 1));
+
+        assertEquals(0, buckets.bucketIndex(Long.MIN_VALUE));
+        assertEquals(0, buckets.bucketIndex(0));
+        assertEquals(0, buckets.bucketIndex(16));
+        assertEquals(1, buckets.bucketIndex(17));
+        assertEquals(1, buckets.bucketIndex(24));
+        assertEquals(2, buckets.bucketIndex(25));
+        assertEquals(2, buckets.bucketIndex(32));
+        assertEquals(3, buckets.bucketIndex(33));
+        assertEquals(buckets.size() - 2, buckets.bucketIndex(1L << 30));
+        assertEquals(buckets.size() - 1, buckets.bucketIndex((1L << 30) + 1));
+        assertEquals(buckets.size() - 1, buckets.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testUpperBoundsInclusive() {
+        for (int subBucketBits = 0; subBucketBits <= LogLinearBuckets.MAX_SUB_BUCKET_BITS; subBucketBits++) {
+            LogLinearBuckets buckets = new LogLinearBuckets(1, 1L << 40, subBucketBits);
+            for (int i = 1; i < buckets.size() - 1; i++) {
+                long lowerBound = buckets.getUpperBound(i - 1);
+                long upperBound = buckets.getUpperBound(i);
+                assertTrue(upperBound > lowerBound);
+                assertEquals(i - 1, buckets.bucketIndex(lowerBound));
+                assertEquals(i, buckets.bucketIndex(lowerBound + 1));
+                assertEquals(i, buckets.bucketIndex(upperBound));
+                assertEquals(i + 1, buckets.bucketIndex(upperBound + 1));
+                // the width of a bucket relative to its values is bounded by the sub-buckets
+                assertTrue((upperBound - lowerBound) << subBucketBits <= lowerBound);
+            }
+        }
+    }
+
+    @Test
+    public void testBoundsRoundedUpToPowersOfTwo() {
+        LogLinearBuckets buckets = new LogLinearBuckets(10, 1000, 0);
+        assertEquals(8, buckets.size());
+        long expected = 16;
+        for (int i = 0; i < buckets.size() - 1; i++) {
+            assertEquals(expected, buckets.getUpperBound(i));
+            expected *= 2;
+        }
+        assertEquals(0, buckets.bucketIndex(10));
+        assertEquals(buckets.size() - 2, buckets.bucketIndex(1000));
+        assertEquals(buckets.size() - 2, buckets.bucketIndex(1024));
+        assertEquals(buckets.size() - 1, buckets.bucketIndex(1025));
+
+        // the first range is wide enough for its linear sub-buckets
+        buckets = new LogLinearBuckets(1, 1024, 3);
+        assertEquals(8, buckets.getUpperBound(0));
+        assertEquals(9, buckets.getUpperBound(1));
+        assertEquals(16, buckets.getUpperBound(8));
+        assertEquals(18, buckets.getUpperBound(9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManySubBuckets() {
+        new LogLinearBuckets(16, 1024, LogLinearBuckets.MAX_SUB_BUCKET_BITS + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoLowestBound() {
+        new LogLinearBuckets(0, 1024, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHighestBoundNotAboveLowest() {
+        new LogLinearBuckets(1024, 1024, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHighestBoundTooLarge() {
+        new LogLinearBuckets(16, (1L << 62) + 1, 1);
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Gauge;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link PrometheusMetricsGenerator}.
+ */
+public class PrometheusMetricsGeneratorTest {
+
+    private static final Pattern SAMPLE = Pattern.compile("([a-zA-Z_:][a-zA-Z0-9_:]*)(?:\\{(.*)\\})? (\\S+)");
+    private static final String LABEL_REGEX = "([a-zA-Z_][a-zA-Z0-9_]*)=\"((?:[^\"\\\\]|\\\\.)*)\"";
+    private static final Pattern LABEL = Pattern.compile(LABEL_REGEX);
+    // no space after the commas, and no trailing comma
+    private static final Pattern OPEN_METRICS_LABELS = Pattern.compile(LABEL_REGEX + "(?:," + LABEL_REGEX + ")*");
+    private static final Pattern OPEN_METRICS_NUMBER =
+            Pattern.compile("[-+]?(?:\\d+(?:\\.\\d*)?|\\.\\d+)(?:[eE][-+]?\\d+)?|[-+]?Inf|NaN");
+
+    private final CollectorRegistry registry = new CollectorRegistry();
+    private final PrometheusMetricsProvider provider = new PrometheusMetricsProvider(registry);
+
+    @After
+    public void teardown() {
+        provider.stop();
+    }
+
+    private void startWithHistograms() {
+        PropertiesConfiguration conf = new PropertiesConfiguration();
+        conf.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_HTTP_ENABLE, false);
+        conf.setProperty("exposeDefaultJVMMetrics", false);
+        conf.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_OP_STATS_TYPE,
+                PrometheusMetricsProvider.OP_STATS_TYPE_HISTOGRAM);
+        provider.start(conf);
+    }
+
+    private void registerMetrics() {
+        Gauge.build("client_gauge", "a gauge of the prometheus client").register(registry).set(3);
+
+        StatsLogger root = provider.getStatsLogger("bookie");
+        root.getCounter("writes").addCount(42);
+        root.getCounter("bytes_total").addCount(1 << 20);
+        root.registerGauge("entries", new org.apache.bookkeeper.stats.Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return 519L;
+            }
+        });
+        root.registerGauge("ratio", new org.apache.bookkeeper.stats.Gauge<Double>() {
+            @Override
+            public Double getDefaultValue() {
+                return 0.0;
+            }
+
+            @Override
+            public Double getSample() {
+                return 0.25;
+            }
+        });
+        for (int ledger = 0; ledger < 3; ledger++) {
+            StatsLogger scoped = root.scopeLabel("ledger", Integer.toString(ledger));
+            scoped.getCounter("writes").addCount(ledger);
+            OpStatsLogger opStats = scoped.getOpStatsLogger("add_entry");
+            for (int i = 1; i <= 100; i++) {
+                opStats.registerSuccessfulEvent(i * (ledger + 1), TimeUnit.MILLISECONDS);
+            }
+            opStats.registerFailedEvent(5, TimeUnit.MILLISECONDS);
+        }
+        root.getOpStatsLogger("payload_size").registerSuccessfulValue(1024 * 1024);
+        provider.rotateLatencyCollection();
+    }
+
+    private String generate(boolean openMetrics) {
+        ByteBuf buf = provider.generateMetrics(openMetrics);
+        try {
+            return buf.toString(StandardCharsets.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private String writeAllMetrics() throws Exception {
+        StringWriter writer = new StringWriter();
+        provider.writeAllMetrics(writer);
+        return writer.toString();
+    }
+
+    /**
+     * The samples of a scrape, by name and labels, and the types declared for the metric names.
+     */
+    private static class Scrape {
+        final Map<String, Double> samples = new TreeMap<>();
+        final Map<String, String> types = new TreeMap<>();
+    }
+
+    private static Scrape parse(String text) {
+        Scrape scrape = new Scrape();
+        for (String line : text.split("\n")) {
+            if (line.startsWith("# TYPE ")) {
+                String[] parts = line.split(" ");
+                assertEquals(line, 4, parts.length);
+                assertEquals(line, null, scrape.types.put(parts[2], parts[3]));
+                continue;
+            }
+            Matcher m = SAMPLE.matcher(line);
+            assertTrue(line, m.matches());
+            Map<String, String> labels = new TreeMap<>();
+            if (m.group(2) != null) {
+                Matcher l = LABEL.matcher(m.group(2));
+                while (l.find()) {
+                    labels.put(l.group(1), l.group(2));
+                }
+            }
+            String key = m.group(1) + labels;
+            assertEquals(line, null, scrape.samples.put(key, parseValue(m.group(3))));
+        }
+        return scrape;
+    }
+
+    private static double parseValue(String value) {
+        switch (value) {
+            case "+Inf":
+                return Double.POSITIVE_INFINITY;
+            case "-Inf":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                return Double.parseDouble(value);
+        }
+    }
+
+    private void assertSameSamplesAsWriteAllMetrics() throws Exception {
+        Scrape expected = parse(writeAllMetrics());
+        Scrape actual = parse(generate(false));
+        assertFalse(expected.samples.isEmpty());
+        assertEquals(expected.samples, actual.samples);
+        assertEquals(expected.types, actual.types);
+    }
+
+    @Test
+    public void testTextFormatSameAsWriteAllMetrics() throws Exception {
+        registerMetrics();
+        assertSameSamplesAsWriteAllMetrics();
+        // the cached series, with the updated values
+        provider.getStatsLogger("bookie").getCounter("writes").addCount(8);
+        assertSameSamplesAsWriteAllMetrics();
+        assertEquals(50.0, parse(generate(false)).samples.get("bookie_writes{}"), 0.0);
+    }
+
+    @Test
+    public void testTextFormatOfHistogramsSameAsWriteAllMetrics() throws Exception {
+        startWithHistograms();
+        registerMetrics();
+        assertSameSamplesAsWriteAllMetrics();
+        // the histogram of the values switched to the value layout once the first value was registered
+        assertEquals(1.0, parse(generate(false)).samples.get("bookie_payload_size_bucket{le=1048576.0, success=true}"),
+                0.0);
+    }
+
+    @Test
+    public void testOpenMetricsFormatParses() throws Exception {
+        registerMetrics();
+        assertValidOpenMetrics(generate(true));
+    }
+
+    @Test
+    public void testOpenMetricsFormatOfHistogramsParses() throws Exception {
+        startWithHistograms();
+        registerMetrics();
+        assertValidOpenMetrics(generate(true));
+    }
+
+    @Test
+    public void testSeriesRebuiltWhenMetricsReplaced() throws Exception {
+        registerMetrics();
+        generate(false);
+        // another metric in place of a removed one, with the same number of metrics
+        ScopeContext removed = provider.counters.keySet().iterator().next();
+        provider.counters.remove(removed);
+        provider.getStatsLogger("bookie").getCounter("reads").addCount(7);
+
+        Scrape scrape = parse(generate(false));
+        assertEquals(7.0, scrape.samples.get("bookie_reads{}"), 0.0);
+        assertEquals(scrape.samples, parse(writeAllMetrics()).samples);
+
+        // a metric replaced under the same name
+        LongAdderCounter counter = new LongAdderCounter(Collections.emptyMap());
+        counter.addCount(9);
+        provider.putMetric(provider.counters, new ScopeContext("bookie_reads", Collections.emptyMap()), counter);
+        assertEquals(9.0, parse(generate(false)).samples.get("bookie_reads{}"), 0.0);
+    }
+
+    private static void assertValidOpenMetrics(String text) {
+        assertTrue(text.endsWith("\n# EOF\n"));
+        Set<String> families = new HashSet<>();
+        String family = null;
+        String type = null;
+        // the previous bucket count of each histogram series, by the labels other than le
+        Map<String, Double> buckets = new HashMap<>();
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length - 1; i++) {
+            String line = lines[i];
+            if (line.startsWith("# TYPE ")) {
+                String[] parts = line.split(" ");
+                assertEquals(line, 4, parts.length);
+                family = parts[2];
+                type = parts[3];
+                // the samples of a family are contiguous, after its only type line
+                assertTrue(line, families.add(family));
+                continue;
+            }
+            assertFalse(line, line.startsWith("#"));
+            Matcher m = SAMPLE.matcher(line);
+            assertTrue(line, m.matches());
+            assertNotNull("sample before any type: " + line, family);
+            if (m.group(2) != null) {
+                assertTrue(line, OPEN_METRICS_LABELS.matcher(m.group(2)).matches());
+            }
+            assertTrue(line, OPEN_METRICS_NUMBER.matcher(m.group(3)).matches());
+
+            String suffix = m.group(1).startsWith(family) ? m.group(1).substring(family.length()) : null;
+            assertNotNull(line, suffix);
+            switch (type) {
+                case "counter":
+                    assertTrue(line, suffix.equals("_total") || suffix.equals("_created"));
+                    break;
+                case "gauge":
+                case "unknown":
+                    assertEquals(line, "", suffix);
+                    break;
+                case "summary":
+                    assertTrue(line, suffix.isEmpty() || suffix.equals("_count") || suffix.equals("_sum"));
+                    break;
+                case "histogram": {
+                    assertTrue(line, suffix.equals("_bucket") || suffix.equals("_count") || suffix.equals("_sum"));
+                    String series = m.group(2).replaceAll(",?le=\"[^\"]*\"", "");
+                    double value = parseValue(m.group(3));
+                    if (suffix.equals("_bucket")) {
+                        Double previous = buckets.put(series, value);
+                        assertTrue(line, previous == null || previous <= value);
+                    } else if (suffix.equals("_count")) {
+                        // the count is the one of the +Inf bucket, which is the last one
+                        assertTrue(lines[i - 1], lines[i - 1].contains("le=\"+Inf\""));
+                        assertEquals(line, buckets.remove(series), value, 0.0);
+                    }
+                    break;
+                }
+                default:
+                    throw new AssertionError("unexpected type: " + line);
+            }
+        }
+        assertTrue(buckets.isEmpty());
+    }
+}